@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * Compares neighbour lookups through the container adjacency index with a
+ * linear scan over all bonds, on peptides and macrocycles of growing size.
+ * Usage: <code>java PerfAdjacencyIndex [repeats]</code>.
+ */
+public class PerfAdjacencyIndex {
+
+	private static final int[] SIZES = { 10, 50, 200, 1000 };
+
+	public static void main(String[] args) throws Exception {
+		int repeats = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		SmilesParser parser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+		for (int size : SIZES) {
+			run("peptide (" + size + " Ala)", parser.parseSmiles(peptide(size)), repeats);
+			run("macrocycle (" + (size * 5) + " C)", parser.parseSmiles(macrocycle(size * 5)), repeats);
+		}
+	}
+
+	private static String peptide(int residues) {
+		StringBuffer smiles = new StringBuffer();
+		for (int i = 0; i < residues; i++) smiles.append("NC(C)C(=O)");
+		return smiles.append("O").toString();
+	}
+
+	private static String macrocycle(int ringSize) {
+		StringBuffer smiles = new StringBuffer("C1");
+		for (int i = 1; i < ringSize; i++) smiles.append("C");
+		return smiles.append("1").toString();
+	}
+
+	private static void run(String label, IMolecule mol, int repeats) {
+		// warm up both code paths
+		walkIndexed(mol); walkScanning(mol);
+		long start = System.nanoTime();
+		int indexed = 0;
+		for (int i = 0; i < repeats; i++) indexed += walkIndexed(mol);
+		long indexTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		int scanned = 0;
+		for (int i = 0; i < repeats; i++) scanned += walkScanning(mol);
+		long scanTime = System.nanoTime() - start;
+		if (indexed != scanned) throw new IllegalStateException("Walks disagree");
+		System.out.println(label + ": atoms=" + mol.getAtomCount() +
+			" index(ms)=" + (indexTime / 1000000.0 / repeats) +
+			" scan(ms)=" + (scanTime / 1000000.0 / repeats));
+	}
+
+	/** Visits the neighbours of every atom using the container API. */
+	private static int walkIndexed(IAtomContainer mol) {
+		int count = 0;
+		for (IAtom atom : mol.atoms()) {
+			for (IAtom neighbour : mol.getConnectedAtomsList(atom)) {
+				if (mol.getBond(atom, neighbour) != null) count++;
+			}
+			count += mol.getConnectedBondsCount(atom);
+		}
+		return count;
+	}
+
+	/** Visits the neighbours of every atom with the old full bond scan. */
+	private static int walkScanning(IAtomContainer mol) {
+		int count = 0;
+		for (IAtom atom : mol.atoms()) {
+			List<IAtom> neighbours = new ArrayList<IAtom>();
+			int degree = 0;
+			for (int i = 0; i < mol.getBondCount(); i++) {
+				IBond bond = mol.getBond(i);
+				if (bond.contains(atom)) {
+					neighbours.add(bond.getConnectedAtom(atom));
+					degree++;
+				}
+			}
+			for (IAtom neighbour : neighbours) {
+				for (int i = 0; i < mol.getBondCount(); i++) {
+					IBond bond = mol.getBond(i);
+					if (bond.contains(atom) && bond.getConnectedAtom(atom) == neighbour) {
+						count++;
+						break;
+					}
+				}
+			}
+			count += degree;
+		}
+		return count;
+	}
+
+}
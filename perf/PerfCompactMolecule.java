@@ -0,0 +1,122 @@
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.silent.Atom;
+import org.openscience.cdk.silent.Bond;
+import org.openscience.cdk.silent.CompactChemObjectBuilder;
+import org.openscience.cdk.silent.CompactMolecule;
+import org.openscience.cdk.silent.Molecule;
+
+/**
+ * Compares the retained heap and the build plus neighbour walk time of
+ * batches of molecules held as {@link Molecule} and as {@link CompactMolecule}
+ * filled through its primitive API.
+ * Usage: <code>java PerfCompactMolecule [molecules] [atoms]</code>.
+ */
+public class PerfCompactMolecule {
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+		// warm up both code paths
+		buildObjects(1000, size); buildCompact(1000, size); buildFromBuilder(1000, size);
+		run("Molecule", count, size, 0);
+		run("CompactMolecule", count, size, 1);
+		run("CompactChemObjectBuilder", count, size, 2);
+	}
+
+	/** Mode 0 uses Molecule, 1 the primitive API and 2 the compact builder. */
+	private static void run(String label, int count, int size, int mode) {
+		long before = usedMemory();
+		long start = System.nanoTime();
+		Object[] batch = mode == 0 ? buildObjects(count, size) :
+			mode == 1 ? buildCompact(count, size) : buildFromBuilder(count, size);
+		long walked = 0;
+		for (Object mol : batch) walked += mode == 1 ? walk((CompactMolecule)mol) : walk((IAtomContainer)mol);
+		long time = System.nanoTime() - start;
+		long retained = usedMemory() - before;
+		System.out.println(label + ": molecules=" + count + " atoms=" + size +
+			" time(ms)=" + (time / 1000000) +
+			" retained(bytes/molecule)=" + (retained / count) + " walked=" + walked);
+		batch = null;
+	}
+
+	/** Builds linear chains with one oxygen per ten atoms. */
+	private static Object[] buildObjects(int count, int size) {
+		Object[] batch = new Object[count];
+		for (int i = 0; i < count; i++) {
+			Molecule mol = new Molecule(size, size, 0, 0);
+			IAtom previous = null;
+			for (int j = 0; j < size; j++) {
+				IAtom atom = new Atom(j % 10 == 9 ? "O" : "C");
+				atom.setImplicitHydrogenCount(2);
+				mol.addAtom(atom);
+				if (previous != null) mol.addBond(new Bond(previous, atom, IBond.Order.SINGLE));
+				previous = atom;
+			}
+			batch[i] = mol;
+		}
+		return batch;
+	}
+
+	private static Object[] buildCompact(int count, int size) {
+		Object[] batch = new Object[count];
+		for (int i = 0; i < count; i++) {
+			CompactMolecule mol = new CompactMolecule(size, size, 0, 0);
+			for (int j = 0; j < size; j++) {
+				mol.addAtom(j % 10 == 9 ? 8 : 6, 0, 2);
+				if (j > 0) mol.addBond(j - 1, j, IBond.Order.SINGLE);
+			}
+			batch[i] = mol;
+		}
+		return batch;
+	}
+
+	/** Builds the same chains through the IAtomContainer API, as readers do. */
+	private static Object[] buildFromBuilder(int count, int size) {
+		IChemObjectBuilder builder = CompactChemObjectBuilder.getInstance();
+		Object[] batch = new Object[count];
+		for (int i = 0; i < count; i++) {
+			IMolecule mol = builder.newInstance(IMolecule.class);
+			IAtom previous = null;
+			for (int j = 0; j < size; j++) {
+				IAtom atom = builder.newInstance(IAtom.class, j % 10 == 9 ? "O" : "C");
+				atom.setImplicitHydrogenCount(2);
+				mol.addAtom(atom);
+				if (previous != null)
+					mol.addBond(builder.newInstance(IBond.class, previous, atom, IBond.Order.SINGLE));
+				previous = atom;
+			}
+			batch[i] = mol;
+		}
+		return batch;
+	}
+
+	/** Counts the heavy atom neighbours of all oxygens. */
+	private static int walk(IAtomContainer mol) {
+		int count = 0;
+		for (IAtom atom : mol.atoms()) {
+			if (!"O".equals(atom.getSymbol())) continue;
+			count += mol.getConnectedAtomsCount(atom);
+		}
+		return count;
+	}
+
+	private static int walk(CompactMolecule mol) {
+		int count = 0;
+		for (int i = 0; i < mol.getAtomCount(); i++) {
+			if (mol.getAtomicNumber(i) != 8) continue;
+			count += mol.getConnectedBondsCount(i);
+		}
+		return count;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,136 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openscience.cdk.fingerprint.Fingerprinter;
+import org.openscience.cdk.graph.PathTools;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * Compares the path hashing of the {@link Fingerprinter} with the former
+ * string based implementation, and checks that both give the same
+ * fingerprints. Atom types and aromaticity are perceived once up front, so
+ * that only the path enumeration and bit selection are timed.
+ * Usage: <code>java PerfFingerprinter [rounds]</code>.
+ */
+public class PerfFingerprinter {
+
+	private static final String[] SMILES = {
+		"CC(=O)Oc1ccccc1C(=O)O", "CN1C=NC2=C1C(=O)N(C(=O)N2C)C",
+		"CC(C)Cc1ccc(cc1)C(C)C(=O)O", "c1ccc2c(c1)cc[nH]2",
+		"ClC1=CC=C(C=C1)C(C1=CC=C(Cl)C=C1)C(Cl)(Cl)Cl",
+		"CC12CCC3C(CCC4=CC(=O)CCC34C)C1CCC2O",
+		"OC1C(O)C(OC(O)C1O)CO", "CCN(CC)CCOC(=O)c1ccc(N)cc1",
+		"C1CC2CCC1CC2", "O=C(O)CCCCCCCCCCCCCCC"
+	};
+
+	public static void main(String[] args) throws Exception {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		SmilesParser parser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+		List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+		for (String smiles : SMILES) {
+			IMolecule mol = parser.parseSmiles(smiles);
+			AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(mol);
+			CDKHueckelAromaticityDetector.detectAromaticity(mol);
+			molecules.add(mol);
+		}
+		PathFingerprinter current = new PathFingerprinter(false);
+		PathFingerprinter strings = new PathFingerprinter(true);
+		for (IAtomContainer mol : molecules) {
+			if (!current.bits(mol).equals(strings.bits(mol)))
+				throw new IllegalStateException("fingerprints differ");
+		}
+		// warm up both code paths
+		run(strings, molecules, rounds / 4); run(current, molecules, rounds / 4);
+		long stringTime = run(strings, molecules, rounds);
+		long currentTime = run(current, molecules, rounds);
+		System.out.println("string paths: " + (stringTime / 1000000) + " ms");
+		System.out.println("hashed paths: " + (currentTime / 1000000) + " ms");
+	}
+
+	private static long run(PathFingerprinter fingerprinter, List<IAtomContainer> molecules, int rounds) {
+		long start = System.nanoTime();
+		int cardinality = 0;
+		for (int i = 0; i < rounds; i++)
+			for (IAtomContainer mol : molecules)
+				cardinality += fingerprinter.bits(mol).cardinality();
+		if (cardinality == 0) throw new IllegalStateException();
+		return System.nanoTime() - start;
+	}
+
+	/** Gives access to the path hashing, optionally as it was done before. */
+	private static class PathFingerprinter extends Fingerprinter {
+
+		private final boolean strings;
+
+		PathFingerprinter(boolean strings) {
+			this.strings = strings;
+		}
+
+		BitSet bits(IAtomContainer mol) {
+			BitSet bits = new BitSet(getSize());
+			if (strings) {
+				for (int hash : findStringPathes(mol, getSearchDepth()))
+					bits.set(new java.util.Random(hash).nextInt(getSize()));
+			} else {
+				for (int hash : findPathes(mol, getSearchDepth()))
+					bits.set(getBitPosition(hash, getSize()));
+			}
+			return bits;
+		}
+
+		/** The former string based implementation of findPathes. */
+		private int[] findStringPathes(IAtomContainer container, int searchDepth) {
+			Map<String, String> replace = new HashMap<String, String>();
+			replace.put("Cl", "X"); replace.put("Br", "Z"); replace.put("Si", "Y");
+			replace.put("As", "D"); replace.put("Li", "L"); replace.put("Se", "E");
+			replace.put("Na", "G"); replace.put("Ca", "J"); replace.put("Al", "A");
+			List<StringBuffer> allPaths = new ArrayList<StringBuffer>();
+			for (IAtom startAtom : container.atoms()) {
+				for (List<IAtom> path : PathTools.getPathsOfLengthUpto(container, startAtom, searchDepth)) {
+					StringBuffer sb = new StringBuffer();
+					IAtom x = path.get(0);
+					if (x instanceof IPseudoAtom || PeriodicTable.getAtomicNumber(x.getSymbol()) == null)
+						sb.append((char) PeriodicTable.getElementCount() + 1);
+					else sb.append(replace.containsKey(x.getSymbol()) ? replace.get(x.getSymbol()) : x.getSymbol());
+					for (int i = 1; i < path.size(); i++) {
+						IAtom y = path.get(i);
+						sb.append(getBondSymbol(container.getBond(x, y)));
+						sb.append(replace.containsKey(y.getSymbol()) ? replace.get(y.getSymbol()) : y.getSymbol());
+						x = y;
+					}
+					StringBuffer revForm = new StringBuffer(sb);
+					revForm.reverse();
+					if (sb.toString().compareTo(revForm.toString()) <= 0) allPaths.add(sb);
+					else allPaths.add(revForm);
+				}
+			}
+			Set<String> cleanPath = new HashSet<String>();
+			for (StringBuffer s : allPaths) {
+				String s1 = s.toString().trim();
+				if (s1.equals("")) continue;
+				if (cleanPath.contains(s1)) continue;
+				String s2 = s.reverse().toString().trim();
+				if (cleanPath.contains(s2)) continue;
+				cleanPath.add(s2);
+			}
+			int[] hashes = new int[cleanPath.size()];
+			int i = 0;
+			for (String s : cleanPath) hashes[i++] = s.hashCode();
+			return hashes;
+		}
+	}
+
+}
@@ -27,7 +27,9 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.openscience.cdk.graph.AdjacencyIndex;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
@@ -121,6 +123,23 @@ public class AtomContainer extends ChemObject
      */
     protected List<IStereoElement> stereoElements;
 
+    /**
+     * Lazily built index of the bonds connected to each atom.
+     */
+    private transient volatile AdjacencyIndex adjacency;
+
+    /**
+     * Set by the bonds in the adjacency index when their atoms change.
+     */
+    private transient AtomicBoolean adjacencyStale;
+
+    /**
+     * The maximum number of containers a bond tells about changes to its
+     * atoms. When another container indexes the bond, the one that did so
+     * first is told that the bond changed and has to index it again.
+     */
+    private final static int MAX_INDEX_FLAGS = 4;
+
 
 	/**
 	 *  Constructs an empty AtomContainer.
@@ -222,6 +241,7 @@ public class AtomContainer extends ChemObject
             atom.addListener(this);
         }
 		this.atomCount = atoms.length;
+		adjacency = null;
 		notifyChanged();
 	}
 
@@ -239,6 +259,7 @@ public class AtomContainer extends ChemObject
             bond.addListener(this);
         }
 		this.bondCount = bonds.length;
+		adjacency = null;
 	}
 
 	/**
@@ -271,6 +292,7 @@ public class AtomContainer extends ChemObject
 	{
 		atom.addListener(this);
 		atoms[number] = atom;
+		adjacency = null;
 		notifyChanged();
 	}
 
@@ -679,12 +701,9 @@ public class AtomContainer extends ChemObject
 	 */
 	public IBond getBond(IAtom atom1, IAtom atom2)
 	{
-		for (int i = 0; i < getBondCount(); i++)
+		for (IBond bond : connectedBonds(atom1))
 		{
-			if (bonds[i].contains(atom1) &&
-			    bonds[i].getConnectedAtom(atom1) == atom2) {
-				return bonds[i];
-			}
+			if (bond.getConnectedAtom(atom1) == atom2) return bond;
 		}
 		return null;
 	}
@@ -747,10 +766,11 @@ public class AtomContainer extends ChemObject
 	 */
 	public List<IAtom> getConnectedAtomsList(IAtom atom)
 	{
-		List<IAtom> atomsList = new ArrayList<IAtom>();
-		for (int i = 0; i < bondCount; i++)
+		IBond[] connected = connectedBonds(atom);
+		List<IAtom> atomsList = new ArrayList<IAtom>(connected.length);
+		for (IBond bond : connected)
 		{
-			if (bonds[i].contains(atom)) atomsList.add(bonds[i].getConnectedAtom(atom));
+			atomsList.add(bond.getConnectedAtom(atom));
 		}
 		return atomsList;
 	}
@@ -763,10 +783,11 @@ public class AtomContainer extends ChemObject
 	 */
 	public List<IBond> getConnectedBondsList(IAtom atom)
 	{
-		List<IBond> bondsList = new ArrayList<IBond>();
-		for (int i = 0; i < bondCount; i++)
+		IBond[] connected = connectedBonds(atom);
+		List<IBond> bondsList = new ArrayList<IBond>(connected.length);
+		for (IBond bond : connected)
 		{
-			if (bonds[i].contains(atom)) bondsList.add(bonds[i]);
+			bondsList.add(bond);
 		}
 		return bondsList;
 	}
@@ -813,9 +834,9 @@ public class AtomContainer extends ChemObject
 	public List<IElectronContainer> getConnectedElectronContainersList(IAtom atom)
 	{
 		List<IElectronContainer> lps = new ArrayList<IElectronContainer>();
-		for (int i = 0; i < bondCount; i++)
+		for (IBond bond : connectedBonds(atom))
 		{
-			if (bonds[i].contains(atom)) lps.add(bonds[i]);
+			lps.add(bond);
 		}
 		for (int i = 0; i < lonePairCount; i++)
 		{
@@ -836,12 +857,7 @@ public class AtomContainer extends ChemObject
 	 */
 	public int getConnectedAtomsCount(IAtom atom)
 	{
-		int count = 0;
-		for (int i = 0; i < bondCount; i++)
-		{
-			if (bonds[i].contains(atom)) ++count;
-		}
-		return count;
+		return connectedBonds(atom).length;
 	}
 
 	/**
@@ -910,18 +926,16 @@ public class AtomContainer extends ChemObject
 	public double getBondOrderSum(IAtom atom)
 	{
 		double count = 0;
-		for (int i = 0; i < bondCount; i++)
+		for (IBond bond : connectedBonds(atom))
 		{
-			if (bonds[i].contains(atom)) {
-				if (bonds[i].getOrder() == IBond.Order.SINGLE) {
-					count += 1;
-				} else if (bonds[i].getOrder() == IBond.Order.DOUBLE) {
-					count += 2;
-				} else if (bonds[i].getOrder() == IBond.Order.TRIPLE) {
-					count += 3;
-				} else if (bonds[i].getOrder() == IBond.Order.QUADRUPLE) {
-					count += 4;
-				}
+			if (bond.getOrder() == IBond.Order.SINGLE) {
+				count += 1;
+			} else if (bond.getOrder() == IBond.Order.DOUBLE) {
+				count += 2;
+			} else if (bond.getOrder() == IBond.Order.TRIPLE) {
+				count += 3;
+			} else if (bond.getOrder() == IBond.Order.QUADRUPLE) {
+				count += 4;
 			}
 		}
 		return count;
@@ -936,10 +950,9 @@ public class AtomContainer extends ChemObject
 	 */
 	public Order getMaximumBondOrder(IAtom atom) {
 		IBond.Order max = IBond.Order.SINGLE;
-		for (int i = 0; i < bondCount; i++) {
-			if (bonds[i].contains(atom) && 
-				bonds[i].getOrder().ordinal() > max.ordinal()) {
-				max = bonds[i].getOrder();
+		for (IBond bond : connectedBonds(atom)) {
+			if (bond.getOrder().ordinal() > max.ordinal()) {
+				max = bond.getOrder();
 			}
 		}
 		return max;
@@ -956,10 +969,9 @@ public class AtomContainer extends ChemObject
 	public Order getMinimumBondOrder(IAtom atom)
 	{
 		IBond.Order min = IBond.Order.QUADRUPLE;
-		for (int i = 0; i < bondCount; i++) {
-			if (bonds[i].contains(atom) &&
-				bonds[i].getOrder().ordinal() < min.ordinal()) {
-				min = bonds[i].getOrder();
+		for (IBond bond : connectedBonds(atom)) {
+			if (bond.getOrder().ordinal() < min.ordinal()) {
+				min = bond.getOrder();
 			}
 		}
 		return min;
@@ -1050,6 +1062,11 @@ public class AtomContainer extends ChemObject
 		if (bondCount >= bonds.length) growBondArray();
 		bonds[bondCount] = bond;
 		++bondCount;
+		AdjacencyIndex index = adjacency;
+		if (index != null) {
+			if (watchBond(bond, adjacencyStale)) index.addBond(bond);
+			else adjacency = null;
+		}
 		notifyChanged();
 	}
 
@@ -1168,6 +1185,7 @@ public class AtomContainer extends ChemObject
 		}
 		bonds[bondCount - 1] = null;
 		bondCount--;
+		if (adjacency != null) adjacency.removeBond(bond);
 		notifyChanged();
 		return bond;
 	}
@@ -1369,6 +1387,7 @@ public class AtomContainer extends ChemObject
 		}
     	bonds = new IBond[growArraySize];
     	bondCount = 0;
+    	adjacency = null;
     	notifyChanged();
     }
 
@@ -1579,6 +1598,7 @@ public class AtomContainer extends ChemObject
 	public Object clone() throws CloneNotSupportedException {
 		IAtom[] newAtoms;
 		IAtomContainer clone = (IAtomContainer) super.clone();
+		((AtomContainer)clone).adjacencyStale = null;
         // start from scratch
 		clone.removeAllElements();
         // clone all atoms
@@ -1660,6 +1680,84 @@ public class AtomContainer extends ChemObject
 //	}
 
 
+	/**
+	 *  Returns the bonds connected to the given atom, (re)building the
+	 *  adjacency index when it is missing or out of date.
+	 *
+	 *@param  atom  The atom the connected bonds are searched of
+	 *@return       The connected bonds, in the order of the bond array
+	 */
+	private IBond[] connectedBonds(IAtom atom)
+	{
+		AdjacencyIndex index = adjacency;
+		IBond[] connected = null;
+		if (index != null && !adjacencyStale.get())
+			connected = index.getConnectedBonds(atom);
+		if (connected == null) {
+			index = indexBonds();
+			if (index != null) connected = index.getConnectedBonds(atom);
+		}
+		if (connected == null) {
+			List<IBond> found = new ArrayList<IBond>();
+			for (int i = 0; i < bondCount; i++) {
+				if (bonds[i].contains(atom)) found.add(bonds[i]);
+			}
+			connected = found.toArray(new IBond[found.size()]);
+		}
+		return connected;
+	}
+
+	/**
+	 *  Builds a new adjacency index, after having each bond set the
+	 *  adjacencyStale flag when its atoms change.
+	 *
+	 *@return    The index, or null if not all bonds can tell about changes
+	 */
+	private AdjacencyIndex indexBonds()
+	{
+		if (adjacencyStale == null) adjacencyStale = new AtomicBoolean();
+		adjacencyStale.set(false);
+		for (int i = 0; i < bondCount; i++) {
+			if (!watchBond(bonds[i], adjacencyStale)) {
+				adjacency = null;
+				return null;
+			}
+		}
+		AdjacencyIndex index = new AdjacencyIndex(bonds, bondCount);
+		adjacency = index;
+		return index;
+	}
+
+	/**
+	 *  Has a bond set the given flag when its atoms change.
+	 *
+	 *@param  bond  The bond to watch
+	 *@param  flag  The flag of the index the bond is listed in
+	 *@return       False if the bond is not a {@link Bond}
+	 */
+	private static boolean watchBond(IBond bond, AtomicBoolean flag)
+	{
+		if (!(bond instanceof Bond)) return false;
+		Bond watched = (Bond)bond;
+		synchronized (watched) {
+			AtomicBoolean[] flags = watched.indexFlags;
+			if (flags == null) {
+				watched.indexFlags = new AtomicBoolean[]{flag};
+				return true;
+			}
+			for (AtomicBoolean known : flags) {
+				if (known == flag) return true;
+			}
+			int kept = Math.min(flags.length, MAX_INDEX_FLAGS - 1);
+			for (int i = 0; i < flags.length - kept; i++) flags[i].set(true);
+			AtomicBoolean[] extended = new AtomicBoolean[kept + 1];
+			System.arraycopy(flags, flags.length - kept, extended, 0, kept);
+			extended[kept] = flag;
+			watched.indexFlags = extended;
+		}
+		return true;
+	}
+
 	/**
 	 *  Grows the atom array by a given size.
 	 *
@@ -33,6 +33,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Implements the concept of a covalent bond between two or more atoms. A bond is
@@ -86,6 +87,12 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
      */
     protected IBond.Stereo stereo;
 
+    /**
+     * Flags of the containers that index this bond, which are set when the
+     * atoms of this bond change. Kept up to date by {@link AtomContainer}.
+     */
+    transient volatile AtomicBoolean[] indexFlags;
+
     /**
      * Constructs an empty bond.
      */
@@ -206,6 +213,7 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
     public void setAtoms(IAtom[] atoms) {
         this.atoms = atoms;
         atomCount = atoms.length;
+        markIndexesStale();
         notifyChanged();
     }
 
@@ -313,6 +321,7 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
         if (atoms[position] == null && atom != null) atomCount++;
         if (atoms[position] != null && atom == null) atomCount--;
         atoms[position] = atom;
+        markIndexesStale();
         notifyChanged();
     }
 
@@ -447,6 +456,16 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
     }
 
 
+    /**
+     * Tells the containers that index this bond that its atoms changed.
+     */
+    private void markIndexesStale() {
+        AtomicBoolean[] flags = indexFlags;
+        if (flags != null) {
+            for (AtomicBoolean flag : flags) flag.set(true);
+        }
+    }
+
     /**
      * Clones this bond object, including clones of the atoms between which the
      * bond is defined.
@@ -455,6 +474,7 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
      */
     public Object clone() throws CloneNotSupportedException {
         Bond clone = (Bond) super.clone();
+        clone.indexFlags = null;
         // clone all the Atoms
         if (atoms != null) {
             clone.atoms = new IAtom[atoms.length];
@@ -0,0 +1,616 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.aromaticity;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IAtomType.Hybridization;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
+
+/**
+ * The result of atom type and aromaticity perception on an atom container,
+ * remembered for the container so that it is done only once. It records, by
+ * atom and bond index, the aromatic flags and the ring membership, the
+ * ring systems and the smallest ring size:
+ * <pre>
+ * PerceptionState state = PerceptionState.perceive(molecule);
+ * if (state.isInRing(0)) {
+ *     int size = state.getSmallestRingSize(0);
+ * }
+ * </pre>
+ *
+ * <p>{@link #perceive(IAtomContainer)} has the same effect on the container
+ * as {@link AtomContainerManipulator#percieveAtomTypesAndConfigureAtoms(IAtomContainer)}
+ * followed by {@link CDKHueckelAromaticityDetector#detectAromaticity(IAtomContainer)}.
+ * When it is called again, for example first by a fingerprinter and then by
+ * a descriptor, the atoms are configured with the atom types found the first
+ * time and the aromatic flags are set again, without atom type matching or
+ * a ring search. A clone of a perceived container takes the state over from
+ * the original when it is passed to {@link #perceive(IAtomContainer, IAtomContainer)}.
+ *
+ * <p>The states are not stored on the containers, which therefore still
+ * serialize, but in tables that do not keep the containers from being
+ * garbage collected. A state does not refer to the atoms and bonds, which
+ * may refer back to their container, but records the identity hash code of
+ * each as a stamp to compare with.
+ *
+ * <p>The state is checked against the container each time it is looked
+ * up: the atoms and bonds, their order, the element, charge, hydrogen count,
+ * atom type and hybridization of each atom, and the order and ring flag of
+ * each bond must not have changed. Otherwise the perception is done again.
+ * Changes to other atom type properties, made after perception, are not
+ * noticed; call {@link #invalidate(IAtomContainer)} after such changes.
+ *
+ * <p>Ring membership is found from the bridges of the molecular graph in a
+ * single depth-first pass, without a ring search: a bond is in a ring when
+ * it is not a bridge, and an atom when it has a ring bond. The ring systems
+ * are the connected parts of the ring bonds.
+ *
+ * @cdk.module  standard
+ * @cdk.githash
+ * @cdk.keyword aromaticity detection
+ * @cdk.keyword ring perception
+ */
+@TestClass("org.openscience.cdk.aromaticity.PerceptionStateTest")
+public class PerceptionState {
+
+    /** The number of tables the states are kept in, a power of two. */
+    private final static int TABLE_COUNT = 16;
+
+    /**
+     * The perception state of each container that was perceived, spread
+     * over several tables so that threads perceiving different containers
+     * seldom wait for each other.
+     */
+    private final static Map<IAtomContainer, PerceptionState>[] states = createTables();
+
+    /** The identity hash codes of the atoms and bonds. */
+    private final int[] atomStamps;
+    private final int[] bondStamps;
+    /** The values the atoms and bonds had when perceived. */
+    private final Invariants invariants;
+    /** The matched atom type of each atom, or null if none matched. */
+    private final IAtomType[] atomTypes;
+
+    /** The ring system of each atom, or -1 if not in a ring. */
+    private final int[] ringSystems;
+    private final int ringSystemCount;
+    private final int ringAtomCount;
+    /** The smallest ring size of each atom, found when first asked for. */
+    private final int[] smallestRingSizes;
+
+    private PerceptionState(IAtomContainer container, IAtomType[] atomTypes) {
+        int atomCount = container.getAtomCount();
+        int bondCount = container.getBondCount();
+        IAtom[] atoms = new IAtom[atomCount];
+        IBond[] bonds = new IBond[bondCount];
+        for (int i = 0; i < atomCount; i++) atoms[i] = container.getAtom(i);
+        for (int i = 0; i < bondCount; i++) bonds[i] = container.getBond(i);
+        atomStamps = stamps(atoms);
+        bondStamps = stamps(bonds);
+        invariants = new Invariants(atoms, bonds);
+        this.atomTypes = atomTypes;
+
+        ringSystems = new int[atomCount];
+        ringSystemCount = findRingSystems();
+        int count = 0;
+        for (int ringSystem : ringSystems) {
+            if (ringSystem >= 0) count++;
+        }
+        ringAtomCount = count;
+        smallestRingSizes = new int[atomCount];
+    }
+
+    private PerceptionState(PerceptionState state, IAtomContainer clone) {
+        IAtom[] atoms = new IAtom[state.atomStamps.length];
+        IBond[] bonds = new IBond[state.bondStamps.length];
+        for (int i = 0; i < atoms.length; i++) atoms[i] = clone.getAtom(i);
+        for (int i = 0; i < bonds.length; i++) bonds[i] = clone.getBond(i);
+        atomStamps = stamps(atoms);
+        bondStamps = stamps(bonds);
+        invariants = state.invariants;
+        atomTypes = state.atomTypes;
+        ringSystems = state.ringSystems;
+        ringSystemCount = state.ringSystemCount;
+        ringAtomCount = state.ringAtomCount;
+        smallestRingSizes = state.smallestRingSizes;
+    }
+
+    /**
+     * Perceives the atom types and aromaticity of the atoms in a container,
+     * unless this was done before and the container has not changed since.
+     *
+     * @param  container    the atom container to perceive
+     * @return              the perception state of the container
+     * @throws CDKException if atom type or aromaticity perception fails
+     */
+    @TestMethod("testPerceive,testPerceive_Cached,testPerceive_Changed")
+    public static PerceptionState perceive(IAtomContainer container) throws CDKException {
+        return perceive(container, null);
+    }
+
+    /**
+     * Perceives the atom types and aromaticity of the atoms in a clone of a
+     * container. If the original was perceived and the clone still has the
+     * same atoms and bonds, the state of the original is taken over.
+     *
+     * @param  container    the atom container to perceive
+     * @param  original     the container it was cloned from, or null
+     * @return              the perception state of the container
+     * @throws CDKException if atom type or aromaticity perception fails
+     */
+    @TestMethod("testPerceive_Clone")
+    public static PerceptionState perceive(IAtomContainer container, IAtomContainer original)
+        throws CDKException {
+        PerceptionState state = getCachedState(container);
+        if (state == null && original != null) {
+            PerceptionState originalState = getCachedState(original);
+            if (originalState != null && originalState.invariants.matches(container)) {
+                state = new PerceptionState(originalState, container);
+                table(container).put(container, state);
+            }
+        }
+        if (state != null) {
+            for (int i = 0; i < state.atomStamps.length; i++) {
+                IAtom atom = container.getAtom(i);
+                if (state.atomTypes[i] != null) AtomTypeManipulator.configure(atom, state.atomTypes[i]);
+                if (state.invariants.atomAromatic[i]) atom.setFlag(CDKConstants.ISAROMATIC, true);
+            }
+            for (int i = 0; i < state.bondStamps.length; i++) {
+                if (state.invariants.bondAromatic[i]) container.getBond(i).setFlag(CDKConstants.ISAROMATIC, true);
+            }
+            return state;
+        }
+        // as AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms, keeping the types
+        CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(container.getBuilder());
+        IAtomType[] atomTypes = new IAtomType[container.getAtomCount()];
+        for (int i = 0; i < atomTypes.length; i++) {
+            IAtom atom = container.getAtom(i);
+            if (atom instanceof IPseudoAtom) continue;
+            atomTypes[i] = matcher.findMatchingAtomType(container, atom);
+            if (atomTypes[i] != null) AtomTypeManipulator.configure(atom, atomTypes[i]);
+        }
+        CDKHueckelAromaticityDetector.detectAromaticity(container);
+        state = new PerceptionState(container, atomTypes);
+        table(container).put(container, state);
+        return state;
+    }
+
+    /**
+     * Returns the perception state of a container, if it is still valid.
+     *
+     * @param  container the atom container
+     * @return           the perception state, or null if the container was not
+     *                   perceived or has changed since
+     */
+    @TestMethod("testGetCachedState,testGetCachedState_Clone")
+    public static PerceptionState getCachedState(IAtomContainer container) {
+        Map<IAtomContainer, PerceptionState> table = table(container);
+        PerceptionState state = table.get(container);
+        if (state == null) return null;
+        if (state.isSameAs(container)) return state;
+        table.remove(container);
+        return null;
+    }
+
+    /**
+     * Forgets the perception state of a container, so that the next
+     * call of {@link #perceive(IAtomContainer)} perceives it again.
+     *
+     * @param container the atom container
+     */
+    @TestMethod("testInvalidate")
+    public static void invalidate(IAtomContainer container) {
+        table(container).remove(container);
+    }
+
+    /**
+     * Returns true if the atom was found to be aromatic.
+     *
+     * @param  atom the index of the atom
+     * @return      true if the atom is aromatic
+     */
+    @TestMethod("testPerceive")
+    public boolean isAromatic(int atom) {
+        return invariants.atomAromatic[atom];
+    }
+
+    /**
+     * Returns true if the bond was found to be aromatic.
+     *
+     * @param  bond the index of the bond
+     * @return      true if the bond is aromatic
+     */
+    @TestMethod("testPerceive")
+    public boolean isBondAromatic(int bond) {
+        return invariants.bondAromatic[bond];
+    }
+
+    /**
+     * Returns true if the atom is in a ring.
+     *
+     * @param  atom the index of the atom
+     * @return      true if the atom is in a ring
+     */
+    @TestMethod("testRings")
+    public boolean isInRing(int atom) {
+        return ringSystems[atom] >= 0;
+    }
+
+    /**
+     * Returns true if the bond is in a ring.
+     *
+     * @param  bond the index of the bond
+     * @return      true if the bond is in a ring
+     */
+    @TestMethod("testRings")
+    public boolean isBondInRing(int bond) {
+        return invariants.ringBonds[bond];
+    }
+
+    /**
+     * Returns the number of atoms in rings.
+     *
+     * @return the number of ring atoms
+     */
+    @TestMethod("testRings")
+    public int getRingAtomCount() {
+        return ringAtomCount;
+    }
+
+    /**
+     * Returns the number of ring systems: sets of rings that share atoms.
+     *
+     * @return the number of ring systems
+     */
+    @TestMethod("testRings")
+    public int getRingSystemCount() {
+        return ringSystemCount;
+    }
+
+    /**
+     * Returns the ring system of an atom, numbered from 0 in the order of
+     * their first atom.
+     *
+     * @param  atom the index of the atom
+     * @return      the index of the ring system, or -1 if the atom is not in a ring
+     */
+    @TestMethod("testRings")
+    public int getRingSystem(int atom) {
+        return ringSystems[atom];
+    }
+
+    /**
+     * Returns the size of the smallest ring the atom is in.
+     *
+     * @param  atom the index of the atom
+     * @return      the smallest ring size, or 0 if the atom is not in a ring
+     */
+    @TestMethod("testGetSmallestRingSize")
+    public int getSmallestRingSize(int atom) {
+        if (ringSystems[atom] < 0) return 0;
+        int size = smallestRingSizes[atom];
+        if (size == 0) {
+            size = findSmallestRingSize(atom);
+            smallestRingSizes[atom] = size;
+        }
+        return size;
+    }
+
+    /**
+     * Whether this state was perceived on the given atoms and bonds, which
+     * have not changed since.
+     */
+    private boolean isSameAs(IAtomContainer container) {
+        if (container.getAtomCount() != atomStamps.length || container.getBondCount() != bondStamps.length)
+            return false;
+        for (int i = 0; i < atomStamps.length; i++) {
+            IAtom atom = container.getAtom(i);
+            if (System.identityHashCode(atom) != atomStamps[i] || !invariants.matches(atom, i)) return false;
+        }
+        for (int i = 0; i < bondStamps.length; i++) {
+            IBond bond = container.getBond(i);
+            if (System.identityHashCode(bond) != bondStamps[i] || !invariants.matches(bond, i)) return false;
+            int atom0 = invariants.bondAtoms[2 * i];
+            if (atom0 >= 0 && (bond.getAtom(0) != container.getAtom(atom0)
+                               || bond.getAtom(1) != container.getAtom(invariants.bondAtoms[2 * i + 1])))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the table that keeps the state of a container.
+     */
+    private static Map<IAtomContainer, PerceptionState> table(IAtomContainer container) {
+        return states[System.identityHashCode(container) & (TABLE_COUNT - 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<IAtomContainer, PerceptionState>[] createTables() {
+        Map<IAtomContainer, PerceptionState>[] tables = new Map[TABLE_COUNT];
+        for (int i = 0; i < TABLE_COUNT; i++)
+            tables[i] = Collections.synchronizedMap(new WeakHashMap<IAtomContainer, PerceptionState>());
+        return tables;
+    }
+
+    /**
+     * Returns the identity hash codes of the given objects.
+     */
+    private static int[] stamps(Object[] objects) {
+        int[] stamps = new int[objects.length];
+        for (int i = 0; i < objects.length; i++) stamps[i] = System.identityHashCode(objects[i]);
+        return stamps;
+    }
+
+    /**
+     * Marks the bonds that are not bridges as ring bonds, by an iterative
+     * depth-first search, and numbers the connected parts of the ring bonds.
+     *
+     * @return the number of ring systems
+     */
+    private int findRingSystems() {
+        int atomCount = atomStamps.length;
+        int[][] adjacent = invariants.adjacentBonds;
+        int[] bondAtoms = invariants.bondAtoms;
+        boolean[] ringBonds = invariants.ringBonds;
+
+        int[] discovered = new int[atomCount];
+        int[] low = new int[atomCount];
+        int[] parentBond = new int[atomCount];
+        int[] next = new int[atomCount];
+        int[] stack = new int[atomCount];
+        int time = 0;
+        for (int root = 0; root < atomCount; root++) {
+            if (discovered[root] != 0) continue;
+            int depth = 0;
+            stack[depth++] = root;
+            discovered[root] = low[root] = ++time;
+            parentBond[root] = -1;
+            while (depth > 0) {
+                int atom = stack[depth - 1];
+                if (next[atom] < adjacent[atom].length) {
+                    int bond = adjacent[atom][next[atom]++];
+                    if (bond == parentBond[atom]) continue;
+                    int other = bondAtoms[2 * bond] == atom ? bondAtoms[2 * bond + 1] : bondAtoms[2 * bond];
+                    if (discovered[other] == 0) {
+                        discovered[other] = low[other] = ++time;
+                        parentBond[other] = bond;
+                        stack[depth++] = other;
+                    } else {
+                        // a back bond closes a ring
+                        ringBonds[bond] = true;
+                        if (discovered[other] < low[atom]) low[atom] = discovered[other];
+                    }
+                } else {
+                    depth--;
+                    int bond = parentBond[atom];
+                    if (bond < 0) continue;
+                    int parent = stack[depth - 1];
+                    if (low[atom] < low[parent]) low[parent] = low[atom];
+                    // the bond to the parent is a bridge unless the subtree reaches above it
+                    ringBonds[bond] = low[atom] <= discovered[parent];
+                }
+            }
+        }
+
+        Arrays.fill(ringSystems, -1);
+        int systemCount = 0;
+        for (int root = 0; root < atomCount; root++) {
+            if (ringSystems[root] >= 0 || !hasRingBond(root)) continue;
+            int depth = 0;
+            stack[depth++] = root;
+            ringSystems[root] = systemCount;
+            while (depth > 0) {
+                int atom = stack[--depth];
+                for (int bond : adjacent[atom]) {
+                    if (!ringBonds[bond]) continue;
+                    int other = bondAtoms[2 * bond] == atom ? bondAtoms[2 * bond + 1] : bondAtoms[2 * bond];
+                    if (ringSystems[other] < 0) {
+                        ringSystems[other] = systemCount;
+                        stack[depth++] = other;
+                    }
+                }
+            }
+            systemCount++;
+        }
+        return systemCount;
+    }
+
+    private boolean hasRingBond(int atom) {
+        for (int bond : invariants.adjacentBonds[atom]) {
+            if (invariants.ringBonds[bond]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the smallest ring through an atom, by a breadth-first search
+     * over ring bonds for two paths that leave the atom by different bonds
+     * and meet.
+     */
+    private int findSmallestRingSize(int start) {
+        int[][] adjacent = invariants.adjacentBonds;
+        int[] bondAtoms = invariants.bondAtoms;
+        boolean[] ringBonds = invariants.ringBonds;
+        // the distance from the start atom, the first bond and the last bond of the path
+        Map<Integer, int[]> paths = new HashMap<Integer, int[]>();
+        int[] queue = new int[atomStamps.length];
+        int head = 0, tail = 0;
+        paths.put(start, new int[]{0, -1, -1});
+        queue[tail++] = start;
+        int smallest = Integer.MAX_VALUE;
+        while (head < tail) {
+            int atom = queue[head++];
+            int[] path = paths.get(atom);
+            if (2 * path[0] >= smallest) break;
+            for (int bond : adjacent[atom]) {
+                if (!ringBonds[bond] || bond == path[2]) continue;
+                int other = bondAtoms[2 * bond] == atom ? bondAtoms[2 * bond + 1] : bondAtoms[2 * bond];
+                int[] otherPath = paths.get(other);
+                if (otherPath == null) {
+                    paths.put(other, new int[]{path[0] + 1, path[1] < 0 ? bond : path[1], bond});
+                    queue[tail++] = other;
+                } else if (otherPath[2] != bond && otherPath[1] != path[1]) {
+                    smallest = Math.min(smallest, path[0] + otherPath[0] + 1);
+                }
+            }
+        }
+        return smallest == Integer.MAX_VALUE ? 0 : smallest;
+    }
+
+    /**
+     * The values of the atoms and bonds that perception depends on, and
+     * the graph and flags it found, by index.
+     */
+    private static class Invariants {
+
+        final String[] symbols;
+        final Integer[] charges;
+        final Integer[] hydrogenCounts;
+        final String[] atomTypeNames;
+        final Hybridization[] hybridizations;
+        final boolean[] atomAromatic;
+
+        final IBond.Order[] orders;
+        final boolean[] bondRingFlags;
+        final boolean[] bondAromatic;
+        /** The indices of the two atoms of each bond, or -1 if not two. */
+        final int[] bondAtoms;
+
+        final int[][] adjacentBonds;
+        final boolean[] ringBonds;
+
+        Invariants(IAtom[] atoms, IBond[] bonds) {
+            symbols = new String[atoms.length];
+            charges = new Integer[atoms.length];
+            hydrogenCounts = new Integer[atoms.length];
+            atomTypeNames = new String[atoms.length];
+            hybridizations = new Hybridization[atoms.length];
+            atomAromatic = new boolean[atoms.length];
+            Map<IAtom, Integer> indices = new IdentityHashMap<IAtom, Integer>(2 * atoms.length);
+            for (int i = 0; i < atoms.length; i++) {
+                IAtom atom = atoms[i];
+                symbols[i] = atom.getSymbol();
+                charges[i] = atom.getFormalCharge();
+                hydrogenCounts[i] = atom.getImplicitHydrogenCount();
+                atomTypeNames[i] = atom.getAtomTypeName();
+                hybridizations[i] = atom.getHybridization();
+                atomAromatic[i] = atom.getFlag(CDKConstants.ISAROMATIC);
+                indices.put(atom, i);
+            }
+
+            orders = new IBond.Order[bonds.length];
+            bondRingFlags = new boolean[bonds.length];
+            bondAromatic = new boolean[bonds.length];
+            bondAtoms = new int[2 * bonds.length];
+            int[] degree = new int[atoms.length];
+            for (int i = 0; i < bonds.length; i++) {
+                IBond bond = bonds[i];
+                orders[i] = bond.getOrder();
+                bondRingFlags[i] = bond.getFlag(CDKConstants.ISINRING);
+                bondAromatic[i] = bond.getFlag(CDKConstants.ISAROMATIC);
+                Integer atom0 = bond.getAtomCount() == 2 ? indices.get(bond.getAtom(0)) : null;
+                Integer atom1 = bond.getAtomCount() == 2 ? indices.get(bond.getAtom(1)) : null;
+                if (atom0 == null || atom1 == null || atom0.equals(atom1)) {
+                    bondAtoms[2 * i] = bondAtoms[2 * i + 1] = -1;
+                } else {
+                    bondAtoms[2 * i] = atom0;
+                    bondAtoms[2 * i + 1] = atom1;
+                    degree[atom0]++;
+                    degree[atom1]++;
+                }
+            }
+            adjacentBonds = new int[atoms.length][];
+            for (int i = 0; i < atoms.length; i++) adjacentBonds[i] = new int[degree[i]];
+            Arrays.fill(degree, 0);
+            for (int i = 0; i < bonds.length; i++) {
+                int atom0 = bondAtoms[2 * i];
+                if (atom0 < 0) continue;
+                int atom1 = bondAtoms[2 * i + 1];
+                adjacentBonds[atom0][degree[atom0]++] = i;
+                adjacentBonds[atom1][degree[atom1]++] = i;
+            }
+            ringBonds = new boolean[bonds.length];
+        }
+
+        boolean matches(IAtom atom, int index) {
+            return equal(symbols[index], atom.getSymbol())
+                && equal(charges[index], atom.getFormalCharge())
+                && equal(hydrogenCounts[index], atom.getImplicitHydrogenCount())
+                && equal(atomTypeNames[index], atom.getAtomTypeName())
+                && hybridizations[index] == atom.getHybridization();
+        }
+
+        boolean matches(IBond bond, int index) {
+            return orders[index] == bond.getOrder()
+                && bondRingFlags[index] == bond.getFlag(CDKConstants.ISINRING);
+        }
+
+        /**
+         * Whether a container has the same atoms and bonds by index, as a
+         * clone has.
+         */
+        boolean matches(IAtomContainer container) {
+            if (container.getAtomCount() != symbols.length || container.getBondCount() != orders.length)
+                return false;
+            Map<IAtom, Integer> indices = new IdentityHashMap<IAtom, Integer>(2 * symbols.length);
+            for (int i = 0; i < symbols.length; i++) {
+                IAtom atom = container.getAtom(i);
+                if (!matches(atom, i)) return false;
+                indices.put(atom, i);
+            }
+            for (int i = 0; i < orders.length; i++) {
+                IBond bond = container.getBond(i);
+                if (!matches(bond, i)) return false;
+                if (bondAtoms[2 * i] < 0) continue;
+                if (bond.getAtomCount() != 2
+                    || !Integer.valueOf(bondAtoms[2 * i]).equals(indices.get(bond.getAtom(0)))
+                    || !Integer.valueOf(bondAtoms[2 * i + 1]).equals(indices.get(bond.getAtom(1))))
+                    return false;
+            }
+            return true;
+        }
+
+        private static boolean equal(Object value1, Object value2) {
+            return value1 == null ? value2 == null : value1.equals(value2);
+        }
+    }
+
+}
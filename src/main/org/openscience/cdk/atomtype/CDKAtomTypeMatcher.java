@@ -20,10 +20,13 @@
  */
 package org.openscience.cdk.atomtype;
 
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
@@ -31,6 +34,7 @@ import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.config.AtomTypeFactory;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.exception.NoSuchAtomException;
+import org.openscience.cdk.exception.NoSuchAtomTypeException;
 import org.openscience.cdk.graph.SpanningTree;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -62,16 +66,52 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
 	public final static int REQUIRE_EXPLICIT_HYDROGENS = 2;
 	
 	private AtomTypeFactory factory;
+	private Map<String,IAtomType> atomTypes;
 	private int mode;
 	
-    private static Map<Integer,Map<IChemObjectBuilder,CDKAtomTypeMatcher>> 
-    	factories = new Hashtable<Integer,Map<IChemObjectBuilder,CDKAtomTypeMatcher>>(1); 
+    private static ConcurrentMap<Integer,ConcurrentMap<IChemObjectBuilder,CDKAtomTypeMatcher>> 
+    	factories = new ConcurrentHashMap<Integer,ConcurrentMap<IChemObjectBuilder,CDKAtomTypeMatcher>>(1); 
+
+    /** Atomic numbers of the elements which have their own perception method. */
+    private final static Map<String,Integer> ATOMIC_NUMBERS = new HashMap<String,Integer>();
+    static {
+        String[] symbols = {
+            "H", "Li", "Be", "B", "C", "N", "O", "Na",
+            "Mg", "Al", "Si", "P", "S", "Cl", "K", "Ca",
+            "Ti", "V", "Cr", "Mn", "Fe", "Ni", "Cu", "Zn",
+            "Ga", "Ge", "As", "Se", "Br", "Rb", "Sr", "Mo",
+            "Ru", "Ag", "Cd", "In", "Sb", "Te", "Ba", "Gd",
+            "Pt", "Au", "Hg", "Tl", "Pb", "Ra", "Th", "Pu"
+        };
+        int[] atomicNumbers = {
+            1, 3, 4, 5, 6, 7, 8, 11,
+            12, 13, 14, 15, 16, 17, 19, 20,
+            22, 23, 24, 25, 26, 28, 29, 30,
+            31, 32, 33, 34, 35, 37, 38, 42,
+            44, 47, 48, 49, 51, 52, 56, 64,
+            78, 79, 80, 81, 82, 88, 90, 94
+        };
+        for (int i=0; i<symbols.length; i++)
+            ATOMIC_NUMBERS.put(symbols[i], atomicNumbers[i]);
+    }
     
     private CDKAtomTypeMatcher(IChemObjectBuilder builder, int mode) {
     	factory = AtomTypeFactory.getInstance(
 			"org/openscience/cdk/dict/data/cdk-atom-types.owl",
 			builder
 		);
+    	// index the atom types by name, keeping the instances the factory hands out
+    	atomTypes = new HashMap<String,IAtomType>();
+    	for (IAtomType type : factory.getAllAtomTypes()) {
+    		String name = type.getAtomTypeName();
+    		if (name != null && !atomTypes.containsKey(name)) {
+    			try {
+    				atomTypes.put(name, factory.getAtomType(name));
+    			} catch (NoSuchAtomTypeException exception) {
+    				// not indexed; getAtomType() will report it
+    			}
+    		}
+    	}
     	this.mode = mode;
     }
     
@@ -82,19 +122,26 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
 
     @TestMethod("testGetInstance_IChemObjectBuilder_int")
     public static CDKAtomTypeMatcher getInstance(IChemObjectBuilder builder, int mode) {
-    	if (!factories.containsKey(mode))
-    		factories.put(mode, new Hashtable<IChemObjectBuilder,CDKAtomTypeMatcher>(1));
-    	if (!factories.get(mode).containsKey(builder))
-    		factories.get(mode).put(builder, new CDKAtomTypeMatcher(builder, mode));
-    	return factories.get(mode).get(builder);
+    	ConcurrentMap<IChemObjectBuilder,CDKAtomTypeMatcher> matchers = factories.get(mode);
+    	if (matchers == null) {
+    		factories.putIfAbsent(mode, new ConcurrentHashMap<IChemObjectBuilder,CDKAtomTypeMatcher>(1));
+    		matchers = factories.get(mode);
+    	}
+    	CDKAtomTypeMatcher matcher = matchers.get(builder);
+    	if (matcher == null) {
+    		matchers.putIfAbsent(builder, new CDKAtomTypeMatcher(builder, mode));
+    		matcher = matchers.get(builder);
+    	}
+    	return matcher;
     }
     
     @TestMethod("testFindMatchingAtomType_IAtomContainer")
     public IAtomType[] findMatchingAtomType(IAtomContainer atomContainer) throws CDKException {
         IAtomType[] types = new IAtomType[atomContainer.getAtomCount()];
+        NeighbourhoodCache neighbourhoods = new NeighbourhoodCache(atomContainer, atomContainer.getAtomCount());
         int typeCounter = 0;
         for (IAtom atom : atomContainer.atoms()) {
-            types[typeCounter] = findMatchingAtomType(atomContainer, atom);
+            types[typeCounter] = findMatchingAtomType(neighbourhoods, atom);
             typeCounter++;
         }
         return types;
@@ -103,116 +150,74 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     @TestMethod("testFindMatchingAtomType_IAtomContainer_IAtom")
     public IAtomType findMatchingAtomType(IAtomContainer atomContainer, IAtom atom)
         throws CDKException {
-        IAtomType type = null;
+        return findMatchingAtomType(new NeighbourhoodCache(atomContainer, 4), atom);
+    }
+
+    private IAtomType findMatchingAtomType(NeighbourhoodCache atomContainer, IAtom atom)
+        throws CDKException {
         if (atom instanceof IPseudoAtom) {
         	return factory.getAtomType("X");
         }
-        if ("C".equals(atom.getSymbol())) {
-            type = perceiveCarbons(atomContainer, atom);
-        } else if ("Li".equals(atom.getSymbol())) {
-            type = perceiveLithium(atomContainer, atom);
-        } else if ("O".equals(atom.getSymbol())) {
-            type = perceiveOxygens(atomContainer, atom);
-        } else if ("N".equals(atom.getSymbol())) {
-            type = perceiveNitrogens(atomContainer, atom);
-        } else if ("H".equals(atom.getSymbol())) {
-            type = perceiveHydrogens(atomContainer, atom);
-        } else if ("S".equals(atom.getSymbol())) {
-            type = perceiveSulphurs(atomContainer, atom);
-        } else if ("P".equals(atom.getSymbol())) {
-            type = perceivePhosphors(atomContainer, atom);
-        } else if ("Si".equals(atom.getSymbol())) {
-            type = perceiveSilicon(atomContainer, atom);
-        } else if ("B".equals(atom.getSymbol())) {
-            type = perceiveBorons(atomContainer, atom);
-        } else if ("Be".equals(atom.getSymbol())) {
-            type = perceiveBeryllium(atomContainer, atom);
-        } else if ("Cr".equals(atom.getSymbol())) {
-            type = perceiveChromium(atomContainer, atom);
-        } else if ("Se".equals(atom.getSymbol())) {
-            type = perceiveSelenium(atomContainer, atom);
-        } else if ("Mo".equals(atom.getSymbol())) {
-            type = perceiveMolybdenum(atomContainer, atom);
-        } else if ("Rb".equals(atom.getSymbol())) {
-            type = perceiveRubidium(atomContainer, atom);
-        } else if ("Te".equals(atom.getSymbol())) {
-            type = perceiveTellurium(atomContainer, atom);
-        } else if ("Cu".equals(atom.getSymbol())) {
-            type = perceiveCopper(atomContainer, atom);
-        } else if ("Ba".equals(atom.getSymbol())) {
-            type = perceiveBarium(atomContainer, atom);
-        } else if ("Ga".equals(atom.getSymbol())) {
-            type = perceiveGallium(atomContainer, atom);
-        } else if ("Ru".equals(atom.getSymbol())) {
-            type = perceiveRuthenium(atomContainer, atom);
-        } else if ("Zn".equals(atom.getSymbol())) {
-            type = perceiveZinc(atomContainer, atom);
-        } else if ("Al".equals(atom.getSymbol())) {
-            type = perceiveAluminium(atomContainer, atom);
-        }  else if ("Ni".equals(atom.getSymbol())) {
-            type = perceiveNickel(atomContainer, atom);
-        } else if ("Gd".equals(atom.getSymbol())) {
-            type = perceiveGadolinum(atomContainer, atom);
-        } else if ("Ge".equals(atom.getSymbol())) {
-            type = perceiveGermanium(atomContainer, atom);
-        } else if ("Br".equals(atom.getSymbol())) {
-            type = perceiveBromine(atomContainer, atom);
-        } else if ("V".equals(atom.getSymbol())) {
-            type = perceiveVanadium(atomContainer, atom);
-        } else if ("Ti".equals(atom.getSymbol())) {
-            type = perceiveTitanium(atomContainer, atom);
-        } else if ("Sr".equals(atom.getSymbol())) {
-            type = perceiveStrontium(atomContainer, atom);
-        } else if ("Pb".equals(atom.getSymbol())) {
-            type = perceiveLead(atomContainer, atom);
-        } else if ("Tl".equals(atom.getSymbol())) {
-            type = perceiveThallium(atomContainer, atom);
-        } else if ("Sb".equals(atom.getSymbol())) {
-            type = perceiveAntimony(atomContainer, atom);
-        } else if ("Pt".equals(atom.getSymbol())) {
-            type = perceivePlatinum(atomContainer, atom);
-        } else if ("Hg".equals(atom.getSymbol())) {
-            type = perceiveMercury(atomContainer, atom);
-        } else if ("Fe".equals(atom.getSymbol())) {
-            type = perceiveIron(atomContainer, atom);
-        } else if ("Ra".equals(atom.getSymbol())) {
-            type = perceiveRadium(atomContainer, atom);
-        } else if ("Au".equals(atom.getSymbol())) {
-            type = perceiveGold(atomContainer, atom);
-        } else if ("Ag".equals(atom.getSymbol())) {
-            type = perceiveSilver(atomContainer, atom);
-        } else if ("Cl".equals(atom.getSymbol())) {
-            type = perceiveChlorine(atomContainer, atom);
-        } else if ("In".equals(atom.getSymbol())) {
-            type = perceiveIndium(atomContainer, atom);
-        } else if ("Pu".equals(atom.getSymbol())) {
-            type = perceivePlutonium(atomContainer, atom);
-        } else if ("Th".equals(atom.getSymbol())) {
-            type = perceiveThorium(atomContainer, atom);
-        } else if ("K".equals(atom.getSymbol())) {
-            type = perceivePotassium(atomContainer, atom);
-        } else if ("Mn".equals(atom.getSymbol())) {
-            type = perceiveManganese(atomContainer, atom);
-        } else if ("Mg".equals(atom.getSymbol())) {
-            type = perceiveMagnesium(atomContainer, atom);
-        } else if ("Na".equals(atom.getSymbol())) {
-            type = perceiveSodium(atomContainer, atom);
-        } else if ("As".equals(atom.getSymbol())) {
-            type = perceiveArsenic(atomContainer, atom);
-        } else if ("Cd".equals(atom.getSymbol())) {
-            type = perceiveCadmium(atomContainer, atom);
-        } else if ("Ca".equals(atom.getSymbol())) {
-            type = perceiveCalcium(atomContainer, atom);
-        } else {
-            if (type == null) type = perceiveHalogens(atomContainer, atom);
-            if (type == null) type = perceiveCommonSalts(atomContainer, atom);
-            if (type == null) type = perceiveOrganometallicCenters(atomContainer, atom);
-            if (type == null) type = perceiveNobelGases(atomContainer, atom);
+        Integer atomicNumber = ATOMIC_NUMBERS.get(atom.getSymbol());
+        switch (atomicNumber == null ? 0 : atomicNumber) {
+            case 1: return perceiveHydrogens(atomContainer, atom);
+            case 3: return perceiveLithium(atomContainer, atom);
+            case 4: return perceiveBeryllium(atomContainer, atom);
+            case 5: return perceiveBorons(atomContainer, atom);
+            case 6: return perceiveCarbons(atomContainer, atom);
+            case 7: return perceiveNitrogens(atomContainer, atom);
+            case 8: return perceiveOxygens(atomContainer, atom);
+            case 11: return perceiveSodium(atomContainer, atom);
+            case 12: return perceiveMagnesium(atomContainer, atom);
+            case 13: return perceiveAluminium(atomContainer, atom);
+            case 14: return perceiveSilicon(atomContainer, atom);
+            case 15: return perceivePhosphors(atomContainer, atom);
+            case 16: return perceiveSulphurs(atomContainer, atom);
+            case 17: return perceiveChlorine(atomContainer, atom);
+            case 19: return perceivePotassium(atomContainer, atom);
+            case 20: return perceiveCalcium(atomContainer, atom);
+            case 22: return perceiveTitanium(atomContainer, atom);
+            case 23: return perceiveVanadium(atomContainer, atom);
+            case 24: return perceiveChromium(atomContainer, atom);
+            case 25: return perceiveManganese(atomContainer, atom);
+            case 26: return perceiveIron(atomContainer, atom);
+            case 28: return perceiveNickel(atomContainer, atom);
+            case 29: return perceiveCopper(atomContainer, atom);
+            case 30: return perceiveZinc(atomContainer, atom);
+            case 31: return perceiveGallium(atomContainer, atom);
+            case 32: return perceiveGermanium(atomContainer, atom);
+            case 33: return perceiveArsenic(atomContainer, atom);
+            case 34: return perceiveSelenium(atomContainer, atom);
+            case 35: return perceiveBromine(atomContainer, atom);
+            case 37: return perceiveRubidium(atomContainer, atom);
+            case 38: return perceiveStrontium(atomContainer, atom);
+            case 42: return perceiveMolybdenum(atomContainer, atom);
+            case 44: return perceiveRuthenium(atomContainer, atom);
+            case 47: return perceiveSilver(atomContainer, atom);
+            case 48: return perceiveCadmium(atomContainer, atom);
+            case 49: return perceiveIndium(atomContainer, atom);
+            case 51: return perceiveAntimony(atomContainer, atom);
+            case 52: return perceiveTellurium(atomContainer, atom);
+            case 56: return perceiveBarium(atomContainer, atom);
+            case 64: return perceiveGadolinum(atomContainer, atom);
+            case 78: return perceivePlatinum(atomContainer, atom);
+            case 79: return perceiveGold(atomContainer, atom);
+            case 80: return perceiveMercury(atomContainer, atom);
+            case 81: return perceiveThallium(atomContainer, atom);
+            case 82: return perceiveLead(atomContainer, atom);
+            case 88: return perceiveRadium(atomContainer, atom);
+            case 90: return perceiveThorium(atomContainer, atom);
+            case 94: return perceivePlutonium(atomContainer, atom);
+            default:
+                IAtomType type = perceiveHalogens(atomContainer, atom);
+                if (type == null) type = perceiveCommonSalts(atomContainer, atom);
+                if (type == null) type = perceiveOrganometallicCenters(atomContainer, atom);
+                if (type == null) type = perceiveNobelGases(atomContainer, atom);
+                return type;
         }
-        return type;
     }
     
-    private IAtomType perceiveGallium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveGallium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
         if (!isCharged(atom) && maxBondOrder == IBond.Order.SINGLE &&
             atomContainer.getConnectedAtomsCount(atom) <= 3) {
@@ -225,7 +230,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-    private IAtomType perceiveGermanium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveGermanium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
         if (!isCharged(atom) && maxBondOrder == IBond.Order.SINGLE &&
             atomContainer.getConnectedAtomsCount(atom) <= 4) {
@@ -239,7 +244,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-    private IAtomType perceiveSelenium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveSelenium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if ("Se".equals(atom.getSymbol())) {
             int doublebondcount = countAttachedDoubleBonds(atomContainer, atom);
             if (atom.getFormalCharge() != CDKConstants.UNSET
@@ -292,7 +297,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-    private IAtomType perceiveTellurium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveTellurium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
         if (!isCharged(atom) && maxBondOrder == IBond.Order.SINGLE && atomContainer.getConnectedAtomsCount(atom) <= 2) {
             IAtomType type = getAtomType("Te.3");
@@ -306,7 +311,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-	private IAtomType perceiveBorons(IAtomContainer atomContainer, IAtom atom)
+	private IAtomType perceiveBorons(NeighbourhoodCache atomContainer, IAtom atom)
 		throws CDKException {
 	    IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
 	    if (atom.getFormalCharge() == -1 && 
@@ -325,7 +330,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return null;
     }
 
-    private IAtomType perceiveBeryllium(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveBeryllium(NeighbourhoodCache atomContainer, IAtom atom)
     	throws CDKException {
 		if (atom.getFormalCharge() == -2 &&
 		    atomContainer.getMaximumBondOrder(atom) == IBond.Order.SINGLE &&
@@ -340,7 +345,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
 		return null;
     }
 
-    private IAtomType perceiveCarbonRadicals(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveCarbonRadicals(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atomContainer.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("C.radical.planar");
             if (isAcceptable(atom, atomContainer, type)) return type;
@@ -360,7 +365,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-	private IAtomType perceiveCarbons(IAtomContainer atomContainer, IAtom atom)
+	private IAtomType perceiveCarbons(NeighbourhoodCache atomContainer, IAtom atom)
     	throws CDKException {
 	    // if hybridization is given, use that
 	    if (hasOneSingleElectron(atomContainer, atom)) {
@@ -451,24 +456,15 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return null;
     }
 
-    private boolean hasOneSingleElectron(IAtomContainer atomContainer, IAtom atom) {
-	    Iterator<ISingleElectron> singleElectrons = atomContainer.singleElectrons().iterator();
-	    while (singleElectrons.hasNext()) {
-	    	if (singleElectrons.next().contains(atom)) return true;
-	    }
-	    return false;
+    private boolean hasOneSingleElectron(NeighbourhoodCache atomContainer, IAtom atom) {
+	    return atomContainer.getConnectedSingleElectronsCount(atom) > 0;
     }
 
-    private int countSingleElectrons(IAtomContainer atomContainer, IAtom atom) {
-	    Iterator<ISingleElectron> singleElectrons = atomContainer.singleElectrons().iterator();
-	    int count = 0;
-	    while (singleElectrons.hasNext()) {
-	    	if (singleElectrons.next().contains(atom)) count++;
-	    }
-	    return count;
+    private int countSingleElectrons(NeighbourhoodCache atomContainer, IAtom atom) {
+	    return atomContainer.getConnectedSingleElectronsCount(atom);
     }
 
-    private IAtomType perceiveOxygenRadicals(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveOxygenRadicals(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() == 0) {
             if (atomContainer.getConnectedBondsCount(atom) <= 1) {
                 IAtomType type = getAtomType("O.sp3.radical");
@@ -500,7 +496,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return atom.getHybridization() != CDKConstants.UNSET;
     }
     
-	private IAtomType perceiveOxygens(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+	private IAtomType perceiveOxygens(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
 	    if (hasOneSingleElectron(atomContainer, atom)) {
 	        return perceiveOxygenRadicals(atomContainer, atom);
 	    }
@@ -596,7 +592,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return null;
     }
 
-    private boolean isCarboxylate(IAtom atom, IAtomContainer container) {
+    private boolean isCarboxylate(IAtom atom, NeighbourhoodCache container) {
         // assumes that the oxygen only has one neighbor (C=O, or C-[O-])
         List<IAtom> neighbors = container.getConnectedAtomsList(atom);
         if (neighbors.size() != 1) return false;
@@ -622,7 +618,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return (oxygenCount == 2) && (singleBondedNegativeOxygenCount == 1) && (doubleBondedOxygenCount == 1);
     }
 
-    private boolean atLeastTwoNeighborsAreSp2(IAtom atom, IAtomContainer atomContainer) {
+    private boolean atLeastTwoNeighborsAreSp2(IAtom atom, NeighbourhoodCache atomContainer) {
     	int count = 0;
     	Iterator<IAtom> atoms = atomContainer.getConnectedAtomsList(atom).iterator();
     	while (atoms.hasNext() && (count < 2)) {
@@ -641,11 +637,11 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return count >= 2;
     }
 
-    private boolean bothNeighborsAreSp2(IAtom atom, IAtomContainer atomContainer) {       
+    private boolean bothNeighborsAreSp2(IAtom atom, NeighbourhoodCache atomContainer) {       
     	return atLeastTwoNeighborsAreSp2(atom, atomContainer);
     }
 
-    private IAtomType perceiveNitrogenRadicals(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveNitrogenRadicals(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atomContainer.getConnectedBondsCount(atom) >= 1 &&
                 atomContainer.getConnectedBondsCount(atom) <= 2) {
             IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
@@ -678,7 +674,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         }
         return null;
     }
-    private IAtomType perceiveMolybdenum(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveMolybdenum(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0) {
             int neighbors = atomContainer.getConnectedAtomsCount(atom);
@@ -695,7 +691,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         }
         return null;
     }
-    private IAtomType perceiveNitrogens(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveNitrogens(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         // if hybridization is given, use that
         if (hasOneSingleElectron(atomContainer, atom)) {
             return perceiveNitrogenRadicals(atomContainer, atom);
@@ -899,16 +895,14 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return null;
     }
 
-    private boolean isRingAtom(IAtom atom, IAtomContainer atomContainer) {
-    	SpanningTree st = new SpanningTree(atomContainer);
-        return st.getCyclicFragmentsContainer().contains(atom);
+    private boolean isRingAtom(IAtom atom, NeighbourhoodCache atomContainer) {
+        return atomContainer.getCyclicFragmentsContainer().contains(atom);
     }
 
-    private IRing getRing(IAtom atom, IAtomContainer atomContainer) {
-    	SpanningTree st = new SpanningTree(atomContainer);
+    private IRing getRing(IAtom atom, NeighbourhoodCache atomContainer) {
     	try {
-    		if (st.getCyclicFragmentsContainer().contains(atom)) {
-    			IRingSet set = st.getAllRings();
+    		if (atomContainer.getCyclicFragmentsContainer().contains(atom)) {
+    			IRingSet set = atomContainer.getAllRings();
     			for (int i=0; i<set.getAtomContainerCount(); i++) {
     				IRing ring = (IRing)set.getAtomContainer(i);
     				if (ring.contains(atom)) {
@@ -922,7 +916,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return null;
     }
 
-    private boolean isAmide(IAtom atom, IAtomContainer atomContainer) {
+    private boolean isAmide(IAtom atom, NeighbourhoodCache atomContainer) {
     	List<IAtom> neighbors = atomContainer.getConnectedAtomsList(atom);
     	for (IAtom neighbor : neighbors) {
     		if (neighbor.getSymbol().equals("C")) {
@@ -932,7 +926,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return false;
     }
 
-    private boolean isThioAmide(IAtom atom, IAtomContainer atomContainer) {
+    private boolean isThioAmide(IAtom atom, NeighbourhoodCache atomContainer) {
         List<IAtom> neighbors = atomContainer.getConnectedAtomsList(atom);
         for (IAtom neighbor : neighbors) {
             if (neighbor.getSymbol().equals("C")) {
@@ -942,7 +936,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return false;
     }
 
-    private int countExplicitHydrogens(IAtom atom, IAtomContainer atomContainer) {
+    private int countExplicitHydrogens(IAtom atom, NeighbourhoodCache atomContainer) {
     	int count = 0;
         for (IAtom aAtom : atomContainer.getConnectedAtomsList(atom)) {
             if (aAtom.getSymbol().equals("H")) {
@@ -952,7 +946,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return count;
     }
     
-    private IAtomType perceiveIron(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveIron(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if ("Fe".equals(atom.getSymbol())) {
             if (hasOneSingleElectron(atomContainer, atom)) {
                 // no idea how to deal with this yet
@@ -1039,7 +1033,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     }
 
 
-    private IAtomType perceiveMercury(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveMercury(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if ("Hg".equals(atom.getSymbol())) {
             if (hasOneSingleElectron(atomContainer, atom)) {
                 // no idea how to deal with this yet
@@ -1089,7 +1083,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-    private IAtomType perceiveSulphurs(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveSulphurs(NeighbourhoodCache atomContainer, IAtom atom)
     throws CDKException {
         List<IBond> neighbors = atomContainer.getConnectedBondsList(atom);
         IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
@@ -1226,7 +1220,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-    private IAtomType perceivePhosphors(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceivePhosphors(NeighbourhoodCache atomContainer, IAtom atom)
     throws CDKException {
         List<IBond> neighbors = atomContainer.getConnectedBondsList(atom);
         int neighborcount = neighbors.size();
@@ -1296,7 +1290,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return null;
     }
     
-    private IAtomType perceiveHydrogens(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveHydrogens(NeighbourhoodCache atomContainer, IAtom atom)
     throws CDKException {
         int neighborcount = atomContainer.getConnectedBondsCount(atom);
         if (hasOneSingleElectron(atomContainer, atom)) {
@@ -1329,7 +1323,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return null;
     }
 
-    private IAtomType perceiveLithium(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveLithium(NeighbourhoodCache atomContainer, IAtom atom)
     	throws CDKException {
         int neighborcount = atomContainer.getConnectedBondsCount(atom);
         if (neighborcount == 1) {
@@ -1353,7 +1347,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return null;
     }
 
-    private IAtomType perceiveHalogens(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveHalogens(NeighbourhoodCache atomContainer, IAtom atom)
     throws CDKException {
     	if ("F".equals(atom.getSymbol())) {
     		if (hasOneSingleElectron(atomContainer, atom)) {
@@ -1401,7 +1395,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     		
     	return null;
     }
-    private IAtomType perceiveArsenic(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveArsenic(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -1447,7 +1441,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }   
      
-    private IAtomType perceiveThorium(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveThorium(NeighbourhoodCache atomContainer, IAtom atom)
             throws CDKException {
         if ("Th".equals(atom.getSymbol())) {
             if (atom.getFormalCharge() == 0 && atomContainer.getConnectedBondsCount(atom) == 0) {
@@ -1460,7 +1454,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-    private IAtomType perceiveRubidium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveRubidium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             return null;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
@@ -1478,7 +1472,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         }
         return null;
     }
-    private IAtomType perceiveCommonSalts(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveCommonSalts(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if ("Mg".equals(atom.getSymbol())) {
     		if (hasOneSingleElectron(atomContainer, atom)) {
     			// no idea how to deal with this yet
@@ -1517,7 +1511,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	}
     	return null;
     }
-    private IAtomType perceiveCopper(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveCopper(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -1550,7 +1544,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         }
         return null;
     }
-    private IAtomType perceiveBarium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveBarium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
@@ -1562,7 +1556,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         }
         return null;
     }
-    private IAtomType perceiveAluminium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveAluminium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 3) {
             int connectedBondsCount = atomContainer.getConnectedBondsCount(atom);
@@ -1589,7 +1583,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         }
         return null;
     }
-    private IAtomType perceiveZinc(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveZinc(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -1616,7 +1610,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         }
         return null;
     }
-    private IAtomType perceiveChromium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveChromium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0
                 && atomContainer.getConnectedBondsCount(atom) == 6) {
@@ -1657,7 +1651,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         }
         return null;
     }
-    private IAtomType perceiveOrganometallicCenters(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveOrganometallicCenters(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
     	if ("Po".equals(atom.getSymbol())) {
     		if (hasOneSingleElectron(atomContainer, atom)) {
     			// no idea how to deal with this yet
@@ -1686,7 +1680,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	} 
     	return null;
     }
-    private IAtomType perceiveNickel(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveNickel(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -1720,7 +1714,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         }
         return null;
     }
-    private IAtomType perceiveNobelGases(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveNobelGases(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
     	if ("He".equals(atom.getSymbol())) {
     		if (hasOneSingleElectron(atomContainer, atom)) {
     			// no idea how to deal with this yet
@@ -1784,7 +1778,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return null;
     }
 
-    private IAtomType perceiveSilicon(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveSilicon(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -1808,7 +1802,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveManganese(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveManganese(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -1834,7 +1828,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveSodium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveSodium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -1856,7 +1850,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveIodine(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveIodine(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             if (atomContainer.getConnectedBondsCount(atom) == 0) {
                 if (atom.getFormalCharge() != CDKConstants.UNSET &&
@@ -1920,7 +1914,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveRuthenium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveRuthenium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0) {
             IAtomType type = getAtomType("Ru.6");
@@ -1937,7 +1931,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceivePotassium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceivePotassium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -1958,7 +1952,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceivePlutonium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceivePlutonium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() == 0 && atomContainer.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Pu");
             if (isAcceptable(atom, atomContainer, type)) return type;
@@ -1966,7 +1960,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveCadmium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveCadmium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -1987,7 +1981,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveIndium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveIndium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() == 0 && atomContainer.getConnectedBondsCount(atom) == 3) {
             IAtomType type = getAtomType("In.3");
             if (isAcceptable(atom, atomContainer, type)) return type;
@@ -2004,7 +1998,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveChlorine(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveChlorine(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             if (atomContainer.getConnectedBondsCount(atom) > 1) {
                 if (atom.getFormalCharge() != CDKConstants.UNSET
@@ -2077,7 +2071,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveSilver(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveSilver(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
@@ -2097,7 +2091,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveGold(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveGold(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             return null;
         }
@@ -2110,7 +2104,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveRadium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveRadium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
@@ -2121,7 +2115,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveCalcium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveCalcium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if ("Ca".equals(atom.getSymbol())) {
             if (hasOneSingleElectron(atomContainer, atom)) {
                 // no idea how to deal with this yet
@@ -2149,7 +2143,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceivePlatinum(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceivePlatinum(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -2180,7 +2174,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveAntimony(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveAntimony(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
@@ -2197,7 +2191,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveGadolinum(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveGadolinum(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
             atom.getFormalCharge() == +3 &&
             atomContainer.getConnectedBondsCount(atom) == 0) {
@@ -2209,7 +2203,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-    private IAtomType perceiveMagnesium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveMagnesium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             // no idea how to deal with this yet
             return null;
@@ -2237,7 +2231,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveThallium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveThallium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
             atom.getFormalCharge() == +1 &&
             atomContainer.getConnectedBondsCount(atom) == 0) {
@@ -2257,7 +2251,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveLead(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveLead(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
             atom.getFormalCharge() == 0 &&
             atomContainer.getConnectedBondsCount(atom) == 0) {
@@ -2277,7 +2271,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveStrontium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveStrontium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
@@ -2288,7 +2282,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveTitanium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveTitanium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
             atom.getFormalCharge() == -3 &&
             atomContainer.getConnectedBondsCount(atom) == 6) {
@@ -2308,7 +2302,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveVanadium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveVanadium(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
                 atom.getFormalCharge() == -3 &&
                 atomContainer.getConnectedBondsCount(atom) == 6) {
@@ -2323,7 +2317,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceiveBromine(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveBromine(NeighbourhoodCache atomContainer, IAtom atom) throws CDKException {
         if (hasOneSingleElectron(atomContainer, atom)) {
             if (atomContainer.getConnectedBondsCount(atom) == 0) {
                 if (atom.getFormalCharge() != CDKConstants.UNSET &&
@@ -2367,19 +2361,19 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private int countAttachedDoubleBonds(IAtomContainer container, IAtom atom, String symbol) {
+    private int countAttachedDoubleBonds(NeighbourhoodCache container, IAtom atom, String symbol) {
         return countAttachedBonds(container, atom, IBond.Order.DOUBLE, symbol);
     }
 
-    private int countAttachedDoubleBonds(IAtomContainer container, IAtom atom) {
+    private int countAttachedDoubleBonds(NeighbourhoodCache container, IAtom atom) {
     	return countAttachedBonds(container, atom, IBond.Order.DOUBLE, null);
     }
     
-    private int countAttachedSingleBonds(IAtomContainer atomContainer, IAtom atom) {
+    private int countAttachedSingleBonds(NeighbourhoodCache atomContainer, IAtom atom) {
         return countAttachedBonds(atomContainer, atom, IBond.Order.SINGLE, null);
     }
 
-    private boolean hasAromaticBond(IAtomContainer container, IAtom atom) {
+    private boolean hasAromaticBond(NeighbourhoodCache container, IAtom atom) {
         List<IBond> neighbors = container.getConnectedBondsList(atom);
         for (IBond bond : neighbors) {
             if (bond.getFlag(CDKConstants.ISAROMATIC)) return true;
@@ -2397,7 +2391,8 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
      *               match the given symbol.
      * @return the number of doubly bonded atoms
      */
-    private int countAttachedBonds(IAtomContainer container, IAtom atom, IBond.Order order, String symbol) {
+    private int countAttachedBonds(NeighbourhoodCache container, IAtom atom, IBond.Order order, String symbol) {
+    	if (symbol == null) return container.countAttachedBonds(atom, order);
     	// count the number of double bonded oxygens
     	List<IBond> neighbors = container.getConnectedBondsList(atom);
     	int neighborcount = neighbors.size();
@@ -2424,13 +2419,14 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     }
 
     private IAtomType getAtomType(String identifier) throws CDKException {
-    	IAtomType type = factory.getAtomType(identifier);
+    	IAtomType type = atomTypes.get(identifier);
+    	if (type == null) type = factory.getAtomType(identifier);
     	type.setValency((Integer)type.getProperty(CDKConstants.PI_BOND_COUNT) +
     			        type.getFormalNeighbourCount());
     	return type;
     }
     
-    private boolean isAcceptable(IAtom atom, IAtomContainer container, IAtomType type) {
+    private boolean isAcceptable(IAtom atom, NeighbourhoodCache container, IAtomType type) {
     	if (mode == REQUIRE_EXPLICIT_HYDROGENS) {
     		// make sure no implicit hydrogens were assumed
     		int actualContainerCount = container.getConnectedAtomsCount(atom);
@@ -2467,5 +2463,164 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return (electronCount % 4 == 2) && (electronCount >= 2);
     }
     
+
+    /**
+     * Neighbourhood information of the atoms in an {@link IAtomContainer}, as
+     * used by the perception methods. The connected bonds, bond order counts and
+     * ring information are looked up once per atom and container, rather than
+     * each time a perception method asks for them. The methods mirror those of
+     * {@link IAtomContainer}, and the returned lists must not be modified.
+     */
+    private static final class NeighbourhoodCache {
+
+        private final IAtomContainer container;
+        private final Map<IAtom,Neighbourhood> neighbourhoods;
+        private SpanningTree spanningTree;
+        private IAtomContainer cyclicFragments;
+        private IRingSet allRings;
+
+        NeighbourhoodCache(IAtomContainer container, int expectedAtoms) {
+            this.container = container;
+            this.neighbourhoods = new IdentityHashMap<IAtom,Neighbourhood>(expectedAtoms);
+        }
+
+        private Neighbourhood getNeighbourhood(IAtom atom) {
+            Neighbourhood neighbourhood = neighbourhoods.get(atom);
+            if (neighbourhood == null) {
+                neighbourhood = new Neighbourhood(container, atom);
+                neighbourhoods.put(atom, neighbourhood);
+            }
+            return neighbourhood;
+        }
+
+        int getConnectedAtomsCount(IAtom atom) {
+            return getNeighbourhood(atom).bonds.size();
+        }
+
+        int getConnectedBondsCount(IAtom atom) {
+            return getNeighbourhood(atom).bonds.size();
+        }
+
+        List<IAtom> getConnectedAtomsList(IAtom atom) {
+            Neighbourhood neighbourhood = getNeighbourhood(atom);
+            if (neighbourhood.atoms == null)
+                neighbourhood.atoms = container.getConnectedAtomsList(atom);
+            return neighbourhood.atoms;
+        }
+
+        List<IBond> getConnectedBondsList(IAtom atom) {
+            return getNeighbourhood(atom).bonds;
+        }
+
+        IBond.Order getMaximumBondOrder(IAtom atom) {
+            return getNeighbourhood(atom).getMaximumBondOrder();
+        }
+
+        double getBondOrderSum(IAtom atom) {
+            return getNeighbourhood(atom).getBondOrderSum();
+        }
+
+        int getConnectedSingleElectronsCount(IAtom atom) {
+            if (container.getSingleElectronCount() == 0) return 0;
+            Neighbourhood neighbourhood = getNeighbourhood(atom);
+            if (neighbourhood.singleElectronCount < 0) {
+                int count = 0;
+                for (ISingleElectron singleElectron : container.singleElectrons()) {
+                    if (singleElectron.contains(atom)) count++;
+                }
+                neighbourhood.singleElectronCount = count;
+            }
+            return neighbourhood.singleElectronCount;
+        }
+
+        /**
+         * Counts the attached bonds of the given order. The double bond count
+         * is asked for most often, and is therefore cached.
+         */
+        int countAttachedBonds(IAtom atom, IBond.Order order) {
+            Neighbourhood neighbourhood = getNeighbourhood(atom);
+            if (order == IBond.Order.DOUBLE) {
+                if (neighbourhood.doubleBondCount < 0)
+                    neighbourhood.doubleBondCount = neighbourhood.countBonds(atom, order);
+                return neighbourhood.doubleBondCount;
+            }
+            return neighbourhood.countBonds(atom, order);
+        }
+
+        IAtomContainer getCyclicFragmentsContainer() {
+            if (cyclicFragments == null)
+                cyclicFragments = getSpanningTree().getCyclicFragmentsContainer();
+            return cyclicFragments;
+        }
+
+        IRingSet getAllRings() throws NoSuchAtomException {
+            if (allRings == null) allRings = getSpanningTree().getAllRings();
+            return allRings;
+        }
+
+        private SpanningTree getSpanningTree() {
+            if (spanningTree == null) spanningTree = new SpanningTree(container);
+            return spanningTree;
+        }
+    }
+
+    /**
+     * The neighbourhood features of a single atom, as cached by {@link NeighbourhoodCache}.
+     * All are derived from the connected bonds in the same way as {@link IAtomContainer}
+     * implementations do; the bond order features are only derived when asked for.
+     */
+    private static final class Neighbourhood {
+
+        final List<IBond> bonds;
+        List<IAtom> atoms;
+        IBond.Order maxBondOrder;
+        double bondOrderSum = -1;
+        int doubleBondCount = -1;
+        int singleElectronCount = -1;
+
+        Neighbourhood(IAtomContainer container, IAtom atom) {
+            bonds = container.getConnectedBondsList(atom);
+        }
+
+        IBond.Order getMaximumBondOrder() {
+            if (maxBondOrder == null) {
+                IBond.Order max = IBond.Order.SINGLE;
+                for (IBond bond : bonds) {
+                    if (bond.getOrder().ordinal() > max.ordinal()) max = bond.getOrder();
+                }
+                maxBondOrder = max;
+            }
+            return maxBondOrder;
+        }
+
+        double getBondOrderSum() {
+            if (bondOrderSum < 0) {
+                double sum = 0;
+                for (IBond bond : bonds) {
+                    if (bond.getOrder() == IBond.Order.SINGLE) {
+                        sum += 1;
+                    } else if (bond.getOrder() == IBond.Order.DOUBLE) {
+                        sum += 2;
+                    } else if (bond.getOrder() == IBond.Order.TRIPLE) {
+                        sum += 3;
+                    } else if (bond.getOrder() == IBond.Order.QUADRUPLE) {
+                        sum += 4;
+                    }
+                }
+                bondOrderSum = sum;
+            }
+            return bondOrderSum;
+        }
+
+        int countBonds(IAtom atom, IBond.Order order) {
+            int count = 0;
+            for (IBond bond : bonds) {
+                if (bond.getOrder() == order && bond.getAtomCount() == 2 && bond.contains(atom))
+                    count++;
+            }
+            return count;
+        }
+    }
+
 }
 
@@ -37,7 +37,8 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.List;
 
 /**
@@ -59,6 +60,8 @@ import java.util.List;
  *   Isotope major = factory.getMajorIsotope("H");
  * </pre> 
  *
+ * <p>The factory may be shared by several threads.
+ *
  * @cdk.module core
  * @cdk.githash
  *
@@ -73,7 +76,7 @@ public class IsotopeFactory
 
 	private static IsotopeFactory ifac = null;
 	private List<IIsotope> isotopes = null;
-    private HashMap<String, IIsotope> majorIsotopes = null;
+    private Map<String, IIsotope> majorIsotopes = null;
     private boolean debug = false;
     private static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(IsotopeFactory.class);
@@ -113,7 +116,7 @@ public class IsotopeFactory
               Isotope isotope = (Isotope)isotopes.elementAt(f);
           } What's this loop for?? */
 
-        majorIsotopes = new HashMap<String, IIsotope>();
+        majorIsotopes = new ConcurrentHashMap<String, IIsotope>();
     }
 
 
@@ -125,7 +128,7 @@ public class IsotopeFactory
 	 * @exception  IOException  if isotopic data files could not be read.
 	 */
     @TestMethod("testGetInstance_IChemObjectBuilder")
-    public static IsotopeFactory getInstance(IChemObjectBuilder builder)
+    public static synchronized IsotopeFactory getInstance(IChemObjectBuilder builder)
 			 throws IOException {
         if (ifac == null) {
             ifac = new IsotopeFactory(builder);
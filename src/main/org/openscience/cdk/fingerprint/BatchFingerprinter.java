@@ -0,0 +1,229 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fingerprint;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Calculates the fingerprints of a stream of molecules on several threads.
+ * The molecules are taken from an {@link Iterator}, which may be an
+ * {@link org.openscience.cdk.io.iterator.IIteratingChemObjectReader}, and
+ * the fingerprints are passed to a {@link Handler} in input order, together
+ * with the index of the molecule in the input:
+ * <pre>
+ * IteratingMDLReader reader = new IteratingMDLReader(
+ *     new FileInputStream("dump.sdf"), DefaultChemObjectBuilder.getInstance()
+ * );
+ * BatchFingerprinter batch = new BatchFingerprinter(
+ *     new BatchFingerprinter.FingerprinterFactory() {
+ *         public IFingerprinter create() { return new Fingerprinter(); }
+ *     }
+ * );
+ * batch.process(reader, handler);
+ * </pre>
+ *
+ * <p>Each thread uses its own fingerprinter, created by the given
+ * {@link FingerprinterFactory}, so that fingerprinters need not be thread
+ * safe. At most <code>queueSize</code> molecules are read ahead of the
+ * oldest molecule not yet passed to the handler, which keeps the memory use
+ * bounded for large files.
+ *
+ * <p>Fingerprinters may change the molecules they are given, for example by
+ * perceiving atom types and aromaticity, as when called directly.
+ *
+ * @cdk.module  fingerprint
+ * @cdk.githash
+ * @cdk.keyword fingerprint
+ */
+@TestClass("org.openscience.cdk.fingerprint.BatchFingerprinterTest")
+public class BatchFingerprinter {
+
+    /**
+     * Creates the fingerprinter for one thread.
+     */
+    public interface FingerprinterFactory {
+
+        /**
+         * Creates a new fingerprinter.
+         *
+         * @return the {@link IFingerprinter} used by one thread
+         */
+        public IFingerprinter create();
+
+    }
+
+    /**
+     * Receives the results of a batch, in input order, on the thread that
+     * called {@link BatchFingerprinter#process(Iterator, Handler)}.
+     */
+    public interface Handler {
+
+        /**
+         * Receives the fingerprint of a molecule.
+         *
+         * @param index       the index of the molecule in the input,
+         *                    starting at 0
+         * @param fingerprint the fingerprint of the molecule
+         */
+        public void fingerprint(long index, BitSet fingerprint);
+
+        /**
+         * Receives the exception raised while fingerprinting a molecule;
+         * the batch continues with the next molecule.
+         *
+         * @param index     the index of the molecule in the input,
+         *                  starting at 0
+         * @param exception the exception thrown by the fingerprinter
+         */
+        public void failed(long index, Exception exception);
+
+    }
+
+    private final FingerprinterFactory factory;
+    private final int threadCount;
+    private final int queueSize;
+
+    /**
+     * Creates a batch fingerprinter using one thread per available
+     * processor, and reading up to four molecules per thread ahead.
+     *
+     * @param factory creates the fingerprinter for each thread
+     */
+    public BatchFingerprinter(FingerprinterFactory factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a batch fingerprinter using the given number of threads, and
+     * reading up to four molecules per thread ahead.
+     *
+     * @param factory     creates the fingerprinter for each thread
+     * @param threadCount the number of threads to fingerprint on
+     */
+    public BatchFingerprinter(FingerprinterFactory factory, int threadCount) {
+        this(factory, threadCount, 4 * threadCount);
+    }
+
+    /**
+     * Creates a batch fingerprinter.
+     *
+     * @param factory     creates the fingerprinter for each thread
+     * @param threadCount the number of threads to fingerprint on
+     * @param queueSize   the maximum number of molecules read ahead of the
+     *                    oldest molecule not yet passed to the handler
+     */
+    public BatchFingerprinter(FingerprinterFactory factory,
+                              int threadCount, int queueSize) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        if (queueSize < 1)
+            throw new IllegalArgumentException("queueSize must be at least 1");
+        this.factory = factory;
+        this.threadCount = threadCount;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Fingerprints all molecules of the input, and passes the results to the
+     * handler in input order. Input objects that are not an
+     * {@link IAtomContainer} are reported to {@link Handler#failed}. This
+     * method returns when all results have been handled.
+     *
+     * @param  molecules    the molecules to fingerprint, for example an
+     *                      {@link org.openscience.cdk.io.iterator.IIteratingChemObjectReader}
+     * @param  handler      receives the fingerprints
+     * @return              the number of molecules processed
+     * @throws CDKException if the batch is interrupted
+     */
+    @TestMethod("testProcess,testProcess_Failed,testProcess_QueueSize")
+    public long process(Iterator<?> molecules, Handler handler)
+                throws CDKException {
+        final ThreadLocal<IFingerprinter> fingerprinters =
+            new ThreadLocal<IFingerprinter>() {
+                protected IFingerprinter initialValue() {
+                    return factory.create();
+                }
+            };
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        LinkedList<Future<BitSet>> pending = new LinkedList<Future<BitSet>>();
+        long submitted = 0;
+        long handled = 0;
+        try {
+            while (molecules.hasNext()) {
+                final Object molecule = molecules.next();
+                pending.add(executor.submit(new Callable<BitSet>() {
+                    public BitSet call() throws Exception {
+                        if (!(molecule instanceof IAtomContainer))
+                            throw new CDKException(
+                                "Expected an IAtomContainer but got: " +
+                                (molecule == null ? null : molecule.getClass().getName())
+                            );
+                        return fingerprinters.get().getFingerprint(
+                            (IAtomContainer)molecule
+                        );
+                    }
+                }));
+                submitted++;
+                if (pending.size() >= queueSize)
+                    handle(pending.removeFirst(), handled++, handler);
+            }
+            while (!pending.isEmpty())
+                handle(pending.removeFirst(), handled++, handler);
+        } finally {
+            executor.shutdownNow();
+        }
+        return submitted;
+    }
+
+    private void handle(Future<BitSet> result, long index, Handler handler)
+                 throws CDKException {
+        BitSet fingerprint;
+        try {
+            fingerprint = result.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CDKException(
+                "Interrupted while fingerprinting molecule " + index, exception
+            );
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Error) throw (Error)cause;
+            handler.failed(index, (Exception)cause);
+            return;
+        }
+        handler.fingerprint(index, fingerprint);
+    }
+
+}
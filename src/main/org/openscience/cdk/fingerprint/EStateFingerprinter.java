@@ -29,7 +29,8 @@ import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.config.fragments.EStateFragments;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+import org.openscience.cdk.smiles.smarts.SMARTSQuery;
+import org.openscience.cdk.smiles.smarts.SMARTSQuerySet;
 
 import java.util.BitSet;
 import java.util.Map;
@@ -63,6 +64,7 @@ import java.util.Map;
 public class EStateFingerprinter implements IFingerprinter {
 
     private static final String[] patterns = EStateFragments.getSmarts();
+    private static final SMARTSQuerySet querySet = new SMARTSQuerySet(patterns);
 
     @TestMethod("testFingerprint,testGetSize")
     public EStateFingerprinter() {
@@ -75,16 +77,8 @@ public class EStateFingerprinter implements IFingerprinter {
     public BitSet getFingerprint(IAtomContainer atomContainer) 
                   throws CDKException {
 
-        int bitsetLength = patterns.length;
-        BitSet fingerPrint = new BitSet(bitsetLength);
-
-        SMARTSQueryTool sqt = new SMARTSQueryTool("C");
-        for (int i = 0; i < patterns.length; i++) {
-            sqt.setSmarts(patterns[i]);
-            boolean status = sqt.matches(atomContainer);
-            if (status) fingerPrint.set(i, true);
-        }
-        return fingerPrint;
+        SMARTSQuery.prepare(atomContainer);
+        return querySet.matches(atomContainer);
     }
 
     /** {@inheritDoc} */
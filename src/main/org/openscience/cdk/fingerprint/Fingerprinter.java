@@ -27,9 +27,8 @@ package org.openscience.cdk.fingerprint;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
+import org.openscience.cdk.aromaticity.PerceptionState;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.PathTools;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
@@ -37,16 +36,13 @@ import org.openscience.cdk.interfaces.IPseudoAtom;
 import org.openscience.cdk.ringsearch.AllRingsFinder;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 import org.openscience.cdk.tools.periodictable.PeriodicTable;
 
-import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  *  Generates a fingerprint for a given AtomContainer. Fingerprints are
@@ -169,8 +165,7 @@ public class Fingerprinter implements IFingerprinter {
 		logger.debug("Entering Fingerprinter");
 		logger.debug("Starting Aromaticity Detection");
 		long before = System.currentTimeMillis();
-		AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
-		CDKHueckelAromaticityDetector.detectAromaticity(container);
+		PerceptionState.perceive(container);
 		long after = System.currentTimeMillis();
 		logger.debug("time for aromaticity calculation: " 
 		             + (after - before) + " milliseconds");
@@ -179,7 +174,7 @@ public class Fingerprinter implements IFingerprinter {
 
         int[] hashes = findPathes(container, searchDepth);
         for (int hash : hashes) {
-            position = new java.util.Random(hash).nextInt(size);
+            position = getBitPosition(hash, size);
             bitSet.set(position);
         }
 
@@ -208,81 +203,255 @@ public class Fingerprinter implements IFingerprinter {
      *
      * This method will find all paths upto length N starting from each
      * atom in the molecule and return the unique set of such paths.
+     * Each path is labelled with its atom symbols and bond symbols, and of
+     * the label and its reverse the lexicographically higher one is used.
+     * The returned values are the {@link String#hashCode()} of those labels,
+     * but they are computed incrementally while the paths are walked, so no
+     * strings are created for the individual paths.
      *
      * @param container The molecule to search
      * @param searchDepth The maximum path length desired
-     * @return A Map of path strings, keyed on themselves
+     * @return The unique hash codes of the path labels
      */
     protected int[] findPathes(IAtomContainer container, int searchDepth) {
+        PathHasher hasher = new PathHasher(container);
+        for (IAtom startAtom : container.atoms()) {
+            hasher.walk(startAtom, searchDepth);
+        }
+        return hasher.getHashes();
+    }
 
-        List<StringBuffer> allPaths = new ArrayList<StringBuffer>();
+    /**
+     * Selects the bit for a path hash. This gives the same result as
+     * <code>new java.util.Random(hash).nextInt(size)</code>, using the
+     * generator algorithm as specified for {@link java.util.Random}, but
+     * without creating a generator for each hash.
+     *
+     * @param  hash the hash code of the path
+     * @param  size the size of the fingerprint
+     * @return      the position of the bit to set
+     */
+    @TestMethod("testGetBitPosition")
+    protected static int getBitPosition(int hash, int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be positive");
+        long seed = (hash ^ 0x5DEECE66DL) & ((1L << 48) - 1);
+        seed = (seed * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+        int bits = (int)(seed >>> 17);
+        if ((size & -size) == size)
+            return (int)((size * (long)bits) >> 31);
+        int value = bits % size;
+        while (bits - value + (size - 1) < 0) {
+            seed = (seed * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+            bits = (int)(seed >>> 17);
+            value = bits % size;
+        }
+        return value;
+    }
 
-        Map<IAtom,Map<IAtom, IBond>> cache 
-            = new HashMap<IAtom, Map<IAtom,IBond>>();
-        
-        for (IAtom startAtom : container.atoms()) {
-                List<List<IAtom>> p 
-                    = PathTools.getPathsOfLengthUpto(container, 
-                                                     startAtom, 
-                                                     searchDepth);
-                for (List<IAtom> path : p) {
-                    StringBuffer sb = new StringBuffer();
-                    IAtom x = path.get(0);
-
-                    // TODO if we ever get more than 255 elements, this will 
-                    // fail maybe we should use 0 for pseudo atoms and 
-                    // malformed symbols?
-                    if (x instanceof IPseudoAtom)
-                        sb.append((char) PeriodicTable.getElementCount() + 1);
-                    else {
-                        Integer atnum = PeriodicTable.getAtomicNumber(x.getSymbol());
-                        if (atnum != null) sb.append(convertSymbol(x.getSymbol()));
-                        else sb.append((char) 
-                                       PeriodicTable.getElementCount() + 1);
-                    }
-
-                    for (int i = 1; i < path.size(); i++) {
-                        final IAtom[] y = {path.get(i)};
-                        Map<IAtom, IBond> m = cache.get( x );
-                        final IBond[] b = { m != null ? m.get( y[0] ) : null };
-                        if ( b[0] == null ) {
-                            b[0] = container.getBond(x, y[0]);
-                            cache.put( x, 
-                                       new HashMap<IAtom, IBond>() {
-                                {put(y[0], b[0]); }
-                            } );
-                                                }
-                     sb.append(getBondSymbol(b[0]));
-                     sb.append(convertSymbol(y[0].getSymbol()));
-                     x = y[0];
-                    }
-
-                    // we store the lexicographically lower one of the
-                    // string and its reverse
-                    StringBuffer revForm = new StringBuffer(sb);
-                    revForm.reverse();
-                    if (sb.toString().compareTo(revForm.toString()) <= 0)
-                        allPaths.add(sb);
-                    else allPaths.add(revForm);
+    /**
+     * Walks all paths of a molecule depth first and collects the hash codes
+     * of their labels. The label of each atom and of each step to a
+     * neighbour is built once per atom; the hash of a path and of its reverse
+     * are then updated for every step, using that the hash code of the
+     * concatenation <i>ab</i> equals <i>hash(a)</i>*31<sup>|b|</sup> +
+     * <i>hash(b)</i>.
+     */
+    private final class PathHasher {
+
+        private final IAtomContainer container;
+        private final Map<IAtom, Node> nodes;
+
+        /** The label of the path being walked, needed to pick a direction. */
+        private char[] label = new char[64];
+
+        /** Open addressing set of the collected hashes; 0 is kept apart. */
+        private int[] table = new int[64];
+        private int hashCount = 0;
+        private boolean hasZero = false;
+
+        PathHasher(IAtomContainer container) {
+            this.container = container;
+            this.nodes = new IdentityHashMap<IAtom, Node>();
+        }
+
+        void walk(IAtom startAtom, int depth) {
+            Node start = getNode(startAtom);
+            if (start.first == null) {
+                String symbol = startAtom.getSymbol();
+                // the numeric label matches the former
+                // sb.append((char) PeriodicTable.getElementCount() + 1)
+                if (startAtom instanceof IPseudoAtom ||
+                    PeriodicTable.getAtomicNumber(symbol) == null)
+                    start.first = Integer.toString(
+                        PeriodicTable.getElementCount() + 1
+                    ).toCharArray();
+                else
+                    start.first = String.valueOf(convertSymbol(symbol)).toCharArray();
+            }
+            char[] first = start.first;
+            ensureCapacity(first.length);
+            System.arraycopy(first, 0, label, 0, first.length);
+            walk(start, depth, first.length,
+                 hash(first, false), hash(first, true), power(first.length));
+        }
+
+        private void walk(Node node, int depth, int length,
+                          int forward, int reverse, int power) {
+            add(length, forward, reverse);
+            if (depth == 0) return;
+            if (node.neighbours == null) connect(node);
+            node.onPath = true;
+            for (int i = 0; i < node.neighbours.length; i++) {
+                Node neighbour = node.neighbours[i];
+                if (neighbour.onPath) continue;
+                char[] step = node.steps[i];
+                ensureCapacity(length + step.length);
+                System.arraycopy(step, 0, label, length, step.length);
+                walk(neighbour, depth - 1, length + step.length,
+                     forward * node.stepPowers[i] + node.stepHashes[i],
+                     node.stepReverseHashes[i] * power + reverse,
+                     power * node.stepPowers[i]);
+            }
+            node.onPath = false;
+        }
+
+        private Node getNode(IAtom atom) {
+            Node node = nodes.get(atom);
+            if (node == null) {
+                node = new Node();
+                node.atom = atom;
+                nodes.put(atom, node);
+            }
+            return node;
+        }
+
+        /**
+         * Sets up the steps from an atom to its neighbours; as before the
+         * bond of a step is the first bond found between the two atoms.
+         */
+        private void connect(Node node) {
+            List<IAtom> neighbours = container.getConnectedAtomsList(node.atom);
+            int count = neighbours.size();
+            node.neighbours = new Node[count];
+            node.steps = new char[count][];
+            node.stepHashes = new int[count];
+            node.stepReverseHashes = new int[count];
+            node.stepPowers = new int[count];
+            for (int i = 0; i < count; i++) {
+                IAtom neighbour = neighbours.get(i);
+                IBond bond = container.getBond(node.atom, neighbour);
+                char[] step = (String.valueOf(getBondSymbol(bond)) +
+                               convertSymbol(neighbour.getSymbol())).toCharArray();
+                node.neighbours[i] = getNode(neighbour);
+                node.steps[i] = step;
+                node.stepHashes[i] = hash(step, false);
+                node.stepReverseHashes[i] = hash(step, true);
+                node.stepPowers[i] = power(step.length);
+            }
+        }
+
+        /**
+         * Adds the hash of the current path. The former implementation kept
+         * the reverse of the lexicographically lower of the label and its
+         * reverse, i.e. the higher one, after trimming white space.
+         */
+        private void add(int length, int forward, int reverse) {
+            if (length == 0) return;
+            int comparison = 0;
+            for (int i = 0, j = length - 1; i < j; i++, j--) {
+                if (label[i] != label[j]) {
+                    comparison = label[i] - label[j];
+                    break;
                 }
+            }
+            if (label[0] <= ' ' || label[length - 1] <= ' ') {
+                int begin = 0, end = length;
+                while (begin < end && label[begin] <= ' ') begin++;
+                while (end > begin && label[end - 1] <= ' ') end--;
+                if (begin == end) return;
+                int hash = 0;
+                if (comparison >= 0)
+                    for (int i = begin; i < end; i++) hash = 31 * hash + label[i];
+                else
+                    for (int i = end - 1; i >= begin; i--) hash = 31 * hash + label[i];
+                add(hash);
+            } else {
+                add(comparison >= 0 ? forward : reverse);
+            }
         }
-        // now lets clean stuff up
-        Set<String> cleanPath = new HashSet<String>();
-        for (StringBuffer s : allPaths) {
-            String s1 = s.toString().trim();
-            if (s1.equals("")) continue;
-            if (cleanPath.contains(s1)) continue;
-            String s2 = s.reverse().toString().trim();
-            if (cleanPath.contains(s2)) continue;
-            cleanPath.add(s2);
+
+        private void add(int hash) {
+            if (hash == 0) {
+                if (!hasZero) { hasZero = true; hashCount++; }
+                return;
+            }
+            int mask = table.length - 1;
+            int slot = (hash * 0x9E3779B9) & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == hash) return;
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = hash;
+            if (++hashCount * 2 > table.length) rehash();
+        }
+
+        private void rehash() {
+            int[] old = table;
+            table = new int[old.length * 2];
+            int mask = table.length - 1;
+            for (int hash : old) {
+                if (hash == 0) continue;
+                int slot = (hash * 0x9E3779B9) & mask;
+                while (table[slot] != 0) slot = (slot + 1) & mask;
+                table[slot] = hash;
+            }
         }
 
-        // convert paths to hashes
-        int[] hashes = new int[cleanPath.size()];
-        int i= 0;
-        for (String s: cleanPath) hashes[i++] = s.hashCode();
+        int[] getHashes() {
+            int[] hashes = new int[hashCount];
+            int i = 0;
+            if (hasZero) hashes[i++] = 0;
+            for (int hash : table) if (hash != 0) hashes[i++] = hash;
+            return hashes;
+        }
+
+        private void ensureCapacity(int length) {
+            if (length <= label.length) return;
+            char[] grown = new char[Math.max(length, label.length * 2)];
+            System.arraycopy(label, 0, grown, 0, label.length);
+            label = grown;
+        }
+
+    }
+
+    /** An atom with the labels of the steps to its neighbours. */
+    private static final class Node {
+        IAtom atom;
+        char[] first;
+        boolean onPath;
+        Node[] neighbours;
+        char[][] steps;
+        int[] stepHashes;
+        int[] stepReverseHashes;
+        int[] stepPowers;
+    }
+
+    /** The {@link String#hashCode()} of the characters, optionally reversed. */
+    private static int hash(char[] chars, boolean reverse) {
+        int hash = 0;
+        if (reverse)
+            for (int i = chars.length - 1; i >= 0; i--) hash = 31 * hash + chars[i];
+        else
+            for (int i = 0; i < chars.length; i++) hash = 31 * hash + chars[i];
+        return hash;
+    }
 
-        return hashes;
+    /** 31 to the given power, overflowing like {@link String#hashCode()}. */
+    private static int power(int exponent) {
+        int power = 1;
+        for (int i = 0; i < exponent; i++) power *= 31;
+        return power;
     }
 
     private String convertSymbol(String symbol) {
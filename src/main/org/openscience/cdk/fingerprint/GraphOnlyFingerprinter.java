@@ -31,7 +31,6 @@ import org.openscience.cdk.interfaces.IBond;
 
 import java.util.BitSet;
 import java.util.Map;
-import java.util.Random;
 
 /**
  * Specialized version of the {@link Fingerprinter} which does not take bond orders
@@ -81,7 +80,7 @@ public class GraphOnlyFingerprinter extends Fingerprinter {
 		int[] hashes = findPathes(container, super.getSearchDepth());
 		BitSet bitSet = new BitSet(size);
         for (int hash : hashes) {
-            bitSet.set(new Random(hash).nextInt(size));
+            bitSet.set(getBitPosition(hash, size));
         }
 		return bitSet;
 	}
@@ -29,7 +29,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 
 import org.openscience.cdk.annotations.TestClass;
@@ -144,7 +143,7 @@ public class HybridizationFingerprinter implements IFingerprinter {
                 percieveAtomTypesAndConfigureUnsetProperties(clonedContainer);
             int[] hashes = findPathes(clonedContainer, searchDepth);
             for (int hash : hashes) {
-                bitSet.set(new Random(hash).nextInt(size));
+                bitSet.set(Fingerprinter.getBitPosition(hash, size));
             }
         } catch (CloneNotSupportedException exception) {
             throw new CDKException(
@@ -34,7 +34,8 @@ import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IMoleculeSet;
 import org.openscience.cdk.interfaces.IRingSet;
 import org.openscience.cdk.ringsearch.AllRingsFinder;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+import org.openscience.cdk.smiles.smarts.SMARTSQuery;
+import org.openscience.cdk.smiles.smarts.SMARTSQuerySet;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
@@ -75,11 +76,24 @@ public class MACCSFingerprinter implements IFingerprinter {
     private static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(MACCSFingerprinter.class);
     private MaccsKey[] keys = null;
+    // the keys with a SMARTS pattern, and their bit in the fingerprint
+    private SMARTSQuerySet keySet = null;
+    private int[] keyBits = null;
 
     @TestMethod("testFingerprint")
     public MACCSFingerprinter() {
         try {
             keys = readKeyDef();
+            List<String> smarts = new ArrayList<String>();
+            List<Integer> bits = new ArrayList<Integer>();
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].getSmarts().equals("?")) continue;
+                smarts.add(keys[i].getSmarts());
+                bits.add(i);
+            }
+            keySet = new SMARTSQuerySet(smarts);
+            keyBits = new int[bits.size()];
+            for (int i = 0; i < keyBits.length; i++) keyBits[i] = bits.get(i);
         } catch (IOException e) {
             logger.debug(e);
         } catch (CDKException e) {
@@ -99,20 +113,17 @@ public class MACCSFingerprinter implements IFingerprinter {
         int bitsetLength = keys.length;
         BitSet fingerPrint = new BitSet(bitsetLength);
 
-        SMARTSQueryTool sqt = new SMARTSQueryTool("C");
-        for (int i = 0; i < keys.length; i++) {
-            String smarts = keys[i].getSmarts();
-            if (smarts.equals("?")) continue;
+        // all keys are matched against the molecule prepared once, and only
+        // the keys present that need more than one match are counted
+        SMARTSQuery.prepare(atomContainer);
+        BitSet present = keySet.matches(atomContainer);
+        for (int j = present.nextSetBit(0); j >= 0; j = present.nextSetBit(j + 1)) {
+            int i = keyBits[j];
             int count = keys[i].getCount();
-
-            sqt.setSmarts(smarts);
-            boolean status = sqt.matches(atomContainer);
-            if (status) {
-                if (count == 0) fingerPrint.set(i, true);
-                else {
-                   List<List<Integer>> matches = sqt.getUniqueMatchingAtoms();
-                    if (matches.size() > count) fingerPrint.set(i, true);
-                }
+            if (count == 0) fingerPrint.set(i, true);
+            else {
+                List<List<Integer>> matches = keySet.getQuery(j).getUniqueMatchingAtoms(atomContainer);
+                if (matches.size() > count) fingerPrint.set(i, true);
             }
         }
 
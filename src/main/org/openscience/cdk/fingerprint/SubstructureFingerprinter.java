@@ -31,7 +31,8 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+import org.openscience.cdk.smiles.smarts.SMARTSQuery;
+import org.openscience.cdk.smiles.smarts.SMARTSQuerySet;
 
 import java.util.BitSet;
 import java.util.Map;
@@ -374,6 +375,7 @@ import java.util.Map;
 public class SubstructureFingerprinter implements IFingerprinter {
 
     private String[] smarts;
+    private SMARTSQuerySet querySet;
 
     /**
      * Set up the fingerprinter to use the fragments from 
@@ -383,6 +385,7 @@ public class SubstructureFingerprinter implements IFingerprinter {
     public SubstructureFingerprinter() {
         try {
             smarts = StandardSubstructureSets.getFunctionalGroupSMARTS();
+            querySet = new SMARTSQuerySet(smarts);
         } catch (Exception e) {
             smarts = null;
         }
@@ -392,10 +395,12 @@ public class SubstructureFingerprinter implements IFingerprinter {
      * Set up the fingerprinter to use a user-defined set of fragments.
      *
      * @param smarts The collection of fragments to look for
+     * @throws IllegalArgumentException if a fragment cannot be parsed
      */
     @TestMethod("testUserFunctionalGroups")
     public SubstructureFingerprinter(String[] smarts) {
         this.smarts = smarts;
+        this.querySet = new SMARTSQuerySet(smarts);
     }
 
     /**
@@ -408,18 +413,8 @@ public class SubstructureFingerprinter implements IFingerprinter {
             throw new CDKException("No substructures were defined");
         }
 
-        int bitsetLength = smarts.length;
-        BitSet fingerPrint = new BitSet(bitsetLength);
-
-        SMARTSQueryTool sqt = new SMARTSQueryTool("C");
-        for (int i = 0; i < smarts.length; i++) {
-            String pattern = smarts[i];
-
-            sqt.setSmarts(pattern);
-            boolean status = sqt.matches(atomContainer);
-            if (status) fingerPrint.set(i, true);
-        }
-        return fingerPrint;
+        SMARTSQuery.prepare(atomContainer);
+        return querySet.matches(atomContainer);
     }
 
     /** {@inheritDoc} */
@@ -27,6 +27,7 @@ package org.openscience.cdk.geometry;
 import java.awt.Dimension;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -1187,52 +1188,42 @@ public class GeometryTools {
 		//to return the mapping setProperty("MappedAtom",AtomNumber)
 		//logger.debug("**** MAP ATOMS ****");
 		getLargestAtomContainer(firstAtomContainer,secondAtomContainer);
-		double[][] distanceMatrix=new double[firstAtomContainer.getAtomCount()][secondAtomContainer.getAtomCount()];
-		for (int i=0;i<firstAtomContainer.getAtomCount();i++){
+		if (!(searchRadius > 0)) {
+			return mappedAtoms;
+		}
+		// only the atoms within the search radius need to be compared
+		IAtom[] secondAtoms = new IAtom[secondAtomContainer.getAtomCount()];
+		for (int j=0;j<secondAtoms.length;j++){
+			secondAtoms[j]=secondAtomContainer.getAtom(j);
+		}
+		SpatialGrid grid = new SpatialGrid(secondAtoms, searchRadius);
+		int[] neighbors = new int[16];
+		double minimumDistance;
+		for(int i=0;i<firstAtomContainer.getAtomCount();i++){
 			Point3d firstAtomPoint=firstAtomContainer.getAtom(i).getPoint3d();
-			//logger.debug("Closest atoms of "+firstAtomContainer.getAtoms()[i].getSymbol()+" :");
-			for (int j=0;j<secondAtomContainer.getAtomCount();j++){
-				distanceMatrix[i][j]=firstAtomPoint.distance(secondAtomContainer.getAtom(j).getPoint3d());
-				//logger.debug("Distance "+i+" "+j+":"+distanceMatrix[i][j]);
+			int count = grid.getNeighbors(firstAtomPoint.x, firstAtomPoint.y, firstAtomPoint.z, searchRadius, neighbors);
+			if (count > neighbors.length) {
+				neighbors = new int[count];
+				grid.getNeighbors(firstAtomPoint.x, firstAtomPoint.y, firstAtomPoint.z, searchRadius, neighbors);
+			}
+			// of equally close atoms, the first one is mapped
+			Arrays.sort(neighbors, 0, count);
+			minimumDistance=searchRadius;
+			for (int k=0;k<count;k++){
+				int j=neighbors[k];
+				double distance=firstAtomPoint.distance(secondAtoms[j].getPoint3d());
+				if(distance< searchRadius && distance< minimumDistance){
+					//check atom properties
+					if (checkAtomMapping(firstAtomContainer,secondAtomContainer, i, j)){
+						minimumDistance=distance;
+						mappedAtoms.put(
+							firstAtomContainer.getAtomNumber(firstAtomContainer.getAtom(i)),
+							secondAtomContainer.getAtomNumber(secondAtomContainer.getAtom(j))
+						);
+					}
+				}
 			}
-			//logger.debug(" Atoms from the secondAtomContainer");
 		}
-		
-		//logger.debug();
-		//logger.debug("\t");
-		//for (int j=0;j<secondAtomContainer.getAtomCount();j++){
-			//logger.debug(j+" "+secondAtomContainer.getAtomAt(j).getSymbol()+"\t");
-		//}
-		//DEBUGG
-		/*double tmp=0;
-		for(int i=0;i<firstAtomContainer.getAtomCount();i++){
-			//logger.debug(i+" "+firstAtomContainer.getAtomAt(i).getSymbol()+"\t");
-			for (int j=0;j<secondAtomContainer.getAtomCount();j++){
-				tmp=Math.floor(distanceMatrix[i][j]*10);
-				//logger.debug(tmp/10+"\t");
-			}			
-		}*/
-		
-		double minimumDistance;
-        for(int i=0;i<firstAtomContainer.getAtomCount();i++){
-            minimumDistance=searchRadius;
-            for (int j=0;j<secondAtomContainer.getAtomCount();j++){
-                if(distanceMatrix[i][j]< searchRadius && distanceMatrix[i][j]< minimumDistance){
-                    //logger.debug("Distance OK "+i+" "+j+":"+distanceMatrix[i][j]+" AtomCheck:"+checkAtomMapping(firstAtomContainer,secondAtomContainer, i, j));
-                    //check atom properties
-                    if (checkAtomMapping(firstAtomContainer,secondAtomContainer, i, j)){
-                        minimumDistance=distanceMatrix[i][j];
-                        mappedAtoms.put(
-                        	firstAtomContainer.getAtomNumber(firstAtomContainer.getAtom(i)),
-                        	secondAtomContainer.getAtomNumber(secondAtomContainer.getAtom(j))
-                        );
-                        //firstAtomContainer.getAtomAt(i).setProperty("MappedAtom",new Integer(secondAtomContainer.getAtomNumber(secondAtomContainer.getAtomAt(j))));
-                        //logger.debug("#:"+countMappedAtoms+" Atom:"+i+" is mapped to Atom"+j);
-                        //logger.debug(firstAtomContainer.getConnectedAtoms(firstAtomContainer.getAtomAt(i)).length);
-                    }
-                }
-            }
-        }
 		return mappedAtoms;
 	}
 
@@ -0,0 +1,341 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.geometry;
+
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtom;
+
+/**
+ * A uniform grid (cell list) over a fixed set of points in 3D space, used to
+ * find all points within a given distance of a query point. The bounding box
+ * of the points is divided into cubic cells, and a query only visits the cells
+ * overlapping the cube around the query point, so that finding the neighbors of
+ * every point takes linear rather than quadratic time when the points have a
+ * roughly constant density, as atoms do.
+ *
+ * <p>Cells are identified by a single int index, and the points are kept in
+ * arrays sorted by cell, so that a query does not create any objects. The
+ * neighbors found are written to an array supplied by the caller, which can be
+ * reused between queries:
+ * <pre>
+ *   SpatialGrid grid = new SpatialGrid(atoms, 4.0);
+ *   int[] neighbors = new int[32];
+ *   for (int i = 0; i &lt; atoms.length; i++) {
+ *     int count = grid.getNeighbors(i, 4.0, neighbors);
+ *     if (count &gt; neighbors.length) {
+ *       neighbors = new int[count];
+ *       grid.getNeighbors(i, 4.0, neighbors);
+ *     }
+ *     ...
+ *   }
+ * </pre>
+ *
+ * <p>Queries are most efficient when the cell size is about the query radius.
+ * The grid never uses many more cells than there are points: for sparse point
+ * sets the cell size is increased.
+ *
+ * <p>The grid keeps a copy of the coordinates, and is not updated when the
+ * points are moved.
+ *
+ * @cdk.module  standard
+ * @cdk.githash
+ * @cdk.keyword cell list
+ * @cdk.keyword neighbor list
+ * @cdk.keyword spatial index
+ *
+ * @see org.openscience.cdk.geometry.surface.NumericalSurface
+ * @see org.openscience.cdk.graph.rebond.RebondTool
+ */
+@TestClass("org.openscience.cdk.geometry.SpatialGridTest")
+public class SpatialGrid {
+
+    /** Maximum number of cells per point. */
+    private static final int MAX_CELLS_PER_POINT = 8;
+
+    private final int pointCount;
+    private final double cellSize;
+    private final double minX, minY, minZ;
+    private final int nx, ny, nz;
+
+    /** Offsets of the first point of each cell in {@link #cellPoints}. */
+    private final int[] cellStart;
+    /** Point indices sorted by cell, and by index within a cell. */
+    private final int[] cellPoints;
+    /** The coordinates of {@link #cellPoints}, as x,y,z triples. */
+    private final double[] cellCoordinates;
+    /** The position of each point in {@link #cellPoints}. */
+    private final int[] pointSlot;
+
+    /**
+     * Creates a grid for the given points.
+     *
+     * @param points   the points to index
+     * @param cellSize the edge length of the cells, usually the query radius
+     * @throws IllegalArgumentException if the cell size is not positive or a point is null
+     */
+    @TestMethod("testSpatialGrid_arrayPoint3d_double")
+    public SpatialGrid(Point3d[] points, double cellSize) {
+        this(coordinates(points), cellSize);
+    }
+
+    /**
+     * Creates a grid for the 3D coordinates of the given atoms.
+     *
+     * @param atoms    the atoms to index
+     * @param cellSize the edge length of the cells, usually the query radius
+     * @throws IllegalArgumentException if the cell size is not positive or an atom
+     *                                  has no 3D coordinates
+     */
+    @TestMethod("testSpatialGrid_arrayIAtom_double")
+    public SpatialGrid(IAtom[] atoms, double cellSize) {
+        this(coordinates(atoms), cellSize);
+    }
+
+    private SpatialGrid(double[] coordinates, double cellSize) {
+        if (!(cellSize > 0) || Double.isInfinite(cellSize))
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        pointCount = coordinates.length / 3;
+
+        double maxX, maxY, maxZ;
+        if (pointCount == 0) {
+            minX = minY = minZ = 0;
+            maxX = maxY = maxZ = 0;
+        } else {
+            double x0 = coordinates[0], y0 = coordinates[1], z0 = coordinates[2];
+            double x1 = x0, y1 = y0, z1 = z0;
+            for (int i = 3; i < coordinates.length; i += 3) {
+                x0 = Math.min(x0, coordinates[i]);
+                x1 = Math.max(x1, coordinates[i]);
+                y0 = Math.min(y0, coordinates[i + 1]);
+                y1 = Math.max(y1, coordinates[i + 1]);
+                z0 = Math.min(z0, coordinates[i + 2]);
+                z1 = Math.max(z1, coordinates[i + 2]);
+            }
+            minX = x0; minY = y0; minZ = z0;
+            maxX = x1; maxY = y1; maxZ = z1;
+        }
+
+        // grow the cells until there are not too many of them
+        long maxCells = Math.max(64L, (long)MAX_CELLS_PER_POINT * pointCount);
+        double size = cellSize;
+        while (cellCount(maxX - minX, size) * cellCount(maxY - minY, size)
+               * cellCount(maxZ - minZ, size) > maxCells) {
+            size *= 1.5;
+        }
+        this.cellSize = size;
+        nx = (int)cellCount(maxX - minX, size);
+        ny = (int)cellCount(maxY - minY, size);
+        nz = (int)cellCount(maxZ - minZ, size);
+
+        // counting sort of the points by cell
+        int[] cells = new int[pointCount];
+        cellStart = new int[nx * ny * nz + 1];
+        for (int i = 0; i < pointCount; i++) {
+            cells[i] = cell(coordinates[3 * i], coordinates[3 * i + 1], coordinates[3 * i + 2]);
+            cellStart[cells[i] + 1]++;
+        }
+        for (int c = 0; c < nx * ny * nz; c++)
+            cellStart[c + 1] += cellStart[c];
+        int[] next = new int[nx * ny * nz];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        cellPoints = new int[pointCount];
+        cellCoordinates = new double[3 * pointCount];
+        pointSlot = new int[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            int slot = next[cells[i]]++;
+            cellPoints[slot] = i;
+            pointSlot[i] = slot;
+            System.arraycopy(coordinates, 3 * i, cellCoordinates, 3 * slot, 3);
+        }
+    }
+
+    private static double[] coordinates(Point3d[] points) {
+        double[] coordinates = new double[3 * points.length];
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] == null)
+                throw new IllegalArgumentException("Point " + i + " is null");
+            coordinates[3 * i] = points[i].x;
+            coordinates[3 * i + 1] = points[i].y;
+            coordinates[3 * i + 2] = points[i].z;
+        }
+        return coordinates;
+    }
+
+    private static double[] coordinates(IAtom[] atoms) {
+        double[] coordinates = new double[3 * atoms.length];
+        for (int i = 0; i < atoms.length; i++) {
+            Point3d point = atoms[i].getPoint3d();
+            if (point == null)
+                throw new IllegalArgumentException("Atom " + i + " has no 3D coordinates");
+            coordinates[3 * i] = point.x;
+            coordinates[3 * i + 1] = point.y;
+            coordinates[3 * i + 2] = point.z;
+        }
+        return coordinates;
+    }
+
+    private static long cellCount(double extent, double size) {
+        return (long)Math.floor(extent / size) + 1;
+    }
+
+    private int cell(double x, double y, double z) {
+        return (cellIndex(x - minX, nx) * ny + cellIndex(y - minY, ny)) * nz
+               + cellIndex(z - minZ, nz);
+    }
+
+    /** The cell along one axis, clamped to the grid. */
+    private int cellIndex(double offset, int n) {
+        double index = Math.floor(offset / cellSize);
+        if (index < 0) return 0;
+        if (index >= n) return n - 1;
+        return (int)index;
+    }
+
+    /**
+     * Returns the number of points in the grid.
+     *
+     * @return the number of points
+     */
+    @TestMethod("testGetPointCount")
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Returns the edge length of the cells, which may be larger than the size
+     * the grid was created with if the points are sparse.
+     *
+     * @return the cell size
+     */
+    @TestMethod("testGetCellSize")
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Finds the points no further than <code>radius</code> from the given
+     * position. The indices of the points are written to
+     * <code>neighbors</code>, and the number of points found is returned. If
+     * more points are found than fit in the array, only the first ones are
+     * written, and the query should be repeated with an array of the returned
+     * size. The order of the indices is not defined.
+     *
+     * @param x         the x coordinate of the position
+     * @param y         the y coordinate of the position
+     * @param z         the z coordinate of the position
+     * @param radius    the maximum distance from the position
+     * @param neighbors the array to write the point indices to
+     * @return the number of points found
+     */
+    @TestMethod("testGetNeighbors_double_double_double_double_arrayint")
+    public int getNeighbors(double x, double y, double z, double radius, int[] neighbors) {
+        return getNeighbors(x, y, z, radius, -1, neighbors);
+    }
+
+    /**
+     * Finds the points, other than the point itself, no further than
+     * <code>radius</code> from the given point. The indices of the points are
+     * written to <code>neighbors</code> as for
+     * {@link #getNeighbors(double, double, double, double, int[])}.
+     *
+     * @param index     the index of the point
+     * @param radius    the maximum distance from the point
+     * @param neighbors the array to write the point indices to
+     * @return the number of points found
+     */
+    @TestMethod("testGetNeighbors_int_double_arrayint")
+    public int getNeighbors(int index, double radius, int[] neighbors) {
+        int slot = pointSlot[index];
+        return getNeighbors(cellCoordinates[3 * slot], cellCoordinates[3 * slot + 1],
+                            cellCoordinates[3 * slot + 2], radius, index, neighbors);
+    }
+
+    /**
+     * Finds the points, other than the point itself, no further than
+     * <code>radius</code> from the given point. This convenience method
+     * allocates a new array for each query.
+     *
+     * @param index  the index of the point
+     * @param radius the maximum distance from the point
+     * @return the indices of the points found
+     */
+    @TestMethod("testGetNeighbors_int_double")
+    public int[] getNeighbors(int index, double radius) {
+        int[] neighbors = new int[16];
+        int count = getNeighbors(index, radius, neighbors);
+        if (count > neighbors.length) {
+            neighbors = new int[count];
+            getNeighbors(index, radius, neighbors);
+        }
+        int[] result = new int[count];
+        System.arraycopy(neighbors, 0, result, 0, count);
+        return result;
+    }
+
+    private int getNeighbors(double x, double y, double z, double radius,
+                             int exclude, int[] neighbors) {
+        if (pointCount == 0 || !(radius >= 0))
+            return 0;
+        int x0 = firstCell(x - radius - minX), x1 = lastCell(x + radius - minX, nx);
+        int y0 = firstCell(y - radius - minY), y1 = lastCell(y + radius - minY, ny);
+        int z0 = firstCell(z - radius - minZ), z1 = lastCell(z + radius - minZ, nz);
+        double radius2 = radius * radius;
+        int count = 0;
+        for (int i = x0; i <= x1; i++) {
+            for (int j = y0; j <= y1; j++) {
+                int row = (i * ny + j) * nz;
+                int end = cellStart[row + z1 + 1];
+                for (int slot = cellStart[row + z0]; slot < end; slot++) {
+                    double dx = cellCoordinates[3 * slot] - x;
+                    double dy = cellCoordinates[3 * slot + 1] - y;
+                    double dz = cellCoordinates[3 * slot + 2] - z;
+                    if (dx * dx + dy * dy + dz * dz <= radius2) {
+                        int point = cellPoints[slot];
+                        if (point == exclude) continue;
+                        if (count < neighbors.length) neighbors[count] = point;
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The first cell along an axis that overlaps a range starting at the given
+     * offset from the grid origin.
+     */
+    private int firstCell(double offset) {
+        double index = Math.floor(offset / cellSize);
+        return index < 0 ? 0 : (int)Math.min(index, Integer.MAX_VALUE);
+    }
+
+    private int lastCell(double offset, int n) {
+        double index = Math.floor(offset / cellSize);
+        return index >= n ? n - 1 : (int)Math.max(index, -1);
+    }
+
+}
@@ -26,7 +26,6 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
-import org.openscience.cdk.tools.periodictable.PeriodicTable;
 
 import javax.vecmath.Point3d;
 import java.util.ArrayList;
@@ -48,6 +47,9 @@ import java.util.Iterator;
  * <p>The default solvent radius used is 1.4A and setting this to 0 will give the
  * Van der Waals surface. The accuracy can be increased by increasing the tessellation 
  * level, though the default of 4 is a good balance between accuracy and speed.
+ * 
+ * <p>{@link ParallelSurface} calculates the same surface on several threads, and
+ * can leave out the surface points, which is better suited to proteins.
  *
  * @author      Rajarshi Guha
  * @cdk.created 2005-05-08  
@@ -101,56 +103,25 @@ public class NumericalSurface {
      * as well as calculating the surface area of each atom
      */
     public void calculateSurface() {
-
-        // get r_f and geometric center
-        Point3d cp = new Point3d(0,0,0);
-        double max_radius = 0;
-        for (int i = 0; i < atoms.length; i++) {
-            double vdwr = PeriodicTable.getVdwRadius(atoms[i].getSymbol());
-            if (vdwr+solvent_radius > max_radius)
-                max_radius = PeriodicTable.getVdwRadius(atoms[i].getSymbol())+solvent_radius;
-
-            cp.x = cp.x + atoms[i].getPoint3d().x;
-            cp.y = cp.y + atoms[i].getPoint3d().y;
-            cp.z = cp.z + atoms[i].getPoint3d().z;
+        ParallelSurface surface = new ParallelSurface(atoms, solvent_radius, tesslevel, 1);
+        try {
+            surface.calculateSurface();
+        } catch (CDKException exception) {
+            // only a calculation on several threads can be interrupted
+            throw new IllegalStateException(exception.getMessage());
         }
-        cp.x = cp.x / atoms.length;
-        cp.y = cp.y / atoms.length;
-        cp.z = cp.z / atoms.length;
-
-
-        // do the tesselation
-        Tessellate tess = new Tessellate("ico",tesslevel);
-        tess.doTessellate();
-        logger.info("Got tesselation, number of triangles = "+tess.getNumberOfTriangles());
-
-
-        // get neighbor list
-        NeighborList nbrlist = new NeighborList(atoms, max_radius+solvent_radius);
-        logger.info("Got neighbor list");
-
-        /*
-           for (int i = 0; i < atoms.length; i++) {
-           int[] nlist = nbrlist.getNeighbors(i);
-           logger.debug("Atom "+i+": ");
-           for (int j = 0; j < nlist.length; j++)
-           logger.debug(j+" ");
-           logger.debug("");
-           }
-           */
 
-        // loop over atoms and get surface points
         this.surf_points = new ArrayList[ atoms.length ];
-        this.areas = new double[ atoms.length ];
-        this.volumes = new double[ atoms.length ];
-
+        this.areas = surface.getAllSurfaceAreas();
+        this.volumes = surface.getVolumes();
+        double[][] surfacePoints = surface.getSurfacePointArrays();
         for (int i = 0; i < atoms.length; i++) {
-            int point_density = tess.getNumberOfTriangles()*3;
-            Point3d[][] points = atomicSurfacePoints(nbrlist, i, atoms[i], tess);
-            translatePoints(i, points, point_density, atoms[i], cp);
+            double[] points = surfacePoints[i];
+            ArrayList tmp = new ArrayList();
+            for (int j = 0; j < points.length; j += 3)
+                tmp.add( new Point3d(points[j], points[j+1], points[j+2]) );
+            this.surf_points[i] = tmp;
         }
-        logger.info("Obtained points, areas and volumes");
-
     }
 
     /**
@@ -228,96 +199,4 @@ public class NumericalSurface {
         for (int i =0; i < this.areas.length; i++) ta += this.areas[i];
         return(ta);
     }
-
-
-    private void translatePoints(int atmIdx, Point3d[][] points, int point_density, IAtom atom, Point3d cp) {
-        double total_radius = PeriodicTable.getVdwRadius(atom.getSymbol()) + solvent_radius;
-
-        double area = 4 * Math.PI * (total_radius*total_radius) * points.length / point_density;
-
-        double sumx = 0.0;
-        double sumy = 0.0;
-        double sumz = 0.0;
-        for (int i = 0; i < points.length; i++) {
-            Point3d p = points[i][1];
-            sumx += p.x;
-            sumy += p.y;
-            sumz += p.z;
-        }
-        double vconst = 4.0/3.0 * Math.PI / (double)point_density;
-        double dotp1 = (atom.getPoint3d().x - cp.x)*sumx +
-            (atom.getPoint3d().y - cp.y)*sumy +
-            (atom.getPoint3d().z - cp.z)*sumz;
-        double volume = vconst*(total_radius*total_radius) *dotp1 +
-            (total_radius*total_radius*total_radius)*points.length;
-
-        this.areas[atmIdx] = area;
-        this.volumes[atmIdx] = volume;
-
-        ArrayList tmp = new ArrayList();
-        for (int i = 0; i < points.length; i++) tmp.add( points[i][0] );
-        this.surf_points[atmIdx] =  tmp;
-    }
-
-    private Point3d[][] atomicSurfacePoints(NeighborList nbrlist, int currAtomIdx, IAtom atom, Tessellate tess) {
-
-        double total_radius = PeriodicTable.getVdwRadius(atom.getSymbol()) + solvent_radius;
-        double total_radius2 = total_radius*total_radius;
-        double twice_total_radius = 2*total_radius;
-
-        int[] nlist = nbrlist.getNeighbors(currAtomIdx);
-        double[][] data = new double[ nlist.length ][4];
-        for (int i = 0; i < nlist.length; i++) {
-            double x12 = atoms[nlist[i]].getPoint3d().x - atom.getPoint3d().x;
-            double y12 = atoms[nlist[i]].getPoint3d().y - atom.getPoint3d().y;
-            double z12 = atoms[nlist[i]].getPoint3d().z - atom.getPoint3d().z;
-
-            double d2 = x12*x12 + y12*y12 + z12*z12;
-            double tmp = PeriodicTable.getVdwRadius(atoms[nlist[i]].getSymbol()) + solvent_radius;
-            tmp = tmp * tmp;
-            double thresh = (d2 + total_radius2 - tmp) / twice_total_radius;
-
-            data[i][0] = x12;
-            data[i][1] = y12;
-            data[i][2] = z12;
-            data[i][3] = thresh;
-        }
-
-        Point3d[] tess_points = tess.getTessAsPoint3ds();
-        ArrayList points = new ArrayList();
-        for (int i = 0; i < tess_points.length; i++) {
-            Point3d pt = tess_points[i];
-            boolean buried = false;
-            for (int j = 0; j < data.length; j++) {
-                if (data[j][0] * pt.x + data[j][1] * pt.y + data[j][2] * pt.z > data[j][3]) {
-                    buried = true;
-                    break;
-                }
-            }
-            if (buried == false) {
-                Point3d[] tmp = new Point3d[2];
-                tmp[0] =  new Point3d(
-                        total_radius * pt.x + atom.getPoint3d().x,
-                        total_radius * pt.y + atom.getPoint3d().y,
-                        total_radius * pt.z + atom.getPoint3d().z
-                        );
-                tmp[1] = pt;
-                points.add( tmp );
-            }
-        }
-
-        // the first column contains the transformed points
-        // and the second column contains the points from the
-        // original unit tesselation
-        Point3d[][] ret = new Point3d[ points.size() ][2];
-        for (int i = 0; i < points.size(); i++) {
-            Point3d[] tmp = (Point3d[])points.get(i);
-            ret[i][0] = tmp[0];
-            ret[i][1] = tmp[1];
-        }
-        return(ret);
-    }
 }
-
-
-
@@ -0,0 +1,472 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.geometry.surface;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.geometry.SpatialGrid;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * Calculates the solvent accessible surface of a molecule on several threads,
+ * with the method of {@link NumericalSurface} and giving the same results.
+ * The atoms are split into small blocks, which the threads take in turn, so
+ * that the work is balanced even when some parts of the molecule are more
+ * crowded than others.
+ *
+ * <p>The surface points are kept as x,y,z triples in one <code>double[]</code>
+ * per atom instead of as {@link Point3d} objects, and
+ * {@link #calculateAreas()} only counts them, which is enough for the surface
+ * areas and uses little memory even for large proteins:
+ * <pre>
+ *   ParallelSurface surface = new ParallelSurface(protein);
+ *   surface.calculateAreas();
+ *   double area = surface.getTotalSurfaceArea();
+ * </pre>
+ *
+ * @cdk.module  extra
+ * @cdk.githash
+ * @cdk.keyword solvent accessible surface
+ * @see NumericalSurface
+ */
+@TestClass("org.openscience.cdk.geometry.surface.ParallelSurfaceTest")
+public class ParallelSurface {
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(ParallelSurface.class);
+
+    /** The number of atoms calculated by one task. */
+    private static final int ATOMS_PER_TASK = 64;
+
+    private final IAtom[] atoms;
+    private final double solventRadius;
+    private final int tessLevel;
+    private final int threadCount;
+
+    private double[] areas;
+    private double[] volumes;
+    private double[][] surfacePoints;
+
+    // set up by prepare()
+    private double[] coordinates;
+    private double[] radii;
+    private double maxRadius;
+    private double centerX, centerY, centerZ;
+    /** The distinct points of the unit tessellation, as x,y,z triples. */
+    private double[] vertices;
+    /** The vertex of each point of the tessellation. */
+    private int[] tessVertices;
+    private SpatialGrid grid;
+
+    /**
+     * Creates a surface calculation with a solvent radius of 1.4A, a
+     * tessellation level of 4, and one thread per available processor.
+     *
+     * @param atomContainer the molecule for which the surface is calculated
+     */
+    @TestMethod("testParallelSurface_IAtomContainer")
+    public ParallelSurface(IAtomContainer atomContainer) {
+        this(atomContainer, 1.4, 4, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a surface calculation with user specified values.
+     *
+     * @param atomContainer the molecule for which the surface is calculated
+     * @param solventRadius the radius of a solvent molecule that is used to extend
+     *                      the radius of each atom. Setting to 0 gives the Van der Waals surface
+     * @param tessLevel     the number of levels that the subdivision algorithm for
+     *                      tessellation should use
+     * @param threadCount   the number of threads to use
+     */
+    @TestMethod("testParallelSurface_IAtomContainer_double_int_int")
+    public ParallelSurface(IAtomContainer atomContainer, double solventRadius,
+                           int tessLevel, int threadCount) {
+        this(AtomContainerManipulator.getAtomArray(atomContainer),
+             solventRadius, tessLevel, threadCount);
+    }
+
+    ParallelSurface(IAtom[] atoms, double solventRadius, int tessLevel, int threadCount) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("At least one thread is needed: " + threadCount);
+        this.atoms = atoms;
+        this.solventRadius = solventRadius;
+        this.tessLevel = tessLevel;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Calculates the surface points, areas and volumes of all atoms.
+     *
+     * @throws CDKException if the calculation is interrupted
+     */
+    @TestMethod("testCalculateSurface")
+    public void calculateSurface() throws CDKException {
+        calculate(true);
+    }
+
+    /**
+     * Calculates the surface areas and volumes of all atoms, without keeping
+     * the surface points.
+     *
+     * @throws CDKException if the calculation is interrupted
+     */
+    @TestMethod("testCalculateAreas")
+    public void calculateAreas() throws CDKException {
+        calculate(false);
+    }
+
+    private void calculate(boolean withPoints) throws CDKException {
+        prepare(withPoints);
+        if (threadCount == 1 || atoms.length <= ATOMS_PER_TASK) {
+            calculate(0, atoms.length);
+        } else {
+            calculateInParallel();
+        }
+        logger.info("Obtained points, areas and volumes");
+    }
+
+    private void calculateInParallel() throws CDKException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        try {
+            for (int start = 0; start < atoms.length; start += ATOMS_PER_TASK) {
+                final int first = start;
+                final int last = Math.min(start + ATOMS_PER_TASK, atoms.length);
+                tasks.add(executor.submit(new Runnable() {
+                    public void run() {
+                        calculate(first, last);
+                    }
+                }));
+            }
+            for (Future<?> task : tasks)
+                task.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Interrupted while calculating the surface", exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Error) throw (Error)cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            throw new CDKException("Error while calculating the surface", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sets up the radii, the tessellation and the neighbor search, and the
+     * arrays for the results.
+     */
+    private void prepare(boolean withPoints) {
+        int n = atoms.length;
+        coordinates = new double[ 3*n ];
+        radii = new double[ n ];
+        maxRadius = 0;
+        double sumX = 0, sumY = 0, sumZ = 0;
+        for (int i = 0; i < n; i++) {
+            Point3d point = atoms[i].getPoint3d();
+            coordinates[3*i] = point.x;
+            coordinates[3*i+1] = point.y;
+            coordinates[3*i+2] = point.z;
+            radii[i] = PeriodicTable.getVdwRadius(atoms[i].getSymbol()) + solventRadius;
+            if (radii[i] > maxRadius)
+                maxRadius = radii[i];
+            sumX = sumX + point.x;
+            sumY = sumY + point.y;
+            sumZ = sumZ + point.z;
+        }
+        centerX = sumX / n;
+        centerY = sumY / n;
+        centerZ = sumZ / n;
+
+        Tessellate tess = new Tessellate("ico", tessLevel);
+        tess.doTessellate();
+        logger.info("Got tesselation, number of triangles = "+tess.getNumberOfTriangles());
+
+        // the triangles of the tessellation share their vertices, which
+        // only need to be tested once for each atom
+        Point3d[] tessPoints = tess.getTessAsPoint3ds();
+        tessVertices = new int[ tessPoints.length ];
+        Map<Point3d,Integer> vertexIndices = new HashMap<Point3d,Integer>();
+        List<Point3d> vertexList = new ArrayList<Point3d>();
+        for (int i = 0; i < tessPoints.length; i++) {
+            Integer index = vertexIndices.get(tessPoints[i]);
+            if (index == null) {
+                index = vertexList.size();
+                vertexIndices.put(tessPoints[i], index);
+                vertexList.add(tessPoints[i]);
+            }
+            tessVertices[i] = index;
+        }
+        vertices = new double[ 3*vertexList.size() ];
+        for (int i = 0; i < vertexList.size(); i++) {
+            vertices[3*i] = vertexList.get(i).x;
+            vertices[3*i+1] = vertexList.get(i).y;
+            vertices[3*i+2] = vertexList.get(i).z;
+        }
+
+        // atoms further apart than the sum of their radii cannot bury each
+        // other's surface points
+        grid = new SpatialGrid(atoms, maxRadius > 0 ? 2 * maxRadius : 1.0);
+        logger.info("Got neighbor list");
+
+        areas = new double[ n ];
+        volumes = new double[ n ];
+        surfacePoints = withPoints ? new double[ n ][] : null;
+    }
+
+    /**
+     * Calculates the surface of the atoms <code>first</code> up to, but not
+     * including, <code>last</code>. Different ranges may be calculated at the
+     * same time.
+     */
+    private void calculate(int first, int last) {
+        int[] neighbors = new int[ 64 ];
+        double[] data = new double[ 4*64 ];
+        boolean[] buried = new boolean[ vertices.length / 3 ];
+        for (int i = first; i < last; i++) {
+            double radius = radii[i];
+            int count = grid.getNeighbors(i, radius + maxRadius, neighbors);
+            if (count > neighbors.length) {
+                neighbors = new int[ count ];
+                data = new double[ 4*count ];
+                grid.getNeighbors(i, radius + maxRadius, neighbors);
+            }
+            calculateAtom(i, neighbors, count, data, buried);
+        }
+    }
+
+    private void calculateAtom(int atomIdx, int[] neighbors, int count,
+                               double[] data, boolean[] buried) {
+        double x = coordinates[3*atomIdx];
+        double y = coordinates[3*atomIdx+1];
+        double z = coordinates[3*atomIdx+2];
+        double total_radius = radii[atomIdx];
+        double total_radius2 = total_radius*total_radius;
+        double twice_total_radius = 2*total_radius;
+
+        // a neighbor buries the points p for which (d,p) > thresh, with d
+        // the vector to the neighbor
+        for (int i = 0; i < count; i++) {
+            int j = neighbors[i];
+            double x12 = coordinates[3*j] - x;
+            double y12 = coordinates[3*j+1] - y;
+            double z12 = coordinates[3*j+2] - z;
+
+            double d2 = x12*x12 + y12*y12 + z12*z12;
+            double tmp = radii[j];
+            tmp = tmp * tmp;
+            data[4*i] = x12;
+            data[4*i+1] = y12;
+            data[4*i+2] = z12;
+            data[4*i+3] = (d2 + total_radius2 - tmp) / twice_total_radius;
+        }
+
+        // neighboring vertices tend to be buried by the same atom, so that
+        // atom is tried first
+        int end = 4*count;
+        int last = 0;
+        for (int v = 0; v < buried.length; v++) {
+            double px = vertices[3*v], py = vertices[3*v+1], pz = vertices[3*v+2];
+            buried[v] = false;
+            if (count > 0 && data[last] * px + data[last+1] * py + data[last+2] * pz > data[last+3]) {
+                buried[v] = true;
+                continue;
+            }
+            for (int j = 0; j < end; j += 4) {
+                if (data[j] * px + data[j+1] * py + data[j+2] * pz > data[j+3]) {
+                    buried[v] = true;
+                    last = j;
+                    break;
+                }
+            }
+        }
+
+        int exposed = 0;
+        double sumx = 0.0;
+        double sumy = 0.0;
+        double sumz = 0.0;
+        for (int i = 0; i < tessVertices.length; i++) {
+            int v = tessVertices[i];
+            if (!buried[v]) {
+                exposed++;
+                sumx += vertices[3*v];
+                sumy += vertices[3*v+1];
+                sumz += vertices[3*v+2];
+            }
+        }
+
+        int point_density = tessVertices.length;
+        areas[atomIdx] = 4 * Math.PI * (total_radius*total_radius) * exposed / point_density;
+        double vconst = 4.0/3.0 * Math.PI / (double)point_density;
+        double dotp1 = (x - centerX)*sumx + (y - centerY)*sumy + (z - centerZ)*sumz;
+        volumes[atomIdx] = vconst*(total_radius*total_radius) *dotp1 +
+            (total_radius*total_radius*total_radius)*exposed;
+
+        if (surfacePoints != null) {
+            double[] points = new double[ 3*exposed ];
+            int k = 0;
+            for (int i = 0; i < tessVertices.length; i++) {
+                int v = tessVertices[i];
+                if (!buried[v]) {
+                    points[k++] = total_radius * vertices[3*v] + x;
+                    points[k++] = total_radius * vertices[3*v+1] + y;
+                    points[k++] = total_radius * vertices[3*v+2] + z;
+                }
+            }
+            surfacePoints[atomIdx] = points;
+        }
+    }
+
+    /**
+     * Returns the number of points on the accessible surface of a specific atom.
+     *
+     * @param atomIdx the index of the atom
+     * @return the number of points
+     * @throws CDKException if the atom index is out of range, or the surface
+     *                      points were not calculated
+     */
+    @TestMethod("testGetSurfacePointCount_int")
+    public int getSurfacePointCount(int atomIdx) throws CDKException {
+        return getSurfacePoints(atomIdx).length / 3;
+    }
+
+    /**
+     * Returns the points on the accessible surface of a specific atom, as x,y,z
+     * triples. The array is not copied and should not be changed.
+     *
+     * @param atomIdx the index of the atom
+     * @return the coordinates of the points
+     * @throws CDKException if the atom index is out of range, or the surface
+     *                      points were not calculated
+     */
+    @TestMethod("testGetSurfacePoints_int")
+    public double[] getSurfacePoints(int atomIdx) throws CDKException {
+        if (surfacePoints == null)
+            throw new CDKException("The surface points were not calculated");
+        if (atomIdx < 0 || atomIdx >= surfacePoints.length)
+            throw new CDKException("Atom index was out of bounds");
+        return surfacePoints[atomIdx];
+    }
+
+    /**
+     * Returns the points on the accessible surface of all atoms, as x,y,z
+     * triples.
+     *
+     * @return the coordinates of the points
+     * @throws CDKException if the surface points were not calculated
+     */
+    @TestMethod("testGetAllSurfacePoints")
+    public double[] getAllSurfacePoints() throws CDKException {
+        if (surfacePoints == null)
+            throw new CDKException("The surface points were not calculated");
+        int length = 0;
+        for (double[] points : surfacePoints)
+            length += points.length;
+        double[] all = new double[ length ];
+        int offset = 0;
+        for (double[] points : surfacePoints) {
+            System.arraycopy(points, 0, all, offset, points.length);
+            offset += points.length;
+        }
+        return all;
+    }
+
+    /**
+     * Returns the surface area of a specific atom.
+     *
+     * @param atomIdx the index of the atom
+     * @return the accessible surface area of the atom
+     * @throws CDKException if the atom index is out of range
+     */
+    @TestMethod("testGetSurfaceArea_int")
+    public double getSurfaceArea(int atomIdx) throws CDKException {
+        if (atomIdx < 0 || atomIdx >= areas.length)
+            throw new CDKException("Atom index was out of bounds");
+        return areas[atomIdx];
+    }
+
+    /**
+     * Returns the surface areas of all atoms.
+     *
+     * @return the accessible surface areas, indexed like the atoms
+     */
+    @TestMethod("testGetAllSurfaceAreas")
+    public double[] getAllSurfaceAreas() {
+        return areas;
+    }
+
+    /**
+     * Returns the total surface area of the molecule.
+     *
+     * @return the sum of the surface areas of all atoms
+     */
+    @TestMethod("testGetTotalSurfaceArea")
+    public double getTotalSurfaceArea() {
+        double ta = 0.0;
+        for (int i = 0; i < areas.length; i++) ta += areas[i];
+        return ta;
+    }
+
+    /**
+     * Returns the volume contributions of all atoms, as used by
+     * {@link NumericalSurface}.
+     *
+     * @return the volumes, indexed like the atoms
+     */
+    @TestMethod("testGetVolumes")
+    double[] getVolumes() {
+        return volumes;
+    }
+
+    /**
+     * Returns the surface points of all atoms, as used by
+     * {@link NumericalSurface}.
+     *
+     * @return the x,y,z triples of each atom, or null if the surface points
+     *         were not calculated
+     */
+    @TestMethod("testGetSurfacePointArrays")
+    double[][] getSurfacePointArrays() {
+        return surfacePoints;
+    }
+
+}
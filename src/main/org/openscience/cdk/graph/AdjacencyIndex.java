@@ -0,0 +1,154 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.graph;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * Index from atoms to the bonds they take part in, so that the neighbours
+ * of an atom can be looked up in time proportional to its degree rather than
+ * to the number of bonds in the container. Atoms are compared by identity,
+ * just like {@link IBond#contains(IAtom)} does.
+ *
+ * <p>The index lists the bonds of an atom in the order in which they
+ * appear in the bond array the index was built from, so that clients
+ * see the same order as a linear scan over all bonds would give.
+ *
+ * <p>The index is used by the <code>IAtomContainer</code> implementations,
+ * which build it lazily and keep it in sync on <code>addBond</code> and
+ * <code>removeBond</code>. Bonds may be changed after they were added to a
+ * container; the containers have their bonds tell them when that happens
+ * and then build a new index. As a safeguard,
+ * {@link #getConnectedBonds(IAtom)} also returns <code>null</code> when it
+ * finds a listed bond that no longer contains the atom.
+ *
+ * @cdk.module  core
+ * @cdk.githash
+ * @cdk.keyword adjacency list
+ */
+@TestClass("org.openscience.cdk.graph.AdjacencyIndexTest")
+public class AdjacencyIndex {
+
+    private final static IBond[] NO_BONDS = new IBond[0];
+
+    private final Map<IAtom, IBond[]> connections;
+
+    /**
+     * Builds the index for the first <code>bondCount</code> bonds of the
+     * given array.
+     *
+     * @param bonds     the bonds to index
+     * @param bondCount the number of bonds in the array that are in use
+     */
+    @TestMethod("testConstructor")
+    public AdjacencyIndex(IBond[] bonds, int bondCount) {
+        connections = new IdentityHashMap<IAtom, IBond[]>(bondCount + 1);
+        for (int i = 0; i < bondCount; i++) addBond(bonds[i]);
+    }
+
+    /**
+     * Adds a bond to the end of the bond lists of each of its atoms. A bond
+     * that is added twice is listed twice, as it is in the bond array.
+     *
+     * @param bond the bond to add
+     */
+    @TestMethod("testAddBond_IBond")
+    public void addBond(IBond bond) {
+        for (int i = 0; i < bond.getAtomCount(); i++) {
+            IAtom atom = bond.getAtom(i);
+            if (occursBefore(bond, atom, i)) continue;
+            IBond[] current = connections.get(atom);
+            if (current == null) {
+                connections.put(atom, new IBond[]{bond});
+            } else {
+                IBond[] extended = new IBond[current.length + 1];
+                System.arraycopy(current, 0, extended, 0, current.length);
+                extended[current.length] = bond;
+                connections.put(atom, extended);
+            }
+        }
+    }
+
+    /**
+     * Removes a bond from the bond lists of each of its atoms.
+     *
+     * @param bond the bond to remove
+     */
+    @TestMethod("testRemoveBond_IBond")
+    public void removeBond(IBond bond) {
+        for (int i = 0; i < bond.getAtomCount(); i++) {
+            IAtom atom = bond.getAtom(i);
+            if (occursBefore(bond, atom, i)) continue;
+            IBond[] current = connections.get(atom);
+            if (current == null) continue;
+            for (int j = 0; j < current.length; j++) {
+                if (current[j] != bond) continue;
+                if (current.length == 1) {
+                    connections.remove(atom);
+                } else {
+                    IBond[] reduced = new IBond[current.length - 1];
+                    System.arraycopy(current, 0, reduced, 0, j);
+                    System.arraycopy(current, j + 1, reduced, j, current.length - j - 1);
+                    connections.put(atom, reduced);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the bonds the given atom takes part in. The returned array is
+     * owned by the index and must not be modified.
+     *
+     * @param  atom the atom to look up
+     * @return      the connected bonds, or <code>null</code> if the index is
+     *              found to be out of date
+     */
+    @TestMethod("testGetConnectedBonds_IAtom")
+    public IBond[] getConnectedBonds(IAtom atom) {
+        IBond[] connected = connections.get(atom);
+        if (connected == null) return NO_BONDS;
+        for (IBond bond : connected) {
+            if (!bond.contains(atom)) return null;
+        }
+        return connected;
+    }
+
+    /**
+     * Returns true if the atom is also found before the given index in the
+     * bond, so that a bond is listed only once for each of its atoms.
+     */
+    private static boolean occursBefore(IBond bond, IAtom atom, int index) {
+        for (int i = 0; i < index; i++) {
+            if (bond.getAtom(i) == atom) return true;
+        }
+        return false;
+    }
+
+}
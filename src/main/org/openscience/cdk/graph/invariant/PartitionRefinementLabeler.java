@@ -0,0 +1,399 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.graph.invariant;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * Canonically labels the atoms of an atom container by partition
+ * refinement. The atoms are first partitioned by the invariants of
+ * {@link CanonicalLabeler}: the number of connections, the number of
+ * connected atoms, the atomic number, the formal charge and the hydrogen
+ * count, and in addition the mass number. The partition is then refined
+ * until atoms in the same cell have the same number of neighbours, by bond
+ * type, in each other cell. Atoms that are still not distinguished are
+ * told apart by taking the first of them out of its cell, and refining
+ * again.
+ *
+ * <p>Unlike {@link CanonicalLabeler}, the labels are returned as an array
+ * and no atom properties are set, bond orders are taken into account, and
+ * no invariants are multiplied together, so that molecules with thousands of
+ * atoms, such as peptides and polymers, are labelled without overflow. Only
+ * the atoms next to a cell that was split are looked at again, which keeps
+ * long chains fast. The labeler keeps no state between calls, and may be
+ * used by several threads at once:
+ * <pre>
+ * long[] labels = new PartitionRefinementLabeler().getCanonicalLabels(molecule);
+ * // labels[i] is the canonical label of molecule.getAtom(i), from 1 on
+ * </pre>
+ *
+ * <p>As with {@link CanonicalLabeler}, atoms that refinement does not tell
+ * apart are assumed to be symmetry equivalent, which holds for nearly all
+ * molecules.
+ *
+ * @cdk.module  standard
+ * @cdk.githash
+ * @cdk.keyword canonicalization
+ * @see org.openscience.cdk.smiles.SmilesGenerator#setUsePartitionRefinement(boolean)
+ */
+@TestClass("org.openscience.cdk.graph.invariant.PartitionRefinementLabelerTest")
+public class PartitionRefinementLabeler {
+
+    // the weight of a neighbour in a splitter cell, by bond type; 16 bits each
+    private static final long SINGLE = 1L;
+    private static final long DOUBLE = 1L << 16;
+    private static final long TRIPLE = 1L << 32;
+    private static final long OTHER = 1L << 48;
+
+    /**
+     * Creates a new labeler.
+     */
+    @TestMethod("testGetCanonicalLabels")
+    public PartitionRefinementLabeler() {
+    }
+
+    /**
+     * Canonically labels the atoms of an atom container. The atom with
+     * label 1 has the lowest invariants, as with {@link CanonicalLabeler}.
+     *
+     * @param  atomContainer the atoms to label
+     * @return               the canonical label of each atom, in the order of
+     *                       the atoms in the container, from 1 to the number
+     *                       of atoms
+     */
+    @TestMethod("testGetCanonicalLabels,testGetCanonicalLabels_Empty,testGetCanonicalLabels_AtomOrder," +
+        "testGetCanonicalLabels_BondOrder,testGetCanonicalLabels_Polymer")
+    public long[] getCanonicalLabels(IAtomContainer atomContainer) {
+        int atomCount = atomContainer.getAtomCount();
+        long[] labels = new long[atomCount];
+        if (atomCount == 0) return labels;
+
+        Map<IAtom, Integer> indices = new IdentityHashMap<IAtom, Integer>(2 * atomCount);
+        for (int i = 0; i < atomCount; i++) {
+            indices.put(atomContainer.getAtom(i), i);
+        }
+        int[] degree = new int[atomCount];
+        for (IBond bond : atomContainer.bonds()) {
+            for (int i = 0; i < bond.getAtomCount(); i++) {
+                Integer index = indices.get(bond.getAtom(i));
+                if (index != null) degree[index] += bond.getAtomCount() - 1;
+            }
+        }
+        int[][] neighbours = new int[atomCount][];
+        long[][] weights = new long[atomCount][];
+        for (int i = 0; i < atomCount; i++) {
+            neighbours[i] = new int[degree[i]];
+            weights[i] = new long[degree[i]];
+            degree[i] = 0;
+        }
+        for (IBond bond : atomContainer.bonds()) {
+            long weight = getWeight(bond);
+            for (int i = 0; i < bond.getAtomCount(); i++) {
+                Integer index1 = indices.get(bond.getAtom(i));
+                if (index1 == null) continue;
+                for (int j = 0; j < bond.getAtomCount(); j++) {
+                    Integer index2 = indices.get(bond.getAtom(j));
+                    if (i == j || index2 == null) continue;
+                    neighbours[index1][degree[index1]] = index2;
+                    weights[index1][degree[index1]++] = weight;
+                }
+            }
+        }
+
+        Refinement refinement = new Refinement(neighbours, weights, getInvariants(atomContainer, degree));
+        refinement.refine();
+        int start = 0;
+        while ((start = refinement.nextNonSingletonCell(start)) < atomCount) {
+            refinement.individualize(start);
+            refinement.refine();
+        }
+        for (int position = 0; position < atomCount; position++) {
+            labels[refinement.order[position]] = position + 1;
+        }
+        return labels;
+    }
+
+    private static long getWeight(IBond bond) {
+        if (bond.getFlag(CDKConstants.ISAROMATIC)) return OTHER;
+        IBond.Order order = bond.getOrder();
+        if (order == null || order == IBond.Order.SINGLE) return SINGLE;
+        if (order == IBond.Order.DOUBLE) return DOUBLE;
+        if (order == IBond.Order.TRIPLE) return TRIPLE;
+        return OTHER;
+    }
+
+    /**
+     * Returns the initial invariants of each atom, compared in order.
+     */
+    private static int[][] getInvariants(IAtomContainer atomContainer, int[] degree) {
+        int[][] invariants = new int[atomContainer.getAtomCount()][];
+        for (int i = 0; i < invariants.length; i++) {
+            IAtom atom = atomContainer.getAtom(i);
+            int hydrogens = atom.getImplicitHydrogenCount() == CDKConstants.UNSET
+                ? 0 : atom.getImplicitHydrogenCount();
+            int charge = atom.getFormalCharge() == CDKConstants.UNSET ? 0 : atom.getFormalCharge();
+            Integer atomicNumber = PeriodicTable.getAtomicNumber(atom.getSymbol());
+            int massNumber = atom.getMassNumber() == CDKConstants.UNSET ? 0 : atom.getMassNumber();
+            invariants[i] = new int[]{
+                degree[i] + hydrogens,
+                degree[i],
+                atomicNumber == null ? 0 : atomicNumber,
+                charge < 0 ? 1 : 0,
+                Math.abs(charge),
+                hydrogens,
+                massNumber
+            };
+        }
+        return invariants;
+    }
+
+    /**
+     * The ordered partition of the atoms of one call. Each cell is a range of
+     * positions in <code>order</code>.
+     */
+    private static class Refinement {
+
+        final int[][] neighbours;
+        final long[][] weights;
+
+        /** The atom at each position. */
+        final int[] order;
+        /** The position of each atom. */
+        final int[] position;
+        /** The first position of the cell of each position. */
+        final int[] cellStart;
+        /** The size of each cell, at its first position. */
+        final int[] cellSize;
+
+        /** The cells, by first position, still to be used as splitter. */
+        final int[] queue;
+        final boolean[] inQueue;
+        int head = 0;
+        int queued = 0;
+
+        /** The weighted neighbour count of each atom in the current splitter. */
+        final long[] key;
+        final int[] touched;
+        final int[] splitter;
+        final int[] buffer;
+
+        Refinement(int[][] neighbours, long[][] weights, final int[][] invariants) {
+            int atomCount = neighbours.length;
+            this.neighbours = neighbours;
+            this.weights = weights;
+            order = new int[atomCount];
+            position = new int[atomCount];
+            cellStart = new int[atomCount];
+            cellSize = new int[atomCount];
+            queue = new int[atomCount];
+            inQueue = new boolean[atomCount];
+            key = new long[atomCount];
+            touched = new int[atomCount];
+            splitter = new int[atomCount];
+            buffer = new int[atomCount];
+
+            for (int i = 0; i < atomCount; i++) order[i] = i;
+            sort(order, 0, atomCount, new AtomComparator() {
+                public int compare(int atom1, int atom2) {
+                    int[] invariants1 = invariants[atom1];
+                    int[] invariants2 = invariants[atom2];
+                    for (int i = 0; i < invariants1.length; i++) {
+                        if (invariants1[i] != invariants2[i])
+                            return invariants1[i] < invariants2[i] ? -1 : 1;
+                    }
+                    return 0;
+                }
+            });
+            int start = 0;
+            for (int p = 0; p < atomCount; p++) {
+                position[order[p]] = p;
+                if (p > 0 && !java.util.Arrays.equals(invariants[order[p]], invariants[order[p - 1]])) {
+                    cellSize[start] = p - start;
+                    enqueue(start);
+                    start = p;
+                }
+                cellStart[p] = start;
+            }
+            cellSize[start] = atomCount - start;
+            enqueue(start);
+        }
+
+        void enqueue(int start) {
+            queue[(head + queued++) % queue.length] = start;
+            inQueue[start] = true;
+        }
+
+        int nextNonSingletonCell(int start) {
+            while (start < order.length && cellSize[start] == 1) start++;
+            return start;
+        }
+
+        /**
+         * Takes the first atom of a cell out into a cell of its own, which
+         * becomes the next splitter.
+         */
+        void individualize(int start) {
+            int size = cellSize[start];
+            cellSize[start] = 1;
+            cellSize[start + 1] = size - 1;
+            for (int p = start + 1; p < start + size; p++) cellStart[p] = start + 1;
+            enqueue(start);
+        }
+
+        /**
+         * Splits cells by their weighted neighbour counts in the splitter
+         * cells, until no cell can be split any further.
+         */
+        void refine() {
+            AtomComparator byCellAndKey = new AtomComparator() {
+                public int compare(int atom1, int atom2) {
+                    int start1 = cellStart[position[atom1]];
+                    int start2 = cellStart[position[atom2]];
+                    if (start1 != start2) return start1 < start2 ? -1 : 1;
+                    return key[atom1] < key[atom2] ? -1 : (key[atom1] == key[atom2] ? 0 : 1);
+                }
+            };
+            while (queued > 0) {
+                int start = queue[head];
+                head = (head + 1) % queue.length;
+                queued--;
+                inQueue[start] = false;
+
+                // the splitter may itself be split while it is used
+                int size = cellSize[start];
+                System.arraycopy(order, start, splitter, 0, size);
+                int touchedCount = 0;
+                for (int i = 0; i < size; i++) {
+                    int atom = splitter[i];
+                    for (int j = 0; j < neighbours[atom].length; j++) {
+                        int neighbour = neighbours[atom][j];
+                        if (key[neighbour] == 0) touched[touchedCount++] = neighbour;
+                        key[neighbour] += weights[atom][j];
+                    }
+                }
+                sort(touched, 0, touchedCount, byCellAndKey);
+                for (int from = 0; from < touchedCount; ) {
+                    int cell = cellStart[position[touched[from]]];
+                    int to = from + 1;
+                    while (to < touchedCount && cellStart[position[touched[to]]] == cell) to++;
+                    split(cell, from, to);
+                    from = to;
+                }
+                for (int i = 0; i < touchedCount; i++) key[touched[i]] = 0;
+            }
+        }
+
+        /**
+         * Splits a cell into the atoms not touched by the splitter, followed
+         * by the touched atoms <code>touched[from..to)</code> grouped by key.
+         */
+        private void split(int cell, int from, int to) {
+            int size = cellSize[cell];
+            int touchedCount = to - from;
+            if (touchedCount == size && key[touched[from]] == key[touched[to - 1]]) return;
+
+            // move the touched atoms, sorted by key, to the end of the cell
+            int tail = cell + size - touchedCount;
+            for (int i = 0; i < touchedCount; i++) {
+                int atom = touched[from + i];
+                int target = tail + i;
+                int other = order[target];
+                int current = position[atom];
+                order[current] = other;
+                position[other] = current;
+                order[target] = atom;
+                position[atom] = target;
+            }
+
+            // the new cells, each starting where the key changes
+            int cellCount = 0;
+            if (tail > cell) buffer[cellCount++] = cell;
+            for (int p = tail; p < cell + size; p++) {
+                if (p == tail || key[order[p]] != key[order[p - 1]]) buffer[cellCount++] = p;
+            }
+            int largest = 0;
+            for (int c = 0; c < cellCount; c++) {
+                int start = buffer[c];
+                int end = c + 1 < cellCount ? buffer[c + 1] : cell + size;
+                cellSize[start] = end - start;
+                if (start != cell)
+                    for (int p = start; p < end; p++) cellStart[p] = start;
+                if (cellSize[start] > cellSize[buffer[largest]]) largest = c;
+            }
+
+            // a cell already queued is split as a whole; otherwise its
+            // largest part is implied by the others
+            boolean queued = inQueue[cell];
+            for (int c = 0; c < cellCount; c++) {
+                int start = buffer[c];
+                if (queued ? start != cell : c != largest) {
+                    if (!inQueue[start]) enqueue(start);
+                }
+            }
+        }
+    }
+
+    private interface AtomComparator {
+        int compare(int atom1, int atom2);
+    }
+
+    /**
+     * Sorts <code>atoms[from..to)</code>, stably, without boxing.
+     */
+    private static void sort(int[] atoms, int from, int to, AtomComparator comparator) {
+        if (to - from < 2) return;
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int atom = atoms[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(atoms[j], atom) > 0) {
+                    atoms[j + 1] = atoms[j];
+                    j--;
+                }
+                atoms[j + 1] = atom;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(atoms, from, middle, comparator);
+        sort(atoms, middle, to, comparator);
+        if (comparator.compare(atoms[middle - 1], atoms[middle]) <= 0) return;
+        int[] left = new int[middle - from];
+        System.arraycopy(atoms, from, left, 0, left.length);
+        int i = 0, j = middle, k = from;
+        while (i < left.length && j < to) {
+            atoms[k++] = comparator.compare(atoms[j], left[i]) < 0 ? atoms[j++] : left[i++];
+        }
+        while (i < left.length) atoms[k++] = left[i++];
+    }
+
+}
@@ -27,16 +27,17 @@ package org.openscience.cdk.graph.rebond;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.geometry.SpatialGrid;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 
-import java.util.Iterator;
+import java.util.Arrays;
 
 /**
  * Provides tools to rebond a molecule from 3D coordinates only.
- * The algorithm uses an efficient algorithm using a
- * Binary Space Partitioning Tree (Bspt). It requires that the 
+ * The algorithm looks up the atoms near each atom in a uniform
+ * grid ({@link SpatialGrid}). It requires that the 
  * atom types are configured such that the covalent bond radii
  * for all atoms are set. The AtomTypeFactory can be used for this.
  *
@@ -49,7 +50,7 @@ import java.util.Iterator;
  * @cdk.module  standard
  * @cdk.githash
  *
- * @see org.openscience.cdk.graph.rebond.Bspt
+ * @see org.openscience.cdk.geometry.SpatialGrid
  */
 @TestClass("org.openscience.cdk.graph.rebond.RebondToolTest")
 public class RebondTool {
@@ -58,18 +59,15 @@ public class RebondTool {
   private double minBondDistance;
   private double bondTolerance;
     
-  private Bspt bspt;
-    
   public RebondTool(double maxCovalentRadius, double minBondDistance,
                     double bondTolerance) {
     this.maxCovalentRadius = maxCovalentRadius;
     this.bondTolerance = bondTolerance;
     this.minBondDistance = minBondDistance;    
-    this.bspt = null;
   }
     
   /**
-   * Rebonding using a Binary Space Partition Tree. Note, that any bonds
+   * Rebonding using a uniform grid of the atoms. Note, that any bonds
    * defined will be deleted first. It assumes the unit of 3D space to
    * be 1 &Acircle;ngstrom.
    */
@@ -77,44 +75,55 @@ public class RebondTool {
   public void rebond(IAtomContainer container) throws CDKException {
     container.removeAllBonds();
     maxCovalentRadius = 0.0;
-    // construct a new binary space partition tree
-    bspt = new Bspt(3);
-    Iterator<IAtom> atoms = container.atoms().iterator();
-    while (atoms.hasNext()) {
-      IAtom atom = atoms.next();
+    IAtom[] atoms = new IAtom[container.getAtomCount()];
+    for (int i = 0; i < atoms.length; i++) {
+      IAtom atom = container.getAtom(i);
       double myCovalentRadius = atom.getCovalentRadius();
       if (myCovalentRadius == 0.0) {
           throw new CDKException("Atom(s) does not have covalentRadius defined.");
       }
       if (myCovalentRadius > maxCovalentRadius)
         maxCovalentRadius = myCovalentRadius;
-      TupleAtom tupleAtom = new TupleAtom(atom);
-      bspt.addTuple(tupleAtom);
+      atoms[i] = atom;
     }
+    // construct a new grid, with cells about the longest bond length
+    SpatialGrid grid = new SpatialGrid(atoms, 2 * maxCovalentRadius + bondTolerance);
     // rebond all atoms
-    atoms = container.atoms().iterator();
-    while (atoms.hasNext()) {
-      bondAtom(container, (IAtom)atoms.next());
+    int[] neighbors = new int[32];
+    for (int i = 0; i < atoms.length; i++) {
+      neighbors = bondAtom(container, grid, atoms, i, neighbors);
     }
   }
     
   /**
-   * Rebonds one atom by looking up nearby atom using the binary space partition tree.
+   * Rebonds one atom by looking up nearby atoms in the grid. Only atoms
+   * with a higher index are considered, so that each pair is tested once.
+   *
+   * @return the neighbors array, or a larger one if it was too small
    */
-  private void bondAtom(IAtomContainer container, IAtom atom) {
+  private int[] bondAtom(IAtomContainer container, SpatialGrid grid,
+                         IAtom[] atoms, int index, int[] neighbors) {
+    IAtom atom = atoms[index];
     double myCovalentRadius = atom.getCovalentRadius();
     double searchRadius = myCovalentRadius + maxCovalentRadius + bondTolerance;
-    Point tupleAtom = new Point(atom.getPoint3d().x, atom.getPoint3d().y, atom.getPoint3d().z);
-    for (Bspt.EnumerateSphere e = bspt.enumHemiSphere(tupleAtom, searchRadius); e.hasMoreElements(); ) {
-      IAtom atomNear = ((TupleAtom)e.nextElement()).getAtom();
-      if (atomNear != atom && container.getBond(atom, atomNear) == null) {
-        boolean bonded = isBonded(myCovalentRadius,  atomNear.getCovalentRadius(), e.foundDistance2());
-        if (bonded) {
-          IBond bond = atom.getBuilder().newInstance(IBond.class,atom, atomNear, IBond.Order.SINGLE);
-          container.addBond(bond);
-        }
+    int count = grid.getNeighbors(index, searchRadius, neighbors);
+    if (count > neighbors.length) {
+      neighbors = new int[count];
+      grid.getNeighbors(index, searchRadius, neighbors);
+    }
+    Arrays.sort(neighbors, 0, count);
+    for (int i = 0; i < count; i++) {
+      if (neighbors[i] < index)
+        continue;
+      IAtom atomNear = atoms[neighbors[i]];
+      double distance2 = atom.getPoint3d().distanceSquared(atomNear.getPoint3d());
+      boolean bonded = isBonded(myCovalentRadius, atomNear.getCovalentRadius(), distance2);
+      if (bonded) {
+        IBond bond = atom.getBuilder().newInstance(IBond.class,atom, atomNear, IBond.Order.SINGLE);
+        container.addBond(bond);
       }
     }
+    return neighbors;
   }
 
   /** 
@@ -134,30 +143,4 @@ public class RebondTool {
       return distance2 <= maxAcceptable2;
   }
 
-    
-  class TupleAtom implements Bspt.Tuple {
-    IAtom atom;
-        
-    TupleAtom(IAtom atom) {
-      this.atom = atom;
-    }
-        
-    public double getDimValue(int dim) {
-      if (dim == 0)
-        return atom.getPoint3d().x;
-      if (dim == 1)
-        return atom.getPoint3d().y;
-      return atom.getPoint3d().z;
-    }
-        
-    public IAtom getAtom() {
-      return this.atom;
-    }
-        
-    public String toString() {
-      return ("<" + atom.getPoint3d().x + "," + atom.getPoint3d().y + "," +
-              atom.getPoint3d().z + ">");
-    }
-  }
-    
 }
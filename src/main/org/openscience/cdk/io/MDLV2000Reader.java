@@ -387,7 +387,7 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
             if (line == null) {
                 return null;
             }
-            logger.debug("Line " + linecount + ": " + line);
+            logger.debug("Line ", linecount, ": ", line);
 
             if (line.startsWith("$$$$")) {
                 logger.debug("File is empty, returning empty molecule");
@@ -397,16 +397,16 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                 title = line; 
             }
             line = input.readLine(); linecount++;
-            logger.debug("Line " + linecount + ": " + line);
+            logger.debug("Line ", linecount, ": ", line);
             line = input.readLine(); linecount++;
-            logger.debug("Line " + linecount + ": " + line);
+            logger.debug("Line ", linecount, ": ", line);
             if (line.length() > 0) {
                 remark = line;
             }
             
             logger.info("Reading rest of file");
             line = input.readLine(); linecount++;
-            logger.debug("Line " + linecount + ": " + line);
+            logger.debug("Line ", linecount, ": ", line);
 
             // if the line is empty we hav a problem - either a malformed
             // molecule entry or just extra new lines at the end of the file
@@ -430,12 +430,12 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                 handleError("This file must be read with the MDLReader.");
             }
 
-            atoms = Integer.parseInt(line.substring(0, 3).trim());
+            atoms = parseMDLInt(line, 0, 3);
 		    List<IAtom> atomList = new ArrayList<IAtom>();
 
-            logger.debug("Atomcount: " + atoms);
-            bonds = Integer.parseInt(line.substring(3, 6).trim());
-            logger.debug("Bondcount: " + bonds);
+            logger.debug("Atomcount: ", atoms);
+            bonds = parseMDLInt(line, 3, 6);
+            logger.debug("Bondcount: ", bonds);
             List<IBond> bondList = new ArrayList<IBond>();
 
             // read ATOM block
@@ -445,14 +445,14 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
             int atomBlockLineNumber=0;
             for (int f = 0; f < atoms; f++) {
                 line = input.readLine(); linecount++; atomBlockLineNumber++;
-                x = Double.parseDouble(line.substring(0, 10).trim());
-                y = Double.parseDouble(line.substring(10, 20).trim());
-                z = Double.parseDouble(line.substring(20, 30).trim());
+                x = parseMDLDouble(line, 0, 10);
+                y = parseMDLDouble(line, 10, 20);
+                z = parseMDLDouble(line, 20, 30);
                 // *all* values should be zero, not just the sum
                 totalX += Math.abs(x);
                 totalY += Math.abs(y);
                 totalZ += Math.abs(z);
-                logger.debug("Coordinates: " + x + "; " + y + "; " + z);
+                logger.debug("Coordinates: ", x, "; ", y, "; ", z);
                 String element = line.substring(31,34).trim();
 
                 logger.debug("Atom type: ", element);
@@ -549,9 +549,8 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                     }
                 }
                 
-                String chargeCodeString = line.substring(36,39).trim();
-                logger.debug("Atom charge code: ", chargeCodeString);
-                int chargeCode = Integer.parseInt(chargeCodeString);
+                int chargeCode = parseMDLInt(line, 36, 39);
+                logger.debug("Atom charge code: ", chargeCode);
                 if (chargeCode == 0) {
                     // uncharged species
                 } else if (chargeCode == 1) {
@@ -626,12 +625,12 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
 		    int queryBondCount=0;
             for (int f = 0; f < bonds; f++) {
                 line = input.readLine(); linecount++;
-                atom1 = Integer.parseInt(line.substring(0, 3).trim());
-                atom2 = Integer.parseInt(line.substring(3, 6).trim());
-                order = Integer.parseInt(line.substring(6, 9).trim());
+                atom1 = parseMDLInt(line, 0, 3);
+                atom2 = parseMDLInt(line, 3, 6);
+                order = parseMDLInt(line, 6, 9);
                 if (line.length() >= 12) {
                 	int mdlStereo = line.length() > 12
-                		? Integer.parseInt(line.substring(9, 12).trim())
+                		? parseMDLInt(line, 9, 12)
                 		: Integer.parseInt(line.substring(9).trim());
                     if (mdlStereo == 1) {
                         // MDL up bond
@@ -661,7 +660,7 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                 	);
                 }
                 if (logger.isDebugEnabled()) {
-                    logger.debug("Bond: " + atom1 + " - " + atom2 + "; order " + order);
+                    logger.debug("Bond: ", atom1, " - ", atom2, "; order ", order);
                 }
                 // interpret CTfile's special bond orders
                 IAtom a1 = atomList.get(atom1 - 1);
@@ -961,6 +960,79 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
         return atomsByLinePosition;
     }
 
+    /**
+     * Parses the integer in a fixed width field of a line, like
+     * <code>Integer.parseInt(line.substring(begin, end).trim())</code> but
+     * without creating intermediate strings.
+     *
+     * @throws NumberFormatException if the field is not an integer
+     */
+    private static int parseMDLInt(String line, int begin, int end) {
+        if (end > line.length()) throw new StringIndexOutOfBoundsException(end);
+        while (begin < end && line.charAt(begin) <= ' ') begin++;
+        while (end > begin && line.charAt(end - 1) <= ' ') end--;
+        if (begin == end) throw new NumberFormatException("Empty field");
+        int i = begin;
+        char c = line.charAt(i);
+        boolean negative = c == '-';
+        if ((c == '-' || c == '+') && ++i == end)
+            throw new NumberFormatException(line.substring(begin, end));
+        int value = 0;
+        for (; i < end; i++) {
+            c = line.charAt(i);
+            if (c < '0' || c > '9') throw new NumberFormatException(line.substring(begin, end));
+            value = 10 * value + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses the decimal number in a fixed width field of a line, giving the
+     * same result as <code>Double.parseDouble(line.substring(begin, end).trim())</code>.
+     * Plain decimals, as used for coordinates, are parsed without creating
+     * intermediate strings.
+     *
+     * @throws NumberFormatException if the field is not a number
+     */
+    private static double parseMDLDouble(String line, int begin, int end) {
+        if (end > line.length()) throw new StringIndexOutOfBoundsException(end);
+        int i = begin;
+        while (i < end && line.charAt(i) == ' ') i++;
+        int last = end;
+        while (last > i && line.charAt(last - 1) == ' ') last--;
+        boolean negative = false;
+        if (i < last && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < last; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = 10 * mantissa + (c - '0');
+                digits++;
+                if (decimals >= 0) decimals++;
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                digits = -1;
+                break;
+            }
+        }
+        // the quotient of two exact values is correctly rounded, as is
+        // the result of parseDouble, if the digits fit in the mantissa
+        if (digits <= 0 || digits > 15)
+            return Double.parseDouble(line.substring(begin, end).trim());
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
     private String removeNonDigits(String input) {
         StringBuffer buffer = new StringBuffer();
         for (int i=0; i<input.length(); i++) {
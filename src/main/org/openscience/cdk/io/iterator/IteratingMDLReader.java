@@ -30,6 +30,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import org.openscience.cdk.annotations.TestMethod;
@@ -58,6 +60,10 @@ import org.openscience.cdk.tools.LoggingToolFactory;
  * SD file, it uses the <code>MDLV2000Reader</code> or 
  * <code>MDLV3000Reader</code> reader; it does <b>not</b> work
  * for SDF files with MDL formats prior to the V2000 format.
+ *
+ * <p>The molfiles are parsed directly from the input, in a single pass, by
+ * one reader per MDL format that is reused for all molecules. The names of
+ * the SD tags are shared between the molecules.
  * 
  * <p>Example use:
  * <pre>
@@ -90,6 +96,10 @@ public class IteratingMDLReader extends DefaultIteratingChemObjectReader impleme
     private String currentLine;
     private IChemFormat currentFormat;
     private final ReaderFactory factory = new ReaderFactory();
+    private final Map<IChemFormat,ISimpleChemObjectReader> readers =
+        new HashMap<IChemFormat,ISimpleChemObjectReader>();
+    private final MolfileReader molfile = new MolfileReader();
+    private final Map<String,String> fieldNames = new HashMap<String,String>();
     
     private boolean nextAvailableIsKnown;
     private boolean hasNext;
@@ -135,31 +145,15 @@ public class IteratingMDLReader extends DefaultIteratingChemObjectReader impleme
             // now try to parse the next Molecule
             try {
                 if ((currentLine = input.readLine()) != null) {
-                	currentFormat = (IChemFormat)MDLFormat.getInstance();
-                    StringBuffer buffer = new StringBuffer();
-                    while (currentLine != null && !currentLine.equals("M  END")) {
-                        // still in a molecule
-                        buffer.append(currentLine);
-                        buffer.append(System.getProperty("line.separator"));
-
-                        currentLine = input.readLine();
-
-                        // do MDL molfile version checking
-                        if (currentLine.contains("V2000") || currentLine.contains("v2000")) {
-                        	currentFormat = (IChemFormat)MDLV2000Format.getInstance();
-                        } else if (currentLine.contains("V3000") || currentLine.contains("v3000")) {
-                        	currentFormat = (IChemFormat)MDLV3000Format.getInstance();
-                        }
+                    if (!molfile.start(input, currentLine)) {
+                        throw new CDKException("Unexpected end of the molfile header");
                     }
-                    buffer.append(currentLine);
-                    buffer.append(System.getProperty("line.separator"));
-                    logger.debug("MDL file part read: ", buffer);
-                    ISimpleChemObjectReader reader = factory.createReader(currentFormat);
-                    reader.setReader(new StringReader(buffer.toString()));
+                    currentFormat = molfile.getFormat();
+                    ISimpleChemObjectReader reader = getReader(currentFormat);
+                    reader.setReader(molfile);
                     reader.setErrorHandler(this.errorHandler);
                     reader.setReaderMode(this.mode);
                     if (currentFormat instanceof MDLV2000Format) {
-                        reader.addChemObjectIOListener(this);
                         ((MDLV2000Reader)reader).customizeJob();
                     }
                     nextMolecule = (IMolecule)reader.read(builder.newInstance(IMolecule.class));
@@ -170,6 +164,7 @@ public class IteratingMDLReader extends DefaultIteratingChemObjectReader impleme
                     hasNext = nextMolecule != null;
 
                     // now read the data part
+                    molfile.skipToEnd();
                     currentLine = input.readLine();
                     readDataBlockInto(nextMolecule);
                 } else {
@@ -187,6 +182,24 @@ public class IteratingMDLReader extends DefaultIteratingChemObjectReader impleme
         return hasNext;
     }
 
+    /**
+     * Returns the reader for the given format, which is created when the
+     * format is first encountered.
+     */
+    private ISimpleChemObjectReader getReader(IChemFormat format) throws CDKException {
+        ISimpleChemObjectReader reader = readers.get(format);
+        if (reader == null) {
+            reader = factory.createReader(format);
+            if (reader == null)
+                throw new CDKException("No reader available for " + format.getFormatName());
+            if (format instanceof MDLV2000Format) {
+                reader.addChemObjectIOListener(this);
+            }
+            readers.put(format, reader);
+        }
+        return reader;
+    }
+
     private void readDataBlockInto(IMolecule m) throws IOException {
         String fieldName = null;
         while (currentLine != null && !(currentLine.trim().equals("$$$$"))) {
@@ -234,6 +247,12 @@ public class IteratingMDLReader extends DefaultIteratingChemObjectReader impleme
                 index+1,
                 index+index2
                 );
+                String sharedName = fieldNames.get(fieldName);
+                if (sharedName == null) {
+                    fieldNames.put(fieldName, fieldName);
+                } else {
+                    fieldName = sharedName;
+                }
             }
         }
         return fieldName;
@@ -305,5 +324,150 @@ public class IteratingMDLReader extends DefaultIteratingChemObjectReader impleme
 	    }
     }
 
-}
+    /**
+     * Passes the lines of the input up to and including the 'M  END' line of
+     * the current molfile, without copying them, and then signals the end of
+     * the file. The first four lines are read ahead to detect the format.
+     * The lines may also be read as characters, each followed by a newline.
+     */
+    static class MolfileReader extends BufferedReader {
+
+        private BufferedReader input;
+        private final String[] header = new String[4];
+        private int headerPosition;
+        private boolean end;
+        /** The line characters are being read from, with its newline. */
+        private String pending;
+        private int pendingPosition;
+
+        MolfileReader() {
+            super(new StringReader(""), 1);
+        }
+
+        /**
+         * Starts a new molfile.
+         *
+         * @param  input     the input, positioned after the first line of the molfile
+         * @param  firstLine the first line of the molfile
+         * @return false if the input ends within the header
+         */
+        boolean start(BufferedReader input, String firstLine) throws IOException {
+            this.input = input;
+            header[0] = firstLine;
+            for (int i = 1; i < header.length; i++) {
+                header[i] = input.readLine();
+                if (header[i] == null) return false;
+            }
+            headerPosition = 0;
+            end = false;
+            pending = null;
+            return true;
+        }
+
+        /**
+         * Returns the format of the molfile, as given by the version in its
+         * header.
+         */
+        IChemFormat getFormat() {
+            IChemFormat format = (IChemFormat)MDLFormat.getInstance();
+            for (int i = 1; i < header.length; i++) {
+                if (header[i].contains("V2000") || header[i].contains("v2000")) {
+                    format = (IChemFormat)MDLV2000Format.getInstance();
+                } else if (header[i].contains("V3000") || header[i].contains("v3000")) {
+                    format = (IChemFormat)MDLV3000Format.getInstance();
+                }
+            }
+            return format;
+        }
+
+        /**
+         * Returns the next line of the molfile, up to and including
+         * <code>M  END</code>, or null after it.
+         */
+        private String nextLine() throws IOException {
+            if (end) return null;
+            String line = headerPosition < header.length
+                ? header[headerPosition++] : input.readLine();
+            if (line == null || line.equals("M  END")) end = true;
+            return line;
+        }
+
+        public String readLine() throws IOException {
+            if (pending != null) {
+                // the rest of a line of which characters were read
+                String rest = pending.substring(pendingPosition, pending.length() - 1);
+                pending = null;
+                return rest;
+            }
+            return nextLine();
+        }
+
+        /**
+         * Skips the lines of the molfile not read by the MDL reader.
+         */
+        void skipToEnd() throws IOException {
+            pending = null;
+            while (readLine() != null);
+        }
 
+        public boolean ready() {
+            return pending != null || !end;
+        }
+
+        /**
+         * Reads characters from the current line, each line ending with a
+         * newline.
+         */
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (offset < 0 || length < 0 || offset + length > buffer.length)
+                throw new IndexOutOfBoundsException();
+            if (length == 0) return 0;
+            if (pending == null) {
+                String line = nextLine();
+                if (line == null) return -1;
+                pending = line + "\n";
+                pendingPosition = 0;
+            }
+            int count = Math.min(length, pending.length() - pendingPosition);
+            pending.getChars(pendingPosition, pendingPosition + count, buffer, offset);
+            pendingPosition += count;
+            if (pendingPosition == pending.length()) pending = null;
+            return count;
+        }
+
+        public int read() throws IOException {
+            char[] single = new char[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0];
+        }
+
+        public long skip(long n) throws IOException {
+            if (n < 0) throw new IllegalArgumentException("skip value is negative");
+            char[] skipped = new char[(int)Math.min(n, 256)];
+            long remaining = n;
+            while (remaining > 0) {
+                int count = read(skipped, 0, (int)Math.min(remaining, skipped.length));
+                if (count == -1) break;
+                remaining -= count;
+            }
+            return n - remaining;
+        }
+
+        public boolean markSupported() {
+            return false;
+        }
+
+        public void mark(int readAheadLimit) throws IOException {
+            throw new IOException("mark() not supported");
+        }
+
+        public void reset() throws IOException {
+            throw new IOException("reset() not supported");
+        }
+
+        public void close() {
+            // the input is closed by the IteratingMDLReader
+        }
+
+    }
+
+}
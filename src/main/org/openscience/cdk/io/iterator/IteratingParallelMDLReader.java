@@ -0,0 +1,456 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.io.IChemObjectReaderErrorHandler;
+import org.openscience.cdk.io.formats.IResourceFormat;
+import org.openscience.cdk.io.listener.IChemObjectIOListener;
+import org.openscience.cdk.io.setting.BooleanIOSetting;
+import org.openscience.cdk.io.setting.IOSetting;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Iterating MDL SDF reader that parses the molecules on several threads.
+ * One thread splits the input into records at the '$$$$' lines, and a pool
+ * of parser threads each parse records with their own
+ * {@link IteratingMDLReader}, so that the molecules and their SD tags are
+ * read exactly as by that reader.
+ *
+ * <p>By default the molecules are returned in the order of the input. When
+ * the order does not matter, molecules can be returned as soon as they are
+ * parsed, which avoids waiting for a slow record. At most four records per
+ * thread are split ahead of the molecules returned by {@link #next()}, which
+ * keeps the memory use bounded for large files.
+ *
+ * <p>Example use:
+ * <pre>
+ * IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+ *   new FileReader(sdfFile), DefaultChemObjectBuilder.getInstance(), 4, true
+ * );
+ * while (reader.hasNext()) {
+ *   IMolecule molecule = (IMolecule)reader.next();
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * <p>The splitter and parser threads are stopped at the end of the input,
+ * and by {@link #close()}; a reader that is not read to the end should be
+ * closed, as its splitter thread otherwise waits for free slots forever.
+ *
+ * <p>As with the {@link IteratingMDLReader}, the iteration ends at the first
+ * record that cannot be parsed; when the molecules are not returned in input
+ * order, molecules from later records may have been returned already. The
+ * reader mode, error handler and IO settings must be set before the first
+ * call to {@link #hasNext()}. The error handler is called from the parser
+ * threads, one call at a time, in the order in which the errors are found.
+ *
+ * @cdk.module io
+ * @cdk.githash
+ *
+ * @see IteratingMDLReader
+ *
+ * @cdk.keyword    file format, SDF
+ * @cdk.keyword    multithreading
+ */
+@TestClass("org.openscience.cdk.io.iterator.IteratingParallelMDLReaderTest")
+public class IteratingParallelMDLReader extends DefaultIteratingChemObjectReader
+                                        implements IChemObjectIOListener {
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(IteratingParallelMDLReader.class);
+
+    /** A parsed record, or null if the record could not be parsed. */
+    private static class Record {
+        IMolecule molecule;
+        IResourceFormat format;
+    }
+
+    /** Marks the end of the input in the queue of parsed records. */
+    private static final Future<Record> END_OF_INPUT = new FutureTask<Record>(
+        new Callable<Record>() {
+            public Record call() {
+                return null;
+            }
+        }
+    );
+
+    private final IChemObjectBuilder builder;
+    private final int threadCount;
+    private final int queueSize;
+    private final boolean ordered;
+    private BufferedReader input;
+    private BooleanIOSetting forceReadAs3DCoords;
+
+    private Thread splitter;
+    private ExecutorService parsers;
+    private BlockingQueue<Future<Record>> results;
+    private Semaphore slots;
+    private AtomicLong submitted;
+    private long taken;
+    private boolean endOfInput;
+    private boolean finished;
+
+    private boolean nextAvailableIsKnown;
+    private boolean hasNext;
+    private IMolecule nextMolecule;
+    private IResourceFormat currentFormat;
+
+    /**
+     * Constructs a new reader that parses the molecules on one thread per
+     * available processor, and returns them in input order.
+     *
+     * @param in      the Reader to read from
+     * @param builder the builder
+     */
+    public IteratingParallelMDLReader(Reader in, IChemObjectBuilder builder) {
+        this(in, builder, Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * Constructs a new reader that parses the molecules on one thread per
+     * available processor, and returns them in input order.
+     *
+     * @param in      the InputStream to read from
+     * @param builder the builder
+     */
+    public IteratingParallelMDLReader(InputStream in, IChemObjectBuilder builder) {
+        this(new InputStreamReader(in), builder);
+    }
+
+    /**
+     * Constructs a new reader.
+     *
+     * @param in          the Reader to read from
+     * @param builder     the builder
+     * @param threadCount the number of threads parsing the molecules
+     * @param ordered     true if the molecules are returned in input order,
+     *                    false if they are returned as soon as they are parsed
+     */
+    public IteratingParallelMDLReader(Reader in, IChemObjectBuilder builder,
+                                      int threadCount, boolean ordered) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        this.builder = builder;
+        this.threadCount = threadCount;
+        this.queueSize = 4 * threadCount;
+        this.ordered = ordered;
+        setReader(in);
+        initIOSettings();
+    }
+
+    /**
+     * Returns the format of the last molecule returned by {@link #next()}.
+     *
+     * @return the MDL format, or null if no molecule has been read
+     */
+    @TestMethod("testGetFormat")
+    public IResourceFormat getFormat() {
+        return currentFormat;
+    }
+
+    /**
+     * Returns true if another IMolecule can be read.
+     */
+    @TestMethod("testOrdered,testUnordered")
+    public boolean hasNext() {
+        if (!nextAvailableIsKnown) {
+            hasNext = false;
+            nextMolecule = null;
+            if (!finished) {
+                if (splitter == null) start();
+                try {
+                    Record record = take();
+                    if (record != null && record.molecule != null) {
+                        nextMolecule = record.molecule;
+                        currentFormat = record.format;
+                        hasNext = true;
+                    }
+                } catch (InterruptedException exception) {
+                    logger.error("Interrupted while reading next molecule");
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException exception) {
+                    logger.error("Error while reading next molecule: " +
+                                 exception.getCause().getMessage());
+                    logger.debug(exception.getCause());
+                }
+                if (!hasNext) stop();
+            }
+            nextAvailableIsKnown = true;
+        }
+        return hasNext;
+    }
+
+    /**
+     * Returns the next parsed record, or null at the end of the input.
+     */
+    private Record take() throws InterruptedException, ExecutionException {
+        while (!endOfInput || taken < submitted.get()) {
+            Future<Record> result = results.take();
+            if (result == END_OF_INPUT) {
+                endOfInput = true;
+            } else {
+                taken++;
+                slots.release();
+                return result.get();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the next IMolecule.
+     */
+    @TestMethod("testOrdered,testNext_NoSuchElement")
+    public IChemObject next() {
+        if (!nextAvailableIsKnown) {
+            hasNext();
+        }
+        nextAvailableIsKnown = false;
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+        return nextMolecule;
+    }
+
+    /**
+     * Starts the splitter and parser threads.
+     */
+    private void start() {
+        final IChemObjectReaderErrorHandler handler = errorHandler == null
+            ? null : new SynchronizedErrorHandler(errorHandler);
+        final ThreadLocal<IteratingMDLReader> readers = new ThreadLocal<IteratingMDLReader>() {
+            protected IteratingMDLReader initialValue() {
+                IteratingMDLReader reader = new IteratingMDLReader(new StringReader(""), builder);
+                reader.setReaderMode(mode);
+                reader.setErrorHandler(handler);
+                reader.addChemObjectIOListener(IteratingParallelMDLReader.this);
+                reader.customizeJob();
+                return reader;
+            }
+        };
+        parsers = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "IteratingParallelMDLReader-parser-" + ++count);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // the splitter only uses the state of its own pipeline, as it may
+        // still be running after the reader is closed or reset
+        final ExecutorService parsers = this.parsers;
+        final BlockingQueue<Future<Record>> results = new LinkedBlockingQueue<Future<Record>>();
+        final Semaphore slots = new Semaphore(queueSize);
+        final AtomicLong submitted = new AtomicLong();
+        final ExecutorCompletionService<Record> completion = ordered
+            ? null : new ExecutorCompletionService<Record>(parsers, results);
+        final BufferedReader input = this.input;
+        this.results = results;
+        this.slots = slots;
+        this.submitted = submitted;
+
+        splitter = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    StringBuilder buffer = new StringBuilder();
+                    String line;
+                    while ((line = input.readLine()) != null) {
+                        buffer.append(line).append('\n');
+                        if (line.trim().equals("$$$$")) {
+                            submit(buffer.toString());
+                            buffer.setLength(0);
+                        }
+                    }
+                    // the last record need not end with '$$$$'
+                    if (buffer.toString().trim().length() > 0) {
+                        submit(buffer.toString());
+                    }
+                } catch (IOException exception) {
+                    logger.error("Error while splitting the input: " +
+                                 exception.getMessage());
+                    logger.debug(exception);
+                } catch (InterruptedException exception) {
+                    return; // the reader is closed
+                } catch (RejectedExecutionException exception) {
+                    return; // the reader is closed
+                }
+                results.add(END_OF_INPUT);
+            }
+
+            private void submit(final String text) throws InterruptedException {
+                slots.acquire();
+                Callable<Record> task = new Callable<Record>() {
+                    public Record call() {
+                        IteratingMDLReader reader = readers.get();
+                        reader.setReader(new StringReader(text));
+                        if (!reader.hasNext()) return null;
+                        Record record = new Record();
+                        record.molecule = (IMolecule)reader.next();
+                        record.format = reader.getFormat();
+                        return record;
+                    }
+                };
+                if (ordered) {
+                    results.add(parsers.submit(task));
+                } else {
+                    completion.submit(task);
+                }
+                submitted.incrementAndGet();
+            }
+        }, "IteratingParallelMDLReader-splitter");
+        splitter.setDaemon(true);
+        splitter.start();
+    }
+
+    /**
+     * Stops the splitter and parser threads. Besides being interrupted, the
+     * splitter is given all slots, so that it cannot stay blocked waiting
+     * for one; its next record is then rejected by the stopped parsers.
+     */
+    private void stop() {
+        finished = true;
+        if (splitter != null) {
+            parsers.shutdownNow();
+            splitter.interrupt();
+            slots.release(queueSize);
+        }
+    }
+
+    @TestMethod("testClose")
+    public void close() throws IOException {
+        stop();
+        input.close();
+    }
+
+    @TestMethod("testSetReader_Reader")
+    public void setReader(Reader reader) {
+        stop();
+        if (reader instanceof BufferedReader) {
+            input = (BufferedReader)reader;
+        } else {
+            input = new BufferedReader(reader);
+        }
+        splitter = null;
+        parsers = null;
+        taken = 0;
+        endOfInput = false;
+        finished = false;
+        nextMolecule = null;
+        nextAvailableIsKnown = false;
+        hasNext = false;
+    }
+
+    @TestMethod("testSetReader_InputStream")
+    public void setReader(InputStream reader) {
+        setReader(new InputStreamReader(reader));
+    }
+
+    private void initIOSettings() {
+        forceReadAs3DCoords = new BooleanIOSetting("ForceReadAs3DCoordinates", IOSetting.LOW,
+          "Should coordinates always be read as 3D?",
+          "false");
+    }
+
+    @TestMethod("testCustomizeJob")
+    public void customizeJob() {
+        fireIOSettingQuestion(forceReadAs3DCoords);
+    }
+
+    @TestMethod("testGetIOSettings")
+    public IOSetting[] getIOSettings() {
+        IOSetting[] settings = new IOSetting[1];
+        settings[0] = forceReadAs3DCoords;
+        return settings;
+    }
+
+    @TestMethod("testProcessIOSettingQuestion")
+    public void processIOSettingQuestion(IOSetting setting) {
+        if (setting.getName().equals(forceReadAs3DCoords.getName())) {
+            try {
+                setting.setSetting(forceReadAs3DCoords.getSetting());
+            } catch (CDKException e) {
+                logger.debug("Could not propagate forceReadAs3DCoords setting");
+            }
+        }
+    }
+
+    /**
+     * Passes the errors of all parser threads to the error handler of this
+     * reader, one at a time.
+     */
+    private static class SynchronizedErrorHandler implements IChemObjectReaderErrorHandler {
+
+        private final IChemObjectReaderErrorHandler handler;
+
+        SynchronizedErrorHandler(IChemObjectReaderErrorHandler handler) {
+            this.handler = handler;
+        }
+
+        public synchronized void handleError(String message) {
+            handler.handleError(message);
+        }
+
+        public synchronized void handleError(String message, Exception exception) {
+            handler.handleError(message, exception);
+        }
+
+        public synchronized void handleError(String message, int row, int colStart, int colEnd) {
+            handler.handleError(message, row, colStart, colEnd);
+        }
+
+        public synchronized void handleError(String message, int row, int colStart, int colEnd,
+                                             Exception exception) {
+            handler.handleError(message, row, colStart, colEnd, exception);
+        }
+
+    }
+
+}
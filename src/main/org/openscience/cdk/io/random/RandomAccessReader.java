@@ -25,14 +25,24 @@
  */
 package org.openscience.cdk.io.random;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
-import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IChemFile;
@@ -49,36 +59,75 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 
 /**
  * Random access to text files of compounds. 
- * Reads the file as a text and builds an index file, if the index file doesn't already exist.
- * The index stores offset, length and a third field reserved for future use.
- * Subsequent access for a record N uses this index to seek the record and return the molecule.
+ * Maps the file into memory and builds an index file, if the index file doesn't already exist.
+ * The index stores offset and length of each record, and the offset of the data items
+ * (such as SD tags) within the record, if the format has them.
+ * Subsequent access for a record N uses this index to find the record and return the molecule.
  * Useful for very big files.
+ *
+ * <p>The index is a binary file, which is mapped into memory as well, so that opening
+ * a file with an existing index takes constant time. The index is rebuilt when the
+ * size or the modification time of the file changed. Files of up to
+ * {@link Integer#MAX_VALUE} records can be indexed; if the index cannot be written
+ * it is kept in memory, which limits the file to fewer than 2<sup>27</sup> records.
+ *
+ * <p>{@link #readRecord(int)} may be called from several threads at the same time,
+ * each thread parsing with its own reader created by {@link #createChemObjectReader()}.
  *  
  * @author     Nina Jeliazkova <nina@acad.bg>
  * @cdk.module io
  */
+@TestClass("org.openscience.cdk.io.random.RandomAccessTest")
 public abstract class RandomAccessReader
     extends DefaultRandomAccessChemObjectReader
     implements IRandomAccessChemObjectReader<IChemObject> {
 
     protected static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(RandomAccessReader.class);
+    // the file is mapped in segments, as a single buffer cannot exceed 2 GB
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final int INDEX_MAGIC = 0x43444B49; // "CDKI"
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int ENTRY_SIZE = 16;
+    /** The maximum number of records of an index that is kept in memory. */
+    private static final int MAX_MEMORY_RECORDS = Integer.MAX_VALUE / ENTRY_SIZE;
     protected RandomAccessFile raFile;
     protected IOSetting[] headerOptions = null;
+    private final File file;
     private final String filename;
     protected ISimpleChemObjectReader chemObjectReader;
-    protected int indexVersion=1;
+    protected int indexVersion=2;
+    private ByteBuffer[] segments;
     /*
-     * index[record][0]  - record offset in file
-     * index[record][1]  - record length
-     * index[record][2]  - number of atoms (if available)
+     * ENTRY_SIZE bytes per record:
+     * long - record offset in file
+     * int  - record length
+     * int  - offset of the data items in the record, or -1 if not available
+     * The index is mapped in segments like the file; as the segment size is a
+     * multiple of ENTRY_SIZE, an entry never spans two segments.
      */
-    protected long[][] index=null;
+    private ByteBuffer[] index = null;
     protected int records;
-    protected int currentRecord = 0;
-    protected byte[] b;
+    protected volatile int currentRecord = 0;
     protected IChemObjectBuilder builder;
     protected boolean indexCreated = false;
+    private final List<IChemObjectIOListener> listeners =
+        new CopyOnWriteArrayList<IChemObjectIOListener>();
+    private final List<ISimpleChemObjectReader> readers =
+        new CopyOnWriteArrayList<ISimpleChemObjectReader>();
+    private final ThreadLocal<ISimpleChemObjectReader> threadReader =
+        new ThreadLocal<ISimpleChemObjectReader>() {
+            protected ISimpleChemObjectReader initialValue() {
+                ISimpleChemObjectReader reader = createChemObjectReader();
+                synchronized (listeners) {
+                    for (IChemObjectIOListener listener : listeners)
+                        reader.addChemObjectIOListener(listener);
+                    readers.add(reader);
+                }
+                return reader;
+            }
+        };
     
     /**
      * Reads the file and builds an index file, if the index file doesn't already exist.
@@ -101,11 +150,13 @@ public abstract class RandomAccessReader
      */
     public RandomAccessReader(File file,IChemObjectBuilder builder,IReaderListener listener) throws IOException {        
         super();
+        this.file = file;
         this.filename = file.getAbsolutePath();
         this.builder = builder;
         setChemObjectReader(createChemObjectReader());
         if (listener != null) addChemObjectIOListener(listener);
         raFile = new RandomAccessFile(file,"r");
+        segments = map(raFile.getChannel(), 0, raFile.length());
         records = 0;
         setIndexCreated(false);
         indexTheFile();
@@ -120,19 +171,39 @@ public abstract class RandomAccessReader
         }
         super.finalize();
     }
+
+    private static ByteBuffer[] map(FileChannel channel, long offset, long length) throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[(int)((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long)i << SEGMENT_BITS;
+            segments[i] = channel.map(
+                FileChannel.MapMode.READ_ONLY, offset + start, Math.min(SEGMENT_SIZE, length - start)
+            );
+        }
+        return segments;
+    }
+
+    /** Returns the index segment holding the entry of the record. */
+    private ByteBuffer getEntrySegment(int record) {
+        return index[(int)(((long)record * ENTRY_SIZE) >>> SEGMENT_BITS)];
+    }
+
+    /** Returns the position of the entry of the record in its index segment. */
+    private static int getEntryPosition(int record) {
+        return (int)(((long)record * ENTRY_SIZE) & (SEGMENT_SIZE - 1));
+    }
+
     /**
      * Returns the object at given record No.
      *
      * Record numbers are zero-based!
      */
-    public synchronized IChemObject readRecord(int record) throws Exception {
-    	String buffer = readContent(record);
-        if (chemObjectReader == null) throw new CDKException("No chemobject reader!");
-        else { 
-            chemObjectReader.setReader(new StringReader(buffer));
-            currentRecord = record;            
-            return  processContent();
-        }
+    public IChemObject readRecord(int record) throws Exception {
+        InputStream content = getRecordStream(record);
+        ISimpleChemObjectReader reader = threadReader.get();
+        reader.setReader(content);
+        currentRecord = record;
+        return processContent(reader);
     }
     /**
      * Reads the record text content into a String.
@@ -143,128 +214,231 @@ public abstract class RandomAccessReader
      * @throws org.openscience.cdk.exception.CDKException if the record number is invalid
      */
     protected String readContent(int record) throws IOException, CDKException {
+        InputStream content = getRecordStream(record);
+        byte[] b = new byte[content.available()];
+        int length = 0;
+        while (length < b.length) length += content.read(b, length, b.length - length);
+        return new String(b,0,length);
+    }
+
+    /**
+     * Returns a stream of the record text content, read from the memory mapped file.
+     *
+     * @param record The record number
+     * @return  the content of the record
+     * @throws org.openscience.cdk.exception.CDKException if the record number is invalid
+     */
+    @TestMethod("testGetRecordStream_int")
+    protected InputStream getRecordStream(int record) throws CDKException {
         logger.debug("Current record ",record);
+        checkRecord(record);
+        ByteBuffer entries = getEntrySegment(record);
+        int entry = getEntryPosition(record);
+        long offset = entries.getLong(entry);
+        return new MappedInputStream(segments, offset, offset + entries.getInt(entry + 8));
+    }
 
+    /**
+     * Returns a stream of the data items of the record, starting at the line
+     * after the one for which {@link #isDataStart(byte[], int)} returned true.
+     *
+     * @param record The record number
+     * @return  the data items of the record, or null if the record has none
+     * @throws org.openscience.cdk.exception.CDKException if the record number is invalid
+     */
+    @TestMethod("testGetDataStream_int")
+    protected InputStream getDataStream(int record) throws CDKException {
+        checkRecord(record);
+        ByteBuffer entries = getEntrySegment(record);
+        int entry = getEntryPosition(record);
+        int dataOffset = entries.getInt(entry + 12);
+        if (dataOffset == -1) return null;
+        long offset = entries.getLong(entry);
+        return new MappedInputStream(
+            segments, offset + dataOffset, offset + entries.getInt(entry + 8)
+        );
+    }
+
+    private void checkRecord(int record) throws CDKException {
         if ((record < 0) || (record >=records)) {
             throw new CDKException("No such record "+record);
         }
-        //fireFrameRead();
-
-        raFile.seek(index[record][0]);
-        int length = (int)index[record][1];
-        raFile.read(b,0,length);    	
-        return new String(b,0,length);
     }
+
     /**
-     * The reader is already set to read the record buffer, 
-     * @return
+     * The reader is already set to read the record buffer.
+     *
+     * @param reader the reader of the calling thread
+     * @return the object read
      * @throws CDKException
      */
-    protected IChemObject processContent() throws CDKException {
-        return chemObjectReader.read(builder.newInstance(IChemFile.class));
+    protected IChemObject processContent(ISimpleChemObjectReader reader) throws CDKException {
+        return reader.read(builder.newInstance(IChemFile.class));
     }
 
+    protected abstract boolean isRecordEnd(String line);
 
-    protected long[][] resize(long[][] index, int newLength) {
-        long[][] newIndex = new long[newLength][3];
-        for (int i=0; i < index.length;i++) {
-            newIndex[i][0] = index[i][0];
-            newIndex[i][1] = index[i][1];
-            newIndex[i][2] = index[i][2];
+    /**
+     * Returns true if the line ends a record. The default implementation
+     * calls {@link #isRecordEnd(String)}; formats may override it to avoid
+     * creating a String for each line while indexing.
+     *
+     * @param line   the bytes of the line, without line terminator
+     * @param length the length of the line
+     * @return true if the line is the last line of a record
+     */
+    @TestMethod("testIsRecordEnd_arrayByte_int")
+    protected boolean isRecordEnd(byte[] line, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = (char)(line[i] & 0xff);
+        return isRecordEnd(new String(chars));
+    }
+
+    /**
+     * Returns true if the data items of a record, such as the SD tags of an
+     * SD file, start at the line after this one. Only the first such line of
+     * each record is used. The default implementation returns false.
+     *
+     * @param line   the bytes of the line, without line terminator
+     * @param length the length of the line
+     * @return true if the data items follow this line
+     */
+    @TestMethod("testIsDataStart_arrayByte_int")
+    protected boolean isDataStart(byte[] line, int length) {
+        return false;
+    }
+
+    /**
+     * Scans the file for records, and writes an index entry for each.
+     *
+     * @param  maxRecords the maximum number of records
+     * @return the number of records
+     * @throws IOException if the file has more than maxRecords records
+     */
+    private int scan(DataOutput out, int maxRecords) throws IOException {
+        long length = raFile.length();
+        byte[] line = new byte[256];
+        int count = 0;
+        long start = 0;
+        int dataOffset = -1;
+        long position = 0;
+        while (position < length) {
+            long lineStart = position;
+            int n = 0;
+            byte c;
+            while (position < length && (c = segments[(int)(position >>> SEGMENT_BITS)]
+                                             .get((int)(position & (SEGMENT_SIZE - 1)))) != '\n') {
+                if (n == line.length) {
+                    byte[] larger = new byte[2 * n];
+                    System.arraycopy(line, 0, larger, 0, n);
+                    line = larger;
+                }
+                line[n++] = c;
+                position++;
+            }
+            if (position < length) position++;
+            if (n > 0 && line[n - 1] == '\r') n--;
+            if (isRecordEnd(line, n)) {
+                if (count == maxRecords)
+                    throw new IOException("Cannot index " + filename + ": more than " + maxRecords + " records");
+                out.writeLong(start);
+                out.writeInt((int)(lineStart + n - start));
+                out.writeInt(dataOffset);
+                count++;
+                start = position;
+                dataOffset = -1;
+            } else if (dataOffset == -1 && isDataStart(line, n)) {
+                dataOffset = (int)(position - start);
+            }
         }
-        return newIndex;
-                                      
-    }    
-    protected abstract boolean isRecordEnd(String line);
+        return count;
+    }
         
+    /**
+     * Indexes the file and writes the index to the given file. The index
+     * file is deleted if the file has no records.
+     *
+     * @param file the index file
+     * @throws Exception if the index cannot be written
+     */
     protected synchronized void saveIndex(File file) throws Exception {
-    	if (records == 0) {file.delete(); return;}
-        FileWriter out = new FileWriter(file);
-        out.write(Integer.toString(indexVersion));
-        out.write('\n');
-        out.write(filename);
-        out.write('\n');
-        out.write(Long.toString(raFile.length()));
-        out.write('\n');
-        out.write(Integer.toString(records));
-        out.write('\n');
-        for (int i=0; i < records;i++) {
-            out.write(Long.toString(index[i][0]));
-            out.write('\t');
-            out.write(Long.toString(index[i][1]));
-            out.write('\t');
-            out.write(Long.toString(index[i][2]));
-            out.write('\n');
+        ByteArrayOutputStream name = new ByteArrayOutputStream();
+        new DataOutputStream(name).writeUTF(filename);
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file), 1 << 16)
+        );
+        try {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(indexVersion);
+            out.writeLong(raFile.length());
+            out.writeLong(this.file.lastModified());
+            out.writeInt(-1); // number of records, written when known
+            out.writeInt(INDEX_HEADER_SIZE + name.size());
+            name.writeTo(out);
+            records = scan(out, Integer.MAX_VALUE);
+        } catch (IOException x) {
+            out.close();
+            file.delete();
+            throw x;
         }
-        out.write(Integer.toString(records));
-        out.write('\n');
-        out.write(filename);
-        out.write('\n');
         out.close();
+        if (records == 0) {file.delete(); return;}
+        RandomAccessFile header = new RandomAccessFile(file, "rw");
+        try {
+            header.seek(24);
+            header.writeInt(records);
+        } finally {
+            header.close();
+        }
     }
     
+    /**
+     * Loads the index from the given file, by mapping it into memory.
+     *
+     * @param file the index file
+     * @throws Exception if the index is invalid, or is not the index of the current file
+     */
     protected synchronized void loadIndex(File file) throws Exception {
-    	BufferedReader in = new BufferedReader(new FileReader(file));
-        String version = in.readLine();
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        int indexLength;
+        int entriesOffset;
         try {
-	        if (Integer.parseInt(version) != indexVersion) {
-	        	in.close();
-	        	throw new Exception("Expected index version "+indexVersion+" instead of "+version);
-	        }
-        } catch (Exception x) {
-        	in.close();
-        	throw new Exception("Invalid index version "+version);        	
-        }
-        String fileIndexed = in.readLine();
-        if (!filename.equals(fileIndexed)) {
-        	in.close();
-        	throw new Exception("Index for " + fileIndexed + " found instead of "+filename + ". Creating new index.");
-        }
-        String line = in.readLine();
-        int fileLength = Integer.parseInt(line);
-        if (fileLength != raFile.length()) {
-        	in.close();
-        	throw new Exception("Index for file of size " + fileLength + " found instead of "+raFile.length());
+            if (in.readInt() != INDEX_MAGIC)
+                throw new CDKException("Invalid index file "+file.getAbsolutePath());
+            int version = in.readInt();
+            if (version != indexVersion)
+                throw new CDKException("Expected index version "+indexVersion+" instead of "+version);
+            long fileLength = in.readLong();
+            if (fileLength != raFile.length())
+                throw new CDKException("Index for file of size " + fileLength + " found instead of "+raFile.length());
+            long lastModified = in.readLong();
+            if (lastModified != this.file.lastModified())
+                throw new CDKException("Index for file modified at " + new Date(lastModified) +
+                                       " found instead of " + new Date(this.file.lastModified()));
+            indexLength = in.readInt();
+            if (indexLength <= 0)
+                throw new CDKException("Index of zero length! "+file.getAbsolutePath());
+            entriesOffset = in.readInt();
+            String fileIndexed = in.readUTF();
+            if (!filename.equals(fileIndexed))
+                throw new CDKException("Index for " + fileIndexed + " found instead of "+filename + ". Creating new index.");
+        } finally {
+            in.close();
         }
-        line = in.readLine();
-        int indexLength = Integer.parseInt(line);
-        if (indexLength <= 0 ) {
-        	in.close();
-        	throw new Exception("Index of zero lenght! "+file.getAbsolutePath());
-        }
-        index = new long[indexLength][3];
-        records = 0;
-        int maxRecordLength = 0;
-        for (int i=0; i < index.length;i++) {
-        	line = in.readLine();
-        	String[] result = line.split("\t");
-        	for (int j=0;j<3;j++) 
-        		try {
-        			index[i][j] = Long.parseLong(result[j]);
-
-        		} catch (Exception x) {
-        			in.close();
-        			throw new Exception("Error reading index! "+result[j],x);
-        		}
-    		        		
-            if (maxRecordLength < index[records][1]) 
-                maxRecordLength = (int) index[records][1];
-            records++;
+        RandomAccessFile indexFile = new RandomAccessFile(file, "r");
+        try {
+            if (indexFile.length() != entriesOffset + (long)indexLength * ENTRY_SIZE)
+                throw new CDKException("Wrong index length! "+file.getAbsolutePath());
+            index = map(indexFile.getChannel(), entriesOffset, (long)indexLength * ENTRY_SIZE);
+        } finally {
+            indexFile.close();
         }
-        
-        line = in.readLine();
-        int indexLength2 = Integer.parseInt(line);
-        if (indexLength2 <= 0 ) {in.close(); throw new Exception("Index of zero lenght!");}
-        if (indexLength2 != indexLength ) { in.close(); throw new Exception("Wrong index length!");}
-        line = in.readLine();
-        if (!line.equals(filename)) {in.close(); throw new Exception("Index for " + line + " found instead of "+filename);}
-        in.close();
-        
-        b = new byte[maxRecordLength];
+        records = indexLength;
         //fireFrameRead();
     }
     /**
      * The index file {@link #getIndexFile(String)} is loaded, if already exists, or created a new.
+     * If the index file cannot be written, the index is kept in memory.
      * @throws Exception
      */
     protected synchronized void makeIndex() throws Exception {
@@ -279,52 +453,18 @@ public abstract class RandomAccessReader
     		}
     	indexCreated = false;    		
         long now = System.currentTimeMillis();
-        int recordLength = 1000;
-        int maxRecords = 1;
-        int maxRecordLength = 0;
-        maxRecords = (int)raFile.length()/recordLength;
-        if (maxRecords == 0) maxRecords = 1;
-        index = new long[maxRecords][3];
-
-        String s = null;
-        long start = 0;
-        long end = 0;
-        raFile.seek(0);
-        records = 0;
-        recordLength = 0;
-        while ((s = raFile.readLine()) != null) {
-            if (start == -1) start = raFile.getFilePointer(); 
-            if (isRecordEnd(s)) {
-                //fireFrameRead();
-                if (records >= maxRecords) {
-                    double averageLength = recordLength/records;
-                    //records + (rf.length()-rf.getFilePointer())/averageLength
-                    index = resize(index,records + 
-                            (int) (records + (raFile.length()-records*raFile.getFilePointer())/recordLength));
-            	}
-                end += 4;
-                index[records][0] = start;
-                index[records][1] = end - start;
-                index[records][2] = -1;
-                if (maxRecordLength < index[records][1]) 
-                    maxRecordLength = (int) index[records][1];
-                records++;
-                recordLength += end-start; 
-               
-                start = raFile.getFilePointer();
-            } else {
-                end = raFile.getFilePointer(); 
-            }
-            
-        }
-        b = new byte[maxRecordLength];
-        //fireFrameRead();
-        logger.info("Index created in "+ (System.currentTimeMillis()-now) + " ms.");
         try {
             saveIndex(indexFile);
+            if (records > 0) loadIndex(indexFile);
+            else index = new ByteBuffer[0];
         } catch (Exception x) {
             logger.error(x);
+            ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            records = scan(new DataOutputStream(entries), MAX_MEMORY_RECORDS);
+            index = new ByteBuffer[]{ByteBuffer.wrap(entries.toByteArray())};
         }
+        //fireFrameRead();
+        logger.info("Index created in "+ (System.currentTimeMillis()-now) + " ms.");
     }
 
     /**
@@ -431,15 +571,25 @@ public abstract class RandomAccessReader
         super.addChemObjectIOListener(listener);
         if (chemObjectReader != null)
         chemObjectReader.addChemObjectIOListener(listener);
+        synchronized (listeners) {
+            listeners.add(listener);
+            for (ISimpleChemObjectReader reader : readers)
+                reader.addChemObjectIOListener(listener);
+        }
     }
 
     public void removeChemObjectIOListener(IChemObjectIOListener listener) {
         super.removeChemObjectIOListener(listener);
         if (chemObjectReader != null)
         chemObjectReader.removeChemObjectIOListener(listener);
+        synchronized (listeners) {
+            listeners.remove(listener);
+            for (ISimpleChemObjectReader reader : readers)
+                reader.removeChemObjectIOListener(listener);
+        }
     }
 
-    public synchronized int getCurrentRecord() {
+    public int getCurrentRecord() {
         return currentRecord;
     }
 
@@ -456,9 +606,9 @@ public abstract class RandomAccessReader
         	setIndexCreated(false);
         	makeIndex();
             currentRecord = 0;
-            raFile.seek(index[0][0]);
         	setIndexCreated(true);
         } catch (Exception x) {
+        	logger.error("Could not index the file: " + x.getMessage());
         	setIndexCreated(true);
         }
 	}
@@ -466,6 +616,45 @@ public abstract class RandomAccessReader
     public String toString() {
         return filename;
     }
+
+    /**
+     * Reads a part of the memory mapped file. Reading does not change the
+     * mapped buffers, so that streams of several threads do not interfere.
+     */
+    private static class MappedInputStream extends InputStream {
+
+        private final ByteBuffer[] segments;
+        private final long end;
+        private long position;
+
+        MappedInputStream(ByteBuffer[] segments, long start, long end) {
+            this.segments = segments;
+            this.position = start;
+            this.end = end;
+        }
+
+        public int read() {
+            if (position >= end) return -1;
+            return segments[(int)(position >>> SEGMENT_BITS)]
+                       .get((int)(position++ & (SEGMENT_SIZE - 1))) & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (position >= end) return -1;
+            ByteBuffer segment = segments[(int)(position >>> SEGMENT_BITS)].duplicate();
+            segment.position((int)(position & (SEGMENT_SIZE - 1)));
+            int n = (int)Math.min(Math.min(len, end - position), segment.remaining());
+            segment.get(b, off, n);
+            position += n;
+            return n;
+        }
+
+        public int available() {
+            return (int)Math.min(end - position, Integer.MAX_VALUE);
+        }
+
+    }
     
    
 }
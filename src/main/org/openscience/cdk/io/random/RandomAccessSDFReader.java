@@ -24,12 +24,17 @@
  */
 package org.openscience.cdk.io.random;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IChemFile;
@@ -46,10 +51,15 @@ import org.openscience.cdk.io.listener.IReaderListener;
 /**
  * Random access of SDF file. Doesn't load molecules in memory, uses prebuilt
  * index and seeks to find the correct record offset.
+ *
+ * <p>The index also stores where the SD tags of each record start, so that
+ * {@link #readProperties(int)} and {@link #readProperty(int, String)} can
+ * look up tags without parsing the molfile.
  * 
  * @author     Nina Jeliazkova <nina@acad.bg>
  * @cdk.module io
  */
+@TestClass("org.openscience.cdk.io.random.RandomAccessTest")
 public class RandomAccessSDFReader extends RandomAccessReader {
 
     /**
@@ -72,6 +82,91 @@ public class RandomAccessSDFReader extends RandomAccessReader {
     protected boolean isRecordEnd(String line) {
         return line.equals("$$$$");
     }
+    @TestMethod("testIsRecordEnd_arrayByte_int")
+    protected boolean isRecordEnd(byte[] line, int length) {
+        return length == 4 && line[0] == '$' && line[1] == '$' && line[2] == '$' && line[3] == '$';
+    }
+    @TestMethod("testIsDataStart_arrayByte_int")
+    protected boolean isDataStart(byte[] line, int length) {
+        return length >= 6 && line[0] == 'M' && line[1] == ' ' && line[2] == ' '
+            && line[3] == 'E' && line[4] == 'N' && line[5] == 'D';
+    }
+
+    /**
+     * Reads the SD tags of a record, without parsing the molfile. The values
+     * are the same as the properties set by {@link #readRecord(int)}.
+     *
+     * @param record the record number
+     * @return the SD tags and their values, in file order
+     * @throws CDKException if the record number is invalid or the record cannot be read
+     */
+    @TestMethod("testReadProperties")
+    public Map<Object,Object> readProperties(int record) throws CDKException {
+        return readProperties(record, null);
+    }
+
+    /**
+     * Reads the value of one SD tag of a record, without parsing the molfile.
+     *
+     * @param record the record number
+     * @param tag    the name of the SD tag
+     * @return the value of the tag, or null if the record does not have it
+     * @throws CDKException if the record number is invalid or the record cannot be read
+     */
+    @TestMethod("testReadProperty")
+    public String readProperty(int record, String tag) throws CDKException {
+        return (String)readProperties(record, tag).get(tag);
+    }
+
+    /**
+     * Reads the SD tags of a record, or only the given one, in the same way
+     * as {@link MDLV2000Reader}.
+     */
+    private Map<Object,Object> readProperties(int record, String tag) throws CDKException {
+        Map<Object,Object> properties = new LinkedHashMap<Object,Object>();
+        InputStream data = getDataStream(record);
+        try {
+            BufferedReader input = new BufferedReader(new InputStreamReader(
+                data == null ? getRecordStream(record) : data
+            ));
+            String line;
+            if (data == null) {
+                // no 'M  END' was indexed, so skip the molfile
+                while ((line = input.readLine()) != null && !line.startsWith("M  END"));
+            }
+            while ((line = input.readLine()) != null) {
+                if (!line.startsWith("> ")) continue;
+                String fieldName = null;
+                int index = line.indexOf("<");
+                if (index != -1) {
+                    int index2 = line.substring(index).indexOf(">");
+                    if (index2 != -1) fieldName = line.substring(index+1, index+index2);
+                }
+                StringBuilder value = new StringBuilder();
+                int dataLineCount = 0;
+                while ((line = input.readLine()) != null) {
+                    if (line.equals(" ") && dataLineCount == 0) {
+                        value.append(line);
+                        dataLineCount++;
+                        continue;
+                    }
+                    line = line.trim();
+                    if (line.length() == 0 || line.equals("$$$$")) break;
+                    dataLineCount++;
+                    if (dataLineCount > 1)
+                        value.append(System.getProperty("line.separator"));
+                    value.append(line);
+                }
+                if (fieldName != null && (tag == null || tag.equals(fieldName))) {
+                    properties.put(fieldName, value.toString());
+                    if (tag != null) break;
+                }
+            }
+        } catch (IOException exception) {
+            throw new CDKException("Error while reading SD tags of record " + record, exception);
+        }
+        return properties;
+    }
     /* (non-Javadoc)
      * @see org.openscience.cdk.io.IChemObjectIO#getFormat()
      */
@@ -79,12 +174,12 @@ public class RandomAccessSDFReader extends RandomAccessReader {
     public IResourceFormat getFormat() {
         return MDLFormat.getInstance();
     }
-    protected IChemObject processContent() throws CDKException {
+    protected IChemObject processContent(ISimpleChemObjectReader reader) throws CDKException {
         	/*
-            return chemObjectReader.read(builder.newInstance(IMolecule.class));
+            return reader.read(builder.newInstance(IMolecule.class));
             */
             //read(IMolecule) doesn't read properties ...
-            IChemObject co = chemObjectReader.read(builder.newInstance(IChemFile.class));
+            IChemObject co = reader.read(builder.newInstance(IChemFile.class));
             if (co instanceof IChemFile) {
                 int c = ((IChemFile) co).getChemSequenceCount();
                 for (int i=0; i <c;i++) {
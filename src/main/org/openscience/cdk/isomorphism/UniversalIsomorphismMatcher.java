@@ -0,0 +1,539 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryBond;
+import org.openscience.cdk.isomorphism.mcss.RGraph;
+import org.openscience.cdk.isomorphism.mcss.RMap;
+
+/**
+ * Instance based version of the queries of the
+ * {@link UniversalIsomorphismTester}. A matcher keeps no state between
+ * searches, so one matcher may be shared by any number of threads, and
+ * matchers with different timeouts can be used at the same time:
+ * <pre>
+ * UniversalIsomorphismMatcher matcher = new UniversalIsomorphismMatcher(500);
+ * boolean isSubstructure = matcher.isSubgraph(atomContainer, query);
+ * </pre>
+ *
+ * <p>The timeout is counted from the start of each call. As with the
+ * {@link UniversalIsomorphismTester}, a search that runs out of time stops
+ * and returns the solutions found so far. A search is cancelled by
+ * interrupting the thread it runs on, for example with
+ * {@link java.util.concurrent.Future#cancel(boolean)}; it then throws a
+ * {@link CDKException} and leaves the interrupted status of the thread set.
+ *
+ * <p>The first {@link IAtomContainer} given to the queries must never be
+ * an {@link IQueryAtomContainer}; the second one may be.
+ *
+ * @cdk.module  standard
+ * @cdk.githash
+ * @see         UniversalIsomorphismTester
+ */
+@TestClass("org.openscience.cdk.isomorphism.UniversalIsomorphismMatcherTest")
+public class UniversalIsomorphismMatcher {
+
+    private final long timeout;
+
+    /**
+     * Creates a matcher without a timeout.
+     */
+    public UniversalIsomorphismMatcher() {
+        this(-1);
+    }
+
+    /**
+     * Creates a matcher that stops each search after the given time.
+     *
+     * @param timeout time in milliseconds; -1 to ignore the timeout
+     */
+    public UniversalIsomorphismMatcher(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the time after which each search of this matcher is stopped.
+     *
+     * @return time in milliseconds; -1 if searches are not stopped
+     */
+    @TestMethod("testGetTimeout")
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Tests if g1 and g2 are isomorph.
+     *
+     * @param  g1  first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2  second molecule. May be an {@link IQueryAtomContainer}.
+     * @return     true if the 2 molecule are isomorph
+     * @throws     CDKException if the first molecule is an instance of IQueryAtomContainer
+     *             or the search is interrupted
+     */
+    @TestMethod("testIsIsomorph")
+    public boolean isIsomorph(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        checkTarget(g1);
+        if (g2.getAtomCount() != g1.getAtomCount()) return false;
+        // check single atom case
+        if (g2.getAtomCount() == 1) {
+            IAtom atom = g1.getAtom(0);
+            IAtom atom2 = g2.getAtom(0);
+            if (atom instanceof IQueryAtom) {
+                IQueryAtom qAtom = (IQueryAtom)atom;
+                return qAtom.matches(g2.getAtom(0));
+            } else if (atom2 instanceof IQueryAtom) {
+                IQueryAtom qAtom = (IQueryAtom)atom2;
+                return qAtom.matches(g1.getAtom(0));
+            } else {
+                String atomSymbol = atom.getSymbol();
+                return g1.getAtom(0).getSymbol().equals(atomSymbol);
+            }
+        }
+        return (getIsomorphMap(g1, g2) != null);
+    }
+
+    /**
+     * Returns the first isomorph mapping found or null.
+     *
+     * @param  g1  first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2  second molecule. May be an {@link IQueryAtomContainer}.
+     * @return     the first isomorph mapping found projected of g1. This is a List of RMap objects containing Ids of matching bonds.
+     * @throws     CDKException if the first molecule is an instance of IQueryAtomContainer
+     *             or the search is interrupted
+     */
+    @TestMethod("testIsIsomorph")
+    public List<RMap> getIsomorphMap(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        checkTarget(g1);
+        List<List<RMap>> rMapsList = search(
+            g1, g2, UniversalIsomorphismTester.getBitSet(g1),
+            UniversalIsomorphismTester.getBitSet(g2), false, false
+        );
+        return rMapsList.isEmpty() ? null : rMapsList.get(0);
+    }
+
+    /**
+     * Returns the first isomorph 'atom mapping' found for g2 in g1.
+     *
+     * @param  g1  first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2  second molecule. May be an {@link IQueryAtomContainer}.
+     * @return     the first isomorph atom mapping found projected on g1.
+     *             This is a List of RMap objects containing Ids of matching atoms.
+     * @throws     CDKException if the first molecule is an instance of IQueryAtomContainer
+     *             or the search is interrupted
+     */
+    @TestMethod("testGetIsomorphAtomsMap")
+    public List<RMap> getIsomorphAtomsMap(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        checkTarget(g1);
+        List<RMap> list = UniversalIsomorphismTester.checkSingleAtomCases(g1, g2);
+        if (list == null) {
+            return UniversalIsomorphismTester.makeAtomsMapOfBondsMap(
+                getIsomorphMap(g1, g2), g1, g2
+            );
+        } else if (list.isEmpty()) {
+            return null;
+        } else {
+            return list;
+        }
+    }
+
+    /**
+     * Returns all the isomorph 'mappings' found between two
+     * atom containers.
+     *
+     * @param  g1  first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2  second molecule. May be an {@link IQueryAtomContainer}.
+     * @return     the list of all the 'mappings'
+     * @throws     CDKException if the search is interrupted
+     */
+    @TestMethod("testGetIsomorphMaps")
+    public List<List<RMap>> getIsomorphMaps(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        return search(
+            g1, g2, UniversalIsomorphismTester.getBitSet(g1),
+            UniversalIsomorphismTester.getBitSet(g2), true, true
+        );
+    }
+
+    /**
+     * Returns all the subgraph 'bond mappings' found for g2 in g1.
+     * See {@link UniversalIsomorphismTester#getSubgraphMaps(IAtomContainer, IAtomContainer)}
+     * for the mappings of single atom queries.
+     *
+     * @param  g1  first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2  second molecule. May be an {@link IQueryAtomContainer}.
+     * @return     the list of all the 'mappings' found projected of g1
+     * @throws     CDKException if the search is interrupted
+     */
+    @TestMethod("testGetSubgraphMaps,testConcurrentSearches")
+    public List<List<RMap>> getSubgraphMaps(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        return search(g1, g2, new BitSet(), UniversalIsomorphismTester.getBitSet(g2), true, true);
+    }
+
+    /**
+     * Returns the first subgraph 'bond mapping' found for g2 in g1.
+     *
+     * @param  g1  first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2  second molecule. May be an {@link IQueryAtomContainer}.
+     * @return     the first subgraph bond mapping found projected on g1. This is a {@link List} of
+     *             {@link RMap} objects containing Ids of matching bonds.
+     * @throws     CDKException if the search is interrupted
+     */
+    @TestMethod("testIsSubgraph")
+    public List<RMap> getSubgraphMap(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        List<List<RMap>> rMapsList = search(
+            g1, g2, new BitSet(), UniversalIsomorphismTester.getBitSet(g2), false, false
+        );
+        return rMapsList.isEmpty() ? null : rMapsList.get(0);
+    }
+
+    /**
+     * Returns all subgraph 'atom mappings' found for g2 in g1, where g2 must be a substructure
+     * of g1. If it is not a substructure, null will be returned.
+     *
+     * @param  g1  first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2  substructure to be mapped. May be an {@link IQueryAtomContainer}.
+     * @return     all subgraph atom mappings found projected on g1. This is a
+     *             {@link List} of {@link RMap} objects containing Ids of matching atoms.
+     * @throws     CDKException if the first molecule is an instance of IQueryAtomContainer
+     *             or the search is interrupted
+     */
+    @TestMethod("testGetSubgraphAtomsMaps")
+    public List<List<RMap>> getSubgraphAtomsMaps(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        List<RMap> list = UniversalIsomorphismTester.checkSingleAtomCases(g1, g2);
+        if (list == null) {
+            return UniversalIsomorphismTester.makeAtomsMapsOfBondsMaps(
+                getSubgraphMaps(g1, g2), g1, g2
+            );
+        } else {
+            List<List<RMap>> atomsMap = new ArrayList<List<RMap>>();
+            atomsMap.add(list);
+            return atomsMap;
+        }
+    }
+
+    /**
+     * Returns the first subgraph 'atom mapping' found for g2 in g1, where g2 must be a substructure
+     * of g1. If it is not a substructure, null will be returned.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 substructure to be mapped. May be an {@link IQueryAtomContainer}.
+     * @return    the first subgraph atom mapping found projected on g1.
+     *            This is a {@link List} of {@link RMap} objects containing Ids of matching atoms.
+     * @throws    CDKException if the first molecule is an instance of IQueryAtomContainer
+     *            or the search is interrupted
+     */
+    @TestMethod("testGetSubgraphAtomsMaps")
+    public List<RMap> getSubgraphAtomsMap(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        List<RMap> list = UniversalIsomorphismTester.checkSingleAtomCases(g1, g2);
+        if (list == null) {
+            return UniversalIsomorphismTester.makeAtomsMapOfBondsMap(
+                getSubgraphMap(g1, g2), g1, g2
+            );
+        } else if (list.isEmpty()) {
+            return null;
+        } else {
+            return list;
+        }
+    }
+
+    /**
+     * Tests if g2 a subgraph of g1.
+     *
+     * @param  g1  first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2  second molecule. May be an {@link IQueryAtomContainer}.
+     * @return     true if g2 a subgraph on g1
+     * @throws     CDKException if the first molecule is an instance of IQueryAtomContainer
+     *             or the search is interrupted
+     */
+    @TestMethod("testIsSubgraph,testConcurrentSearches")
+    public boolean isSubgraph(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        checkTarget(g1);
+        if (g2.getAtomCount() > g1.getAtomCount()) return false;
+        // test for single atom case
+        if (g2.getAtomCount() == 1) {
+            IAtom atom = g2.getAtom(0);
+            for (int i = 0; i < g1.getAtomCount(); i++) {
+                IAtom atom2 = g1.getAtom(i);
+                if (atom instanceof IQueryAtom) {
+                    IQueryAtom qAtom = (IQueryAtom)atom;
+                    if (qAtom.matches(atom2)) return true;
+                } else if (atom2 instanceof IQueryAtom) {
+                    IQueryAtom qAtom = (IQueryAtom)atom2;
+                    if (qAtom.matches(atom)) return true;
+                } else {
+                    if (atom2.getSymbol().equals(atom.getSymbol())) return true;
+                }
+            }
+            return false;
+        }
+        if (!testSubgraphHeuristics(g1, g2)) return false;
+        return (getSubgraphMap(g1, g2) != null);
+    }
+
+    /**
+     * Returns all the maximal common substructure between two atom containers.
+     *
+     * @param  g1  first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2  second molecule. May be an {@link IQueryAtomContainer}.
+     * @return     the list of all the maximal common substructure
+     *             found projected of g1 (list of AtomContainer )
+     * @throws     CDKException if the search is interrupted
+     */
+    @TestMethod("testGetOverlaps")
+    public List<IAtomContainer> getOverlaps(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        List<List<RMap>> rMapsList = search(g1, g2, new BitSet(), new BitSet(), true, false);
+
+        // projection on G1
+        List<IAtomContainer> graphList = UniversalIsomorphismTester.projectList(
+            rMapsList, g1, UniversalIsomorphismTester.ID1
+        );
+
+        // reduction of set of solution (isomorphism and substructure
+        // with different 'mappings'
+        return getMaximum(graphList);
+    }
+
+    /**
+     * General {@link RGraph} parsing method (usually not used directly)
+     * This method is the entry point for the recursive search
+     * adapted to the atom container input.
+     *
+     * @param  g1                first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2                second molecule. May be an {@link IQueryAtomContainer}.
+     * @param  c1                initial condition ( bonds from g1 that
+     *                           must be contains in the solution )
+     * @param  c2                initial condition ( bonds from g2 that
+     *                           must be contains in the solution )
+     * @param  findAllStructure  if false stop at the first structure found
+     * @param  findAllMap        if true search all the 'mappings' for one same
+     *                           structure
+     * @return                   a List of Lists of {@link RMap} objects that represent the search solutions
+     * @throws CDKException      if the search is interrupted
+     */
+    @TestMethod("testSearch_Interrupted")
+    public List<List<RMap>> search(IAtomContainer g1, IAtomContainer g2, BitSet c1,
+                                   BitSet c2, boolean findAllStructure, boolean findAllMap)
+                            throws CDKException {
+        // remember start time
+        long start = System.currentTimeMillis();
+
+        // handle single query atom case separately
+        if (g2.getAtomCount() == 1) {
+            List<List<RMap>> matches = new ArrayList<List<RMap>>();
+            IAtom queryAtom = g2.getAtom(0);
+
+            // we can have a IQueryAtomContainer *or* an IAtomContainer
+            if (queryAtom instanceof IQueryAtom) {
+                IQueryAtom qAtom = (IQueryAtom) queryAtom;
+                for (IAtom atom : g1.atoms()) {
+                    if (qAtom.matches(atom)) {
+                        List<RMap> lmap = new ArrayList<RMap>();
+                        lmap.add(new RMap(g1.getAtomNumber(atom), 0));
+                        matches.add(lmap);
+                    }
+                }
+            } else {
+                for (IAtom atom : g1.atoms()) {
+                    if (queryAtom.getSymbol().equals(atom.getSymbol())) {
+                        List<RMap> lmap = new ArrayList<RMap>();
+                        lmap.add(new RMap(g1.getAtomNumber(atom), 0));
+                        matches.add(lmap);
+                    }
+                }
+            }
+            return matches;
+        }
+
+        // build the RGraph corresponding to this problem
+        RGraph rGraph = UniversalIsomorphismTester.buildRGraph(g1, g2);
+        // Set time data
+        rGraph.setTimeout(timeout);
+        rGraph.setStart(start);
+        // parse the RGraph with the given constrains and options
+        rGraph.parse(c1, c2, findAllStructure, findAllMap);
+        if (Thread.currentThread().isInterrupted())
+            throw new CDKException("The isomorphism search was interrupted");
+
+        // conversions of RGraph's internal solutions to G1/G2 mappings
+        List<List<RMap>> rMapsList = new ArrayList<List<RMap>>();
+        for (BitSet set : rGraph.getSolutions()) {
+            rMapsList.add(rGraph.bitSetToRMap(set));
+        }
+        return rMapsList;
+    }
+
+    /**
+     *  Checks some simple heuristics for whether the subgraph query can
+     *  realistically be a subgraph of the supergraph. If, for example, the
+     *  number of nitrogen atoms in the query is larger than that of the supergraph
+     *  it cannot be part of it.
+     *
+     * @param  ac1  the supergraph to be checked. Must not be an {@link IQueryAtomContainer}.
+     * @param  ac2  the subgraph to be tested for. May be an {@link IQueryAtomContainer}.
+     * @return    true if the subgraph ac2 has a chance to be a subgraph of ac1
+     * @throws CDKException if the first molecule is an instance of {@link IQueryAtomContainer}
+     */
+    private static boolean testSubgraphHeuristics(IAtomContainer ac1, IAtomContainer ac2)
+      throws CDKException {
+        if (ac1 instanceof IQueryAtomContainer)
+            throw new CDKException(
+                "The first IAtomContainer must not be an IQueryAtomContainer"
+            );
+
+        int ac1SingleBondCount = 0;
+        int ac1DoubleBondCount = 0;
+        int ac1TripleBondCount = 0;
+        int ac1AromaticBondCount = 0;
+        int ac2SingleBondCount = 0;
+        int ac2DoubleBondCount = 0;
+        int ac2TripleBondCount = 0;
+        int ac2AromaticBondCount = 0;
+        int ac1SCount = 0;
+        int ac1OCount = 0;
+        int ac1NCount = 0;
+        int ac1FCount = 0;
+        int ac1ClCount = 0;
+        int ac1BrCount = 0;
+        int ac1ICount = 0;
+        int ac1CCount = 0;
+
+        int ac2SCount = 0;
+        int ac2OCount = 0;
+        int ac2NCount = 0;
+        int ac2FCount = 0;
+        int ac2ClCount = 0;
+        int ac2BrCount = 0;
+        int ac2ICount = 0;
+        int ac2CCount = 0;
+
+        IBond bond;
+        IAtom atom;
+        for (int i = 0; i < ac1.getBondCount(); i++)
+        {
+            bond = ac1.getBond(i);
+            if (bond.getFlag(CDKConstants.ISAROMATIC)) ac1AromaticBondCount ++;
+            else if (bond.getOrder() == IBond.Order.SINGLE) ac1SingleBondCount ++;
+            else if (bond.getOrder() == IBond.Order.DOUBLE) ac1DoubleBondCount ++;
+            else if (bond.getOrder() == IBond.Order.TRIPLE) ac1TripleBondCount ++;
+        }
+        for (int i = 0; i < ac2.getBondCount(); i++)
+        {
+            bond = ac2.getBond(i);
+            if (bond instanceof IQueryBond) continue;
+            if (bond.getFlag(CDKConstants.ISAROMATIC)) ac2AromaticBondCount ++;
+            else if (bond.getOrder() == IBond.Order.SINGLE) ac2SingleBondCount ++;
+            else if (bond.getOrder() == IBond.Order.DOUBLE) ac2DoubleBondCount ++;
+            else if (bond.getOrder() == IBond.Order.TRIPLE) ac2TripleBondCount ++;
+        }
+
+        if (ac2SingleBondCount > ac1SingleBondCount) return false;
+        if (ac2AromaticBondCount > ac1AromaticBondCount) return false;
+        if (ac2DoubleBondCount > ac1DoubleBondCount) return false;
+        if (ac2TripleBondCount > ac1TripleBondCount) return false;
+
+        for (int i = 0; i < ac1.getAtomCount(); i++)
+        {
+            atom = ac1.getAtom(i);
+            if (atom.getSymbol().equals("S")) ac1SCount ++;
+            else if (atom.getSymbol().equals("N")) ac1NCount ++;
+            else if (atom.getSymbol().equals("O")) ac1OCount ++;
+            else if (atom.getSymbol().equals("F")) ac1FCount ++;
+            else if (atom.getSymbol().equals("Cl")) ac1ClCount ++;
+            else if (atom.getSymbol().equals("Br")) ac1BrCount ++;
+            else if (atom.getSymbol().equals("I")) ac1ICount ++;
+            else if (atom.getSymbol().equals("C")) ac1CCount ++;
+        }
+        for (int i = 0; i < ac2.getAtomCount(); i++)
+        {
+            atom = ac2.getAtom(i);
+            if (atom instanceof IQueryAtom) continue;
+            if (atom.getSymbol().equals("S")) ac2SCount ++;
+            else if (atom.getSymbol().equals("N")) ac2NCount ++;
+            else if (atom.getSymbol().equals("O")) ac2OCount ++;
+            else if (atom.getSymbol().equals("F")) ac2FCount ++;
+            else if (atom.getSymbol().equals("Cl")) ac2ClCount ++;
+            else if (atom.getSymbol().equals("Br")) ac2BrCount ++;
+            else if (atom.getSymbol().equals("I")) ac2ICount ++;
+            else if (atom.getSymbol().equals("C")) ac2CCount ++;
+        }
+
+        if (ac1SCount < ac2SCount) return false;
+        if (ac1NCount < ac2NCount) return false;
+        if (ac1OCount < ac2OCount) return false;
+        if (ac1FCount < ac2FCount) return false;
+        if (ac1ClCount < ac2ClCount) return false;
+        if (ac1BrCount < ac2BrCount) return false;
+        if (ac1ICount < ac2ICount) return false;
+        return ac1CCount >= ac2CCount;
+
+    }
+
+    /**
+     * Removes all redundant solution.
+     *
+     * @param  graphList  the list of structure to clean
+     * @return            the list cleaned
+     * @throws CDKException if there is a problem in obtaining subgraphs
+     */
+    private List<IAtomContainer> getMaximum(List<IAtomContainer> graphList) throws CDKException {
+        List<IAtomContainer> reducedGraphList = new ArrayList<IAtomContainer>();
+        reducedGraphList.addAll(graphList);
+
+        for (int i = 0; i < graphList.size(); i++) {
+            IAtomContainer gi = graphList.get(i);
+
+            for (int j = i + 1; j < graphList.size(); j++) {
+                IAtomContainer gj = graphList.get(j);
+
+                // Gi included in Gj or Gj included in Gi then
+                // reduce the irrelevant solution
+                if (isSubgraph(gj, gi)) {
+                    reducedGraphList.remove(gi);
+                } else if (isSubgraph(gi, gj)) {
+                    reducedGraphList.remove(gj);
+                }
+            }
+        }
+        return reducedGraphList;
+    }
+
+    private static void checkTarget(IAtomContainer g1) throws CDKException {
+        if (g1 instanceof IQueryAtomContainer)
+            throw new CDKException(
+                "The first IAtomContainer must not be an IQueryAtomContainer"
+            );
+    }
+
+}
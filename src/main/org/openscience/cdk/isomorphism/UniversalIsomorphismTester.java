@@ -100,6 +100,12 @@ import java.util.Map;
  * code and the same sequence of method calls for matching multi-atom query structures will
  * work for single atom query structures as well.
  * </p>
+ * <p>
+ * The static methods of this class share the timeout set with
+ * {@link #setTimeout(long)}. Searches that need their own timeout, or that
+ * need to be cancelled, should use a {@link UniversalIsomorphismMatcher}
+ * instead, which these methods delegate to.
+ * </p>
  *
  * @author      Stephane Werner from IXELIS mail@ixelis.net
  * @cdk.created 2002-07-17
@@ -111,8 +117,7 @@ public class UniversalIsomorphismTester {
 
   final static int ID1 = 0;
   final static int ID2 = 1;
-  private static long start;
-  private static long timeout=-1;
+  private static volatile long timeout=-1;
 
   ///////////////////////////////////////////////////////////////////////////
   //                            Query Methods
@@ -135,28 +140,7 @@ public class UniversalIsomorphismTester {
    * @throws     CDKException if the first molecule is an instance of IQueryAtomContainer
    */
   public static boolean isIsomorph(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-	  if (g1 instanceof IQueryAtomContainer)
-		  throw new CDKException(
-		      "The first IAtomContainer must not be an IQueryAtomContainer"
-		  );
-	  
-	  if (g2.getAtomCount() != g1.getAtomCount()) return false;
-      // check single atom case
-      if (g2.getAtomCount() == 1) {
-          IAtom atom = g1.getAtom(0);
-          IAtom atom2 = g2.getAtom(0);
-		  if (atom instanceof IQueryAtom) {
-			  IQueryAtom qAtom = (IQueryAtom)atom;
-              return qAtom.matches(g2.getAtom(0));
-		  } else if (atom2 instanceof IQueryAtom) {
-              IQueryAtom qAtom = (IQueryAtom)atom2;
-              return qAtom.matches(g1.getAtom(0));
-          } else {
-			  String atomSymbol = atom.getSymbol();
-              return g1.getAtom(0).getSymbol().equals(atomSymbol);
-		  }
-      }
-	  return (getIsomorphMap(g1, g2) != null);
+    return new UniversalIsomorphismMatcher(timeout).isIsomorph(g1, g2);
   }
 
 
@@ -168,20 +152,7 @@ public class UniversalIsomorphismTester {
    * @return     the first isomorph mapping found projected of g1. This is a List of RMap objects containing Ids of matching bonds.
    */
   public static List<RMap> getIsomorphMap(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-	  if (g1 instanceof IQueryAtomContainer)
-		  throw new CDKException(
-		      "The first IAtomContainer must not be an IQueryAtomContainer"
-		  );
-	  
-    List<RMap> result = null;
-
-    List<List<RMap>> rMapsList = search(g1, g2, getBitSet(g1), getBitSet(g2), false, false);
-
-    if (!rMapsList.isEmpty()) {
-      result = rMapsList.get(0);
-    }
-
-    return result;
+    return new UniversalIsomorphismMatcher(timeout).getIsomorphMap(g1, g2);
   }
 
 
@@ -195,19 +166,7 @@ public class UniversalIsomorphismTester {
    * @throws CDKException if the first molecules is not an instance of {@link IQueryAtomContainer}
    */
   public static List<RMap> getIsomorphAtomsMap(IAtomContainer g1, IAtomContainer g2)  throws CDKException {
-	  if (g1 instanceof IQueryAtomContainer)
-		  throw new CDKException(
-		      "The first IAtomContainer must not be an IQueryAtomContainer"
-		  );
-	  
-      List<RMap> list = checkSingleAtomCases(g1, g2);
-      if (list == null) {
-          return makeAtomsMapOfBondsMap(UniversalIsomorphismTester.getIsomorphMap(g1, g2), g1, g2);
-      } else if (list.isEmpty()) {
-          return null;
-      } else {
-          return list;
-      }
+    return new UniversalIsomorphismMatcher(timeout).getIsomorphAtomsMap(g1, g2);
   }
 
 
@@ -220,7 +179,7 @@ public class UniversalIsomorphismTester {
    * @return     the list of all the 'mappings'
    */
   public static List<List<RMap>> getIsomorphMaps(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-    return search(g1, g2, getBitSet(g1), getBitSet(g2), true, true);
+    return new UniversalIsomorphismMatcher(timeout).getIsomorphMaps(g1, g2);
   }
 
 
@@ -247,7 +206,7 @@ public class UniversalIsomorphismTester {
    * @see #makeAtomsMapsOfBondsMaps(List, IAtomContainer, IAtomContainer)
    */
   public static List<List<RMap>> getSubgraphMaps(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-    return search(g1, g2, new BitSet(), getBitSet(g2), true, true);
+    return new UniversalIsomorphismMatcher(timeout).getSubgraphMaps(g1, g2);
   }
 
 
@@ -260,14 +219,7 @@ public class UniversalIsomorphismTester {
    *             {@link RMap} objects containing Ids of matching bonds.
    */
   public static List<RMap> getSubgraphMap(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-    List<RMap> result = null;
-    List<List<RMap>> rMapsList = search(g1, g2, new BitSet(), getBitSet(g2), false, false);
-
-    if (!rMapsList.isEmpty()) {
-      result = rMapsList.get(0);
-    }
-
-    return result;
+    return new UniversalIsomorphismMatcher(timeout).getSubgraphMap(g1, g2);
   }
 
 
@@ -284,16 +236,7 @@ public class UniversalIsomorphismTester {
   public static List<List<RMap>> getSubgraphAtomsMaps(IAtomContainer g1,
 		                                              IAtomContainer g2)
     throws CDKException {
-      List<RMap> list = checkSingleAtomCases(g1, g2);
-      if (list == null) {
-          return makeAtomsMapsOfBondsMaps(
-              UniversalIsomorphismTester.getSubgraphMaps(g1, g2), g1, g2
-          );
-      } else {
-          List<List<RMap>> atomsMap = new ArrayList<List<RMap>>();
-          atomsMap.add(list);
-          return atomsMap;
-      }
+    return new UniversalIsomorphismMatcher(timeout).getSubgraphAtomsMaps(g1, g2);
   }
 
   /**
@@ -308,14 +251,7 @@ public class UniversalIsomorphismTester {
   public static List<RMap> getSubgraphAtomsMap(IAtomContainer g1,
                                                IAtomContainer g2)
       throws CDKException {
-      List<RMap> list = checkSingleAtomCases(g1, g2);
-      if (list == null) {
-          return makeAtomsMapOfBondsMap(UniversalIsomorphismTester.getSubgraphMap(g1, g2), g1, g2);
-      } else if (list.isEmpty()) {
-          return null;
-      } else {
-          return list;
-      }
+    return new UniversalIsomorphismMatcher(timeout).getSubgraphAtomsMap(g1, g2);
   }
 
   /**
@@ -326,31 +262,7 @@ public class UniversalIsomorphismTester {
    * @return     true if g2 a subgraph on g1
    */
   public static boolean isSubgraph(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-	  if (g1 instanceof IQueryAtomContainer)
-		  throw new CDKException(
-		      "The first IAtomContainer must not be an IQueryAtomContainer"
-		  );
-	  
-      if (g2.getAtomCount() > g1.getAtomCount()) return false;
-      // test for single atom case
-      if (g2.getAtomCount() == 1) {
-          IAtom atom = g2.getAtom(0);
-		  for (int i=0; i<g1.getAtomCount(); i++) {
-		      IAtom atom2 = g1.getAtom(i);
-		      if (atom instanceof IQueryAtom) {
-		    	  IQueryAtom qAtom = (IQueryAtom)atom;
-		    	  if (qAtom.matches(atom2)) return true;
-		      } else if (atom2 instanceof IQueryAtom) {
-                  IQueryAtom qAtom = (IQueryAtom)atom2;
-                  if (qAtom.matches(atom)) return true;
-              } else {
-		    	  if (atom2.getSymbol().equals(atom.getSymbol())) return true;
-		      }
-		  }
-          return false;
-      }
-      if (!testSubgraphHeuristics(g1, g2)) return false;
-	  return (getSubgraphMap(g1, g2) != null);
+    return new UniversalIsomorphismMatcher(timeout).isSubgraph(g1, g2);
   }
 
 
@@ -366,16 +278,7 @@ public class UniversalIsomorphismTester {
    *             found projected of g1 (list of AtomContainer )
    */
   public static List<IAtomContainer> getOverlaps(IAtomContainer g1, IAtomContainer g2) throws CDKException{
-      start=System.currentTimeMillis();
-      List<List<RMap>> rMapsList = search(g1, g2, new BitSet(), new BitSet(), true, false);
-
-      // projection on G1
-      List<IAtomContainer> graphList = projectList(rMapsList, g1, ID1);
-
-      // reduction of set of solution (isomorphism and substructure
-      // with different 'mappings'
-
-      return getMaximum(graphList);
+    return new UniversalIsomorphismMatcher(timeout).getOverlaps(g1, g2);
   }
 
 
@@ -440,54 +343,7 @@ public class UniversalIsomorphismTester {
    */
   public static List<List<RMap>> search(IAtomContainer g1, IAtomContainer g2, BitSet c1,
 		  BitSet c2, boolean findAllStructure, boolean findAllMap)  throws CDKException{
-	  // remember start time
-	  start = System.currentTimeMillis();
-	  
-      // handle single query atom case separately
-      if (g2.getAtomCount() == 1) {
-          List<List<RMap>> matches = new ArrayList<List<RMap>>();
-          IAtom queryAtom = g2.getAtom(0);
-
-          // we can have a IQueryAtomContainer *or* an IAtomContainer
-          if (queryAtom instanceof IQueryAtom) {
-              IQueryAtom qAtom = (IQueryAtom) queryAtom;
-              for (IAtom atom : g1.atoms()) {
-                  if (qAtom.matches(atom)) {
-                      List<RMap> lmap = new ArrayList<RMap>();
-                      lmap.add(new RMap(g1.getAtomNumber(atom), 0));
-                      matches.add(lmap);
-                  }
-              }
-          } else {
-              for (IAtom atom : g1.atoms()) {
-                  if (queryAtom.getSymbol().equals(atom.getSymbol())) {
-                      List<RMap> lmap = new ArrayList<RMap>();
-                      lmap.add(new RMap(g1.getAtomNumber(atom), 0));
-                      matches.add(lmap);
-                  }
-              }
-          }
-          return matches;
-      }
-
-	  // reset result
-	  List<List<RMap>> rMapsList = new ArrayList<List<RMap>>();
-
-	  // build the RGraph corresponding to this problem
-	  RGraph rGraph = buildRGraph(g1, g2); 
-	  // Set time data
-	  rGraph.setTimeout(UniversalIsomorphismTester.timeout);
-	  rGraph.setStart(UniversalIsomorphismTester.start);
-	  // parse the RGraph with the given constrains and options
-	  rGraph.parse(c1, c2, findAllStructure, findAllMap);
-	  List<BitSet> solutionList = rGraph.getSolutions();
-
-	  // conversions of RGraph's internal solutions to G1/G2 mappings
-      for (BitSet set : solutionList) {
-          rMapsList.add(rGraph.bitSetToRMap(set));
-      }
-
-	  return rMapsList;
+    return new UniversalIsomorphismMatcher(timeout).search(g1, g2, c1, c2, findAllStructure, findAllMap);
   }
 
   //////////////////////////////////////
@@ -572,35 +428,6 @@ public class UniversalIsomorphismTester {
     return graphList;
   }
 
-  /**
-   * Removes all redundant solution.
-   *
-   * @param  graphList  the list of structure to clean
-   * @return            the list cleaned
-   * @throws CDKException if there is a problem in obtaining subgraphs
-   */
-  private static List<IAtomContainer> getMaximum(List<IAtomContainer> graphList) throws CDKException {
-    List<IAtomContainer> reducedGraphList = new ArrayList<IAtomContainer>();
-    reducedGraphList.addAll(graphList);
-
-    for (int i = 0; i < graphList.size(); i++) {
-      IAtomContainer gi = graphList.get(i);
-
-      for (int j = i + 1; j < graphList.size(); j++) {
-        IAtomContainer gj = graphList.get(j);
-
-        // Gi included in Gj or Gj included in Gi then
-        // reduce the irrelevant solution
-        if (isSubgraph(gj, gi)) {
-            reducedGraphList.remove(gi);
-        } else if (isSubgraph(gi, gj)) {
-            reducedGraphList.remove(gj);
-        }
-      }
-    }
-    return reducedGraphList;
-  }
-
   /**
    *  Checks for single atom cases before doing subgraph/isomorphism search.
    *
@@ -975,114 +802,11 @@ public class UniversalIsomorphismTester {
 
   }
 
-  /**
-   *  Checks some simple heuristics for whether the subgraph query can
-   *  realistically be a subgraph of the supergraph. If, for example, the
-   *  number of nitrogen atoms in the query is larger than that of the supergraph
-   *  it cannot be part of it.
-   *
-   * @param  ac1  the supergraph to be checked. Must not be an {@link IQueryAtomContainer}.
-   * @param  ac2  the subgraph to be tested for. May be an {@link IQueryAtomContainer}.
-   * @return    true if the subgraph ac2 has a chance to be a subgraph of ac1
-   * @throws CDKException if the first molecule is an instance of {@link IQueryAtomContainer}
-   */
-  private static boolean testSubgraphHeuristics(IAtomContainer ac1, IAtomContainer ac2)
-  	throws CDKException {
-	  if (ac1 instanceof IQueryAtomContainer)
-		  throw new CDKException(
-		      "The first IAtomContainer must not be an IQueryAtomContainer"
-		  );
-	  
-	  int ac1SingleBondCount = 0;
-	  int ac1DoubleBondCount = 0;
-	  int ac1TripleBondCount = 0;
-	  int ac1AromaticBondCount = 0;
-	  int ac2SingleBondCount = 0;
-	  int ac2DoubleBondCount = 0;
-	  int ac2TripleBondCount = 0;
-	  int ac2AromaticBondCount = 0;
-	  int ac1SCount = 0;
-	  int ac1OCount = 0;
-	  int ac1NCount = 0;
-	  int ac1FCount = 0;
-	  int ac1ClCount = 0;
-	  int ac1BrCount = 0;
-	  int ac1ICount = 0;
-	  int ac1CCount = 0;
-
-	  int ac2SCount = 0;
-	  int ac2OCount = 0;
-	  int ac2NCount = 0;
-	  int ac2FCount = 0;
-	  int ac2ClCount = 0;
-	  int ac2BrCount = 0;
-	  int ac2ICount = 0;
-	  int ac2CCount = 0;
-
-	  IBond bond;
-	  IAtom atom;
-	  for (int i = 0; i < ac1.getBondCount(); i++)
-	  {
-		  bond = ac1.getBond(i);
-		  if (bond.getFlag(CDKConstants.ISAROMATIC)) ac1AromaticBondCount ++;
-		  else if (bond.getOrder() == IBond.Order.SINGLE) ac1SingleBondCount ++;
-		  else if (bond.getOrder() == IBond.Order.DOUBLE) ac1DoubleBondCount ++;
-		  else if (bond.getOrder() == IBond.Order.TRIPLE) ac1TripleBondCount ++;
-	  }
-	  for (int i = 0; i < ac2.getBondCount(); i++)
-	  {
-		  bond = ac2.getBond(i);
-          if (bond instanceof IQueryBond) continue;
-		  if (bond.getFlag(CDKConstants.ISAROMATIC)) ac2AromaticBondCount ++;
-		  else if (bond.getOrder() == IBond.Order.SINGLE) ac2SingleBondCount ++;
-		  else if (bond.getOrder() == IBond.Order.DOUBLE) ac2DoubleBondCount ++;
-		  else if (bond.getOrder() == IBond.Order.TRIPLE) ac2TripleBondCount ++;
-	  }
-
-	  if (ac2SingleBondCount > ac1SingleBondCount) return false;
-	  if (ac2AromaticBondCount > ac1AromaticBondCount) return false;
-	  if (ac2DoubleBondCount > ac1DoubleBondCount) return false;
-	  if (ac2TripleBondCount > ac1TripleBondCount) return false;
-
-	  for (int i = 0; i < ac1.getAtomCount(); i++)
-	  {
-		  atom = ac1.getAtom(i);
-		  if (atom.getSymbol().equals("S")) ac1SCount ++;
-		  else if (atom.getSymbol().equals("N")) ac1NCount ++;
-		  else if (atom.getSymbol().equals("O")) ac1OCount ++;
-		  else if (atom.getSymbol().equals("F")) ac1FCount ++;
-		  else if (atom.getSymbol().equals("Cl")) ac1ClCount ++;
-		  else if (atom.getSymbol().equals("Br")) ac1BrCount ++;
-		  else if (atom.getSymbol().equals("I")) ac1ICount ++;
-		  else if (atom.getSymbol().equals("C")) ac1CCount ++;
-	  }
-	  for (int i = 0; i < ac2.getAtomCount(); i++)
-	  {
-		  atom = ac2.getAtom(i);
-          if (atom instanceof IQueryAtom) continue;
-		  if (atom.getSymbol().equals("S")) ac2SCount ++;
-		  else if (atom.getSymbol().equals("N")) ac2NCount ++;
-		  else if (atom.getSymbol().equals("O")) ac2OCount ++;
-		  else if (atom.getSymbol().equals("F")) ac2FCount ++;
-		  else if (atom.getSymbol().equals("Cl")) ac2ClCount ++;
-		  else if (atom.getSymbol().equals("Br")) ac2BrCount ++;
-		  else if (atom.getSymbol().equals("I")) ac2ICount ++;
-		  else if (atom.getSymbol().equals("C")) ac2CCount ++;
-	  }
-
-	  if (ac1SCount < ac2SCount) return false;
-	  if (ac1NCount < ac2NCount) return false;
-	  if (ac1OCount < ac2OCount) return false;
-	  if (ac1FCount < ac2FCount) return false;
-	  if (ac1ClCount < ac2ClCount) return false;
-	  if (ac1BrCount < ac2BrCount) return false;
-	  if (ac1ICount < ac2ICount) return false;
-      return ac1CCount >= ac2CCount;
-
-  }
   
   /**
    * Sets the time in milliseconds until the substructure search will be breaked.
+   * This applies to all searches started with the static methods of this class.
+   *
    * @param timeout
    * Time in milliseconds. -1 to ignore the timeout.
    */
@@ -257,9 +257,12 @@ public class RGraph
         BitSet newForbidden = null;
         BitSet potentialNode = null;
         
-        // Test whether the timeout is reached. Stop searching.
+        // Test whether the timeout is reached or the thread is interrupted.
+        // Stop searching.
         if(this.timeout > -1 && (System.currentTimeMillis() - this.start) > this.timeout) {
         	stop = true;
+        } else if (Thread.currentThread().isInterrupted()) {
+        	stop = true;
         }
 
         // if there is no more extension possible we
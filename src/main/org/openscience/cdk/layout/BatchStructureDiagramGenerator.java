@@ -0,0 +1,509 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.layout;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Generates 2D coordinates for a stream of molecules on several threads. A
+ * {@link StructureDiagramGenerator} keeps the state of the molecule it lays
+ * out, so each thread uses its own generator, reused for all molecules laid
+ * out on that thread. The generators share the read-only default templates
+ * of the {@link TemplateHandler}:
+ * <pre>
+ * BatchStructureDiagramGenerator batch = new BatchStructureDiagramGenerator();
+ * for (BatchStructureDiagramGenerator.LayoutResult result : batch.process(
+ *          new IteratingMDLReader(new FileInputStream("dump.sdf"), builder))) {
+ *     if (result.getStatus() == BatchStructureDiagramGenerator.Status.LAID_OUT)
+ *         writer.write(result.getMolecule());
+ * }
+ * </pre>
+ *
+ * <p>As with {@link StructureDiagramGenerator#setMolecule(IMolecule)}, each
+ * molecule is laid out on a clone, which is returned in its
+ * {@link LayoutResult}; the input molecules are not changed. The results are
+ * given in input order, with the time spent on each molecule and the part of
+ * the generator that placed its first atoms. At most <code>queueSize</code>
+ * molecules are read ahead of the oldest molecule not yet handled.
+ *
+ * <p>Each molecule gets a time budget. When it runs out the molecule is
+ * reported as {@link Status#TIMED_OUT}, and the thread laying it out is
+ * interrupted, which stops a template search. Other parts of the layout do
+ * not stop when interrupted; a thread that keeps running is left to finish in
+ * the background, its result is dropped, and another thread takes its place
+ * so that the rest of the batch is not held up.
+ *
+ * @cdk.module  sdg
+ * @cdk.githash
+ * @see StructureDiagramGenerator
+ */
+@TestClass("org.openscience.cdk.layout.BatchStructureDiagramGeneratorTest")
+public class BatchStructureDiagramGenerator {
+
+    /**
+     * The outcome of the layout of one molecule.
+     */
+    public enum Status {
+        /** The molecule has 2D coordinates. */
+        LAID_OUT,
+        /** The generator could not lay out the molecule. */
+        FAILED,
+        /** The layout took longer than the time budget. */
+        TIMED_OUT
+    }
+
+    /**
+     * The part of the {@link StructureDiagramGenerator} that placed the first
+     * atoms of a molecule.
+     */
+    public enum LayoutPath {
+        /** At least one substructure was placed from a template. */
+        TEMPLATE,
+        /** The largest ring system was placed by the {@link RingPlacer}. */
+        RING_PLACER,
+        /** The longest chain of an acyclic molecule was placed by the {@link AtomPlacer}. */
+        CHAIN
+    }
+
+    /**
+     * Handles the results of a batch, in input order, on the thread that
+     * called {@link BatchStructureDiagramGenerator#process(Iterator, ResultHandler)}.
+     */
+    public interface ResultHandler {
+
+        /**
+         * Handles the result of one molecule.
+         *
+         * @param  result       the layout of the molecule
+         * @throws CDKException to stop the batch
+         */
+        public void handle(LayoutResult result) throws CDKException;
+
+    }
+
+    /**
+     * The layout of one molecule of a batch.
+     */
+    public static class LayoutResult {
+
+        private final int index;
+        private final IMolecule molecule;
+        private final Status status;
+        private final LayoutPath path;
+        private final long time;
+        private final Exception exception;
+
+        LayoutResult(int index, IMolecule molecule, Status status,
+                     LayoutPath path, long time, Exception exception) {
+            this.index = index;
+            this.molecule = molecule;
+            this.status = status;
+            this.path = path;
+            this.time = time;
+            this.exception = exception;
+        }
+
+        /**
+         * Returns the position of the molecule in the input.
+         *
+         * @return the index of the molecule, counted from 0
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the laid out clone of the input molecule.
+         *
+         * @return the molecule with 2D coordinates, or null if the layout
+         *         failed or timed out
+         */
+        public IMolecule getMolecule() {
+            return molecule;
+        }
+
+        /**
+         * Returns whether the molecule was laid out.
+         *
+         * @return the status of the layout
+         */
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the part of the generator that placed the first atoms.
+         *
+         * @return the layout path, or null if the layout failed or timed out
+         */
+        public LayoutPath getLayoutPath() {
+            return path;
+        }
+
+        /**
+         * Returns the time spent on the layout of the molecule.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Returns why the layout failed.
+         *
+         * @return the exception thrown by the generator, or null if it threw
+         *         none
+         */
+        public Exception getException() {
+            return exception;
+        }
+
+    }
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(BatchStructureDiagramGenerator.class);
+
+    private final int threadCount;
+    private final int queueSize;
+    private final long timeout;
+    private boolean useTemplates = true;
+
+    /**
+     * Creates a batch generator using one thread per available processor,
+     * reading up to four molecules per thread ahead, and giving each molecule
+     * ten seconds.
+     */
+    public BatchStructureDiagramGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a batch generator using the given number of threads, reading
+     * up to four molecules per thread ahead, and giving each molecule ten
+     * seconds.
+     *
+     * @param threadCount the number of threads to lay out on
+     */
+    public BatchStructureDiagramGenerator(int threadCount) {
+        this(threadCount, 4 * threadCount, 10000);
+    }
+
+    /**
+     * Creates a batch generator.
+     *
+     * @param threadCount the number of threads to lay out on
+     * @param queueSize   the maximum number of molecules read ahead of the
+     *                    oldest molecule not yet handled
+     * @param timeout     the time budget of each molecule in milliseconds,
+     *                    -1 to ignore the budget
+     */
+    public BatchStructureDiagramGenerator(int threadCount, int queueSize, long timeout) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        if (queueSize < 1)
+            throw new IllegalArgumentException("queueSize must be at least 1");
+        if (timeout < -1)
+            throw new IllegalArgumentException("timeout must be at least -1");
+        this.threadCount = threadCount;
+        this.queueSize = queueSize;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sets whether the generators place substructures from templates.
+     *
+     * @param useTemplates true to use templates, which is the default
+     * @see   StructureDiagramGenerator#setUseTemplates(boolean)
+     */
+    @TestMethod("testSetUseTemplates")
+    public void setUseTemplates(boolean useTemplates) {
+        this.useTemplates = useTemplates;
+    }
+
+    /**
+     * Returns whether the generators place substructures from templates.
+     *
+     * @return true if templates are used
+     */
+    @TestMethod("testSetUseTemplates")
+    public boolean getUseTemplates() {
+        return useTemplates;
+    }
+
+    /**
+     * Lays out all molecules of the input and returns their results. Input
+     * objects that are not an {@link IAtomContainer} are reported as
+     * {@link Status#FAILED}. This method returns when all molecules have been
+     * laid out or have timed out.
+     *
+     * @param  molecules    the molecules, for example an
+     *                      {@link org.openscience.cdk.io.iterator.IIteratingChemObjectReader}
+     * @return              the results of all molecules in input order
+     * @throws CDKException if the batch is interrupted
+     */
+    @TestMethod("testProcess,testProcess_Failed,testProcess_Threads")
+    public List<LayoutResult> process(Iterator<?> molecules) throws CDKException {
+        final List<LayoutResult> results = new ArrayList<LayoutResult>();
+        process(molecules, new ResultHandler() {
+            public void handle(LayoutResult result) {
+                results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Lays out all molecules of the input, and gives each result to the
+     * handler as soon as the results of all preceding molecules have been
+     * given. Unlike {@link #process(Iterator)} this does not keep the laid out
+     * molecules, and so handles input of any size.
+     *
+     * @param  molecules    the molecules, for example an
+     *                      {@link org.openscience.cdk.io.iterator.IIteratingChemObjectReader}
+     * @param  handler      handles the results in input order
+     * @throws CDKException if the batch is interrupted, or the handler throws
+     *                      an exception
+     */
+    @TestMethod("testProcess_ResultHandler,testProcess_Timeout,testProcess_TimeoutNotInterruptible")
+    public void process(Iterator<?> molecules, ResultHandler handler) throws CDKException {
+        final ThreadLocal<StructureDiagramGenerator> generators =
+            new ThreadLocal<StructureDiagramGenerator>() {
+                protected StructureDiagramGenerator initialValue() {
+                    StructureDiagramGenerator generator = createGenerator();
+                    generator.setUseTemplates(useTemplates);
+                    return generator;
+                }
+            };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threadCount, threadCount, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory()
+        );
+        ScheduledExecutorService watchdog = new ScheduledThreadPoolExecutor(
+            1, new DaemonThreadFactory()
+        );
+        LinkedList<Job> pending = new LinkedList<Job>();
+        try {
+            int index = 0;
+            while (molecules.hasNext()) {
+                Job job = new Job(index++, molecules.next(), generators, executor, watchdog);
+                executor.execute(job);
+                pending.add(job);
+                if (pending.size() >= queueSize)
+                    handler.handle(pending.removeFirst().getResult());
+            }
+            while (!pending.isEmpty())
+                handler.handle(pending.removeFirst().getResult());
+        } finally {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates the generator of one thread. Each generator is used by a single
+     * thread only.
+     *
+     * @return a new generator
+     */
+    @TestMethod("testCreateGenerator")
+    protected StructureDiagramGenerator createGenerator() {
+        return new StructureDiagramGenerator();
+    }
+
+    private LayoutResult layout(StructureDiagramGenerator generator,
+                                int index, Object molecule, long start) {
+        if (!(molecule instanceof IAtomContainer)) {
+            logger.error("Expected an IAtomContainer but got: ",
+                molecule == null ? null : molecule.getClass().getName());
+            return new LayoutResult(index, null, Status.FAILED, null,
+                                    System.nanoTime() - start, null);
+        }
+        try {
+            IAtomContainer container = (IAtomContainer)molecule;
+            if (!(container instanceof IMolecule))
+                container = container.getBuilder().newInstance(IMolecule.class, container);
+            generator.setMolecule((IMolecule)container, true);
+            generator.generateCoordinates();
+            return new LayoutResult(index, generator.getMolecule(), Status.LAID_OUT,
+                                    getLayoutPath(generator), System.nanoTime() - start, null);
+        } catch (Exception exception) {
+            logger.debug("Could not lay out molecule ", index, ": ", exception.getMessage());
+            logger.debug(exception);
+            return new LayoutResult(index, null, Status.FAILED, null,
+                                    System.nanoTime() - start, exception);
+        }
+    }
+
+    private static LayoutPath getLayoutPath(StructureDiagramGenerator generator) {
+        IAtomContainerSet templates = generator.getMappedSubstructures();
+        if (templates != null && templates.getAtomContainerCount() > 0)
+            return LayoutPath.TEMPLATE;
+        IRingSet rings = generator.getSSSR();
+        if (rings != null && rings.getAtomContainerCount() > 0)
+            return LayoutPath.RING_PLACER;
+        return LayoutPath.CHAIN;
+    }
+
+    /**
+     * Changes the number of threads of the executor, to replace a thread
+     * that ran out of time, or to drop it again when it has finished.
+     */
+    private static void resize(ThreadPoolExecutor executor, int delta) {
+        synchronized (executor) {
+            int size = executor.getCorePoolSize() + delta;
+            if (delta > 0) {
+                executor.setMaximumPoolSize(size);
+                executor.setCorePoolSize(size);
+            } else {
+                executor.setCorePoolSize(size);
+                executor.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    /**
+     * The layout of one molecule. The result is set either by the thread
+     * laying out the molecule, or by the watchdog when the time budget runs
+     * out, whichever comes first.
+     */
+    private class Job implements Runnable {
+
+        private final int index;
+        private final Object molecule;
+        private final ThreadLocal<StructureDiagramGenerator> generators;
+        private final ThreadPoolExecutor executor;
+        private final ScheduledExecutorService watchdog;
+
+        private Thread worker;
+        private long start;
+        private boolean finished;
+        private LayoutResult result;
+        private Error error;
+
+        Job(int index, Object molecule, ThreadLocal<StructureDiagramGenerator> generators,
+            ThreadPoolExecutor executor, ScheduledExecutorService watchdog) {
+            this.index = index;
+            this.molecule = molecule;
+            this.generators = generators;
+            this.executor = executor;
+            this.watchdog = watchdog;
+        }
+
+        public void run() {
+            synchronized (this) {
+                worker = Thread.currentThread();
+                start = System.nanoTime();
+            }
+            ScheduledFuture<?> alarm = null;
+            if (timeout >= 0) {
+                alarm = watchdog.schedule(new Runnable() {
+                    public void run() {
+                        expire();
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+            }
+            LayoutResult layout = null;
+            Error thrown = null;
+            try {
+                layout = layout(generators.get(), index, molecule, start);
+            } catch (Error e) {
+                thrown = e;
+            }
+            if (alarm != null) alarm.cancel(false);
+            boolean expired;
+            synchronized (this) {
+                finished = true;
+                expired = result != null;
+                if (!expired) {
+                    result = layout;
+                    error = thrown;
+                    notifyAll();
+                }
+            }
+            // the watchdog only interrupts before the job is finished
+            Thread.interrupted();
+            if (expired) {
+                logger.debug("Molecule ", index, " finished after its time budget");
+                resize(executor, -1);
+            }
+        }
+
+        private synchronized void expire() {
+            if (finished) return;
+            logger.warn("Molecule ", index, " ran out of time");
+            result = new LayoutResult(index, null, Status.TIMED_OUT, null,
+                                      System.nanoTime() - start, null);
+            notifyAll();
+            worker.interrupt();
+            resize(executor, 1);
+        }
+
+        synchronized LayoutResult getResult() throws CDKException {
+            try {
+                while (result == null && error == null) wait();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new CDKException("Interrupted while laying out molecule " + index, exception);
+            }
+            if (error != null) throw error;
+            return result;
+        }
+
+    }
+
+    /**
+     * Creates daemon threads, so that a layout that never stops does not keep
+     * the virtual machine alive.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "BatchStructureDiagramGenerator");
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
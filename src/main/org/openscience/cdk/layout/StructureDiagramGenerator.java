@@ -32,6 +32,8 @@ import javax.vecmath.Point2d;
 import javax.vecmath.Vector2d;
 
 import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.geometry.GeometryTools;
 import org.openscience.cdk.graph.ConnectivityChecker;
@@ -77,6 +79,7 @@ import org.openscience.cdk.tools.manipulator.RingSetManipulator;
  * @cdk.bug     1536561
  * @cdk.bug     1788686
  */
+@TestClass("org.openscience.cdk.layout.StructureDiagramGeneratorTest")
 public class StructureDiagramGenerator
 {
 
@@ -117,20 +120,21 @@ public class StructureDiagramGenerator
 	public StructureDiagramGenerator(IMolecule molecule) {
 		this();
 		setMolecule(molecule, false);
-		templateHandler = new TemplateHandler(molecule.getBuilder());
 	}
 
 
 
 	/**
 	 *  Assings a molecule to be layed out. Call generateCoordinates() to do the
-	 *  actual layout.
+	 *  actual layout. The template handler is kept from one molecule to the
+	 *  next.
 	 *
 	 *  @param  mol    the molecule for which coordinates are to be generated.
 	 *  @param  clone  Should the whole process be performed with a cloned copy?
 	 */
 	public void setMolecule(IMolecule mol, boolean clone) {
-		templateHandler = new TemplateHandler(mol.getBuilder());
+		if (templateHandler == null)
+			templateHandler = new TemplateHandler(mol.getBuilder());
 		IAtom atom = null;
 		if (clone)
 		{
@@ -297,6 +301,9 @@ public class StructureDiagramGenerator
 		 */
 		logger.debug("Entry point of generateCoordinates()");
 		logger.debug("We have a molecules with " + molecule.getAtomCount() + " atoms.");
+		// forget the rings and templates of the previous molecule
+		sssr = null;
+		mappedSubstructures = null;
 		if (molecule.getAtomCount() == 1)
 		{
 			molecule.getAtom(0).setPoint2d(new Point2d(0, 0));
@@ -1082,6 +1089,32 @@ public class StructureDiagramGenerator
 	}
 
 
+	/**
+	 *  Returns the substructures of the last molecule layed out that were
+	 *  placed from a template.
+	 *
+	 *  @return the mapped substructures, or null if templates were not used
+	 */
+	@TestMethod("testGetMappedSubstructures")
+	IAtomContainerSet getMappedSubstructures()
+	{
+		return mappedSubstructures;
+	}
+
+
+	/**
+	 *  Returns the smallest set of smallest rings of the last molecule layed
+	 *  out.
+	 *
+	 *  @return the rings, or null if the molecule has no rings
+	 */
+	@TestMethod("testGetSSSR")
+	IRingSet getSSSR()
+	{
+		return sssr;
+	}
+
+
 	/**
 	 *  Set the bond length used for laying out the molecule.
 	 *  The defaut value is 1.5.
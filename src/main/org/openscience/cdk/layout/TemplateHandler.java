@@ -30,8 +30,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.vecmath.Point2d;
 
@@ -44,10 +48,12 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IAtomContainerSet;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IChemFile;
-import org.openscience.cdk.interfaces.IMolecule;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.io.CMLReader;
 import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryBond;
 import org.openscience.cdk.isomorphism.mcss.RMap;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
@@ -58,6 +64,13 @@ import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
  * our layout solution for ring systems which are notoriously difficult to
  * layout, like cubane, adamantane, porphyrin, etc.
  *
+ * <p>The templates shipped with the CDK are read only once for each
+ * {@link IChemObjectBuilder} and shared between all handlers, so creating a
+ * TemplateHandler is cheap. Each template is indexed with invariants like its
+ * element and bond counts, its ring bonds, the size of its largest ring system
+ * and a small fingerprint of bond pairs. Only the templates that pass this
+ * screen against a molecule go through one isomorphism search.
+ *
  * @author       steinbeck
  * @cdk.created  2003-09-04
  * @cdk.keyword  layout
@@ -74,7 +87,11 @@ public class TemplateHandler
 	private static ILoggingTool logger =
 	    LoggingToolFactory.createLoggingTool(TemplateHandler.class);
 
-	private List<IAtomContainer> templates = null;
+	/** The indexed default templates, read once for each builder */
+	private static final Map<IChemObjectBuilder,List<Template>> defaultTemplates =
+	    new HashMap<IChemObjectBuilder,List<Template>>();
+
+	private List<Template> templates = null;
 
 
 	/**
@@ -83,7 +100,7 @@ public class TemplateHandler
 	@TestMethod("testInit")
 	public TemplateHandler(IChemObjectBuilder builder)
 	{
-		templates = new ArrayList<IAtomContainer>();
+		templates = new ArrayList<Template>();
 		loadTemplates(builder);
 	}
 
@@ -96,10 +113,25 @@ public class TemplateHandler
 	@TestMethod("testInit")
 	public void loadTemplates(IChemObjectBuilder builder)
 	{
+		templates.addAll(getDefaultTemplates(builder));
+	}
+
+	/**
+	 * Returns the indexed default templates for the given builder, reading them
+	 * the first time they are asked for. The returned list and the templates in
+	 * it are shared and must not be modified.
+	 */
+	private static synchronized List<Template> getDefaultTemplates(IChemObjectBuilder builder)
+	{
+		List<Template> loaded = defaultTemplates.get(builder);
+		if (loaded != null)
+			return loaded;
+		loaded = new ArrayList<Template>();
 		String line = null;
+		ClassLoader loader = TemplateHandler.class.getClassLoader();
 		try
 		{
-			InputStream ins = this.getClass().getClassLoader().getResourceAsStream("org/openscience/cdk/layout/templates/templates.list");
+			InputStream ins = loader.getResourceAsStream("org/openscience/cdk/layout/templates/templates.list");
 			BufferedReader reader = new BufferedReader(new InputStreamReader(ins));
 			while (reader.ready()) {
 					line = reader.readLine();
@@ -107,12 +139,12 @@ public class TemplateHandler
 					logger.debug("Attempting to read template ", line);
 				try {
 					CMLReader structureReader = new CMLReader(
-						this.getClass().getClassLoader().getResourceAsStream(line)
+						loader.getResourceAsStream(line)
 					);
 					IChemFile file = (IChemFile) structureReader.read(builder.newInstance(IChemFile.class));
 					List<IAtomContainer> files = ChemFileManipulator.getAllAtomContainers(file);
 					for (int i = 0; i < files.size(); i++)
-						templates.add(files.get(i));
+						loaded.add(new Template(files.get(i)));
 					logger.debug("Successfully read template ", line);
 				} catch (CDKException cdke) {
 				    logger.warn("Could not read template ", line, ", reason: ", cdke.getMessage());
@@ -127,30 +159,33 @@ public class TemplateHandler
 		    logger.warn("Could not read (all of the) templates, reason: ", ioe.getMessage());
 		    logger.debug(ioe);
 		}
+		loaded = Collections.unmodifiableList(loaded);
+		defaultTemplates.put(builder, loaded);
+		return loaded;
 	}
 
 	/**
 	 * Adds a Molecule to the list of templates use by this TemplateHandler.
+	 * The molecule is indexed when it is added, and should not be changed
+	 * afterwards.
 	 *
 	 * @param  molecule  The molecule to be added to the TemplateHandler
 	 */
 	@TestMethod("testAddMolecule")
 	public void addMolecule(IAtomContainer molecule) {
-		templates.add(molecule);
+		templates.add(new Template(molecule));
 	}
 
 	@TestMethod("testRemoveMolecule")
 	public IAtomContainer removeMolecule(IAtomContainer molecule) throws CDKException {
-		IAtomContainer ac1 = molecule.getBuilder().newInstance(IAtomContainer.class,molecule);
-		IAtomContainer ac2 = null;
-		IAtomContainer mol2 = null;
+		Invariants invariants = Invariants.getInstance(molecule);
 		for (int f = 0; f < templates.size(); f++)
 		{
-			mol2 = templates.get(f);
-			ac2 = molecule.getBuilder().newInstance(IAtomContainer.class,mol2);
-			if (UniversalIsomorphismTester.isIsomorph(ac1, ac2)) {
+			Template template = templates.get(f);
+			if (template.isIsomorphCandidate(molecule, invariants) &&
+			    UniversalIsomorphismTester.isIsomorph(molecule, template.container)) {
 				templates.remove(f);
-				return mol2;
+				return template.container;
 			}
 		}
 		return null;
@@ -165,34 +200,23 @@ public class TemplateHandler
 	 * @param  molecule  The molecule to be check for potential templates
 	 * @return           True if there was a possible mapping
 	 */
+	@TestMethod("testMapTemplateExact")
 	public boolean mapTemplateExact(IAtomContainer molecule) throws CDKException {
 				logger.debug("Trying to map a molecule...");
 		boolean mapped = false;
-		IMolecule template = null;
-		RMap map = null;
-		IAtom atom1 = null;
-		IAtom atom2 = null;
-		for (int f = 0; f < templates.size(); f++)
+		Invariants invariants = Invariants.getInstance(molecule);
+		for (Template template : templates)
 		{
-			template = (IMolecule) templates.get(f);
-			if (UniversalIsomorphismTester.isIsomorph(molecule, template))
+			List<RMap> list = null;
+			if (template.isIsomorphCandidate(molecule, invariants))
+				list = UniversalIsomorphismTester.getIsomorphAtomsMap(molecule, template.container);
+			if (list != null)
 			{
-				List<RMap> list = UniversalIsomorphismTester.getIsomorphAtomsMap(
-					molecule.getBuilder().newInstance(IAtomContainer.class,molecule), 
-					molecule.getBuilder().newInstance(IAtomContainer.class,template)
-				);
-				logger.debug("Found a subgraph mapping of size " + list.size() + ", template: " + template.getID());
-				for (int i = 0; i < list.size(); i++)
-				{
-					map = list.get(i);
-					atom1 = molecule.getAtom(map.getId1());
-					atom2 = template.getAtom(map.getId2());
-					atom1.setPoint2d(new Point2d(atom2.getPoint2d()));
-					atom1.setFlag(CDKConstants.ISPLACED, true);
-				}
+				logger.debug("Found a subgraph mapping of size " + list.size() + ", template: " + template.container.getID());
+				placeAtoms(molecule, template.container, list);
 				mapped = true;
 			} else {
-				logger.debug("Structure does not match template: ", template.getID());
+				logger.debug("Structure does not match template: ", template.container.getID());
 			}
 		}
 		return mapped;
@@ -211,35 +235,14 @@ public class TemplateHandler
 	public boolean mapTemplates(IAtomContainer molecule) throws CDKException {
 				logger.debug("Trying to map a molecule...");
 		boolean mapped = false;
-		IAtomContainer template = null;
-		RMap map = null;
-		IAtom atom1 = null;
-		IAtom atom2 = null;
-		for (int f = 0; f < templates.size(); f++)
+		Invariants invariants = Invariants.getInstance(molecule);
+		for (Template template : templates)
 		{
-			template = templates.get(f);
-			if (UniversalIsomorphismTester.isSubgraph(molecule, template))
-			{
-				List listOfLists = UniversalIsomorphismTester.getSubgraphAtomsMaps(
-						molecule.getBuilder().newInstance(IAtomContainer.class,molecule), 
-						molecule.getBuilder().newInstance(IAtomContainer.class,template)
-				);
-				logger.debug("Found " + listOfLists.size() + " subgraphs matching template: " + template.getID());
-				for (Iterator listOfListsIterator = listOfLists.iterator(); listOfListsIterator.hasNext(); ) {
-					List list = (List) listOfListsIterator.next();
-					logger.debug("Found a subgraph mapping of size " + list.size() + ", template: " + template.getID());
-					for (int i = 0; i < list.size(); i++)
-					{
-						map = (RMap) list.get(i);
-						atom1 = molecule.getAtom(map.getId1());
-						atom2 = template.getAtom(map.getId2());
-						atom1.setPoint2d(new Point2d(atom2.getPoint2d()));
-						atom1.setFlag(CDKConstants.ISPLACED, true);
-					}
-					mapped = true;
-				}
-			} else {
-				logger.debug("Structure does not match template: ", template.getID());
+			List<List<RMap>> listOfLists = getSubgraphAtomsMaps(molecule, invariants, template);
+			for (List<RMap> list : listOfLists) {
+				logger.debug("Found a subgraph mapping of size " + list.size() + ", template: " + template.container.getID());
+				placeAtoms(molecule, template.container, list);
+				mapped = true;
 			}
 		}
 		return mapped;
@@ -259,14 +262,15 @@ public class TemplateHandler
 
 
 	/**
-	 *  Gets the templateAt attribute of the TemplateHandler object
+	 *  Gets the templateAt attribute of the TemplateHandler object. The default
+	 *  templates are shared between all handlers and must not be modified.
 	 *
 	 *@param  position  Description of the Parameter
 	 *@return           The templateAt value
 	 */
 	public IAtomContainer getTemplateAt(int position)
 	{
-		return templates.get(position);
+		return templates.get(position).container;
 	}
 	
 
@@ -285,45 +289,34 @@ public class TemplateHandler
 		logger.debug("Trying get mapped substructures...");
 		IAtomContainerSet matchedSubstructures =
 		    molecule.getBuilder().newInstance(IAtomContainerSet.class);
-		for (int f = 0; f < templates.size(); f++)
+		Invariants invariants = Invariants.getInstance(molecule);
+		for (Template template : templates)
 		{
-			IAtomContainer template = templates.get(f);
-			if (UniversalIsomorphismTester.isSubgraph(molecule, template))
-			{
-				List listOfLists = UniversalIsomorphismTester.getSubgraphAtomsMaps(
-						molecule.getBuilder().newInstance(IAtomContainer.class,molecule), 
-						molecule.getBuilder().newInstance(IAtomContainer.class,template)
-				);
-				logger.debug("Found " + listOfLists.size() + " subgraphs matching template: " + template.getID());
-				for (Iterator listOfListsIterator = listOfLists.iterator(); listOfListsIterator.hasNext(); ) {
-					List list = (List) listOfListsIterator.next();
-					logger.debug("Found a subgraph mapping of size " + list.size() + ", template: " + template.getID());
-					IAtomContainer matchedSubstructure = molecule.getBuilder().newInstance(IAtomContainer.class);
-					for (Iterator listIterator = list.iterator(); listIterator.hasNext(); )
-					{
-						RMap map = (RMap) listIterator.next();
-						IAtom atom = molecule.getAtom(map.getId1());
-						matchedSubstructure.addAtom(atom);
-					}
-					for (Iterator<IAtom> atomIterator = matchedSubstructure.atoms().iterator(); atomIterator.hasNext(); ) {
-						IAtom atom = atomIterator.next();
-						for (Iterator<IBond> connectedBondsIterator = molecule.getConnectedBondsList(atom).iterator(); connectedBondsIterator.hasNext(); ) {
-							IBond bond = connectedBondsIterator.next();
-							boolean addBond = true;
-							for (Iterator<IAtom> bondIterator = bond.atoms().iterator(); bondIterator.hasNext(); ) {
-								IAtom connectedAtom = bondIterator.next();
-								if (!matchedSubstructure.contains(connectedAtom) || matchedSubstructure.contains(bond))
-									addBond = false;
-							}
-							if (addBond)
-								matchedSubstructure.addBond(bond);
+			List<List<RMap>> listOfLists = getSubgraphAtomsMaps(molecule, invariants, template);
+			for (List<RMap> list : listOfLists) {
+				logger.debug("Found a subgraph mapping of size " + list.size() + ", template: " + template.container.getID());
+				IAtomContainer matchedSubstructure = molecule.getBuilder().newInstance(IAtomContainer.class);
+				for (Iterator<RMap> listIterator = list.iterator(); listIterator.hasNext(); )
+				{
+					RMap map = listIterator.next();
+					IAtom atom = molecule.getAtom(map.getId1());
+					matchedSubstructure.addAtom(atom);
+				}
+				for (Iterator<IAtom> atomIterator = matchedSubstructure.atoms().iterator(); atomIterator.hasNext(); ) {
+					IAtom atom = atomIterator.next();
+					for (Iterator<IBond> connectedBondsIterator = molecule.getConnectedBondsList(atom).iterator(); connectedBondsIterator.hasNext(); ) {
+						IBond bond = connectedBondsIterator.next();
+						boolean addBond = true;
+						for (Iterator<IAtom> bondIterator = bond.atoms().iterator(); bondIterator.hasNext(); ) {
+							IAtom connectedAtom = bondIterator.next();
+							if (!matchedSubstructure.contains(connectedAtom) || matchedSubstructure.contains(bond))
+								addBond = false;
 						}
+						if (addBond)
+							matchedSubstructure.addBond(bond);
 					}
-					matchedSubstructures.addAtomContainer(matchedSubstructure);
 				}
-				
-			} else {
-				logger.debug("Structure does not match template: ", template.getID());
+				matchedSubstructures.addAtomContainer(matchedSubstructure);
 			}
 		}
 		
@@ -342,6 +335,46 @@ public class TemplateHandler
 		return matchedSubstructures;
 	}
 
+	/**
+	 * Returns all atom mappings of the template in the molecule, running the
+	 * isomorphism search only if the template passes the invariant screen.
+	 *
+	 * @param molecule   the molecule to map the template in
+	 * @param invariants the invariants of the molecule, or null
+	 * @param template   the template to map
+	 * @return           the atom mappings, empty if there are none
+	 */
+	private List<List<RMap>> getSubgraphAtomsMaps(IAtomContainer molecule, Invariants invariants,
+	                                              Template template) throws CDKException {
+		List<List<RMap>> listOfLists = new ArrayList<List<RMap>>();
+		if (template.isSubgraphCandidate(molecule, invariants)) {
+			List<List<RMap>> maps = UniversalIsomorphismTester.getSubgraphAtomsMaps(molecule, template.container);
+			if (maps != null) {
+				for (List<RMap> list : maps)
+					if (list != null && !list.isEmpty()) listOfLists.add(list);
+			}
+		}
+		if (listOfLists.isEmpty())
+			logger.debug("Structure does not match template: ", template.container.getID());
+		else
+			logger.debug("Found " + listOfLists.size() + " subgraphs matching template: " + template.container.getID());
+		return listOfLists;
+	}
+
+	/**
+	 * Copies the coordinates of the mapped template atoms to the molecule and
+	 * marks the atoms as placed.
+	 */
+	private void placeAtoms(IAtomContainer molecule, IAtomContainer template, List<RMap> list) {
+		for (RMap map : list)
+		{
+			IAtom atom1 = molecule.getAtom(map.getId1());
+			IAtom atom2 = template.getAtom(map.getId2());
+			atom1.setPoint2d(new Point2d(atom2.getPoint2d()));
+			atom1.setFlag(CDKConstants.ISPLACED, true);
+		}
+	}
+
 	/**
 	 * Returns true if both IAtomContainers have the same number of atoms and all atoms
 	 * are equal, false otherwise.
@@ -358,6 +391,264 @@ public class TemplateHandler
 				return false;
 		return true;
 	}
-	
-}
 
+	/**
+	 * A template with its invariants. Templates are not changed once created,
+	 * so the default ones are shared between handlers and threads.
+	 */
+	private static final class Template {
+
+		private final IAtomContainer container;
+		/** null if the template contains query atoms or bonds */
+		private final Invariants invariants;
+
+		Template(IAtomContainer container) {
+			this.container = container;
+			this.invariants = Invariants.getInstance(container);
+		}
+
+		/**
+		 * Returns false if this template cannot be a substructure of the
+		 * molecule with the given invariants.
+		 */
+		boolean isSubgraphCandidate(IAtomContainer molecule, Invariants moleculeInvariants) {
+			if (container.getAtomCount() > molecule.getAtomCount())
+				return false;
+			return invariants == null || moleculeInvariants == null ||
+			       invariants.isSubgraphOf(moleculeInvariants);
+		}
+
+		/**
+		 * Returns false if this template cannot be isomorph to the molecule
+		 * with the given invariants.
+		 */
+		boolean isIsomorphCandidate(IAtomContainer molecule, Invariants moleculeInvariants) {
+			if (container.getAtomCount() != molecule.getAtomCount())
+				return false;
+			return invariants == null || moleculeInvariants == null ||
+			       invariants.equals(moleculeInvariants);
+		}
+
+	}
+
+	/**
+	 * Invariants of a structure that cannot be larger for a substructure than for
+	 * a structure containing it, under the atom and bond comparison of the
+	 * {@link UniversalIsomorphismTester}: atoms match on their symbol, and bonds
+	 * on their order or if both are aromatic. Ring bonds have to match ring bonds,
+	 * ring atoms with three or more ring bonds such atoms, and a ring system has
+	 * to fit into a single ring system.
+	 */
+	private static final class Invariants {
+
+		private static final int FINGERPRINT_SIZE = 256;
+
+		private final int bondCount;
+		/** the number of bonds in the largest ring system */
+		private final int ringSystemSize;
+		/**
+		 * the number of atoms of each element and of bonds of each kind, in all
+		 * of the structure and in its rings
+		 */
+		private final Map<String,Integer> counts = new HashMap<String,Integer>();
+		/** hashed pairs of adjacent bonds */
+		private final long[] fingerprint = new long[FINGERPRINT_SIZE / 64];
+
+		/**
+		 * Calculates the invariants of the container.
+		 *
+		 * @return the invariants, or null if the container contains query
+		 *         atoms or bonds, or bonds to atoms outside it
+		 */
+		static Invariants getInstance(IAtomContainer container) {
+			if (container instanceof IQueryAtomContainer)
+				return null;
+			Map<IAtom,Integer> index = new HashMap<IAtom,Integer>();
+			for (int i = 0; i < container.getAtomCount(); i++) {
+				IAtom atom = container.getAtom(i);
+				if (atom instanceof IQueryAtom || atom.getSymbol() == null)
+					return null;
+				index.put(atom, i);
+			}
+			int[][] ends = new int[container.getBondCount()][];
+			for (int i = 0; i < ends.length; i++) {
+				IBond bond = container.getBond(i);
+				if (bond instanceof IQueryBond || bond.getAtomCount() != 2)
+					return null;
+				Integer begin = index.get(bond.getAtom(0));
+				Integer end = index.get(bond.getAtom(1));
+				if (begin == null || end == null)
+					return null;
+				ends[i] = new int[]{begin, end};
+			}
+			return new Invariants(container, ends);
+		}
+
+		private Invariants(IAtomContainer container, int[][] ends) {
+			int atomCount = container.getAtomCount();
+			bondCount = ends.length;
+			String[] symbols = new String[atomCount];
+			for (int i = 0; i < atomCount; i++) {
+				symbols[i] = container.getAtom(i).getSymbol();
+				count(symbols[i]);
+			}
+
+			String[] labels = new String[bondCount];
+			String[] keys = new String[bondCount];
+			int[] degree = new int[atomCount];
+			for (int i = 0; i < bondCount; i++) {
+				IBond bond = container.getBond(i);
+				labels[i] = bond.getFlag(CDKConstants.ISAROMATIC) ? ":" : String.valueOf(bond.getOrder());
+				String begin = symbols[ends[i][0]], end = symbols[ends[i][1]];
+				keys[i] = begin.compareTo(end) < 0 ? begin + labels[i] + end : end + labels[i] + begin;
+				count(keys[i]);
+				degree[ends[i][0]]++;
+				degree[ends[i][1]]++;
+			}
+
+			int[][] bonds = new int[atomCount][];
+			for (int i = 0; i < atomCount; i++) {
+				bonds[i] = new int[degree[i]];
+				degree[i] = 0;
+			}
+			for (int i = 0; i < bondCount; i++) {
+				bonds[ends[i][0]][degree[ends[i][0]]++] = i;
+				bonds[ends[i][1]][degree[ends[i][1]]++] = i;
+			}
+
+			// two bonds sharing an atom, like C-C=O
+			for (int i = 0; i < atomCount; i++) {
+				for (int j = 0; j < bonds[i].length; j++) {
+					String first = labels[bonds[i][j]] + symbols[other(ends[bonds[i][j]], i)];
+					for (int k = j + 1; k < bonds[i].length; k++) {
+						String second = labels[bonds[i][k]] + symbols[other(ends[bonds[i][k]], i)];
+						String pair = first.compareTo(second) < 0 ?
+						    first + symbols[i] + second : second + symbols[i] + first;
+						int bit = (pair.hashCode() & 0x7fffffff) % FINGERPRINT_SIZE;
+						fingerprint[bit >> 6] |= 1L << (bit & 63);
+					}
+				}
+			}
+
+			// remove terminal atoms until only the rings and the bonds between them are left
+			int[] stack = new int[atomCount];
+			int size = 0;
+			for (int i = 0; i < atomCount; i++)
+				if (degree[i] == 1) stack[size++] = i;
+			while (size > 0) {
+				int atom = stack[--size];
+				if (degree[atom] != 1) continue;
+				degree[atom] = 0;
+				for (int bond : bonds[atom]) {
+					int neighbor = other(ends[bond], atom);
+					if (degree[neighbor] > 0 && --degree[neighbor] == 1)
+						stack[size++] = neighbor;
+				}
+			}
+			for (int i = 0; i < bondCount; i++)
+				if (degree[ends[i][0]] > 0 && degree[ends[i][1]] > 0)
+					count("@" + keys[i]);
+			for (int i = 0; i < atomCount; i++)
+				if (degree[i] > 2)
+					count("@" + symbols[i] + "3");
+
+			ringSystemSize = getLargestBlockSize(bonds, ends);
+		}
+
+		/**
+		 * Returns the number of bonds in the largest biconnected component, that
+		 * is the largest ring system, using an iterative version of Tarjan's
+		 * depth first search.
+		 */
+		private static int getLargestBlockSize(int[][] bonds, int[][] ends) {
+			int atomCount = bonds.length;
+			int[] order = new int[atomCount];
+			int[] low = new int[atomCount];
+			int[] next = new int[atomCount];
+			int[] parentBond = new int[atomCount];
+			int[] atomStack = new int[atomCount];
+			int[] bondStack = new int[ends.length];
+			Arrays.fill(order, -1);
+			int time = 0;
+			int largest = 0;
+			for (int root = 0; root < atomCount; root++) {
+				if (order[root] >= 0) continue;
+				int atoms = 0, bondsOnStack = 0;
+				order[root] = low[root] = time++;
+				parentBond[root] = -1;
+				atomStack[atoms++] = root;
+				while (atoms > 0) {
+					int atom = atomStack[atoms - 1];
+					if (next[atom] < bonds[atom].length) {
+						int bond = bonds[atom][next[atom]++];
+						if (bond == parentBond[atom]) continue;
+						int neighbor = other(ends[bond], atom);
+						if (order[neighbor] < 0) {
+							bondStack[bondsOnStack++] = bond;
+							parentBond[neighbor] = bond;
+							order[neighbor] = low[neighbor] = time++;
+							atomStack[atoms++] = neighbor;
+						} else if (order[neighbor] < order[atom]) {
+							bondStack[bondsOnStack++] = bond;
+							low[atom] = Math.min(low[atom], order[neighbor]);
+						}
+					} else {
+						atoms--;
+						if (atoms == 0) break;
+						int parent = atomStack[atoms - 1];
+						low[parent] = Math.min(low[parent], low[atom]);
+						if (low[atom] >= order[parent]) {
+							// the bonds up to the one to the parent form a block
+							int size = 0;
+							while (bondStack[--bondsOnStack] != parentBond[atom])
+								size++;
+							largest = Math.max(largest, size + 1);
+						}
+					}
+				}
+			}
+			return largest;
+		}
+
+		private static int other(int[] ends, int atom) {
+			return ends[0] == atom ? ends[1] : ends[0];
+		}
+
+		private void count(String key) {
+			Integer count = counts.get(key);
+			counts.put(key, count == null ? 1 : count + 1);
+		}
+
+		/**
+		 * Returns false if the structure with these invariants cannot be a
+		 * substructure of a structure with the given invariants.
+		 */
+		boolean isSubgraphOf(Invariants other) {
+			if (bondCount > other.bondCount || ringSystemSize > other.ringSystemSize)
+				return false;
+			for (int i = 0; i < fingerprint.length; i++)
+				if ((fingerprint[i] & ~other.fingerprint[i]) != 0)
+					return false;
+			for (Map.Entry<String,Integer> entry : counts.entrySet()) {
+				Integer count = other.counts.get(entry.getKey());
+				if (count == null || count < entry.getValue())
+					return false;
+			}
+			return true;
+		}
+
+		public boolean equals(Object object) {
+			if (!(object instanceof Invariants))
+				return false;
+			Invariants other = (Invariants)object;
+			return bondCount == other.bondCount && ringSystemSize == other.ringSystemSize &&
+			       Arrays.equals(fingerprint, other.fingerprint) && counts.equals(other.counts);
+		}
+
+		public int hashCode() {
+			return counts.hashCode();
+		}
+
+	}
+
+}
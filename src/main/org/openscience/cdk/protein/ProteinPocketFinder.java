@@ -47,7 +47,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -83,7 +82,7 @@ public class ProteinPocketFinder {
 	String vanDerWaalsFile="org/openscience/cdk/config/data/pdb_atomtypes.xml";
 	double[][][] grid = null;
 	GridGenerator gridGenerator = new GridGenerator();
-	Map<String,Integer> visited = new Hashtable<String,Integer>();
+	boolean[][][] visited = null;// grid points already assigned to a pocket
 	List<List<Point3d>> pockets = new Vector<List<Point3d>>();
 
 	/**
@@ -393,7 +392,7 @@ public class ProteinPocketFinder {
 					Point3d start = new Point3d(x, y, z);
 					//pointsVisited++;
 					if (this.grid[x][y][z] >= minPSPocket
-							& !visited.containsKey(x + "." + y + "."+ z)) {
+							& !getVisited()[x][y][z]) {
 						List<Point3d> subPocket = new Vector<Point3d>();
 						// logger.debug.print("new Point: "+grid[x][y][z]);
 						//significantPointsVisited++;
@@ -431,8 +430,7 @@ public class ProteinPocketFinder {
 	public List<Point3d> clusterPSPPocket(Point3d root, List<Point3d> sub_Pocket, int[] dim) {
 		// logger.debug(" ****** New Root ******:"+root.x+" "+root.y+"
 		// "+root.z);
-		visited.put((int) root.x + "." + (int) root.y + "."
-                + (int) root.z, new Integer(1));
+		getVisited()[(int) root.x][(int) root.y][(int) root.z] = true;
 		int[] minMax = { 0, 0, 0, 0, 0, 0 };
 		minMax[0] = (int) (root.x - linkageRadius);
 		minMax[1] = (int) (root.x + linkageRadius);
@@ -452,8 +450,7 @@ public class ProteinPocketFinder {
 					// #>"+this.grid[k][m][l]+" key:"+visited.containsKey(new
 					// String(k+"."+m+"."+l)));
 					if (this.grid[k][m][l] >= minPSCluster
-							&& !visited.containsKey(k + "." + m
-                            + "." + l)) {
+							&& !getVisited()[k][m][l]) {
 						// logger.debug(" ---->FOUND");
 						sub_Pocket.add(node);
 						this.clusterPSPPocket(node, sub_Pocket, dim);
@@ -465,6 +462,17 @@ public class ProteinPocketFinder {
 		return sub_Pocket;
 	}
 
+	/**
+	 * Method returns the grid points already assigned to a pocket, indexed
+	 * like the grid.
+	 */
+	private boolean[][][] getVisited() {
+		if (visited == null) {
+			visited = new boolean[grid.length][grid[0].length][grid[0][0].length];
+		}
+		return visited;
+	}
+
 	/**
 	 * Method checks boundaries.
 	 *
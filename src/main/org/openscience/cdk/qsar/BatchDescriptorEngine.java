@@ -0,0 +1,386 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.qsar.result.BooleanResult;
+import org.openscience.cdk.qsar.result.DoubleArrayResult;
+import org.openscience.cdk.qsar.result.DoubleResult;
+import org.openscience.cdk.qsar.result.IDescriptorResult;
+import org.openscience.cdk.qsar.result.IntegerArrayResult;
+import org.openscience.cdk.qsar.result.IntegerResult;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Calculates a set of molecular descriptors for a stream of molecules on
+ * several threads. Where the {@link DescriptorEngine} stores the values of a
+ * single molecule as properties, this engine collects the values of all
+ * molecules in a {@link DescriptorMatrix}, together with the time spent on
+ * each descriptor and the number of molecules it failed for:
+ * <pre>
+ * List&lt;String&gt; classNames = DescriptorEngine.getDescriptorClassNameByPackage(
+ *     "org.openscience.cdk.qsar.descriptors.molecular", null
+ * );
+ * BatchDescriptorEngine engine = new BatchDescriptorEngine(classNames);
+ * DescriptorMatrix matrix = engine.process(
+ *     new IteratingMDLReader(new FileInputStream("dump.sdf"), builder)
+ * );
+ * double[] xlogp = matrix.getColumn("XLogP");
+ * </pre>
+ *
+ * <p>Many descriptors keep state between calls, so each thread uses its own
+ * descriptor instances, created by the given {@link DescriptorFactory}. All
+ * descriptors of one molecule are calculated on the same thread, in the order
+ * of the factory, and descriptors may change the molecule as when called
+ * directly. Intermediate results used by several descriptors are shared
+ * between them through a {@link DescriptorContext}. At most
+ * <code>queueSize</code> molecules are read ahead of the oldest molecule not
+ * yet added to the matrix.
+ *
+ * @cdk.module  qsarmolecular
+ * @cdk.githash
+ * @see DescriptorEngine
+ */
+@TestClass("org.openscience.cdk.qsar.BatchDescriptorEngineTest")
+public class BatchDescriptorEngine {
+
+    /**
+     * Creates the descriptors for one thread.
+     */
+    public interface DescriptorFactory {
+
+        /**
+         * Creates new instances of the descriptors to calculate. Each call
+         * must return the same descriptors, with the same parameters, in the
+         * same order.
+         *
+         * @return the descriptors used by one thread
+         */
+        public List<IMolecularDescriptor> create();
+
+    }
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(BatchDescriptorEngine.class);
+
+    private final DescriptorFactory factory;
+    private final int threadCount;
+    private final int queueSize;
+    private final String[] descriptorNames;
+    private final String[][] columnNames;
+    private final int columnCount;
+
+    /**
+     * Creates an engine for the descriptors with the given class names, using
+     * their default parameters, one thread per available processor, and
+     * reading up to four molecules per thread ahead.
+     *
+     * @param  classNames   the class names of the molecular descriptors
+     * @throws CDKException if a descriptor class cannot be instantiated
+     */
+    public BatchDescriptorEngine(List<String> classNames) throws CDKException {
+        this(new ClassNameFactory(classNames));
+    }
+
+    /**
+     * Creates an engine using one thread per available processor, and
+     * reading up to four molecules per thread ahead.
+     *
+     * @param  factory      creates the descriptors for each thread
+     * @throws CDKException if the factory creates no valid descriptors
+     */
+    public BatchDescriptorEngine(DescriptorFactory factory) throws CDKException {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine using the given number of threads, and reading up to
+     * four molecules per thread ahead.
+     *
+     * @param  factory      creates the descriptors for each thread
+     * @param  threadCount  the number of threads to calculate on
+     * @throws CDKException if the factory creates no valid descriptors
+     */
+    public BatchDescriptorEngine(DescriptorFactory factory, int threadCount)
+           throws CDKException {
+        this(factory, threadCount, 4 * threadCount);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param  factory      creates the descriptors for each thread
+     * @param  threadCount  the number of threads to calculate on
+     * @param  queueSize    the maximum number of molecules read ahead of the
+     *                      oldest molecule not yet added to the matrix
+     * @throws CDKException if the factory creates no valid descriptors
+     */
+    public BatchDescriptorEngine(DescriptorFactory factory,
+                                 int threadCount, int queueSize)
+           throws CDKException {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        if (queueSize < 1)
+            throw new IllegalArgumentException("queueSize must be at least 1");
+        this.factory = factory;
+        this.threadCount = threadCount;
+        this.queueSize = queueSize;
+
+        // the header is taken from a set of descriptors not used for calculation
+        List<IMolecularDescriptor> descriptors;
+        try {
+            descriptors = factory.create();
+        } catch (RuntimeException exception) {
+            throw new CDKException("Could not create the descriptors", exception);
+        }
+        if (descriptors == null || descriptors.isEmpty())
+            throw new CDKException("No descriptors to calculate");
+        descriptorNames = new String[descriptors.size()];
+        columnNames = new String[descriptors.size()][];
+        int columns = 0;
+        for (int i = 0; i < descriptors.size(); i++) {
+            IMolecularDescriptor descriptor = descriptors.get(i);
+            descriptorNames[i] = descriptor.getClass().getName();
+            columnNames[i] = descriptor.getDescriptorNames();
+            if (columnNames[i] == null)
+                throw new CDKException("Descriptor has no names: " + descriptorNames[i]);
+            columns += columnNames[i].length;
+        }
+        columnCount = columns;
+    }
+
+    /**
+     * Returns the header of the matrices calculated by this engine.
+     *
+     * @return the names of all columns
+     */
+    @TestMethod("testGetColumnNames")
+    public String[] getColumnNames() {
+        String[] names = new String[columnCount];
+        int column = 0;
+        for (String[] descriptorColumns : columnNames) {
+            System.arraycopy(descriptorColumns, 0, names, column, descriptorColumns.length);
+            column += descriptorColumns.length;
+        }
+        return names;
+    }
+
+    /**
+     * Calculates the descriptors for all molecules of the input. Input
+     * objects that are not an {@link IAtomContainer} are given a row of
+     * {@link Double#NaN} values, and count as failures of all descriptors.
+     * This method returns when all molecules have been processed.
+     *
+     * @param  molecules    the molecules, for example an
+     *                      {@link org.openscience.cdk.io.iterator.IIteratingChemObjectReader}
+     * @return              the values of all molecules in input order
+     * @throws CDKException if the batch is interrupted
+     */
+    @TestMethod("testProcess,testProcess_Failed,testProcess_Exception")
+    public DescriptorMatrix process(Iterator<?> molecules) throws CDKException {
+        final ThreadLocal<List<IMolecularDescriptor>> descriptors =
+            new ThreadLocal<List<IMolecularDescriptor>>() {
+                protected List<IMolecularDescriptor> initialValue() {
+                    return factory.create();
+                }
+            };
+        DescriptorMatrix matrix = new DescriptorMatrix(descriptorNames, columnNames);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        LinkedList<Future<Row>> pending = new LinkedList<Future<Row>>();
+        try {
+            while (molecules.hasNext()) {
+                final Object molecule = molecules.next();
+                pending.add(executor.submit(new Callable<Row>() {
+                    public Row call() {
+                        return calculate(descriptors.get(), molecule);
+                    }
+                }));
+                if (pending.size() >= queueSize)
+                    add(matrix, pending.removeFirst());
+            }
+            while (!pending.isEmpty())
+                add(matrix, pending.removeFirst());
+        } finally {
+            executor.shutdownNow();
+        }
+        return matrix;
+    }
+
+    private void add(DescriptorMatrix matrix, Future<Row> result)
+                 throws CDKException {
+        Row row;
+        try {
+            row = result.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CDKException(
+                "Interrupted while calculating molecule " + matrix.getRowCount(), exception
+            );
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Error) throw (Error)cause;
+            throw new CDKException("Error while calculating molecule " + matrix.getRowCount(), cause);
+        }
+        matrix.addRow(row.values, row.times, row.failed);
+    }
+
+    /**
+     * The values of one molecule, and the time spent on each descriptor.
+     */
+    private static class Row {
+        double[] values;
+        long[] times;
+        boolean[] failed;
+    }
+
+    private Row calculate(List<IMolecularDescriptor> descriptors, Object molecule) {
+        Row row = new Row();
+        row.values = new double[columnCount];
+        row.times = new long[descriptorNames.length];
+        row.failed = new boolean[descriptorNames.length];
+        Arrays.fill(row.values, Double.NaN);
+        if (!(molecule instanceof IAtomContainer)) {
+            logger.error("Expected an IAtomContainer but got: ",
+                molecule == null ? null : molecule.getClass().getName());
+            Arrays.fill(row.failed, true);
+            return row;
+        }
+        IAtomContainer container = (IAtomContainer)molecule;
+        DescriptorContext.attach(container);
+        try {
+            calculate(descriptors, container, row);
+        } finally {
+            DescriptorContext.detach(container);
+        }
+        return row;
+    }
+
+    private void calculate(List<IMolecularDescriptor> descriptors,
+                           IAtomContainer container, Row row) {
+        int column = 0;
+        for (int i = 0; i < descriptorNames.length; i++) {
+            long start = System.nanoTime();
+            try {
+                DescriptorValue value = descriptors.get(i).calculate(container);
+                if (value.getException() != null) {
+                    logger.debug("Could not calculate descriptor value for: ", descriptorNames[i]);
+                    row.failed[i] = true;
+                } else if (!copy(value.getValue(), row.values, column, columnNames[i].length)) {
+                    logger.debug("Unexpected number of values for: ", descriptorNames[i]);
+                    row.failed[i] = true;
+                }
+            } catch (RuntimeException exception) {
+                logger.debug("Could not calculate descriptor value for: ", descriptorNames[i]);
+                logger.debug(exception);
+                row.failed[i] = true;
+            }
+            row.times[i] = System.nanoTime() - start;
+            column += columnNames[i].length;
+        }
+    }
+
+    /**
+     * Copies the values of a result into a row, or leaves the row untouched
+     * if the result does not have the expected number of values.
+     */
+    private static boolean copy(IDescriptorResult result, double[] values,
+                                int offset, int length) {
+        if (result == null || result.length() != length) return false;
+        if (result instanceof DoubleResult) {
+            values[offset] = ((DoubleResult)result).doubleValue();
+        } else if (result instanceof IntegerResult) {
+            values[offset] = ((IntegerResult)result).intValue();
+        } else if (result instanceof BooleanResult) {
+            values[offset] = ((BooleanResult)result).booleanValue() ? 1.0 : 0.0;
+        } else if (result instanceof DoubleArrayResult) {
+            DoubleArrayResult array = (DoubleArrayResult)result;
+            for (int i = 0; i < length; i++) values[offset + i] = array.get(i);
+        } else if (result instanceof IntegerArrayResult) {
+            IntegerArrayResult array = (IntegerArrayResult)result;
+            for (int i = 0; i < length; i++) values[offset + i] = array.get(i);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Instantiates descriptors from their class names, with their default
+     * parameters.
+     */
+    private static class ClassNameFactory implements DescriptorFactory {
+
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+
+        ClassNameFactory(List<String> classNames) throws CDKException {
+            ClassLoader loader = BatchDescriptorEngine.class.getClassLoader();
+            for (String className : classNames) {
+                try {
+                    Class<?> descriptorClass = loader.loadClass(className);
+                    if (!IMolecularDescriptor.class.isAssignableFrom(descriptorClass))
+                        throw new CDKException("Not a molecular descriptor: " + className);
+                    classes.add(descriptorClass);
+                } catch (ClassNotFoundException exception) {
+                    throw new CDKException("Could not find this descriptor: " + className, exception);
+                } catch (NoClassDefFoundError error) {
+                    throw new CDKException("Could not load this descriptor: " + className, error);
+                }
+            }
+        }
+
+        public List<IMolecularDescriptor> create() {
+            List<IMolecularDescriptor> descriptors = new ArrayList<IMolecularDescriptor>();
+            for (Class<?> descriptorClass : classes) {
+                try {
+                    descriptors.add((IMolecularDescriptor)descriptorClass.newInstance());
+                } catch (InstantiationException exception) {
+                    throw new IllegalStateException(
+                        "Could not instantiate: " + descriptorClass.getName(), exception
+                    );
+                } catch (IllegalAccessException exception) {
+                    throw new IllegalStateException(
+                        "Could not instantiate: " + descriptorClass.getName(), exception
+                    );
+                }
+            }
+            return descriptors;
+        }
+
+    }
+
+}
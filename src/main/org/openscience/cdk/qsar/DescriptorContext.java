@@ -0,0 +1,458 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
+import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
+import org.openscience.cdk.charges.GasteigerMarsiliPartialCharges;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.PathTools;
+import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
+import org.openscience.cdk.graph.matrix.ConnectionMatrix;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IRing;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.ringsearch.AllRingsFinder;
+import org.openscience.cdk.ringsearch.SSSRFinder;
+import org.openscience.cdk.tools.CDKHydrogenAdder;
+import org.openscience.cdk.tools.LonePairElectronChecker;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
+
+/**
+ * The intermediate results that molecular descriptors calculate before the
+ * descriptor itself, kept for one molecule so that each is calculated only
+ * once when several descriptors are calculated for it:
+ * <pre>
+ * DescriptorContext.attach(molecule);
+ * try {
+ *     for (IMolecularDescriptor descriptor : descriptors)
+ *         values.add(descriptor.calculate(molecule));
+ * } finally {
+ *     DescriptorContext.detach(molecule);
+ * }
+ * </pre>
+ * The {@link DescriptorEngine} and the {@link BatchDescriptorEngine} do
+ * this for each molecule. Descriptors get the context of the molecule they
+ * are given with {@link #getInstance(IAtomContainer)}; without an attached
+ * context they get a new one, and calculate everything themselves as before.
+ *
+ * <p>The molecules, ring sets and matrices returned are shared between the
+ * descriptors and must not be modified. A descriptor that changes a
+ * molecule must change a clone of it. Ring sets are returned as made of the
+ * atoms and bonds of a container given by the descriptor, which must have
+ * the atoms and bonds of the molecule at the same positions; clones of the
+ * molecule and of the molecules returned here do.
+ *
+ * <p>The context is checked against the molecule each time it is looked up.
+ * If the atoms, the bonds, or the element, charge, hydrogen count, atom
+ * type, hybridization, bond order or aromaticity of any of them have been
+ * changed, for example by a descriptor that perceives atom types in place,
+ * a new context is attached and the intermediate results are calculated
+ * again.
+ *
+ * @cdk.module  qsarmolecular
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.qsar.DescriptorContextTest")
+public class DescriptorContext {
+
+    /** The property under which the context is kept with the molecule. */
+    public final static String DESCRIPTOR_CONTEXT = "org.openscience.cdk.qsar.DescriptorContext";
+
+    private final IAtomContainer container;
+    private final Snapshot snapshot;
+
+    private IAtomContainer saturated;
+    private CDKException saturatedFailure;
+    private IAtomContainer aromatic;
+    private CDKException aromaticFailure;
+    private double[] charges;
+    private CDKException chargesFailure;
+    private IAtomContainer heavyAtoms;
+    private boolean heavyAtomsTyped;
+    private CDKException heavyAtomsFailure;
+    private IRingSet allRings;
+    private CDKException allRingsFailure;
+    private IRingSet sssr;
+    private int[][] distances;
+    private int[][] heavyAtomDistances;
+
+    /**
+     * Creates a context for the given molecule, without attaching it.
+     *
+     * @param container the molecule
+     */
+    public DescriptorContext(IAtomContainer container) {
+        this.container = container;
+        this.snapshot = new Snapshot(container);
+    }
+
+    /**
+     * Returns the context attached to the molecule or, if there is none or
+     * the molecule has changed since it was attached, a new context. A new
+     * context replaces a stale one, but is otherwise not attached.
+     *
+     * @param  container the molecule
+     * @return           a context for the molecule
+     */
+    @TestMethod("testGetInstance,testGetInstance_Changed")
+    public static DescriptorContext getInstance(IAtomContainer container) {
+        Object property = container.getProperty(DESCRIPTOR_CONTEXT);
+        if (property instanceof DescriptorContext) {
+            DescriptorContext context = (DescriptorContext)property;
+            if (context.container == container) {
+                if (context.snapshot.matches(container)) return context;
+                return attach(container);
+            }
+        }
+        return new DescriptorContext(container);
+    }
+
+    /**
+     * Attaches a new context to the molecule, to be found by the descriptors
+     * calculated for it until it is detached.
+     *
+     * @param  container the molecule
+     * @return           the attached context
+     */
+    @TestMethod("testGetInstance")
+    public static DescriptorContext attach(IAtomContainer container) {
+        DescriptorContext context = new DescriptorContext(container);
+        container.setProperty(DESCRIPTOR_CONTEXT, context);
+        return context;
+    }
+
+    /**
+     * Removes the context from the molecule.
+     *
+     * @param container the molecule
+     */
+    @TestMethod("testGetInstance")
+    public static void detach(IAtomContainer container) {
+        container.removeProperty(DESCRIPTOR_CONTEXT);
+    }
+
+    /**
+     * Returns the molecule with perceived atom types and all hydrogens
+     * explicit. The atoms of the molecule come first, in the same order,
+     * followed by the added hydrogens.
+     *
+     * @return a molecule that must not be modified
+     * @throws CDKException if atom types or hydrogens could not be assigned
+     */
+    @TestMethod("testGetHydrogenSaturatedMolecule")
+    public IAtomContainer getHydrogenSaturatedMolecule() throws CDKException {
+        if (saturated == null && saturatedFailure == null) {
+            try {
+                IAtomContainer molecule = copy(container);
+                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(molecule);
+                CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(molecule.getBuilder());
+                hAdder.addImplicitHydrogens(molecule);
+                AtomContainerManipulator.convertImplicitToExplicitHydrogens(molecule);
+                saturated = molecule;
+            } catch (CDKException exception) {
+                saturatedFailure = exception;
+            }
+        }
+        if (saturatedFailure != null) throw saturatedFailure;
+        return saturated;
+    }
+
+    /**
+     * Returns the hydrogen saturated molecule, with the atom types perceived
+     * again and the aromaticity detected.
+     *
+     * @return a molecule that must not be modified
+     * @throws CDKException if atom types or aromaticity could not be perceived
+     * @see    #getHydrogenSaturatedMolecule()
+     */
+    @TestMethod("testGetAromaticMolecule")
+    public IAtomContainer getAromaticMolecule() throws CDKException {
+        if (aromatic == null && aromaticFailure == null) {
+            try {
+                IAtomContainer molecule = copy(getHydrogenSaturatedMolecule());
+                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(molecule);
+                CDKHueckelAromaticityDetector.detectAromaticity(molecule);
+                aromatic = molecule;
+            } catch (CDKException exception) {
+                aromaticFailure = exception;
+            }
+        }
+        if (aromaticFailure != null) throw aromaticFailure;
+        return aromatic;
+    }
+
+    /**
+     * Returns the Gasteiger-Marsili sigma partial charges of the atoms of the
+     * aromatic molecule, calculated after adding its lone pairs.
+     *
+     * @return the charges, by atom of {@link #getAromaticMolecule()}
+     * @throws CDKException if the charges could not be calculated
+     */
+    @TestMethod("testGetPartialCharges")
+    public double[] getPartialCharges() throws CDKException {
+        if (charges == null && chargesFailure == null) {
+            try {
+                IAtomContainer molecule = copy(getAromaticMolecule());
+                new LonePairElectronChecker().saturate(molecule);
+                new GasteigerMarsiliPartialCharges().assignGasteigerMarsiliSigmaPartialCharges(molecule, true);
+                double[] values = new double[molecule.getAtomCount()];
+                for (int i = 0; i < values.length; i++)
+                    values[i] = molecule.getAtom(i).getCharge();
+                charges = values;
+            } catch (CDKException exception) {
+                chargesFailure = exception;
+            } catch (Exception exception) {
+                chargesFailure = new CDKException("Could not calculate partial charges: " + exception.getMessage(), exception);
+            }
+        }
+        if (chargesFailure != null) throw chargesFailure;
+        return charges;
+    }
+
+    /**
+     * Returns the molecule without hydrogens, with perceived atom types and
+     * implicit hydrogen counts.
+     *
+     * @return a molecule that must not be modified
+     * @throws CDKException if atom types or hydrogens could not be assigned
+     */
+    @TestMethod("testGetHeavyAtomMolecule")
+    public IAtomContainer getHeavyAtomMolecule() throws CDKException {
+        if (!heavyAtomsTyped && heavyAtomsFailure == null) {
+            IAtomContainer molecule = getHeavyAtoms();
+            CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(molecule.getBuilder());
+            for (IAtom atom : molecule.atoms()) {
+                try {
+                    IAtomType type = matcher.findMatchingAtomType(molecule, atom);
+                    AtomTypeManipulator.configure(atom, type);
+                } catch (Exception exception) {
+                    heavyAtomsFailure = new CDKException("Error in atom typing: " + exception.getMessage(), exception);
+                    throw heavyAtomsFailure;
+                }
+            }
+            try {
+                CDKHydrogenAdder.getInstance(molecule.getBuilder()).addImplicitHydrogens(molecule);
+            } catch (Exception exception) {
+                heavyAtomsFailure = new CDKException("Error in hydrogen addition: " + exception.getMessage(), exception);
+            }
+            heavyAtomsTyped = true;
+        }
+        if (heavyAtomsFailure != null) throw heavyAtomsFailure;
+        return heavyAtoms;
+    }
+
+    /**
+     * Returns the topological distances between the atoms of the hydrogen
+     * saturated molecule.
+     *
+     * @return a matrix that must not be modified
+     * @throws CDKException if the hydrogen saturated molecule could not be made
+     * @see    PathTools#computeFloydAPSP(int[][])
+     */
+    @TestMethod("testGetDistanceMatrix")
+    public int[][] getDistanceMatrix() throws CDKException {
+        if (distances == null)
+            distances = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(getHydrogenSaturatedMolecule()));
+        return distances;
+    }
+
+    /**
+     * Returns the topological distances between the atoms of the molecule
+     * without hydrogens, along bonds with a bond order.
+     *
+     * @return a matrix that must not be modified
+     * @see    #getHeavyAtomMolecule()
+     */
+    @TestMethod("testGetHeavyAtomDistanceMatrix")
+    public int[][] getHeavyAtomDistanceMatrix() {
+        if (heavyAtomDistances == null)
+            heavyAtomDistances = PathTools.computeFloydAPSP(ConnectionMatrix.getMatrix(getHeavyAtoms()));
+        return heavyAtomDistances;
+    }
+
+    /**
+     * Returns all rings of the molecule, made of the atoms and bonds of the
+     * given container.
+     *
+     * @param  target the molecule, a clone of it or a molecule returned by
+     *                this context
+     * @return        a new ring set
+     * @throws CDKException if the ring search timed out
+     * @see    AllRingsFinder#findAllRings(IAtomContainer)
+     */
+    @TestMethod("testGetAllRings")
+    public IRingSet getAllRings(IAtomContainer target) throws CDKException {
+        if (allRings == null && allRingsFailure == null) {
+            try {
+                allRings = new AllRingsFinder().findAllRings(container);
+            } catch (CDKException exception) {
+                allRingsFailure = exception;
+            }
+        }
+        if (allRingsFailure != null) throw allRingsFailure;
+        return map(allRings, container, target);
+    }
+
+    /**
+     * Returns the smallest set of smallest rings of the molecule, made of
+     * the atoms and bonds of the given container. Like the
+     * {@link SSSRFinder}, it flags the ring atoms of the container.
+     *
+     * @param  target the molecule, a clone of it or a molecule returned by
+     *                this context
+     * @return        a new ring set
+     * @throws CDKException if the hydrogen saturated molecule could not be made
+     * @see    SSSRFinder#findSSSR()
+     */
+    @TestMethod("testGetSSSR")
+    public IRingSet getSSSR(IAtomContainer target) throws CDKException {
+        IAtomContainer molecule = getHydrogenSaturatedMolecule();
+        if (sssr == null) sssr = new SSSRFinder(molecule).findSSSR();
+        IRingSet rings = map(sssr, molecule, target);
+        for (IAtomContainer ring : rings.atomContainers()) {
+            for (IAtom atom : ring.atoms()) atom.setFlag(CDKConstants.ISINRING, true);
+        }
+        return rings;
+    }
+
+    private IAtomContainer getHeavyAtoms() {
+        if (heavyAtoms == null) heavyAtoms = AtomContainerManipulator.removeHydrogens(container);
+        return heavyAtoms;
+    }
+
+    /**
+     * Clones a molecule, without the context.
+     */
+    private static IAtomContainer copy(IAtomContainer container) throws CDKException {
+        IAtomContainer clone;
+        try {
+            clone = (IAtomContainer)container.clone();
+        } catch (CloneNotSupportedException exception) {
+            throw new CDKException("Error during clone", exception);
+        }
+        clone.removeProperty(DESCRIPTOR_CONTEXT);
+        return clone;
+    }
+
+    /**
+     * Rebuilds the rings of one container from the atoms and bonds at the
+     * same positions in another.
+     */
+    private static IRingSet map(IRingSet rings, IAtomContainer source, IAtomContainer target) {
+        IRingSet mapped = target.getBuilder().newInstance(IRingSet.class);
+        if (rings.getAtomContainerCount() == 0) return mapped;
+        Map<IAtom,IAtom> atoms = new IdentityHashMap<IAtom,IAtom>(2 * source.getAtomCount());
+        for (int i = 0; i < source.getAtomCount(); i++)
+            atoms.put(source.getAtom(i), target.getAtom(i));
+        Map<IBond,IBond> bonds = new IdentityHashMap<IBond,IBond>(2 * source.getBondCount());
+        for (int i = 0; i < source.getBondCount(); i++)
+            bonds.put(source.getBond(i), target.getBond(i));
+        for (IAtomContainer ring : rings.atomContainers()) {
+            IRing copy = target.getBuilder().newInstance(IRing.class);
+            for (IAtom atom : ring.atoms()) copy.addAtom(atoms.get(atom));
+            for (IBond bond : ring.bonds()) copy.addBond(bonds.get(bond));
+            mapped.addAtomContainer(copy);
+        }
+        return mapped;
+    }
+
+    /**
+     * The atoms and bonds of a molecule, and the properties the intermediate
+     * results depend on.
+     */
+    private static class Snapshot {
+
+        private final IAtom[] atoms;
+        private final IBond[] bonds;
+        private final Object[] atomValues;
+        private final Object[] bondValues;
+
+        Snapshot(IAtomContainer container) {
+            atoms = new IAtom[container.getAtomCount()];
+            atomValues = new Object[6 * atoms.length];
+            for (int i = 0; i < atoms.length; i++) {
+                atoms[i] = container.getAtom(i);
+                values(atoms[i], atomValues, 6 * i);
+            }
+            bonds = new IBond[container.getBondCount()];
+            bondValues = new Object[2 * bonds.length];
+            for (int i = 0; i < bonds.length; i++) {
+                bonds[i] = container.getBond(i);
+                values(bonds[i], bondValues, 2 * i);
+            }
+        }
+
+        boolean matches(IAtomContainer container) {
+            if (container.getAtomCount() != atoms.length
+                || container.getBondCount() != bonds.length) return false;
+            Object[] values = new Object[6];
+            for (int i = 0; i < atoms.length; i++) {
+                IAtom atom = container.getAtom(i);
+                if (atom != atoms[i]) return false;
+                values(atom, values, 0);
+                for (int j = 0; j < 6; j++) {
+                    if (!equal(values[j], atomValues[6 * i + j])) return false;
+                }
+            }
+            for (int i = 0; i < bonds.length; i++) {
+                IBond bond = container.getBond(i);
+                if (bond != bonds[i]) return false;
+                values(bond, values, 0);
+                for (int j = 0; j < 2; j++) {
+                    if (!equal(values[j], bondValues[2 * i + j])) return false;
+                }
+            }
+            return true;
+        }
+
+        private static void values(IAtom atom, Object[] values, int offset) {
+            values[offset] = atom.getSymbol();
+            values[offset + 1] = atom.getFormalCharge();
+            values[offset + 2] = atom.getImplicitHydrogenCount();
+            values[offset + 3] = atom.getAtomTypeName();
+            values[offset + 4] = atom.getHybridization();
+            values[offset + 5] = atom.getFlag(CDKConstants.ISAROMATIC);
+        }
+
+        private static void values(IBond bond, Object[] values, int offset) {
+            values[offset] = bond.getOrder();
+            values[offset + 1] = bond.getFlag(CDKConstants.ISAROMATIC);
+        }
+
+        private static boolean equal(Object value1, Object value2) {
+            return value1 == null ? value2 == null : value1.equals(value2);
+        }
+    }
+
+}
@@ -183,7 +183,9 @@ public class DescriptorEngine {
      * The results for a given descriptor as well as associated parameters and
      * specifications are used to create a <code>DescriptorValue</code>
      * object which is then added to the molecule as a property keyed
-     * on the <code>DescriptorSpecification</code> object for that descriptor
+     * on the <code>DescriptorSpecification</code> object for that descriptor.
+     * Intermediate results used by several descriptors are calculated only
+     * once, see {@link DescriptorContext}.
      *
      * @param molecule The molecule for which we want to calculate descriptors
      * @throws CDKException if an error occured during descriptor calculation or the descriptors and/or
@@ -196,6 +198,15 @@ public class DescriptorEngine {
             throw new CDKException("Number of specs and descriptors do not match");
 
 
+        DescriptorContext.attach(molecule);
+        try {
+            calculate(molecule);
+        } finally {
+            DescriptorContext.detach(molecule);
+        }
+    }
+
+    private void calculate(IAtomContainer molecule) {
         for (int i = 0; i < descriptors.size(); i++) {
             IDescriptor descriptor = descriptors.get(i);
             if (descriptor instanceof IMolecularDescriptor) {
@@ -0,0 +1,256 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+/**
+ * The descriptor values of a batch of molecules, as calculated by the
+ * {@link BatchDescriptorEngine}. The values are stored by column, with one
+ * column for each name returned by {@link IDescriptor#getDescriptorNames()},
+ * and one row for each molecule in input order. Integer and boolean results
+ * are stored as doubles, the latter as 1.0 and 0.0; values that could not be
+ * calculated are {@link Double#NaN}.
+ *
+ * <p>For each descriptor the matrix also holds the total wall time spent
+ * calculating it and the number of molecules for which it failed, so that
+ * the expensive and unreliable descriptors of a run can be found.
+ *
+ * @cdk.module  qsarmolecular
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.qsar.DescriptorMatrixTest")
+public class DescriptorMatrix {
+
+    private final String[] descriptorNames;
+    private final int[] firstColumns;
+    private final String[] columnNames;
+    private final long[] times;
+    private final int[] failures;
+    private double[][] columns;
+    private int capacity = 16;
+    private int rowCount;
+
+    /**
+     * Creates an empty matrix.
+     *
+     * @param descriptorNames the names of the descriptors
+     * @param columnNames     the names of the columns of each descriptor
+     */
+    DescriptorMatrix(String[] descriptorNames, String[][] columnNames) {
+        this.descriptorNames = descriptorNames;
+        this.firstColumns = new int[descriptorNames.length + 1];
+        for (int i = 0; i < columnNames.length; i++)
+            firstColumns[i + 1] = firstColumns[i] + columnNames[i].length;
+        this.columnNames = new String[firstColumns[descriptorNames.length]];
+        for (int i = 0; i < columnNames.length; i++)
+            System.arraycopy(columnNames[i], 0, this.columnNames, firstColumns[i], columnNames[i].length);
+        this.times = new long[descriptorNames.length];
+        this.failures = new int[descriptorNames.length];
+        this.columns = new double[this.columnNames.length][capacity];
+    }
+
+    /**
+     * Appends the values of one molecule.
+     *
+     * @param values the values of all columns
+     * @param times  the time spent on each descriptor, in nanoseconds
+     * @param failed whether each descriptor failed for this molecule
+     */
+    @TestMethod("testAddRow")
+    void addRow(double[] values, long[] times, boolean[] failed) {
+        if (rowCount == capacity) {
+            capacity *= 2;
+            for (int i = 0; i < columns.length; i++) {
+                double[] grown = new double[capacity];
+                System.arraycopy(columns[i], 0, grown, 0, rowCount);
+                columns[i] = grown;
+            }
+        }
+        for (int i = 0; i < columns.length; i++)
+            columns[i][rowCount] = values[i];
+        for (int i = 0; i < descriptorNames.length; i++) {
+            this.times[i] += times[i];
+            if (failed[i]) failures[i]++;
+        }
+        rowCount++;
+    }
+
+    /**
+     * Returns the number of molecules in the matrix.
+     *
+     * @return the number of rows
+     */
+    @TestMethod("testGetRowCount")
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of descriptor values calculated for each molecule.
+     *
+     * @return the number of columns
+     */
+    @TestMethod("testGetColumnNames")
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * Returns the header of the matrix.
+     *
+     * @return the names of all columns
+     */
+    @TestMethod("testGetColumnNames")
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * Returns the index of the first column with the given name.
+     *
+     * @param  name the name of the column
+     * @return      the index of the column, or -1 if there is no such column
+     */
+    @TestMethod("testGetColumn_String")
+    public int getColumnIndex(String name) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the values of one column, for all molecules.
+     *
+     * @param  column the index of the column
+     * @return        an array of length {@link #getRowCount()}
+     */
+    @TestMethod("testGetColumn_int")
+    public double[] getColumn(int column) {
+        double[] values = new double[rowCount];
+        System.arraycopy(columns[column], 0, values, 0, rowCount);
+        return values;
+    }
+
+    /**
+     * Returns the values of the first column with the given name.
+     *
+     * @param  name the name of the column
+     * @return      an array of length {@link #getRowCount()}
+     * @throws IllegalArgumentException if there is no such column
+     */
+    @TestMethod("testGetColumn_String")
+    public double[] getColumn(String name) {
+        int column = getColumnIndex(name);
+        if (column < 0) throw new IllegalArgumentException("No such column: " + name);
+        return getColumn(column);
+    }
+
+    /**
+     * Returns a single value.
+     *
+     * @param  row    the index of the molecule
+     * @param  column the index of the column
+     * @return        the value, or {@link Double#NaN} if it could not be calculated
+     */
+    @TestMethod("testGetValue")
+    public double getValue(int row, int column) {
+        if (row < 0 || row >= rowCount) throw new IndexOutOfBoundsException("No such row: " + row);
+        return columns[column][row];
+    }
+
+    /**
+     * Returns all values, as an array of columns.
+     *
+     * @return an array of {@link #getColumnCount()} columns, each of length
+     *         {@link #getRowCount()}
+     */
+    @TestMethod("testGetColumn_int")
+    public double[][] getColumns() {
+        double[][] values = new double[columns.length][];
+        for (int i = 0; i < columns.length; i++)
+            values[i] = getColumn(i);
+        return values;
+    }
+
+    /**
+     * Returns the number of descriptors.
+     *
+     * @return the number of descriptors
+     */
+    @TestMethod("testGetDescriptorName")
+    public int getDescriptorCount() {
+        return descriptorNames.length;
+    }
+
+    /**
+     * Returns the class name of a descriptor.
+     *
+     * @param  descriptor the index of the descriptor
+     * @return            the class name of the descriptor
+     */
+    @TestMethod("testGetDescriptorName")
+    public String getDescriptorName(int descriptor) {
+        return descriptorNames[descriptor];
+    }
+
+    /**
+     * Returns the index of the first column of a descriptor. The columns of
+     * a descriptor are consecutive, in the order of its
+     * {@link IDescriptor#getDescriptorNames()}.
+     *
+     * @param  descriptor the index of the descriptor
+     * @return            the index of its first column
+     */
+    @TestMethod("testGetDescriptorName")
+    public int getFirstColumn(int descriptor) {
+        return firstColumns[descriptor];
+    }
+
+    /**
+     * Returns the total wall time spent calculating a descriptor, summed
+     * over all molecules and threads.
+     *
+     * @param  descriptor the index of the descriptor
+     * @return            the time in nanoseconds
+     */
+    @TestMethod("testGetTime")
+    public long getTime(int descriptor) {
+        return times[descriptor];
+    }
+
+    /**
+     * Returns the number of molecules for which a descriptor could not be
+     * calculated.
+     *
+     * @param  descriptor the index of the descriptor
+     * @return            the number of failures
+     */
+    @TestMethod("testGetFailureCount")
+    public int getFailureCount(int descriptor) {
+        return failures[descriptor];
+    }
+
+}
@@ -32,18 +32,16 @@ import org.openscience.cdk.interfaces.IAtomType;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IRing;
 import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.qsar.DescriptorContext;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
 import org.openscience.cdk.qsar.result.DoubleArrayResult;
 import org.openscience.cdk.qsar.result.DoubleArrayResultType;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
-import org.openscience.cdk.ringsearch.AllRingsFinder;
 import org.openscience.cdk.tools.AtomicProperties;
-import org.openscience.cdk.tools.CDKHydrogenAdder;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 import org.openscience.cdk.tools.manipulator.BondManipulator;
 
 /**
@@ -1985,30 +1983,22 @@ public class ALOGPDescriptor implements IMolecularDescriptor {
     /**
      * The AlogP descriptor.
      *
-     * TODO Ideally we should explicit H addition should be cached
-     *
      * @param atomContainer the molecule to calculate on
      * @return the result of the calculation
      */
     @TestMethod("testCalculate_IAtomContainer,testChloroButane")
     public DescriptorValue calculate(IAtomContainer atomContainer) {
         IAtomContainer container;
+        DescriptorContext context = DescriptorContext.getInstance(atomContainer);
         try {
-            container = (IAtomContainer) atomContainer.clone();
-            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
-            CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(container.getBuilder());
-            hAdder.addImplicitHydrogens(container);
-            AtomContainerManipulator.convertImplicitToExplicitHydrogens(container);
-        } catch (CloneNotSupportedException e) {
-            return getDummyDescriptorValue(new CDKException("Error during clone"));
+            container = context.getHydrogenSaturatedMolecule();
         } catch (CDKException e) {
             return getDummyDescriptorValue(new CDKException("Error during atom typing" + e.getMessage()));
         }
 
         IRingSet rs;
         try {
-            AllRingsFinder arf = new AllRingsFinder();
-            rs = arf.findAllRings(container);
+            rs = context.getAllRings(container);
         } catch (Exception e) {
             return getDummyDescriptorValue(new CDKException("Could not find all rings: " + e.getMessage()));
         }
@@ -28,23 +28,20 @@ import Jama.Matrix;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
 import org.openscience.cdk.charges.GasteigerMarsiliPartialCharges;
 import org.openscience.cdk.charges.GasteigerPEPEPartialCharges;
 import org.openscience.cdk.charges.Polarizability;
 import org.openscience.cdk.config.IsotopeFactory;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.qsar.DescriptorContext;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
 import org.openscience.cdk.qsar.result.DoubleArrayResult;
 import org.openscience.cdk.qsar.result.DoubleArrayResultType;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
-import org.openscience.cdk.tools.CDKHydrogenAdder;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.LonePairElectronChecker;
@@ -309,19 +306,11 @@ public class BCUTDescriptor implements IMolecularDescriptor {
     public DescriptorValue calculate(IAtomContainer container) {
         int counter;
         IAtomContainer molecule;
-        try {
-            molecule = (IAtomContainer) container.clone();
-        } catch (CloneNotSupportedException e) {
-            logger.debug("Error during clone");
-            return getDummyDescriptorValue(new CDKException("Error occured during clone " + e));
-        }
+        DescriptorContext context = DescriptorContext.getInstance(container);
 
         // add H's in case they're not present
         try {
-            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(molecule);            
-            CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(molecule.getBuilder());
-            hAdder.addImplicitHydrogens(molecule);
-            AtomContainerManipulator.convertImplicitToExplicitHydrogens(molecule);
+            molecule = context.getHydrogenSaturatedMolecule();
         } catch (Exception e) {
             return getDummyDescriptorValue(new CDKException("Could not add hydrogens: " + e.getMessage(), e));
         }
@@ -329,17 +318,20 @@ public class BCUTDescriptor implements IMolecularDescriptor {
         // do aromaticity detecttion for calculating polarizability later on
         if (this.checkAromaticity) {
             try {
-                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(molecule);
+                molecule = context.getAromaticMolecule();
             } catch (CDKException e) {
-                return getDummyDescriptorValue(new CDKException("Error in atom typing: " + e.getMessage(), e));
-            }
-            try {
-                CDKHueckelAromaticityDetector.detectAromaticity(molecule);
-            } catch (CDKException e) {
-                return getDummyDescriptorValue(new CDKException("Error in aromaticity perception: "+e.getMessage()));
+                return getDummyDescriptorValue(new CDKException("Error in aromaticity perception: "+e.getMessage(), e));
             }
         }
 
+        // the charges are set on the atoms below
+        try {
+            molecule = (IAtomContainer) molecule.clone();
+        } catch (CloneNotSupportedException e) {
+            logger.debug("Error during clone");
+            return getDummyDescriptorValue(new CDKException("Error occured during clone " + e));
+        }
+
         // find number of heavy atoms
         int nheavy = 0;
         for (int i = 0; i < molecule.getAtomCount(); i++) {
@@ -373,14 +365,20 @@ public class BCUTDescriptor implements IMolecularDescriptor {
         GasteigerPEPEPartialCharges pepe;
         GasteigerMarsiliPartialCharges peoe;
         try {
-            lpcheck.saturate(molecule);
-            double[] charges = new double[molecule.getAtomCount()];
-//            pepe = new GasteigerPEPEPartialCharges();
-//            pepe.calculateCharges(molecule);
-//            for (int i = 0; i < molecule.getAtomCount(); i++) charges[i] = molecule.getAtom(i).getCharge();
-            peoe = new GasteigerMarsiliPartialCharges();
-            peoe.assignGasteigerMarsiliSigmaPartialCharges(molecule, true);
-            for (int i = 0; i < molecule.getAtomCount(); i++) charges[i] += molecule.getAtom(i).getCharge();
+            double[] charges;
+            if (this.checkAromaticity) {
+                // the same charges, calculated on the same molecule
+                charges = context.getPartialCharges();
+            } else {
+                lpcheck.saturate(molecule);
+                charges = new double[molecule.getAtomCount()];
+//                pepe = new GasteigerPEPEPartialCharges();
+//                pepe.calculateCharges(molecule);
+//                for (int i = 0; i < molecule.getAtomCount(); i++) charges[i] = molecule.getAtom(i).getCharge();
+                peoe = new GasteigerMarsiliPartialCharges();
+                peoe.assignGasteigerMarsiliSigmaPartialCharges(molecule, true);
+                for (int i = 0; i < molecule.getAtomCount(); i++) charges[i] += molecule.getAtom(i).getCharge();
+            }
             for (int i = 0; i < molecule.getAtomCount(); i++) {
                 molecule.getAtom(i).setCharge(charges[i]);
             }
@@ -399,7 +397,12 @@ public class BCUTDescriptor implements IMolecularDescriptor {
         double[] eval2 = eigenDecomposition.getRealEigenvalues();
 
 
-        int[][] topoDistance = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(molecule));
+        int[][] topoDistance;
+        try {
+            topoDistance = context.getDistanceMatrix();
+        } catch (CDKException e) {
+            return getDummyDescriptorValue(e);
+        }
 
         // get polarizability weighted BCUT
         Polarizability pol = new Polarizability();
@@ -32,15 +32,14 @@ import java.util.List;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.exception.InvalidSmilesException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.interfaces.IAtomType;
 import org.openscience.cdk.interfaces.IRingSet;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
+import org.openscience.cdk.qsar.DescriptorContext;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
@@ -49,11 +48,8 @@ import org.openscience.cdk.qsar.result.DoubleArrayResultType;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
 import org.openscience.cdk.ringsearch.SSSRFinder;
 import org.openscience.cdk.smiles.SmilesParser;
-import org.openscience.cdk.tools.CDKHydrogenAdder;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
-import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
 
 
 /**
@@ -156,25 +152,11 @@ public class ChiChainDescriptor implements IMolecularDescriptor {
     @TestMethod("testCalculate_IAtomContainer")
     public DescriptorValue calculate(IAtomContainer container) {
 
-        // we don't make a clone, since removeHydrogens returns a deep copy
-        IAtomContainer localAtomContainer = AtomContainerManipulator.removeHydrogens(container);
-        CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(container.getBuilder());
-        Iterator<IAtom> atoms = localAtomContainer.atoms().iterator();
-        while (atoms.hasNext()) {
-            IAtom atom = atoms.next();
-            IAtomType type;
-            try {
-                type = matcher.findMatchingAtomType(localAtomContainer, atom);
-                AtomTypeManipulator.configure(atom, type);
-            } catch (Exception e) {
-                return getDummyDescriptorValue(new CDKException("Error in atom typing: " + atom));
-            }            
-        }
-        CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(container.getBuilder());
+        IAtomContainer localAtomContainer;
         try {
-            hAdder.addImplicitHydrogens(localAtomContainer);
+            localAtomContainer = DescriptorContext.getInstance(container).getHeavyAtomMolecule();
         } catch (CDKException e) {
-            return getDummyDescriptorValue(new CDKException("Error in adding hydrogens: " + e.getMessage()));
+            return getDummyDescriptorValue(e);
         }
 
 
@@ -25,20 +25,17 @@
 
 package org.openscience.cdk.qsar.descriptors.molecular;
 
-import java.util.Iterator;
 import java.util.List;
 
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.exception.InvalidSmilesException;
-import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.interfaces.IAtomType;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
+import org.openscience.cdk.qsar.DescriptorContext;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
@@ -46,11 +43,8 @@ import org.openscience.cdk.qsar.result.DoubleArrayResult;
 import org.openscience.cdk.qsar.result.DoubleArrayResultType;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
 import org.openscience.cdk.smiles.SmilesParser;
-import org.openscience.cdk.tools.CDKHydrogenAdder;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
-import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
 
 /**
  * Evaluates chi cluster descriptors.
@@ -147,25 +141,11 @@ public class ChiClusterDescriptor implements IMolecularDescriptor {
     @TestMethod("testCalculate_IAtomContainer")
     public DescriptorValue calculate(IAtomContainer container) {
 
-        // removeHydrogens does a deep copy, so no need to clone
-        IAtomContainer localAtomContainer = AtomContainerManipulator.removeHydrogens(container);
-        CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(container.getBuilder());
-        Iterator<IAtom> atoms = localAtomContainer.atoms().iterator();
-        while (atoms.hasNext()) {
-            IAtom atom = atoms.next();
-            IAtomType type;
-            try {
-                type = matcher.findMatchingAtomType(localAtomContainer, atom);
-                AtomTypeManipulator.configure(atom, type);
-            } catch (Exception e) {
-                return getDummyDescriptorValue(new CDKException("Error in atom typing: " + e.getMessage()));
-            }            
-        }
-        CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(container.getBuilder());
+        IAtomContainer localAtomContainer;
         try {
-            hAdder.addImplicitHydrogens(localAtomContainer);
+            localAtomContainer = DescriptorContext.getInstance(container).getHeavyAtomMolecule();
         } catch (CDKException e) {
-            return getDummyDescriptorValue(new CDKException("Error in hydrogen addition: " + e.getMessage()));
+            return getDummyDescriptorValue(e);
         }
 
         List subgraph3 = order3(localAtomContainer);
@@ -27,18 +27,18 @@ import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.Ring;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
+import org.openscience.cdk.aromaticity.PerceptionState;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.qsar.DescriptorContext;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
 import org.openscience.cdk.qsar.result.DoubleResult;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
-import org.openscience.cdk.ringsearch.AllRingsFinder;
 import org.openscience.cdk.tools.CDKHydrogenAdder;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
@@ -242,15 +242,14 @@ public class TPSADescriptor implements IMolecularDescriptor {
         // calculate the set of all rings
         IRingSet rs;
         try {
-            rs = (new AllRingsFinder()).findAllRings(ac);
+            rs = DescriptorContext.getInstance(atomContainer).getAllRings(ac);
         } catch (CDKException e) {
             return getDummyDescriptorValue(e);
         }
         // check aromaticity if the descriptor parameter is set to true
         if (checkAromaticity) {
             try {
-                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(ac);
-                CDKHueckelAromaticityDetector.detectAromaticity(ac);
+                PerceptionState.perceive(ac, atomContainer);
             } catch (CDKException e) {
                 return getDummyDescriptorValue(e);
             }
@@ -24,7 +24,6 @@ import org._3pq.jgrapht.graph.SimpleGraph;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.graph.BFSShortestPath;
 import org.openscience.cdk.graph.MoleculeGraphs;
@@ -36,14 +35,13 @@ import org.openscience.cdk.isomorphism.matchers.smarts.AnyOrderQueryBond;
 import org.openscience.cdk.isomorphism.matchers.smarts.AromaticAtom;
 import org.openscience.cdk.isomorphism.matchers.smarts.AromaticQueryBond;
 import org.openscience.cdk.isomorphism.mcss.RMap;
+import org.openscience.cdk.qsar.DescriptorContext;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
 import org.openscience.cdk.qsar.result.DoubleResult;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
 import org.openscience.cdk.ringsearch.SSSRFinder;
-import org.openscience.cdk.tools.CDKHydrogenAdder;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 import org.openscience.cdk.tools.manipulator.RingSetManipulator;
 
 import java.util.ArrayList;
@@ -208,27 +206,20 @@ public class XLogPDescriptor implements IMolecularDescriptor {
     @TestMethod("testCalculate_IAtomContainer")
     public DescriptorValue calculate(IAtomContainer atomContainer) {
         IAtomContainer ac;
+        IRingSet rs;
+        DescriptorContext context = DescriptorContext.getInstance(atomContainer);
         try {
-            ac = (IAtomContainer) atomContainer.clone();
-            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(ac);
-            CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(ac.getBuilder());
-            hAdder.addImplicitHydrogens(ac);
-            AtomContainerManipulator.convertImplicitToExplicitHydrogens(ac);
+            // the aromatic molecule is the hydrogen saturated one, with aromaticity detected
+            if (checkAromaticity) ac = (IAtomContainer) context.getAromaticMolecule().clone();
+            else ac = (IAtomContainer) context.getHydrogenSaturatedMolecule().clone();
+            rs = context.getSSSR(ac);
         } catch (CloneNotSupportedException e) {
             return getDummyDescriptorValue(e);
         } catch (CDKException e) {
             return getDummyDescriptorValue(e);
         }
 
-        IRingSet rs = (IRingSet) new SSSRFinder(ac).findSSSR();
         IRingSet atomRingSet=null;
-        if (checkAromaticity) {
-            try {                
-                CDKHueckelAromaticityDetector.detectAromaticity(ac);
-            } catch (CDKException e) {
-                return getDummyDescriptorValue(e);
-            }
-        }
         double xlogP = 0;
 //		SmilesParser sp = new SmilesParser(NewDefaultChemObjectBuilder.getInstance());
         String symbol = "";
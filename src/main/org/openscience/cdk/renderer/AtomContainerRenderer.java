@@ -28,6 +28,7 @@ import java.util.List;
 import javax.vecmath.Point2d;
 
 import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.geometry.GeometryTools;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.renderer.elements.IRenderingElement;
@@ -36,6 +37,7 @@ import org.openscience.cdk.renderer.generators.BasicBondGenerator.BondLength;
 import org.openscience.cdk.renderer.generators.BasicSceneGenerator.Scale;
 import org.openscience.cdk.renderer.generators.BasicSceneGenerator.ZoomFactor;
 import org.openscience.cdk.renderer.generators.IGenerator;
+import org.openscience.cdk.renderer.generators.IIncrementalGenerator;
 import org.openscience.cdk.renderer.visitor.IDrawVisitor;
 
 /**
@@ -108,6 +110,11 @@ public class AtomContainerRenderer extends AbstractRenderer<IAtomContainer>
      */
     public static final double DEFAULT_SCALE = 30.0;
 
+    /**
+     * The elements of the last atom container drawn.
+     */
+    private final DiagramCache diagramCache = new DiagramCache();
+
     /**
      * A renderer that generates diagrams using the specified
      * generators and manages fonts with the supplied font manager.
@@ -161,6 +168,22 @@ public class AtomContainerRenderer extends AbstractRenderer<IAtomContainer>
         rendererModel.getParameter(Scale.class).setValue(this.calculateScaleForBondLength(bondLength));
     }
 
+    /**
+     * Generates the diagram of an atom container. The elements of
+     * {@link IIncrementalGenerator}s are kept between diagrams of the same
+     * container, and only those of atoms and bonds that changed since the last
+     * diagram are generated again. A change of the zoom or of the selection
+     * therefore does not regenerate them.
+     *
+     * @param atomContainer the atom container to draw
+     * @return the diagram as a tree of {@link IRenderingElement}s
+     */
+    @TestMethod("testGenerateDiagram_Incremental")
+    public IRenderingElement generateDiagram(IAtomContainer atomContainer) {
+        return diagramCache.generateDiagram(
+                atomContainer, this.generators, this.rendererModel);
+    }
+
     /** 
      * {@inheritDoc}
      */
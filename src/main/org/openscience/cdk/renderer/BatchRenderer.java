@@ -0,0 +1,478 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.renderer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.geometry.GeometryTools;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.renderer.font.AWTFontManager;
+import org.openscience.cdk.renderer.generators.BasicAtomGenerator;
+import org.openscience.cdk.renderer.generators.BasicBondGenerator;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator.BackgroundColor;
+import org.openscience.cdk.renderer.generators.IGenerator;
+import org.openscience.cdk.renderer.visitor.AWTDrawVisitor;
+import org.openscience.cdk.renderer.visitor.SVGDrawVisitor;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Draws a stream of molecules with 2D coordinates on several threads, as SVG
+ * or as images of a fixed size. An {@link AtomContainerRenderer} keeps the
+ * state of the diagram it draws, so each thread uses its own renderer and
+ * font manager, reused for all molecules drawn on that thread. No window
+ * system is needed:
+ * <pre>
+ * BatchRenderer batch = new BatchRenderer(200, 200);
+ * batch.renderImages(molecules, new BatchRenderer.DepictionHandler() {
+ *     public void handle(BatchRenderer.Depiction depiction) throws CDKException {
+ *         ImageIO.write(depiction.getImage(), "png", out(depiction.getIndex()));
+ *     }
+ * });
+ * </pre>
+ *
+ * <p>The depictions are given to the handler in input order, on the thread
+ * that called the batch. At most <code>queueSize</code> molecules are read
+ * ahead of the oldest molecule not yet handled. Images are taken from a pool,
+ * together with the graphics that draws on them, and go back to the pool when
+ * the handler returns. The handler must therefore write out or copy an image
+ * before it returns.
+ *
+ * @cdk.module  renderawt
+ * @cdk.githash
+ * @see org.openscience.cdk.layout.BatchStructureDiagramGenerator
+ */
+@TestClass("org.openscience.cdk.renderer.BatchRendererTest")
+public class BatchRenderer {
+
+    /**
+     * Handles the depictions of a batch, in input order, on the thread that
+     * called the batch.
+     */
+    public interface DepictionHandler {
+
+        /**
+         * Handles the depiction of one molecule.
+         *
+         * @param  depiction    the depiction of the molecule
+         * @throws CDKException to stop the batch
+         */
+        public void handle(Depiction depiction) throws CDKException;
+
+    }
+
+    /**
+     * The depiction of one molecule of a batch.
+     */
+    public static class Depiction {
+
+        private final int index;
+        private final Object molecule;
+        private final Canvas canvas;
+        private final String svg;
+        private final Exception exception;
+
+        Depiction(int index, Object molecule, Canvas canvas, String svg,
+                  Exception exception) {
+            this.index = index;
+            this.molecule = molecule;
+            this.canvas = canvas;
+            this.svg = svg;
+            this.exception = exception;
+        }
+
+        /**
+         * Returns the position of the molecule in the input.
+         *
+         * @return the index of the molecule, counted from 0
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the molecule as it was given in the input.
+         *
+         * @return the input molecule
+         */
+        public Object getMolecule() {
+            return molecule;
+        }
+
+        /**
+         * Returns whether the molecule was drawn.
+         *
+         * @return false if the molecule could not be drawn
+         */
+        public boolean isDrawn() {
+            return exception == null;
+        }
+
+        /**
+         * Returns the image the molecule was drawn on. The image is drawn on
+         * again once the handler returns.
+         *
+         * @return the image, or null if the molecule was drawn as SVG or could
+         *         not be drawn
+         */
+        public BufferedImage getImage() {
+            return canvas == null ? null : canvas.image;
+        }
+
+        /**
+         * Returns the SVG document of the molecule.
+         *
+         * @return the SVG, or null if the molecule was drawn as an image or
+         *         could not be drawn
+         */
+        public String getSVG() {
+            return svg;
+        }
+
+        /**
+         * Returns why the molecule could not be drawn.
+         *
+         * @return the exception, or null if the molecule was drawn
+         */
+        public Exception getException() {
+            return exception;
+        }
+
+    }
+
+    /**
+     * An image with the graphics and visitor that draw on it.
+     */
+    private static class Canvas {
+
+        final BufferedImage image;
+        final Graphics2D graphics;
+        final AWTDrawVisitor visitor;
+
+        Canvas(int width, int height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            graphics = image.createGraphics();
+            visitor = new AWTDrawVisitor(graphics);
+        }
+
+    }
+
+    /**
+     * The renderer of a thread, with a graphics to measure text for SVG.
+     */
+    private class Worker {
+
+        final AtomContainerRenderer renderer = createRenderer();
+        final Graphics2D metrics = new BufferedImage(
+            1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+
+    }
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(BatchRenderer.class);
+
+    private final int width;
+    private final int height;
+    private final int threadCount;
+    private final int queueSize;
+
+    /**
+     * Images no longer in use, kept for the following molecules and batches.
+     */
+    private final BlockingQueue<Canvas> canvases;
+
+    /**
+     * Creates a batch renderer for pictures of the given size, using one
+     * thread per available processor, and reading up to four molecules per
+     * thread ahead.
+     *
+     * @param width  the width of the pictures in pixels
+     * @param height the height of the pictures in pixels
+     */
+    public BatchRenderer(int width, int height) {
+        this(width, height, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a batch renderer for pictures of the given size, using the
+     * given number of threads, and reading up to four molecules per thread
+     * ahead.
+     *
+     * @param width       the width of the pictures in pixels
+     * @param height      the height of the pictures in pixels
+     * @param threadCount the number of threads to draw on
+     */
+    public BatchRenderer(int width, int height, int threadCount) {
+        this(width, height, threadCount, 4 * threadCount);
+    }
+
+    /**
+     * Creates a batch renderer.
+     *
+     * @param width       the width of the pictures in pixels
+     * @param height      the height of the pictures in pixels
+     * @param threadCount the number of threads to draw on
+     * @param queueSize   the maximum number of molecules read ahead of the
+     *                    oldest molecule not yet handled, which is also the
+     *                    number of images kept
+     */
+    public BatchRenderer(int width, int height, int threadCount, int queueSize) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("width and height must be at least 1");
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        if (queueSize < 1)
+            throw new IllegalArgumentException("queueSize must be at least 1");
+        this.width = width;
+        this.height = height;
+        this.threadCount = threadCount;
+        this.queueSize = queueSize;
+        this.canvases = new ArrayBlockingQueue<Canvas>(queueSize);
+    }
+
+    /**
+     * Draws all molecules of the input as SVG, and returns their depictions.
+     * Input objects that are not an {@link IAtomContainer}, or that do not
+     * have 2D coordinates, are not drawn.
+     *
+     * @param  molecules    the molecules, for example an
+     *                      {@link org.openscience.cdk.io.iterator.IIteratingChemObjectReader}
+     * @return              the depictions of all molecules in input order
+     * @throws CDKException if the batch is interrupted
+     */
+    @TestMethod("testRenderSVG")
+    public List<Depiction> renderSVG(Iterator<?> molecules) throws CDKException {
+        final List<Depiction> depictions = new ArrayList<Depiction>();
+        renderSVG(molecules, new DepictionHandler() {
+            public void handle(Depiction depiction) {
+                depictions.add(depiction);
+            }
+        });
+        return depictions;
+    }
+
+    /**
+     * Draws all molecules of the input as SVG, and gives each depiction to
+     * the handler as soon as the depictions of all preceding molecules have
+     * been given.
+     *
+     * @param  molecules    the molecules, for example an
+     *                      {@link org.openscience.cdk.io.iterator.IIteratingChemObjectReader}
+     * @param  handler      handles the depictions in input order
+     * @throws CDKException if the batch is interrupted, or the handler throws
+     *                      an exception
+     */
+    @TestMethod("testRenderSVG_DepictionHandler")
+    public void renderSVG(Iterator<?> molecules, DepictionHandler handler) throws CDKException {
+        render(molecules, handler, false);
+    }
+
+    /**
+     * Draws all molecules of the input on images, and gives each depiction to
+     * the handler as soon as the depictions of all preceding molecules have
+     * been given. The image of a depiction is drawn on again once the handler
+     * returns. Input objects that are not an {@link IAtomContainer}, or that
+     * do not have 2D coordinates, are not drawn.
+     *
+     * @param  molecules    the molecules, for example an
+     *                      {@link org.openscience.cdk.io.iterator.IIteratingChemObjectReader}
+     * @param  handler      handles the depictions in input order
+     * @throws CDKException if the batch is interrupted, or the handler throws
+     *                      an exception
+     */
+    @TestMethod("testRenderImages")
+    public void renderImages(Iterator<?> molecules, DepictionHandler handler) throws CDKException {
+        render(molecules, handler, true);
+    }
+
+    /**
+     * Creates the renderer of one thread, which draws with a
+     * {@link BasicSceneGenerator}, a {@link BasicBondGenerator} and a
+     * {@link BasicAtomGenerator}. Each renderer is used by a single thread
+     * only. Override to draw with other generators or parameters.
+     *
+     * @return a new renderer
+     */
+    @TestMethod("testCreateRenderer")
+    protected AtomContainerRenderer createRenderer() {
+        List<IGenerator<IAtomContainer>> generators =
+            new ArrayList<IGenerator<IAtomContainer>>();
+        generators.add(new BasicSceneGenerator());
+        generators.add(new BasicBondGenerator());
+        generators.add(new BasicAtomGenerator());
+        return new AtomContainerRenderer(generators, new AWTFontManager());
+    }
+
+    private void render(Iterator<?> molecules, DepictionHandler handler,
+                        final boolean raster) throws CDKException {
+        final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+            protected Worker initialValue() {
+                return new Worker();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(
+            threadCount, new DaemonThreadFactory()
+        );
+        LinkedList<Job> pending = new LinkedList<Job>();
+        try {
+            int index = 0;
+            while (molecules.hasNext()) {
+                Job job = new Job(index++, molecules.next(), workers, raster);
+                executor.execute(job);
+                pending.add(job);
+                if (pending.size() >= queueSize)
+                    handle(handler, pending.removeFirst().getDepiction());
+            }
+            while (!pending.isEmpty())
+                handle(handler, pending.removeFirst().getDepiction());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(DepictionHandler handler, Depiction depiction) throws CDKException {
+        try {
+            handler.handle(depiction);
+        } finally {
+            if (depiction.canvas != null) canvases.offer(depiction.canvas);
+        }
+    }
+
+    private Depiction draw(Worker worker, int index, Object molecule, boolean raster) {
+        if (!(molecule instanceof IAtomContainer)) {
+            logger.error("Expected an IAtomContainer but got: ",
+                molecule == null ? null : molecule.getClass().getName());
+            return new Depiction(index, molecule, null, null,
+                new CDKException("Not an IAtomContainer"));
+        }
+        IAtomContainer container = (IAtomContainer) molecule;
+        if (!GeometryTools.has2DCoordinates(container)) {
+            return new Depiction(index, molecule, null, null,
+                new CDKException("Molecule has no 2D coordinates"));
+        }
+        AtomContainerRenderer renderer = worker.renderer;
+        Rectangle bounds = new Rectangle(0, 0, width, height);
+        Canvas canvas = null;
+        try {
+            if (raster) {
+                canvas = canvases.poll();
+                if (canvas == null) canvas = new Canvas(width, height);
+                Color background = renderer.getRenderer2DModel().getParameter(
+                    BackgroundColor.class).getValue();
+                canvas.graphics.setColor(background);
+                canvas.graphics.fillRect(0, 0, width, height);
+                renderer.paint(container, canvas.visitor, bounds, true);
+                return new Depiction(index, molecule, canvas, null, null);
+            } else {
+                StringWriter writer = new StringWriter();
+                SVGDrawVisitor visitor = new SVGDrawVisitor(writer, worker.metrics);
+                visitor.setRendererModel(renderer.getRenderer2DModel());
+                visitor.startDocument(width, height);
+                renderer.paint(container, visitor, bounds, true);
+                visitor.endDocument();
+                return new Depiction(index, molecule, null, writer.toString(), null);
+            }
+        } catch (Exception exception) {
+            logger.debug("Could not draw molecule ", index, ": ", exception.getMessage());
+            logger.debug(exception);
+            if (canvas != null) canvases.offer(canvas);
+            return new Depiction(index, molecule, null, null, exception);
+        }
+    }
+
+    /**
+     * The drawing of one molecule.
+     */
+    private class Job implements Runnable {
+
+        private final int index;
+        private final Object molecule;
+        private final ThreadLocal<Worker> workers;
+        private final boolean raster;
+
+        private Depiction depiction;
+        private Error error;
+
+        Job(int index, Object molecule, ThreadLocal<Worker> workers, boolean raster) {
+            this.index = index;
+            this.molecule = molecule;
+            this.workers = workers;
+            this.raster = raster;
+        }
+
+        public void run() {
+            Depiction drawn = null;
+            Error thrown = null;
+            try {
+                drawn = draw(workers.get(), index, molecule, raster);
+            } catch (Error e) {
+                thrown = e;
+            }
+            synchronized (this) {
+                depiction = drawn;
+                error = thrown;
+                notifyAll();
+            }
+        }
+
+        synchronized Depiction getDepiction() throws CDKException {
+            try {
+                while (depiction == null && error == null) wait();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new CDKException("Interrupted while drawing molecule " + index, exception);
+            }
+            if (error != null) throw error;
+            return depiction;
+        }
+
+    }
+
+    /**
+     * Creates daemon threads, so that the batch does not keep the virtual
+     * machine alive.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "BatchRenderer");
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
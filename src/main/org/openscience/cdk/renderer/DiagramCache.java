@@ -0,0 +1,306 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.renderer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.vecmath.Point2d;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.renderer.elements.ElementGroup;
+import org.openscience.cdk.renderer.elements.IRenderingElement;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator.ZoomFactor;
+import org.openscience.cdk.renderer.generators.IGenerator;
+import org.openscience.cdk.renderer.generators.IGeneratorParameter;
+import org.openscience.cdk.renderer.generators.IIncrementalGenerator;
+import org.openscience.cdk.validate.ProblemMarker;
+
+/**
+ * Keeps the elements made by {@link IIncrementalGenerator}s for the last
+ * {@link IAtomContainer} drawn, and regenerates only the elements of the atoms
+ * and bonds that changed since. Changes are found by comparing each atom and
+ * bond with what it was when last drawn: the symbol, atomic number, 2D
+ * coordinates, charges, hydrogen count, flags and error marker of an atom,
+ * and the atoms, order, stereo and flags of a bond. The cache does not listen
+ * to the container, so that it leaves nothing on it and also works with
+ * containers that do not send change events. Generators that draw other
+ * atom or bond fields should not be incremental.
+ *
+ * <p>All elements are generated again when atoms or bonds are added, removed
+ * or reordered, when a bond is moved to other atoms, when another container is
+ * drawn, or when a parameter of the {@link RendererModel} other than the zoom
+ * factor changes. Other generators generate their elements for each diagram.
+ *
+ * @cdk.module renderbasic
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.renderer.DiagramCacheTest")
+class DiagramCache {
+
+    private IAtomContainer container;
+
+    /** False when all elements must be generated again. */
+    private boolean valid = false;
+
+    /** The atoms and bonds that changed since the last diagram. */
+    private final Set<IChemObject> changed = new HashSet<IChemObject>();
+
+    /** The atoms and bonds when last drawn, in container order. */
+    private AtomState[] atomStates = new AtomState[0];
+    private BondState[] bondStates = new BondState[0];
+
+    private final Map<IIncrementalGenerator, Map<IChemObject, IRenderingElement>> elements =
+        new HashMap<IIncrementalGenerator, Map<IChemObject, IRenderingElement>>();
+
+    private final Map<IIncrementalGenerator, IRenderingElement> diagrams =
+        new HashMap<IIncrementalGenerator, IRenderingElement>();
+
+    private List<Object> parameters;
+
+    /**
+     * Generates the diagram of a container.
+     *
+     * @param  container  the container to draw
+     * @param  generators the generators making the diagram
+     * @param  model      the rendering parameters
+     * @return            the elements of all generators, in generator order
+     */
+    @TestMethod("testGenerateDiagram,testGenerateDiagram_Changed")
+    IRenderingElement generateDiagram(IAtomContainer container,
+            List<IGenerator<IAtomContainer>> generators, RendererModel model) {
+        if (container != this.container) {
+            this.container = container;
+            valid = false;
+        }
+        List<Object> parameters = getParameterValues(model);
+        if (!parameters.equals(this.parameters)) {
+            this.parameters = parameters;
+            valid = false;
+        }
+        changed.clear();
+        if (valid) {
+            findChanges();
+        }
+        if (!valid) {
+            elements.clear();
+            diagrams.clear();
+            changed.clear();
+        }
+
+        ElementGroup diagram = new ElementGroup();
+        for (IGenerator<IAtomContainer> generator : generators) {
+            if (generator instanceof IIncrementalGenerator) {
+                diagram.add(generate((IIncrementalGenerator) generator, model));
+            } else {
+                diagram.add(generator.generate(container, model));
+            }
+        }
+        elements.keySet().retainAll(generators);
+        diagrams.keySet().retainAll(generators);
+
+        // the generators may have changed the container themselves
+        if (valid) {
+            findChanges();
+            if (!valid) {
+                elements.clear();
+                diagrams.clear();
+            }
+        }
+        if (!valid) {
+            atomStates = new AtomState[container.getAtomCount()];
+            for (int i = 0; i < atomStates.length; i++) {
+                atomStates[i] = new AtomState(container.getAtom(i));
+            }
+            bondStates = new BondState[container.getBondCount()];
+            for (int i = 0; i < bondStates.length; i++) {
+                bondStates[i] = new BondState(container.getBond(i));
+            }
+        }
+        changed.clear();
+        valid = true;
+        return diagram;
+    }
+
+    /**
+     * Adds the atoms and bonds that differ from their state to the changed
+     * ones, and updates their state. Adding, removing or moving atoms or
+     * bonds changes the structure of the container.
+     */
+    private void findChanges() {
+        if (container.getAtomCount() != atomStates.length
+                || container.getBondCount() != bondStates.length) {
+            valid = false;
+            return;
+        }
+        for (int i = 0; i < atomStates.length; i++) {
+            IAtom atom = container.getAtom(i);
+            if (atom != atomStates[i].atom) {
+                valid = false;
+                return;
+            }
+            if (!atomStates[i].matches(atom)) {
+                atomStates[i] = new AtomState(atom);
+                changed.add(atom);
+            }
+        }
+        for (int i = 0; i < bondStates.length; i++) {
+            IBond bond = container.getBond(i);
+            if (bond != bondStates[i].bond || !bondStates[i].hasAtomsOf(bond)) {
+                valid = false;
+                return;
+            }
+            if (!bondStates[i].matches(bond)) {
+                bondStates[i] = new BondState(bond);
+                changed.add(bond);
+            }
+        }
+    }
+
+    private IRenderingElement generate(IIncrementalGenerator generator,
+            RendererModel model) {
+        Map<IChemObject, IRenderingElement> generated = elements.get(generator);
+        if (generated == null) {
+            generated = generator.generateElements(container, model);
+            elements.put(generator, generated);
+        } else if (!changed.isEmpty()) {
+            generated.putAll(generator.updateElements(container, changed, model));
+        } else if (diagrams.containsKey(generator)) {
+            return diagrams.get(generator);
+        }
+        ElementGroup group = new ElementGroup();
+        for (IAtom atom : container.atoms()) group.add(generated.get(atom));
+        for (IBond bond : container.bonds()) group.add(generated.get(bond));
+        diagrams.put(generator, group);
+        return group;
+    }
+
+    /**
+     * The values of all parameters but the zoom factor. Collections are
+     * copied, as they may be changed in place. Default values that are made
+     * anew for each call, such as the default atom colorer, are compared by
+     * their class.
+     */
+    private static List<Object> getParameterValues(RendererModel model) {
+        List<Object> values = new ArrayList<Object>();
+        for (IGeneratorParameter<?> parameter : model.getRenderingParameters()) {
+            if (parameter instanceof ZoomFactor) continue;
+            Object value = parameter.getValue();
+            if (value != null && !value.equals(parameter.getValue())) {
+                value = value.getClass();
+            } else if (value instanceof Map<?,?>) {
+                value = new HashMap<Object,Object>((Map<?,?>) value);
+            } else if (value instanceof Collection<?>) {
+                value = new ArrayList<Object>((Collection<?>) value);
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * The values an atom had when it was drawn.
+     */
+    private static class AtomState {
+
+        final IAtom atom;
+        final String symbol;
+        final Integer atomicNumber;
+        final Point2d point;
+        final Integer formalCharge;
+        final Double charge;
+        final Integer hydrogenCount;
+        final boolean[] flags;
+        final Object errorMarker;
+
+        AtomState(IAtom atom) {
+            this.atom = atom;
+            symbol = atom.getSymbol();
+            atomicNumber = atom.getAtomicNumber();
+            point = atom.getPoint2d() == null ? null : new Point2d(atom.getPoint2d());
+            formalCharge = atom.getFormalCharge();
+            charge = atom.getCharge();
+            hydrogenCount = atom.getImplicitHydrogenCount();
+            flags = atom.getFlags().clone();
+            errorMarker = atom.getProperty(ProblemMarker.ERROR_MARKER);
+        }
+
+        boolean matches(IAtom atom) {
+            return equal(symbol, atom.getSymbol())
+                && equal(atomicNumber, atom.getAtomicNumber())
+                && equal(point, atom.getPoint2d())
+                && equal(formalCharge, atom.getFormalCharge())
+                && equal(charge, atom.getCharge())
+                && equal(hydrogenCount, atom.getImplicitHydrogenCount())
+                && Arrays.equals(flags, atom.getFlags())
+                && errorMarker == atom.getProperty(ProblemMarker.ERROR_MARKER);
+        }
+    }
+
+    /**
+     * The values a bond had when it was drawn.
+     */
+    private static class BondState {
+
+        final IBond bond;
+        final IAtom[] atoms;
+        final IBond.Order order;
+        final IBond.Stereo stereo;
+        final boolean[] flags;
+
+        BondState(IBond bond) {
+            this.bond = bond;
+            atoms = new IAtom[bond.getAtomCount()];
+            for (int i = 0; i < atoms.length; i++) atoms[i] = bond.getAtom(i);
+            order = bond.getOrder();
+            stereo = bond.getStereo();
+            flags = bond.getFlags().clone();
+        }
+
+        boolean hasAtomsOf(IBond bond) {
+            if (atoms.length != bond.getAtomCount()) return false;
+            for (int i = 0; i < atoms.length; i++) {
+                if (atoms[i] != bond.getAtom(i)) return false;
+            }
+            return true;
+        }
+
+        boolean matches(IBond bond) {
+            return order == bond.getOrder()
+                && stereo == bond.getStereo()
+                && Arrays.equals(flags, bond.getFlags());
+        }
+    }
+
+    private static boolean equal(Object value1, Object value2) {
+        return value1 == null ? value2 == null : value1.equals(value2);
+    }
+
+}
@@ -53,6 +53,7 @@ public class AWTFontManager extends AbstractFontManager {
     }
 
     /** {@inheritDoc} */
+    @TestMethod("testMakeFonts")
     protected void makeFonts() {
         int size = this.minFontSize;
         double scale = 0.5;
@@ -70,6 +71,11 @@ public class AWTFontManager extends AbstractFontManager {
             size += 1;
             scale += 0.1;
         }
+        // keep the current size in the new name or style
+        if (this.currentFont != null) {
+            this.currentFont =
+                this.fontSizeToFontMap.get(this.currentFont.getSize());
+        }
     }
 
     /** {@inheritDoc} */
@@ -20,7 +20,10 @@ package org.openscience.cdk.renderer.generators;
 
 import java.awt.Color;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.vecmath.Point2d;
 
@@ -29,6 +32,8 @@ import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.geometry.GeometryTools;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
 import org.openscience.cdk.interfaces.IPseudoAtom;
 import org.openscience.cdk.renderer.RendererModel;
 import org.openscience.cdk.renderer.color.CDK2DAtomColors;
@@ -49,7 +54,7 @@ import org.openscience.cdk.validate.ProblemMarker;
  * @cdk.githash
  */
 @TestClass("org.openscience.cdk.renderer.generators.BasicAtomGeneratorTest")
-public class BasicAtomGenerator implements IGenerator<IAtomContainer> {
+public class BasicAtomGenerator implements IIncrementalGenerator {
 
 	/** Class to hold the color by which atom labels are drawn.
 	 *  This color is overwritten by the {@link IAtomColorer}. */
@@ -212,6 +217,51 @@ public class BasicAtomGenerator implements IGenerator<IAtomContainer> {
         return elementGroup;
     }
 
+    /** {@inheritDoc} */
+    @TestMethod("testGenerateElements")
+    public Map<IChemObject, IRenderingElement> generateElements(
+            IAtomContainer container, RendererModel model) {
+        Map<IChemObject, IRenderingElement> elements =
+            new HashMap<IChemObject, IRenderingElement>();
+        for (IAtom atom : container.atoms()) {
+            elements.put(atom, this.generate(container, atom, model));
+        }
+        return elements;
+    }
+
+    /**
+     * {@inheritDoc} The element of an atom also depends on the positions of
+     * its neighbours, and on the number of bonds it has.
+     */
+    @TestMethod("testUpdateElements")
+    public Map<IChemObject, IRenderingElement> updateElements(
+            IAtomContainer container, Set<IChemObject> changed,
+            RendererModel model) {
+        Map<IChemObject, IRenderingElement> elements =
+            new HashMap<IChemObject, IRenderingElement>();
+        for (IChemObject object : changed) {
+            if (object instanceof IAtom) {
+                IAtom atom = (IAtom) object;
+                update(container, atom, model, elements);
+                for (IAtom neighbour : container.getConnectedAtomsList(atom)) {
+                    update(container, neighbour, model, elements);
+                }
+            } else if (object instanceof IBond) {
+                for (IAtom atom : ((IBond) object).atoms()) {
+                    update(container, atom, model, elements);
+                }
+            }
+        }
+        return elements;
+    }
+
+    private void update(IAtomContainer container, IAtom atom,
+            RendererModel model, Map<IChemObject, IRenderingElement> elements) {
+        if (!elements.containsKey(atom) && container.contains(atom)) {
+            elements.put(atom, this.generate(container, atom, model));
+        }
+    }
+
     /**
      * Checks an atom to see if it has 2D coordinates.
      * 
@@ -22,18 +22,24 @@ package org.openscience.cdk.renderer.generators;
 
 import java.awt.Color;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.vecmath.Point2d;
 import javax.vecmath.Vector2d;
 
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.geometry.GeometryTools;
 import org.openscience.cdk.graph.ConnectivityChecker;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
 import org.openscience.cdk.interfaces.IMoleculeSet;
 import org.openscience.cdk.interfaces.IRing;
 import org.openscience.cdk.interfaces.IRingSet;
@@ -60,7 +66,7 @@ import org.openscience.cdk.tools.manipulator.RingSetManipulator;
  * @cdk.githash
  */
 @TestClass("org.openscience.cdk.renderer.generators.BasicBondGeneratorTest")
-public class BasicBondGenerator implements IGenerator<IAtomContainer> {
+public class BasicBondGenerator implements IIncrementalGenerator {
 
     // FIXME: bond width should be defined in world, not screen coordinates
     /**
@@ -149,6 +155,11 @@ public class BasicBondGenerator implements IGenerator<IAtomContainer> {
      */
     protected IRingSet ringSet;
 
+    /**
+     * The container the ring set was determined for.
+     */
+    private IAtomContainer ringSetContainer;
+
     /**
      * A hack to allow the HighlightGenerator to override the standard colors.
      * Set it to non-null to have all bond-lines in this color.
@@ -251,16 +262,93 @@ public class BasicBondGenerator implements IGenerator<IAtomContainer> {
     /** {@inheritDoc} */
     public IRenderingElement generate(IAtomContainer container, RendererModel model) {
         ElementGroup group = new ElementGroup();
+        this.setupRingSet(container);
+
+        for (IBond bond : container.bonds()) {
+            group.add(this.generate(bond, model));
+        }
+        return group;
+    }
+
+    private void setupRingSet(IAtomContainer container) {
         this.ringSet = this.getRingSet(container);
+        this.ringSetContainer = container;
 
         //Sort the ringSet consistently to ensure consistent rendering.
         //If this is omitted, the bonds may 'tremble'.
         ringSet.sortAtomContainers(new AtomContainerComparatorBy2DCenter());
+    }
 
+    /** {@inheritDoc} */
+    @TestMethod("testGenerateElements")
+    public Map<IChemObject, IRenderingElement> generateElements(
+            IAtomContainer container, RendererModel model) {
+        this.setupRingSet(container);
+        Map<IChemObject, IRenderingElement> elements =
+            new HashMap<IChemObject, IRenderingElement>();
         for (IBond bond : container.bonds()) {
-            group.add(this.generate(bond, model));
+            elements.put(bond, this.generate(bond, model));
         }
-        return group;
+        return elements;
+    }
+
+    /**
+     * {@inheritDoc} The element of a bond also depends on the positions of its
+     * atoms, and on all bonds of the rings it is part of. The ring set of the
+     * last call is kept, as the rings do not change while no bonds are added
+     * or removed.
+     */
+    @TestMethod("testUpdateElements")
+    public Map<IChemObject, IRenderingElement> updateElements(
+            IAtomContainer container, Set<IChemObject> changed,
+            RendererModel model) {
+        if (ringSetContainer != container) {
+            this.setupRingSet(container);
+        }
+        boolean ringAtomMoved = false;
+        Set<IBond> bonds = new HashSet<IBond>();
+        for (IChemObject object : changed) {
+            if (object instanceof IAtom) {
+                IAtom atom = (IAtom) object;
+                bonds.addAll(container.getConnectedBondsList(atom));
+                ringAtomMoved = ringAtomMoved || ringSet.contains(atom);
+            } else if (object instanceof IBond) {
+                bonds.add((IBond) object);
+            }
+        }
+        if (ringAtomMoved) {
+            ringSet.sortAtomContainers(new AtomContainerComparatorBy2DCenter());
+        }
+
+        // the bonds of a ring depend on each other, through the heaviest
+        // ring of a bond and the elements drawn for the whole ring
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (IAtomContainer ring : ringSet.atomContainers()) {
+                if (sharesBond(ring, bonds)) {
+                    for (IBond bond : ring.bonds()) {
+                        added = bonds.add(bond) || added;
+                    }
+                }
+            }
+        }
+
+        Map<IChemObject, IRenderingElement> elements =
+            new HashMap<IChemObject, IRenderingElement>();
+        for (IBond bond : container.bonds()) {
+            if (bonds.contains(bond)) {
+                elements.put(bond, this.generate(bond, model));
+            }
+        }
+        return elements;
+    }
+
+    private boolean sharesBond(IAtomContainer ring, Set<IBond> bonds) {
+        for (IBond bond : ring.bonds()) {
+            if (bonds.contains(bond)) return true;
+        }
+        return false;
     }
 
     /**
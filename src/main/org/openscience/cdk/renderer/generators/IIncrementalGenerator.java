@@ -0,0 +1,73 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.renderer.generators;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.renderer.RendererModel;
+import org.openscience.cdk.renderer.elements.IRenderingElement;
+
+/**
+ * An {@link IGenerator} that draws an {@link IAtomContainer} as one element
+ * per atom or per bond, so that a renderer can keep the elements between
+ * diagrams and regenerate only those of changed atoms and bonds. The diagram
+ * made by {@link #generate(IChemObject, RendererModel)} must be an
+ * {@link org.openscience.cdk.renderer.elements.ElementGroup} of the elements
+ * of the atoms in container order, followed by those of the bonds.
+ *
+ * <p>The elements may only depend on the container and on the parameters of
+ * the {@link RendererModel}, but not on the
+ * {@link org.openscience.cdk.renderer.generators.BasicSceneGenerator.ZoomFactor},
+ * which is applied when drawing.
+ *
+ * @cdk.module  renderbasic
+ * @cdk.githash
+ */
+public interface IIncrementalGenerator extends IGenerator<IAtomContainer> {
+
+    /**
+     * Generates the elements of all atoms and bonds of a container.
+     *
+     * @param  container the container to draw
+     * @param  model     the rendering parameters
+     * @return           the element of each atom or bond that is drawn
+     */
+    public Map<IChemObject, IRenderingElement> generateElements(
+        IAtomContainer container, RendererModel model);
+
+    /**
+     * Generates the elements of changed atoms and bonds of the container given
+     * to the last call to {@link #generateElements(IAtomContainer, RendererModel)},
+     * together with those of other atoms and bonds that depend on them. No
+     * atoms or bonds may have been added to or removed from the container
+     * since.
+     *
+     * @param  container the container to draw
+     * @param  changed   the atoms and bonds that changed
+     * @param  model     the rendering parameters
+     * @return           the new elements, with a null element for atoms and
+     *                   bonds that are no longer drawn
+     */
+    public Map<IChemObject, IRenderingElement> updateElements(
+        IAtomContainer container, Set<IChemObject> changed, RendererModel model);
+
+}
@@ -25,13 +25,18 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.vecmath.Point2d;
 
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.geometry.GeometryTools;
 import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
 import org.openscience.cdk.interfaces.IRing;
 import org.openscience.cdk.renderer.RendererModel;
 import org.openscience.cdk.renderer.elements.ElementGroup;
@@ -46,6 +51,7 @@ import org.openscience.cdk.renderer.generators.parameter.AbstractGeneratorParame
  * @cdk.module renderbasic
  * @cdk.githash
  */
+@TestClass("org.openscience.cdk.renderer.generators.RingGeneratorTest")
 public class RingGenerator extends BasicBondGenerator {
 
     /**
@@ -103,6 +109,34 @@ public class RingGenerator extends BasicBondGenerator {
     }
 
     /** {@inheritDoc} */
+    @TestMethod("testGenerate")
+    public IRenderingElement generate(IAtomContainer container, RendererModel model) {
+        painted_rings.clear();
+        return super.generate(container, model);
+    }
+
+    /** {@inheritDoc} */
+    @TestMethod("testGenerateElements")
+    public Map<IChemObject, IRenderingElement> generateElements(
+            IAtomContainer container, RendererModel model) {
+        painted_rings.clear();
+        return super.generateElements(container, model);
+    }
+
+    /**
+     * {@inheritDoc} The ring elements are drawn again with the first bond of
+     * each ring that is updated, as all bonds of such a ring are updated.
+     */
+    @TestMethod("testUpdateElements")
+    public Map<IChemObject, IRenderingElement> updateElements(
+            IAtomContainer container, Set<IChemObject> changed,
+            RendererModel model) {
+        painted_rings.clear();
+        return super.updateElements(container, changed, model);
+    }
+
+    /** {@inheritDoc} */
+    @TestMethod("testGenerateRingElements")
     public IRenderingElement generateRingElements(
             IBond bond, IRing ring, RendererModel model) {
         if (ringIsAromatic(ring) && showAromaticity.getValue()) {
@@ -158,6 +192,7 @@ public class RingGenerator extends BasicBondGenerator {
     }
 
     /** {@inheritDoc} */
+    @TestMethod("testGetParameters")
     public List<IGeneratorParameter<?>> getParameters() {
         // Get our super class's version of things
         List<IGeneratorParameter<?>> superPars = super.getParameters();
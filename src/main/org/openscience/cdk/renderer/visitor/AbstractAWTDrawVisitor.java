@@ -19,11 +19,15 @@
 */
 package org.openscience.cdk.renderer.visitor;
 
+import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.font.FontRenderContext;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
@@ -43,6 +47,31 @@ public abstract class AbstractAWTDrawVisitor implements IDrawVisitor {
 	 */
 	protected AffineTransform transform = null;
 
+	/**
+	 * The maximum number of string bounds kept for each thread.
+	 */
+	private static final int MAX_STRING_BOUNDS = 1024;
+
+	/**
+	 * The bounds of the strings drawn recently on each thread. They are shared
+	 * by the visitors of a thread, so that they are kept from one diagram to
+	 * the next, but not between threads, so that visitors drawing on several
+	 * threads at once do not wait for each other. Only the last used strings
+	 * are kept.
+	 */
+	private static final ThreadLocal<Map<StringKey, Rectangle2D>> stringBounds =
+        new ThreadLocal<Map<StringKey, Rectangle2D>>() {
+            protected Map<StringKey, Rectangle2D> initialValue() {
+                return new LinkedHashMap<StringKey, Rectangle2D>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+                    protected boolean removeEldestEntry(
+                            Map.Entry<StringKey, Rectangle2D> eldest) {
+                        return size() > MAX_STRING_BOUNDS;
+                    }
+                };
+            }
+        };
+
 	/**
 	 * Transforms a point according to the current affine transformation,
 	 * converting a world coordinate into a screen coordinate.
@@ -71,8 +100,7 @@ public abstract class AbstractAWTDrawVisitor implements IDrawVisitor {
 	@TestMethod("testGetTextBounds")
     protected Rectangle2D getTextBounds(String text, double xCoord, double yCoord,
             Graphics2D graphics) {
-        FontMetrics fontMetrics = graphics.getFontMetrics();
-        Rectangle2D bounds = fontMetrics.getStringBounds(text, graphics);
+        Rectangle2D bounds = getStringBounds(text, graphics);
         
         double widthPad = 3;
         double heightPad = 1;
@@ -101,7 +129,7 @@ public abstract class AbstractAWTDrawVisitor implements IDrawVisitor {
     protected Point getTextBasePoint(String text, double xCoord, double yCoord, 
             Graphics2D graphics) {
         FontMetrics fontMetrics = graphics.getFontMetrics();
-        Rectangle2D stringBounds = fontMetrics.getStringBounds(text, graphics);
+        Rectangle2D stringBounds = getStringBounds(text, graphics);
         int[] point = this.transformPoint(xCoord, yCoord);
         int baseX = (int) (point[0] - (stringBounds.getWidth() / 2));
         
@@ -111,6 +139,59 @@ public abstract class AbstractAWTDrawVisitor implements IDrawVisitor {
         return new Point(baseX, baseY);
     }
 
+	/**
+	 * Returns the bounds of a text string in the current font of the graphics,
+	 * as given by {@link FontMetrics#getStringBounds(String, java.awt.Graphics)}.
+	 * The bounds are kept for later calls on the same thread with the same
+	 * font and font render context, and a copy is returned.
+	 *
+	 * @param text     the text string
+	 * @param graphics the graphics to which the text is outputted
+	 * @return         the bounds of the text, relative to its base point
+	 */
+	@TestMethod("testGetStringBounds")
+	protected Rectangle2D getStringBounds(String text, Graphics2D graphics) {
+        StringKey key = new StringKey(
+            graphics.getFont(), graphics.getFontRenderContext(), text
+        );
+        Map<StringKey, Rectangle2D> cache = stringBounds.get();
+        Rectangle2D bounds = cache.get(key);
+        if (bounds == null) {
+            bounds = graphics.getFontMetrics().getStringBounds(text, graphics);
+            cache.put(key, bounds);
+        }
+        return (Rectangle2D) bounds.clone();
+	}
+
+	/**
+	 * Identifies a string drawn in a font with a font render context.
+	 */
+	private static class StringKey {
+
+        private final Font font;
+        private final FontRenderContext context;
+        private final String text;
+
+        StringKey(Font font, FontRenderContext context, String text) {
+            this.font = font;
+            this.context = context;
+            this.text = text;
+        }
+
+        public boolean equals(Object object) {
+            if (!(object instanceof StringKey)) return false;
+            StringKey other = (StringKey) object;
+            return text.equals(other.text) && font.equals(other.font)
+                && context.equals(other.context);
+        }
+
+        public int hashCode() {
+            return (31 * text.hashCode() + font.hashCode()) * 31
+                + context.hashCode();
+        }
+
+	}
+
 	/**
 	 * Sets a new affine transformation to convert world coordinates into
 	 * screen coordinates.
@@ -0,0 +1,488 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.renderer.visitor;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.vecmath.Point2d;
+import javax.vecmath.Vector2d;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.renderer.RendererModel;
+import org.openscience.cdk.renderer.elements.ArrowElement;
+import org.openscience.cdk.renderer.elements.AtomSymbolElement;
+import org.openscience.cdk.renderer.elements.ElementGroup;
+import org.openscience.cdk.renderer.elements.GeneralPath;
+import org.openscience.cdk.renderer.elements.IRenderingElement;
+import org.openscience.cdk.renderer.elements.LineElement;
+import org.openscience.cdk.renderer.elements.OvalElement;
+import org.openscience.cdk.renderer.elements.PathElement;
+import org.openscience.cdk.renderer.elements.RectangleElement;
+import org.openscience.cdk.renderer.elements.TextElement;
+import org.openscience.cdk.renderer.elements.TextGroupElement;
+import org.openscience.cdk.renderer.elements.WedgeLineElement;
+import org.openscience.cdk.renderer.font.AWTFontManager;
+import org.openscience.cdk.renderer.font.IFontManager;
+import org.openscience.cdk.renderer.generators.BasicBondGenerator.WedgeWidth;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator.ArrowHeadWidth;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator.Scale;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Implementation of the {@link IDrawVisitor} interface that writes the
+ * diagram as Scalable Vector Graphics (SVG) to a {@link Writer}. Each element
+ * is written as it is visited, so no document is built in memory, and no
+ * window system is needed. The text is placed with the same font metrics as
+ * the {@link AWTDrawVisitor}, so that both give the same picture:
+ * <pre>
+ * SVGDrawVisitor visitor = new SVGDrawVisitor(writer);
+ * visitor.startDocument(200, 200);
+ * renderer.paint(molecule, visitor, new Rectangle(0, 0, 200, 200), true);
+ * visitor.endDocument();
+ * </pre>
+ *
+ * <p>The visitor methods cannot throw an {@link IOException}. The first one
+ * thrown by the writer stops the output, and is thrown again by
+ * {@link #endDocument()}.
+ *
+ * @cdk.module renderawt
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.renderer.visitor.SVGDrawVisitorTest")
+public class SVGDrawVisitor extends AbstractAWTDrawVisitor {
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(SVGDrawVisitor.class);
+
+    private final Writer writer;
+
+    /**
+     * Only used to measure text, never drawn on.
+     */
+    private final Graphics2D metrics;
+
+    private AWTFontManager fontManager;
+
+    private RendererModel rendererModel;
+
+    private IOException error;
+
+    /**
+     * Constructs a new {@link IDrawVisitor} that writes SVG to a writer.
+     *
+     * @param writer the {@link Writer} to write the SVG to
+     */
+    @TestMethod("testConstructor")
+    public SVGDrawVisitor(Writer writer) {
+        this(writer, new BufferedImage(
+            1, 1, BufferedImage.TYPE_INT_RGB).createGraphics());
+    }
+
+    /**
+     * Constructs a new {@link IDrawVisitor} that writes SVG to a writer, and
+     * measures text with the given graphics. The graphics is not drawn on,
+     * and may be shared by the visitors of one thread.
+     *
+     * @param writer   the {@link Writer} to write the SVG to
+     * @param metrics  the {@link Graphics2D} to measure text with
+     */
+    @TestMethod("testConstructor")
+    public SVGDrawVisitor(Writer writer, Graphics2D metrics) {
+        this.writer = writer;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Writes the start of the SVG document and a background of the
+     * background color of the {@link RendererModel}, if one is set.
+     *
+     * @param width  the width of the picture in pixels
+     * @param height the height of the picture in pixels
+     */
+    @TestMethod("testStartDocument")
+    public void startDocument(int width, int height) {
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\"");
+        write(" width=\"" + width + "\" height=\"" + height + "\"");
+        write(" viewBox=\"0 0 " + width + " " + height + "\">\n");
+        write("<rect x=\"0\" y=\"0\" width=\"" + width + "\" height=\"" + height
+            + "\" fill=\"" + color(getBackgroundColor()) + "\"/>\n");
+    }
+
+    /**
+     * Writes the end of the SVG document, and flushes the writer.
+     *
+     * @throws IOException if the writer failed at any point of the document
+     */
+    @TestMethod("testEndDocument")
+    public void endDocument() throws IOException {
+        write("</svg>\n");
+        if (error == null) {
+            try {
+                writer.flush();
+            } catch (IOException exception) {
+                error = exception;
+            }
+        }
+        if (error != null) throw error;
+    }
+
+    private void write(String string) {
+        if (error != null) return;
+        try {
+            writer.write(string);
+        } catch (IOException exception) {
+            error = exception;
+        }
+    }
+
+    private double[] transform(double xCoord, double yCoord) {
+        double[] result = new double[2];
+        transform.transform(new double[] {xCoord, yCoord}, 0, result, 0, 1);
+        return result;
+    }
+
+    /**
+     * Formats a screen coordinate to two decimals, without a trailing zero
+     * fraction.
+     */
+    private static String format(double value) {
+        double rounded = Math.round(value * 100) / 100.0;
+        if (rounded == (long) rounded) return Long.toString((long) rounded);
+        return Double.toString(rounded);
+    }
+
+    private static String color(Color color) {
+        String hex = Integer.toHexString(color.getRGB() & 0xFFFFFF);
+        return "#000000".substring(0, 7 - hex.length()) + hex;
+    }
+
+    private static String escape(String text) {
+        StringBuffer escaped = new StringBuffer(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': escaped.append("&amp;"); break;
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '"': escaped.append("&quot;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private double getScale() {
+        return rendererModel.getParameter(Scale.class).getValue();
+    }
+
+    private Color getBackgroundColor() {
+        if (rendererModel == null)
+            return new BasicSceneGenerator.BackgroundColor().getDefault();
+
+        return rendererModel.getParameter(BasicSceneGenerator.BackgroundColor.class).getValue();
+    }
+
+    private void writeLine(double[] start, double[] end, Color color, double width) {
+        write("<line x1=\"" + format(start[0]) + "\" y1=\"" + format(start[1])
+            + "\" x2=\"" + format(end[0]) + "\" y2=\"" + format(end[1])
+            + "\" stroke=\"" + color(color)
+            + "\" stroke-width=\"" + format(Math.max(1, width)) + "\"/>\n");
+    }
+
+    private void visit(LineElement line) {
+        writeLine(transform(line.firstPointX, line.firstPointY),
+                  transform(line.secondPointX, line.secondPointY),
+                  line.color, line.width * getScale());
+    }
+
+    private void visit(OvalElement oval) {
+        double[] center = transform(oval.xCoord, oval.yCoord);
+        double radius = oval.radius * transform.getScaleX();
+        write("<circle cx=\"" + format(center[0]) + "\" cy=\"" + format(center[1])
+            + "\" r=\"" + format(radius) + "\"");
+        if (oval.fill) {
+            write(" fill=\"" + color(oval.color) + "\"/>\n");
+        } else {
+            write(" fill=\"none\" stroke=\"" + color(oval.color) + "\"/>\n");
+        }
+    }
+
+    private void visit(WedgeLineElement wedge) {
+        // make the vector normal to the wedge axis
+        Vector2d normal =
+            new Vector2d(wedge.firstPointY - wedge.secondPointY, wedge.secondPointX - wedge.firstPointX);
+        normal.normalize();
+        normal.scale(rendererModel.getParameter(WedgeWidth.class).getValue() / getScale());
+
+        // make the triangle corners
+        Point2d vertexA = new Point2d(wedge.firstPointX, wedge.firstPointY);
+        Point2d vertexB = new Point2d(wedge.secondPointX, wedge.secondPointY);
+        Point2d vertexC = new Point2d(vertexB);
+        vertexB.add(normal);
+        vertexC.sub(normal);
+        if (wedge.isDashed) {
+            // interpolate along the edges of the triangle
+            double gapFactor = 0.1;
+            for (double displacement = 0; displacement <= 1; displacement += gapFactor) {
+                Point2d point1 = new Point2d();
+                point1.interpolate(vertexA, vertexB, displacement);
+                Point2d point2 = new Point2d();
+                point2.interpolate(vertexA, vertexC, displacement);
+                writeLine(transform(point1.x, point1.y),
+                          transform(point2.x, point2.y), wedge.color, 1);
+            }
+        } else {
+            double[] pointA = transform(vertexA.x, vertexA.y);
+            double[] pointB = transform(vertexB.x, vertexB.y);
+            double[] pointC = transform(vertexC.x, vertexC.y);
+            write("<polygon points=\""
+                + format(pointB[0]) + "," + format(pointB[1]) + " "
+                + format(pointC[0]) + "," + format(pointC[1]) + " "
+                + format(pointA[0]) + "," + format(pointA[1])
+                + "\" fill=\"" + color(wedge.color) + "\"/>\n");
+        }
+    }
+
+    /**
+     * Sets the font of the font manager on the graphics used to measure text.
+     */
+    private Font setFont() {
+        if (fontManager != null && fontManager.getFont() != null)
+            metrics.setFont(fontManager.getFont());
+        return metrics.getFont();
+    }
+
+    private void writeText(String text, double xCoord, double yCoord, Font font, Color color) {
+        write("<text x=\"" + format(xCoord) + "\" y=\"" + format(yCoord)
+            + "\" font-family=\"" + escape(font.getName())
+            + "\" font-size=\"" + font.getSize() + "\"");
+        if (font.isBold()) write(" font-weight=\"bold\"");
+        write(" fill=\"" + color(color) + "\">" + escape(text) + "</text>\n");
+    }
+
+    /**
+     * Writes a text on a background box, and returns the bounds of the box.
+     */
+    private Rectangle2D writeLabel(String text, double xCoord, double yCoord, Color color) {
+        Font font = setFont();
+        Point point = getTextBasePoint(text, xCoord, yCoord, metrics);
+        Rectangle2D bounds = getTextBounds(text, xCoord, yCoord, metrics);
+        write("<rect x=\"" + format(bounds.getX()) + "\" y=\"" + format(bounds.getY())
+            + "\" width=\"" + format(bounds.getWidth())
+            + "\" height=\"" + format(bounds.getHeight())
+            + "\" fill=\"" + color(getBackgroundColor()) + "\"/>\n");
+        writeText(text, point.x, point.y, font, color);
+        return bounds;
+    }
+
+    private void visit(TextElement textElement) {
+        writeLabel(textElement.text, textElement.xCoord, textElement.yCoord, textElement.color);
+    }
+
+    private void visit(AtomSymbolElement atomSymbol) {
+        Rectangle2D bounds = writeLabel(
+            atomSymbol.text, atomSymbol.xCoord, atomSymbol.yCoord, atomSymbol.color);
+
+        int charge = atomSymbol.formalCharge;
+        if (charge == 0) return;
+        String chargeString = charge > 0 ? "+" : "-";
+        if (Math.abs(charge) > 1) chargeString = Math.abs(charge) + chargeString;
+
+        int offset = 10;
+        double xCoord = bounds.getCenterX();
+        double yCoord = bounds.getCenterY();
+        if (atomSymbol.alignment == 1) {           // RIGHT
+            xCoord += offset;
+            yCoord = bounds.getMinY();
+        } else if (atomSymbol.alignment == -1) {   // LEFT
+            xCoord -= offset;
+            yCoord = bounds.getMinY();
+        } else if (atomSymbol.alignment == 2) {    // TOP
+            yCoord -= offset;
+        } else if (atomSymbol.alignment == -2) {   // BOT
+            yCoord += offset;
+        } else {
+            return;
+        }
+        writeText(chargeString, xCoord, yCoord, metrics.getFont(), atomSymbol.color);
+    }
+
+    private void visit(TextGroupElement textGroup) {
+        Font font = setFont();
+        Point point = getTextBasePoint(textGroup.text, textGroup.xCoord, textGroup.yCoord, metrics);
+        Rectangle2D bounds = writeLabel(
+            textGroup.text, textGroup.xCoord, textGroup.yCoord, textGroup.color);
+
+        double xCoord1 = bounds.getMinX();
+        double yCoord1 = bounds.getMinY();
+        double xCoord2 = point.x + bounds.getWidth();
+        double yCoord2 = bounds.getMaxY();
+        double width = xCoord2 - xCoord1;
+        double height = yCoord2 - yCoord1;
+        Font subscriptFont = font.deriveFont(font.getStyle(), font.getSize() - 2);
+        for (TextGroupElement.Child child : textGroup.children) {
+            double childX;
+            double childY;
+            switch (child.position) {
+                case NE: childX = xCoord2;         childY = yCoord1;          break;
+                case N:  childX = xCoord1;         childY = yCoord1;          break;
+                case NW: childX = xCoord1 - width; childY = yCoord1;          break;
+                case W:  childX = xCoord1 - width; childY = point.y;          break;
+                case SW: childX = xCoord1 - width; childY = yCoord1 + height; break;
+                case S:  childX = xCoord1;         childY = yCoord2 + height; break;
+                case SE: childX = xCoord2;         childY = yCoord2 + height; break;
+                case E:  childX = xCoord2;         childY = point.y;          break;
+                default:
+                    childX = bounds.getCenterX();
+                    childY = bounds.getCenterY();
+                    break;
+            }
+            writeText(child.text, childX, childY, font, textGroup.color);
+            if (child.subscript != null) {
+                Rectangle2D childBounds = getStringBounds(child.text, metrics);
+                writeText(child.subscript,
+                          childX + childBounds.getWidth() * 0.75,
+                          childY + childBounds.getHeight() / 3,
+                          subscriptFont, textGroup.color);
+            }
+        }
+    }
+
+    private void visit(RectangleElement rectangle) {
+        double[] point1 = transform(rectangle.xCoord, rectangle.yCoord);
+        double[] point2 = transform(
+            rectangle.xCoord + rectangle.width, rectangle.yCoord + rectangle.height);
+        write("<rect x=\"" + format(Math.min(point1[0], point2[0]))
+            + "\" y=\"" + format(Math.min(point1[1], point2[1]))
+            + "\" width=\"" + format(Math.abs(point2[0] - point1[0]))
+            + "\" height=\"" + format(Math.abs(point2[1] - point1[1])) + "\"");
+        if (rectangle.filled) {
+            write(" fill=\"" + color(rectangle.color) + "\"/>\n");
+        } else {
+            write(" fill=\"none\" stroke=\"" + color(rectangle.color) + "\"/>\n");
+        }
+    }
+
+    private void visit(PathElement path) {
+        StringBuffer points = new StringBuffer();
+        for (Point2d point : path.points) {
+            double[] screen = transform(point.x, point.y);
+            if (points.length() > 0) points.append(' ');
+            points.append(format(screen[0])).append(',').append(format(screen[1]));
+        }
+        write("<polyline points=\"" + points + "\" fill=\"none\" stroke=\""
+            + color(path.color) + "\"/>\n");
+    }
+
+    private void visit(GeneralPath path) {
+        StringBuffer data = new StringBuffer();
+        for (org.openscience.cdk.renderer.elements.path.PathElement element : path.elements) {
+            if (data.length() > 0) data.append(' ');
+            switch (element.type()) {
+                case MoveTo:  data.append('M'); break;
+                case LineTo:  data.append('L'); break;
+                case QuadTo:  data.append('Q'); break;
+                case CubicTo: data.append('C'); break;
+                case Close:   data.append('Z'); break;
+            }
+            float[] points = element.points();
+            for (int i = 0; i + 1 < points.length; i += 2) {
+                double[] screen = transform(points[i], points[i + 1]);
+                data.append(' ').append(format(screen[0])).append(',').append(format(screen[1]));
+            }
+        }
+        write("<path d=\"" + data + "\" fill=\"none\" stroke=\""
+            + color(path.color) + "\"/>\n");
+    }
+
+    private void visit(ArrowElement line) {
+        double scale = getScale();
+        double width = line.width * scale;
+        double[] a = transform(line.startX, line.startY);
+        double[] b = transform(line.endX, line.endY);
+        writeLine(a, b, line.color, width);
+        double aW = rendererModel.getParameter(ArrowHeadWidth.class).getValue() / scale;
+        if (line.direction) {
+            writeLine(a, transform(line.startX - aW, line.startY - aW), line.color, width);
+            writeLine(a, transform(line.startX - aW, line.startY + aW), line.color, width);
+        } else {
+            writeLine(b, transform(line.endX + aW, line.endY - aW), line.color, width);
+            writeLine(b, transform(line.endX + aW, line.endY + aW), line.color, width);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @TestMethod("testVisit")
+    public void visit(IRenderingElement element) {
+        if (element instanceof ElementGroup)
+            ((ElementGroup) element).visitChildren(this);
+        else if (element instanceof WedgeLineElement)
+            visit((WedgeLineElement) element);
+        else if (element instanceof LineElement)
+            visit((LineElement) element);
+        else if (element instanceof OvalElement)
+            visit((OvalElement) element);
+        else if (element instanceof TextGroupElement)
+            visit((TextGroupElement) element);
+        else if (element instanceof AtomSymbolElement)
+            visit((AtomSymbolElement) element);
+        else if (element instanceof TextElement)
+            visit((TextElement) element);
+        else if (element instanceof RectangleElement)
+            visit((RectangleElement) element);
+        else if (element instanceof PathElement)
+            visit((PathElement) element);
+        else if (element instanceof GeneralPath)
+            visit((GeneralPath) element);
+        else if (element instanceof ArrowElement)
+            visit((ArrowElement) element);
+        else
+            logger.warn("Visitor method for ",
+                        element.getClass().getName(), " is not implemented");
+    }
+
+    /**
+     * The font manager must be set by any renderer that uses this class!
+     * This manager is needed to keep track of fonts of the right size.
+     *
+     * @param fontManager the {@link IFontManager} to be used
+     */
+    @TestMethod("testSetFontManager")
+    public void setFontManager(IFontManager fontManager) {
+        this.fontManager = (AWTFontManager) fontManager;
+    }
+
+    /** {@inheritDoc} */
+    @TestMethod("testSetRendererModel")
+    public void setRendererModel(RendererModel rendererModel) {
+        this.rendererModel = rendererModel;
+    }
+
+}
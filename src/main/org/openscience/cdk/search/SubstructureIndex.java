@@ -0,0 +1,393 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.Fingerprinter;
+import org.openscience.cdk.fingerprint.IFingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
+
+/**
+ * In-memory substructure search over a collection of molecules. Each
+ * molecule is fingerprinted when it is added, and a search first screens
+ * the collection with the fingerprint of the query: only molecules that have
+ * all bits of the query set are candidates, which are then verified atom by
+ * atom with {@link UniversalIsomorphismTester#isSubgraph(IAtomContainer, IAtomContainer)}
+ * on several threads:
+ * <pre>
+ * SubstructureIndex index = new SubstructureIndex();
+ * while (reader.hasNext()) index.add((IAtomContainer)reader.next());
+ * BitSet hits = index.search(pyrrole);
+ * for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+ *     IAtomContainer hit = index.getMolecule(i);
+ * }
+ * </pre>
+ *
+ * <p>This gives the same hits as a linear scan with
+ * {@link org.openscience.cdk.fingerprint.FingerprinterTool#isSubset(BitSet, BitSet)}
+ * and <code>isSubgraph</code>. The fingerprints are stored as one bit slice
+ * per fingerprint bit, holding that bit for all molecules, so that the screen
+ * ANDs the slices of the bits set in the query 64 molecules at a time. The
+ * slices of the rarest bits are ANDed first, and stretches of molecules that
+ * have already been screened out are skipped.
+ *
+ * <p>The fingerprinter may change the molecules it is given, for example by
+ * perceiving atom types and aromaticity, as when called directly. Several
+ * threads may search the index at once, while molecules are added.
+ *
+ * @cdk.module  fingerprint
+ * @cdk.githash
+ * @cdk.keyword substructure search
+ * @cdk.keyword fingerprint
+ */
+@TestClass("org.openscience.cdk.search.SubstructureIndexTest")
+public class SubstructureIndex {
+
+    // number of 64 bit words of the slices ANDed before moving to the next slice
+    private static final int BLOCK_WORDS = 256;
+
+    // searches with fewer candidates are verified on the calling thread
+    private static final int MIN_PARALLEL_CANDIDATES = 32;
+
+    private final IFingerprinter fingerprinter;
+    private final int fingerprintSize;
+    private final int threadCount;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+    private final long[][] slices;
+    private final int[] bitCounts;
+
+    /**
+     * Creates an index with the default {@link Fingerprinter}, verifying
+     * candidates on one thread per available processor.
+     */
+    @TestMethod("testSearch")
+    public SubstructureIndex() {
+        this(new Fingerprinter(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an index with the given fingerprinter, such as an
+     * {@link org.openscience.cdk.fingerprint.ExtendedFingerprinter}. The
+     * fingerprinter must give fingerprints for which the bits of a
+     * substructure are a subset of the bits of the molecule.
+     *
+     * @param fingerprinter the fingerprinter used for molecules and queries
+     * @param threadCount   the number of threads to verify candidates on
+     */
+    @TestMethod("testSearch_ThreadCount")
+    public SubstructureIndex(IFingerprinter fingerprinter, int threadCount) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        this.fingerprinter = fingerprinter;
+        this.fingerprintSize = fingerprinter.getSize();
+        this.threadCount = threadCount;
+        this.slices = new long[fingerprintSize][];
+        this.bitCounts = new int[fingerprintSize];
+    }
+
+    /**
+     * Fingerprints a molecule and adds it to the index.
+     *
+     * @param  molecule     the molecule to add
+     * @return              the index of the molecule
+     * @throws CDKException if the molecule cannot be fingerprinted
+     */
+    @TestMethod("testAdd")
+    public int add(IAtomContainer molecule) throws CDKException {
+        return add(molecule, getFingerprint(molecule));
+    }
+
+    /**
+     * Adds a molecule with an already calculated fingerprint, for example one
+     * stored with the molecule. The fingerprint must have been calculated
+     * by the fingerprinter of this index.
+     *
+     * @param  molecule    the molecule to add
+     * @param  fingerprint the fingerprint of the molecule
+     * @return             the index of the molecule
+     */
+    @TestMethod("testAdd_Fingerprint")
+    public int add(IAtomContainer molecule, BitSet fingerprint) {
+        if (fingerprint.length() > fingerprintSize)
+            throw new IllegalArgumentException(
+                "Fingerprint bit " + (fingerprint.length() - 1) +
+                " beyond the fingerprint size " + fingerprintSize
+            );
+        lock.writeLock().lock();
+        try {
+            int index = molecules.size();
+            int word = index >> 6;
+            long mask = 1L << (index & 63);
+            for (int bit = fingerprint.nextSetBit(0); bit >= 0; bit = fingerprint.nextSetBit(bit + 1)) {
+                long[] slice = slices[bit];
+                if (slice == null || word >= slice.length) {
+                    slice = grow(slice, word);
+                    slices[bit] = slice;
+                }
+                slice[word] |= mask;
+                bitCounts[bit]++;
+            }
+            molecules.add(molecule);
+            return index;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of molecules in the index.
+     *
+     * @return the number of molecules
+     */
+    @TestMethod("testAdd")
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return molecules.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a molecule of the index.
+     *
+     * @param  index the index of the molecule, as returned by {@link #add(IAtomContainer)}
+     * @return       the molecule
+     */
+    @TestMethod("testAdd")
+    public IAtomContainer getMolecule(int index) {
+        lock.readLock().lock();
+        try {
+            return molecules.get(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the molecules that may contain the query, i.e. that have all
+     * bits of the fingerprint of the query set.
+     *
+     * @param  query        the substructure to search for
+     * @return              the indices of the candidate molecules
+     * @throws CDKException if the query cannot be fingerprinted
+     */
+    @TestMethod("testScreen")
+    public BitSet screen(IAtomContainer query) throws CDKException {
+        return screen(getFingerprint(query));
+    }
+
+    /**
+     * Returns the molecules that have all bits of the given fingerprint set.
+     *
+     * @param  fingerprint the fingerprint of the query
+     * @return             the indices of the candidate molecules
+     */
+    @TestMethod("testScreen")
+    public BitSet screen(BitSet fingerprint) {
+        lock.readLock().lock();
+        try {
+            return toBitSet(screenWords(fingerprint), molecules.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the molecules that contain the query as a substructure.
+     *
+     * @param  query        the substructure to search for
+     * @return              the indices of the molecules containing the query
+     * @throws CDKException if the query cannot be fingerprinted, or the search
+     *                      fails or is interrupted
+     */
+    @TestMethod("testSearch,testSearch_ThreadCount")
+    public BitSet search(IAtomContainer query) throws CDKException {
+        BitSet fingerprint = getFingerprint(query);
+        int[] candidates;
+        IAtomContainer[] targets;
+        lock.readLock().lock();
+        try {
+            BitSet screened = toBitSet(screenWords(fingerprint), molecules.size());
+            candidates = new int[screened.cardinality()];
+            targets = new IAtomContainer[candidates.length];
+            int count = 0;
+            for (int i = screened.nextSetBit(0); i >= 0; i = screened.nextSetBit(i + 1)) {
+                candidates[count] = i;
+                targets[count++] = molecules.get(i);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return verify(query, candidates, targets);
+    }
+
+    private BitSet getFingerprint(IAtomContainer molecule) throws CDKException {
+        // fingerprinters need not be thread safe
+        synchronized (fingerprinter) {
+            return fingerprinter.getFingerprint(molecule);
+        }
+    }
+
+    /**
+     * ANDs the slices of the bits set in the fingerprint, rarest first, and
+     * returns the candidate molecules as words of 64 molecules.
+     */
+    private long[] screenWords(BitSet fingerprint) {
+        int wordCount = (molecules.size() + 63) >> 6;
+        long[] result = new long[wordCount];
+        int[] bits = new int[fingerprint.cardinality()];
+        int count = 0;
+        for (int bit = fingerprint.nextSetBit(0); bit >= 0; bit = fingerprint.nextSetBit(bit + 1)) {
+            // bits the index has never seen screen out all molecules
+            if (bit >= fingerprintSize || bitCounts[bit] == 0) return result;
+            bits[count++] = bit;
+        }
+        sortByCount(bits);
+
+        if (bits.length == 0) {
+            for (int i = 0; i < wordCount; i++) result[i] = -1L;
+            return result;
+        }
+        for (int start = 0; start < wordCount; start += BLOCK_WORDS) {
+            int end = Math.min(start + BLOCK_WORDS, wordCount);
+            for (int i = start; i < end; i++) result[i] = -1L;
+            boolean any = true;
+            for (int b = 0; b < bits.length && any; b++) {
+                // slices only reach the last molecule with their bit set
+                long[] slice = slices[bits[b]];
+                int limit = Math.min(end, slice.length);
+                any = false;
+                for (int i = start; i < limit; i++) {
+                    result[i] &= slice[i];
+                    any |= result[i] != 0;
+                }
+                for (int i = Math.max(start, limit); i < end; i++) result[i] = 0;
+            }
+        }
+        return result;
+    }
+
+    private void sortByCount(int[] bits) {
+        // insertion sort, as fingerprints of queries have few bits
+        for (int i = 1; i < bits.length; i++) {
+            int bit = bits[i];
+            int j = i - 1;
+            while (j >= 0 && bitCounts[bits[j]] > bitCounts[bit]) {
+                bits[j + 1] = bits[j];
+                j--;
+            }
+            bits[j + 1] = bit;
+        }
+    }
+
+    private BitSet verify(final IAtomContainer query, final int[] candidates,
+                          final IAtomContainer[] targets) throws CDKException {
+        BitSet hits = new BitSet();
+        if (threadCount == 1 || candidates.length < MIN_PARALLEL_CANDIDATES) {
+            for (int i = 0; i < candidates.length; i++) {
+                if (UniversalIsomorphismTester.isSubgraph(targets[i], query))
+                    hits.set(candidates[i]);
+            }
+            return hits;
+        }
+
+        // each thread takes the next candidate until all have been verified
+        final AtomicInteger next = new AtomicInteger();
+        int tasks = Math.min(threadCount, candidates.length);
+        ExecutorService executor = Executors.newFixedThreadPool(tasks);
+        List<Future<BitSet>> results = new ArrayList<Future<BitSet>>();
+        try {
+            for (int t = 0; t < tasks; t++) {
+                results.add(executor.submit(new Callable<BitSet>() {
+                    public BitSet call() throws Exception {
+                        BitSet found = new BitSet();
+                        int i;
+                        while ((i = next.getAndIncrement()) < candidates.length) {
+                            if (UniversalIsomorphismTester.isSubgraph(targets[i], query))
+                                found.set(candidates[i]);
+                        }
+                        return found;
+                    }
+                }));
+            }
+            for (Future<BitSet> result : results) hits.or(result.get());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Interrupted while verifying candidates", exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Error) throw (Error)cause;
+            if (cause instanceof CDKException) throw (CDKException)cause;
+            throw new CDKException("Error while verifying candidates", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return hits;
+    }
+
+    private static long[] grow(long[] slice, int word) {
+        int length = slice == null ? 16 : slice.length;
+        while (length <= word) length *= 2;
+        long[] grown = new long[length];
+        if (slice != null) System.arraycopy(slice, 0, grown, 0, slice.length);
+        return grown;
+    }
+
+    /**
+     * Converts words of 64 molecules into a BitSet of the first
+     * <code>size</code> molecules.
+     */
+    private static BitSet toBitSet(long[] words, int size) {
+        BitSet bitSet = new BitSet(size);
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                int index = (i << 6) + Long.numberOfTrailingZeros(word);
+                if (index >= size) break;
+                bitSet.set(index);
+                word &= word - 1;
+            }
+        }
+        return bitSet;
+    }
+
+}
@@ -23,6 +23,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.vecmath.Point2d;
 import javax.vecmath.Point3d;
@@ -83,6 +84,12 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
      */
     protected IBond.Stereo stereo;
 
+    /**
+     * Flags of the containers that index this bond, which are set when the
+     * atoms of this bond change. Kept up to date by {@link AtomContainer}.
+     */
+    transient volatile AtomicBoolean[] indexFlags;
+
     /**
      * Constructs an empty bond.
      */
@@ -149,7 +156,7 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
      * @param stereo a descriptor the stereochemical orientation of this bond
      */
     public Bond(IAtom atom1, IAtom atom2, Order order, IBond.Stereo stereo) {
-        atoms = new Atom[2];
+        atoms = new IAtom[2];
         atoms[0] = atom1;
         atoms[1] = atom2;
         this.order = order;
@@ -203,6 +210,7 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
     public void setAtoms(IAtom[] atoms) {
         this.atoms = atoms;
         atomCount = atoms.length;
+        markIndexesStale();
     }
 
 
@@ -309,6 +317,7 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
         if (atoms[position] == null && atom != null) atomCount++;
         if (atoms[position] != null && atom == null) atomCount--;
         atoms[position] = atom;
+        markIndexesStale();
     }
 
 
@@ -440,6 +449,16 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
     }
 
 
+    /**
+     * Tells the containers that index this bond that its atoms changed.
+     */
+    private void markIndexesStale() {
+        AtomicBoolean[] flags = indexFlags;
+        if (flags != null) {
+            for (AtomicBoolean flag : flags) flag.set(true);
+        }
+    }
+
     /**
      * Clones this bond object, including clones of the atoms between which the
      * bond is defined.
@@ -448,6 +467,7 @@ public class Bond extends ElectronContainer implements IBond, Serializable, Clon
      */
     public Object clone() throws CloneNotSupportedException {
         Bond clone = (Bond) super.clone();
+        clone.indexFlags = null;
         // clone all the Atoms
         if (atoms != null) {
             clone.atoms = new IAtom[atoms.length];
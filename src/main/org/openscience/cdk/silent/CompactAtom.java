@@ -0,0 +1,879 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.vecmath.Point2d;
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IChemObjectChangeEvent;
+import org.openscience.cdk.interfaces.IChemObjectListener;
+import org.openscience.cdk.interfaces.IElement;
+import org.openscience.cdk.interfaces.IIsotope;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * Flyweight {@link IAtom} of a {@link CompactMolecule}. A CompactAtom has no
+ * fields for its values, only the table they are kept in and its row in
+ * that table. The atomic number, formal charge, implicit hydrogen count and
+ * flags of all atoms of a table are kept in <code>int</code> arrays; the
+ * other fields, such as the coordinates, the identifier and the properties,
+ * are kept in columns that are only allocated once any atom of the table has
+ * a value for them.
+ *
+ * <p>The atoms of a CompactMolecule are rows of the table of the molecule.
+ * A detached CompactAtom, such as a newly created one, has a table of its
+ * own with a single row. Its values are moved into the table of the
+ * molecule it is added to, and back into a table of its own when it is
+ * removed, so the object keeps its identity and its values throughout.
+ *
+ * <p>Like the other classes of this module, a CompactAtom does not notify
+ * listeners.
+ *
+ * @cdk.module  silent
+ * @cdk.githash
+ * @see         CompactMolecule
+ */
+public class CompactAtom implements IAtom, Serializable, Cloneable {
+
+    private static final long serialVersionUID = -2863497203536294651L;
+
+    /** The table that holds the values of this atom. */
+    Table table;
+
+    /** The row of this atom in the table. */
+    int index;
+
+    /**
+     * Constructs an completely unset CompactAtom.
+     */
+    public CompactAtom() {
+        this(new Table(null, 1));
+        table.charges[index] = 0;
+    }
+
+    /**
+     * Constructs a CompactAtom from a String containing an element symbol.
+     *
+     * @param elementSymbol The String describing the element for the Atom
+     */
+    public CompactAtom(String elementSymbol) {
+        this();
+        table.elements[index] = Table.value(PeriodicTable.getAtomicNumber(elementSymbol));
+        table.setSymbol(index, elementSymbol);
+    }
+
+    /**
+     * Constructs a CompactAtom from an element symbol and a 2D coordinate.
+     *
+     * @param elementSymbol The symbol of the atom
+     * @param point2d       The 2D coordinates of the atom
+     */
+    public CompactAtom(String elementSymbol, Point2d point2d) {
+        this(elementSymbol);
+        setPoint2d(point2d);
+    }
+
+    /**
+     * Constructs a CompactAtom from an element symbol and a 3D coordinate.
+     *
+     * @param elementSymbol The symbol of the atom
+     * @param point3d       The 3D coordinates of the atom
+     */
+    public CompactAtom(String elementSymbol, Point3d point3d) {
+        this(elementSymbol);
+        setPoint3d(point3d);
+    }
+
+    /**
+     * Constructs a CompactAtom by copying the information from the given
+     * IElement, in the same way as {@link Atom#Atom(IElement)} does. The
+     * properties of an IAtom are copied too.
+     *
+     * @param element IElement to copy information from
+     */
+    public CompactAtom(IElement element) {
+        this(new Table(null, 1));
+        setFlags(element.getFlags());
+        setID(element.getID());
+        table.elements[index] = Table.value(element.getAtomicNumber());
+        table.setSymbol(index, element.getSymbol());
+        if (element instanceof IIsotope) {
+            IIsotope isotope = (IIsotope)element;
+            setExactMass(isotope.getExactMass());
+            setNaturalAbundance(isotope.getNaturalAbundance());
+            setMassNumber(isotope.getMassNumber());
+        }
+        if (element instanceof IAtomType) {
+            IAtomType type = (IAtomType)element;
+            setMaxBondOrder(type.getMaxBondOrder());
+            setBondOrderSum(type.getBondOrderSum());
+            setCovalentRadius(type.getCovalentRadius());
+            setFormalCharge(type.getFormalCharge());
+            setHybridization(type.getHybridization());
+            setValency(type.getValency());
+            setFormalNeighbourCount(type.getFormalNeighbourCount());
+            setAtomTypeName(type.getAtomTypeName());
+        }
+        if (element instanceof IAtom) {
+            IAtom atom = (IAtom)element;
+            if (atom.getPoint2d() != null) setPoint2d(new Point2d(atom.getPoint2d()));
+            if (atom.getPoint3d() != null) setPoint3d(new Point3d(atom.getPoint3d()));
+            if (atom.getFractionalPoint3d() != null)
+                setFractionalPoint3d(new Point3d(atom.getFractionalPoint3d()));
+            setImplicitHydrogenCount(atom.getImplicitHydrogenCount());
+            setCharge(atom.getCharge());
+            setStereoParity(atom.getStereoParity());
+            if (atom.getProperties().size() > 0) setProperties(atom.getProperties());
+        }
+    }
+
+    /**
+     * Constructs a detached atom in a new row of the given table.
+     */
+    private CompactAtom(Table table) {
+        this.table = table;
+        this.index = table.add();
+        table.atoms()[index] = this;
+    }
+
+    /**
+     * Constructs the view of an existing row.
+     */
+    private CompactAtom(Table table, int index) {
+        this.table = table;
+        this.index = index;
+    }
+
+    /**
+     * Returns a new view of an existing row. The tables use this method
+     * rather than the constructor, which is private to this class.
+     */
+    private static CompactAtom view(Table table, int index) {
+        return new CompactAtom(table, index);
+    }
+
+    /** {@inheritDoc} */
+    public IChemObjectBuilder getBuilder() {
+        return CompactChemObjectBuilder.getInstance();
+    }
+
+    // chem object
+
+    /** {@inheritDoc} */
+    public void addListener(IChemObjectListener col) {}
+
+    /** {@inheritDoc} */
+    public int getListenerCount() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public void removeListener(IChemObjectListener col) {}
+
+    /** {@inheritDoc} */
+    public void setNotification(boolean bool) {
+        if (bool) table.flags[index] &= ~Table.NO_NOTIFICATION;
+        else table.flags[index] |= Table.NO_NOTIFICATION;
+    }
+
+    /** {@inheritDoc} */
+    public boolean getNotification() {
+        return (table.flags[index] & Table.NO_NOTIFICATION) == 0;
+    }
+
+    /** {@inheritDoc} */
+    public void notifyChanged() {}
+
+    /** {@inheritDoc} */
+    public void notifyChanged(IChemObjectChangeEvent evt) {}
+
+    /** {@inheritDoc} */
+    public void setProperty(Object description, Object property) {
+        table.properties(index, true).put(description, property);
+    }
+
+    /** {@inheritDoc} */
+    public void removeProperty(Object description) {
+        Map<Object, Object> properties = table.properties(index, false);
+        if (properties != null) properties.remove(description);
+    }
+
+    /** {@inheritDoc} */
+    public Object getProperty(Object description) {
+        Map<Object, Object> properties = table.properties(index, false);
+        return properties == null ? null : properties.get(description);
+    }
+
+    /** {@inheritDoc} */
+    public Map<Object, Object> getProperties() {
+        return table.properties(index, true);
+    }
+
+    /** {@inheritDoc} */
+    public void setProperties(Map<Object, Object> properties) {
+        table.properties(index, true).putAll(properties);
+    }
+
+    /** {@inheritDoc} */
+    public String getID() {
+        return (String)table.get(Table.ID, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setID(String identifier) {
+        table.set(Table.ID, index, identifier);
+    }
+
+    /** {@inheritDoc} */
+    public void setFlag(int flag_type, boolean flag_value) {
+        if (flag_value) table.flags[index] |= flagBit(flag_type);
+        else table.flags[index] &= ~flagBit(flag_type);
+    }
+
+    /** {@inheritDoc} */
+    public boolean getFlag(int flag_type) {
+        return (table.flags[index] & flagBit(flag_type)) != 0;
+    }
+
+    /**
+     * Sets the whole set of flags. The array is not kept by this atom.
+     *
+     * @param flagsNew the new flags
+     * @see   #getFlags
+     */
+    public void setFlags(boolean[] flagsNew) {
+        int flags = table.flags[index] & Table.NO_NOTIFICATION;
+        for (int f = 0; f < flagsNew.length && f <= CDKConstants.MAX_FLAG_INDEX; f++) {
+            if (flagsNew[f]) flags |= 1 << f;
+        }
+        table.flags[index] = flags;
+    }
+
+    /**
+     * Returns a copy of the whole set of flags. Changes to the array are not
+     * seen by this atom.
+     *
+     * @return the flags
+     * @see    #setFlags
+     */
+    public boolean[] getFlags() {
+        boolean[] flags = new boolean[CDKConstants.MAX_FLAG_INDEX + 1];
+        for (int f = 0; f < flags.length; f++) flags[f] = (table.flags[index] & (1 << f)) != 0;
+        return flags;
+    }
+
+    // element and isotope
+
+    /** {@inheritDoc} */
+    public Integer getAtomicNumber() {
+        return Table.integer(table.elements[index]);
+    }
+
+    /** {@inheritDoc} */
+    public void setAtomicNumber(Integer atomicNumber) {
+        String symbol = table.symbol(index);
+        table.elements[index] = Table.value(atomicNumber);
+        table.setSymbol(index, symbol);
+    }
+
+    /** {@inheritDoc} */
+    public String getSymbol() {
+        return table.symbol(index);
+    }
+
+    /** {@inheritDoc} */
+    public void setSymbol(String symbol) {
+        table.setSymbol(index, symbol);
+    }
+
+    /** {@inheritDoc} */
+    public void setNaturalAbundance(Double naturalAbundance) {
+        table.set(Table.NATURAL_ABUNDANCE, index, naturalAbundance);
+    }
+
+    /** {@inheritDoc} */
+    public Double getNaturalAbundance() {
+        return (Double)table.get(Table.NATURAL_ABUNDANCE, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setExactMass(Double exactMass) {
+        table.set(Table.EXACT_MASS, index, exactMass);
+    }
+
+    /** {@inheritDoc} */
+    public Double getExactMass() {
+        return (Double)table.get(Table.EXACT_MASS, index);
+    }
+
+    /** {@inheritDoc} */
+    public Integer getMassNumber() {
+        return (Integer)table.get(Table.MASS_NUMBER, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setMassNumber(Integer massNumber) {
+        table.set(Table.MASS_NUMBER, index, massNumber);
+    }
+
+    // atom type
+
+    /** {@inheritDoc} */
+    public void setAtomTypeName(String identifier) {
+        table.set(Table.ATOM_TYPE_NAME, index, identifier);
+    }
+
+    /** {@inheritDoc} */
+    public String getAtomTypeName() {
+        return (String)table.get(Table.ATOM_TYPE_NAME, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setMaxBondOrder(IBond.Order maxBondOrder) {
+        table.set(Table.MAX_BOND_ORDER, index, maxBondOrder);
+    }
+
+    /** {@inheritDoc} */
+    public IBond.Order getMaxBondOrder() {
+        return (IBond.Order)table.get(Table.MAX_BOND_ORDER, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setBondOrderSum(Double bondOrderSum) {
+        table.set(Table.BOND_ORDER_SUM, index, bondOrderSum);
+    }
+
+    /** {@inheritDoc} */
+    public Double getBondOrderSum() {
+        return (Double)table.get(Table.BOND_ORDER_SUM, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setFormalCharge(Integer charge) {
+        table.charges[index] = Table.value(charge);
+    }
+
+    /** {@inheritDoc} */
+    public Integer getFormalCharge() {
+        return Table.integer(table.charges[index]);
+    }
+
+    /** {@inheritDoc} */
+    public void setFormalNeighbourCount(Integer count) {
+        table.set(Table.FORMAL_NEIGHBOUR_COUNT, index, count);
+    }
+
+    /** {@inheritDoc} */
+    public Integer getFormalNeighbourCount() {
+        return (Integer)table.get(Table.FORMAL_NEIGHBOUR_COUNT, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setHybridization(IAtomType.Hybridization hybridization) {
+        table.set(Table.HYBRIDIZATION, index, hybridization);
+    }
+
+    /** {@inheritDoc} */
+    public IAtomType.Hybridization getHybridization() {
+        return (IAtomType.Hybridization)table.get(Table.HYBRIDIZATION, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setCovalentRadius(Double radius) {
+        table.set(Table.COVALENT_RADIUS, index, radius);
+    }
+
+    /** {@inheritDoc} */
+    public Double getCovalentRadius() {
+        return (Double)table.get(Table.COVALENT_RADIUS, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setValency(Integer valency) {
+        table.set(Table.VALENCY, index, valency);
+    }
+
+    /** {@inheritDoc} */
+    public Integer getValency() {
+        return (Integer)table.get(Table.VALENCY, index);
+    }
+
+    // atom
+
+    /** {@inheritDoc} */
+    public void setCharge(Double charge) {
+        table.set(Table.CHARGE, index, charge);
+    }
+
+    /** {@inheritDoc} */
+    public Double getCharge() {
+        return (Double)table.get(Table.CHARGE, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setImplicitHydrogenCount(Integer hydrogenCount) {
+        table.hydrogens[index] = Table.value(hydrogenCount);
+    }
+
+    /** {@inheritDoc} */
+    public Integer getImplicitHydrogenCount() {
+        return Table.integer(table.hydrogens[index]);
+    }
+
+    /** {@inheritDoc} */
+    public void setPoint2d(Point2d point2d) {
+        table.set(Table.POINT2D, index, point2d);
+    }
+
+    /** {@inheritDoc} */
+    public void setPoint3d(Point3d point3d) {
+        table.set(Table.POINT3D, index, point3d);
+    }
+
+    /** {@inheritDoc} */
+    public void setFractionalPoint3d(Point3d point3d) {
+        table.set(Table.FRACTIONAL_POINT3D, index, point3d);
+    }
+
+    /** {@inheritDoc} */
+    public void setStereoParity(Integer stereoParity) {
+        table.set(Table.STEREO_PARITY, index, stereoParity);
+    }
+
+    /** {@inheritDoc} */
+    public Point2d getPoint2d() {
+        return (Point2d)table.get(Table.POINT2D, index);
+    }
+
+    /** {@inheritDoc} */
+    public Point3d getPoint3d() {
+        return (Point3d)table.get(Table.POINT3D, index);
+    }
+
+    /** {@inheritDoc} */
+    public Point3d getFractionalPoint3d() {
+        return (Point3d)table.get(Table.FRACTIONAL_POINT3D, index);
+    }
+
+    /** {@inheritDoc} */
+    public Integer getStereoParity() {
+        return (Integer)table.get(Table.STEREO_PARITY, index);
+    }
+
+    /**
+     * Compares the values of this atom with those of another atom.
+     *
+     * @param  object Object of type IAtom
+     * @return        true, if the atoms are equal
+     */
+    public boolean compare(Object object) {
+        if (!(object instanceof IAtom)) return false;
+        IAtom atom = (IAtom)object;
+        return eq(getID(), atom.getID()) &&
+               eq(getSymbol(), atom.getSymbol()) &&
+               eq(getAtomicNumber(), atom.getAtomicNumber()) &&
+               eq(getMassNumber(), atom.getMassNumber()) &&
+               eq(getExactMass(), atom.getExactMass()) &&
+               eq(getNaturalAbundance(), atom.getNaturalAbundance()) &&
+               eq(getAtomTypeName(), atom.getAtomTypeName()) &&
+               eq(getMaxBondOrder(), atom.getMaxBondOrder()) &&
+               eq(getBondOrderSum(), atom.getBondOrderSum()) &&
+               eq(getPoint2d(), atom.getPoint2d()) &&
+               eq(getPoint3d(), atom.getPoint3d()) &&
+               eq(getImplicitHydrogenCount(), atom.getImplicitHydrogenCount()) &&
+               eq(getStereoParity(), atom.getStereoParity()) &&
+               eq(getCharge(), atom.getCharge());
+    }
+
+    /**
+     * Clones this atom. The clone is detached, and has copies of the
+     * coordinates and the properties of this atom.
+     *
+     * @return  The cloned object
+     */
+    public Object clone() throws CloneNotSupportedException {
+        CompactAtom clone = (CompactAtom)super.clone();
+        clone.table = new Table(null, 1);
+        clone.index = clone.table.add();
+        clone.table.atoms()[clone.index] = clone;
+        clone.table.copy(clone.index, table, index);
+        return clone;
+    }
+
+    /**
+     * Returns a one line string representation of this atom.
+     *
+     * @return The string representation of this atom
+     */
+    public String toString() {
+        StringBuffer stringContent = new StringBuffer(64);
+        stringContent.append("CompactAtom(").append(hashCode());
+        if (getSymbol() != null) stringContent.append(", S:").append(getSymbol());
+        if (getID() != null) stringContent.append(", ID:").append(getID());
+        if (getAtomicNumber() != null) stringContent.append(", AN:").append(getAtomicNumber());
+        if (getMassNumber() != null) stringContent.append(", MN:").append(getMassNumber());
+        if (getFormalCharge() != null) stringContent.append(", FC:").append(getFormalCharge());
+        if (getImplicitHydrogenCount() != null)
+            stringContent.append(", H:").append(getImplicitHydrogenCount());
+        if (getAtomTypeName() != null) stringContent.append(", N:").append(getAtomTypeName());
+        if (getHybridization() != null) stringContent.append(", HY:").append(getHybridization());
+        if (getStereoParity() != null) stringContent.append(", SP:").append(getStereoParity());
+        if (getPoint2d() != null) stringContent.append(", 2D:[").append(getPoint2d()).append(']');
+        if (getPoint3d() != null) stringContent.append(", 3D:[").append(getPoint3d()).append(']');
+        if (getFractionalPoint3d() != null)
+            stringContent.append(", F3D:[").append(getFractionalPoint3d()).append(']');
+        if (getCharge() != null) stringContent.append(", C:").append(getCharge());
+        stringContent.append(')');
+        return stringContent.toString();
+    }
+
+    private static int flagBit(int flagType) {
+        if (flagType < 0 || flagType > CDKConstants.MAX_FLAG_INDEX)
+            throw new ArrayIndexOutOfBoundsException(flagType);
+        return 1 << flagType;
+    }
+
+    private static boolean eq(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Columns that hold the values of compact atoms, one row per atom. A
+     * table belongs either to a {@link CompactMolecule} or to a single
+     * detached atom.
+     */
+    static final class Table implements Serializable {
+
+        private static final long serialVersionUID = 4437281985106362915L;
+
+        // columns of the fields that are not kept in int arrays
+        static final int SYMBOL                 = 0;
+        static final int ID                     = 1;
+        static final int PROPERTIES             = 2;
+        static final int POINT2D                = 3;
+        static final int POINT3D                = 4;
+        static final int FRACTIONAL_POINT3D     = 5;
+        static final int CHARGE                 = 6;
+        static final int STEREO_PARITY          = 7;
+        static final int MASS_NUMBER            = 8;
+        static final int EXACT_MASS             = 9;
+        static final int NATURAL_ABUNDANCE      = 10;
+        static final int ATOM_TYPE_NAME         = 11;
+        static final int MAX_BOND_ORDER         = 12;
+        static final int BOND_ORDER_SUM         = 13;
+        static final int FORMAL_NEIGHBOUR_COUNT = 14;
+        static final int HYBRIDIZATION          = 15;
+        static final int COVALENT_RADIUS        = 16;
+        static final int VALENCY                = 17;
+        private static final int FIELD_COUNT    = 18;
+
+        /** Bit of the flags of atoms that do not notify, next to the CDK flags. */
+        static final int NO_NOTIFICATION = 1 << 31;
+
+        /** Marks a symbol that was explicitly set to null. */
+        private static final Object NO_SYMBOL = Boolean.FALSE;
+
+        /** The molecule this table belongs to, or null for a detached atom. */
+        final CompactMolecule molecule;
+
+        int size;
+        int[] elements;
+        int[] charges;
+        int[] hydrogens;
+        int[] flags;
+        /** The other fields, by column and row; columns are allocated on demand. */
+        private Object[][] fields;
+        /** Atom objects by row, allocated on demand. */
+        private IAtom[] atoms;
+
+        Table(CompactMolecule molecule, int capacity) {
+            this.molecule = molecule;
+            elements = new int[capacity];
+            charges = new int[capacity];
+            hydrogens = new int[capacity];
+            flags = new int[capacity];
+        }
+
+        /**
+         * Adds a row with all values unset.
+         *
+         * @return the new row
+         */
+        int add() {
+            if (size == elements.length) {
+                int capacity = size + Math.max(4, size);
+                elements = grow(elements, capacity);
+                charges = grow(charges, capacity);
+                hydrogens = grow(hydrogens, capacity);
+                flags = grow(flags, capacity);
+                for (int f = 0; fields != null && f < FIELD_COUNT; f++) {
+                    if (fields[f] != null) fields[f] = grow(fields[f], capacity);
+                }
+                if (atoms != null) {
+                    IAtom[] newAtoms = new IAtom[capacity];
+                    System.arraycopy(atoms, 0, newAtoms, 0, size);
+                    atoms = newAtoms;
+                }
+            }
+            elements[size] = CompactMolecule.UNSET;
+            charges[size] = CompactMolecule.UNSET;
+            hydrogens[size] = CompactMolecule.UNSET;
+            flags[size] = 0;
+            for (int f = 0; fields != null && f < FIELD_COUNT; f++) {
+                if (fields[f] != null) fields[f][size] = null;
+            }
+            if (atoms != null) atoms[size] = null;
+            return size++;
+        }
+
+        /**
+         * Removes a row, moving the later rows and their views up.
+         */
+        void remove(int row) {
+            int moved = size - row - 1;
+            System.arraycopy(elements, row + 1, elements, row, moved);
+            System.arraycopy(charges, row + 1, charges, row, moved);
+            System.arraycopy(hydrogens, row + 1, hydrogens, row, moved);
+            System.arraycopy(flags, row + 1, flags, row, moved);
+            for (int f = 0; fields != null && f < FIELD_COUNT; f++) {
+                if (fields[f] == null) continue;
+                System.arraycopy(fields[f], row + 1, fields[f], row, moved);
+                fields[f][size - 1] = null;
+            }
+            size--;
+            if (atoms != null) {
+                System.arraycopy(atoms, row + 1, atoms, row, moved);
+                atoms[size] = null;
+                for (int f = row; f < size; f++) {
+                    if (atoms[f] instanceof CompactAtom && ((CompactAtom)atoms[f]).table == this)
+                        ((CompactAtom)atoms[f]).index = f;
+                }
+            }
+        }
+
+        /**
+         * Removes all rows.
+         */
+        void clear() {
+            size = 0;
+            fields = null;
+            atoms = null;
+        }
+
+        /**
+         * Returns the atom objects by row, allocating the array if needed.
+         */
+        IAtom[] atoms() {
+            if (atoms == null) atoms = new IAtom[elements.length];
+            return atoms;
+        }
+
+        /**
+         * Returns the atom object of a row, creating a view if there is none.
+         */
+        IAtom atom(int row) {
+            IAtom atom = atoms()[row];
+            if (atom == null) {
+                atom = view(this, row);
+                atoms[row] = atom;
+            }
+            return atom;
+        }
+
+        /**
+         * Returns true if the values of the row are those of a view of this
+         * table, rather than those of an atom of another class that is kept
+         * by reference.
+         */
+        boolean isView(int row) {
+            if (atoms == null || atoms[row] == null) return true;
+            return atoms[row] instanceof CompactAtom && ((CompactAtom)atoms[row]).table == this;
+        }
+
+        /**
+         * Moves the values of a row of another table into a row of this one.
+         * The values are shared, so the other row must not be used anymore.
+         */
+        void move(int row, Table source, int sourceRow) {
+            elements[row] = source.elements[sourceRow];
+            charges[row] = source.charges[sourceRow];
+            hydrogens[row] = source.hydrogens[sourceRow];
+            flags[row] = source.flags[sourceRow];
+            for (int f = 0; source.fields != null && f < FIELD_COUNT; f++) {
+                if (source.fields[f] != null) set(f, row, source.fields[f][sourceRow]);
+            }
+        }
+
+        /**
+         * Copies the values of a row of another table into a row of this
+         * one, with copies of the coordinates and the properties.
+         */
+        void copy(int row, Table source, int sourceRow) {
+            move(row, source, sourceRow);
+            copyValues(row);
+        }
+
+        /**
+         * Moves the values of the view of a row, if there is one, into a
+         * table of its own.
+         */
+        void detach(int row) {
+            if (atoms == null || atoms[row] == null) return;
+            CompactAtom view = (CompactAtom)atoms[row];
+            Table own = new Table(null, 1);
+            view.table = own;
+            view.index = own.add();
+            own.atoms()[view.index] = view;
+            own.move(view.index, this, row);
+        }
+
+        /**
+         * Returns a copy of this table for the given molecule. The copy has
+         * copies of the coordinates and the properties, and no atom objects.
+         */
+        Table copy(CompactMolecule molecule) {
+            Table copy = new Table(molecule, elements.length);
+            copy.size = size;
+            System.arraycopy(elements, 0, copy.elements, 0, size);
+            System.arraycopy(charges, 0, copy.charges, 0, size);
+            System.arraycopy(hydrogens, 0, copy.hydrogens, 0, size);
+            System.arraycopy(flags, 0, copy.flags, 0, size);
+            if (fields != null) {
+                copy.fields = new Object[FIELD_COUNT][];
+                for (int f = 0; f < FIELD_COUNT; f++) {
+                    if (fields[f] != null) copy.fields[f] = fields[f].clone();
+                }
+                for (int row = 0; row < size; row++) copy.copyValues(row);
+            }
+            return copy;
+        }
+
+        /**
+         * Replaces the coordinates and the properties of a row by copies.
+         */
+        @SuppressWarnings("unchecked")
+        private void copyValues(int row) {
+            Point2d point2d = (Point2d)get(POINT2D, row);
+            if (point2d != null) set(POINT2D, row, new Point2d(point2d));
+            for (int f = POINT3D; f <= FRACTIONAL_POINT3D; f++) {
+                Point3d point3d = (Point3d)get(f, row);
+                if (point3d != null) set(f, row, new Point3d(point3d));
+            }
+            Map<Object, Object> properties = (Map<Object, Object>)get(PROPERTIES, row);
+            if (properties != null)
+                set(PROPERTIES, row, new LinkedHashMap<Object, Object>(properties));
+        }
+
+        Object get(int field, int row) {
+            if (fields == null || fields[field] == null) return null;
+            return fields[field][row];
+        }
+
+        void set(int field, int row, Object value) {
+            if (fields == null) {
+                if (value == null) return;
+                fields = new Object[FIELD_COUNT][];
+            }
+            if (fields[field] == null) {
+                if (value == null) return;
+                fields[field] = new Object[elements.length];
+            }
+            fields[field][row] = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> properties(int row, boolean create) {
+            Map<Object, Object> properties = (Map<Object, Object>)get(PROPERTIES, row);
+            if (properties == null && create) {
+                properties = new LinkedHashMap<Object, Object>();
+                set(PROPERTIES, row, properties);
+            }
+            return properties;
+        }
+
+        /**
+         * Returns the symbol of a row. Only symbols that differ from the
+         * periodic table symbol of the atomic number are stored.
+         */
+        String symbol(int row) {
+            Object symbol = get(SYMBOL, row);
+            if (symbol == null) return Elements.symbol(elements[row]);
+            return symbol instanceof String ? (String)symbol : null;
+        }
+
+        void setSymbol(int row, String symbol) {
+            if (eq(symbol, Elements.symbol(elements[row]))) set(SYMBOL, row, null);
+            else set(SYMBOL, row, symbol == null ? NO_SYMBOL : symbol);
+        }
+
+        static int value(Integer value) {
+            return value == null ? CompactMolecule.UNSET : value;
+        }
+
+        static Integer integer(int value) {
+            return value == CompactMolecule.UNSET ? null : Integer.valueOf(value);
+        }
+
+        private static int[] grow(int[] array, int capacity) {
+            int[] newArray = new int[capacity];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            return newArray;
+        }
+
+        private static Object[] grow(Object[] array, int capacity) {
+            Object[] newArray = new Object[capacity];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            return newArray;
+        }
+
+    }
+
+    /**
+     * Element symbols by atomic number, read once from the periodic table
+     * so that lookups do not need to synchronize.
+     */
+    private static final class Elements {
+
+        private static final String[] SYMBOLS = new String[PeriodicTable.getElementCount() + 1];
+
+        static {
+            for (int f = 1; f < SYMBOLS.length; f++) SYMBOLS[f] = PeriodicTable.getSymbol(f);
+        }
+
+        static String symbol(int atomicNumber) {
+            if (atomicNumber <= 0 || atomicNumber >= SYMBOLS.length) return null;
+            return SYMBOLS[atomicNumber];
+        }
+
+    }
+
+}
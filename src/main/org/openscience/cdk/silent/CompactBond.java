@@ -0,0 +1,913 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.vecmath.Point2d;
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IChemObjectChangeEvent;
+import org.openscience.cdk.interfaces.IChemObjectListener;
+
+/**
+ * Flyweight {@link IBond} of a {@link CompactMolecule}. A CompactBond has no
+ * fields for its values, only the table they are kept in and its row in
+ * that table. For a bond between two atoms of the molecule, the table keeps
+ * the positions of the atoms instead of the atom objects, and the order,
+ * stereo and flags in primitive arrays.
+ *
+ * <p>A detached CompactBond, such as a newly created one, has a table of
+ * its own with a single row, which holds the atom objects. Its values are
+ * moved into the table of the molecule it is added to, and back into a table
+ * of its own when it is removed, so the object keeps its identity and its
+ * values throughout. Bonds of a molecule whose atoms are not both in that
+ * molecule keep their atom objects too.
+ *
+ * <p>Like the other classes of this module, a CompactBond does not notify
+ * listeners.
+ *
+ * @cdk.module  silent
+ * @cdk.githash
+ * @see         CompactMolecule
+ */
+public class CompactBond implements IBond, Serializable, Cloneable {
+
+    private static final long serialVersionUID = 6212390484372187352L;
+
+    /** The table that holds the values of this bond. */
+    Table table;
+
+    /** The row of this bond in the table. */
+    int index;
+
+    /**
+     * Constructs an empty bond.
+     */
+    public CompactBond() {
+        this(null, null, null, IBond.Stereo.NONE);
+        table.end[index] = 0;
+    }
+
+    /**
+     * Constructs a bond with a single bond order.
+     *
+     * @param atom1 the first Atom in the bond
+     * @param atom2 the second Atom in the bond
+     */
+    public CompactBond(IAtom atom1, IAtom atom2) {
+        this(atom1, atom2, IBond.Order.SINGLE, IBond.Stereo.NONE);
+    }
+
+    /**
+     * Constructs a bond with a given order.
+     *
+     * @param atom1 the first Atom in the bond
+     * @param atom2 the second Atom in the bond
+     * @param order the bond order
+     */
+    public CompactBond(IAtom atom1, IAtom atom2, Order order) {
+        this(atom1, atom2, order, IBond.Stereo.NONE);
+    }
+
+    /**
+     * Constructs a bond with a given order and stereo orientation.
+     *
+     * @param atom1  the first Atom in the bond
+     * @param atom2  the second Atom in the bond
+     * @param order  the bond order
+     * @param stereo a descriptor the stereochemical orientation of this bond
+     */
+    public CompactBond(IAtom atom1, IAtom atom2, Order order, IBond.Stereo stereo) {
+        this(new Table(null, 1));
+        table.set(Table.ATOMS, index, new IAtom[]{atom1, atom2});
+        table.end[index] = 2;
+        table.setOrder(index, order);
+        table.setStereo(index, stereo);
+    }
+
+    /**
+     * Constructs a detached bond in a new row of the given table.
+     */
+    private CompactBond(Table table) {
+        this.table = table;
+        this.index = table.add();
+        table.bonds()[index] = this;
+    }
+
+    /**
+     * Constructs the view of an existing row.
+     */
+    private CompactBond(Table table, int index) {
+        this.table = table;
+        this.index = index;
+    }
+
+    /**
+     * Returns a new view of an existing row. The tables use this method
+     * rather than the constructor, which is private to this class.
+     */
+    private static CompactBond view(Table table, int index) {
+        return new CompactBond(table, index);
+    }
+
+    /** {@inheritDoc} */
+    public IChemObjectBuilder getBuilder() {
+        return CompactChemObjectBuilder.getInstance();
+    }
+
+    // chem object
+
+    /** {@inheritDoc} */
+    public void addListener(IChemObjectListener col) {}
+
+    /** {@inheritDoc} */
+    public int getListenerCount() {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public void removeListener(IChemObjectListener col) {}
+
+    /** {@inheritDoc} */
+    public void setNotification(boolean bool) {
+        if (bool) table.flags[index] &= ~Table.NO_NOTIFICATION;
+        else table.flags[index] |= Table.NO_NOTIFICATION;
+    }
+
+    /** {@inheritDoc} */
+    public boolean getNotification() {
+        return (table.flags[index] & Table.NO_NOTIFICATION) == 0;
+    }
+
+    /** {@inheritDoc} */
+    public void notifyChanged() {}
+
+    /** {@inheritDoc} */
+    public void notifyChanged(IChemObjectChangeEvent evt) {}
+
+    /** {@inheritDoc} */
+    public void setProperty(Object description, Object property) {
+        table.properties(index, true).put(description, property);
+    }
+
+    /** {@inheritDoc} */
+    public void removeProperty(Object description) {
+        Map<Object, Object> properties = table.properties(index, false);
+        if (properties != null) properties.remove(description);
+    }
+
+    /** {@inheritDoc} */
+    public Object getProperty(Object description) {
+        Map<Object, Object> properties = table.properties(index, false);
+        return properties == null ? null : properties.get(description);
+    }
+
+    /** {@inheritDoc} */
+    public Map<Object, Object> getProperties() {
+        return table.properties(index, true);
+    }
+
+    /** {@inheritDoc} */
+    public void setProperties(Map<Object, Object> properties) {
+        table.properties(index, true).putAll(properties);
+    }
+
+    /** {@inheritDoc} */
+    public String getID() {
+        return (String)table.get(Table.ID, index);
+    }
+
+    /** {@inheritDoc} */
+    public void setID(String identifier) {
+        table.set(Table.ID, index, identifier);
+    }
+
+    /** {@inheritDoc} */
+    public void setFlag(int flag_type, boolean flag_value) {
+        if (flag_value) table.flags[index] |= flagBit(flag_type);
+        else table.flags[index] &= ~flagBit(flag_type);
+    }
+
+    /** {@inheritDoc} */
+    public boolean getFlag(int flag_type) {
+        return (table.flags[index] & flagBit(flag_type)) != 0;
+    }
+
+    /**
+     * Sets the whole set of flags. The array is not kept by this bond.
+     *
+     * @param flagsNew the new flags
+     * @see   #getFlags
+     */
+    public void setFlags(boolean[] flagsNew) {
+        int flags = table.flags[index] & Table.NO_NOTIFICATION;
+        for (int f = 0; f < flagsNew.length && f <= CDKConstants.MAX_FLAG_INDEX; f++) {
+            if (flagsNew[f]) flags |= 1 << f;
+        }
+        table.flags[index] = flags;
+    }
+
+    /**
+     * Returns a copy of the whole set of flags. Changes to the array are not
+     * seen by this bond.
+     *
+     * @return the flags
+     * @see    #setFlags
+     */
+    public boolean[] getFlags() {
+        boolean[] flags = new boolean[CDKConstants.MAX_FLAG_INDEX + 1];
+        for (int f = 0; f < flags.length; f++) flags[f] = (table.flags[index] & (1 << f)) != 0;
+        return flags;
+    }
+
+    // electron container
+
+    /** {@inheritDoc} */
+    public Integer getElectronCount() {
+        return table.electronCount(index);
+    }
+
+    /** {@inheritDoc} */
+    public void setElectronCount(Integer electronCount) {
+        table.setElectronCount(index, electronCount);
+    }
+
+    // bond
+
+    /** {@inheritDoc} */
+    public Iterable<IAtom> atoms() {
+        return new Iterable<IAtom>() {
+            public Iterator<IAtom> iterator() {
+                return new AtomsIterator();
+            }
+        };
+    }
+
+    private class AtomsIterator implements Iterator<IAtom> {
+
+        private int pointer = 0;
+
+        public boolean hasNext() {
+            return pointer < getAtomCount();
+        }
+
+        public IAtom next() {
+            return getAtom(pointer++);
+        }
+
+        public void remove() {
+        }
+
+    }
+
+    /**
+     * Sets the array of atoms making up this bond.
+     *
+     * @param atoms An array of atoms that forms this bond
+     */
+    public void setAtoms(IAtom[] atoms) {
+        table.setAtoms(index, atoms);
+    }
+
+    /** {@inheritDoc} */
+    public int getAtomCount() {
+        return table.atomCount(index);
+    }
+
+    /** {@inheritDoc} */
+    public IAtom getAtom(int position) {
+        return table.atom(index, position);
+    }
+
+    /** {@inheritDoc} */
+    public IAtom getConnectedAtom(IAtom atom) {
+        if (table.isPositional(index)) {
+            int position = table.molecule.getAtomNumber(atom);
+            if (position == table.begin[index]) return table.molecule.getAtom(table.end[index]);
+            if (position == table.end[index]) return table.molecule.getAtom(table.begin[index]);
+            return null;
+        }
+        if (getAtom(0) == atom) {
+            return getAtom(1);
+        } else if (getAtom(1) == atom) {
+            return getAtom(0);
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public IAtom[] getConnectedAtoms(IAtom atom) {
+        if (!contains(atom)) return null;
+        List<IAtom> conAtoms = new ArrayList<IAtom>();
+        for (IAtom localAtom : table.atoms(index)) {
+            if (localAtom != atom) conAtoms.add(localAtom);
+        }
+        return conAtoms.toArray(new IAtom[]{});
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(IAtom atom) {
+        if (table.isPositional(index)) {
+            int position = table.molecule.getAtomNumber(atom);
+            return position != -1
+                && (position == table.begin[index] || position == table.end[index]);
+        }
+        for (IAtom localAtom : table.atoms(index)) {
+            if (localAtom == atom) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets an atom in this bond.
+     *
+     * @param atom     The atom to be set
+     * @param position The position in this bond where the atom is to be inserted
+     */
+    public void setAtom(IAtom atom, int position) {
+        table.setAtom(index, atom, position);
+    }
+
+    /** {@inheritDoc} */
+    public Order getOrder() {
+        return table.order(index);
+    }
+
+    /** {@inheritDoc} */
+    public void setOrder(Order order) {
+        table.setOrder(index, order);
+    }
+
+    /** {@inheritDoc} */
+    public IBond.Stereo getStereo() {
+        return table.stereo(index);
+    }
+
+    /** {@inheritDoc} */
+    public void setStereo(IBond.Stereo stereo) {
+        table.setStereo(index, stereo);
+    }
+
+    /** {@inheritDoc} */
+    public Point2d get2DCenter() {
+        double xOfCenter = 0;
+        double yOfCenter = 0;
+        for (IAtom atom : table.atoms(index)) {
+            xOfCenter += atom.getPoint2d().x;
+            yOfCenter += atom.getPoint2d().y;
+        }
+        return new Point2d(xOfCenter / ((double) getAtomCount()),
+                yOfCenter / ((double) getAtomCount()));
+    }
+
+    /** {@inheritDoc} */
+    public Point3d get3DCenter() {
+        double xOfCenter = 0;
+        double yOfCenter = 0;
+        double zOfCenter = 0;
+        for (IAtom atom : table.atoms(index)) {
+            xOfCenter += atom.getPoint3d().x;
+            yOfCenter += atom.getPoint3d().y;
+            zOfCenter += atom.getPoint3d().z;
+        }
+        return new Point3d(xOfCenter / getAtomCount(),
+                yOfCenter / getAtomCount(),
+                zOfCenter / getAtomCount());
+    }
+
+    /**
+     * Compares a bond with this bond.
+     *
+     * @param  object Object of type Bond
+     * @return        true if the bond is equal to this bond
+     */
+    public boolean compare(Object object) {
+        if (!(object instanceof IBond)) return false;
+        IBond bond = (IBond)object;
+        for (IAtom atom : table.atoms(index)) {
+            if (!bond.contains(atom)) return false;
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isConnectedTo(IBond bond) {
+        for (IAtom atom : table.atoms(index)) {
+            if (bond.contains(atom)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Clones this bond, including clones of its atoms. The clone is detached.
+     *
+     * @return The cloned object
+     */
+    public Object clone() throws CloneNotSupportedException {
+        CompactBond clone = (CompactBond)super.clone();
+        clone.table = new Table(null, 1);
+        clone.index = clone.table.add();
+        clone.table.bonds()[clone.index] = clone;
+        clone.table.copy(clone.index, table, index);
+        IAtom[] atoms = table.atoms(index);
+        IAtom[] clonedAtoms = new IAtom[atoms.length];
+        for (int f = 0; f < atoms.length; f++) {
+            if (atoms[f] != null) clonedAtoms[f] = (IAtom)atoms[f].clone();
+        }
+        clone.table.set(Table.ATOMS, clone.index, clonedAtoms);
+        clone.table.begin[clone.index] = Table.OBJECT_ATOMS;
+        clone.table.end[clone.index] = getAtomCount();
+        return clone;
+    }
+
+    /**
+     * Returns a one line string representation of this bond.
+     *
+     * @return The string representation of this bond
+     */
+    public String toString() {
+        StringBuffer resultString = new StringBuffer(32);
+        resultString.append("CompactBond(").append(this.hashCode());
+        if (getOrder() != null) {
+            resultString.append(", #O:").append(getOrder());
+        }
+        resultString.append(", #S:").append(getStereo());
+        if (getAtomCount() > 0) {
+            resultString.append(", #A:").append(getAtomCount());
+            for (IAtom atom : table.atoms(index)) {
+                resultString.append(", ").append("" + atom);
+            }
+        }
+        resultString.append(", #E:").append(getElectronCount());
+        resultString.append(')');
+        return resultString.toString();
+    }
+
+    private static int flagBit(int flagType) {
+        if (flagType < 0 || flagType > CDKConstants.MAX_FLAG_INDEX)
+            throw new ArrayIndexOutOfBoundsException(flagType);
+        return 1 << flagType;
+    }
+
+    /**
+     * Columns that hold the values of compact bonds, one row per bond. A
+     * table belongs either to a {@link CompactMolecule} or to a single
+     * detached bond.
+     *
+     * <p>The atoms of a row are kept in one of two ways. A bond between two
+     * atoms of the molecule keeps their positions in <code>begin</code> and
+     * <code>end</code>. Other bonds keep their atom objects in the
+     * {@link #ATOMS} column, with <code>begin</code> set to
+     * {@link #OBJECT_ATOMS} and <code>end</code> holding the atom count.
+     */
+    static final class Table implements Serializable {
+
+        private static final long serialVersionUID = -6209384567194213365L;
+
+        // columns of the fields that are not kept in primitive arrays
+        static final int ATOMS               = 0;
+        static final int ID                  = 1;
+        static final int PROPERTIES          = 2;
+        private static final int FIELD_COUNT = 3;
+
+        /** Value of <code>begin</code> for bonds that keep their atom objects. */
+        static final int OBJECT_ATOMS = -1;
+
+        /** Bit of the flags of bonds that do not notify, next to the CDK flags. */
+        static final int NO_NOTIFICATION = 1 << 31;
+
+        /** Value of unset bond orders and stereo descriptors. */
+        private static final byte UNSET_VALUE = -1;
+
+        private static final Order[] ORDERS = Order.values();
+        private static final IBond.Stereo[] STEREOS = IBond.Stereo.values();
+
+        /** The molecule this table belongs to, or null for a detached bond. */
+        final CompactMolecule molecule;
+
+        int size;
+        int[] begin;
+        int[] end;
+        byte[] orders;
+        byte[] stereos;
+        int[] flags;
+        /** Electron counts, allocated once a bond has a count other than 0. */
+        private int[] electronCounts;
+        /** The other fields, by column and row; columns are allocated on demand. */
+        private Object[][] fields;
+        /** Bond objects by row, allocated on demand. */
+        private IBond[] bonds;
+
+        /** Counts the changes of the atoms of bonds made through their views. */
+        int changes;
+
+        Table(CompactMolecule molecule, int capacity) {
+            this.molecule = molecule;
+            begin = new int[capacity];
+            end = new int[capacity];
+            orders = new byte[capacity];
+            stereos = new byte[capacity];
+            flags = new int[capacity];
+        }
+
+        /**
+         * Adds a row without atoms and with all values unset.
+         *
+         * @return the new row
+         */
+        int add() {
+            if (size == begin.length) {
+                int capacity = size + Math.max(4, size);
+                begin = grow(begin, capacity);
+                end = grow(end, capacity);
+                orders = grow(orders, capacity);
+                stereos = grow(stereos, capacity);
+                flags = grow(flags, capacity);
+                if (electronCounts != null) electronCounts = grow(electronCounts, capacity);
+                for (int f = 0; fields != null && f < FIELD_COUNT; f++) {
+                    if (fields[f] != null) fields[f] = grow(fields[f], capacity);
+                }
+                if (bonds != null) {
+                    IBond[] newBonds = new IBond[capacity];
+                    System.arraycopy(bonds, 0, newBonds, 0, size);
+                    bonds = newBonds;
+                }
+            }
+            begin[size] = OBJECT_ATOMS;
+            end[size] = 0;
+            orders[size] = UNSET_VALUE;
+            stereos[size] = UNSET_VALUE;
+            flags[size] = 0;
+            if (electronCounts != null) electronCounts[size] = 0;
+            for (int f = 0; fields != null && f < FIELD_COUNT; f++) {
+                if (fields[f] != null) fields[f][size] = null;
+            }
+            if (bonds != null) bonds[size] = null;
+            return size++;
+        }
+
+        /**
+         * Adds a row for a bond between the atoms at the given positions.
+         *
+         * @return the new row
+         */
+        int add(int atom1, int atom2, Order order, IBond.Stereo stereo) {
+            int row = add();
+            begin[row] = atom1;
+            end[row] = atom2;
+            setOrder(row, order);
+            setStereo(row, stereo);
+            return row;
+        }
+
+        /**
+         * Removes a row, moving the later rows and their views up.
+         */
+        void remove(int row) {
+            int moved = size - row - 1;
+            System.arraycopy(begin, row + 1, begin, row, moved);
+            System.arraycopy(end, row + 1, end, row, moved);
+            System.arraycopy(orders, row + 1, orders, row, moved);
+            System.arraycopy(stereos, row + 1, stereos, row, moved);
+            System.arraycopy(flags, row + 1, flags, row, moved);
+            if (electronCounts != null)
+                System.arraycopy(electronCounts, row + 1, electronCounts, row, moved);
+            for (int f = 0; fields != null && f < FIELD_COUNT; f++) {
+                if (fields[f] == null) continue;
+                System.arraycopy(fields[f], row + 1, fields[f], row, moved);
+                fields[f][size - 1] = null;
+            }
+            size--;
+            if (bonds != null) {
+                System.arraycopy(bonds, row + 1, bonds, row, moved);
+                bonds[size] = null;
+                for (int f = row; f < size; f++) {
+                    if (bonds[f] instanceof CompactBond && ((CompactBond)bonds[f]).table == this)
+                        ((CompactBond)bonds[f]).index = f;
+                }
+            }
+        }
+
+        /**
+         * Removes all rows.
+         */
+        void clear() {
+            size = 0;
+            electronCounts = null;
+            fields = null;
+            bonds = null;
+        }
+
+        /**
+         * Returns the bond objects by row, allocating the array if needed.
+         */
+        IBond[] bonds() {
+            if (bonds == null) bonds = new IBond[begin.length];
+            return bonds;
+        }
+
+        /**
+         * Returns the bond object of a row, creating a view if there is none.
+         */
+        IBond bond(int row) {
+            IBond bond = bonds()[row];
+            if (bond == null) {
+                bond = view(this, row);
+                bonds[row] = bond;
+            }
+            return bond;
+        }
+
+        /**
+         * Returns true if the values of the row are those of a view of this
+         * table, rather than those of a bond of another class that is kept
+         * by reference.
+         */
+        boolean isView(int row) {
+            if (bonds == null || bonds[row] == null) return true;
+            return bonds[row] instanceof CompactBond && ((CompactBond)bonds[row]).table == this;
+        }
+
+        /**
+         * Returns true if the row keeps the positions of its atoms.
+         */
+        boolean isPositional(int row) {
+            return begin[row] != OBJECT_ATOMS;
+        }
+
+        int atomCount(int row) {
+            return isPositional(row) ? 2 : end[row];
+        }
+
+        IAtom atom(int row, int position) {
+            if (isPositional(row)) {
+                if (position == 0) return molecule.getAtom(begin[row]);
+                if (position == 1) return molecule.getAtom(end[row]);
+                throw new ArrayIndexOutOfBoundsException(position);
+            }
+            IAtom[] atoms = (IAtom[])get(ATOMS, row);
+            return atoms == null ? null : atoms[position];
+        }
+
+        /**
+         * Returns the atoms of a row. The array is that of the row for bonds
+         * that keep their atom objects, and should not be changed.
+         */
+        IAtom[] atoms(int row) {
+            if (isPositional(row))
+                return new IAtom[]{molecule.getAtom(begin[row]), molecule.getAtom(end[row])};
+            IAtom[] atoms = (IAtom[])get(ATOMS, row);
+            return atoms == null ? new IAtom[0] : atoms;
+        }
+
+        void setAtom(int row, IAtom atom, int position) {
+            release(row);
+            IAtom[] atoms = (IAtom[])get(ATOMS, row);
+            if (atoms[position] == null && atom != null) end[row]++;
+            if (atoms[position] != null && atom == null) end[row]--;
+            atoms[position] = atom;
+            normalize(row);
+            changes++;
+        }
+
+        void setAtoms(int row, IAtom[] atoms) {
+            set(ATOMS, row, atoms);
+            begin[row] = OBJECT_ATOMS;
+            end[row] = atoms.length;
+            normalize(row);
+            changes++;
+        }
+
+        /**
+         * Has a row that keeps the positions of its atoms keep the atom
+         * objects instead.
+         */
+        void release(int row) {
+            if (!isPositional(row)) return;
+            IAtom[] atoms = atoms(row);
+            begin[row] = OBJECT_ATOMS;
+            end[row] = 2;
+            set(ATOMS, row, atoms);
+        }
+
+        /**
+         * Has a row that keeps two atom objects of the molecule keep their
+         * positions instead.
+         */
+        void normalize(int row) {
+            if (molecule == null || isPositional(row) || end[row] != 2) return;
+            IAtom[] atoms = (IAtom[])get(ATOMS, row);
+            if (atoms.length != 2) return;
+            int atom1 = molecule.getAtomNumber(atoms[0]);
+            int atom2 = molecule.getAtomNumber(atoms[1]);
+            if (atom1 == -1 || atom2 == -1) return;
+            begin[row] = atom1;
+            end[row] = atom2;
+            set(ATOMS, row, null);
+        }
+
+        /**
+         * Updates the atom positions after the atom at the given position
+         * was removed from the molecule. Rows that referred to that atom
+         * must have been released before.
+         */
+        void atomRemoved(int position) {
+            for (int row = 0; row < size; row++) {
+                if (!isPositional(row)) continue;
+                if (begin[row] > position) begin[row]--;
+                if (end[row] > position) end[row]--;
+            }
+        }
+
+        /**
+         * Moves the values of a row of another table into a row of this one.
+         * The values are shared, so the other row must not be used anymore.
+         * The other row must keep its atom objects.
+         */
+        void move(int row, Table source, int sourceRow) {
+            begin[row] = source.begin[sourceRow];
+            end[row] = source.end[sourceRow];
+            orders[row] = source.orders[sourceRow];
+            stereos[row] = source.stereos[sourceRow];
+            flags[row] = source.flags[sourceRow];
+            setElectronCount(row, source.electronCount(sourceRow));
+            for (int f = 0; source.fields != null && f < FIELD_COUNT; f++) {
+                if (source.fields[f] != null) set(f, row, source.fields[f][sourceRow]);
+            }
+        }
+
+        /**
+         * Copies the values of a row of another table into a row of this
+         * one, with a copy of the properties. The atoms are not copied.
+         */
+        void copy(int row, Table source, int sourceRow) {
+            move(row, source, sourceRow);
+            begin[row] = OBJECT_ATOMS;
+            end[row] = 0;
+            set(ATOMS, row, null);
+            copyValues(row);
+        }
+
+        /**
+         * Moves the values of the view of a row, if there is one, into a
+         * table of its own.
+         */
+        void detach(int row) {
+            if (bonds == null || bonds[row] == null) return;
+            release(row);
+            CompactBond view = (CompactBond)bonds[row];
+            Table own = new Table(null, 1);
+            view.table = own;
+            view.index = own.add();
+            own.bonds()[view.index] = view;
+            own.move(view.index, this, row);
+        }
+
+        /**
+         * Returns a copy of this table for the given molecule. The copy has
+         * copies of the properties and of the atom arrays, and no bond
+         * objects.
+         */
+        Table copy(CompactMolecule molecule) {
+            Table copy = new Table(molecule, begin.length);
+            copy.size = size;
+            System.arraycopy(begin, 0, copy.begin, 0, size);
+            System.arraycopy(end, 0, copy.end, 0, size);
+            System.arraycopy(orders, 0, copy.orders, 0, size);
+            System.arraycopy(stereos, 0, copy.stereos, 0, size);
+            System.arraycopy(flags, 0, copy.flags, 0, size);
+            if (electronCounts != null) copy.electronCounts = electronCounts.clone();
+            if (fields != null) {
+                copy.fields = new Object[FIELD_COUNT][];
+                for (int f = 0; f < FIELD_COUNT; f++) {
+                    if (fields[f] != null) copy.fields[f] = fields[f].clone();
+                }
+                for (int row = 0; row < size; row++) {
+                    IAtom[] atoms = (IAtom[])copy.get(ATOMS, row);
+                    if (atoms != null) copy.set(ATOMS, row, atoms.clone());
+                    copy.copyValues(row);
+                }
+            }
+            return copy;
+        }
+
+        /**
+         * Replaces the properties of a row by a copy.
+         */
+        @SuppressWarnings("unchecked")
+        private void copyValues(int row) {
+            Map<Object, Object> properties = (Map<Object, Object>)get(PROPERTIES, row);
+            if (properties != null)
+                set(PROPERTIES, row, new LinkedHashMap<Object, Object>(properties));
+        }
+
+        Order order(int row) {
+            byte order = orders[row];
+            return order == UNSET_VALUE ? null : ORDERS[order];
+        }
+
+        void setOrder(int row, Order order) {
+            orders[row] = order == null ? UNSET_VALUE : (byte)order.ordinal();
+        }
+
+        IBond.Stereo stereo(int row) {
+            byte stereo = stereos[row];
+            return stereo == UNSET_VALUE ? null : STEREOS[stereo];
+        }
+
+        void setStereo(int row, IBond.Stereo stereo) {
+            stereos[row] = stereo == null ? UNSET_VALUE : (byte)stereo.ordinal();
+        }
+
+        Integer electronCount(int row) {
+            if (electronCounts == null) return 0;
+            int count = electronCounts[row];
+            return count == CompactMolecule.UNSET ? null : Integer.valueOf(count);
+        }
+
+        void setElectronCount(int row, Integer electronCount) {
+            if (electronCounts == null) {
+                if (electronCount != null && electronCount == 0) return;
+                electronCounts = new int[begin.length];
+            }
+            electronCounts[row] = electronCount == null ? CompactMolecule.UNSET : electronCount;
+        }
+
+        Object get(int field, int row) {
+            if (fields == null || fields[field] == null) return null;
+            return fields[field][row];
+        }
+
+        void set(int field, int row, Object value) {
+            if (fields == null) {
+                if (value == null) return;
+                fields = new Object[FIELD_COUNT][];
+            }
+            if (fields[field] == null) {
+                if (value == null) return;
+                fields[field] = new Object[begin.length];
+            }
+            fields[field][row] = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> properties(int row, boolean create) {
+            Map<Object, Object> properties = (Map<Object, Object>)get(PROPERTIES, row);
+            if (properties == null && create) {
+                properties = new LinkedHashMap<Object, Object>();
+                set(PROPERTIES, row, properties);
+            }
+            return properties;
+        }
+
+        private static int[] grow(int[] array, int capacity) {
+            int[] newArray = new int[capacity];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            return newArray;
+        }
+
+        private static byte[] grow(byte[] array, int capacity) {
+            byte[] newArray = new byte[capacity];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            return newArray;
+        }
+
+        private static Object[] grow(Object[] array, int capacity) {
+            Object[] newArray = new Object[capacity];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            return newArray;
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import javax.vecmath.Point2d;
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.ICDKObject;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IElement;
+import org.openscience.cdk.interfaces.IMolecule;
+
+/**
+ * A helper class to instantiate a {@link ICDKObject} for batch pipelines
+ * that use the {@link CompactMolecule}. Plain atom containers, molecules,
+ * atoms and bonds are created as their compact implementations; all other
+ * classes are created by the {@link SilentChemObjectBuilder}.
+ *
+ * <p>Code that creates atoms and bonds through this builder, like the file
+ * readers, gets flyweight {@link CompactAtom} and {@link CompactBond}
+ * objects, whose values are moved into the columns of the molecule they
+ * are added to. A molecule filled this way holds one small view object per
+ * atom and bond, and no per-atom property maps, coordinate fields or
+ * listener lists.
+ *
+ * @cdk.module    silent
+ * @cdk.githash
+ */
+public class CompactChemObjectBuilder implements IChemObjectBuilder {
+
+	private static IChemObjectBuilder instance = null;
+
+	private CompactChemObjectBuilder() {}
+
+	public static IChemObjectBuilder getInstance() {
+		if (instance == null) {
+			instance = new CompactChemObjectBuilder();
+		}
+		return instance;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends ICDKObject>T newInstance(
+	    Class<T> clazz, Object... params)
+	{
+	    if (clazz == IAtomContainer.class || clazz == IMolecule.class) {
+	        if (params.length == 0) {
+	            return (T)new CompactMolecule();
+	        } else if (params.length == 1 &&
+	            params[0] instanceof IAtomContainer) {
+	            return (T)new CompactMolecule((IAtomContainer)params[0]);
+	        } else if (params.length == 4 &&
+	            params[0] instanceof Integer &&
+	            params[1] instanceof Integer &&
+	            params[2] instanceof Integer &&
+	            params[3] instanceof Integer) {
+	            return (T)new CompactMolecule(
+	                (Integer)params[0], (Integer)params[1], (Integer)params[2], (Integer)params[3]
+	            );
+	        }
+	    } else if (clazz == IAtom.class) {
+	        if (params.length == 0) return (T)new CompactAtom();
+	        if (params.length == 1) {
+	            if (params[0] instanceof String)   return (T)new CompactAtom((String)params[0]);
+	            if (params[0] instanceof IElement) return (T)new CompactAtom((IElement)params[0]);
+	        } else  if (params.length == 2 && params[0] instanceof String) {
+	            if (params[1] instanceof Point2d)
+	                return (T)new CompactAtom((String)params[0], (Point2d)params[1]);
+	            if (params[1] instanceof Point3d)
+	                return (T)new CompactAtom((String)params[0], (Point3d)params[1]);
+	        }
+	    } else if (clazz == IBond.class) {
+	        if (params.length == 0) {
+	            return (T)new CompactBond();
+	        } else if (params.length == 2 &&
+	            params[0] instanceof IAtom &&
+	            params[1] instanceof IAtom) {
+	            return (T)new CompactBond((IAtom)params[0], (IAtom)params[1]);
+	        } else if (params.length == 3 &&
+	            params[0] instanceof IAtom &&
+	            params[1] instanceof IAtom &&
+	            params[2] instanceof IBond.Order) {
+	            return (T)new CompactBond(
+	                (IAtom)params[0], (IAtom)params[1], (IBond.Order)params[2]
+	            );
+	        } else if (params.length == 4 &&
+	            params[0] instanceof IAtom &&
+	            params[1] instanceof IAtom &&
+	            params[2] instanceof IBond.Order &&
+	            params[3] instanceof IBond.Stereo) {
+	            return (T)new CompactBond(
+	                (IAtom)params[0], (IAtom)params[1],
+	                (IBond.Order)params[2], (IBond.Stereo)params[3]
+	            );
+	        }
+	    }
+	    // everything else, including multi-center bonds
+	    return SilentChemObjectBuilder.getInstance().newInstance(clazz, params);
+	}
+
+}
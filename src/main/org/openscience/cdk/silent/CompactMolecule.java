@@ -0,0 +1,1246 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IChemObjectChangeEvent;
+import org.openscience.cdk.interfaces.IElectronContainer;
+import org.openscience.cdk.interfaces.ILonePair;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.interfaces.ISingleElectron;
+import org.openscience.cdk.interfaces.IStereoElement;
+import org.openscience.cdk.interfaces.IBond.Order;
+
+/**
+ * Molecule that stores its atoms and bonds in columns of primitive arrays
+ * instead of one object per atom and bond. It is meant for batch pipelines
+ * that build, filter or fingerprint large numbers of structures, where the
+ * per-atom objects of {@link Molecule} dominate the allocation rate.
+ *
+ * <p>For each atom the atomic number, formal charge, implicit hydrogen
+ * count and flags are kept in <code>int</code> arrays; for each bond the
+ * positions of the two atoms, the order, stereo and flags are kept in
+ * <code>int</code> and <code>byte</code> arrays. Other values, such as
+ * coordinates and properties, are kept in columns that are only allocated
+ * once an atom or bond has one. The bonds of each atom are indexed in a
+ * compressed adjacency table, which is built on first use.
+ *
+ * <p>The {@link CompactAtom} and {@link CompactBond} objects of this
+ * molecule are flyweight views that hold nothing but their row in these
+ * columns. A view is only created when the atom or bond is asked for through
+ * the {@link IAtomContainer} API, and the same view is returned afterwards,
+ * so that identity comparisons keep working. Atoms and bonds added with
+ * {@link #addAtom(int, int, int)} and {@link #addBond(int, int, IBond.Order)}
+ * do not create any objects, and code that sticks to the primitive
+ * accessors, like {@link #getAtomicNumber(int)} and
+ * {@link #getConnectedAtomNumber(int, int)}, never creates them. Detached
+ * compact atoms and bonds, such as those made by the
+ * {@link CompactChemObjectBuilder}, have their values moved into the columns
+ * when they are added.
+ *
+ * <p>Atoms and bonds of other implementations, or views that already belong
+ * to another CompactMolecule, can be added too. They are stored by reference,
+ * like {@link AtomContainer} does, and all values are read from the objects
+ * themselves. Bonds are indexed when the adjacency table is built, so their
+ * atoms should not be changed afterwards behind the back of this container;
+ * the atoms of a {@link CompactBond} view may be changed at any time.
+ *
+ * <p>Like the other containers, this class is not thread-safe. Note that
+ * getting an atom or bond may create its view, and thus changes the state
+ * of the container.
+ *
+ * @cdk.module  silent
+ * @cdk.githash
+ * @cdk.keyword molecule
+ * @see         CompactChemObjectBuilder
+ */
+public class CompactMolecule extends ChemObject
+  implements IMolecule, Serializable, Cloneable {
+
+    private static final long serialVersionUID = -3154629201384812447L;
+
+    /**
+     * Value returned by the primitive accessors for an unset property.
+     */
+    public static final int UNSET = Integer.MIN_VALUE;
+
+    /** Number of atoms and bonds the arrays of an empty container hold. */
+    private static final int GROW_SIZE = 10;
+
+    /** The values of the atoms, and their views and external atoms. */
+    private CompactAtom.Table atomTable;
+    private int externalAtomCount;
+    /** Positions of external atoms, built on demand. */
+    private transient Map<IAtom, Integer> externalAtomIndex;
+
+    /** The values of the bonds, and their views and external bonds. */
+    private CompactBond.Table bondTable;
+    private int externalBondCount;
+
+    /** Start of the bonds of each atom in {@link #adjacentBonds}. */
+    private transient int[] adjacencyOffsets;
+    /** Bond positions grouped per atom, in the order of the bonds. */
+    private transient int[] adjacentBonds;
+    /** The changes of bond atoms the adjacency table was built after. */
+    private transient int adjacencyChanges;
+
+    private List<ILonePair> lonePairs;
+    private List<ISingleElectron> singleElectrons;
+    private List<IStereoElement> stereoElements;
+
+    /**
+     * Constructs an empty CompactMolecule.
+     */
+    public CompactMolecule() {
+        this(GROW_SIZE, GROW_SIZE, 0, 0);
+    }
+
+    /**
+     * Constructs an empty CompactMolecule with arrays sized for the given
+     * numbers of atoms and bonds.
+     *
+     * @param atomCount Number of atoms to be in this container
+     * @param bondCount Number of bonds to be in this container
+     * @param lpCount   Number of lone pairs to be in this container
+     * @param seCount   Number of single electrons to be in this container
+     */
+    public CompactMolecule(int atomCount, int bondCount, int lpCount, int seCount) {
+        atomTable = new CompactAtom.Table(this, atomCount);
+        bondTable = new CompactBond.Table(this, bondCount);
+        lonePairs = new ArrayList<ILonePair>(lpCount);
+        singleElectrons = new ArrayList<ISingleElectron>(seCount);
+        stereoElements = new ArrayList<IStereoElement>(0);
+    }
+
+    /**
+     * Constructs a CompactMolecule with the atoms, bonds and electron
+     * containers of another container. Atoms and bonds that are not
+     * detached compact objects are added by reference, as in
+     * {@link AtomContainer#AtomContainer(IAtomContainer)}.
+     *
+     * @param container An IAtomContainer to copy the content from
+     */
+    public CompactMolecule(IAtomContainer container) {
+        this(container.getAtomCount(), container.getBondCount(),
+             container.getLonePairCount(), container.getSingleElectronCount());
+        for (int f = 0; f < container.getAtomCount(); f++)
+            addAtom(container.getAtom(f));
+        for (int f = 0; f < container.getBondCount(); f++)
+            addBond(container.getBond(f));
+        for (int f = 0; f < container.getLonePairCount(); f++)
+            addLonePair(container.getLonePair(f));
+        for (int f = 0; f < container.getSingleElectronCount(); f++)
+            addSingleElectron(container.getSingleElectron(f));
+        for (IStereoElement element : container.stereoElements())
+            addStereoElement(element);
+    }
+
+    /** {@inheritDoc} */
+    public IChemObjectBuilder getBuilder() {
+        return CompactChemObjectBuilder.getInstance();
+    }
+
+    // primitive API
+
+    /**
+     * Adds an atom without creating an atom object.
+     *
+     * @param  atomicNumber          the atomic number, or {@link #UNSET}
+     * @param  formalCharge          the formal charge, or {@link #UNSET}
+     * @param  implicitHydrogenCount the implicit hydrogen count, or {@link #UNSET}
+     * @return the position of the new atom
+     */
+    public int addAtom(int atomicNumber, int formalCharge, int implicitHydrogenCount) {
+        int position = atomTable.add();
+        atomTable.elements[position] = atomicNumber;
+        atomTable.charges[position] = formalCharge;
+        atomTable.hydrogens[position] = implicitHydrogenCount;
+        adjacencyOffsets = null;
+        return position;
+    }
+
+    /**
+     * Returns the atomic number of the atom at the given position.
+     *
+     * @param  atomNumber the position of the atom
+     * @return the atomic number, or {@link #UNSET}
+     */
+    public int getAtomicNumber(int atomNumber) {
+        if (isExternalAtom(atomNumber)) return value(atomAt(atomNumber).getAtomicNumber());
+        return atomTable.elements[atomNumber];
+    }
+
+    /**
+     * Returns the formal charge of the atom at the given position.
+     *
+     * @param  atomNumber the position of the atom
+     * @return the formal charge, or {@link #UNSET}
+     */
+    public int getFormalCharge(int atomNumber) {
+        if (isExternalAtom(atomNumber)) return value(atomAt(atomNumber).getFormalCharge());
+        return atomTable.charges[atomNumber];
+    }
+
+    /**
+     * Returns the implicit hydrogen count of the atom at the given position.
+     *
+     * @param  atomNumber the position of the atom
+     * @return the implicit hydrogen count, or {@link #UNSET}
+     */
+    public int getImplicitHydrogenCount(int atomNumber) {
+        if (isExternalAtom(atomNumber)) return value(atomAt(atomNumber).getImplicitHydrogenCount());
+        return atomTable.hydrogens[atomNumber];
+    }
+
+    /**
+     * Returns the position of an atom of the bond at the given position.
+     *
+     * @param  bondNumber the position of the bond
+     * @param  index      the index of the atom in the bond
+     * @return the position of the atom in this container, or -1 if the
+     *         bond atom is not in this container
+     */
+    public int getBondAtomNumber(int bondNumber, int index) {
+        if (!isIndexed(bondNumber))
+            return getAtomNumber(bondAt(bondNumber).getAtom(index));
+        if (index == 0) return bondTable.begin[bondNumber];
+        if (index == 1) return bondTable.end[bondNumber];
+        return -1;
+    }
+
+    /**
+     * Returns the order of the bond at the given position.
+     *
+     * @param  bondNumber the position of the bond
+     * @return the bond order
+     */
+    public Order getBondOrder(int bondNumber) {
+        if (isExternalBond(bondNumber)) return bondAt(bondNumber).getOrder();
+        return bondTable.order(bondNumber);
+    }
+
+    /**
+     * Returns the position of the k-th bond connected to an atom, as
+     * indexed in the adjacency table.
+     *
+     * @param  atomNumber the position of the atom
+     * @param  k          the index of the bond, in [0, degree)
+     * @return the position of the bond
+     * @see    #getConnectedBondsCount(int)
+     */
+    public int getConnectedBondNumber(int atomNumber, int k) {
+        buildAdjacency();
+        return adjacentBonds[adjacencyOffsets[atomNumber] + k];
+    }
+
+    /**
+     * Returns the position of the atom at the other side of the k-th bond
+     * connected to an atom.
+     *
+     * @param  atomNumber the position of the atom
+     * @param  k          the index of the bond, in [0, degree)
+     * @return the position of the neighbour, or -1 if it is not in this
+     *         container
+     * @see    #getConnectedBondsCount(int)
+     */
+    public int getConnectedAtomNumber(int atomNumber, int k) {
+        int bond = getConnectedBondNumber(atomNumber, k);
+        if (!isIndexed(bond)) {
+            IAtom other = bondAt(bond).getConnectedAtom(atomAt(atomNumber));
+            return other == null ? -1 : getAtomNumber(other);
+        }
+        return otherAtom(bond, atomNumber);
+    }
+
+    // atoms
+
+    /** {@inheritDoc} */
+    public void setAtoms(IAtom[] atoms) {
+        relink(atoms, null);
+    }
+
+    /**
+     * Sets the atom at the given position. Bonds to the replaced atom keep
+     * that atom, as in the other containers. Setting the atom just after the
+     * last one adds it to this container.
+     *
+     * @param number The position of the atom to be set
+     * @param atom   The atom to be stored at position <code>number</code>
+     */
+    public void setAtom(int number, IAtom atom) {
+        if (number == atomTable.size) {
+            addAtom(atom);
+            return;
+        }
+        if (atomAt(number) == atom) return;
+        IAtom[] newAtoms = new IAtom[atomTable.size];
+        for (int f = 0; f < atomTable.size; f++) newAtoms[f] = atomAt(f);
+        newAtoms[number] = atom;
+        relink(newAtoms, null);
+    }
+
+    /** {@inheritDoc} */
+    public IAtom getAtom(int number) {
+        if (number >= atomTable.size) return null;
+        return atomAt(number);
+    }
+
+    /** {@inheritDoc} */
+    public Iterable<IAtom> atoms() {
+        return new Iterable<IAtom>() {
+            public Iterator<IAtom> iterator() {
+                return new AtomIterator();
+            }
+        };
+    }
+
+    private class AtomIterator implements Iterator<IAtom> {
+
+        private int pointer = 0;
+
+        public boolean hasNext() {
+            return pointer < atomTable.size;
+        }
+
+        public IAtom next() {
+            return atomAt(pointer++);
+        }
+
+        public void remove() {
+            removeAtom(--pointer);
+        }
+
+    }
+
+    /** {@inheritDoc} */
+    public IAtom getFirstAtom() {
+        return getAtom(0);
+    }
+
+    /** {@inheritDoc} */
+    public IAtom getLastAtom() {
+        return atomTable.size > 0 ? atomAt(atomTable.size - 1) : null;
+    }
+
+    /** {@inheritDoc} */
+    public int getAtomNumber(IAtom atom) {
+        if (atom instanceof CompactAtom && ((CompactAtom)atom).table == atomTable)
+            return ((CompactAtom)atom).index;
+        if (externalAtomCount == 0 || atom == null) return -1;
+        if (externalAtomIndex == null) {
+            externalAtomIndex = new IdentityHashMap<IAtom, Integer>();
+            for (int f = atomTable.size - 1; f >= 0; f--)
+                if (isExternalAtom(f)) externalAtomIndex.put(atomAt(f), f);
+        }
+        Integer position = externalAtomIndex.get(atom);
+        return position == null ? -1 : position;
+    }
+
+    /** {@inheritDoc} */
+    public int getAtomCount() {
+        return atomTable.size;
+    }
+
+    /**
+     * Adds an atom to this container. The values of a detached
+     * {@link CompactAtom} are moved into the columns of this container;
+     * other atoms are stored by reference.
+     *
+     * @param atom The atom to be added to this container
+     */
+    public void addAtom(IAtom atom) {
+        if (contains(atom)) return;
+        int position = atomTable.add();
+        if (atom instanceof CompactAtom && ((CompactAtom)atom).table.molecule == null) {
+            CompactAtom view = (CompactAtom)atom;
+            atomTable.move(position, view.table, view.index);
+            view.table = atomTable;
+            view.index = position;
+        } else {
+            externalAtomCount++;
+            if (externalAtomIndex != null) externalAtomIndex.put(atom, position);
+        }
+        atomTable.atoms()[position] = atom;
+        adjacencyOffsets = null;
+    }
+
+    /**
+     * Removes the atom at the given position from this container. Bonds to
+     * the removed atom keep the atom object, as in the other containers,
+     * and the view of the atom gets its values back.
+     *
+     * @param position The position of the atom to be removed
+     */
+    public void removeAtom(int position) {
+        for (int f = 0; f < bondTable.size; f++) {
+            if (isIndexed(f) && (bondTable.begin[f] == position || bondTable.end[f] == position))
+                bondTable.release(f);
+        }
+        if (isExternalAtom(position)) externalAtomCount--;
+        else atomTable.detach(position);
+        atomTable.remove(position);
+        bondTable.atomRemoved(position);
+        externalAtomIndex = null;
+        adjacencyOffsets = null;
+    }
+
+    /** {@inheritDoc} */
+    public void removeAtom(IAtom atom) {
+        int position = getAtomNumber(atom);
+        if (position != -1) removeAtom(position);
+    }
+
+    /** {@inheritDoc} */
+    public void removeAtomAndConnectedElectronContainers(IAtom atom) {
+        int position = getAtomNumber(atom);
+        if (position == -1) return;
+        for (int f = 0; f < bondTable.size; f++) {
+            if (bondContains(f, position, atom)) {
+                removeBond(f);
+                --f;
+            }
+        }
+        for (int f = 0; f < lonePairs.size(); f++) {
+            if (lonePairs.get(f).contains(atom)) {
+                lonePairs.remove(f);
+                --f;
+            }
+        }
+        for (int f = 0; f < singleElectrons.size(); f++) {
+            if (singleElectrons.get(f).contains(atom)) {
+                singleElectrons.remove(f);
+                --f;
+            }
+        }
+        removeAtom(position);
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(IAtom atom) {
+        return getAtomNumber(atom) != -1;
+    }
+
+    // bonds
+
+    /** {@inheritDoc} */
+    public void setBonds(IBond[] bonds) {
+        relink(null, bonds);
+    }
+
+    /** {@inheritDoc} */
+    public IBond getBond(int number) {
+        if (number >= bondTable.size) return null;
+        return bondAt(number);
+    }
+
+    /** {@inheritDoc} */
+    public Iterable<IBond> bonds() {
+        return new Iterable<IBond>() {
+            public Iterator<IBond> iterator() {
+                return new BondIterator();
+            }
+        };
+    }
+
+    private class BondIterator implements Iterator<IBond> {
+
+        private int pointer = 0;
+
+        public boolean hasNext() {
+            return pointer < bondTable.size;
+        }
+
+        public IBond next() {
+            return bondAt(pointer++);
+        }
+
+        public void remove() {
+            removeBond(--pointer);
+        }
+
+    }
+
+    /** {@inheritDoc} */
+    public int getBondNumber(IAtom atom1, IAtom atom2) {
+        return getBondNumber(getBond(atom1, atom2));
+    }
+
+    /** {@inheritDoc} */
+    public int getBondNumber(IBond bond) {
+        if (bond instanceof CompactBond && ((CompactBond)bond).table == bondTable)
+            return ((CompactBond)bond).index;
+        if (externalBondCount == 0 || bond == null) return -1;
+        for (int f = 0; f < bondTable.size; f++) {
+            if (isExternalBond(f) && bondAt(f) == bond) return f;
+        }
+        return -1;
+    }
+
+    /** {@inheritDoc} */
+    public IBond getBond(IAtom atom1, IAtom atom2) {
+        int position = getAtomNumber(atom1);
+        if (position == -1) {
+            for (IBond bond : getConnectedBondsList(atom1))
+                if (bond.getConnectedAtom(atom1) == atom2) return bond;
+            return null;
+        }
+        int other = getAtomNumber(atom2);
+        buildAdjacency();
+        for (int f = adjacencyOffsets[position]; f < adjacencyOffsets[position + 1]; f++) {
+            int bond = adjacentBonds[f];
+            if (!isIndexed(bond)) {
+                if (bondAt(bond).getConnectedAtom(atom1) == atom2) return bondAt(bond);
+            } else if (other != -1 && otherAtom(bond, position) == other) {
+                return bondAt(bond);
+            }
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public int getBondCount() {
+        return bondTable.size;
+    }
+
+    /**
+     * Adds a bond to this container. The values of a detached
+     * {@link CompactBond} are moved into the columns of this container;
+     * other bonds are stored by reference.
+     *
+     * @param bond The bond to be added to this container
+     */
+    public void addBond(IBond bond) {
+        int position = bondTable.add();
+        if (bond instanceof CompactBond && ((CompactBond)bond).table.molecule == null) {
+            CompactBond view = (CompactBond)bond;
+            bondTable.move(position, view.table, view.index);
+            view.table = bondTable;
+            view.index = position;
+            bondTable.normalize(position);
+        } else {
+            externalBondCount++;
+        }
+        bondTable.bonds()[position] = bond;
+        adjacencyOffsets = null;
+    }
+
+    /** {@inheritDoc} */
+    public void addBond(int atom1, int atom2, Order order, IBond.Stereo stereo) {
+        bondTable.add(atom1, atom2, order, stereo);
+        adjacencyOffsets = null;
+    }
+
+    /**
+     * Adds a bond between the atoms at the given positions, without creating
+     * a bond object.
+     *
+     * @param atom1 position of the first atom of the bond in [0,..]
+     * @param atom2 position of the second atom of the bond in [0,..]
+     * @param order bond order
+     */
+    public void addBond(int atom1, int atom2, Order order) {
+        addBond(atom1, atom2, order, IBond.Stereo.NONE);
+    }
+
+    /**
+     * Removes the bond at the given position from this container. The view
+     * of the bond gets its values back.
+     *
+     * @param  position The position of the bond to be removed
+     * @return          The removed bond
+     */
+    public IBond removeBond(int position) {
+        IBond bond = bondAt(position);
+        if (isExternalBond(position)) externalBondCount--;
+        else bondTable.detach(position);
+        bondTable.remove(position);
+        adjacencyOffsets = null;
+        return bond;
+    }
+
+    /** {@inheritDoc} */
+    public IBond removeBond(IAtom atom1, IAtom atom2) {
+        int position = getBondNumber(atom1, atom2);
+        return position == -1 ? null : removeBond(position);
+    }
+
+    /** {@inheritDoc} */
+    public void removeBond(IBond bond) {
+        int position = getBondNumber(bond);
+        if (position != -1) removeBond(position);
+    }
+
+    /** {@inheritDoc} */
+    public void removeAllBonds() {
+        for (int f = 0; f < bondTable.size; f++) {
+            if (!isExternalBond(f)) bondTable.detach(f);
+        }
+        bondTable.clear();
+        externalBondCount = 0;
+        adjacencyOffsets = null;
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(IBond bond) {
+        return getBondNumber(bond) != -1;
+    }
+
+    // neighbours
+
+    /** {@inheritDoc} */
+    public List<IAtom> getConnectedAtomsList(IAtom atom) {
+        int position = getAtomNumber(atom);
+        if (position == -1) {
+            List<IAtom> atomsList = new ArrayList<IAtom>();
+            for (IBond bond : getConnectedBondsList(atom))
+                atomsList.add(bond.getConnectedAtom(atom));
+            return atomsList;
+        }
+        buildAdjacency();
+        int start = adjacencyOffsets[position];
+        int end = adjacencyOffsets[position + 1];
+        List<IAtom> atomsList = new ArrayList<IAtom>(end - start);
+        for (int f = start; f < end; f++) {
+            int bond = adjacentBonds[f];
+            if (!isIndexed(bond))
+                atomsList.add(bondAt(bond).getConnectedAtom(atom));
+            else
+                atomsList.add(atomAt(otherAtom(bond, position)));
+        }
+        return atomsList;
+    }
+
+    /** {@inheritDoc} */
+    public List<IBond> getConnectedBondsList(IAtom atom) {
+        int position = getAtomNumber(atom);
+        List<IBond> bondsList;
+        if (position == -1) {
+            // only bonds that keep their atom objects can hold other atoms
+            bondsList = new ArrayList<IBond>();
+            for (int f = 0; f < bondTable.size; f++) {
+                if (!isIndexed(f) && bondAt(f).contains(atom)) bondsList.add(bondAt(f));
+            }
+            return bondsList;
+        }
+        buildAdjacency();
+        int start = adjacencyOffsets[position];
+        int end = adjacencyOffsets[position + 1];
+        bondsList = new ArrayList<IBond>(end - start);
+        for (int f = start; f < end; f++)
+            bondsList.add(bondAt(adjacentBonds[f]));
+        return bondsList;
+    }
+
+    /** {@inheritDoc} */
+    public List<IElectronContainer> getConnectedElectronContainersList(IAtom atom) {
+        List<IElectronContainer> list = new ArrayList<IElectronContainer>();
+        list.addAll(getConnectedBondsList(atom));
+        list.addAll(getConnectedLonePairsList(atom));
+        list.addAll(getConnectedSingleElectronsList(atom));
+        return list;
+    }
+
+    /** {@inheritDoc} */
+    public int getConnectedAtomsCount(IAtom atom) {
+        int position = getAtomNumber(atom);
+        if (position == -1) return getConnectedBondsList(atom).size();
+        return getConnectedBondsCount(position);
+    }
+
+    /** {@inheritDoc} */
+    public int getConnectedBondsCount(IAtom atom) {
+        return getConnectedAtomsCount(atom);
+    }
+
+    /** {@inheritDoc} */
+    public int getConnectedBondsCount(int atomNumber) {
+        buildAdjacency();
+        return adjacencyOffsets[atomNumber + 1] - adjacencyOffsets[atomNumber];
+    }
+
+    /** {@inheritDoc} */
+    public double getBondOrderSum(IAtom atom) {
+        double count = 0;
+        for (Order order : connectedOrders(atom)) {
+            if (order == Order.SINGLE) {
+                count += 1;
+            } else if (order == Order.DOUBLE) {
+                count += 2;
+            } else if (order == Order.TRIPLE) {
+                count += 3;
+            } else if (order == Order.QUADRUPLE) {
+                count += 4;
+            }
+        }
+        return count;
+    }
+
+    /** {@inheritDoc} */
+    public Order getMaximumBondOrder(IAtom atom) {
+        Order max = Order.SINGLE;
+        for (Order order : connectedOrders(atom)) {
+            if (order.ordinal() > max.ordinal()) max = order;
+        }
+        return max;
+    }
+
+    /** {@inheritDoc} */
+    public Order getMinimumBondOrder(IAtom atom) {
+        Order min = Order.QUADRUPLE;
+        for (Order order : connectedOrders(atom)) {
+            if (order.ordinal() < min.ordinal()) min = order;
+        }
+        return min;
+    }
+
+    /**
+     * Returns the orders of the bonds connected to an atom, without creating
+     * bond views.
+     */
+    private Order[] connectedOrders(IAtom atom) {
+        int position = getAtomNumber(atom);
+        if (position == -1) {
+            List<IBond> connected = getConnectedBondsList(atom);
+            Order[] orders = new Order[connected.size()];
+            for (int f = 0; f < orders.length; f++) orders[f] = connected.get(f).getOrder();
+            return orders;
+        }
+        buildAdjacency();
+        int start = adjacencyOffsets[position];
+        Order[] orders = new Order[adjacencyOffsets[position + 1] - start];
+        for (int f = 0; f < orders.length; f++) orders[f] = getBondOrder(adjacentBonds[start + f]);
+        return orders;
+    }
+
+    // lone pairs, single electrons and stereo elements
+
+    /** {@inheritDoc} */
+    public void addStereoElement(IStereoElement element) {
+        stereoElements.add(element);
+    }
+
+    /** {@inheritDoc} */
+    public Iterable<IStereoElement> stereoElements() {
+        return stereoElements;
+    }
+
+    /** {@inheritDoc} */
+    public ILonePair getLonePair(int number) {
+        return number < lonePairs.size() ? lonePairs.get(number) : null;
+    }
+
+    /** {@inheritDoc} */
+    public ISingleElectron getSingleElectron(int number) {
+        return number < singleElectrons.size() ? singleElectrons.get(number) : null;
+    }
+
+    /** {@inheritDoc} */
+    public Iterable<ILonePair> lonePairs() {
+        return lonePairs;
+    }
+
+    /** {@inheritDoc} */
+    public Iterable<ISingleElectron> singleElectrons() {
+        return singleElectrons;
+    }
+
+    /** {@inheritDoc} */
+    public Iterable<IElectronContainer> electronContainers() {
+        return new Iterable<IElectronContainer>() {
+            public Iterator<IElectronContainer> iterator() {
+                return new ElectronContainerIterator();
+            }
+        };
+    }
+
+    private class ElectronContainerIterator implements Iterator<IElectronContainer> {
+
+        private int pointer = 0;
+
+        public boolean hasNext() {
+            return pointer < getElectronContainerCount();
+        }
+
+        public IElectronContainer next() {
+            return getElectronContainer(pointer++);
+        }
+
+        public void remove() {
+            removeElectronContainer(--pointer);
+        }
+
+    }
+
+    /** {@inheritDoc} */
+    public int getLonePairNumber(ILonePair lonePair) {
+        for (int f = 0; f < lonePairs.size(); f++) {
+            if (lonePairs.get(f) == lonePair) return f;
+        }
+        return -1;
+    }
+
+    /** {@inheritDoc} */
+    public int getSingleElectronNumber(ISingleElectron singleElectron) {
+        for (int f = 0; f < singleElectrons.size(); f++) {
+            if (singleElectrons.get(f) == singleElectron) return f;
+        }
+        return -1;
+    }
+
+    /** {@inheritDoc} */
+    public IElectronContainer getElectronContainer(int number) {
+        if (number < bondTable.size) return bondAt(number);
+        number -= bondTable.size;
+        if (number < lonePairs.size()) return lonePairs.get(number);
+        number -= lonePairs.size();
+        if (number < singleElectrons.size()) return singleElectrons.get(number);
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public int getLonePairCount() {
+        return lonePairs.size();
+    }
+
+    /** {@inheritDoc} */
+    public int getSingleElectronCount() {
+        return singleElectrons.size();
+    }
+
+    /** {@inheritDoc} */
+    public int getElectronContainerCount() {
+        return bondTable.size + lonePairs.size() + singleElectrons.size();
+    }
+
+    /** {@inheritDoc} */
+    public List<ILonePair> getConnectedLonePairsList(IAtom atom) {
+        List<ILonePair> lps = new ArrayList<ILonePair>();
+        for (ILonePair lonePair : lonePairs) {
+            if (lonePair.contains(atom)) lps.add(lonePair);
+        }
+        return lps;
+    }
+
+    /** {@inheritDoc} */
+    public List<ISingleElectron> getConnectedSingleElectronsList(IAtom atom) {
+        List<ISingleElectron> ses = new ArrayList<ISingleElectron>();
+        for (ISingleElectron singleElectron : singleElectrons) {
+            if (singleElectron.contains(atom)) ses.add(singleElectron);
+        }
+        return ses;
+    }
+
+    /** {@inheritDoc} */
+    public int getConnectedLonePairsCount(IAtom atom) {
+        return getConnectedLonePairsList(atom).size();
+    }
+
+    /** {@inheritDoc} */
+    public int getConnectedSingleElectronsCount(IAtom atom) {
+        return getConnectedSingleElectronsList(atom).size();
+    }
+
+    /** {@inheritDoc} */
+    public void addLonePair(ILonePair lonePair) {
+        lonePairs.add(lonePair);
+    }
+
+    /** {@inheritDoc} */
+    public void addSingleElectron(ISingleElectron singleElectron) {
+        singleElectrons.add(singleElectron);
+    }
+
+    /** {@inheritDoc} */
+    public void addLonePair(int atomID) {
+        addLonePair(getBuilder().newInstance(ILonePair.class, atomAt(atomID)));
+    }
+
+    /** {@inheritDoc} */
+    public void addSingleElectron(int atomID) {
+        addSingleElectron(getBuilder().newInstance(ISingleElectron.class, atomAt(atomID)));
+    }
+
+    /** {@inheritDoc} */
+    public void addElectronContainer(IElectronContainer electronContainer) {
+        if (electronContainer instanceof IBond) addBond((IBond)electronContainer);
+        if (electronContainer instanceof ILonePair) addLonePair((ILonePair)electronContainer);
+        if (electronContainer instanceof ISingleElectron) addSingleElectron((ISingleElectron)electronContainer);
+    }
+
+    /** {@inheritDoc} */
+    public ILonePair removeLonePair(int position) {
+        return lonePairs.remove(position);
+    }
+
+    /** {@inheritDoc} */
+    public void removeLonePair(ILonePair lonePair) {
+        int position = getLonePairNumber(lonePair);
+        if (position != -1) removeLonePair(position);
+    }
+
+    /** {@inheritDoc} */
+    public ISingleElectron removeSingleElectron(int position) {
+        return singleElectrons.remove(position);
+    }
+
+    /** {@inheritDoc} */
+    public void removeSingleElectron(ISingleElectron singleElectron) {
+        int position = getSingleElectronNumber(singleElectron);
+        if (position != -1) removeSingleElectron(position);
+    }
+
+    /** {@inheritDoc} */
+    public IElectronContainer removeElectronContainer(int number) {
+        if (number < bondTable.size) return removeBond(number);
+        number -= bondTable.size;
+        if (number < lonePairs.size()) return removeLonePair(number);
+        number -= lonePairs.size();
+        if (number < singleElectrons.size()) return removeSingleElectron(number);
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public void removeElectronContainer(IElectronContainer electronContainer) {
+        if (electronContainer instanceof IBond) removeBond((IBond)electronContainer);
+        else if (electronContainer instanceof ILonePair) removeLonePair((ILonePair)electronContainer);
+        else if (electronContainer instanceof ISingleElectron) removeSingleElectron((ISingleElectron)electronContainer);
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(ILonePair lonePair) {
+        return getLonePairNumber(lonePair) != -1;
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(ISingleElectron singleElectron) {
+        return getSingleElectronNumber(singleElectron) != -1;
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(IElectronContainer electronContainer) {
+        if (electronContainer instanceof IBond) return contains((IBond)electronContainer);
+        if (electronContainer instanceof ILonePair) return contains((ILonePair)electronContainer);
+        if (electronContainer instanceof ISingleElectron) return contains((ISingleElectron)electronContainer);
+        return false;
+    }
+
+    // whole container
+
+    /** {@inheritDoc} */
+    public void add(IAtomContainer atomContainer) {
+        for (int f = 0; f < atomContainer.getAtomCount(); f++) {
+            if (!contains(atomContainer.getAtom(f))) addAtom(atomContainer.getAtom(f));
+        }
+        for (int f = 0; f < atomContainer.getBondCount(); f++) {
+            if (!contains(atomContainer.getBond(f))) addBond(atomContainer.getBond(f));
+        }
+        for (int f = 0; f < atomContainer.getLonePairCount(); f++) {
+            if (!contains(atomContainer.getLonePair(f))) addLonePair(atomContainer.getLonePair(f));
+        }
+        for (int f = 0; f < atomContainer.getSingleElectronCount(); f++) {
+            if (!contains(atomContainer.getSingleElectron(f)))
+                addSingleElectron(atomContainer.getSingleElectron(f));
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void remove(IAtomContainer atomContainer) {
+        for (int f = 0; f < atomContainer.getAtomCount(); f++)
+            removeAtom(atomContainer.getAtom(f));
+        for (int f = 0; f < atomContainer.getBondCount(); f++)
+            removeBond(atomContainer.getBond(f));
+        for (int f = 0; f < atomContainer.getLonePairCount(); f++)
+            removeLonePair(atomContainer.getLonePair(f));
+        for (int f = 0; f < atomContainer.getSingleElectronCount(); f++)
+            removeSingleElectron(atomContainer.getSingleElectron(f));
+    }
+
+    /** {@inheritDoc} */
+    public void removeAllElements() {
+        removeAllElectronContainers();
+        clearAtoms();
+    }
+
+    /** {@inheritDoc} */
+    public void removeAllElectronContainers() {
+        removeAllBonds();
+        lonePairs.clear();
+        singleElectrons.clear();
+    }
+
+    /**
+     * Returns a one line string representation of this container.
+     *
+     * @return The string representation of this container
+     */
+    public String toString() {
+        StringBuffer stringContent = new StringBuffer(64);
+        stringContent.append("CompactMolecule(");
+        stringContent.append(this.hashCode());
+        if (getID() != null) stringContent.append(", ID=").append(getID());
+        if (atomTable.size > 0) {
+            stringContent.append(", #A:").append(atomTable.size);
+            for (int f = 0; f < atomTable.size; f++)
+                stringContent.append(", ").append(atomAt(f).toString());
+        }
+        if (bondTable.size > 0) {
+            stringContent.append(", #B:").append(bondTable.size);
+            for (int f = 0; f < bondTable.size; f++)
+                stringContent.append(", ").append(bondAt(f).toString());
+        }
+        if (lonePairs.size() > 0) {
+            stringContent.append(", #LP:").append(lonePairs.size());
+            for (ILonePair lonePair : lonePairs)
+                stringContent.append(", ").append(lonePair.toString());
+        }
+        if (singleElectrons.size() > 0) {
+            stringContent.append(", #SE:").append(singleElectrons.size());
+            for (ISingleElectron singleElectron : singleElectrons)
+                stringContent.append(", ").append(singleElectron.toString());
+        }
+        if (stereoElements.size() > 0) {
+            stringContent.append(", ST:[#").append(stereoElements.size());
+            for (IStereoElement element : stereoElements)
+                stringContent.append(", ").append(element.toString());
+            stringContent.append(']');
+        }
+        stringContent.append(')');
+        return stringContent.toString();
+    }
+
+    /**
+     * Clones this container and its content. The columns are copied as they
+     * are, so the clone has no atom or bond views until they are asked for.
+     * Atoms and bonds that are stored by reference are cloned.
+     *
+     * @return The cloned object
+     */
+    public Object clone() throws CloneNotSupportedException {
+        CompactMolecule clone = (CompactMolecule)super.clone();
+        clone.atomTable = atomTable.copy(clone);
+        clone.bondTable = bondTable.copy(clone);
+        clone.externalAtomIndex = null;
+        clone.adjacencyOffsets = null;
+        clone.lonePairs = new ArrayList<ILonePair>(lonePairs.size());
+        clone.singleElectrons = new ArrayList<ISingleElectron>(singleElectrons.size());
+        clone.stereoElements = new ArrayList<IStereoElement>(0);
+        for (int f = 0; f < atomTable.size; f++) {
+            if (isExternalAtom(f)) clone.atomTable.atoms()[f] = (IAtom)atomAt(f).clone();
+        }
+        for (int f = 0; f < bondTable.size; f++) {
+            if (isExternalBond(f)) {
+                IBond bond = (IBond)bondAt(f).clone();
+                IAtom[] newAtoms = new IAtom[bond.getAtomCount()];
+                for (int g = 0; g < newAtoms.length; g++) {
+                    int position = getAtomNumber(bondAt(f).getAtom(g));
+                    newAtoms[g] = position == -1 ? bond.getAtom(g) : clone.atomAt(position);
+                }
+                bond.setAtoms(newAtoms);
+                clone.bondTable.bonds()[f] = bond;
+            } else if (!isIndexed(f)) {
+                IAtom[] newAtoms = clone.bondTable.atoms(f);
+                for (int g = 0; g < newAtoms.length; g++) {
+                    int position = getAtomNumber(newAtoms[g]);
+                    if (position != -1) newAtoms[g] = clone.atomAt(position);
+                    else if (newAtoms[g] != null) newAtoms[g] = (IAtom)newAtoms[g].clone();
+                }
+            }
+        }
+        for (ILonePair lonePair : lonePairs) {
+            ILonePair newLonePair = (ILonePair)lonePair.clone();
+            if (lonePair.getAtom() != null)
+                newLonePair.setAtom(clone.atomAt(getAtomNumber(lonePair.getAtom())));
+            clone.addLonePair(newLonePair);
+        }
+        for (ISingleElectron singleElectron : singleElectrons) {
+            ISingleElectron newSingleElectron = (ISingleElectron)singleElectron.clone();
+            if (singleElectron.getAtom() != null)
+                newSingleElectron.setAtom(clone.atomAt(getAtomNumber(singleElectron.getAtom())));
+            clone.addSingleElectron(newSingleElectron);
+        }
+        return clone;
+    }
+
+    /**
+     * Called by objects to which this object has registered as a listener.
+     *
+     * @param event A change event pointing to the source of the change
+     */
+    public void stateChanged(IChemObjectChangeEvent event) {}
+
+    // internals
+
+    private boolean isExternalAtom(int position) {
+        return !atomTable.isView(position);
+    }
+
+    private boolean isExternalBond(int position) {
+        return !bondTable.isView(position);
+    }
+
+    /**
+     * Returns true if the bond at the given position is a view that keeps
+     * the positions of its atoms, rather than the atom objects.
+     */
+    private boolean isIndexed(int position) {
+        return bondTable.isView(position) && bondTable.isPositional(position);
+    }
+
+    /**
+     * Returns the position of the other atom of an indexed bond.
+     */
+    private int otherAtom(int bond, int position) {
+        return bondTable.begin[bond] == position ? bondTable.end[bond] : bondTable.begin[bond];
+    }
+
+    /**
+     * Returns the atom object at the given position, creating the view if
+     * needed.
+     */
+    private IAtom atomAt(int position) {
+        return atomTable.atom(position);
+    }
+
+    /**
+     * Returns the bond object at the given position, creating the view if
+     * needed.
+     */
+    private IBond bondAt(int position) {
+        return bondTable.bond(position);
+    }
+
+    /**
+     * Returns true if the bond at the given position contains the atom at
+     * the given position.
+     */
+    private boolean bondContains(int bond, int position, IAtom atom) {
+        if (!isIndexed(bond)) return bondAt(bond).contains(atom);
+        return bondTable.begin[bond] == position || bondTable.end[bond] == position;
+    }
+
+    /**
+     * Removes all atoms, giving their views their values back. There must
+     * not be any bonds left.
+     */
+    private void clearAtoms() {
+        for (int f = 0; f < atomTable.size; f++) {
+            if (!isExternalAtom(f)) atomTable.detach(f);
+        }
+        atomTable.clear();
+        externalAtomCount = 0;
+        externalAtomIndex = null;
+        adjacencyOffsets = null;
+    }
+
+    /**
+     * Builds the compressed adjacency table, if it is not up to date. Bonds
+     * that are not views on this container do not tell it when their atoms
+     * change, so while there are any the table is built for every lookup.
+     */
+    private void buildAdjacency() {
+        if (adjacencyOffsets != null && externalBondCount == 0
+            && adjacencyChanges == bondTable.changes) return;
+        int size = atomTable.size;
+        int[] offsets = new int[size + 1];
+        int[][] objectAtoms = null;
+        for (int f = 0; f < bondTable.size; f++) {
+            if (isIndexed(f)) {
+                offsets[bondTable.begin[f] + 1]++;
+                if (bondTable.end[f] != bondTable.begin[f]) offsets[bondTable.end[f] + 1]++;
+            } else {
+                if (objectAtoms == null) objectAtoms = new int[bondTable.size][];
+                objectAtoms[f] = externalBondAtoms(bondAt(f));
+                for (int atom : objectAtoms[f]) offsets[atom + 1]++;
+            }
+        }
+        for (int f = 0; f < size; f++) offsets[f + 1] += offsets[f];
+        int[] fill = new int[size];
+        System.arraycopy(offsets, 0, fill, 0, size);
+        int[] adjacent = new int[offsets[size]];
+        for (int f = 0; f < bondTable.size; f++) {
+            if (objectAtoms != null && objectAtoms[f] != null) {
+                for (int atom : objectAtoms[f]) adjacent[fill[atom]++] = f;
+            } else {
+                adjacent[fill[bondTable.begin[f]]++] = f;
+                if (bondTable.end[f] != bondTable.begin[f]) adjacent[fill[bondTable.end[f]]++] = f;
+            }
+        }
+        adjacentBonds = adjacent;
+        adjacencyOffsets = offsets;
+        adjacencyChanges = bondTable.changes;
+    }
+
+    /**
+     * Returns the distinct positions of the atoms of a bond that keeps its
+     * atom objects that are in this container.
+     */
+    private int[] externalBondAtoms(IBond bond) {
+        int[] positions = new int[bond.getAtomCount()];
+        int count = 0;
+        for (int f = 0; f < positions.length; f++) {
+            int position = getAtomNumber(bond.getAtom(f));
+            if (position == -1) continue;
+            boolean seen = false;
+            for (int g = 0; g < count && !seen; g++) seen = positions[g] == position;
+            if (!seen) positions[count++] = position;
+        }
+        if (count == positions.length) return positions;
+        int[] distinct = new int[count];
+        System.arraycopy(positions, 0, distinct, 0, count);
+        return distinct;
+    }
+
+    /**
+     * Replaces the atoms and/or bonds of this container, keeping the
+     * objects that are already in it.
+     */
+    private void relink(IAtom[] newAtoms, IBond[] newBonds) {
+        if (newAtoms == null) {
+            newAtoms = new IAtom[atomTable.size];
+            for (int f = 0; f < atomTable.size; f++) newAtoms[f] = atomAt(f);
+        }
+        if (newBonds == null) {
+            newBonds = new IBond[bondTable.size];
+            for (int f = 0; f < bondTable.size; f++) newBonds[f] = bondAt(f);
+        }
+        removeAllBonds();
+        clearAtoms();
+        for (IAtom atom : newAtoms) addAtom(atom);
+        for (IBond bond : newBonds) addBond(bond);
+    }
+
+    private static int value(Integer value) {
+        return value == null ? UNSET : value;
+    }
+
+}
@@ -0,0 +1,460 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.similarity;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+
+/**
+ * Tanimoto similarity search over a collection of fingerprints. The
+ * fingerprints are packed into <code>long[]</code> blocks, and the Tanimoto
+ * coefficient is calculated from the bit counts of the words, without the
+ * allocations of {@link Tanimoto#calculate(BitSet, BitSet)}:
+ * <pre>
+ * TanimotoIndex index = new TanimotoIndex(fingerprinter.getSize());
+ * for (IAtomContainer molecule : molecules)
+ *     index.add(fingerprinter.getFingerprint(molecule));
+ * List&lt;TanimotoIndex.Hit&gt; nearest = index.findNearest(query, 10);
+ * List&lt;TanimotoIndex.Hit&gt; similar = index.findSimilar(query, 0.8f);
+ * </pre>
+ *
+ * <p>The fingerprints are grouped by their number of set bits. A
+ * fingerprint with <i>a</i> bits set and one with <i>b</i> bits set have a
+ * Tanimoto coefficient of at most min(<i>a</i>,<i>b</i>)/max(<i>a</i>,<i>b</i>)
+ * (Swamidass and Baldi), so that groups that cannot reach the threshold, or
+ * the <i>k</i>th best coefficient found so far, are skipped. Large searches
+ * are run on several threads.
+ *
+ * <p>The coefficients are those of {@link Tanimoto#calculate(BitSet, BitSet)},
+ * except that two empty fingerprints have a coefficient of 0. Several
+ * threads may search the index at once, while fingerprints are added.
+ *
+ * @cdk.module  fingerprint
+ * @cdk.githash
+ * @cdk.keyword similarity, tanimoto
+ * @cdk.keyword similarity search
+ */
+@TestClass("org.openscience.cdk.similarity.TanimotoIndexTest")
+public class TanimotoIndex {
+
+    /**
+     * A fingerprint found by a search, with its Tanimoto coefficient to the
+     * query.
+     */
+    public static class Hit {
+
+        private final int index;
+        private final float similarity;
+
+        Hit(int index, float similarity) {
+            this.index = index;
+            this.similarity = similarity;
+        }
+
+        /**
+         * Returns the index of the fingerprint.
+         *
+         * @return the index, as returned by {@link TanimotoIndex#add(BitSet)}
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the Tanimoto coefficient of the fingerprint and the query.
+         *
+         * @return the Tanimoto coefficient
+         */
+        public float getSimilarity() {
+            return similarity;
+        }
+
+        public String toString() {
+            return index + ":" + similarity;
+        }
+    }
+
+    /** Orders hits by decreasing similarity, and by index for equal similarity. */
+    private static final Comparator<Hit> BEST_FIRST = new Comparator<Hit>() {
+        public int compare(Hit hit1, Hit hit2) {
+            if (hit1.similarity != hit2.similarity)
+                return hit1.similarity > hit2.similarity ? -1 : 1;
+            return hit1.index < hit2.index ? -1 : (hit1.index == hit2.index ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Hit> WORST_FIRST = Collections.reverseOrder(BEST_FIRST);
+
+    // the maximum number of fingerprints compared by one task
+    private static final int UNIT_SIZE = 4096;
+
+    // searches over fewer fingerprints run on the calling thread
+    private static final int MIN_PARALLEL_SIZE = 4 * UNIT_SIZE;
+
+    /**
+     * The fingerprints with the same number of bits set, stored one after
+     * the other.
+     */
+    private static class Group {
+        long[] words;
+        int[] indices = new int[16];
+        int count = 0;
+    }
+
+    /**
+     * Consecutive fingerprints of a group, compared by one task.
+     */
+    private static class Unit {
+        final Group group;
+        final int cardinality;
+        final int start;
+        final int end;
+        final float bound;
+
+        Unit(Group group, int cardinality, int start, int end, float bound) {
+            this.group = group;
+            this.cardinality = cardinality;
+            this.start = start;
+            this.end = end;
+            this.bound = bound;
+        }
+    }
+
+    private final int fingerprintSize;
+    private final int wordCount;
+    private final int threadCount;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Group[] groups;
+    private int size = 0;
+
+    /**
+     * Creates an index for fingerprints of the given size, searching on one
+     * thread per available processor.
+     *
+     * @param fingerprintSize the number of bits of the fingerprints
+     */
+    @TestMethod("testFindSimilar,testFindNearest")
+    public TanimotoIndex(int fingerprintSize) {
+        this(fingerprintSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an index for fingerprints of the given size.
+     *
+     * @param fingerprintSize the number of bits of the fingerprints
+     * @param threadCount     the number of threads to search on
+     */
+    @TestMethod("testFindNearest_ThreadCount")
+    public TanimotoIndex(int fingerprintSize, int threadCount) {
+        if (fingerprintSize < 1)
+            throw new IllegalArgumentException("fingerprintSize must be at least 1");
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        this.fingerprintSize = fingerprintSize;
+        this.wordCount = (fingerprintSize + 63) >> 6;
+        this.threadCount = threadCount;
+        this.groups = new Group[fingerprintSize + 1];
+    }
+
+    /**
+     * Adds a fingerprint to the index.
+     *
+     * @param  fingerprint the fingerprint to add
+     * @return             the index of the fingerprint
+     * @throws CDKException if the fingerprint is longer than the fingerprints of this index
+     */
+    @TestMethod("testAdd")
+    public int add(BitSet fingerprint) throws CDKException {
+        long[] words = toWords(fingerprint);
+        int cardinality = fingerprint.cardinality();
+        lock.writeLock().lock();
+        try {
+            Group group = groups[cardinality];
+            if (group == null) {
+                group = new Group();
+                group.words = new long[16 * wordCount];
+                groups[cardinality] = group;
+            }
+            if (group.count == group.indices.length) {
+                int[] indices = new int[2 * group.count];
+                System.arraycopy(group.indices, 0, indices, 0, group.count);
+                group.indices = indices;
+                long[] grown = new long[2 * group.count * wordCount];
+                System.arraycopy(group.words, 0, grown, 0, group.count * wordCount);
+                group.words = grown;
+            }
+            System.arraycopy(words, 0, group.words, group.count * wordCount, wordCount);
+            group.indices[group.count++] = size;
+            return size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of fingerprints in the index.
+     *
+     * @return the number of fingerprints
+     */
+    @TestMethod("testAdd")
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the fingerprints with a Tanimoto coefficient to the query of
+     * at least the given threshold.
+     *
+     * @param  query        the fingerprint of the query
+     * @param  threshold    the minimum Tanimoto coefficient
+     * @return              the hits, most similar first
+     * @throws CDKException if the query is longer than the fingerprints of
+     *                      this index, or the search is interrupted
+     */
+    @TestMethod("testFindSimilar")
+    public List<Hit> findSimilar(BitSet query, final float threshold) throws CDKException {
+        final long[] queryWords = toWords(query);
+        final int queryCardinality = query.cardinality();
+        List<Hit> hits = new ArrayList<Hit>();
+        lock.readLock().lock();
+        try {
+            final List<Unit> units = getUnits(queryCardinality, threshold);
+            if (threadCount == 1 || countFingerprints(units) < MIN_PARALLEL_SIZE) {
+                for (Unit unit : units) compare(unit, queryWords, queryCardinality, threshold, hits);
+            } else {
+                final AtomicInteger next = new AtomicInteger();
+                List<Callable<List<Hit>>> tasks = new ArrayList<Callable<List<Hit>>>();
+                for (int t = 0; t < threadCount; t++) {
+                    tasks.add(new Callable<List<Hit>>() {
+                        public List<Hit> call() {
+                            List<Hit> found = new ArrayList<Hit>();
+                            int i;
+                            while ((i = next.getAndIncrement()) < units.size())
+                                compare(units.get(i), queryWords, queryCardinality, threshold, found);
+                            return found;
+                        }
+                    });
+                }
+                for (List<Hit> found : run(tasks)) hits.addAll(found);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(hits, BEST_FIRST);
+        return hits;
+    }
+
+    /**
+     * Returns the <code>k</code> fingerprints most similar to the query. Of
+     * fingerprints with the same Tanimoto coefficient, those added first are
+     * returned.
+     *
+     * @param  query        the fingerprint of the query
+     * @param  k            the number of hits to return
+     * @return              the hits, most similar first
+     * @throws CDKException if the query is longer than the fingerprints of
+     *                      this index, or the search is interrupted
+     */
+    @TestMethod("testFindNearest")
+    public List<Hit> findNearest(BitSet query, final int k) throws CDKException {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1");
+        final long[] queryWords = toWords(query);
+        final int queryCardinality = query.cardinality();
+        List<Hit> hits = new ArrayList<Hit>();
+        lock.readLock().lock();
+        try {
+            final List<Unit> units = getUnits(queryCardinality, 0);
+            if (threadCount == 1 || countFingerprints(units) < MIN_PARALLEL_SIZE) {
+                hits.addAll(searchTopK(units, new AtomicInteger(), queryWords, queryCardinality, k, null));
+            } else {
+                // the best kth coefficient found by any thread, as float bits
+                final AtomicInteger bound = new AtomicInteger(Float.floatToIntBits(0));
+                final AtomicInteger next = new AtomicInteger();
+                List<Callable<List<Hit>>> tasks = new ArrayList<Callable<List<Hit>>>();
+                for (int t = 0; t < threadCount; t++) {
+                    tasks.add(new Callable<List<Hit>>() {
+                        public List<Hit> call() {
+                            return searchTopK(units, next, queryWords, queryCardinality, k, bound);
+                        }
+                    });
+                }
+                for (List<Hit> found : run(tasks)) hits.addAll(found);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(hits, BEST_FIRST);
+        return hits.size() > k ? new ArrayList<Hit>(hits.subList(0, k)) : hits;
+    }
+
+    /**
+     * Keeps the k best hits of the units taken from <code>next</code>. The
+     * units are ordered by decreasing bound, so that the search stops at the
+     * first unit that cannot improve on the kth hit found by this or, if
+     * <code>bound</code> is given, another thread.
+     */
+    private List<Hit> searchTopK(List<Unit> units, AtomicInteger next, long[] queryWords,
+                                 int queryCardinality, int k, AtomicInteger bound) {
+        PriorityQueue<Hit> best = new PriorityQueue<Hit>(k + 1, WORST_FIRST);
+        float kth = 0;
+        int i;
+        while ((i = next.getAndIncrement()) < units.size()) {
+            Unit unit = units.get(i);
+            if (bound != null) kth = Math.max(kth, Float.intBitsToFloat(bound.get()));
+            // equal coefficients may still replace hits added later
+            if (unit.bound < kth) break;
+            Group group = unit.group;
+            for (int row = unit.start; row < unit.end; row++) {
+                float similarity = similarity(group.words, row, queryWords, queryCardinality, unit.cardinality);
+                if (best.size() == k) {
+                    Hit worst = best.peek();
+                    if (similarity < worst.similarity
+                        || (similarity == worst.similarity && group.indices[row] > worst.index))
+                        continue;
+                    best.poll();
+                }
+                best.add(new Hit(group.indices[row], similarity));
+            }
+            if (best.size() == k && best.peek().similarity > kth) {
+                kth = best.peek().similarity;
+                if (bound != null) raise(bound, kth);
+            }
+        }
+        return new ArrayList<Hit>(best);
+    }
+
+    private static void raise(AtomicInteger bound, float value) {
+        while (true) {
+            int current = bound.get();
+            if (Float.intBitsToFloat(current) >= value
+                || bound.compareAndSet(current, Float.floatToIntBits(value)))
+                return;
+        }
+    }
+
+    private void compare(Unit unit, long[] queryWords, int queryCardinality,
+                         float threshold, List<Hit> hits) {
+        Group group = unit.group;
+        for (int row = unit.start; row < unit.end; row++) {
+            float similarity = similarity(group.words, row, queryWords, queryCardinality, unit.cardinality);
+            if (similarity >= threshold) hits.add(new Hit(group.indices[row], similarity));
+        }
+    }
+
+    private float similarity(long[] words, int row, long[] queryWords,
+                             int queryCardinality, int cardinality) {
+        int common = 0;
+        int offset = row * wordCount;
+        for (int i = 0; i < wordCount; i++) {
+            common += Long.bitCount(words[offset + i] & queryWords[i]);
+        }
+        int union = queryCardinality + cardinality - common;
+        return union == 0 ? 0 : (float)common / union;
+    }
+
+    /**
+     * Splits the groups that may reach the threshold into units, ordered by
+     * decreasing bound.
+     */
+    private List<Unit> getUnits(int queryCardinality, float threshold) {
+        List<Unit> units = new ArrayList<Unit>();
+        for (int cardinality = 0; cardinality < groups.length; cardinality++) {
+            Group group = groups[cardinality];
+            if (group == null || group.count == 0) continue;
+            int max = Math.max(cardinality, queryCardinality);
+            float bound = max == 0 ? 0 : (float)Math.min(cardinality, queryCardinality) / max;
+            if (bound < threshold) continue;
+            for (int start = 0; start < group.count; start += UNIT_SIZE) {
+                units.add(new Unit(group, cardinality, start,
+                                   Math.min(start + UNIT_SIZE, group.count), bound));
+            }
+        }
+        Collections.sort(units, new Comparator<Unit>() {
+            public int compare(Unit unit1, Unit unit2) {
+                return Float.compare(unit2.bound, unit1.bound);
+            }
+        });
+        return units;
+    }
+
+    private static int countFingerprints(List<Unit> units) {
+        int count = 0;
+        for (Unit unit : units) count += unit.end - unit.start;
+        return count;
+    }
+
+    private List<List<Hit>> run(List<Callable<List<Hit>>> tasks) throws CDKException {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            List<List<Hit>> results = new ArrayList<List<Hit>>();
+            for (Future<List<Hit>> result : executor.invokeAll(tasks))
+                results.add(result.get());
+            return results;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Interrupted while searching fingerprints", exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Error) throw (Error)cause;
+            throw new CDKException("Error while searching fingerprints", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long[] toWords(BitSet fingerprint) throws CDKException {
+        if (fingerprint.length() > fingerprintSize)
+            throw new CDKException(
+                "Fingerprint bit " + (fingerprint.length() - 1) +
+                " beyond the fingerprint size " + fingerprintSize
+            );
+        long[] words = new long[wordCount];
+        for (int bit = fingerprint.nextSetBit(0); bit >= 0; bit = fingerprint.nextSetBit(bit + 1)) {
+            words[bit >> 6] |= 1L << (bit & 63);
+        }
+        return words;
+    }
+
+}
@@ -35,6 +35,7 @@ import org.openscience.cdk.geometry.BondTools;
 import org.openscience.cdk.graph.ConnectivityChecker;
 import org.openscience.cdk.graph.invariant.CanonicalLabeler;
 import org.openscience.cdk.graph.invariant.MorganNumbersTools;
+import org.openscience.cdk.graph.invariant.PartitionRefinementLabeler;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IAtomType;
@@ -55,8 +56,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.Vector;
 
@@ -121,6 +124,12 @@ public class SmilesGenerator
 	 *  The canonical labler
 	 */
 	private CanonicalLabeler canLabler = new CanonicalLabeler();
+	private PartitionRefinementLabeler refinementLabeler = new PartitionRefinementLabeler();
+	private boolean usePartitionRefinement = false;
+	/**
+	 *  The canonical labels of the atoms of the molecule being written
+	 */
+	private Map<IAtom, Long> canonicalLabels = new HashMap<IAtom, Long>();
 	private final String RING_CONFIG = "stereoconfig";
 	private final String UP = "up";
 	private final String DOWN = "down";
@@ -373,7 +382,23 @@ public class SmilesGenerator
 		{
 			return "";
 		}
-		canLabler.canonLabel(molecule);
+		canonicalLabels.clear();
+		if (usePartitionRefinement) {
+			long[] labels = refinementLabeler.getCanonicalLabels(molecule);
+			for (int i = 0; i < labels.length; i++) {
+				canonicalLabels.put(molecule.getAtom(i), labels[i]);
+			}
+		} else {
+			canLabler.canonLabel(molecule);
+			for (IAtom atom : molecule.atoms()) {
+				canonicalLabels.put(atom, (Long) atom.getProperty(InvPair.CANONICAL_LABEL));
+			}
+			// remove all CanonicalLable/InvariancePair props
+			for (IAtom atom : molecule.atoms()) {
+				atom.removeProperty(InvPair.CANONICAL_LABEL);
+				atom.removeProperty(InvPair.INVARIANCE_PAIR);
+			}
+		}
 		brokenBonds.clear();
 		ringMarker = 0;
 		IAtom start = null;
@@ -386,7 +411,7 @@ public class SmilesGenerator
 			}
 			//logger.debug("Setting all VISITED flags to false");
 			atom.setFlag(CDKConstants.VISITED, false);
-			if ((Long) atom.getProperty(InvPair.CANONICAL_LABEL) == 1)
+			if (canonicalLabels.get(atom) == 1)
 			{
 				start = atom;
 			}
@@ -452,13 +477,8 @@ public class SmilesGenerator
 		StringBuffer l = new StringBuffer();
 		createSMILES(start, l, molecule, chiral, doubleBondConfiguration,useAromaticityFlag);
 		rings = null;
-		
-		// remove all CanonicalLable/InvariancePair props
-		for (int k = 0; k < molecule.getAtomCount(); k++) {
-			molecule.getAtom(k).removeProperty(InvPair.CANONICAL_LABEL);
-			molecule.getAtom(k).removeProperty(InvPair.INVARIANCE_PAIR);
-		}
-		
+		canonicalLabels.clear();
+
 		return l.toString();
 	}
 
@@ -656,8 +676,7 @@ public class SmilesGenerator
 					public int compare(Object o1, Object o2)
 					{
 						return (int) (
-						    (Long) ((IAtom) o1).getProperty(InvPair.CANONICAL_LABEL) -
-						    (Long) ((IAtom) o2).getProperty(InvPair.CANONICAL_LABEL)
+						    canonicalLabels.get(o1) - canonicalLabels.get(o2)
 						);
 					}
 				});
@@ -1966,4 +1985,18 @@ public class SmilesGenerator
 		this.useAromaticityFlag = useAromaticityFlag;
 	}
 
+	/**
+	 * Indicates whether the atoms should be canonically labelled by partition
+	 * refinement, with the {@link PartitionRefinementLabeler}, instead of with
+	 * the {@link CanonicalLabeler}. Partition refinement scales to molecules
+	 * with thousands of atoms and leaves no properties on the atoms, but
+	 * gives different, equally canonical, SMILES.
+	 *
+	 * @param usePartitionRefinement if false the {@link CanonicalLabeler} is used (default)
+	 */
+	@TestMethod("testPartitionRefinement")
+	public void setUsePartitionRefinement(boolean usePartitionRefinement) {
+		this.usePartitionRefinement = usePartitionRefinement;
+	}
+
 }
@@ -0,0 +1,611 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.aromaticity.PerceptionState;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.smarts.AliphaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AtomicNumberAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.HydrogenAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.LogicalOperatorAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.RecursiveSmartsAtom;
+import org.openscience.cdk.isomorphism.mcss.RMap;
+import org.openscience.cdk.ringsearch.AllRingsFinder;
+import org.openscience.cdk.ringsearch.SSSRFinder;
+import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * A compiled SMARTS query, which can be matched by several threads at once.
+ * Compiled queries are normally obtained from the shared
+ * {@link SMARTSQueryCache}, so that each pattern is parsed only once:
+ * <pre>
+ * SMARTSQuery query = SMARTSQueryCache.getInstance().get("[OX2H]c");
+ * SMARTSQuery.prepare(molecule);
+ * if (query.matches(molecule)) {
+ *     List&lt;List&lt;Integer&gt;&gt; mappings = query.getMatchingAtoms(molecule);
+ * }
+ * </pre>
+ *
+ * <p>The target molecule must first be prepared with {@link #prepare(IAtomContainer)},
+ * which perceives rings, atom types and aromaticity, as done by the
+ * {@link SMARTSQueryTool}. Preparing changes the molecule, whereas matching
+ * does not, so that a prepared molecule may be matched against several
+ * queries at once.
+ *
+ * <p>Before searching, a query checks that the target molecule has at least
+ * as many atoms, bonds, aromatic atoms and atoms of each element as the
+ * query requires, so that most non-matching targets are rejected without an
+ * isomorphism search. {@link #matches(IAtomContainer)} stops at the first
+ * match found.
+ *
+ * <p>Most queries are matched directly. Queries with recursive SMARTS or
+ * hydrogen atoms keep the target molecule in their atoms while matching,
+ * and each thread therefore matches its own copy of these queries.
+ *
+ * @cdk.module  smarts
+ * @cdk.githash
+ * @cdk.keyword SMARTS
+ * @cdk.keyword substructure search
+ * @see SMARTSQueryCache
+ */
+@TestClass("org.openscience.cdk.smiles.smarts.SMARTSQueryTest")
+public class SMARTSQuery {
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(SMARTSQuery.class);
+
+    private static final Map<String, Integer> valencesTable = new HashMap<String, Integer>();
+
+    /** The molecule last prepared on each thread. */
+    private static final ThreadLocal<PreparedTarget> lastPrepared = new ThreadLocal<PreparedTarget>();
+
+    static {
+        // Code copied from
+        // org.openscience.cdk.qsar.descriptors.atomic.AtomValenceDescriptor;
+        valencesTable.put("H", 1);
+        valencesTable.put("Li", 1);
+        valencesTable.put("Be", 2);
+        valencesTable.put("B", 3);
+        valencesTable.put("C", 4);
+        valencesTable.put("N", 5);
+        valencesTable.put("O", 6);
+        valencesTable.put("F", 7);
+        valencesTable.put("Na", 1);
+        valencesTable.put("Mg", 2);
+        valencesTable.put("Al", 3);
+        valencesTable.put("Si", 4);
+        valencesTable.put("P", 5);
+        valencesTable.put("S", 6);
+        valencesTable.put("Cl", 7);
+        valencesTable.put("K", 1);
+        valencesTable.put("Ca", 2);
+        valencesTable.put("Ga", 3);
+        valencesTable.put("Ge", 4);
+        valencesTable.put("As", 5);
+        valencesTable.put("Se", 6);
+        valencesTable.put("Br", 7);
+        valencesTable.put("Rb", 1);
+        valencesTable.put("Sr", 2);
+        valencesTable.put("In", 3);
+        valencesTable.put("Sn", 4);
+        valencesTable.put("Sb", 5);
+        valencesTable.put("Te", 6);
+        valencesTable.put("I", 7);
+        valencesTable.put("Cs", 1);
+        valencesTable.put("Ba", 2);
+        valencesTable.put("Tl", 3);
+        valencesTable.put("Pb", 4);
+        valencesTable.put("Bi", 5);
+        valencesTable.put("Po", 6);
+        valencesTable.put("At", 7);
+        valencesTable.put("Fr", 1);
+        valencesTable.put("Ra", 2);
+        valencesTable.put("Cu", 2);
+        valencesTable.put("Mn", 2);
+        valencesTable.put("Co", 2);
+    }
+
+    private final String smarts;
+    private final QueryAtomContainer query;
+    private final ThreadLocal<QueryAtomContainer> threadQueries;
+
+    // the least the target molecule must contain to match this query
+    private final int atomCount;
+    private final int bondCount;
+    private final int aromaticCount;
+    private final Map<String, Integer> elementCounts = new HashMap<String, Integer>();
+
+    /**
+     * Compiles a SMARTS pattern. Use {@link SMARTSQueryCache#get(String)} to
+     * share compiled queries.
+     *
+     * @param  smarts                   the SMARTS pattern
+     * @throws IllegalArgumentException if the SMARTS pattern cannot be parsed
+     */
+    @TestMethod("testSMARTSQuery_String")
+    public SMARTSQuery(final String smarts) {
+        this.smarts = smarts;
+        QueryAtomContainer parsed = SMARTSParser.parse(smarts);
+        if (hasTargetState(parsed)) {
+            this.query = null;
+            this.threadQueries = new ThreadLocal<QueryAtomContainer>() {
+                protected QueryAtomContainer initialValue() {
+                    return SMARTSParser.parse(smarts);
+                }
+            };
+        } else {
+            this.query = parsed;
+            this.threadQueries = null;
+        }
+
+        this.atomCount = parsed.getAtomCount();
+        this.bondCount = parsed.getBondCount();
+        int aromatic = 0;
+        for (IAtom atom : parsed.atoms()) {
+            String element = getRequiredElement(atom);
+            if (element != null) {
+                Integer count = elementCounts.get(element);
+                elementCounts.put(element, count == null ? 1 : count + 1);
+            }
+            if (isAromaticRequired(atom)) aromatic++;
+        }
+        this.aromaticCount = aromatic;
+    }
+
+    /**
+     * Returns the SMARTS pattern of this query.
+     *
+     * @return the SMARTS pattern
+     */
+    @TestMethod("testGetSmarts")
+    public String getSmarts() {
+        return smarts;
+    }
+
+    /**
+     * Checks whether the query is present in the target molecule. The search
+     * stops at the first match found.
+     *
+     * @param  atomContainer the target molecule, prepared with {@link #prepare(IAtomContainer)}
+     * @return               true if the pattern is found in the target molecule
+     * @throws CDKException  if there is an error in isomorphism perception
+     */
+    @TestMethod("testMatches_IAtomContainer")
+    public boolean matches(IAtomContainer atomContainer) throws CDKException {
+        return matches(atomContainer, new TargetCounts(atomContainer));
+    }
+
+    /**
+     * Checks whether the query is present in the target molecule, of which
+     * the counts have already been taken.
+     */
+    boolean matches(IAtomContainer atomContainer, TargetCounts counts) throws CDKException {
+        if (!mayMatch(counts)) return false;
+        if (atomCount < 2 || bondCount == 0)
+            return getMatchingAtoms(atomContainer, counts).size() != 0;
+        QueryAtomContainer query = getQuery(atomContainer);
+        return UniversalIsomorphismTester.getSubgraphMap(atomContainer, query) != null;
+    }
+
+    /**
+     * Returns the atoms in the target molecule that match the query pattern.
+     * Since there may be multiple matches, the return value is a List of
+     * List objects. Each List object contains the indices of the atoms in
+     * the target molecule that match the query pattern.
+     *
+     * @param  atomContainer the target molecule, prepared with {@link #prepare(IAtomContainer)}
+     * @return               a List of List of atom indices in the target molecule
+     * @throws CDKException  if there is an error in isomorphism perception
+     */
+    @TestMethod("testGetMatchingAtoms_IAtomContainer,testConcurrentMatching")
+    public List<List<Integer>> getMatchingAtoms(IAtomContainer atomContainer) throws CDKException {
+        return getMatchingAtoms(atomContainer, new TargetCounts(atomContainer));
+    }
+
+    /**
+     * Returns the atoms in the target molecule that match the query pattern,
+     * of which the counts have already been taken.
+     */
+    List<List<Integer>> getMatchingAtoms(IAtomContainer atomContainer, TargetCounts counts) throws CDKException {
+        if (!mayMatch(counts)) return new ArrayList<List<Integer>>();
+        QueryAtomContainer query = getQuery(atomContainer);
+
+        // lets see if we have a single atom query
+        if (query.getAtomCount() == 1) {
+            IQueryAtom queryAtom = (IQueryAtom) query.getAtom(0);
+            List<List<Integer>> matchingAtoms = new ArrayList<List<Integer>>();
+            for (IAtom atom : atomContainer.atoms()) {
+                if (queryAtom.matches(atom)) {
+                    List<Integer> tmp = new ArrayList<Integer>();
+                    tmp.add(atomContainer.getAtomNumber(atom));
+                    matchingAtoms.add(tmp);
+                }
+            }
+            return matchingAtoms;
+        }
+        List<List<RMap>> bondMapping = UniversalIsomorphismTester.getSubgraphMaps(atomContainer, query);
+        return getAtomMappings(bondMapping, atomContainer);
+    }
+
+    /**
+     * Returns the unique sets of atoms in the target molecule that match the
+     * query pattern, i.e. matches that only differ in the order of the atoms
+     * are returned once.
+     *
+     * @param  atomContainer the target molecule, prepared with {@link #prepare(IAtomContainer)}
+     * @return               a List of List of sorted atom indices in the target molecule
+     * @throws CDKException  if there is an error in isomorphism perception
+     */
+    @TestMethod("testGetUniqueMatchingAtoms_IAtomContainer")
+    public List<List<Integer>> getUniqueMatchingAtoms(IAtomContainer atomContainer) throws CDKException {
+        return getUniqueMappings(getMatchingAtoms(atomContainer));
+    }
+
+    /**
+     * Returns the query to match against the given target molecule.
+     */
+    private QueryAtomContainer getQuery(IAtomContainer atomContainer) {
+        QueryAtomContainer query = this.query;
+        if (query == null) {
+            query = threadQueries.get();
+            for (IAtom atom : query.atoms()) {
+                initializeRecursiveSmartsAtom(atom, atomContainer);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Returns false if the target molecule has too few atoms, bonds,
+     * aromatic atoms or atoms of some element to match this query.
+     */
+    boolean mayMatch(TargetCounts counts) {
+        if (atomCount > counts.atomCount || bondCount > counts.bondCount
+            || aromaticCount > counts.aromaticCount)
+            return false;
+        for (Map.Entry<String, Integer> required : elementCounts.entrySet()) {
+            if (required.getValue() > counts.getElementCount(required.getKey()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Prepares a target molecule for matching. We perform ring perception and
+     * aromaticity detection and set up the appropriate properties. A molecule
+     * that was the last one prepared on the calling thread and has not changed
+     * since, as checked by its {@link PerceptionState}, is not prepared again.
+     *
+     * @param  atomContainer the target molecule
+     * @throws CDKException  if there is a problem in ring perception or aromaticity detection, which is usually
+     *                       related to a timeout in the ring finding code.
+     */
+    @TestMethod("testPrepare_IAtomContainer,testPrepare_Cached")
+    public static void prepare(IAtomContainer atomContainer) throws CDKException {
+        // nothing to do if the molecule was prepared and has not changed since
+        PerceptionState state = PerceptionState.getCachedState(atomContainer);
+        PreparedTarget last = lastPrepared.get();
+        if (state != null && last != null && last.state == state && last.target.get() == atomContainer)
+            return;
+
+        // do all ring perception, unless the molecule is known to have no rings
+        IRingSet allRings = null;
+        IRingSet sssr = null;
+        if (state == null || state.getRingAtomCount() > 0) {
+            AllRingsFinder arf = new AllRingsFinder();
+            try {
+                allRings = arf.findAllRings(atomContainer);
+            } catch (CDKException e) {
+                logger.debug(e.toString());
+                throw new CDKException(e.toString(), e);
+            }
+
+            // sets SSSR information
+            SSSRFinder finder = new SSSRFinder(atomContainer);
+            sssr = finder.findEssentialRings();
+        }
+
+        for (IAtom atom : atomContainer.atoms()) {
+
+            // add a property to each ring atom that will be an array of
+            // Integers, indicating what size ring the given atom belongs to
+            // Add SSSR ring counts
+            if (allRings != null && allRings.contains(atom)) { // it's in a ring
+                atom.setFlag(CDKConstants.ISINRING, true);
+                // lets find which ring sets it is a part of
+                List<Integer> ringsizes = new ArrayList<Integer>();
+                IRingSet currentRings = allRings.getRings(atom);
+                int min = 0;
+                for (int i = 0; i < currentRings.getAtomContainerCount(); i++) {
+                    int size = currentRings.getAtomContainer(i).getAtomCount();
+                    if (min > size) min = size;
+                    ringsizes.add(size);
+                }
+                atom.setProperty(CDKConstants.RING_SIZES, ringsizes);
+                atom.setProperty(CDKConstants.SMALLEST_RINGS, sssr.getRings(atom));
+            } else {
+                atom.setFlag(CDKConstants.ISINRING, false);
+            }
+
+            // determine how many rings bonds each atom is a part of
+            int hCount;
+            if (atom.getImplicitHydrogenCount() == CDKConstants.UNSET) hCount = 0;
+            else hCount = atom.getImplicitHydrogenCount();
+
+            List<IAtom> connectedAtoms = atomContainer.getConnectedAtomsList(atom);
+            int total = hCount + connectedAtoms.size();
+            for (IAtom connectedAtom : connectedAtoms) {
+                if (connectedAtom.getSymbol().equals("H")) {
+                    hCount++;
+                }
+            }
+            atom.setProperty(CDKConstants.TOTAL_CONNECTIONS, total);
+            atom.setProperty(CDKConstants.TOTAL_H_COUNT, hCount);
+
+            if (valencesTable.get(atom.getSymbol()) != null) {
+                int formalCharge = atom.getFormalCharge() == CDKConstants.UNSET ? 0 : atom.getFormalCharge();
+                atom.setValency(valencesTable.get(atom.getSymbol()) - formalCharge);
+            }
+        }
+
+        for (IBond bond : atomContainer.bonds()) {
+            if (allRings != null && allRings.getRings(bond).getAtomContainerCount() > 0) {
+                bond.setFlag(CDKConstants.ISINRING, true);
+            }
+        }
+
+        for (IAtom atom : atomContainer.atoms()) {
+            List<IAtom> connectedAtoms = atomContainer.getConnectedAtomsList(atom);
+
+            int counter = 0;
+            IAtom any;
+            for (IAtom connectedAtom : connectedAtoms) {
+                any = connectedAtom;
+                if (any.getFlag(CDKConstants.ISINRING)) {
+                    counter++;
+                }
+            }
+            atom.setProperty(CDKConstants.RING_CONNECTIONS, counter);
+        }
+
+        // check for atomaticity
+        try {
+            state = PerceptionState.perceive(atomContainer);
+        } catch (CDKException e) {
+            logger.debug(e.toString());
+            throw new CDKException(e.toString(), e);
+        }
+        lastPrepared.set(new PreparedTarget(atomContainer, state));
+    }
+
+    /**
+     * Returns true if atoms of the query keep the target molecule while
+     * matching.
+     */
+    private static boolean hasTargetState(QueryAtomContainer query) {
+        for (IAtom atom : query.atoms()) {
+            if (hasTargetState(atom)) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasTargetState(IAtom atom) {
+        if (atom instanceof LogicalOperatorAtom) {
+            LogicalOperatorAtom operator = (LogicalOperatorAtom) atom;
+            return hasTargetState(operator.getLeft())
+                || (operator.getRight() != null && hasTargetState(operator.getRight()));
+        }
+        return atom instanceof RecursiveSmartsAtom || atom instanceof HydrogenAtom;
+    }
+
+    /**
+     * Recursively initializes recursive smarts atoms
+     *
+     * @param atom
+     * @param atomContainer
+     */
+    private static void initializeRecursiveSmartsAtom(IAtom atom, IAtomContainer atomContainer) {
+        if (atom instanceof LogicalOperatorAtom) {
+            initializeRecursiveSmartsAtom(((LogicalOperatorAtom) atom).getLeft(), atomContainer);
+            if (((LogicalOperatorAtom) atom).getRight() != null) {
+                initializeRecursiveSmartsAtom(((LogicalOperatorAtom) atom).getRight(), atomContainer);
+            }
+        } else if (atom instanceof RecursiveSmartsAtom) {
+            ((RecursiveSmartsAtom) atom).setAtomContainer(atomContainer);
+        } else if (atom instanceof HydrogenAtom) {
+            ((HydrogenAtom) atom).setAtomContainer(atomContainer);
+        }
+    }
+
+    /**
+     * Returns the element an atom matching the query atom must have, or null
+     * if the query atom matches several elements.
+     */
+    private static String getRequiredElement(IAtom atom) {
+        if (atom instanceof AliphaticSymbolAtom || atom instanceof AromaticSymbolAtom) {
+            return atom.getSymbol();
+        } else if (atom instanceof AtomicNumberAtom) {
+            return PeriodicTable.getSymbol(atom.getAtomicNumber());
+        } else if (atom instanceof LogicalOperatorAtom) {
+            LogicalOperatorAtom operator = (LogicalOperatorAtom) atom;
+            if (operator.getRight() == null) {
+                return "not".equals(operator.getOperator()) ? null : getRequiredElement(operator.getLeft());
+            } else if ("and".equals(operator.getOperator())) {
+                String element = getRequiredElement(operator.getLeft());
+                return element != null ? element : getRequiredElement(operator.getRight());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if only aromatic atoms match the query atom.
+     */
+    private static boolean isAromaticRequired(IAtom atom) {
+        if (atom instanceof AromaticSymbolAtom || atom instanceof AromaticAtom) {
+            return true;
+        } else if (atom instanceof LogicalOperatorAtom) {
+            LogicalOperatorAtom operator = (LogicalOperatorAtom) atom;
+            if (operator.getRight() == null) {
+                return !"not".equals(operator.getOperator()) && isAromaticRequired(operator.getLeft());
+            } else if ("and".equals(operator.getOperator())) {
+                return isAromaticRequired(operator.getLeft()) || isAromaticRequired(operator.getRight());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the mappings that contain the same atoms as an earlier mapping.
+     * The atom indices of each mapping are sorted.
+     */
+    static List<List<Integer>> getUniqueMappings(List<List<Integer>> mappings) {
+        List<List<Integer>> ret = new ArrayList<List<Integer>>();
+        for (List<Integer> atomMapping : mappings) {
+            Collections.sort(atomMapping);
+
+            // see if this sequence of atom indices is present
+            // in the return container
+            boolean present = false;
+            for (List<Integer> r : ret) {
+                if (r.size() != atomMapping.size()) continue;
+                boolean matches = true;
+                for (int i = 0; i < atomMapping.size(); i++) {
+                    int index1 = atomMapping.get(i);
+                    int index2 = r.get(i);
+                    if (index1 != index2) {
+                        matches = false;
+                        break;
+                    }
+                }
+                if (matches) {
+                    present = true;
+                    break;
+                }
+            }
+            if (!present) ret.add(atomMapping);
+        }
+        return ret;
+    }
+
+    private static List<List<Integer>> getAtomMappings(List<List<RMap>> bondMapping, IAtomContainer atomContainer) {
+        List<List<Integer>> atomMapping = new ArrayList<List<Integer>>();
+
+        // loop over each mapping
+        for (List<RMap> list : bondMapping) {
+
+            List<Integer> tmp = new ArrayList<Integer>();
+            IAtom atom1 = null;
+            IAtom atom2 = null;
+            // loop over this mapping
+            for (RMap map : list) {
+                int bondID = map.getId1();
+
+                // get the atoms in this bond
+                IBond bond = atomContainer.getBond(bondID);
+                atom1 = bond.getAtom(0);
+                atom2 = bond.getAtom(1);
+
+                Integer idx1 = atomContainer.getAtomNumber(atom1);
+                Integer idx2 = atomContainer.getAtomNumber(atom2);
+
+                if (!tmp.contains(idx1)) tmp.add(idx1);
+                if (!tmp.contains(idx2)) tmp.add(idx2);
+            }
+            if (tmp.size() > 0) atomMapping.add(tmp);
+
+            // If there is only one bond, check if it matches both ways.
+            if (list.size() == 1 && atom1.getAtomicNumber() == atom2.getAtomicNumber()) {
+                List<Integer> tmp2 = new ArrayList<Integer>();
+                tmp2.add(tmp.get(0));
+                tmp2.add(tmp.get(1));
+                atomMapping.add(tmp2);
+            }
+        }
+
+
+        return atomMapping;
+    }
+
+    /**
+     * A prepared target molecule, which is not kept from being garbage
+     * collected, and the perception state it was prepared with.
+     */
+    private static class PreparedTarget {
+
+        final WeakReference<IAtomContainer> target;
+        final PerceptionState state;
+
+        PreparedTarget(IAtomContainer atomContainer, PerceptionState state) {
+            target = new WeakReference<IAtomContainer>(atomContainer);
+            this.state = state;
+        }
+    }
+
+    /**
+     * The atom, bond, aromatic atom and element counts of a target molecule,
+     * which are taken once and compared with the requirements of each query.
+     */
+    static class TargetCounts {
+
+        final int atomCount;
+        final int bondCount;
+        final int aromaticCount;
+        private final Map<String, Integer> elementCounts = new HashMap<String, Integer>();
+
+        TargetCounts(IAtomContainer atomContainer) {
+            atomCount = atomContainer.getAtomCount();
+            bondCount = atomContainer.getBondCount();
+            int aromatic = 0;
+            for (IAtom atom : atomContainer.atoms()) {
+                Integer count = elementCounts.get(atom.getSymbol());
+                elementCounts.put(atom.getSymbol(), count == null ? 1 : count + 1);
+                if (atom.getFlag(CDKConstants.ISAROMATIC)) aromatic++;
+            }
+            aromaticCount = aromatic;
+        }
+
+        int getElementCount(String element) {
+            Integer count = elementCounts.get(element);
+            return count == null ? 0 : count;
+        }
+    }
+}
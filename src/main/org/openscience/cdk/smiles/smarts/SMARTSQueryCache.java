@@ -0,0 +1,204 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+/**
+ * Process-wide cache of compiled {@link SMARTSQuery}s, keyed by their SMARTS
+ * pattern. The cache is shared by all {@link SMARTSQueryTool}s, so that
+ * fingerprinters and descriptors that match the same patterns over and over
+ * parse each pattern only once. The least recently used queries are evicted
+ * when the cache is full.
+ *
+ * <p>The cache may be used by several threads at once. Patterns are parsed
+ * outside the lock of the cache, so a slow pattern does not block lookups
+ * of other patterns.
+ *
+ * @cdk.module  smarts
+ * @cdk.githash
+ * @cdk.keyword SMARTS
+ */
+@TestClass("org.openscience.cdk.smiles.smarts.SMARTSQueryCacheTest")
+public class SMARTSQueryCache {
+
+    /** The default maximum number of cached queries. */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final SMARTSQueryCache instance = new SMARTSQueryCache(DEFAULT_MAX_SIZE);
+
+    private int maxSize;
+    private final Map<String, SMARTSQuery> queries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache separate from the shared instance.
+     *
+     * @param maxSize the maximum number of cached queries
+     */
+    @TestMethod("testSMARTSQueryCache_int,testSMARTSQueryCache_Zero")
+    public SMARTSQueryCache(int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        this.maxSize = maxSize;
+        this.queries = new LinkedHashMap<String, SMARTSQuery>(16, .75F, true) {
+            private static final long serialVersionUID = 1L;
+            protected boolean removeEldestEntry(Map.Entry<String, SMARTSQuery> eldest) {
+                if (size() > SMARTSQueryCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all users in this process.
+     *
+     * @return the shared cache
+     */
+    @TestMethod("testGetInstance")
+    public static SMARTSQueryCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the compiled query for a SMARTS pattern, parsing the pattern if
+     * it is not in the cache.
+     *
+     * @param  smarts                   the SMARTS pattern
+     * @return                          the compiled query
+     * @throws IllegalArgumentException if the SMARTS pattern cannot be parsed
+     */
+    @TestMethod("testGet_String,testGet_Concurrent")
+    public SMARTSQuery get(String smarts) {
+        SMARTSQuery query;
+        synchronized (queries) {
+            query = queries.get(smarts);
+        }
+        if (query != null) {
+            hits.incrementAndGet();
+            return query;
+        }
+        misses.incrementAndGet();
+        query = new SMARTSQuery(smarts);
+        synchronized (queries) {
+            // another thread may have parsed the same pattern meanwhile
+            SMARTSQuery cached = queries.get(smarts);
+            if (cached != null) return cached;
+            queries.put(smarts, query);
+        }
+        return query;
+    }
+
+    /**
+     * Sets the maximum number of cached queries, evicting the least recently
+     * used queries if the cache holds more.
+     *
+     * @param maxSize the maximum number of cached queries
+     */
+    @TestMethod("testSetMaxSize_int")
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        synchronized (queries) {
+            this.maxSize = maxSize;
+            Iterator<String> keys = queries.keySet().iterator();
+            while (queries.size() > maxSize) {
+                keys.next();
+                keys.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of cached queries.
+     *
+     * @return the maximum number of cached queries
+     */
+    @TestMethod("testGetMaxSize")
+    public int getMaxSize() {
+        synchronized (queries) {
+            return maxSize;
+        }
+    }
+
+    /**
+     * Returns the number of cached queries.
+     *
+     * @return the number of cached queries
+     */
+    @TestMethod("testGetSize")
+    public int getSize() {
+        synchronized (queries) {
+            return queries.size();
+        }
+    }
+
+    /**
+     * Removes all queries from the cache. The statistics are kept.
+     */
+    @TestMethod("testClear")
+    public void clear() {
+        synchronized (queries) {
+            queries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found the query in the cache.
+     *
+     * @return the number of cache hits
+     */
+    @TestMethod("testGetHitCount")
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to parse the pattern.
+     *
+     * @return the number of cache misses
+     */
+    @TestMethod("testGetMissCount")
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of queries removed because the cache was full.
+     *
+     * @return the number of evicted queries
+     */
+    @TestMethod("testGetEvictionCount")
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+}
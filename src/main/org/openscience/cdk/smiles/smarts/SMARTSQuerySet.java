@@ -0,0 +1,141 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * A fixed set of SMARTS patterns, such as the keys of a structural
+ * fingerprint, which are matched against a target molecule in one pass.
+ * The set is built once and may be shared by several threads:
+ * <pre>
+ * SMARTSQuerySet keys = new SMARTSQuerySet(new String[]{"[OX2H]c", "C=O"});
+ * SMARTSQuery.prepare(molecule);
+ * BitSet present = keys.matches(molecule);
+ * </pre>
+ *
+ * <p>The target molecule is prepared once by the caller, and its atom,
+ * bond and element counts are taken once per pass. Patterns that need more
+ * atoms of some kind than the molecule has are skipped without an
+ * isomorphism search, and the search for the other patterns stops at the
+ * first match.
+ *
+ * @cdk.module  smarts
+ * @cdk.githash
+ * @cdk.keyword SMARTS
+ * @cdk.keyword fingerprint
+ * @see SMARTSQuery
+ */
+@TestClass("org.openscience.cdk.smiles.smarts.SMARTSQuerySetTest")
+public class SMARTSQuerySet {
+
+    private final SMARTSQuery[] queries;
+
+    /**
+     * Creates a set of the given patterns, taking the compiled queries from
+     * the shared {@link SMARTSQueryCache}.
+     *
+     * @param  smarts                   the SMARTS patterns
+     * @throws IllegalArgumentException if a SMARTS pattern cannot be parsed
+     */
+    @TestMethod("testSMARTSQuerySet_arrayString,testSMARTSQuerySet_Invalid")
+    public SMARTSQuerySet(String[] smarts) {
+        queries = new SMARTSQuery[smarts.length];
+        for (int i = 0; i < smarts.length; i++) {
+            queries[i] = SMARTSQueryCache.getInstance().get(smarts[i]);
+        }
+    }
+
+    /**
+     * Creates a set of the given patterns, taking the compiled queries from
+     * the shared {@link SMARTSQueryCache}.
+     *
+     * @param  smarts                   the SMARTS patterns
+     * @throws IllegalArgumentException if a SMARTS pattern cannot be parsed
+     */
+    @TestMethod("testSMARTSQuerySet_List")
+    public SMARTSQuerySet(List<String> smarts) {
+        this(smarts.toArray(new String[smarts.size()]));
+    }
+
+    /**
+     * Returns the number of patterns in this set.
+     *
+     * @return the number of patterns
+     */
+    @TestMethod("testSize")
+    public int size() {
+        return queries.length;
+    }
+
+    /**
+     * Returns the compiled query of a pattern.
+     *
+     * @param  index the index of the pattern
+     * @return       the compiled query
+     */
+    @TestMethod("testGetQuery_int")
+    public SMARTSQuery getQuery(int index) {
+        return queries[index];
+    }
+
+    /**
+     * Checks which patterns are present in the target molecule.
+     *
+     * @param  atomContainer the target molecule, prepared with {@link SMARTSQuery#prepare(IAtomContainer)}
+     * @return               the indices of the patterns found in the target molecule
+     * @throws CDKException  if there is an error in isomorphism perception
+     */
+    @TestMethod("testMatches_IAtomContainer")
+    public BitSet matches(IAtomContainer atomContainer) throws CDKException {
+        SMARTSQuery.TargetCounts counts = new SMARTSQuery.TargetCounts(atomContainer);
+        BitSet present = new BitSet(queries.length);
+        for (int i = 0; i < queries.length; i++) {
+            if (queries[i].matches(atomContainer, counts)) present.set(i);
+        }
+        return present;
+    }
+
+    /**
+     * Counts the unique matches of each pattern in the target molecule. See
+     * {@link SMARTSQuery#getUniqueMatchingAtoms(IAtomContainer)}.
+     *
+     * @param  atomContainer the target molecule, prepared with {@link SMARTSQuery#prepare(IAtomContainer)}
+     * @return               the number of unique matches of each pattern
+     * @throws CDKException  if there is an error in isomorphism perception
+     */
+    @TestMethod("testCountUniqueMatches_IAtomContainer")
+    public int[] countUniqueMatches(IAtomContainer atomContainer) throws CDKException {
+        SMARTSQuery.TargetCounts counts = new SMARTSQuery.TargetCounts(atomContainer);
+        int[] matches = new int[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            matches[i] = SMARTSQuery.getUniqueMappings(
+                queries[i].getMatchingAtoms(atomContainer, counts)
+            ).size();
+        }
+        return matches;
+    }
+
+}
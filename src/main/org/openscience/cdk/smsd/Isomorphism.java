@@ -49,10 +49,10 @@ import org.openscience.cdk.smsd.algorithm.vflib.VFlibMCSHandler;
 import org.openscience.cdk.smsd.algorithm.vflib.VFlibSubStructureHandler;
 import org.openscience.cdk.smsd.algorithm.vflib.VFlibTurboHandler;
 import org.openscience.cdk.smsd.filters.ChemicalFilters;
-import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.interfaces.AbstractMCS;
 import org.openscience.cdk.smsd.interfaces.Algorithm;
 import org.openscience.cdk.smsd.tools.MolHandler;
+import org.openscience.cdk.smsd.tools.SearchContext;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
@@ -182,6 +182,8 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
     private double bondInSensitiveTimeOut = 1.00;//mins
     private boolean subGraph = false;
     private boolean matchBonds = false;
+    private SearchContext searchContext = null;
+    private SearchContext nextSearchContext = null;
 
     /**
      * This is the algorithm factory and entry port for all the MCS algorithm in the Isomorphism
@@ -206,12 +208,13 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         allBondMCS = new ArrayList<Map<IBond, IBond>>();
         firstBondMCS = new HashMap<IBond, IBond>();
 
-        setTime(bondTypeFlag);
         setMatchBonds(bondTypeFlag);
     }
 
     private synchronized void mcsBuilder(MolHandler mol1, MolHandler mol2) {
 
+        startSearch();
+
         int rBondCount = mol1.getMolecule().getBondCount();
         int pBondCount = mol2.getMolecule().getBondCount();
 
@@ -234,6 +237,8 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private synchronized void mcsBuilder(IQueryAtomContainer mol1, IAtomContainer mol2) {
 
+        startSearch();
+
         int rBondCount = mol1.getBondCount();
         int pBondCount = mol2.getBondCount();
 
@@ -331,7 +336,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private synchronized void cdkMCSAlgorithm() {
         CDKMCSHandler mcs = null;
-        mcs = new CDKMCSHandler();
+        mcs = new CDKMCSHandler(searchContext);
 
         if (queryMol == null) {
             mcs.set(rMol, pMol);
@@ -352,7 +357,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private synchronized void cdkSubgraphAlgorithm() {
         CDKSubGraphHandler mcs = null;
-        mcs = new CDKSubGraphHandler();
+        mcs = new CDKSubGraphHandler(searchContext);
 
         if (queryMol == null) {
             mcs.set(rMol, pMol);
@@ -374,7 +379,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private synchronized void mcsPlusAlgorithm() {
         MCSPlusHandler mcs = null;
-        mcs = new MCSPlusHandler();
+        mcs = new MCSPlusHandler(searchContext);
 
         if (queryMol == null) {
             mcs.set(rMol, pMol);
@@ -394,7 +399,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private void vfLibMCS() {
         VFlibMCSHandler mcs = null;
-        mcs = new VFlibMCSHandler();
+        mcs = new VFlibMCSHandler(searchContext);
         if (queryMol == null) {
             mcs.set(rMol, pMol);
         } else {
@@ -412,7 +417,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private void subStructureHandler() {
         VFlibSubStructureHandler subGraphTurboSearch = null;
-        subGraphTurboSearch = new VFlibSubStructureHandler();
+        subGraphTurboSearch = new VFlibSubStructureHandler(searchContext);
         if (queryMol == null) {
             subGraphTurboSearch.set(rMol, pMol);
         } else {
@@ -430,7 +435,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private void turboSubStructureHandler() {
         VFlibTurboHandler subGraphTurboSearch = null;
-        subGraphTurboSearch = new VFlibTurboHandler();
+        subGraphTurboSearch = new VFlibTurboHandler(searchContext);
         if (queryMol == null) {
             subGraphTurboSearch.set(rMol, pMol);
         } else {
@@ -508,11 +513,13 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
             if (isMatchBonds()) {
                 cdkMCSAlgorithm();
                 if (getFirstMapping() == null || isTimeOut()) {
+                    searchContext.restart();
                     vfLibMCS();
                 }
             } else {
                 mcsPlusAlgorithm();
                 if (getFirstMapping() == null || isTimeOut()) {
+                    searchContext.restart();
                     vfLibMCS();
                 }
             }
@@ -526,6 +533,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
             if (rBondCount > 0 && pBondCount > 0) {
                 cdkSubgraphAlgorithm();
                 if (getFirstMapping() == null || isTimeOut()) {
+                    searchContext.restart();
                     subStructureHandler();
                 }
             } else {
@@ -552,22 +560,62 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         vfLibMCS();
     }
 
-    private void setTime(boolean bondTypeFlag) {
-        if (bondTypeFlag) {
-            TimeOut tmo = TimeOut.getInstance();
-            tmo.setTimeOut(getBondSensitiveTimeOut());
+    /**
+     * Creates the search context of the next search, with the bond sensitive
+     * or insensitive timeout, unless one was given to
+     * {@link #setSearchContext(SearchContext)}.
+     */
+    private void startSearch() {
+        if (nextSearchContext != null) {
+            searchContext = nextSearchContext;
+            nextSearchContext = null;
         } else {
-            TimeOut tmo = TimeOut.getInstance();
-            tmo.setTimeOut(getBondInSensitiveTimeOut());
+            searchContext = new SearchContext(isMatchBonds() ? getBondSensitiveTimeOut() : getBondInSensitiveTimeOut());
         }
     }
 
+    /**
+     * Sets the timeout, node limit and cancellation token for the next call
+     * of init(). By default each search gets a new {@link SearchContext} with
+     * the bond sensitive or insensitive timeout. Searches of different
+     * Isomorphism instances are independent, and may run concurrently.
+     *
+     * @param searchContext the context of the next search
+     */
+    @TestMethod("testSetSearchContext")
+    public void setSearchContext(SearchContext searchContext) {
+        this.nextSearchContext = searchContext;
+    }
+
+    /**
+     * Returns the context of the last search, with the number of nodes
+     * explored and the time to the first mapping.
+     *
+     * @return the context of the last search, or null before init() is called
+     */
+    @TestMethod("testSetSearchContext")
+    public SearchContext getSearchContext() {
+        return searchContext;
+    }
+
+    /**
+     * Returns true if the last stage of the last search timed out, or was
+     * stopped otherwise, and the mappings may be incomplete.
+     *
+     * @return true if the search timed out
+     */
+    @TestMethod("testSetSearchContext")
     public boolean isTimeOut() {
-        return TimeOut.getInstance().isTimeOutFlag();
+        return searchContext != null && searchContext.isTimeOut();
     }
 
+    /**
+     * Resets the timeout of the last search.
+     */
     public void resetTimeOut() {
-        TimeOut.getInstance().setTimeOutFlag(false);
+        if (searchContext != null) {
+            searchContext.restart();
+        }
     }
 
     private void clearMaps() {
@@ -35,6 +35,7 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.cdk.smsd.helper.BinaryTree;
+import org.openscience.cdk.smsd.tools.SearchContext;
 
 /**
  * Class which reports MCS solutions based on the McGregor algorithm
@@ -71,6 +72,7 @@ public final class McGregor {
     };
     private boolean newMatrix = false;
     private boolean bondMatch = false;
+    private SearchContext searchContext = null;
 
     /**
      * Constructor for the McGregor algorithm.
@@ -80,7 +82,22 @@ public final class McGregor {
      * @param shouldMatchBonds 
      */
     public McGregor(IAtomContainer source, IAtomContainer target, List<List<Integer>> _mappings, boolean shouldMatchBonds) {
+        this(source, target, _mappings, shouldMatchBonds, new SearchContext());
+    }
+
+    /**
+     * Constructor for the McGregor algorithm, which stops extending the
+     * mappings when the search context times out.
+     * @param source
+     * @param target
+     * @param _mappings
+     * @param shouldMatchBonds
+     * @param searchContext the timeout, cancellation and statistics of this search
+     */
+    public McGregor(IAtomContainer source, IAtomContainer target, List<List<Integer>> _mappings, boolean shouldMatchBonds,
+            SearchContext searchContext) {
 
+        this.searchContext = searchContext;
         setBondMatch(shouldMatchBonds);
         this.source = source;
         this.target = target;
@@ -104,7 +121,21 @@ public final class McGregor {
      * @param _mappings
      */
     public McGregor(IQueryAtomContainer source, IAtomContainer target, List<List<Integer>> _mappings) {
+        this(source, target, _mappings, new SearchContext());
+    }
+
+    /**
+     * Constructor for the McGregor algorithm, which stops extending the
+     * mappings when the search context times out.
+     * @param source
+     * @param target
+     * @param _mappings
+     * @param searchContext the timeout, cancellation and statistics of this search
+     */
+    public McGregor(IQueryAtomContainer source, IAtomContainer target, List<List<Integer>> _mappings,
+            SearchContext searchContext) {
 
+        this.searchContext = searchContext;
         setBondMatch(true);
         this.source = source;
         this.target = target;
@@ -434,7 +465,10 @@ public final class McGregor {
 //        //check possible mappings:
         boolean furtherMappingFlag = McGregorChecks.isFurtherMappingPossible(source, target, mcGregorHelper, isBondMatch());
 
-        if (neighborBondNumA == 0 || neighborBondNumB == 0 || mappingCheckFlag || !furtherMappingFlag) {
+        searchContext.visitNode();
+        // on a timeout the mapping found so far is kept, as if it could not be extended
+        if (neighborBondNumA == 0 || neighborBondNumB == 0 || mappingCheckFlag || !furtherMappingFlag
+                || searchContext.checkTimeOut()) {
             setFinalMappings(mappedAtoms, mappedAtomCount);
             return 0;
         }
@@ -478,7 +512,7 @@ public final class McGregor {
         List<String> c_bond_setA = mcGregorHelper.getCBondSetA();
         List<String> c_bond_setB = mcGregorHelper.getCBondSetB();
 
-        while (!BESTARCS_copy.empty()) {
+        while (!BESTARCS_copy.empty() && !searchContext.isTimeOut()) {
 
             List<Integer> MARCS_vector = new ArrayList<Integer>(BESTARCS_copy.peek());
             List<Integer> new_Mapping = findMcGregorMapping(MARCS_vector, mcGregorHelper);
@@ -886,6 +920,7 @@ public final class McGregor {
                     mappings.clear();
                 }
                 mappings.add(mapped_atoms);
+                searchContext.mappingFound();
 //                    System.out.println("mappings " + mappings);
             }
         } catch (Exception ex) {
@@ -28,7 +28,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
 import org.openscience.cdk.annotations.TestClass;
-import org.openscience.cdk.smsd.tools.TimeManager;
+import org.openscience.cdk.smsd.global.TimeOut;
+import org.openscience.cdk.smsd.tools.SearchContext;
 
 /**
  * This class implements Bron-Kerbosch clique detection algorithm as it is
@@ -54,6 +55,7 @@ public class BKKCKCF {
     private List<Integer> compGraphNodes = null;
     private double dEdgeIterationSize = 0;
     private double cEdgeIterationSize = 0;
+    private SearchContext searchContext = null;
 
     /**
      * Creates index new instance of Bron Kerbosch Cazals Karande Koch Clique Finder
@@ -66,7 +68,20 @@ public class BKKCKCF {
      * @param D_edges_org D-Edges set of prohibited edges
      */
     protected BKKCKCF(List<Integer> comp_graph_nodes_org, List<Integer> C_edges_org, List<Integer> D_edges_org) {
-        MCSPlus.setTimeManager(new TimeManager());
+        this(comp_graph_nodes_org, C_edges_org, D_edges_org, new SearchContext(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     * Creates a new instance of the clique finder, which stops enumerating
+     * cliques when the search context times out.
+     * @param comp_graph_nodes_org
+     * @param C_edges_org C-Edges set of allowed edges
+     * @param D_edges_org D-Edges set of prohibited edges
+     * @param searchContext the timeout, cancellation and statistics of this search
+     */
+    protected BKKCKCF(List<Integer> comp_graph_nodes_org, List<Integer> C_edges_org, List<Integer> D_edges_org,
+            SearchContext searchContext) {
+        this.searchContext = searchContext;
         this.compGraphNodes = comp_graph_nodes_org;
         this.cEdges = C_edges_org;
         this.dEdges = D_edges_org;
@@ -211,7 +226,8 @@ public class BKKCKCF {
         int index = 0;
         List<Integer> neighbourVertex = new ArrayList<Integer>(); ////Initialization ArrayList neighbourVertex
 
-        while (potentialVertex.get(index) != 0) {
+        while (potentialVertex.get(index) != 0 && !searchContext.checkTimeOut()) {
+            searchContext.visitNode();
             int potentialVertexIndex = potentialVertex.get(index);
 
             potentialCVertex.removeElement(potentialVertexIndex);
@@ -419,7 +435,7 @@ public class BKKCKCF {
         List<Integer> neighbourVertex = new ArrayList<Integer>();
 
         int index = 0;
-        while (vertex.get(index) != 0) {
+        while (vertex.get(index) != 0 && !searchContext.checkTimeOut()) {
             int central_node = vertex.get(index);
             potentialCVertex.clear();
             potentialDVertex.clear();
@@ -33,7 +33,7 @@ import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.smsd.algorithm.mcgregor.McGregor;
 import org.openscience.cdk.smsd.global.TimeOut;
-import org.openscience.cdk.smsd.tools.TimeManager;
+import org.openscience.cdk.smsd.tools.SearchContext;
 
 /**
  * This class handles MCS plus algorithm which is a combination of
@@ -45,35 +45,21 @@ import org.openscience.cdk.smsd.tools.TimeManager;
 @TestClass("org.openscience.cdk.smsd.SMSDBondSensitiveTest")
 public class MCSPlus {
 
+    private final SearchContext searchContext;
+
     /**
-    * Default constructor added 
+    * Default constructor added, using the default timeout of {@link TimeOut}.
     */
     public MCSPlus(){
-        
+        this(new SearchContext(TimeOut.getInstance().getTimeOut()));
     }
 
-    private static TimeManager timeManager = null;
-
     /**
-     * @return the timeout
+     * Creates the MCS plus search with the given limits.
+     * @param searchContext the timeout, cancellation and statistics of this search
      */
-    protected synchronized static double getTimeout() {
-        return TimeOut.getInstance().getTimeOut();
-    }
-
-    /**
-     * @return the timeManager
-     */
-    protected synchronized static TimeManager getTimeManager() {
-        return timeManager;
-    }
-
-    /**
-     * @param aTimeManager the timeManager to set
-     */
-    protected synchronized static void setTimeManager(TimeManager aTimeManager) {
-        TimeOut.getInstance().setTimeOutFlag(false);
-        timeManager = aTimeManager;
+    public MCSPlus(SearchContext searchContext) {
+        this.searchContext = searchContext;
     }
 
     /**
@@ -98,7 +84,7 @@ public class MCSPlus {
 //            System.err.println("C_edges: " + C_edges.size());
 //            System.out.println("D_edges: " + D_edges.size());
 
-            BKKCKCF init = new BKKCKCF(comp_graph_nodes, C_edges, D_edges);
+            BKKCKCF init = new BKKCKCF(comp_graph_nodes, C_edges, D_edges, searchContext);
             maxCliqueSet = init.getMaxCliqueSet();
 
 //            System.err.println("**************************************************");
@@ -111,15 +97,16 @@ public class MCSPlus {
                 List<Integer> clique_List = maxCliqueSet.peek();
                 int clique_size = clique_List.size();
                 if (clique_size < ac1.getAtomCount() && clique_size < ac2.getAtomCount()) {
-                    McGregor mgit = new McGregor(ac1, ac2, mappings, shouldMatchBonds);
+                    McGregor mgit = new McGregor(ac1, ac2, mappings, shouldMatchBonds, searchContext);
                     mgit.startMcGregorIteration(mgit.getMCSSize(), clique_List, comp_graph_nodes);
                     mappings = mgit.getMappings();
                     mgit = null;
                 } else {
                     mappings = ExactMapping.extractMapping(mappings, comp_graph_nodes, clique_List);
+                    searchContext.mappingFound();
                 }
                 maxCliqueSet.pop();
-                if (isTimeOut()) {
+                if (searchContext.checkTimeOut()) {
                     break;
                 }
             }
@@ -129,11 +116,13 @@ public class MCSPlus {
         return mappings;
     }
 
-    public synchronized static boolean isTimeOut() {
-        if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
-            TimeOut.getInstance().setTimeOutFlag(true);
-            return true;
-        }
-        return false;
+    /**
+     * @return the timeout flag of {@link TimeOut}
+     * @deprecated each search has its own {@link SearchContext}; use
+     *             {@link SearchContext#isTimeOut()}
+     */
+    @Deprecated
+    public static boolean isTimeOut() {
+        return TimeOut.getInstance().isTimeOutFlag();
     }
 }
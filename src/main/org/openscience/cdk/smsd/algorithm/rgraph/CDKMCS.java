@@ -71,6 +71,7 @@ import org.openscience.cdk.smsd.algorithm.matchers.DefaultBondMatcher;
 import org.openscience.cdk.smsd.algorithm.matchers.DefaultMatcher;
 import org.openscience.cdk.smsd.algorithm.matchers.DefaultRGraphAtomMatcher;
 import org.openscience.cdk.smsd.global.TimeOut;
+import org.openscience.cdk.smsd.tools.SearchContext;
 import org.openscience.cdk.smsd.tools.TimeManager;
 import org.openscience.cdk.tools.manipulator.BondManipulator;
 
@@ -245,6 +246,22 @@ public class CDKMCS {
         return search(sourceGraph, targetGraph, getBitSet(sourceGraph), getBitSet(targetGraph), true, true, shouldMatchBonds);
     }
 
+    /**
+     * Returns all the isomorph 'mappings' found between two
+     * atom containers, within the limits of the given search context.
+     *
+     * @param  sourceGraph  first molecule. Must not be an IQueryAtomContainer.
+     * @param  targetGraph  second molecule. May be an IQueryAtomContainer.
+     * @param shouldMatchBonds
+     * @param searchContext the timeout, cancellation and statistics of this search
+     * @return     the list of all the 'mappings'
+     * @throws CDKException
+     */
+    public static List<List<CDKRMap>> getIsomorphMaps(IAtomContainer sourceGraph, IAtomContainer targetGraph, boolean shouldMatchBonds,
+            SearchContext searchContext) throws CDKException {
+        return search(sourceGraph, targetGraph, getBitSet(sourceGraph), getBitSet(targetGraph), true, true, shouldMatchBonds, searchContext);
+    }
+
     /////
     // Subgraph search
     /**
@@ -261,6 +278,22 @@ public class CDKMCS {
         return search(sourceGraph, targetGraph, new BitSet(), getBitSet(targetGraph), true, true, shouldMatchBonds);
     }
 
+    /**
+     * Returns all the subgraph 'bondA1 mappings' found for targetGraph in sourceGraph,
+     * within the limits of the given search context.
+     *
+     * @param  sourceGraph  first molecule. Must not be an IQueryAtomContainer.
+     * @param  targetGraph  second molecule. May be an IQueryAtomContainer.
+     * @param shouldMatchBonds
+     * @param searchContext the timeout, cancellation and statistics of this search
+     * @return     the list of all the 'mappings' found projected of sourceGraph
+     * @throws CDKException
+     */
+    public static List<List<CDKRMap>> getSubgraphMaps(IAtomContainer sourceGraph, IAtomContainer targetGraph, boolean shouldMatchBonds,
+            SearchContext searchContext) throws CDKException {
+        return search(sourceGraph, targetGraph, new BitSet(), getBitSet(targetGraph), true, true, shouldMatchBonds, searchContext);
+    }
+
     /**
      * Returns the first subgraph 'bondA1 mapping' found for targetGraph in sourceGraph.
      *
@@ -465,6 +498,31 @@ public class CDKMCS {
     public static List<List<CDKRMap>> search(IAtomContainer sourceGraph, IAtomContainer targetGraph,
             BitSet sourceBitSet, BitSet targetBitSet, boolean findAllStructure, boolean findAllMap,
             boolean shouldMatchBonds) throws CDKException {
+        return search(sourceGraph, targetGraph, sourceBitSet, targetBitSet, findAllStructure, findAllMap, shouldMatchBonds,
+                new SearchContext(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     * General Rgraph parsing method (usually not used directly), which stops
+     * the search when the given search context times out.
+     *
+     * @param  sourceGraph                first molecule. Must not be an IQueryAtomContainer.
+     * @param  targetGraph                second molecule. May be an IQueryAtomContainer.
+     * @param  sourceBitSet                initial condition ( bonds from sourceGraph that
+     *                           must be contains in the solution )
+     * @param  targetBitSet                initial condition ( bonds from targetGraph that
+     *                           must be contains in the solution )
+     * @param  findAllStructure  if false stop at the first structure found
+     * @param  findAllMap        if true search all the 'mappings' for one same
+     *                           structure
+     * @param shouldMatchBonds
+     * @param searchContext the timeout, cancellation and statistics of this search
+     * @return                   atom List of Lists of CDKRMap objects that represent the search solutions
+     * @throws CDKException
+     */
+    public static List<List<CDKRMap>> search(IAtomContainer sourceGraph, IAtomContainer targetGraph,
+            BitSet sourceBitSet, BitSet targetBitSet, boolean findAllStructure, boolean findAllMap,
+            boolean shouldMatchBonds, SearchContext searchContext) throws CDKException {
 
 
         // handle single query atom case separately
@@ -498,9 +556,8 @@ public class CDKMCS {
         List<List<CDKRMap>> rMapsList = new ArrayList<List<CDKRMap>>();
         // build the CDKRGraph corresponding to this problem
         CDKRGraph rGraph = buildRGraph(sourceGraph, targetGraph, shouldMatchBonds);
-        setTimeManager(new TimeManager());
         // parse the CDKRGraph with the given constrains and options
-        rGraph.parse(sourceBitSet, targetBitSet, findAllStructure, findAllMap, getTimeManager());
+        rGraph.parse(sourceBitSet, targetBitSet, findAllStructure, findAllMap, searchContext);
         List<BitSet> solutionList = rGraph.getSolutions();
 
         // conversions of CDKRGraph's internal solutions to G1/G2 mappings
@@ -1154,33 +1211,32 @@ public class CDKMCS {
 
     }
 
-    /**
-     * @return the timeout
-     */
-    protected synchronized static double getTimeout() {
-        return TimeOut.getInstance().getTimeOut();
-    }
-
     /**
      * @return the timeManager
+     * @deprecated each search has its own {@link SearchContext}
      */
+    @Deprecated
     protected synchronized static TimeManager getTimeManager() {
         return timeManager;
     }
 
     /**
      * @param aTimeManager the timeManager to set
+     * @deprecated each search has its own {@link SearchContext}, and this
+     *             time manager is no longer used by the searches
      */
+    @Deprecated
     protected synchronized static void setTimeManager(TimeManager aTimeManager) {
-        TimeOut.getInstance().setTimeOutFlag(false);
         timeManager = aTimeManager;
     }
 
-    public synchronized static boolean isTimeOut() {
-        if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
-            TimeOut.getInstance().setTimeOutFlag(true);
-            return true;
-        }
-        return false;
+    /**
+     * @return the timeout flag of {@link TimeOut}
+     * @deprecated each search has its own {@link SearchContext}; use
+     *             {@link SearchContext#isTimeOut()}
+     */
+    @Deprecated
+    public static boolean isTimeOut() {
+        return TimeOut.getInstance().isTimeOutFlag();
     }
 }
@@ -35,6 +35,8 @@ import java.util.Iterator;
 import java.util.List;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.smsd.global.TimeOut;
+import org.openscience.cdk.smsd.tools.SearchContext;
 import org.openscience.cdk.smsd.tools.TimeManager;
 
 /**
@@ -126,6 +128,7 @@ public class CDKRGraph {
     private boolean stop = false;
     private int nbIteration = 0;
     private BitSet graphBitSet = null;
+    private SearchContext searchContext = new SearchContext();
     // -1 for infinite search and one min is 1
 
     /**
@@ -138,7 +141,7 @@ public class CDKRGraph {
     }
 
     private boolean checkTimeOut() throws CDKException {
-        if (CDKMCS.isTimeOut()) {
+        if (searchContext.checkTimeOut()) {
             setStop(true);
             return true;
         }
@@ -221,8 +224,26 @@ public class CDKRGraph {
      * @param  findAllMap true is we want all possible 'mappings'
      * @param timeManager
      * @throws CDKException
+     * @deprecated use {@link #parse(BitSet, BitSet, boolean, boolean, SearchContext)}
      */
+    @Deprecated
     public void parse(BitSet sourceBitSet, BitSet targetBitSet, boolean findAllStructure, boolean findAllMap, TimeManager timeManager) throws CDKException {
+        parse(sourceBitSet, targetBitSet, findAllStructure, findAllMap, new SearchContext(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     *  Parsing of the CDKRGraph, which stops when the given search context
+     *  times out.
+     *
+     * @param  sourceBitSet  constrain on the graph G1
+     * @param  targetBitSet  constrain on the graph G2
+     * @param  findAllStructure true if we want all results to be generated
+     * @param  findAllMap true is we want all possible 'mappings'
+     * @param  searchContext the timeout, cancellation and statistics of this search
+     * @throws CDKException
+     */
+    public void parse(BitSet sourceBitSet, BitSet targetBitSet, boolean findAllStructure, boolean findAllMap, SearchContext searchContext) throws CDKException {
+        this.searchContext = searchContext;
         // initialize the list of solution
         checkTimeOut();
         // initialize the list of solution
@@ -256,6 +277,7 @@ public class CDKRGraph {
         BitSet newForbidden = null;
         BitSet potentialNode = null;
 
+        searchContext.visitNode();
         checkTimeOut();
 
         // if there is no more extension possible we
@@ -361,6 +383,7 @@ public class CDKRGraph {
                 // if maxIterator is really a new solution add maxIterator to the
                 // list of current solution
                 getSolutionList().add(traversed);
+                searchContext.mappingFound();
             }
 
             if (!isFindAllStructure()) {
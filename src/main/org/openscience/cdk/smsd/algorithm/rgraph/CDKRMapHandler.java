@@ -34,7 +34,9 @@ import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.helper.FinalMappings;
+import org.openscience.cdk.smsd.tools.SearchContext;
 import org.openscience.cdk.tools.manipulator.BondManipulator;
 
 /**
@@ -54,7 +56,15 @@ public class CDKRMapHandler {
 
 
     public CDKRMapHandler(){
-        
+        this(new SearchContext(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     * Creates the handler for a search with the given limits.
+     * @param searchContext the timeout, cancellation and statistics of this search
+     */
+    public CDKRMapHandler(SearchContext searchContext) {
+        this.searchContext = searchContext;
     }
     /**
      * Returns source molecule
@@ -91,6 +101,7 @@ public class CDKRMapHandler {
     private static IAtomContainer source;
     private static IAtomContainer target;
     private boolean timeoutFlag = false;
+    private SearchContext searchContext = null;
 
     /**
      * This function calculates all the possible combinations of MCS
@@ -107,28 +118,28 @@ public class CDKRMapHandler {
         setMappings(new ArrayList<Map<Integer, Integer>>());
 
 
-        if ((getSource().getAtomCount() == 1) || (getTarget().getAtomCount() == 1)) {
-            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(getSource(), getTarget());
+        if ((Molecule1.getAtomCount() == 1) || (Molecule2.getAtomCount() == 1)) {
+            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(Molecule1, Molecule2);
             int nAtomsMatched = overlaps.size();
             nAtomsMatched = (nAtomsMatched > 0) ? 1 : 0;
             if (nAtomsMatched > 0) {
                 /*UnComment this to get one Unique Mapping*/
                 //List reducedList = removeRedundantMappingsForSingleAtomCase(overlaps);
                 //int counter = 0;
-                identifySingleAtomsMatchedParts(overlaps, getSource(), getTarget());
+                identifySingleAtomsMatchedParts(overlaps, Molecule1, Molecule2);
 
             }
 
         } else {
-            List<List<CDKRMap>> overlaps = CDKMCS.search(getSource(), getTarget(), new BitSet(), new BitSet(), true, true, shouldMatchBonds);
+            List<List<CDKRMap>> overlaps = CDKMCS.search(Molecule1, Molecule2, new BitSet(), new BitSet(), true, true, shouldMatchBonds, searchContext);
 
             List<List<CDKRMap>> reducedList = removeSubGraph(overlaps);
             Stack<List<CDKRMap>> allMaxOverlaps = getAllMaximum(reducedList);
             while (!allMaxOverlaps.empty()) {
 //                System.out.println("source: " + source.getAtomCount() + ", target: " + target.getAtomCount() + ", overl: " + allMaxOverlaps.peek().size());
-                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), getSource(), getTarget());
+                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), Molecule1, Molecule2);
 //                System.out.println("size of maxOverlaps: " + maxOverlapsAtoms.size());
-                identifyMatchedParts(maxOverlapsAtoms, getSource(), getTarget());
+                identifyMatchedParts(maxOverlapsAtoms, Molecule1, Molecule2);
 //                identifyMatchedParts(allMaxOverlaps.peek(), source, target);
                 allMaxOverlaps.pop();
             }
@@ -157,26 +168,26 @@ public class CDKRMapHandler {
         //System.out.println("Searching: ");
         //List overlaps = UniversalIsomorphismTesterBondTypeInSensitive.getSubgraphAtomsMap(source, target);
 
-        if ((getSource().getAtomCount() == 1) || (getTarget().getAtomCount() == 1)) {
+        if ((Molecule1.getAtomCount() == 1) || (Molecule2.getAtomCount() == 1)) {
 
-            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(getSource(), getTarget());
+            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(Molecule1, Molecule2);
             int nAtomsMatched = overlaps.size();
             nAtomsMatched = (nAtomsMatched > 0) ? 1 : 0;
             if (nAtomsMatched > 0) {
-                identifySingleAtomsMatchedParts(overlaps, getSource(), getTarget());
+                identifySingleAtomsMatchedParts(overlaps, Molecule1, Molecule2);
             }
 
         } else {
 
             List<List<CDKRMap>> overlaps =
-                    CDKMCS.search(getSource(), getTarget(), new BitSet(), new BitSet(), true, true, shouldMatchBonds);
+                    CDKMCS.search(Molecule1, Molecule2, new BitSet(), new BitSet(), true, true, shouldMatchBonds, searchContext);
 
             List<List<CDKRMap>> reducedList = removeSubGraph(overlaps);
             Stack<List<CDKRMap>> allMaxOverlaps = getAllMaximum(reducedList);
 
             while (!allMaxOverlaps.empty()) {
-                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), getSource(), getTarget());
-                identifyMatchedParts(maxOverlapsAtoms, getSource(), getTarget());
+                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), Molecule1, Molecule2);
+                identifyMatchedParts(maxOverlapsAtoms, Molecule1, Molecule2);
                 allMaxOverlaps.pop();
             }
         }
@@ -202,26 +213,26 @@ public class CDKRMapHandler {
         //System.out.println("Searching: ");
         //List overlaps = UniversalIsomorphismTesterBondTypeInSensitive.getSubgraphAtomsMap(source, target);
 
-        if ((getSource().getAtomCount() == 1) || (getTarget().getAtomCount() == 1)) {
+        if ((Molecule1.getAtomCount() == 1) || (Molecule2.getAtomCount() == 1)) {
 
-            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(getSource(), getTarget());
+            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(Molecule1, Molecule2);
             int nAtomsMatched = overlaps.size();
             nAtomsMatched = (nAtomsMatched > 0) ? 1 : 0;
             if (nAtomsMatched > 0) {
-                identifySingleAtomsMatchedParts(overlaps, getSource(), getTarget());
+                identifySingleAtomsMatchedParts(overlaps, Molecule1, Molecule2);
             }
 
         } else {
 
             List<List<CDKRMap>> overlaps =
-                    CDKMCS.getSubgraphMaps(getSource(), getTarget(), shouldMatchBonds);
+                    CDKMCS.getSubgraphMaps(Molecule1, Molecule2, shouldMatchBonds, searchContext);
 
             List<List<CDKRMap>> reducedList = removeSubGraph(overlaps);
             Stack<List<CDKRMap>> allMaxOverlaps = getAllMaximum(reducedList);
 
             while (!allMaxOverlaps.empty()) {
-                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), getSource(), getTarget());
-                identifyMatchedParts(maxOverlapsAtoms, getSource(), getTarget());
+                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), Molecule1, Molecule2);
+                identifyMatchedParts(maxOverlapsAtoms, Molecule1, Molecule2);
                 allMaxOverlaps.pop();
             }
         }
@@ -247,26 +258,26 @@ public class CDKRMapHandler {
         //System.out.println("Searching: ");
         //List overlaps = UniversalIsomorphismTesterBondTypeInSensitive.getSubgraphAtomsMap(source, target);
 
-        if ((getSource().getAtomCount() == 1) || (getTarget().getAtomCount() == 1)) {
+        if ((Molecule1.getAtomCount() == 1) || (Molecule2.getAtomCount() == 1)) {
 
-            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(getSource(), getTarget());
+            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(Molecule1, Molecule2);
             int nAtomsMatched = overlaps.size();
             nAtomsMatched = (nAtomsMatched > 0) ? 1 : 0;
             if (nAtomsMatched > 0) {
-                identifySingleAtomsMatchedParts(overlaps, getSource(), getTarget());
+                identifySingleAtomsMatchedParts(overlaps, Molecule1, Molecule2);
             }
 
         } else {
 
             List<List<CDKRMap>> overlaps =
-                    CDKMCS.getIsomorphMaps(getSource(), getTarget(), shouldMatchBonds);
+                    CDKMCS.getIsomorphMaps(Molecule1, Molecule2, shouldMatchBonds, searchContext);
 
             List<List<CDKRMap>> reducedList = removeSubGraph(overlaps);
             Stack<List<CDKRMap>> allMaxOverlaps = getAllMaximum(reducedList);
 
             while (!allMaxOverlaps.empty()) {
-                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), getSource(), getTarget());
-                identifyMatchedParts(maxOverlapsAtoms, getSource(), getTarget());
+                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), Molecule1, Molecule2);
+                identifyMatchedParts(maxOverlapsAtoms, Molecule1, Molecule2);
                 allMaxOverlaps.pop();
             }
         }
@@ -477,7 +488,8 @@ public class CDKRMapHandler {
      */
     protected Stack<List<CDKRMap>> getAllMaximum(List<List<CDKRMap>> overlaps) {
 
-        Stack<List<CDKRMap>> allMaximumMappings = null;
+        // empty if the search was stopped before any overlap was found
+        Stack<List<CDKRMap>> allMaximumMappings = new Stack<List<CDKRMap>>();
 
         int count = -1;
 
@@ -37,10 +37,11 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IMoleculeSet;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
-import org.openscience.cdk.smsd.helper.FinalMappings;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.interfaces.AbstractSubGraph;
 import org.openscience.cdk.smsd.interfaces.IMCSBase;
 import org.openscience.cdk.smsd.tools.MolHandler;
+import org.openscience.cdk.smsd.tools.SearchContext;
 
 /**
  * This class acts as a handler class for CDKMCS algorithm
@@ -54,6 +55,7 @@ import org.openscience.cdk.smsd.tools.MolHandler;
 public class CDKSubGraphHandler extends AbstractSubGraph implements IMCSBase {
 
 //    //~--- fields -------------------------------------------------------------
+    private SearchContext searchContext = null;
     private IAtomContainer source;
     private IAtomContainer target;
     private boolean rOnPFlag = false;
@@ -67,6 +69,15 @@ public class CDKSubGraphHandler extends AbstractSubGraph implements IMCSBase {
      * Creates a new instance of MappingHandler
      */
     public CDKSubGraphHandler() {
+        this(new SearchContext(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     * Creates the handler for a search with the given limits.
+     * @param searchContext the timeout, cancellation and statistics of this search
+     */
+    public CDKSubGraphHandler(SearchContext searchContext) {
+        this.searchContext = searchContext;
 
         this.allAtomMCS = new ArrayList<Map<IAtom, IAtom>>();
         this.firstAtomMCS = new HashMap<IAtom, IAtom>();
@@ -104,7 +115,7 @@ public class CDKSubGraphHandler extends AbstractSubGraph implements IMCSBase {
     @TestMethod("testSearchMCS")
     public boolean isSubgraph(boolean shouldMatchBonds) {
 
-        CDKRMapHandler rmap = new CDKRMapHandler();
+        CDKRMapHandler rmap = new CDKRMapHandler(searchContext);
 
         try {
 
@@ -121,7 +132,7 @@ public class CDKSubGraphHandler extends AbstractSubGraph implements IMCSBase {
                 rmap.calculateSubGraphs(target, source, shouldMatchBonds);
             }
 
-            setAllMapping();
+            setAllMapping(rmap.getMappings());
             setAllAtomMapping();
             setFirstMapping();
             setFirstAtomMapping();
@@ -171,12 +182,11 @@ public class CDKSubGraphHandler extends AbstractSubGraph implements IMCSBase {
     }
 
     //~--- get methods --------------------------------------------------------
-    private synchronized void setAllMapping() {
+    private synchronized void setAllMapping(List<Map<Integer, Integer>> sol) {
 
         //int count_final_sol = 1;
         //System.out.println("Output of the final FinalMappings: ");
         try {
-            List<Map<Integer, Integer>> sol = FinalMappings.getInstance().getFinalMapping();
             int counter = 0;
             for (Map<Integer, Integer> final_solution : sol) {
                 TreeMap<Integer, Integer> atomMappings = new TreeMap<Integer, Integer>();
@@ -43,9 +43,11 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.map.VFMCSMapper;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.interfaces.AbstractMCSAlgorithm;
 import org.openscience.cdk.smsd.interfaces.IMCSBase;
 import org.openscience.cdk.smsd.tools.MolHandler;
+import org.openscience.cdk.smsd.tools.SearchContext;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
@@ -67,12 +69,13 @@ import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 @TestClass("org.openscience.cdk.smsd.algorithm.vflib.VFlibMCSHandlerTest")
 public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
 
-    private static List<Map<IAtom, IAtom>> allAtomMCS = null;
-    private static Map<IAtom, IAtom> atomsMCS = null;
-    private static List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
-    private static Map<Integer, Integer> firstMCS = null;
-    private static List<Map<Integer, Integer>> allMCS = null;
-    private static List<Map<Integer, Integer>> allMCSCopy = null;
+    private SearchContext searchContext = null;
+    private List<Map<IAtom, IAtom>> allAtomMCS = null;
+    private Map<IAtom, IAtom> atomsMCS = null;
+    private List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
+    private Map<Integer, Integer> firstMCS = null;
+    private List<Map<Integer, Integer>> allMCS = null;
+    private List<Map<Integer, Integer>> allMCSCopy = null;
     private List<Map<INode, IAtom>> vfLibSolutions = null;
     private IQueryAtomContainer queryMol = null;
     private IAtomContainer mol1 = null;
@@ -89,6 +92,16 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
      */
     @TestMethod("setMCSAlgorithm")
     public VFlibMCSHandler() {
+        this(new SearchContext(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     * Creates the handler for a search with the given limits.
+     * @param searchContext the timeout, cancellation and statistics of this search
+     */
+    @TestMethod("setMCSAlgorithm")
+    public VFlibMCSHandler(SearchContext searchContext) {
+        this.searchContext = searchContext;
         allAtomMCS = new ArrayList<Map<IAtom, IAtom>>();
         allAtomMCSCopy = new ArrayList<Map<IAtom, IAtom>>();
         atomsMCS = new HashMap<IAtom, IAtom>();
@@ -224,7 +237,7 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
         vfLibSolutions = new ArrayList<Map<INode, IAtom>>();
         if (queryMol != null) {
             query = new QueryCompiler(queryMol).compile();
-            mapper = new VFMCSMapper(query);
+            mapper = new VFMCSMapper(query, searchContext);
             List<Map<INode, IAtom>> maps = mapper.getMaps(getProductMol());
             if (maps != null) {
                 vfLibSolutions.addAll(maps);
@@ -232,7 +245,7 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
             setVFMappings(true, query);
         } else if (countR <= countP) {
             query = new QueryCompiler(mol1, isBondMatchFlag()).compile();
-            mapper = new VFMCSMapper(query);
+            mapper = new VFMCSMapper(query, searchContext);
             List<Map<INode, IAtom>> maps = mapper.getMaps(getProductMol());
             if (maps != null) {
                 vfLibSolutions.addAll(maps);
@@ -240,7 +253,7 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
             setVFMappings(true, query);
         } else {
             query = new QueryCompiler(getProductMol(), isBondMatchFlag()).compile();
-            mapper = new VFMCSMapper(query);
+            mapper = new VFMCSMapper(query, searchContext);
             List<Map<INode, IAtom>> maps = mapper.getMaps(getReactantMol());
             if (maps != null) {
                 vfLibSolutions.addAll(maps);
@@ -262,13 +275,13 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
             Map<Integer, Integer> tMapping = new TreeMap<Integer, Integer>(firstPassMappings);
             McGregor mgit = null;
             if (queryMol != null) {
-                mgit = new McGregor(queryMol, mol2, mappings, isBondMatchFlag());
+                mgit = new McGregor(queryMol, mol2, mappings, isBondMatchFlag(), searchContext);
             } else {
                 if (countR > countP) {
-                    mgit = new McGregor(mol1, mol2, mappings, isBondMatchFlag());
+                    mgit = new McGregor(mol1, mol2, mappings, isBondMatchFlag(), searchContext);
                 } else {
                     tMapping.clear();
-                    mgit = new McGregor(mol2, mol1, mappings, isBondMatchFlag());
+                    mgit = new McGregor(mol2, mol1, mappings, isBondMatchFlag(), searchContext);
                     ROPFlag = false;
                     for (Map.Entry<Integer, Integer> map : firstPassMappings.entrySet()) {
                         tMapping.put(map.getValue(), map.getKey());
@@ -41,9 +41,11 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.map.VFMapper;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.interfaces.AbstractSubGraph;
 import org.openscience.cdk.smsd.interfaces.IMCSBase;
 import org.openscience.cdk.smsd.tools.MolHandler;
+import org.openscience.cdk.smsd.tools.SearchContext;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
@@ -66,12 +68,13 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 @TestClass("org.openscience.cdk.smsd.algorithm.vflib.VFlibTurboHandlerTest")
 public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBase {
 
-    private static List<Map<IAtom, IAtom>> allAtomMCS = null;
-    private static Map<IAtom, IAtom> atomsMCS = null;
-    private static List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
-    private static Map<Integer, Integer> firstMCS = null;
-    private static List<Map<Integer, Integer>> allMCS = null;
-    private static List<Map<Integer, Integer>> allMCSCopy = null;
+    private SearchContext searchContext = null;
+    private List<Map<IAtom, IAtom>> allAtomMCS = null;
+    private Map<IAtom, IAtom> atomsMCS = null;
+    private List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
+    private Map<Integer, Integer> firstMCS = null;
+    private List<Map<Integer, Integer>> allMCS = null;
+    private List<Map<Integer, Integer>> allMCSCopy = null;
     private IQueryAtomContainer queryMol = null;
     private IAtomContainer mol1 = null;
     private IAtomContainer mol2 = null;
@@ -86,6 +89,16 @@ public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBa
      */
     @TestMethod("setMCSAlgorithm")
     public VFlibSubStructureHandler() {
+        this(new SearchContext(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     * Creates the handler for a search with the given limits.
+     * @param searchContext the timeout, cancellation and statistics of this search
+     */
+    @TestMethod("setMCSAlgorithm")
+    public VFlibSubStructureHandler(SearchContext searchContext) {
+        this.searchContext = searchContext;
         allAtomMCS = new ArrayList<Map<IAtom, IAtom>>();
         allAtomMCSCopy = new ArrayList<Map<IAtom, IAtom>>();
         atomsMCS = new HashMap<IAtom, IAtom>();
@@ -189,7 +202,7 @@ public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBa
         vfLibSolutions = new ArrayList<Map<INode, IAtom>>();
         if (queryMol != null) {
             query = new QueryCompiler(queryMol).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, searchContext);
             if (mapper.hasMap(getProductMol())) {
                 List<Map<INode, IAtom>> maps = mapper.getMaps(getProductMol());
                 if (maps != null) {
@@ -199,7 +212,7 @@ public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBa
             setVFMappings(true, query);
         } else if (getReactantMol().getAtomCount() <= getProductMol().getAtomCount()) {
             query = new QueryCompiler(mol1, isBondMatchFlag()).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, searchContext);
             if (mapper.hasMap(getProductMol())) {
                 List<Map<INode, IAtom>> maps = mapper.getMaps(getProductMol());
                 if (maps != null) {
@@ -209,7 +222,7 @@ public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBa
             setVFMappings(true, query);
         } else {
             query = new QueryCompiler(getProductMol(), isBondMatchFlag()).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, searchContext);
             if (mapper.hasMap(getReactantMol())) {
                 List<Map<INode, IAtom>> maps = mapper.getMaps(getReactantMol());
                 if (maps != null) {
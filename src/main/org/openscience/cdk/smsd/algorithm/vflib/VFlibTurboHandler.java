@@ -42,9 +42,11 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.map.VFMapper;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.interfaces.AbstractSubGraph;
 import org.openscience.cdk.smsd.interfaces.IMCSBase;
 import org.openscience.cdk.smsd.tools.MolHandler;
+import org.openscience.cdk.smsd.tools.SearchContext;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
@@ -67,12 +69,13 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 @TestClass("org.openscience.cdk.smsd.algorithm.vflib.VFlibTurboHandlerTest")
 public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
 
-    private static List<Map<IAtom, IAtom>> allAtomMCS = null;
-    private static Map<IAtom, IAtom> atomsMCS = null;
-    private static List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
-    private static Map<Integer, Integer> firstMCS = null;
-    private static List<Map<Integer, Integer>> allMCS = null;
-    private static List<Map<Integer, Integer>> allMCSCopy = null;
+    private SearchContext searchContext = null;
+    private List<Map<IAtom, IAtom>> allAtomMCS = null;
+    private Map<IAtom, IAtom> atomsMCS = null;
+    private List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
+    private Map<Integer, Integer> firstMCS = null;
+    private List<Map<Integer, Integer>> allMCS = null;
+    private List<Map<Integer, Integer>> allMCSCopy = null;
     private IQueryAtomContainer queryMol = null;
     private IAtomContainer mol1 = null;
     private IAtomContainer mol2 = null;
@@ -87,6 +90,16 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
      */
     @TestMethod("setMCSAlgorithm")
     public VFlibTurboHandler() {
+        this(new SearchContext(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     * Creates the handler for a search with the given limits.
+     * @param searchContext the timeout, cancellation and statistics of this search
+     */
+    @TestMethod("setMCSAlgorithm")
+    public VFlibTurboHandler(SearchContext searchContext) {
+        this.searchContext = searchContext;
         allAtomMCS = new ArrayList<Map<IAtom, IAtom>>();
         allAtomMCSCopy = new ArrayList<Map<IAtom, IAtom>>();
         atomsMCS = new HashMap<IAtom, IAtom>();
@@ -195,7 +208,7 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
         vfLibSolutions = new HashMap<INode, IAtom>();
         if (queryMol != null) {
             query = new QueryCompiler(queryMol).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, searchContext);
             if (mapper.hasMap(getProductMol())) {
                 Map<INode, IAtom> map = mapper.getFirstMap(getProductMol());
                 if (map != null) {
@@ -205,7 +218,7 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
             setVFMappings(true, query);
         } else if (getReactantMol().getAtomCount() <= getProductMol().getAtomCount()) {
             query = new QueryCompiler(mol1, isBondMatchFlag()).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, searchContext);
             if (mapper.hasMap(getProductMol())) {
                 Map<INode, IAtom> map = mapper.getFirstMap(getProductMol());
                 if (map != null) {
@@ -215,7 +228,7 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
             setVFMappings(true, query);
         } else {
             query = new QueryCompiler(getProductMol(), isBondMatchFlag()).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, searchContext);
             if (mapper.hasMap(getReactantMol())) {
                 Map<INode, IAtom> map = mapper.getFirstMap(getReactantMol());
                 if (map != null) {
@@ -229,7 +242,7 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
     private void searchMcGregorMapping() throws CDKException, IOException {
         List<List<Integer>> mappings = new ArrayList<List<Integer>>();
         for (Map<Integer, Integer> firstPassMappings : allMCSCopy) {
-            McGregor mgit = new McGregor(getReactantMol(), getProductMol(), mappings, isBondMatchFlag());
+            McGregor mgit = new McGregor(getReactantMol(), getProductMol(), mappings, isBondMatchFlag(), searchContext);
             mgit.startMcGregorIteration(mgit.getMCSSize(), firstPassMappings); //Start McGregor search
             mappings = mgit.getMappings();
             mgit = null;
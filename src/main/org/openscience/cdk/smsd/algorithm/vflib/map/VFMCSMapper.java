@@ -63,7 +63,7 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IState;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
 import org.openscience.cdk.smsd.global.TimeOut;
-import org.openscience.cdk.smsd.tools.TimeManager;
+import org.openscience.cdk.smsd.tools.SearchContext;
 
 /**
  * This class finds MCS between query and target molecules
@@ -79,36 +79,24 @@ public class VFMCSMapper implements IMapper {
     private IQuery query = null;
     private List<Map<INode, IAtom>> maps = null;
     private int currentMCSSize = -1;
-    private static TimeManager timeManager = null;
+    private SearchContext searchContext = null;
 
     /**
-     * @return the timeout
-     */
-    protected synchronized static double getTimeout() {
-        return TimeOut.getInstance().getTimeOut();
-    }
-
-    /**
-     * @return the timeManager
-     */
-    protected synchronized static TimeManager getTimeManager() {
-        return timeManager;
-    }
-
-    /**
-     * @param aTimeManager the timeManager to set
+     *
+     * @param query
      */
-    protected synchronized static void setTimeManager(TimeManager aTimeManager) {
-        TimeOut.getInstance().setTimeOutFlag(false);
-        timeManager = aTimeManager;
+    public VFMCSMapper(IQuery query) {
+        this(query, new SearchContext(TimeOut.getInstance().getTimeOut()));
     }
 
     /**
-     *
+     * Creates a mapper which stops the search, keeping the mappings found so
+     * far, when the search context times out.
      * @param query
+     * @param searchContext the timeout, cancellation and statistics of this search
      */
-    public VFMCSMapper(IQuery query) {
-        setTimeManager(new TimeManager());
+    public VFMCSMapper(IQuery query, SearchContext searchContext) {
+        this.searchContext = searchContext;
         this.query = query;
         this.maps = new ArrayList<Map<INode, IAtom>>();
     }
@@ -119,7 +107,7 @@ public class VFMCSMapper implements IMapper {
      * @param bondMatcher 
      */
     public VFMCSMapper(IAtomContainer queryMolecule, boolean bondMatcher) {
-        setTimeManager(new TimeManager());
+        this.searchContext = new SearchContext(TimeOut.getInstance().getTimeOut());
         this.query = new QueryCompiler(queryMolecule, bondMatcher).compile();
         this.maps = new ArrayList<Map<INode, IAtom>>();
     }
@@ -207,13 +195,15 @@ public class VFMCSMapper implements IMapper {
         if (!hasMap(map) && map.size() > currentMCSSize) {
             maps.add(map);
             currentMCSSize = map.size();
+            searchContext.mappingFound();
         } else if (!hasMap(map) && map.size() == currentMCSSize) {
             maps.add(map);
         }
     }
 
     private void mapAll(IState state) {
-        if (state.isDead()) {
+        searchContext.visitNode();
+        if (state.isDead() || searchContext.checkTimeOut()) {
             return;
         }
 
@@ -221,6 +211,7 @@ public class VFMCSMapper implements IMapper {
             Map<INode, IAtom> map = state.getMap();
             if (!hasMap(map)) {
                 maps.add(state.getMap());
+                searchContext.mappingFound();
             } else {
                 state.backTrack();
             }
@@ -228,7 +219,7 @@ public class VFMCSMapper implements IMapper {
             addMapping(state);
         }
 
-        while (state.hasNextCandidate()) {
+        while (state.hasNextCandidate() && !searchContext.isTimeOut()) {
             Match candidate = state.nextCandidate();
             if (state.isMatchFeasible(candidate)) {
                 IState nextState = state.nextState(candidate);
@@ -239,12 +230,14 @@ public class VFMCSMapper implements IMapper {
     }
 
     private boolean mapFirst(IState state) {
-        if (state.isDead()) {
+        searchContext.visitNode();
+        if (state.isDead() || searchContext.checkTimeOut()) {
             return false;
         }
 
         if (state.isGoal()) {
             maps.add(state.getMap());
+            searchContext.mappingFound();
             return true;
         }
 
@@ -269,11 +262,13 @@ public class VFMCSMapper implements IMapper {
         return false;
     }
 
-    public synchronized static boolean isTimeOut() {
-        if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
-            TimeOut.getInstance().setTimeOutFlag(true);
-            return true;
-        }
-        return false;
+    /**
+     * @return the timeout flag of {@link TimeOut}
+     * @deprecated each search has its own {@link SearchContext}; use
+     *             {@link SearchContext#isTimeOut()}
+     */
+    @Deprecated
+    public static boolean isTimeOut() {
+        return TimeOut.getInstance().isTimeOutFlag();
     }
 }
@@ -63,7 +63,7 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IState;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
 import org.openscience.cdk.smsd.global.TimeOut;
-import org.openscience.cdk.smsd.tools.TimeManager;
+import org.openscience.cdk.smsd.tools.SearchContext;
 
 /**
  * This class finds MCS between query and target molecules
@@ -79,36 +79,24 @@ public class VFMapper implements IMapper {
     private IQuery query;
     private List<Map<INode, IAtom>> maps;
     private int currentMCSSize = -1;
-    private static TimeManager timeManager = null;
+    private SearchContext searchContext = null;
 
     /**
-     * @return the timeout
-     */
-    protected synchronized static double getTimeout() {
-        return TimeOut.getInstance().getTimeOut();
-    }
-
-    /**
-     * @return the timeManager
-     */
-    protected synchronized static TimeManager getTimeManager() {
-        return timeManager;
-    }
-
-    /**
-     * @param aTimeManager the timeManager to set
+     *
+     * @param query
      */
-    protected synchronized static void setTimeManager(TimeManager aTimeManager) {
-        TimeOut.getInstance().setTimeOutFlag(false);
-        timeManager = aTimeManager;
+    public VFMapper(IQuery query) {
+        this(query, new SearchContext(TimeOut.getInstance().getTimeOut()));
     }
 
     /**
-     *
+     * Creates a mapper which stops the search, keeping the mappings found so
+     * far, when the search context times out.
      * @param query
+     * @param searchContext the timeout, cancellation and statistics of this search
      */
-    public VFMapper(IQuery query) {
-        setTimeManager(new TimeManager());
+    public VFMapper(IQuery query, SearchContext searchContext) {
+        this.searchContext = searchContext;
         this.query = query;
         this.maps = new ArrayList<Map<INode, IAtom>>();
     }
@@ -119,7 +107,7 @@ public class VFMapper implements IMapper {
      * @param bondMatcher
      */
     public VFMapper(IAtomContainer queryMolecule, boolean bondMatcher) {
-        setTimeManager(new TimeManager());
+        this.searchContext = new SearchContext(TimeOut.getInstance().getTimeOut());
         this.query = new QueryCompiler(queryMolecule, bondMatcher).compile();
         this.maps = new ArrayList<Map<INode, IAtom>>();
     }
@@ -213,7 +201,8 @@ public class VFMapper implements IMapper {
     }
 
     private void mapAll(IState state) {
-        if (state.isDead()) {
+        searchContext.visitNode();
+        if (state.isDead() || searchContext.checkTimeOut()) {
             return;
         }
 
@@ -225,12 +214,13 @@ public class VFMapper implements IMapper {
             Map<INode, IAtom> map = state.getMap();
             if (!hasMap(map)) {
                 maps.add(state.getMap());
+                searchContext.mappingFound();
             } else {
                 state.backTrack();
             }
         }
 
-        while (state.hasNextCandidate()) {
+        while (state.hasNextCandidate() && !searchContext.isTimeOut()) {
             Match candidate = state.nextCandidate();
             if (state.isMatchFeasible(candidate)) {
                 IState nextState = state.nextState(candidate);
@@ -241,12 +231,14 @@ public class VFMapper implements IMapper {
     }
 
     private boolean mapFirst(IState state) {
-        if (state.isDead()) {
+        searchContext.visitNode();
+        if (state.isDead() || searchContext.checkTimeOut()) {
             return false;
         }
 
         if (state.isGoal()) {
             maps.add(state.getMap());
+            searchContext.mappingFound();
             return true;
         }
 
@@ -271,11 +263,13 @@ public class VFMapper implements IMapper {
         return false;
     }
 
-    public synchronized static boolean isTimeOut() {
-        if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
-            TimeOut.getInstance().setTimeOutFlag(true);
-            return true;
-        }
-        return false;
+    /**
+     * @return the timeout flag of {@link TimeOut}
+     * @deprecated each search has its own {@link SearchContext}; use
+     *             {@link SearchContext#isTimeOut()}
+     */
+    @Deprecated
+    public static boolean isTimeOut() {
+        return TimeOut.getInstance().isTimeOutFlag();
     }
 }
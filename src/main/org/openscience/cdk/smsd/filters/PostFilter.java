@@ -53,19 +53,23 @@ public class PostFilter {
      * Creates a new instance of Post Filter and removes
      * redundant mapping(s).
      * 
+     * The result is also stored in {@link FinalMappings}, but as that is
+     * shared by all searches, callers should use the returned list.
+     *
      * @param mappings
      * @return Filtered non-redundant mappings
      */
     @TestMethod("testFilter")
     public static List<Map<Integer, Integer>> filter(List<List<Integer>> mappings) {
-        FinalMappings final_MAPPINGS = FinalMappings.getInstance();
+        List<Map<Integer, Integer>> nonRedundantMapping = null;
         if (mappings != null && !mappings.isEmpty()) {
-            final_MAPPINGS.set(removeRedundantMapping(mappings));
+            nonRedundantMapping = removeRedundantMapping(mappings);
             mappings.clear();
         } else {
-            final_MAPPINGS.set(new ArrayList<Map<Integer, Integer>>());
+            nonRedundantMapping = new ArrayList<Map<Integer, Integer>>();
         }
-        return final_MAPPINGS.getFinalMapping();
+        FinalMappings.getInstance().set(nonRedundantMapping);
+        return nonRedundantMapping;
     }
 
     private static boolean hasMap(Map<Integer, Integer> newMap, List<Map<Integer, Integer>> nonRedundantMapping) {
@@ -29,6 +29,12 @@ import org.openscience.cdk.annotations.TestMethod;
 
 /**
  * Class that manages MCS timeout.
+ *
+ * <p>The timeout set here is the default for searches that are started
+ * without a {@link org.openscience.cdk.smsd.tools.SearchContext}. The
+ * searches themselves no longer share this object: each search checks its own
+ * context, so that concurrent searches do not time each other out.
+ *
  * @cdk.module smsd
  * @cdk.githash
  * @author Syed Asad Rahman <asad@ebi.ac.uk>
@@ -78,7 +84,11 @@ public class TimeOut {
     /**
      * Return true if its a timeout else return false.
      * @return the timeout flag
+     * @deprecated the searches no longer set this flag; use
+     *             {@link org.openscience.cdk.smsd.tools.SearchContext#isTimeOut()}
+     *             of the search instead
      */
+    @Deprecated
     @TestMethod("testIsTimeOutFlag")
     public boolean isTimeOutFlag() {
         return timeOutFlag;
@@ -87,7 +97,11 @@ public class TimeOut {
     /**
      * Set true if timeout occures else false
      * @param timeOut the timeout flag to set
+     * @deprecated the searches no longer read this flag; use
+     *             {@link org.openscience.cdk.smsd.tools.SearchContext#cancel()}
+     *             to stop a search
      */
+    @Deprecated
     @TestMethod("testSetTimeOutFlag")
     public void setTimeOutFlag(boolean timeOut) {
         this.timeOutFlag = timeOut;
@@ -0,0 +1,238 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smsd.tools;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+/**
+ * Limits and statistics of a single MCS or substructure search. The
+ * algorithms in {@link org.openscience.cdk.smsd.algorithm} regularly call
+ * {@link #checkTimeOut()} and stop, keeping the mappings found so far, once
+ * the timeout has passed, the node limit has been reached, the search has been
+ * cancelled with {@link #cancel()}, or the searching thread has been
+ * interrupted.
+ *
+ * <p>Each search should use its own context, so that concurrent searches
+ * have independent limits:
+ * <pre>
+ * SearchContext context = new SearchContext(0.5); // half a minute
+ * context.setNodeLimit(1000000);
+ * Isomorphism comparison = new Isomorphism(Algorithm.DEFAULT, true);
+ * comparison.setSearchContext(context);
+ * comparison.init(query, target, true, true);
+ * System.out.println(context.getNodeCount() + " nodes explored");
+ * </pre>
+ *
+ * <p>{@link #cancel()} may be called from any thread. The statistics are
+ * updated by the searching thread only, and should be read once the search
+ * has finished.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.smsd.tools.SearchContextTest")
+public class SearchContext {
+
+    private final double timeout;
+    private final long startTime;
+    private long stageStartTime;
+    private long nodeLimit = -1;
+    private long stageNodeCount = 0;
+    private long nodeCount = 0;
+    private long firstMappingTime = -1;
+    private volatile boolean cancelled = false;
+    private volatile boolean timeOut = false;
+
+    /**
+     * Creates a context for a search without a timeout.
+     */
+    @TestMethod("testSearchContext")
+    public SearchContext() {
+        this(-1);
+    }
+
+    /**
+     * Creates a context for a search with the given timeout, starting now.
+     *
+     * @param timeout the timeout in minutes, e.g. 0.5 for 30 seconds, or -1
+     *                for no timeout
+     */
+    @TestMethod("testSearchContext_double")
+    public SearchContext(double timeout) {
+        this.timeout = timeout;
+        this.startTime = System.nanoTime();
+        this.stageStartTime = startTime;
+    }
+
+    /**
+     * Returns the timeout of this search.
+     *
+     * @return the timeout in minutes, or -1 for no timeout
+     */
+    @TestMethod("testSearchContext_double")
+    public double getTimeOut() {
+        return timeout;
+    }
+
+    /**
+     * Sets the maximum number of search nodes explored before the search
+     * stops.
+     *
+     * @param nodeLimit the maximum number of nodes, or -1 for no limit
+     */
+    @TestMethod("testSetNodeLimit")
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Returns the maximum number of search nodes explored before the search
+     * stops.
+     *
+     * @return the maximum number of nodes, or -1 for no limit
+     */
+    @TestMethod("testSetNodeLimit")
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Cancels the search. The search stops at its next check, and keeps the
+     * mappings found so far.
+     */
+    @TestMethod("testCancel")
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns true if {@link #cancel()} has been called.
+     *
+     * @return true if the search is cancelled
+     */
+    @TestMethod("testCancel")
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checks whether the search must stop, because it was cancelled, the
+     * searching thread was interrupted, or the timeout or node limit has been
+     * reached. Once this method returned true it keeps doing so, until
+     * {@link #restart()} is called.
+     *
+     * @return true if the search must stop
+     */
+    @TestMethod("testCheckTimeOut,testCheckTimeOut_Interrupted,testCancel,testSetNodeLimit")
+    public boolean checkTimeOut() {
+        if (timeOut)
+            return true;
+        if (cancelled
+            || Thread.currentThread().isInterrupted()
+            || (nodeLimit > -1 && stageNodeCount >= nodeLimit)
+            || (timeout > -1 && getElapsedTime(stageStartTime) > timeout * 60000)) {
+            timeOut = true;
+        }
+        return timeOut;
+    }
+
+    /**
+     * Returns true if {@link #checkTimeOut()} found that the search must
+     * stop, i.e. the mappings found may be incomplete.
+     *
+     * @return true if the search has timed out or was stopped otherwise
+     */
+    @TestMethod("testCheckTimeOut")
+    public boolean isTimeOut() {
+        return timeOut;
+    }
+
+    /**
+     * Starts a new stage of the search, such as the fallback algorithm used
+     * when the first algorithm timed out. The timeout and node limit are
+     * counted again from now, whereas the cancellation and the statistics of
+     * the whole search are kept.
+     */
+    @TestMethod("testRestart")
+    public void restart() {
+        stageStartTime = System.nanoTime();
+        stageNodeCount = 0;
+        timeOut = false;
+    }
+
+    /**
+     * Records that the search explored one more node, for example a state of
+     * a backtracking search.
+     */
+    @TestMethod("testSetNodeLimit")
+    public void visitNode() {
+        stageNodeCount++;
+        nodeCount++;
+    }
+
+    /**
+     * Records that the search found a mapping.
+     */
+    @TestMethod("testMappingFound")
+    public void mappingFound() {
+        if (firstMappingTime == -1)
+            firstMappingTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of nodes explored by the search, over all stages.
+     *
+     * @return the number of nodes explored
+     */
+    @TestMethod("testSetNodeLimit")
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the time from the creation of this context until the first
+     * mapping was found.
+     *
+     * @return the time in milliseconds, or -1 if no mapping has been found
+     */
+    @TestMethod("testMappingFound")
+    public double getTimeToFirstMapping() {
+        return firstMappingTime == -1 ? -1 : (firstMappingTime - startTime) / 1000000.0;
+    }
+
+    /**
+     * Returns the time since the creation of this context.
+     *
+     * @return the time in milliseconds
+     */
+    @TestMethod("testMappingFound")
+    public double getElapsedTime() {
+        return getElapsedTime(startTime);
+    }
+
+    private double getElapsedTime(long since) {
+        return (System.nanoTime() - since) / 1000000.0;
+    }
+
+}
@@ -21,7 +21,16 @@
 package org.openscience.cdk.tools;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
@@ -35,6 +44,7 @@ import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IMolecule;
 import org.openscience.cdk.interfaces.IMoleculeSet;
 import org.openscience.cdk.interfaces.IReactionSet;
+import org.openscience.cdk.interfaces.ISingleElectron;
 import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
@@ -68,6 +78,12 @@ import org.openscience.cdk.reaction.type.parameters.SetReactionCenter;
  * <p>Moreover you must put the parameter as true</p>
  * <p>If the reactive center is not localized then the reaction process will
  * try to find automatically the possible reactive center.</p>
+ * 
+ * <p>Each new structure is only compared by isomorphism with the structures
+ * found before which have the same key, made of the charges, radicals and,
+ * without looking at the symmetry, the bond orders. Large conjugated systems
+ * can moreover be expanded on several threads:</p>
+ * <pre>srG.setThreadCount(4);</pre>
  *  
  * @author       Miguel Rojas
  * @cdk.created  2006-5-05
@@ -86,6 +102,8 @@ public class StructureResonanceGenerator {
 	private boolean lookingSymmetry;
 	/** TODO: REACT: some time takes too much time. At the moment fixed to 50 structures*/
 	private int maxStructures = 50;
+	/**The number of threads, and of structures expanded at once*/
+	private int threadCount = 1;
 	/**
 	 * Construct an instance of StructureResonanceGenerator. Default restrictions 
 	 * are initiated.
@@ -152,6 +170,30 @@ public class StructureResonanceGenerator {
 	public int getMaximalStructures(){
 		return maxStructures;
 	}
+	/**
+	 * Set the number of threads used to generate the resonance structures.
+	 * The structures found are expanded by as many at once, in a breadth
+	 * first order, so that the same structures are found, in the same order,
+	 * as with one thread. The reactions are then used by several threads at
+	 * once, and must not keep any state between calls.
+	 * 
+	 * @param threadCount The number of threads, 1 by default
+	 */
+	@TestMethod("testSetThreadCount_int")
+	public void setThreadCount(int threadCount){
+		if (threadCount < 1)
+			throw new IllegalArgumentException("At least one thread is needed: " + threadCount);
+		this.threadCount = threadCount;
+	}
+	/**
+	 * Get the number of threads used to generate the resonance structures.
+	 * 
+	 * @return The number of threads
+	 */
+	@TestMethod("testGetThreadCount")
+	public int getThreadCount(){
+		return threadCount;
+	}
 	/**
 	 * Set the default reactions that must be presents to generate the resonance.
 	 *
@@ -228,40 +270,174 @@ public class StructureResonanceGenerator {
 	 * @param molecule The IMolecule to analyze
 	 * @return         The different resonance structures
 	 */
-    @TestMethod("testGetStructures_IMolecule")
+    @TestMethod("testGetStructures_IMolecule,testGetStructures_ThreadCount")
 	public IMoleculeSet getStructures(IMolecule molecule) {
     	int countStructure = 0;
     	IMoleculeSet setOfMol = molecule.getBuilder().newInstance(IMoleculeSet.class);
 		setOfMol.addMolecule(molecule);
+		/*the structures found, by key*/
+		Map<String, List<IAtomContainer>> structures = new HashMap<String, List<IAtomContainer>>();
+		addStructure(structures, molecule);
 		
-		for(int i = 0 ; i < setOfMol.getMoleculeCount() ; i++){
-			IMolecule mol = setOfMol.getMolecule(i);
-            for (IReactionProcess aReactionsList : reactionsList) {
-                IReactionProcess reaction = aReactionsList;
-                IMoleculeSet setOfReactants = molecule.getBuilder().newInstance(IMoleculeSet.class);
-                setOfReactants.addMolecule(mol);
-                try {
-                    IReactionSet setOfReactions = reaction.initiate(setOfReactants, null);
-                    if (setOfReactions.getReactionCount() != 0)
-                        for (int k = 0; k < setOfReactions.getReactionCount(); k++)
-                            for (int j = 0; j < setOfReactions.getReaction(k).getProducts().getAtomContainerCount(); j++)
-                            {
-                                IMolecule product = setOfReactions.getReaction(k).getProducts().getMolecule(j);
-                                if (!existAC(setOfMol, product)) {
-                                    setOfMol.addMolecule(product);
-                                    countStructure++;
-                                    if (countStructure > maxStructures)
-                                        return setOfMol;
-                                }
-                            }
-                } catch (CDKException e) {
-                    e.printStackTrace();
-                }
-            }
+		ExecutorService executor = null;
+		if (threadCount > 1)
+			executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			for(int i = 0 ; i < setOfMol.getMoleculeCount() ; ){
+				int end = Math.min(i + threadCount, setOfMol.getMoleculeCount());
+				List<List<IMolecule>> setOfProducts = getProducts(setOfMol, i, end, executor);
+				i = end;
+				for (List<IMolecule> products : setOfProducts)
+					for (IMolecule product : products) {
+						List<IAtomContainer> candidates = structures.get(getStructureKey(product));
+						if (candidates == null || !existAC(candidates, product)) {
+							setOfMol.addMolecule(product);
+							addStructure(structures, product);
+							countStructure++;
+							if (countStructure > maxStructures)
+								return setOfMol;
+						}
+					}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warn("Interrupted, returning the structures found so far");
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
 		}
 		return setOfMol;
 	}
 
+	/**
+	 * Get the products of the reactions for the molecules from start to end
+	 * of the set, in order, using the executor if there are several.
+	 */
+	private List<List<IMolecule>> getProducts(IMoleculeSet setOfMol, int start, int end,
+			ExecutorService executor) throws InterruptedException {
+		List<List<IMolecule>> setOfProducts = new ArrayList<List<IMolecule>>();
+		if (executor == null || end - start == 1) {
+			for (int i = start; i < end; i++)
+				setOfProducts.add(getProducts(setOfMol.getMolecule(i)));
+			return setOfProducts;
+		}
+		List<Future<List<IMolecule>>> tasks = new ArrayList<Future<List<IMolecule>>>();
+		for (int i = start; i < end; i++) {
+			final IMolecule mol = setOfMol.getMolecule(i);
+			tasks.add(executor.submit(new Callable<List<IMolecule>>() {
+				public List<IMolecule> call() {
+					return getProducts(mol);
+				}
+			}));
+		}
+		try {
+			for (Future<List<IMolecule>> task : tasks)
+				setOfProducts.add(task.get());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) throw (Error)cause;
+			throw (RuntimeException)cause;
+		}
+		return setOfProducts;
+	}
+
+	/**
+	 * Get the products of all reactions for one molecule.
+	 */
+	private List<IMolecule> getProducts(IMolecule mol) {
+		List<IMolecule> products = new ArrayList<IMolecule>();
+        for (IReactionProcess reaction : reactionsList) {
+            IMoleculeSet setOfReactants = mol.getBuilder().newInstance(IMoleculeSet.class);
+            setOfReactants.addMolecule(mol);
+            try {
+                IReactionSet setOfReactions = reaction.initiate(setOfReactants, null);
+                for (int k = 0; k < setOfReactions.getReactionCount(); k++)
+                    for (int j = 0; j < setOfReactions.getReaction(k).getProducts().getAtomContainerCount(); j++)
+                        products.add(setOfReactions.getReaction(k).getProducts().getMolecule(j));
+            } catch (CDKException e) {
+                e.printStackTrace();
+            }
+        }
+        return products;
+	}
+
+	private void addStructure(Map<String, List<IAtomContainer>> structures, IAtomContainer atomContainer) {
+		String key = getStructureKey(atomContainer);
+		List<IAtomContainer> candidates = structures.get(key);
+		if (candidates == null) {
+			candidates = new ArrayList<IAtomContainer>(1);
+			structures.put(key, candidates);
+		}
+		candidates.add(atomContainer);
+	}
+
+	/**
+	 * Get a key for the bond orders, charges and radicals of a structure.
+	 * Structures which existAC finds to be the same have the same key: without
+	 * looking at the symmetry the atoms are compared by position, and else
+	 * the bond orders are left out, as the aromaticity detection changes them,
+	 * and the atoms are sorted by element, charge, radicals and neighbours.
+	 * 
+	 * @param atomContainer  The structure
+	 * @return               The key
+	 */
+	private String getStructureKey(IAtomContainer atomContainer) {
+		int atomCount = atomContainer.getAtomCount();
+		Map<IAtom, Integer> indices = new IdentityHashMap<IAtom, Integer>(2 * atomCount);
+		for (int i = 0; i < atomCount; i++)
+			indices.put(atomContainer.getAtom(i), i);
+		int[] radicals = new int[atomCount];
+		for (ISingleElectron electron : atomContainer.singleElectrons()) {
+			Integer index = indices.get(electron.getAtom());
+			if (index != null) radicals[index]++;
+		}
+		
+		List<String> parts = new ArrayList<String>();
+		if (!lookingSymmetry) {
+			for (IBond bond : atomContainer.bonds()) {
+				Integer index1 = indices.get(bond.getAtom(0));
+				Integer index2 = indices.get(bond.getAtom(1));
+				if (index1 > index2) {
+					Integer index = index1;
+					index1 = index2;
+					index2 = index;
+				}
+				parts.add(index1 + "-" + index2 + bond.getOrder());
+			}
+			Collections.sort(parts);
+			StringBuffer key = new StringBuffer();
+			for (int i = 0; i < atomCount; i++) {
+				IAtom atom = atomContainer.getAtom(i);
+				key.append(atom.getSymbol()).append(atom.getFormalCharge()).append('.')
+					.append(radicals[i]).append(',');
+			}
+			for (String part : parts)
+				key.append(part).append(',');
+			return key.toString();
+		}
+		
+		List<List<String>> neighbours = new ArrayList<List<String>>(atomCount);
+		for (int i = 0; i < atomCount; i++)
+			neighbours.add(new ArrayList<String>());
+		for (IBond bond : atomContainer.bonds()) {
+			IAtom atom1 = bond.getAtom(0);
+			IAtom atom2 = bond.getAtom(1);
+			neighbours.get(indices.get(atom1)).add(atom2.getSymbol());
+			neighbours.get(indices.get(atom2)).add(atom1.getSymbol());
+		}
+		for (int i = 0; i < atomCount; i++) {
+			IAtom atom = atomContainer.getAtom(i);
+			List<String> symbols = neighbours.get(i);
+			Collections.sort(symbols);
+			parts.add(atom.getSymbol() + atom.getFormalCharge() + "." + radicals[i] + symbols);
+		}
+		Collections.sort(parts);
+		StringBuffer key = new StringBuffer();
+		for (String part : parts)
+			key.append(part).append(',');
+		return key.toString();
+	}
+
 	/**
 	 * <p>Get the container which is found resonance from a IMolecule. 
 	 * It is based on looking if the order of the bond changes.</p>
@@ -406,14 +582,14 @@ public class StructureResonanceGenerator {
     	return null;
 	}
 	/**
-	 * Search if the setOfAtomContainer contains the atomContainer
+	 * Search if the list contains the atomContainer
 	 *  
 	 * 
-	 * @param set            ISetOfAtomContainer object where to search
+	 * @param set            The structures where to search
 	 * @param atomContainer  IAtomContainer to search
 	 * @return   			 True, if the atomContainer is contained
 	 */
-	private boolean existAC(IAtomContainerSet set, IAtomContainer atomContainer) {
+	private boolean existAC(List<IAtomContainer> set, IAtomContainer atomContainer) {
 
 		IAtomContainer acClone = null;
     	try {
@@ -442,8 +618,8 @@ public class StructureResonanceGenerator {
 					for (IBond bond : acClone.bonds()) bond.setFlag(CDKConstants.ISAROMATIC, false);
 				}
 		}
-		for(int i = 0 ; i < set.getAtomContainerCount(); i++){
-			IAtomContainer ss = set.getAtomContainer(i);
+		for(int i = 0 ; i < set.size(); i++){
+			IAtomContainer ss = set.get(i);
 			for(int j = 0 ; j < ss.getAtomCount(); j++)
 //				if(ss.getAtom(j).getID() == null)
 					ss.getAtom(j).setID(""+ss.getAtomNumber(ss.getAtom(j)));
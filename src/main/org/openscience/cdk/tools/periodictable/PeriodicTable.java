@@ -57,7 +57,13 @@ public class PeriodicTable {
     private static volatile Map<String, PeriodicTableElement> elements;
     private static volatile Map<Integer, PeriodicTableElement> elementsByNumber;
 
-    private synchronized static void initialize() {
+    private static void initialize() {
+        // avoid the lock once the tables are read, as this is called for
+        // every lookup
+        if (!isInitialized) readTables();
+    }
+
+    private synchronized static void readTables() {
         if (isInitialized) return;
 
         ElementPTFactory factory;
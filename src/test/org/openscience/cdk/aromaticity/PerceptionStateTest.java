@@ -0,0 +1,200 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.aromaticity;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * Checks the functionality of the PerceptionState.
+ *
+ * @cdk.module test-standard
+ */
+public class PerceptionStateTest extends CDKTestCase {
+
+    private SmilesParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+    }
+
+    private IMolecule parse(String smiles) throws Exception {
+        IMolecule molecule = parser.parseSmiles(smiles);
+        for (IAtom atom : molecule.atoms()) atom.setFlag(CDKConstants.ISAROMATIC, false);
+        for (IBond bond : molecule.bonds()) bond.setFlag(CDKConstants.ISAROMATIC, false);
+        return molecule;
+    }
+
+    @Test
+    public void testPerceive() throws Exception {
+        // phenol
+        IMolecule molecule = parse("Oc1ccccc1");
+        PerceptionState state = PerceptionState.perceive(molecule);
+        Assert.assertFalse(state.isAromatic(0));
+        for (int i = 1; i < molecule.getAtomCount(); i++) {
+            Assert.assertTrue(state.isAromatic(i));
+            Assert.assertTrue(molecule.getAtom(i).getFlag(CDKConstants.ISAROMATIC));
+        }
+        Assert.assertFalse(state.isBondAromatic(0));
+        Assert.assertTrue(state.isBondAromatic(1));
+        Assert.assertNotNull(molecule.getAtom(0).getAtomTypeName());
+    }
+
+    @Test
+    public void testPerceive_Cached() throws Exception {
+        IMolecule molecule = parse("Oc1ccccc1");
+        PerceptionState state = PerceptionState.perceive(molecule);
+        for (IAtom atom : molecule.atoms()) atom.setFlag(CDKConstants.ISAROMATIC, false);
+        Assert.assertSame(state, PerceptionState.perceive(molecule));
+        Assert.assertTrue(molecule.getAtom(1).getFlag(CDKConstants.ISAROMATIC));
+    }
+
+    @Test
+    public void testPerceive_Changed() throws Exception {
+        IMolecule molecule = parse("Oc1ccccc1");
+        PerceptionState state = PerceptionState.perceive(molecule);
+        molecule.getAtom(0).setFormalCharge(-1);
+        molecule.getAtom(0).setImplicitHydrogenCount(0);
+        Assert.assertNull(PerceptionState.getCachedState(molecule));
+        Assert.assertNotSame(state, PerceptionState.perceive(molecule));
+
+        state = PerceptionState.perceive(molecule);
+        molecule.removeBond(molecule.getBond(0));
+        Assert.assertNull(PerceptionState.getCachedState(molecule));
+
+        state = PerceptionState.perceive(molecule);
+        molecule.getBond(1).setOrder(IBond.Order.TRIPLE);
+        Assert.assertNull(PerceptionState.getCachedState(molecule));
+    }
+
+    @Test
+    public void testPerceive_Collectable() throws Exception {
+        // the atoms of a data molecule refer to it as their listener
+        IMolecule molecule = new SmilesParser(DefaultChemObjectBuilder.getInstance())
+            .parseSmiles("Oc1ccccc1");
+        PerceptionState.perceive(molecule);
+        WeakReference<IMolecule> reference = new WeakReference<IMolecule>(molecule);
+        molecule = null;
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(reference.get());
+    }
+
+    @Test
+    public void testGetCachedState() throws Exception {
+        IMolecule molecule = parse("c1ccccc1");
+        Assert.assertNull(PerceptionState.getCachedState(molecule));
+        PerceptionState state = PerceptionState.perceive(molecule);
+        Assert.assertSame(state, PerceptionState.getCachedState(molecule));
+    }
+
+    @Test
+    public void testGetCachedState_Clone() throws Exception {
+        IMolecule molecule = parse("Oc1ccccc1");
+        PerceptionState.perceive(molecule);
+        IAtomContainer clone = (IAtomContainer)molecule.clone();
+        Assert.assertNull(PerceptionState.getCachedState(clone));
+        Assert.assertNull(clone.getProperties().get(PerceptionState.class.getName()));
+    }
+
+    @Test
+    public void testPerceive_Clone() throws Exception {
+        IMolecule molecule = parse("Oc1ccccc1");
+        PerceptionState state = PerceptionState.perceive(molecule);
+        IAtomContainer clone = (IAtomContainer)molecule.clone();
+        for (IAtom atom : clone.atoms()) atom.setFlag(CDKConstants.ISAROMATIC, false);
+        PerceptionState cloned = PerceptionState.perceive(clone, molecule);
+        Assert.assertNotSame(state, cloned);
+        Assert.assertSame(cloned, PerceptionState.getCachedState(clone));
+        Assert.assertSame(state, PerceptionState.getCachedState(molecule));
+        Assert.assertTrue(cloned.isAromatic(1));
+        Assert.assertTrue(clone.getAtom(1).getFlag(CDKConstants.ISAROMATIC));
+
+        // a clone that was changed is perceived again
+        IAtomContainer changed = (IAtomContainer)molecule.clone();
+        changed.removeAtomAndConnectedElectronContainers(changed.getAtom(0));
+        Assert.assertNotSame(state, PerceptionState.perceive(changed, molecule));
+        Assert.assertEquals(6, PerceptionState.getCachedState(changed).getRingAtomCount());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        IMolecule molecule = parse("c1ccccc1");
+        PerceptionState.perceive(molecule);
+        PerceptionState.invalidate(molecule);
+        Assert.assertNull(PerceptionState.getCachedState(molecule));
+    }
+
+    @Test
+    public void testRings() throws Exception {
+        // biphenyl with an ethyl group, and a spiro system
+        IMolecule molecule = parse("CCc1ccc(cc1)-c2ccccc2");
+        PerceptionState state = PerceptionState.perceive(molecule);
+        Assert.assertEquals(12, state.getRingAtomCount());
+        Assert.assertEquals(2, state.getRingSystemCount());
+        Assert.assertFalse(state.isInRing(0));
+        Assert.assertFalse(state.isInRing(1));
+        Assert.assertEquals(-1, state.getRingSystem(1));
+        Assert.assertEquals(0, state.getRingSystem(2));
+        Assert.assertEquals(1, state.getRingSystem(9));
+        Assert.assertFalse(state.isBondInRing(0));
+        Assert.assertTrue(state.isBondInRing(2));
+        // the bond between the rings is a bridge
+        Assert.assertFalse(state.isBondInRing(molecule.getBondNumber(molecule.getAtom(5), molecule.getAtom(8))));
+
+        state = PerceptionState.perceive(parse("C1CCC12CCCC2"));
+        Assert.assertEquals(8, state.getRingAtomCount());
+        Assert.assertEquals(1, state.getRingSystemCount());
+
+        state = PerceptionState.perceive(parse("CCCCO"));
+        Assert.assertEquals(0, state.getRingAtomCount());
+        Assert.assertEquals(0, state.getRingSystemCount());
+    }
+
+    @Test
+    public void testGetSmallestRingSize() throws Exception {
+        // bicyclo[4.3.0]nonane with an ethyl group, and a cyclopropane
+        IMolecule molecule = parse("CCC1CCC2CCCC2C1.C3CC3");
+        PerceptionState state = PerceptionState.perceive(molecule);
+        Assert.assertEquals(0, state.getSmallestRingSize(0));
+        Assert.assertEquals(6, state.getSmallestRingSize(2));
+        Assert.assertEquals(5, state.getSmallestRingSize(5));
+        Assert.assertEquals(5, state.getSmallestRingSize(7));
+        Assert.assertEquals(3, state.getSmallestRingSize(11));
+    }
+
+}
@@ -107,6 +107,30 @@ public class CDKAtomTypeMatcherTest extends AbstractCDKAtomTypeTest {
         }
     }
 
+    @Test public void testGetInstance_SameInstance() throws Exception {
+        IChemObjectBuilder builder = DefaultChemObjectBuilder.getInstance();
+        Assert.assertSame(
+            CDKAtomTypeMatcher.getInstance(builder),
+            CDKAtomTypeMatcher.getInstance(builder, CDKAtomTypeMatcher.REQUIRE_NOTHING)
+        );
+        Assert.assertNotSame(
+            CDKAtomTypeMatcher.getInstance(builder),
+            CDKAtomTypeMatcher.getInstance(builder, CDKAtomTypeMatcher.REQUIRE_EXPLICIT_HYDROGENS)
+        );
+    }
+
+    @Test public void testFindMatchingAtomType_IAtomContainer_Rings() throws Exception {
+        // the ring atoms of indole are perceived from the same, shared ring information
+        IMolecule mol = MoleculeFactory.makeIndole();
+        CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(mol.getBuilder());
+        IAtomType[] types = matcher.findMatchingAtomType(mol);
+        for (int i=0; i<types.length; i++) {
+            IAtomType type = matcher.findMatchingAtomType(mol, mol.getAtom(i));
+            Assert.assertNotNull(types[i]);
+            Assert.assertEquals(type.getAtomTypeName(), types[i].getAtomTypeName());
+        }
+    }
+
     @Test public void testDummy() throws Exception {
         IMolecule mol = new Molecule();
         IAtom atom = new PseudoAtom("R");
@@ -0,0 +1,134 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fingerprint;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.iterator.IteratingMDLReader;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class BatchFingerprinterTest extends CDKTestCase {
+
+    private static final BatchFingerprinter.FingerprinterFactory FACTORY =
+        new BatchFingerprinter.FingerprinterFactory() {
+            public IFingerprinter create() {
+                return new Fingerprinter();
+            }
+        };
+
+    /** Collects the results and checks that they arrive in input order. */
+    private static class Collector implements BatchFingerprinter.Handler {
+        List<BitSet> fingerprints = new ArrayList<BitSet>();
+        List<Long> failures = new ArrayList<Long>();
+        long next = 0;
+        public void fingerprint(long index, BitSet fingerprint) {
+            Assert.assertEquals(next++, index);
+            fingerprints.add(fingerprint);
+        }
+        public void failed(long index, Exception exception) {
+            Assert.assertEquals(next++, index);
+            fingerprints.add(null);
+            failures.add(index);
+        }
+    }
+
+    private IteratingMDLReader getReader() {
+        return new IteratingMDLReader(
+            getClass().getClassLoader().getResourceAsStream("data/mdl/pcoretest1.sdf"),
+            DefaultChemObjectBuilder.getInstance()
+        );
+    }
+
+    @Test
+    public void testProcess() throws Exception {
+        List<BitSet> expected = new ArrayList<BitSet>();
+        IteratingMDLReader reader = getReader();
+        Fingerprinter fingerprinter = new Fingerprinter();
+        while (reader.hasNext())
+            expected.add(fingerprinter.getFingerprint((IAtomContainer)reader.next()));
+        reader.close();
+
+        Collector collector = new Collector();
+        reader = getReader();
+        long count = new BatchFingerprinter(FACTORY, 4, 3).process(reader, collector);
+        reader.close();
+
+        Assert.assertEquals(expected.size(), count);
+        Assert.assertEquals(expected, collector.fingerprints);
+        Assert.assertEquals(0, collector.failures.size());
+    }
+
+    @Test
+    public void testProcess_Failed() throws Exception {
+        List<Object> input = new ArrayList<Object>();
+        input.add(MoleculeFactory.makeIndole());
+        input.add("not a molecule");
+        input.add(MoleculeFactory.makePyrrole());
+
+        Collector collector = new Collector();
+        long count = new BatchFingerprinter(FACTORY, 2).process(input.iterator(), collector);
+
+        Assert.assertEquals(3, count);
+        Assert.assertEquals(1, collector.failures.size());
+        Assert.assertEquals(1L, collector.failures.get(0).longValue());
+        Assert.assertEquals(
+            new Fingerprinter().getFingerprint(MoleculeFactory.makePyrrole()),
+            collector.fingerprints.get(2)
+        );
+    }
+
+    @Test
+    public void testProcess_QueueSize() throws Exception {
+        final int queueSize = 5;
+        final int[] read = {0};
+        final Iterator<Object> molecules = new Iterator<Object>() {
+            public boolean hasNext() { return read[0] < 50; }
+            public Object next() { read[0]++; return MoleculeFactory.makeAlphaPinene(); }
+            public void remove() { throw new UnsupportedOperationException(); }
+        };
+        BatchFingerprinter.Handler handler = new Collector() {
+            public void fingerprint(long index, BitSet fingerprint) {
+                super.fingerprint(index, fingerprint);
+                Assert.assertTrue(read[0] <= index + queueSize);
+            }
+        };
+        Assert.assertEquals(50, new BatchFingerprinter(FACTORY, 3, queueSize).process(molecules, handler));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBatchFingerprinter_ZeroThreads() {
+        new BatchFingerprinter(FACTORY, 0);
+    }
+
+}
@@ -25,28 +25,45 @@ package org.openscience.cdk.fingerprint;
 import org.junit.Assert;
 import org.junit.Test;
 import org.openscience.cdk.Atom;
+import org.openscience.cdk.Bond;
 import org.openscience.cdk.ChemFile;
+import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.Molecule;
+import org.openscience.cdk.PseudoAtom;
 import org.openscience.cdk.Reaction;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.graph.AtomContainerAtomPermutor;
 import org.openscience.cdk.graph.AtomContainerBondPermutor;
+import org.openscience.cdk.graph.PathTools;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IChemFile;
 import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.interfaces.IPseudoAtom;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.io.IChemObjectReader.Mode;
 import org.openscience.cdk.io.MDLRXNV2000Reader;
 import org.openscience.cdk.io.MDLV2000Reader;
+import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.templates.MoleculeFactory;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.math.BigInteger;
 import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @cdk.module test-standard
@@ -247,6 +264,115 @@ public class FingerprinterTest extends AbstractFixedLengthFingerprinterTest {
         }
     }
 
+    @Test
+    public void testGetBitPosition() {
+        int[] sizes = {1, 7, 512, 1000, 1024, 1 << 30, Integer.MAX_VALUE};
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < 10000; i++) {
+            int hash = i < 3 ? i - 1 : random.nextInt();
+            for (int size : sizes) {
+                Assert.assertEquals(
+                    new java.util.Random(hash).nextInt(size),
+                    Fingerprinter.getBitPosition(hash, size)
+                );
+            }
+        }
+    }
+
+    /**
+     * The hashes of the paths must be the same as those of the path strings
+     * the fingerprints were originally defined with.
+     */
+    @Test
+    public void testFindPathes_StringPaths() throws Exception {
+        SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        String[] smiles = {
+            "c1ccc2c(c1)cc[nH]2", "ClC(Br)C=CC#N", "[Na+].[Cl-]",
+            "CC(=O)Oc1ccccc1C(=O)O", "C[Si](C)(C)C[Se]CC[As](Cl)[Li]",
+            "C1CC2CCC1CC2", "OC(=O)C1=CC=CC=C1"
+        };
+        Fingerprinter fingerprinter = new Fingerprinter();
+        for (String smi : smiles) {
+            IMolecule mol = parser.parseSmiles(smi);
+            assertSameHashes(fingerprinter, mol, 8);
+            assertSameHashes(fingerprinter, mol, 2);
+        }
+        IMolecule mol = parser.parseSmiles("CCOC");
+        IAtom pseudo = new PseudoAtom("R1");
+        mol.addAtom(pseudo);
+        mol.addBond(new Bond(mol.getAtom(1), pseudo));
+        assertSameHashes(fingerprinter, mol, 8);
+        assertSameHashes(new GraphOnlyFingerprinter(), mol, 8);
+    }
+
+    /**
+     * Fingerprinting must leave nothing on the molecule that stops it from
+     * being serialized.
+     */
+    @Test
+    public void testGetFingerprint_Serializable() throws Exception {
+        SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IMolecule mol = parser.parseSmiles("Oc1ccccc1");
+        new Fingerprinter().getFingerprint(mol);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(mol);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+        IMolecule read = (IMolecule)in.readObject();
+        Assert.assertEquals(mol.getAtomCount(), read.getAtomCount());
+        Assert.assertEquals(mol.getBondCount(), read.getBondCount());
+    }
+
+    private void assertSameHashes(Fingerprinter fingerprinter,
+                                  IAtomContainer mol, int depth) {
+        Set<Integer> expected = new HashSet<Integer>();
+        for (String path : getPathStrings(fingerprinter, mol, depth))
+            expected.add(path.hashCode());
+        int[] hashes = fingerprinter.findPathes(mol, depth);
+        Set<Integer> actual = new HashSet<Integer>();
+        for (int hash : hashes) actual.add(hash);
+        Assert.assertEquals(expected.size(), hashes.length);
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * The path strings as built by the original string based implementation.
+     */
+    private Set<String> getPathStrings(Fingerprinter fingerprinter,
+                                       IAtomContainer mol, int depth) {
+        Map<String, String> replace = new HashMap<String, String>();
+        replace.put("Cl", "X"); replace.put("Br", "Z"); replace.put("Si", "Y");
+        replace.put("As", "D"); replace.put("Li", "L"); replace.put("Se", "E");
+        replace.put("Na", "G"); replace.put("Ca", "J"); replace.put("Al", "A");
+        Set<String> paths = new HashSet<String>();
+        for (IAtom start : mol.atoms()) {
+            for (List<IAtom> path : PathTools.getPathsOfLengthUpto(mol, start, depth)) {
+                StringBuffer sb = new StringBuffer();
+                IAtom x = path.get(0);
+                if (x instanceof IPseudoAtom ||
+                    PeriodicTable.getAtomicNumber(x.getSymbol()) == null)
+                    sb.append((char) PeriodicTable.getElementCount() + 1);
+                else sb.append(replace.containsKey(x.getSymbol())
+                               ? replace.get(x.getSymbol()) : x.getSymbol());
+                for (int i = 1; i < path.size(); i++) {
+                    IAtom y = path.get(i);
+                    sb.append(fingerprinter.getBondSymbol(mol.getBond(x, y)));
+                    sb.append(replace.containsKey(y.getSymbol())
+                              ? replace.get(y.getSymbol()) : y.getSymbol());
+                    x = y;
+                }
+                String forward = sb.toString();
+                String reverse = sb.reverse().toString();
+                paths.add(forward.compareTo(reverse) <= 0 ? reverse : forward);
+            }
+        }
+        return paths;
+    }
+
     public static Molecule makeFragment1()
 	{
 		Molecule mol = new Molecule();
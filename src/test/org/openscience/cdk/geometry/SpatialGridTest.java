@@ -0,0 +1,197 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.geometry;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.vecmath.Point3d;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.interfaces.IAtom;
+
+/**
+ * @cdk.module test-standard
+ */
+public class SpatialGridTest extends CDKTestCase {
+
+    private Point3d[] points;
+
+    @Before
+    public void setUp() {
+        // a random cloud with about the density of atoms in a protein
+        Random random = new Random(42);
+        points = new Point3d[500];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point3d(
+                10 * random.nextDouble() - 5,
+                20 * random.nextDouble(),
+                5 * random.nextDouble()
+            );
+        }
+    }
+
+    /**
+     * The indices of the points no further than radius from (x,y,z).
+     */
+    private int[] bruteForce(double x, double y, double z, double radius, int exclude) {
+        int[] found = new int[points.length];
+        int count = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (i != exclude && points[i].distance(new Point3d(x, y, z)) <= radius)
+                found[count++] = i;
+        }
+        int[] result = new int[count];
+        System.arraycopy(found, 0, result, 0, count);
+        return result;
+    }
+
+    private int[] sorted(int[] neighbors, int count) {
+        int[] result = new int[count];
+        System.arraycopy(neighbors, 0, result, 0, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    @Test
+    public void testSpatialGrid_arrayPoint3d_double() {
+        SpatialGrid grid = new SpatialGrid(points, 2.0);
+        Assert.assertNotNull(grid);
+        Assert.assertEquals(500, grid.getPointCount());
+    }
+
+    @Test
+    public void testSpatialGrid_arrayIAtom_double() {
+        IAtom[] atoms = new IAtom[]{
+            new Atom("C", new Point3d(0.0, 0.0, 0.0)),
+            new Atom("C", new Point3d(1.5, 0.0, 0.0)),
+            new Atom("O", new Point3d(2.5, 1.0, 0.0))
+        };
+        SpatialGrid grid = new SpatialGrid(atoms, 2.0);
+        Assert.assertEquals(3, grid.getPointCount());
+        Assert.assertArrayEquals(new int[]{1}, grid.getNeighbors(0, 1.6));
+        Assert.assertArrayEquals(new int[]{0, 2}, grid.getNeighbors(1, 1.6));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSpatialGrid_NoCoordinates() {
+        new SpatialGrid(new IAtom[]{new Atom("C")}, 2.0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSpatialGrid_ZeroCellSize() {
+        new SpatialGrid(points, 0.0);
+    }
+
+    @Test
+    public void testGetPointCount() {
+        Assert.assertEquals(0, new SpatialGrid(new Point3d[0], 1.0).getPointCount());
+        Assert.assertEquals(500, new SpatialGrid(points, 1.0).getPointCount());
+    }
+
+    @Test
+    public void testGetCellSize() {
+        Assert.assertEquals(2.0, new SpatialGrid(points, 2.0).getCellSize(), 0.0);
+        // two distant points do not get a million cells
+        SpatialGrid sparse = new SpatialGrid(new Point3d[]{
+            new Point3d(0.0, 0.0, 0.0), new Point3d(100.0, 100.0, 100.0)
+        }, 1.0);
+        Assert.assertTrue(sparse.getCellSize() > 10.0);
+        Assert.assertArrayEquals(new int[0], sparse.getNeighbors(0, 1.0));
+    }
+
+    @Test
+    public void testGetNeighbors_double_double_double_double_arrayint() {
+        int[] neighbors = new int[points.length];
+        for (double cellSize : new double[]{0.5, 2.0, 50.0}) {
+            SpatialGrid grid = new SpatialGrid(points, cellSize);
+            for (double radius : new double[]{0.0, 1.0, 2.5, 30.0}) {
+                for (int i = 0; i < 50; i++) {
+                    double x = points[i].x + 0.3, y = points[i].y - 0.2, z = points[i].z;
+                    int count = grid.getNeighbors(x, y, z, radius, neighbors);
+                    Assert.assertArrayEquals(bruteForce(x, y, z, radius, -1), sorted(neighbors, count));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetNeighbors_ArrayTooSmall() {
+        SpatialGrid grid = new SpatialGrid(points, 2.0);
+        int[] expected = bruteForce(0.0, 10.0, 2.5, 3.0, -1);
+        Assert.assertTrue(expected.length > 4);
+        int[] neighbors = new int[4];
+        Assert.assertEquals(expected.length, grid.getNeighbors(0.0, 10.0, 2.5, 3.0, neighbors));
+        neighbors = new int[expected.length];
+        grid.getNeighbors(0.0, 10.0, 2.5, 3.0, neighbors);
+        Assert.assertArrayEquals(expected, sorted(neighbors, expected.length));
+    }
+
+    @Test
+    public void testGetNeighbors_OutsideGrid() {
+        SpatialGrid grid = new SpatialGrid(points, 2.0);
+        int[] neighbors = new int[10];
+        Assert.assertEquals(0, grid.getNeighbors(100.0, 0.0, 0.0, 3.0, neighbors));
+        Assert.assertEquals(0, grid.getNeighbors(0.0, -100.0, 0.0, 3.0, neighbors));
+        Assert.assertEquals(0, new SpatialGrid(new Point3d[0], 2.0).getNeighbors(0.0, 0.0, 0.0, 3.0, neighbors));
+        // but a large radius reaches into it
+        Assert.assertEquals(points.length, grid.getNeighbors(0.0, 10.0, -1000.0, 1100.0, new int[points.length]));
+    }
+
+    @Test
+    public void testGetNeighbors_int_double_arrayint() {
+        SpatialGrid grid = new SpatialGrid(points, 2.0);
+        int[] neighbors = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            int count = grid.getNeighbors(i, 2.0, neighbors);
+            Assert.assertArrayEquals(bruteForce(points[i].x, points[i].y, points[i].z, 2.0, i),
+                                     sorted(neighbors, count));
+        }
+    }
+
+    @Test
+    public void testGetNeighbors_int_double() {
+        SpatialGrid grid = new SpatialGrid(points, 1.0);
+        for (int i = 0; i < points.length; i += 10) {
+            int[] neighbors = grid.getNeighbors(i, 3.0);
+            Arrays.sort(neighbors);
+            Assert.assertArrayEquals(bruteForce(points[i].x, points[i].y, points[i].z, 3.0, i), neighbors);
+        }
+    }
+
+    /**
+     * Points exactly at the query radius are included.
+     */
+    @Test
+    public void testGetNeighbors_Boundary() {
+        SpatialGrid grid = new SpatialGrid(new Point3d[]{
+            new Point3d(0.0, 0.0, 0.0), new Point3d(0.0, 2.0, 0.0), new Point3d(0.0, 2.0, 2.5)
+        }, 1.0);
+        Assert.assertArrayEquals(new int[]{1}, grid.getNeighbors(0, 2.0));
+    }
+
+}
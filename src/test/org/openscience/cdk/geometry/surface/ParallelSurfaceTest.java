@@ -0,0 +1,249 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.geometry.surface;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.vecmath.Point3d;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.ChemFile;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.HINReader;
+import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
+
+/**
+ * @cdk.module test-extra
+ */
+public class ParallelSurfaceTest extends CDKTestCase {
+
+    private IAtomContainer benzene;
+
+    @Before
+    public void setUp() throws Exception {
+        String filename = "data/hin/benzene.hin";
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(filename);
+        HINReader reader = new HINReader(ins);
+        ChemFile content = (ChemFile)reader.read(new ChemFile());
+        benzene = ChemFileManipulator.getAllAtomContainers(content).get(0);
+    }
+
+    /**
+     * A block of water oxygens, large enough to be split between threads.
+     */
+    private IAtomContainer getWaterBox() {
+        IAtomContainer water = new AtomContainer();
+        for (int i = 0; i < 7; i++)
+            for (int j = 0; j < 7; j++)
+                for (int k = 0; k < 7; k++)
+                    water.addAtom(new Atom("O", new Point3d(3.1 * i, 3.1 * j + 0.2 * i, 3.1 * k)));
+        return water;
+    }
+
+    @Test
+    public void testParallelSurface_IAtomContainer() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        Assert.assertNotNull(surface);
+        surface.calculateAreas();
+        Assert.assertEquals(231.6618, surface.getTotalSurfaceArea(), 0.0001);
+    }
+
+    @Test
+    public void testParallelSurface_IAtomContainer_double_int_int() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene, 0.0, 3, 2);
+        surface.calculateAreas();
+        NumericalSurface expected = new NumericalSurface(benzene, 0.0, 3);
+        expected.calculateSurface();
+        Assert.assertEquals(expected.getTotalSurfaceArea(), surface.getTotalSurfaceArea(), 0.0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testParallelSurface_NoThreads() {
+        new ParallelSurface(benzene, 1.4, 4, 0);
+    }
+
+    /**
+     * The surface is the same as that of {@link NumericalSurface}.
+     */
+    @Test
+    public void testCalculateSurface() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene, 1.4, 4, 1);
+        surface.calculateSurface();
+        NumericalSurface expected = new NumericalSurface(benzene);
+        expected.calculateSurface();
+        for (int i = 0; i < benzene.getAtomCount(); i++) {
+            Assert.assertEquals(expected.getSurfaceArea(i), surface.getSurfaceArea(i), 0.0);
+            Point3d[] points = expected.getSurfacePoints(i);
+            double[] coordinates = surface.getSurfacePoints(i);
+            Assert.assertEquals(3 * points.length, coordinates.length);
+            for (int j = 0; j < points.length; j++) {
+                Assert.assertEquals(points[j].x, coordinates[3 * j], 0.0);
+                Assert.assertEquals(points[j].y, coordinates[3 * j + 1], 0.0);
+                Assert.assertEquals(points[j].z, coordinates[3 * j + 2], 0.0);
+            }
+        }
+    }
+
+    /**
+     * The results do not depend on the number of threads.
+     */
+    @Test
+    public void testCalculateSurface_Threads() throws Exception {
+        IAtomContainer water = getWaterBox();
+        ParallelSurface single = new ParallelSurface(water, 1.4, 3, 1);
+        single.calculateSurface();
+        ParallelSurface parallel = new ParallelSurface(water, 1.4, 3, 3);
+        parallel.calculateSurface();
+        Assert.assertTrue(Arrays.equals(single.getAllSurfaceAreas(), parallel.getAllSurfaceAreas()));
+        Assert.assertTrue(Arrays.equals(single.getAllSurfacePoints(), parallel.getAllSurfacePoints()));
+        // the atoms inside the box are buried
+        Assert.assertEquals(0.0, parallel.getSurfaceArea(3 * 49 + 3 * 7 + 3), 0.0);
+        Assert.assertTrue(parallel.getSurfaceArea(0) > 0.0);
+    }
+
+    @Test
+    public void testCalculateAreas() throws Exception {
+        IAtomContainer water = getWaterBox();
+        ParallelSurface areas = new ParallelSurface(water, 1.4, 3, 2);
+        areas.calculateAreas();
+        ParallelSurface surface = new ParallelSurface(water, 1.4, 3, 2);
+        surface.calculateSurface();
+        Assert.assertTrue(Arrays.equals(surface.getAllSurfaceAreas(), areas.getAllSurfaceAreas()));
+        try {
+            areas.getSurfacePoints(0);
+            Assert.fail("The surface points were not calculated");
+        } catch (CDKException exception) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetVolumes() throws Exception {
+        IAtomContainer water = getWaterBox();
+        ParallelSurface single = new ParallelSurface(water, 1.4, 3, 1);
+        single.calculateSurface();
+        ParallelSurface parallel = new ParallelSurface(water, 1.4, 3, 3);
+        parallel.calculateAreas();
+        Assert.assertEquals(water.getAtomCount(), single.getVolumes().length);
+        Assert.assertTrue(Arrays.equals(single.getVolumes(), parallel.getVolumes()));
+        // buried atoms do not contribute
+        Assert.assertEquals(0.0, parallel.getVolumes()[3 * 49 + 3 * 7 + 3], 0.0);
+        Assert.assertTrue(parallel.getVolumes()[0] != 0.0);
+    }
+
+    @Test
+    public void testGetSurfacePointArrays() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        surface.calculateSurface();
+        double[][] points = surface.getSurfacePointArrays();
+        Assert.assertEquals(benzene.getAtomCount(), points.length);
+        for (int i = 0; i < benzene.getAtomCount(); i++)
+            Assert.assertTrue(Arrays.equals(surface.getSurfacePoints(i), points[i]));
+        ParallelSurface areas = new ParallelSurface(benzene);
+        areas.calculateAreas();
+        Assert.assertNull(areas.getSurfacePointArrays());
+    }
+
+    @Test
+    public void testGetSurfacePointCount_int() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        surface.calculateSurface();
+        NumericalSurface expected = new NumericalSurface(benzene);
+        expected.calculateSurface();
+        for (int i = 0; i < benzene.getAtomCount(); i++)
+            Assert.assertEquals(expected.getSurfacePoints(i).length, surface.getSurfacePointCount(i));
+    }
+
+    @Test
+    public void testGetSurfacePoints_int() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        surface.calculateSurface();
+        double[] points = surface.getSurfacePoints(0);
+        Assert.assertTrue(points.length > 0);
+        Assert.assertEquals(0, points.length % 3);
+        // the points are on the sphere around the atom
+        Point3d center = benzene.getAtom(0).getPoint3d();
+        double radius = new Point3d(points[0], points[1], points[2]).distance(center);
+        for (int i = 0; i < points.length; i += 3)
+            Assert.assertEquals(radius, new Point3d(points[i], points[i + 1], points[i + 2]).distance(center), 0.0001);
+    }
+
+    @Test(expected=CDKException.class)
+    public void testGetSurfacePoints_int_OutOfBounds() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        surface.calculateSurface();
+        surface.getSurfacePoints(benzene.getAtomCount());
+    }
+
+    @Test
+    public void testGetAllSurfacePoints() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        surface.calculateSurface();
+        NumericalSurface expected = new NumericalSurface(benzene);
+        expected.calculateSurface();
+        Assert.assertEquals(3 * expected.getAllSurfacePoints().length, surface.getAllSurfacePoints().length);
+    }
+
+    @Test
+    public void testGetSurfaceArea_int() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        surface.calculateAreas();
+        double total = 0.0;
+        for (int i = 0; i < benzene.getAtomCount(); i++) {
+            Assert.assertTrue(surface.getSurfaceArea(i) > 0.0);
+            total += surface.getSurfaceArea(i);
+        }
+        Assert.assertEquals(surface.getTotalSurfaceArea(), total, 0.0001);
+    }
+
+    @Test(expected=CDKException.class)
+    public void testGetSurfaceArea_int_OutOfBounds() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        surface.calculateAreas();
+        surface.getSurfaceArea(-1);
+    }
+
+    @Test
+    public void testGetAllSurfaceAreas() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        surface.calculateAreas();
+        Assert.assertEquals(benzene.getAtomCount(), surface.getAllSurfaceAreas().length);
+    }
+
+    @Test
+    public void testGetTotalSurfaceArea() throws Exception {
+        ParallelSurface surface = new ParallelSurface(benzene);
+        surface.calculateSurface();
+        NumericalSurface expected = new NumericalSurface(benzene);
+        expected.calculateSurface();
+        Assert.assertEquals(expected.getTotalSurfaceArea(), surface.getTotalSurfaceArea(), 0.0);
+    }
+
+}
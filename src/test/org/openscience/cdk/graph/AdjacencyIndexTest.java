@@ -0,0 +1,90 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.nonotify.NoNotificationChemObjectBuilder;
+
+/**
+ * @cdk.module test-core
+ */
+public class AdjacencyIndexTest extends CDKTestCase {
+
+    private static IChemObjectBuilder builder = NoNotificationChemObjectBuilder.getInstance();
+
+    private IAtom c1 = builder.newInstance(IAtom.class, "C");
+    private IAtom c2 = builder.newInstance(IAtom.class, "C");
+    private IAtom o = builder.newInstance(IAtom.class, "O");
+    private IBond b1 = builder.newInstance(IBond.class, c1, c2, IBond.Order.SINGLE);
+    private IBond b2 = builder.newInstance(IBond.class, c1, o, IBond.Order.DOUBLE);
+
+    @Test
+    public void testConstructor() {
+        AdjacencyIndex index = new AdjacencyIndex(new IBond[]{b1, b2, null}, 2);
+        Assert.assertArrayEquals(new IBond[]{b1, b2}, index.getConnectedBonds(c1));
+        Assert.assertArrayEquals(new IBond[]{b1}, index.getConnectedBonds(c2));
+        Assert.assertArrayEquals(new IBond[]{b2}, index.getConnectedBonds(o));
+    }
+
+    @Test
+    public void testAddBond_IBond() {
+        AdjacencyIndex index = new AdjacencyIndex(new IBond[0], 0);
+        index.addBond(b2);
+        index.addBond(b1);
+        Assert.assertArrayEquals(new IBond[]{b2, b1}, index.getConnectedBonds(c1));
+        Assert.assertArrayEquals(new IBond[]{b1}, index.getConnectedBonds(c2));
+    }
+
+    @Test
+    public void testAddBond_IBond_Twice() {
+        AdjacencyIndex index = new AdjacencyIndex(new IBond[]{b1, b1}, 2);
+        Assert.assertArrayEquals(new IBond[]{b1, b1}, index.getConnectedBonds(c1));
+        index.removeBond(b1);
+        Assert.assertArrayEquals(new IBond[]{b1}, index.getConnectedBonds(c2));
+        // but a bond with the same atom twice is listed once
+        IBond loop = builder.newInstance(IBond.class, o, o);
+        index.addBond(loop);
+        Assert.assertArrayEquals(new IBond[]{loop}, index.getConnectedBonds(o));
+    }
+
+    @Test
+    public void testRemoveBond_IBond() {
+        AdjacencyIndex index = new AdjacencyIndex(new IBond[]{b1, b2}, 2);
+        index.removeBond(b1);
+        Assert.assertArrayEquals(new IBond[]{b2}, index.getConnectedBonds(c1));
+        Assert.assertEquals(0, index.getConnectedBonds(c2).length);
+    }
+
+    @Test
+    public void testGetConnectedBonds_IAtom() {
+        AdjacencyIndex index = new AdjacencyIndex(new IBond[]{b1, b2}, 2);
+        Assert.assertEquals(0,
+            index.getConnectedBonds(builder.newInstance(IAtom.class, "N")).length
+        );
+        // a bond that was changed after indexing marks the index as outdated
+        b2.setAtom(builder.newInstance(IAtom.class, "N"), 0);
+        Assert.assertNull(index.getConnectedBonds(c1));
+    }
+
+}
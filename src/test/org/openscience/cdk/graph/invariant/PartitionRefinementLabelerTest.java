@@ -0,0 +1,151 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.graph.invariant;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.graph.AtomContainerAtomPermutor;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.smiles.InvPair;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * Checks the functionality of the PartitionRefinementLabeler.
+ *
+ * @cdk.module test-standard
+ */
+public class PartitionRefinementLabelerTest extends CDKTestCase {
+
+    private SmilesParser parser;
+    private PartitionRefinementLabeler labeler;
+
+    @Before
+    public void setUp() {
+        parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        labeler = new PartitionRefinementLabeler();
+    }
+
+    @Test
+    public void testGetCanonicalLabels() throws Exception {
+        IMolecule molecule = parser.parseSmiles("CC(=O)CBr");
+        long[] labels = labeler.getCanonicalLabels(molecule);
+        assertPermutation(labels);
+        // the oxygen has the lowest invariants, as with the CanonicalLabeler
+        Assert.assertEquals(1, labels[2]);
+        Assert.assertEquals(2, labels[4]);
+        for (IAtom atom : molecule.atoms()) {
+            Assert.assertNull(atom.getProperty(InvPair.CANONICAL_LABEL));
+            Assert.assertNull(atom.getProperty(InvPair.INVARIANCE_PAIR));
+        }
+    }
+
+    @Test
+    public void testGetCanonicalLabels_Empty() throws Exception {
+        Assert.assertEquals(0, labeler.getCanonicalLabels(
+            DefaultChemObjectBuilder.getInstance().newInstance(IMolecule.class)
+        ).length);
+    }
+
+    @Test
+    public void testGetCanonicalLabels_AtomOrder() throws Exception {
+        String[] smiles = {
+            "O=C(C)CBr", "c1ccc2ccccc2c1", "CC(C)(C)C1CCC(CC1)C(=O)O",
+            "C1CC2CCC1CC2", "OC(=O)C1=CC=CC=C1NC2=CC=CC=C2"
+        };
+        SmilesGenerator generator = new SmilesGenerator();
+        generator.setUsePartitionRefinement(true);
+        for (String input : smiles) {
+            IMolecule molecule = parser.parseSmiles(input);
+            String expected = generator.createSMILES(molecule);
+            AtomContainerAtomPermutor permutor = new AtomContainerAtomPermutor(molecule);
+            for (int i = 0; i < 20 && permutor.hasNext(); i++) {
+                IAtomContainer permutation = (IAtomContainer)permutor.next();
+                assertPermutation(labeler.getCanonicalLabels(permutation));
+                Assert.assertEquals(expected, generator.createSMILES(
+                    permutation.getBuilder().newInstance(IMolecule.class, permutation)
+                ));
+            }
+        }
+    }
+
+    @Test
+    public void testGetCanonicalLabels_BondOrder() throws Exception {
+        // without hydrogens, the ends of the chains are told apart only by the bond orders
+        IMolecule molecule1 = makeChain(IBond.Order.SINGLE, IBond.Order.DOUBLE, IBond.Order.SINGLE, IBond.Order.SINGLE);
+        IMolecule molecule2 = makeChain(IBond.Order.SINGLE, IBond.Order.SINGLE, IBond.Order.DOUBLE, IBond.Order.SINGLE);
+        long[] labels1 = labeler.getCanonicalLabels(molecule1);
+        long[] labels2 = labeler.getCanonicalLabels(molecule2);
+        assertPermutation(labels1);
+        Assert.assertTrue(labels1[1] != labels1[3]);
+        for (int i = 0; i < labels1.length; i++) {
+            Assert.assertEquals(labels1[i], labels2[labels1.length - 1 - i]);
+        }
+    }
+
+    private IMolecule makeChain(IBond.Order... orders) {
+        IMolecule molecule = DefaultChemObjectBuilder.getInstance().newInstance(IMolecule.class);
+        molecule.addAtom(molecule.getBuilder().newInstance(IAtom.class, "C"));
+        for (int i = 0; i < orders.length; i++) {
+            molecule.addAtom(molecule.getBuilder().newInstance(IAtom.class, "C"));
+            molecule.addBond(i, i + 1, orders[i]);
+        }
+        return molecule;
+    }
+
+    @Test(timeout=10000)
+    public void testGetCanonicalLabels_Polymer() throws Exception {
+        // HO(CH2CH2O)nH, with 3001 atoms
+        IMolecule molecule = DefaultChemObjectBuilder.getInstance().newInstance(IMolecule.class);
+        for (int i = 0; i < 3001; i++) {
+            IAtom atom = molecule.getBuilder().newInstance(IAtom.class, i % 3 == 0 ? "O" : "C");
+            atom.setImplicitHydrogenCount(i % 3 == 0 ? 0 : 2);
+            molecule.addAtom(atom);
+            if (i > 0) molecule.addBond(i - 1, i, IBond.Order.SINGLE);
+        }
+        molecule.getAtom(0).setImplicitHydrogenCount(1);
+        molecule.getAtom(3000).setImplicitHydrogenCount(1);
+        long[] labels = labeler.getCanonicalLabels(molecule);
+        assertPermutation(labels);
+        Assert.assertEquals(3001, labels.length);
+        Assert.assertEquals(1, Math.min(labels[0], labels[3000]));
+    }
+
+    private void assertPermutation(long[] labels) {
+        Set<Long> seen = new HashSet<Long>();
+        for (long label : labels) {
+            Assert.assertTrue(label >= 1 && label <= labels.length);
+            Assert.assertTrue(seen.add(label));
+        }
+    }
+
+}
@@ -20,6 +20,7 @@
  */
 package org.openscience.cdk.interfaces;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -2008,7 +2009,125 @@ public abstract class AbstractAtomContainerTest extends AbstractChemObjectTest {
         Assert.assertEquals(3, acetone.getBondCount());
         Assert.assertEquals(acetone.getBond(2), b2);
     }
-    
+
+    /**
+     * Checks that the neighbour lookups stay in sync with the bond list,
+     * once they have been queried.
+     */
+    @Test public void testGetConnectedBondsList_AfterModification() {
+    	IAtomContainer acetone = (IAtomContainer)newChemObject();
+    	IAtom c = acetone.getBuilder().newInstance(IAtom.class,"C");
+        IAtom c1 = acetone.getBuilder().newInstance(IAtom.class,"C");
+        IAtom c2 = acetone.getBuilder().newInstance(IAtom.class,"C");
+        IAtom o = acetone.getBuilder().newInstance(IAtom.class,"O");
+        acetone.addAtom(c);
+        acetone.addAtom(o);
+        acetone.addAtom(c1);
+        acetone.addAtom(c2);
+        IBond b = acetone.getBuilder().newInstance(IBond.class,c, o, IBond.Order.DOUBLE);
+        IBond b1 = acetone.getBuilder().newInstance(IBond.class,c, c1, IBond.Order.SINGLE);
+        IBond b2 = acetone.getBuilder().newInstance(IBond.class,c, c2, IBond.Order.SINGLE);
+        acetone.addBond(b);
+        acetone.addBond(b1);
+        Assert.assertEquals(2, acetone.getConnectedBondsCount(c));
+
+        acetone.addBond(b2);
+        List<IBond> bonds = acetone.getConnectedBondsList(c);
+        Assert.assertEquals(3, bonds.size());
+        Assert.assertEquals(b, bonds.get(0));
+        Assert.assertEquals(b1, bonds.get(1));
+        Assert.assertEquals(b2, bonds.get(2));
+        Assert.assertEquals(b2, acetone.getBond(c2, c));
+
+        acetone.removeBond(b1);
+        Assert.assertEquals(2, acetone.getConnectedBondsCount(c));
+        Assert.assertEquals(0, acetone.getConnectedBondsCount(c1));
+        Assert.assertNull(acetone.getBond(c, c1));
+
+        acetone.setBonds(new IBond[]{b1});
+        Assert.assertEquals(1, acetone.getConnectedAtomsList(c).size());
+        Assert.assertEquals(c1, acetone.getConnectedAtomsList(c).get(0));
+        Assert.assertEquals(0, acetone.getConnectedBondsCount(o));
+
+        // bonds changed in place are picked up too
+        b1.setAtom(c2, 1);
+        Assert.assertEquals(c2, acetone.getConnectedAtomsList(c).get(0));
+        Assert.assertEquals(0, acetone.getConnectedBondsCount(c1));
+
+        acetone.removeAllBonds();
+        Assert.assertEquals(0, acetone.getConnectedBondsCount(c));
+    }
+
+    @Test public void testGetConnectedAtomsCount_RepointedBond() {
+    	IAtomContainer mol = (IAtomContainer)newChemObject();
+    	IAtom c = mol.getBuilder().newInstance(IAtom.class,"C");
+        IAtom c1 = mol.getBuilder().newInstance(IAtom.class,"C");
+        IAtom c2 = mol.getBuilder().newInstance(IAtom.class,"C");
+        IAtom o = mol.getBuilder().newInstance(IAtom.class,"O");
+        IAtom n = mol.getBuilder().newInstance(IAtom.class,"N");
+        mol.addAtom(c);
+        mol.addAtom(o);
+        mol.addAtom(c1);
+        mol.addAtom(c2);
+        mol.addAtom(n);
+        IBond b = mol.getBuilder().newInstance(IBond.class,c, o, IBond.Order.DOUBLE);
+        IBond b1 = mol.getBuilder().newInstance(IBond.class,c1, c2, IBond.Order.SINGLE);
+        mol.addBond(b);
+        mol.addBond(b1);
+        Assert.assertEquals(1, mol.getConnectedAtomsCount(c));
+        Assert.assertEquals(1, mol.getConnectedAtomsCount(c2));
+        Assert.assertEquals(0, mol.getConnectedAtomsCount(n));
+
+        // the atom a bond now points to has its bonds listed before
+        b1.setAtom(c, 1);
+        Assert.assertEquals(2, mol.getConnectedAtomsCount(c));
+        Assert.assertEquals(0, mol.getConnectedAtomsCount(c2));
+        Assert.assertEquals(1, mol.getConnectedAtomsCount(c1));
+
+        // and an atom without bonds before
+        b.setAtoms(new IAtom[]{n, o});
+        Assert.assertEquals(1, mol.getConnectedAtomsCount(n));
+        Assert.assertEquals(n, mol.getConnectedAtomsList(o).get(0));
+        Assert.assertEquals(1, mol.getConnectedAtomsCount(c));
+    }
+
+    @Test public void testGetConnectedAtomsCount_SharedRepointedBond() throws Exception {
+    	IAtomContainer mol = (IAtomContainer)newChemObject();
+    	IAtom c1 = mol.getBuilder().newInstance(IAtom.class,"C");
+        IAtom c2 = mol.getBuilder().newInstance(IAtom.class,"C");
+        IAtom o = mol.getBuilder().newInstance(IAtom.class,"O");
+        mol.addAtom(c1);
+        mol.addAtom(c2);
+        mol.addAtom(o);
+        IBond b = mol.getBuilder().newInstance(IBond.class,c1, c2, IBond.Order.SINGLE);
+        mol.addBond(b);
+        // more containers index the bond than it keeps track of
+        List<IAtomContainer> parts = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 6; i++) {
+        	IAtomContainer part = mol.getBuilder().newInstance(IAtomContainer.class);
+        	part.addAtom(c1);
+        	part.addAtom(c2);
+        	part.addAtom(o);
+        	part.addBond(b);
+        	Assert.assertEquals(1, part.getConnectedAtomsCount(c2));
+        	parts.add(part);
+        }
+        Assert.assertEquals(1, mol.getConnectedAtomsCount(c2));
+        // changes to a clone are not seen by the original
+        IAtomContainer clone = (IAtomContainer)mol.clone();
+        clone.getBond(0).setAtom(clone.getAtom(2), 1);
+        Assert.assertEquals(1, clone.getConnectedAtomsCount(clone.getAtom(2)));
+        Assert.assertEquals(0, mol.getConnectedAtomsCount(o));
+
+        b.setAtom(o, 1);
+        Assert.assertEquals(0, mol.getConnectedAtomsCount(c2));
+        Assert.assertEquals(1, mol.getConnectedAtomsCount(o));
+        for (IAtomContainer part : parts) {
+        	Assert.assertEquals(0, part.getConnectedAtomsCount(c2));
+        	Assert.assertEquals(1, part.getConnectedAtomsCount(o));
+        }
+    }
+
     @Test public void testGetLonePair_int() {
     	IAtomContainer mol = (IAtomContainer)newChemObject();
         IAtom c = mol.getBuilder().newInstance(IAtom.class,"C");
@@ -47,6 +47,8 @@ import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.BufferedReader;
+import java.io.StringReader;
 
 /**
  * TestCase for the reading MDL mol files using one test file.
@@ -156,6 +158,25 @@ public class IteratingMDLReaderTest extends CDKTestCase {
         Assert.assertEquals("120-78-5", m.getProperty("E_CAS"));
     }
 
+    @Test public void testMultipleEntryFields_SharedNames() throws Exception {
+        String filename = "data/mdl/test.sdf";
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(filename);
+        IteratingMDLReader reader = new IteratingMDLReader(
+            ins, DefaultChemObjectBuilder.getInstance()
+        );
+
+        IMolecule first = (IMolecule)reader.next();
+        IMolecule second = (IMolecule)reader.next();
+        Object firstName = null;
+        for (Object name : first.getProperties().keySet())
+            if ("E_CAS".equals(name)) firstName = name;
+        Object secondName = null;
+        for (Object name : second.getProperties().keySet())
+            if ("E_CAS".equals(name)) secondName = name;
+        Assert.assertNotNull(firstName);
+        Assert.assertSame(firstName, secondName);
+    }
+
     @Test public void testOnMDLMolfile() throws Exception {
         String filename = "data/mdl/bug682233.mol";
         logger.info("Testing: " + filename);
@@ -290,6 +311,35 @@ public class IteratingMDLReaderTest extends CDKTestCase {
         Assert.assertNotNull(mol.getAtom(0).getPoint3d());
     }
     
+    /**
+     * The lines of a molfile can be read as characters too, up to 'M  END'.
+     */
+    @Test public void testMolfileReader_Characters() throws Exception {
+        String molfile = "name\n  program\n\n  0  0  0  0  0  0  0  0  0  0999 V2000\n" +
+            "M  END\n> <ID>\n1\n\n$$$$\n";
+        BufferedReader input = new BufferedReader(new StringReader(molfile));
+        IteratingMDLReader.MolfileReader reader = new IteratingMDLReader.MolfileReader();
+        Assert.assertTrue(reader.start(input, input.readLine()));
+        Assert.assertEquals('n', reader.read());
+        char[] buffer = new char[100];
+        Assert.assertEquals(2, reader.read(buffer, 10, 2));
+        Assert.assertEquals("am", new String(buffer, 10, 2));
+        // the rest of the line
+        Assert.assertEquals("e", reader.readLine());
+        Assert.assertEquals(4, reader.skip(4));
+        Assert.assertEquals("ogram", reader.readLine());
+        StringBuilder rest = new StringBuilder();
+        int count;
+        while ((count = reader.read(buffer, 0, buffer.length)) != -1)
+            rest.append(buffer, 0, count);
+        Assert.assertEquals("\n  0  0  0  0  0  0  0  0  0  0999 V2000\nM  END\n", rest.toString());
+        Assert.assertFalse(reader.ready());
+        Assert.assertNull(reader.readLine());
+        // the data items are left to the iterating reader
+        Assert.assertEquals("> <ID>", input.readLine());
+        Assert.assertFalse(reader.markSupported());
+    }
+
     class MyListener implements IChemObjectIOListener {
 
 		public void processIOSettingQuestion(IOSetting setting) {
@@ -0,0 +1,245 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.io.formats.MDLV2000Format;
+import org.openscience.cdk.io.listener.IChemObjectIOListener;
+import org.openscience.cdk.io.setting.BooleanIOSetting;
+import org.openscience.cdk.io.setting.IOSetting;
+
+/**
+ * @cdk.module test-io
+ */
+public class IteratingParallelMDLReaderTest extends CDKTestCase {
+
+    private Reader getReader(String filename) {
+        return new InputStreamReader(
+            getClass().getClassLoader().getResourceAsStream(filename)
+        );
+    }
+
+    /**
+     * Returns a description of each molecule, with its title, atom count
+     * and SD tags.
+     */
+    private List<String> describe(IIteratingChemObjectReader reader) throws Exception {
+        List<String> molecules = new ArrayList<String>();
+        while (reader.hasNext()) {
+            IMolecule molecule = (IMolecule)reader.next();
+            molecules.add(
+                molecule.getProperty(CDKConstants.TITLE) + " " +
+                molecule.getAtomCount() + " " + molecule.getProperties()
+            );
+        }
+        reader.close();
+        return molecules;
+    }
+
+    private List<String> describeSequential(String filename) throws Exception {
+        return describe(new IteratingMDLReader(
+            getReader(filename), DefaultChemObjectBuilder.getInstance()
+        ));
+    }
+
+    @Test public void testOrdered() throws Exception {
+        for (String filename : new String[]{"data/mdl/test.sdf", "data/mdl/pcoretest1.sdf"}) {
+            List<String> expected = describeSequential(filename);
+            IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+                getReader(filename), DefaultChemObjectBuilder.getInstance(), 4, true
+            );
+            Assert.assertEquals(expected, describe(reader));
+        }
+    }
+
+    @Test public void testUnordered() throws Exception {
+        String filename = "data/mdl/pcoretest1.sdf";
+        List<String> expected = describeSequential(filename);
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            getReader(filename), DefaultChemObjectBuilder.getInstance(), 3, false
+        );
+        List<String> molecules = describe(reader);
+        Collections.sort(expected);
+        Collections.sort(molecules);
+        Assert.assertEquals(expected, molecules);
+    }
+
+    @Test public void testOnMDLMolfile() throws Exception {
+        String filename = "data/mdl/bug682233.mol";
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            getReader(filename), DefaultChemObjectBuilder.getInstance(), 2, true
+        );
+        Assert.assertEquals(describeSequential(filename), describe(reader));
+    }
+
+    @Test public void testGetFormat() throws Exception {
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            getReader("data/mdl/test.sdf"), DefaultChemObjectBuilder.getInstance()
+        );
+        Assert.assertNull(reader.getFormat());
+        reader.next();
+        Assert.assertEquals(MDLV2000Format.getInstance(), reader.getFormat());
+        reader.close();
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void testNext_NoSuchElement() throws Exception {
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            new StringReader(""), DefaultChemObjectBuilder.getInstance()
+        );
+        Assert.assertFalse(reader.hasNext());
+        reader.next();
+    }
+
+    @Test public void testClose() throws Exception {
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            getReader("data/mdl/pcoretest1.sdf"), DefaultChemObjectBuilder.getInstance(), 2, true
+        );
+        Assert.assertTrue(reader.hasNext());
+        reader.next();
+        reader.close();
+        Assert.assertFalse(reader.hasNext());
+    }
+
+    @Test public void testSetReader_Reader() throws Exception {
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            getReader("data/mdl/pcoretest1.sdf"), DefaultChemObjectBuilder.getInstance(), 2, true
+        );
+        reader.next();
+        reader.setReader(getReader("data/mdl/test.sdf"));
+        Assert.assertEquals(describeSequential("data/mdl/test.sdf"), describe(reader));
+    }
+
+    @Test public void testSetReader_InputStream() throws Exception {
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            getReader("data/mdl/pcoretest1.sdf"), DefaultChemObjectBuilder.getInstance(), 2, true
+        );
+        reader.next();
+        InputStream ins = getClass().getClassLoader().getResourceAsStream("data/mdl/test.sdf");
+        reader.setReader(ins);
+        Assert.assertEquals(describeSequential("data/mdl/test.sdf"), describe(reader));
+    }
+
+    /**
+     * A reader that is closed before the end of the input must stop its
+     * splitter thread, also when that waits for the queue to have room.
+     */
+    @Test(timeout=10000)
+    public void testClose_BeforeEnd() throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100; i++) input.append("\n  CDK\n\n  0  0  0  0  0  0  0  0  0  0999 V2000\nM  END\n$$$$\n");
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            new StringReader(input.toString()), DefaultChemObjectBuilder.getInstance(), 1, true
+        );
+        Assert.assertTrue(reader.hasNext());
+        reader.next();
+        Thread splitter = null;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("IteratingParallelMDLReader-splitter") && thread.isAlive())
+                splitter = thread;
+        }
+        Assert.assertNotNull(splitter);
+        reader.close();
+        splitter.join();
+        Assert.assertFalse(reader.hasNext());
+    }
+
+    @Test public void testGetIOSettings() throws Exception {
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            new StringReader(""), DefaultChemObjectBuilder.getInstance()
+        );
+        IOSetting[] settings = reader.getIOSettings();
+        Assert.assertEquals(1, settings.length);
+        Assert.assertEquals("ForceReadAs3DCoordinates", settings[0].getName());
+        Assert.assertFalse(((BooleanIOSetting)settings[0]).isSet());
+    }
+
+    @Test public void testCustomizeJob() throws Exception {
+        String filename = "data/mdl/no3dStructures.sdf";
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            getReader(filename), DefaultChemObjectBuilder.getInstance(), 2, true
+        );
+        reader.addChemObjectIOListener(new ForceReadAs3DListener());
+        reader.customizeJob();
+        Assert.assertTrue(((BooleanIOSetting)reader.getIOSettings()[0]).isSet());
+        int molCount = 0;
+        while (reader.hasNext()) {
+            IMolecule molecule = (IMolecule)reader.next();
+            Assert.assertNull(molecule.getAtom(0).getPoint2d());
+            Assert.assertNotNull(molecule.getAtom(0).getPoint3d());
+            molCount++;
+        }
+        reader.close();
+        Assert.assertEquals(2, molCount);
+    }
+
+    /**
+     * The parser threads ask the reader for the settings of their readers.
+     */
+    @Test public void testProcessIOSettingQuestion() throws Exception {
+        IteratingParallelMDLReader reader = new IteratingParallelMDLReader(
+            new StringReader(""), DefaultChemObjectBuilder.getInstance()
+        );
+        BooleanIOSetting setting = new BooleanIOSetting("ForceReadAs3DCoordinates", IOSetting.LOW,
+            "Should coordinates always be read as 3D?", "false");
+        reader.processIOSettingQuestion(setting);
+        Assert.assertFalse(setting.isSet());
+        reader.addChemObjectIOListener(new ForceReadAs3DListener());
+        reader.customizeJob();
+        reader.processIOSettingQuestion(setting);
+        Assert.assertTrue(setting.isSet());
+        BooleanIOSetting other = new BooleanIOSetting("Other", IOSetting.LOW, "Other?", "false");
+        reader.processIOSettingQuestion(other);
+        Assert.assertFalse(other.isSet());
+    }
+
+    private static class ForceReadAs3DListener implements IChemObjectIOListener {
+
+        public void processIOSettingQuestion(IOSetting setting) {
+            if ("ForceReadAs3DCoordinates".equals(setting.getName())) {
+                try {
+                    setting.setSetting("true");
+                } catch (CDKException exception) {
+                    Assert.fail(exception.getMessage());
+                }
+            }
+        }
+
+    }
+
+}
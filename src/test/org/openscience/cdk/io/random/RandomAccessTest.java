@@ -24,14 +24,32 @@
  */
 package org.openscience.cdk.io.random;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.Molecule;
+import org.openscience.cdk.Reaction;
+import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IChemObject;
 import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.io.formats.MDLFormat;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
@@ -39,7 +57,7 @@ import org.openscience.cdk.tools.LoggingToolFactory;
  * Test for {@link RandomAccessSDFReader}.
  *
  * @author     Nina Jeliazkova <nina@acad.bg>
- * @cdk.module test-extra
+ * @cdk.module test-io
  */
 public class RandomAccessTest extends CDKTestCase {
 
@@ -71,4 +89,193 @@ public class RandomAccessTest extends CDKTestCase {
         }
         rf.close();
     }
+
+    @Test public void testReadProperties() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        for (int i=0; i < rf.size(); i++) {
+            IChemObject m = rf.readRecord(i);
+            Map<Object,Object> properties = rf.readProperties(i);
+            Assert.assertFalse(properties.isEmpty());
+            for (Map.Entry<Object,Object> property : properties.entrySet())
+                Assert.assertEquals(m.getProperty(property.getKey()), property.getValue());
+        }
+        rf.close();
+    }
+
+    @Test public void testReadProperty() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        Assert.assertEquals("MFCD00000662", rf.readProperty(2, "MDLNUMBER"));
+        Assert.assertNull(rf.readProperty(2, "NO SUCH TAG"));
+        rf.close();
+    }
+
+    @Test public void testReadRecord_Concurrent() throws Exception {
+        final RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        final Object[] expected = new Object[rf.size()];
+        for (int i=0; i < rf.size(); i++) expected[i] = rf.readRecord(i).getProperty("MDLNUMBER");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i=0; i < 200; i++) {
+            final int record = (i * 7) % rf.size();
+            results.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    IMolecule m = (IMolecule)rf.readRecord(record);
+                    return m.getAtomCount() > 0 && expected[record].equals(m.getProperty("MDLNUMBER"));
+                }
+            }));
+        }
+        for (Future<Boolean> result : results) Assert.assertTrue(result.get());
+        executor.shutdown();
+        rf.close();
+    }
+
+    @Test public void testIndex() throws Exception {
+        File f = File.createTempFile("RandomAccessTest", ".sdf");
+        f.deleteOnExit();
+        copy(new FileInputStream("src/test/data/mdl/test2.sdf"), new FileOutputStream(f));
+        File indexFile = RandomAccessReader.getIndexFile(f.getAbsolutePath());
+        indexFile.deleteOnExit();
+
+        RandomAccessReader rf = new RandomAccessSDFReader(f, DefaultChemObjectBuilder.getInstance());
+        Assert.assertEquals(6, rf.size());
+        rf.close();
+        Assert.assertTrue(indexFile.exists());
+        long indexModified = indexFile.lastModified();
+
+        // the existing index is used
+        rf = new RandomAccessSDFReader(f, DefaultChemObjectBuilder.getInstance());
+        Assert.assertEquals(6, rf.size());
+        Assert.assertEquals("MFCD03453215", rf.readRecord(5).getProperty("MDLNUMBER"));
+        rf.close();
+        Assert.assertEquals(indexModified, indexFile.lastModified());
+
+        // the index is rebuilt when the file changes
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        copy(new FileInputStream("src/test/data/mdl/test2.sdf"), content);
+        String firstRecords = content.toString();
+        for (int i=0, end=0; i < 3; i++) {
+            end = firstRecords.indexOf("$$$$", end) + 5;
+            if (i == 2) firstRecords = firstRecords.substring(0, end);
+        }
+        copy(new ByteArrayInputStream(firstRecords.getBytes()), new FileOutputStream(f));
+        rf = new RandomAccessSDFReader(f, DefaultChemObjectBuilder.getInstance());
+        Assert.assertEquals(3, rf.size());
+        Assert.assertEquals("MFCD00000662", rf.readRecord(2).getProperty("MDLNUMBER"));
+        rf.close();
+        indexFile.delete();
+        f.delete();
+    }
+
+    @Test public void testGetRecordStream_int() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        copy(rf.getRecordStream(2), content);
+        String record = content.toString();
+        Assert.assertTrue(record.contains("M  END"));
+        Assert.assertTrue(record.contains("MFCD00000662"));
+        Assert.assertTrue(record.trim().endsWith("$$$$"));
+        Assert.assertEquals(record.indexOf("$$$$"), record.lastIndexOf("$$$$"));
+        try {
+            rf.getRecordStream(rf.size());
+            Assert.fail("a record number beyond the last record must throw an exception");
+        } catch (CDKException exception) {
+            // expected
+        }
+        rf.close();
+    }
+
+    @Test public void testGetDataStream_int() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        copy(rf.getDataStream(2), content);
+        String data = content.toString();
+        Assert.assertTrue(data.startsWith(">"));
+        Assert.assertFalse(data.contains("M  END"));
+        Assert.assertTrue(data.contains("MFCD00000662"));
+        try {
+            rf.getDataStream(-1);
+            Assert.fail("a negative record number must throw an exception");
+        } catch (CDKException exception) {
+            // expected
+        }
+        rf.close();
+    }
+
+    @Test public void testIsRecordEnd_arrayByte_int() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        byte[] line = "$$$$ ".getBytes();
+        Assert.assertTrue(rf.isRecordEnd(line, 4));
+        Assert.assertFalse(rf.isRecordEnd(line, 5));
+        Assert.assertFalse(rf.isRecordEnd(line, 3));
+        Assert.assertFalse(rf.isRecordEnd("M  END".getBytes(), 6));
+        rf.close();
+    }
+
+    @Test public void testIsDataStart_arrayByte_int() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        Assert.assertTrue(rf.isDataStart("M  END".getBytes(), 6));
+        Assert.assertFalse(rf.isDataStart("M  END".getBytes(), 5));
+        Assert.assertFalse(rf.isDataStart("M  CHG  1".getBytes(), 9));
+        Assert.assertFalse(rf.isDataStart("$$$$".getBytes(), 4));
+        rf.close();
+    }
+
+    @Test public void testClose() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        rf.close();
+        Assert.assertFalse(rf.raFile.getChannel().isOpen());
+    }
+
+    @Test public void testGetFormat() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        Assert.assertEquals(MDLFormat.getInstance(), rf.getFormat());
+        rf.close();
+    }
+
+    @Test public void testAccepts() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        Assert.assertTrue(rf.accepts(Molecule.class));
+        Assert.assertFalse(rf.accepts(Reaction.class));
+        rf.close();
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSetReader_Reader() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        try {
+            rf.setReader(new StringReader(""));
+        } finally {
+            rf.close();
+        }
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSetReader_InputStream() throws Exception {
+        RandomAccessSDFReader rf = new RandomAccessSDFReader(
+            new File("src/test/data/mdl/test2.sdf"), DefaultChemObjectBuilder.getInstance());
+        try {
+            rf.setReader(new ByteArrayInputStream(new byte[0]));
+        } finally {
+            rf.close();
+        }
+    }
+
+    private void copy(InputStream in, OutputStream out) throws Exception {
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+        in.close();
+        out.close();
+    }
 }
@@ -0,0 +1,244 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.ChemFile;
+import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemFile;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.io.ISimpleChemObjectReader;
+import org.openscience.cdk.io.MDLV2000Reader;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
+import org.openscience.cdk.isomorphism.mcss.RMap;
+import org.openscience.cdk.templates.MoleculeFactory;
+import org.openscience.cdk.tools.CDKHydrogenAdder;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
+import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
+
+/**
+ * @cdk.module test-standard
+ */
+public class UniversalIsomorphismMatcherTest extends CDKTestCase {
+
+    @Test
+    public void testGetTimeout() {
+        Assert.assertEquals(-1, new UniversalIsomorphismMatcher().getTimeout());
+        Assert.assertEquals(200, new UniversalIsomorphismMatcher(200).getTimeout());
+    }
+
+    @Test
+    public void testIsSubgraph() throws Exception {
+        UniversalIsomorphismMatcher matcher = new UniversalIsomorphismMatcher();
+        Assert.assertTrue(matcher.isSubgraph(MoleculeFactory.makeAlkane(5), MoleculeFactory.makeAlkane(3)));
+        Assert.assertFalse(matcher.isSubgraph(MoleculeFactory.makeAlkane(3), MoleculeFactory.makeAlkane(5)));
+        Assert.assertNotNull(matcher.getSubgraphMap(MoleculeFactory.makeAlkane(5), MoleculeFactory.makeAlkane(3)));
+    }
+
+    /**
+     * Queries with more atoms of an element, or more bonds of an order, than
+     * the target are rejected before the search, unless those are query
+     * atoms and bonds.
+     */
+    @Test
+    public void testIsSubgraph_Heuristics() throws Exception {
+        UniversalIsomorphismMatcher matcher = new UniversalIsomorphismMatcher();
+        IMolecule pentane = MoleculeFactory.makeAlkane(5);
+        IMolecule propylamine = MoleculeFactory.makeAlkane(3);
+        propylamine.getAtom(2).setSymbol("N");
+        Assert.assertFalse(matcher.isSubgraph(pentane, propylamine));
+        Assert.assertTrue(matcher.isSubgraph(pentane,
+            QueryAtomContainerCreator.createAnyAtomContainer(propylamine, false)));
+        IMolecule propene = MoleculeFactory.makeAlkane(3);
+        propene.getBond(0).setOrder(IBond.Order.DOUBLE);
+        Assert.assertFalse(matcher.isSubgraph(pentane, propene));
+        Assert.assertTrue(matcher.isSubgraph(pentane,
+            QueryAtomContainerCreator.createAnyAtomAnyBondContainer(propene, false)));
+    }
+
+    @Test
+    public void testIsIsomorph() throws Exception {
+        UniversalIsomorphismMatcher matcher = new UniversalIsomorphismMatcher();
+        Assert.assertTrue(matcher.isIsomorph(MoleculeFactory.makeIndole(), MoleculeFactory.makeIndole()));
+        Assert.assertFalse(matcher.isIsomorph(MoleculeFactory.makeIndole(), MoleculeFactory.makePyrrole()));
+    }
+
+    @Test
+    public void testGetIsomorphMaps() throws Exception {
+        IMolecule benzene = MoleculeFactory.makeBenzene();
+        Assert.assertEquals(
+            UniversalIsomorphismTester.getIsomorphMaps(benzene, benzene).size(),
+            new UniversalIsomorphismMatcher().getIsomorphMaps(benzene, benzene).size()
+        );
+    }
+
+    @Test
+    public void testGetIsomorphAtomsMap() throws Exception {
+        IMolecule indole = MoleculeFactory.makeIndole();
+        List<RMap> map = new UniversalIsomorphismMatcher().getIsomorphAtomsMap(indole, indole);
+        Assert.assertEquals(indole.getAtomCount(), map.size());
+    }
+
+    @Test
+    public void testGetSubgraphMaps() throws Exception {
+        IMolecule indole = MoleculeFactory.makeIndole();
+        IMolecule pyrrole = MoleculeFactory.makePyrrole();
+        Assert.assertEquals(
+            UniversalIsomorphismTester.getSubgraphMaps(indole, pyrrole).size(),
+            new UniversalIsomorphismMatcher().getSubgraphMaps(indole, pyrrole).size()
+        );
+    }
+
+    @Test
+    public void testGetSubgraphAtomsMaps() throws Exception {
+        IMolecule pentane = MoleculeFactory.makeAlkane(5);
+        IMolecule propane = MoleculeFactory.makeAlkane(3);
+        UniversalIsomorphismMatcher matcher = new UniversalIsomorphismMatcher();
+        List<List<RMap>> maps = matcher.getSubgraphAtomsMaps(pentane, propane);
+        Assert.assertFalse(maps.isEmpty());
+        for (List<RMap> map : maps) Assert.assertEquals(3, map.size());
+        Assert.assertEquals(3, matcher.getSubgraphAtomsMap(pentane, propane).size());
+    }
+
+    @Test
+    public void testGetOverlaps() throws Exception {
+        List<IAtomContainer> overlaps = new UniversalIsomorphismMatcher().getOverlaps(
+            MoleculeFactory.makeIndole(), MoleculeFactory.makePyrrole()
+        );
+        Assert.assertEquals(
+            UniversalIsomorphismTester.getOverlaps(
+                MoleculeFactory.makeIndole(), MoleculeFactory.makePyrrole()
+            ).size(),
+            overlaps.size()
+        );
+    }
+
+    @Test
+    public void testSearch_Interrupted() throws Exception {
+        IMolecule indole = MoleculeFactory.makeIndole();
+        Thread.currentThread().interrupt();
+        try {
+            new UniversalIsomorphismMatcher().getSubgraphMaps(indole, MoleculeFactory.makePyrrole());
+            Assert.fail("an interrupted search must throw an exception");
+        } catch (CDKException exception) {
+            // expected
+        } finally {
+            Assert.assertTrue(Thread.interrupted());
+        }
+    }
+
+    /**
+     * Searches with and without a timeout run concurrently, and must not
+     * change each others timeout.
+     */
+    @Test(timeout=60000)
+    public void testConcurrentSearches() throws Exception {
+        final IAtomContainer[] slow = getSlowSearch();
+        final IMolecule pentane = MoleculeFactory.makeAlkane(5);
+        final IMolecule propane = MoleculeFactory.makeAlkane(3);
+        final int expected = new UniversalIsomorphismMatcher().getSubgraphMaps(pentane, propane).size();
+        final UniversalIsomorphismMatcher unlimited = new UniversalIsomorphismMatcher();
+        final UniversalIsomorphismMatcher limited = new UniversalIsomorphismMatcher(100);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 400; i++) {
+            if (i % 50 == 0) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        long start = System.currentTimeMillis();
+                        limited.getSubgraphAtomsMaps(slow[0], slow[1]);
+                        return System.currentTimeMillis() - start < 5000;
+                    }
+                }));
+            } else {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        return unlimited.getSubgraphMaps(pentane, propane).size() == expected
+                            && unlimited.isSubgraph(pentane, propane);
+                    }
+                }));
+            }
+        }
+        for (Future<Boolean> result : results) Assert.assertTrue(result.get());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout=60000)
+    public void testSearch_Cancelled() throws Exception {
+        final IAtomContainer[] slow = getSlowSearch();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<List<List<RMap>>> search = executor.submit(new Callable<List<List<RMap>>>() {
+            public List<List<RMap>> call() throws Exception {
+                return new UniversalIsomorphismMatcher().getSubgraphAtomsMaps(slow[0], slow[1]);
+            }
+        });
+        Thread.sleep(200);
+        Assert.assertTrue(search.cancel(true));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Returns a target and query for which the search takes very long, as
+     * used in {@link UniversalIsomorphismTesterTest#testUITTimeoutFix()}.
+     */
+    private IAtomContainer[] getSlowSearch() throws Exception {
+        InputStream ins = getClass().getClassLoader().getResourceAsStream("data/mdl/UITTimeout.sdf");
+        ISimpleChemObjectReader reader = new MDLV2000Reader(ins);
+        IChemFile content = (IChemFile)reader.read(new ChemFile());
+        List<IAtomContainer> containers = ChemFileManipulator.getAllAtomContainers(content);
+        IAtomContainer[] molecules = new IAtomContainer[2];
+        for (int j = 0; j < 2; j++) {
+            IAtomContainer container = containers.get(j);
+            CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(container.getBuilder());
+            CDKHydrogenAdder adder = CDKHydrogenAdder.getInstance(container.getBuilder());
+            for (IAtom atom : container.atoms()) {
+                AtomTypeManipulator.configure(atom, matcher.findMatchingAtomType(container, atom));
+                adder.addImplicitHydrogens(container, atom);
+            }
+            AtomContainerManipulator.convertImplicitToExplicitHydrogens(container);
+            molecules[j] = container;
+        }
+        molecules[1] = QueryAtomContainerCreator.createAnyAtomForPseudoAtomQueryContainer(molecules[1]);
+        return molecules;
+    }
+
+}
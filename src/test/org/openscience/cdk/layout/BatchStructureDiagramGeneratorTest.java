@@ -0,0 +1,309 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.geometry.GeometryTools;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.layout.BatchStructureDiagramGenerator.LayoutPath;
+import org.openscience.cdk.layout.BatchStructureDiagramGenerator.LayoutResult;
+import org.openscience.cdk.layout.BatchStructureDiagramGenerator.ResultHandler;
+import org.openscience.cdk.layout.BatchStructureDiagramGenerator.Status;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-sdg
+ */
+public class BatchStructureDiagramGeneratorTest extends CDKTestCase {
+
+    private static final String SLOW = "BatchStructureDiagramGeneratorTest.slow";
+
+    private SmilesParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+    }
+
+    private List<IMolecule> parse(String... smiles) throws Exception {
+        List<IMolecule> molecules = new ArrayList<IMolecule>();
+        for (String s : smiles) molecules.add(parser.parseSmiles(s));
+        return molecules;
+    }
+
+    private void assertLaidOut(IMolecule input, LayoutResult result) {
+        Assert.assertEquals(Status.LAID_OUT, result.getStatus());
+        Assert.assertNull(result.getException());
+        IMolecule molecule = result.getMolecule();
+        Assert.assertNotSame(input, molecule);
+        Assert.assertEquals(input.getAtomCount(), molecule.getAtomCount());
+        Assert.assertTrue(GeometryTools.has2DCoordinates(molecule));
+        for (IAtom atom : input.atoms()) Assert.assertNull(atom.getPoint2d());
+    }
+
+    /**
+     * A generator that takes its time for molecules marked as slow. It either
+     * sleeps, and stops when interrupted, or keeps busy until released.
+     */
+    private static class SlowGenerator extends StructureDiagramGenerator {
+
+        private final boolean interruptible;
+        private volatile boolean released = false;
+
+        SlowGenerator(boolean interruptible) {
+            this.interruptible = interruptible;
+        }
+
+        public void generateCoordinates() throws CDKException {
+            if (getMolecule().getProperty(SLOW) != null) {
+                if (interruptible) {
+                    try {
+                        Thread.sleep(60000);
+                    } catch (InterruptedException exception) {
+                        throw new CDKException("Interrupted", exception);
+                    }
+                } else {
+                    while (!released) Thread.yield();
+                }
+            }
+            super.generateCoordinates();
+        }
+
+    }
+
+    /**
+     * A batch whose generators are all slow, and that remembers them.
+     */
+    private static class SlowBatch extends BatchStructureDiagramGenerator {
+
+        private final boolean interruptible;
+        final List<SlowGenerator> generators = new ArrayList<SlowGenerator>();
+
+        SlowBatch(int threadCount, long timeout, boolean interruptible) {
+            super(threadCount, 4, timeout);
+            this.interruptible = interruptible;
+        }
+
+        protected StructureDiagramGenerator createGenerator() {
+            SlowGenerator generator = new SlowGenerator(interruptible);
+            synchronized (generators) {
+                generators.add(generator);
+            }
+            return generator;
+        }
+
+        void release() {
+            synchronized (generators) {
+                for (SlowGenerator generator : generators) generator.released = true;
+            }
+        }
+
+    }
+
+    @Test
+    public void testBatchStructureDiagramGenerator() {
+        BatchStructureDiagramGenerator batch = new BatchStructureDiagramGenerator();
+        Assert.assertNotNull(batch);
+        Assert.assertTrue(batch.getUseTemplates());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBatchStructureDiagramGenerator_NoThreads() {
+        new BatchStructureDiagramGenerator(0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBatchStructureDiagramGenerator_NoQueue() {
+        new BatchStructureDiagramGenerator(2, 0, -1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBatchStructureDiagramGenerator_NegativeTimeout() {
+        new BatchStructureDiagramGenerator(2, 8, -2);
+    }
+
+    @Test
+    public void testProcess() throws Exception {
+        List<IMolecule> molecules = parse(
+            "CCCCCC", "c1ccccc1CC(=O)O", "C1C2CC3CC1CC(C2)C3", "[Na+]"
+        );
+        List<LayoutResult> results =
+            new BatchStructureDiagramGenerator(1).process(molecules.iterator());
+        Assert.assertEquals(4, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            Assert.assertEquals(i, results.get(i).getIndex());
+            assertLaidOut(molecules.get(i), results.get(i));
+            Assert.assertTrue(results.get(i).getTime() > 0);
+        }
+        Assert.assertEquals(LayoutPath.CHAIN, results.get(0).getLayoutPath());
+        Assert.assertEquals(LayoutPath.RING_PLACER, results.get(1).getLayoutPath());
+        Assert.assertEquals(LayoutPath.TEMPLATE, results.get(2).getLayoutPath());
+        Assert.assertEquals(LayoutPath.CHAIN, results.get(3).getLayoutPath());
+    }
+
+    @Test
+    public void testProcess_Failed() throws Exception {
+        List<Object> input = new ArrayList<Object>();
+        input.add(parser.parseSmiles("CC.CC"));
+        input.add("CCO");
+        input.add(new AtomContainer(parser.parseSmiles("CCO")));
+        List<LayoutResult> results =
+            new BatchStructureDiagramGenerator(2).process(input.iterator());
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(Status.FAILED, results.get(0).getStatus());
+        Assert.assertTrue(results.get(0).getException() instanceof CDKException);
+        Assert.assertNull(results.get(0).getMolecule());
+        Assert.assertNull(results.get(0).getLayoutPath());
+        Assert.assertEquals(Status.FAILED, results.get(1).getStatus());
+        Assert.assertNull(results.get(1).getException());
+        // atom containers that are not molecules are laid out too
+        Assert.assertEquals(Status.LAID_OUT, results.get(2).getStatus());
+        Assert.assertTrue(GeometryTools.has2DCoordinates(results.get(2).getMolecule()));
+    }
+
+    /**
+     * The results are the same and in the same order on several threads.
+     */
+    @Test
+    public void testProcess_Threads() throws Exception {
+        List<IMolecule> molecules = new ArrayList<IMolecule>();
+        for (int i = 1; i <= 30; i++) {
+            StringBuffer smiles = new StringBuffer("C1CC1");
+            for (int j = 0; j < i; j++) smiles.append(j % 2 == 0 ? "C" : "O");
+            molecules.add(parser.parseSmiles(smiles.toString()));
+        }
+        List<LayoutResult> single =
+            new BatchStructureDiagramGenerator(1).process(molecules.iterator());
+        List<LayoutResult> parallel =
+            new BatchStructureDiagramGenerator(3, 2, -1).process(molecules.iterator());
+        Assert.assertEquals(molecules.size(), parallel.size());
+        for (int i = 0; i < molecules.size(); i++) {
+            Assert.assertEquals(i, parallel.get(i).getIndex());
+            assertLaidOut(molecules.get(i), parallel.get(i));
+            Assert.assertEquals(single.get(i).getLayoutPath(), parallel.get(i).getLayoutPath());
+            Assert.assertEquals(LayoutPath.RING_PLACER, parallel.get(i).getLayoutPath());
+        }
+    }
+
+    @Test
+    public void testProcess_ResultHandler() throws Exception {
+        List<IMolecule> molecules = parse("CCO", "CCN", "CCC", "C1CC1");
+        final List<Integer> indices = new ArrayList<Integer>();
+        new BatchStructureDiagramGenerator(2, 1, -1).process(molecules.iterator(), new ResultHandler() {
+            public void handle(LayoutResult result) {
+                indices.add(result.getIndex());
+            }
+        });
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), indices);
+
+        indices.clear();
+        try {
+            new BatchStructureDiagramGenerator(2).process(molecules.iterator(), new ResultHandler() {
+                public void handle(LayoutResult result) throws CDKException {
+                    indices.add(result.getIndex());
+                    if (result.getIndex() == 1) throw new CDKException("Stop");
+                }
+            });
+            Assert.fail("The handler stops the batch");
+        } catch (CDKException exception) {
+            Assert.assertEquals("Stop", exception.getMessage());
+        }
+        Assert.assertEquals(Arrays.asList(0, 1), indices);
+    }
+
+    @Test
+    public void testProcess_Timeout() throws Exception {
+        List<IMolecule> molecules = parse("CCO", "CCN", "CCC");
+        molecules.get(1).setProperty(SLOW, Boolean.TRUE);
+        SlowBatch batch = new SlowBatch(1, 200, true);
+        long start = System.currentTimeMillis();
+        List<LayoutResult> results = batch.process(molecules.iterator());
+        Assert.assertTrue(System.currentTimeMillis() - start < 30000);
+        Assert.assertEquals(3, results.size());
+        assertLaidOut(molecules.get(0), results.get(0));
+        Assert.assertEquals(Status.TIMED_OUT, results.get(1).getStatus());
+        Assert.assertNull(results.get(1).getMolecule());
+        Assert.assertTrue(results.get(1).getTime() >= 200 * 1000000L);
+        assertLaidOut(molecules.get(2), results.get(2));
+    }
+
+    /**
+     * A layout that does not stop when interrupted does not hold up the rest
+     * of the batch.
+     */
+    @Test
+    public void testProcess_TimeoutNotInterruptible() throws Exception {
+        List<IMolecule> molecules = parse("CCO", "CCN", "CCC", "CCCC");
+        molecules.get(1).setProperty(SLOW, Boolean.TRUE);
+        SlowBatch batch = new SlowBatch(1, 200, false);
+        try {
+            List<LayoutResult> results = batch.process(molecules.iterator());
+            Assert.assertEquals(4, results.size());
+            Assert.assertEquals(Status.TIMED_OUT, results.get(1).getStatus());
+            assertLaidOut(molecules.get(2), results.get(2));
+            assertLaidOut(molecules.get(3), results.get(3));
+            Assert.assertEquals(2, batch.generators.size());
+        } finally {
+            batch.release();
+        }
+    }
+
+    /**
+     * Each thread lays out its molecules with its own generator.
+     */
+    @Test
+    public void testCreateGenerator() throws Exception {
+        BatchStructureDiagramGenerator batch = new BatchStructureDiagramGenerator(2);
+        Assert.assertNotSame(batch.createGenerator(), batch.createGenerator());
+        List<IMolecule> molecules = parse("CCO", "CCN", "CCC", "CCCC", "c1ccccc1", "CC=O");
+        SlowBatch slow = new SlowBatch(2, -1, true);
+        List<LayoutResult> results = slow.process(molecules.iterator());
+        for (int i = 0; i < results.size(); i++)
+            assertLaidOut(molecules.get(i), results.get(i));
+        Assert.assertTrue(slow.generators.size() >= 1);
+        Assert.assertTrue(slow.generators.size() <= 2);
+    }
+
+    @Test
+    public void testSetUseTemplates() throws Exception {
+        List<IMolecule> molecules = parse("C1C2CC3CC1CC(C2)C3");
+        BatchStructureDiagramGenerator batch = new BatchStructureDiagramGenerator(1);
+        batch.setUseTemplates(false);
+        Assert.assertFalse(batch.getUseTemplates());
+        List<LayoutResult> results = batch.process(molecules.iterator());
+        assertLaidOut(molecules.get(0), results.get(0));
+        Assert.assertEquals(LayoutPath.RING_PLACER, results.get(0).getLayoutPath());
+    }
+
+}
@@ -891,6 +891,61 @@ public class StructureDiagramGeneratorTest extends CDKTestCase
         );
   }
 
+  /**
+   * The template handler, and templates added to it, are kept from one
+   * molecule to the next.
+   */
+  @Test
+  public void testSetMolecule_TemplateHandler() throws Exception {
+      StructureDiagramGenerator sdg = new StructureDiagramGenerator();
+      sdg.setMolecule(MoleculeFactory.makeBenzene());
+      TemplateHandler handler = sdg.getTemplateHandler();
+      Assert.assertNotNull(handler);
+      sdg.setMolecule(MoleculeFactory.makeAlphaPinene());
+      Assert.assertSame(handler, sdg.getTemplateHandler());
+
+      TemplateHandler own = new TemplateHandler(DefaultChemObjectBuilder.getInstance());
+      sdg.setTemplateHandler(own);
+      sdg.setMolecule(MoleculeFactory.makeBenzene());
+      Assert.assertSame(own, sdg.getTemplateHandler());
+  }
+
+  /**
+   * The templates used are those of the last molecule laid out.
+   */
+  @Test
+  public void testGetMappedSubstructures() throws Exception {
+      SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+      StructureDiagramGenerator sdg = new StructureDiagramGenerator();
+      Assert.assertNull(sdg.getMappedSubstructures());
+      sdg.setMolecule(sp.parseSmiles("C1C2CC3CC1CC(C2)C3"));
+      sdg.generateCoordinates();
+      Assert.assertEquals(1, sdg.getMappedSubstructures().getAtomContainerCount());
+      sdg.setMolecule(sp.parseSmiles("CCCCCC"));
+      sdg.generateCoordinates();
+      Assert.assertEquals(0, sdg.getMappedSubstructures().getAtomContainerCount());
+      sdg.setUseTemplates(false);
+      sdg.setMolecule(sp.parseSmiles("C1C2CC3CC1CC(C2)C3"));
+      sdg.generateCoordinates();
+      Assert.assertNull(sdg.getMappedSubstructures());
+  }
+
+  /**
+   * The rings are those of the last molecule laid out.
+   */
+  @Test
+  public void testGetSSSR() throws Exception {
+      SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+      StructureDiagramGenerator sdg = new StructureDiagramGenerator();
+      Assert.assertNull(sdg.getSSSR());
+      sdg.setMolecule(sp.parseSmiles("c1ccc2ccccc2c1CC"));
+      sdg.generateCoordinates();
+      Assert.assertEquals(2, sdg.getSSSR().getAtomContainerCount());
+      sdg.setMolecule(sp.parseSmiles("CCCCCC"));
+      sdg.generateCoordinates();
+      Assert.assertNull(sdg.getSSSR());
+  }
+
 
 }
 
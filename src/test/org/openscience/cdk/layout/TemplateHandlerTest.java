@@ -25,6 +25,7 @@ import java.io.InputStream;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.interfaces.IAtomContainerSet;
@@ -155,6 +156,50 @@ public class TemplateHandlerTest extends CDKTestCase {
 		
 	}
 
+	/**
+	 * The default templates are shared, but not the lists holding them.
+	 */
+	@Test public void testInit_Shared() throws Exception
+	{
+		TemplateHandler th1 = new TemplateHandler(DefaultChemObjectBuilder.getInstance());
+		TemplateHandler th2 = new TemplateHandler(DefaultChemObjectBuilder.getInstance());
+		Assert.assertSame(th1.getTemplateAt(0), th2.getTemplateAt(0));
+		Assert.assertNotNull(th1.removeMolecule(th1.getTemplateAt(0)));
+		Assert.assertEquals(4, th1.getTemplateCount());
+		Assert.assertEquals(5, th2.getTemplateCount());
+		Assert.assertEquals(5, new TemplateHandler(DefaultChemObjectBuilder.getInstance()).getTemplateCount());
+	}
+
+	@Test public void testMapTemplateExact() throws Exception
+	{
+		TemplateHandler th = new TemplateHandler(DefaultChemObjectBuilder.getInstance());
+		IMolecule adamantane = sp.parseSmiles("C1C2CC3CC1CC(C2)C3");
+		Assert.assertTrue(th.mapTemplateExact(adamantane));
+		for (int i = 0; i < adamantane.getAtomCount(); i++) {
+			Assert.assertNotNull(adamantane.getAtom(i).getPoint2d());
+			Assert.assertTrue(adamantane.getAtom(i).getFlag(CDKConstants.ISPLACED));
+		}
+		// a substructure is not enough
+		Assert.assertFalse(th.mapTemplateExact(sp.parseSmiles("CC12CC3CC(CC(C3)C1)C2")));
+		Assert.assertFalse(th.mapTemplateExact(sp.parseSmiles("C1CC2CC3CC1CC(C2)C3")));
+	}
+
+	/**
+	 * The screening of templates must not lose substructures with other
+	 * substituents, ring bonds or aromatic rings around them.
+	 */
+	@Test public void testMapTemplates_Substituted() throws Exception
+	{
+		TemplateHandler th = new TemplateHandler(DefaultChemObjectBuilder.getInstance());
+		Assert.assertTrue(th.mapTemplates(sp.parseSmiles("OC(=O)C12CC3CC(CC(C3)C1)C2")));
+		Assert.assertTrue(th.mapTemplates(sp.parseSmiles("c1ccccc1C12CC3CC(CC(C3)C1)C2c4ccncc4")));
+		// the 14 membered ring template matches the outer ring
+		Assert.assertTrue(th.mapTemplates(sp.parseSmiles("C1CCC2CC3CCCCC3CC2C1")));
+		Assert.assertFalse(th.mapTemplates(sp.parseSmiles("c1ccc2cc3ccccc3cc2c1")));
+		Assert.assertFalse(th.mapTemplates(sp.parseSmiles("C1CCCCCC2CCCCCC12")));
+		Assert.assertFalse(th.mapTemplates(sp.parseSmiles("C1CC2CC3CC1CC(C2)C3")));
+	}
+
 	
 	/**
 	 * Loads a molecule with two adamantanes and one cubane
@@ -44,6 +44,7 @@ import org.openscience.cdk.coverage.CoreCoverageTest;
 import org.openscience.cdk.exception.CDKExceptionTest;
 import org.openscience.cdk.exception.NoSuchAtomExceptionTest;
 import org.openscience.cdk.exception.NoSuchAtomTypeExceptionTest;
+import org.openscience.cdk.graph.AdjacencyIndexTest;
 import org.openscience.cdk.graph.PathToolsTest;
 import org.openscience.cdk.graph.SpanningTreeTest;
 import org.openscience.cdk.graph.matrix.AdjacencyMatrixTest;
@@ -103,6 +104,7 @@ import org.openscience.cdk.tools.periodictable.PeriodicTableTest;
     SystemOutLoggingToolTest.class,
     BondManipulatorTest.class,
     AdjacencyMatrixTest.class,
+    AdjacencyIndexTest.class,
     PathToolsTest.class,
     SpanningTreeTest.class
 })
@@ -29,6 +29,7 @@ import org.openscience.cdk.fragment.ExhaustiveFragmenterTest;
 import org.openscience.cdk.fragment.MurckoFragmenterTest;
 import org.openscience.cdk.geometry.RDFCalculatorTest;
 import org.openscience.cdk.geometry.alignment.KabschAlignmentTest;
+import org.openscience.cdk.geometry.surface.ParallelSurfaceTest;
 import org.openscience.cdk.index.CASNumberTest;
 import org.openscience.cdk.io.ShelXWriterTest;
 import org.openscience.cdk.iupac.ParserTest;
@@ -49,6 +50,7 @@ import org.openscience.cdk.tools.HOSECodeAnalyserTest;
     CloneAtomContainerTest.class,
     RDFCalculatorTest.class,
     KabschAlignmentTest.class,
+    ParallelSurfaceTest.class,
     CASNumberTest.class,
     HOSECodeAnalyserTest.class,
     DeAromatizationToolTest.class,
@@ -24,12 +24,15 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.FingerprintCoverageTest;
+import org.openscience.cdk.fingerprint.BatchFingerprinterTest;
 import org.openscience.cdk.fingerprint.EStateFingerprinterTest;
 import org.openscience.cdk.fingerprint.ExtendedFingerprinterTest;
 import org.openscience.cdk.fingerprint.MACCSFingerprinterTest;
 import org.openscience.cdk.fingerprint.PubchemFingerprinterTest;
+import org.openscience.cdk.search.SubstructureIndexTest;
 import org.openscience.cdk.similarity.DistanceMomentTest;
 import org.openscience.cdk.similarity.LingoSimilarityTest;
+import org.openscience.cdk.similarity.TanimotoIndexTest;
 import org.openscience.cdk.similarity.TanimotoTest;
 
 /**
@@ -47,6 +50,9 @@ import org.openscience.cdk.similarity.TanimotoTest;
     PubchemFingerprinterTest.class,
     DistanceMomentTest.class,
     TanimotoTest.class,
-    LingoSimilarityTest.class
+    TanimotoIndexTest.class,
+    LingoSimilarityTest.class,
+    BatchFingerprinterTest.class,
+    SubstructureIndexTest.class
 })
 public class MfingerprintTests {}
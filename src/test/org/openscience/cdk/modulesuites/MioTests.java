@@ -62,9 +62,11 @@ import org.openscience.cdk.io.XYZWriterTest;
 import org.openscience.cdk.io.cml.CMLIOTests;
 import org.openscience.cdk.io.iterator.IteratingMDLConformerReaderTest;
 import org.openscience.cdk.io.iterator.IteratingMDLReaderTest;
+import org.openscience.cdk.io.iterator.IteratingParallelMDLReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCCompoundASNReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCCompoundXMLReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCSubstancesXMLReaderTest;
+import org.openscience.cdk.io.random.RandomAccessTest;
 
 /**
  * TestSuite that runs all the sample tests for the cdk.io package.
@@ -111,9 +113,13 @@ import org.openscience.cdk.io.iterator.IteratingPCSubstancesXMLReaderTest;
 
         // cdk.io.iterator package
     IteratingMDLReaderTest.class,
+    IteratingParallelMDLReaderTest.class,
     IteratingMDLConformerReaderTest.class,
     IteratingPCCompoundASNReaderTest.class,
     IteratingPCCompoundXMLReaderTest.class,
-    IteratingPCSubstancesXMLReaderTest.class        
+    IteratingPCSubstancesXMLReaderTest.class,
+
+        // cdk.io.random package
+    RandomAccessTest.class
 })
 public class MioTests {}
\ No newline at end of file
@@ -23,7 +23,10 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.QsarmolecularCoverageTest;
+import org.openscience.cdk.qsar.BatchDescriptorEngineTest;
+import org.openscience.cdk.qsar.DescriptorContextTest;
 import org.openscience.cdk.qsar.DescriptorEngineTest;
+import org.openscience.cdk.qsar.DescriptorMatrixTest;
 import org.openscience.cdk.qsar.DescriptorNamesTest;
 import org.openscience.cdk.qsar.descriptors.molecular.*;
 
@@ -41,8 +44,11 @@ import org.openscience.cdk.qsar.descriptors.molecular.*;
     QsarmolecularCoverageTest.class,
         
         // Individual Tests - Please add correlatively  
+    BatchDescriptorEngineTest.class,
     ChiIndexUtilsTest.class,
+    DescriptorContextTest.class,
     DescriptorEngineTest.class,
+    DescriptorMatrixTest.class,
     DescriptorNamesTest.class,
 
 //      from cdk.test.qsar.molecular
@@ -22,8 +22,10 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.RenderawtCoverageTest;
+import org.openscience.cdk.renderer.BatchRendererTest;
 import org.openscience.cdk.renderer.visitor.AWTDrawVisitorTest;
 import org.openscience.cdk.renderer.visitor.AbstractAWTDrawVisitorTest;
+import org.openscience.cdk.renderer.visitor.SVGDrawVisitorTest;
 
 /**
  * TestSuite that runs all the tests for the CDK <code>renderawt</code>
@@ -35,6 +37,8 @@ import org.openscience.cdk.renderer.visitor.AbstractAWTDrawVisitorTest;
 @SuiteClasses({
 	RenderawtCoverageTest.class,
 	AbstractAWTDrawVisitorTest.class,
-	AWTDrawVisitorTest.class
+	AWTDrawVisitorTest.class,
+	SVGDrawVisitorTest.class,
+	BatchRendererTest.class
 })
 public class MrenderawtTests {}
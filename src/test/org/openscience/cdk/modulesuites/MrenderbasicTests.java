@@ -23,6 +23,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.RenderbasicCoverageTest;
 import org.openscience.cdk.renderer.AtomContainerRendererTest;
+import org.openscience.cdk.renderer.DiagramCacheTest;
 import org.openscience.cdk.renderer.elements.ArrowElementTest;
 import org.openscience.cdk.renderer.elements.AtomSymbolElementTest;
 import org.openscience.cdk.renderer.elements.GeneralPathTest;
@@ -41,6 +42,7 @@ import org.openscience.cdk.renderer.generators.BasicAtomGeneratorTest;
 import org.openscience.cdk.renderer.generators.BasicBondGeneratorTest;
 import org.openscience.cdk.renderer.generators.BasicGeneratorTest;
 import org.openscience.cdk.renderer.generators.BasicSceneGeneratorTest;
+import org.openscience.cdk.renderer.generators.RingGeneratorTest;
 
 /**
  * TestSuite that runs all the tests for the CDK <code>renderbasic</code>
@@ -56,6 +58,7 @@ import org.openscience.cdk.renderer.generators.BasicSceneGeneratorTest;
 	BasicBondGeneratorTest.class,
 	BasicSceneGeneratorTest.class,
 	BasicGeneratorTest.class,
+	RingGeneratorTest.class,
 	WedgeLineElementTest.class,
 	LineElementTest.class,
 	PathElementTest.class,
@@ -69,6 +72,7 @@ import org.openscience.cdk.renderer.generators.BasicSceneGeneratorTest;
 	LineToTest.class,
 	CubicToTest.class,
 	MoveToTest.class,
-	QuadToTest.class
+	QuadToTest.class,
+	DiagramCacheTest.class
 })
 public class MrenderbasicTests {}
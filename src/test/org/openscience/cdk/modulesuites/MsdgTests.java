@@ -25,6 +25,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.SdgCoverageTest;
 import org.openscience.cdk.layout.AtomPlacerTest;
+import org.openscience.cdk.layout.BatchStructureDiagramGeneratorTest;
 import org.openscience.cdk.layout.HydrogenPlacerTest;
 import org.openscience.cdk.layout.OverlapResolverTest;
 import org.openscience.cdk.layout.StructureDiagramGeneratorTest;
@@ -40,6 +41,7 @@ import org.openscience.cdk.layout.TemplateHandlerTest;
 @RunWith(value=Suite.class)
 @SuiteClasses(value={
     SdgCoverageTest.class,
+    BatchStructureDiagramGeneratorTest.class,
     StructureDiagramGeneratorTest.class,
     HydrogenPlacerTest.class,
     OverlapResolverTest.class,
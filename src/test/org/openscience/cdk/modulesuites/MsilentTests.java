@@ -39,6 +39,10 @@ import org.openscience.cdk.silent.ChemFileTest;
 import org.openscience.cdk.silent.ChemModelTest;
 import org.openscience.cdk.silent.ChemObjectTest;
 import org.openscience.cdk.silent.ChemSequenceTest;
+import org.openscience.cdk.silent.CompactAtomTest;
+import org.openscience.cdk.silent.CompactBondTest;
+import org.openscience.cdk.silent.CompactChemObjectBuilderTest;
+import org.openscience.cdk.silent.CompactMoleculeTest;
 import org.openscience.cdk.silent.CrystalTest;
 import org.openscience.cdk.silent.ElectronContainerTest;
 import org.openscience.cdk.silent.ElementTest;
@@ -108,6 +112,12 @@ import org.openscience.cdk.silent.SilentChemObjectBuilderTest;
     StrandTest.class,
     MolecularFormulaTest.class,
     MolecularFormulaSetTest.class,
+
+    // compact representation for batch pipelines
+    CompactChemObjectBuilderTest.class,
+    CompactAtomTest.class,
+    CompactBondTest.class,
+    CompactMoleculeTest.class,
         
     // tests from test.protein.data
     PDBAtomTest.class,
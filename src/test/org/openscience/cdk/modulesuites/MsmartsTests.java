@@ -25,6 +25,9 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.SmartsCoverageTest;
 import org.openscience.cdk.isomorphism.SMARTSTest;
+import org.openscience.cdk.smiles.smarts.SMARTSQueryCacheTest;
+import org.openscience.cdk.smiles.smarts.SMARTSQueryTest;
+import org.openscience.cdk.smiles.smarts.SMARTSQuerySetTest;
 import org.openscience.cdk.smiles.smarts.SMARTSQueryToolTest;
 import org.openscience.cdk.smiles.smarts.parser.ParserTest;
 import org.openscience.cdk.smiles.smarts.parser.RecursiveTest;
@@ -46,6 +49,9 @@ import org.openscience.cdk.smiles.smarts.parser.visitor.SmartsQueryVisitorTest;
     RecursiveTest.class,
     SmartsDumpVisitorTest.class,
     SmartsQueryVisitorTest.class,
-    SMARTSQueryToolTest.class
+    SMARTSQueryToolTest.class,
+    SMARTSQueryTest.class,
+    SMARTSQueryCacheTest.class,
+    SMARTSQuerySetTest.class
 })
 public class MsmartsTests {}
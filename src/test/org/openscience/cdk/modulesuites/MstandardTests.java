@@ -25,6 +25,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.aromaticity.AromaticityCalculatorTest;
 import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetectorTest;
+import org.openscience.cdk.aromaticity.PerceptionStateTest;
 import org.openscience.cdk.atomtype.EStateAtomTypeMatcherTest;
 import org.openscience.cdk.coverage.StandardCoverageTest;
 import org.openscience.cdk.dict.DictRefTest;
@@ -36,6 +37,7 @@ import org.openscience.cdk.fingerprint.GraphOnlyFingerprinterTest;
 import org.openscience.cdk.fingerprint.HybridizationFingerprinterTest;
 import org.openscience.cdk.geometry.BondToolsTest;
 import org.openscience.cdk.geometry.CrystalGeometryToolsTest;
+import org.openscience.cdk.geometry.SpatialGridTest;
 import org.openscience.cdk.geometry.volume.VABCVolumeTest;
 import org.openscience.cdk.graph.AtomContainerAtomPermutorTest;
 import org.openscience.cdk.graph.AtomContainerBondPermutorTest;
@@ -46,11 +48,13 @@ import org.openscience.cdk.graph.MinimalPathIteratorTest;
 import org.openscience.cdk.graph.MoleculeGraphsTest;
 import org.openscience.cdk.graph.invariant.CanonicalLabelerTest;
 import org.openscience.cdk.graph.invariant.MorganNumbersToolsTest;
+import org.openscience.cdk.graph.invariant.PartitionRefinementLabelerTest;
 import org.openscience.cdk.graph.matrix.ConnectionMatrixTest;
 import org.openscience.cdk.graph.rebond.BsptTest;
 import org.openscience.cdk.graph.rebond.PointTest;
 import org.openscience.cdk.graph.rebond.RebondToolTest;
 import org.openscience.cdk.isomorphism.IsomorphismTesterTest;
+import org.openscience.cdk.isomorphism.UniversalIsomorphismMatcherTest;
 import org.openscience.cdk.isomorphism.UniversalIsomorphismTesterTest;
 import org.openscience.cdk.isomorphism.mcss.RGraphTest;
 import org.openscience.cdk.isomorphism.mcss.RMapTest;
@@ -116,9 +120,11 @@ import org.openscience.cdk.validate.ProblemMarkerTest;
     AromaticityCalculatorTest.class,
     DictRefTest.class,
     CrystalGeometryToolsTest.class,
+    SpatialGridTest.class,
     MinimalPathIteratorTest.class,
     ConnectivityCheckerTest.class,
     UniversalIsomorphismTesterTest.class,
+    UniversalIsomorphismMatcherTest.class,
     IsomorphismTesterTest.class,
     RMapTest.class,
     RGraphTest.class,
@@ -141,6 +147,7 @@ import org.openscience.cdk.validate.ProblemMarkerTest;
     AtomContainerComparatorBy2DCenterTest.class,
     RebondToolTest.class,
     CanonicalLabelerTest.class,
+    PartitionRefinementLabelerTest.class,
     // from cdk.test.fingerprint
     FingerprinterTest.class,
     HybridizationFingerprinterTest.class,
@@ -187,6 +194,7 @@ import org.openscience.cdk.validate.ProblemMarkerTest;
     EStateAtomTypeMatcherTest.class,
     AtomContainerComparatorTest.class,
     CDKHueckelAromaticityDetectorTest.class,
+    PerceptionStateTest.class,
     HOSECodeGeneratorTest.class,
     LonePairElectronCheckerTest.class ,
     StereoToolTest.class,
@@ -0,0 +1,162 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.qsar.descriptors.molecular.AtomCountDescriptor;
+import org.openscience.cdk.qsar.descriptors.molecular.KappaShapeIndicesDescriptor;
+import org.openscience.cdk.qsar.descriptors.molecular.RotatableBondsCountDescriptor;
+import org.openscience.cdk.qsar.result.DoubleArrayResult;
+import org.openscience.cdk.qsar.result.IntegerResult;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-qsarmolecular
+ */
+public class BatchDescriptorEngineTest extends CDKTestCase {
+
+    private static final BatchDescriptorEngine.DescriptorFactory FACTORY =
+        new BatchDescriptorEngine.DescriptorFactory() {
+            public List<IMolecularDescriptor> create() {
+                List<IMolecularDescriptor> descriptors = new ArrayList<IMolecularDescriptor>();
+                descriptors.add(new AtomCountDescriptor());
+                descriptors.add(new KappaShapeIndicesDescriptor());
+                descriptors.add(new RotatableBondsCountDescriptor());
+                return descriptors;
+            }
+        };
+
+    private List<Object> getMolecules() {
+        List<Object> molecules = new ArrayList<Object>();
+        molecules.add(MoleculeFactory.makeIndole());
+        molecules.add(MoleculeFactory.makeAlphaPinene());
+        molecules.add(MoleculeFactory.makeBiphenyl());
+        molecules.add(MoleculeFactory.makeAlkane(8));
+        molecules.add(MoleculeFactory.makePyrrole());
+        return molecules;
+    }
+
+    @Test
+    public void testGetColumnNames() throws Exception {
+        BatchDescriptorEngine engine = new BatchDescriptorEngine(FACTORY, 2);
+        String[] names = engine.getColumnNames();
+        Assert.assertEquals(5, names.length);
+        Assert.assertEquals("nAtom", names[0]);
+        Assert.assertEquals(new KappaShapeIndicesDescriptor().getDescriptorNames()[0], names[1]);
+        Assert.assertEquals("nRotB", names[4]);
+    }
+
+    @Test
+    public void testProcess() throws Exception {
+        List<Object> molecules = getMolecules();
+        DescriptorMatrix matrix = new BatchDescriptorEngine(FACTORY, 3, 2).process(molecules.iterator());
+
+        Assert.assertEquals(molecules.size(), matrix.getRowCount());
+        Assert.assertEquals(5, matrix.getColumnCount());
+        Assert.assertEquals(3, matrix.getDescriptorCount());
+        for (int i = 0; i < molecules.size(); i++) {
+            IAtomContainer molecule = (IAtomContainer)molecules.get(i);
+            Assert.assertEquals(
+                ((IntegerResult)new AtomCountDescriptor().calculate(molecule).getValue()).intValue(),
+                matrix.getValue(i, 0), 0.0
+            );
+            DoubleArrayResult kappa = (DoubleArrayResult)
+                new KappaShapeIndicesDescriptor().calculate(molecule).getValue();
+            for (int j = 0; j < 3; j++)
+                Assert.assertEquals(kappa.get(j), matrix.getValue(i, 1 + j), 0.0);
+            Assert.assertEquals(
+                ((IntegerResult)new RotatableBondsCountDescriptor().calculate(molecule).getValue()).intValue(),
+                matrix.getValue(i, 4), 0.0
+            );
+        }
+        for (int i = 0; i < matrix.getDescriptorCount(); i++)
+            Assert.assertEquals(0, matrix.getFailureCount(i));
+    }
+
+    @Test
+    public void testProcess_Failed() throws Exception {
+        List<Object> molecules = getMolecules();
+        molecules.add(1, "not a molecule");
+        DescriptorMatrix matrix = new BatchDescriptorEngine(FACTORY, 2).process(molecules.iterator());
+
+        Assert.assertEquals(molecules.size(), matrix.getRowCount());
+        for (int i = 0; i < matrix.getColumnCount(); i++)
+            Assert.assertTrue(Double.isNaN(matrix.getValue(1, i)));
+        Assert.assertEquals(9.0, matrix.getValue(0, 0), 0.0);
+        for (int i = 0; i < matrix.getDescriptorCount(); i++)
+            Assert.assertEquals(1, matrix.getFailureCount(i));
+    }
+
+    @Test
+    public void testProcess_Exception() throws Exception {
+        BatchDescriptorEngine.DescriptorFactory factory = new BatchDescriptorEngine.DescriptorFactory() {
+            public List<IMolecularDescriptor> create() {
+                List<IMolecularDescriptor> descriptors = new ArrayList<IMolecularDescriptor>();
+                descriptors.add(new AtomCountDescriptor() {
+                    public DescriptorValue calculate(IAtomContainer container) {
+                        throw new IllegalStateException("always fails");
+                    }
+                });
+                descriptors.add(new AtomCountDescriptor());
+                return descriptors;
+            }
+        };
+        List<Object> molecules = getMolecules();
+        DescriptorMatrix matrix = new BatchDescriptorEngine(factory, 2).process(molecules.iterator());
+
+        Assert.assertEquals(molecules.size(), matrix.getFailureCount(0));
+        Assert.assertEquals(0, matrix.getFailureCount(1));
+        Assert.assertTrue(Double.isNaN(matrix.getValue(0, 0)));
+        Assert.assertEquals(9.0, matrix.getValue(0, 1), 0.0);
+    }
+
+    @Test
+    public void testBatchDescriptorEngine_List() throws Exception {
+        List<String> classNames = new ArrayList<String>();
+        classNames.add(AtomCountDescriptor.class.getName());
+        BatchDescriptorEngine engine = new BatchDescriptorEngine(classNames);
+        DescriptorMatrix matrix = engine.process(getMolecules().iterator());
+        Assert.assertEquals(AtomCountDescriptor.class.getName(), matrix.getDescriptorName(0));
+        Assert.assertEquals(9.0, matrix.getColumn("nAtom")[0], 0.0);
+    }
+
+    @Test(expected=CDKException.class)
+    public void testBatchDescriptorEngine_List_NoDescriptor() throws Exception {
+        List<String> classNames = new ArrayList<String>();
+        classNames.add(String.class.getName());
+        new BatchDescriptorEngine(classNames);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBatchDescriptorEngine_ZeroThreads() throws Exception {
+        new BatchDescriptorEngine(FACTORY, 0);
+    }
+
+}
@@ -0,0 +1,199 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.qsar.descriptors.molecular.XLogPDescriptor;
+import org.openscience.cdk.qsar.result.DoubleResult;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-qsarmolecular
+ */
+public class DescriptorContextTest extends CDKTestCase {
+
+    private IAtomContainer molecule;
+
+    @Before
+    public void setUp() throws Exception {
+        SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        // toluene with a cyclopropyl
+        molecule = parser.parseSmiles("Cc1ccc(cc1)C2CC2");
+    }
+
+    @Test
+    public void testGetInstance() {
+        DescriptorContext context = DescriptorContext.getInstance(molecule);
+        Assert.assertNotNull(context);
+        Assert.assertNotSame(context, DescriptorContext.getInstance(molecule));
+        Assert.assertNull(molecule.getProperty(DescriptorContext.DESCRIPTOR_CONTEXT));
+
+        context = DescriptorContext.attach(molecule);
+        Assert.assertSame(context, DescriptorContext.getInstance(molecule));
+        DescriptorContext.detach(molecule);
+        Assert.assertNull(molecule.getProperty(DescriptorContext.DESCRIPTOR_CONTEXT));
+        Assert.assertNotSame(context, DescriptorContext.getInstance(molecule));
+    }
+
+    @Test
+    public void testGetInstance_Changed() throws Exception {
+        DescriptorContext context = DescriptorContext.attach(molecule);
+        Assert.assertEquals(22, context.getHydrogenSaturatedMolecule().getAtomCount());
+        molecule.getAtom(0).setSymbol("N");
+        DescriptorContext changed = DescriptorContext.getInstance(molecule);
+        Assert.assertNotSame(context, changed);
+        Assert.assertSame(changed, DescriptorContext.getInstance(molecule));
+        Assert.assertEquals("N", changed.getHydrogenSaturatedMolecule().getAtom(0).getSymbol());
+    }
+
+    @Test
+    public void testGetInstance_Clone() throws Exception {
+        DescriptorContext context = DescriptorContext.attach(molecule);
+        IAtomContainer clone = (IAtomContainer)molecule.clone();
+        Assert.assertNotSame(context, DescriptorContext.getInstance(clone));
+    }
+
+    @Test
+    public void testGetHydrogenSaturatedMolecule() throws Exception {
+        DescriptorContext context = new DescriptorContext(molecule);
+        IAtomContainer saturated = context.getHydrogenSaturatedMolecule();
+        Assert.assertSame(saturated, context.getHydrogenSaturatedMolecule());
+        Assert.assertNotSame(molecule, saturated);
+        Assert.assertEquals(22, saturated.getAtomCount());
+        for (int i = 0; i < molecule.getAtomCount(); i++) {
+            Assert.assertEquals(molecule.getAtom(i).getSymbol(), saturated.getAtom(i).getSymbol());
+            Assert.assertNotNull(saturated.getAtom(i).getAtomTypeName());
+        }
+        for (int i = molecule.getAtomCount(); i < saturated.getAtomCount(); i++)
+            Assert.assertEquals("H", saturated.getAtom(i).getSymbol());
+        // the molecule itself is not changed
+        Assert.assertEquals(10, molecule.getAtomCount());
+    }
+
+    @Test
+    public void testGetAromaticMolecule() throws Exception {
+        DescriptorContext context = new DescriptorContext(molecule);
+        IAtomContainer aromatic = context.getAromaticMolecule();
+        Assert.assertSame(aromatic, context.getAromaticMolecule());
+        Assert.assertEquals(22, aromatic.getAtomCount());
+        Assert.assertFalse(aromatic.getAtom(0).getFlag(CDKConstants.ISAROMATIC));
+        Assert.assertTrue(aromatic.getAtom(1).getFlag(CDKConstants.ISAROMATIC));
+        Assert.assertFalse(aromatic.getAtom(7).getFlag(CDKConstants.ISAROMATIC));
+    }
+
+    @Test
+    public void testGetPartialCharges() throws Exception {
+        DescriptorContext context = new DescriptorContext(molecule);
+        double[] charges = context.getPartialCharges();
+        Assert.assertSame(charges, context.getPartialCharges());
+        Assert.assertEquals(22, charges.length);
+        double sum = 0;
+        for (double charge : charges) sum += charge;
+        Assert.assertEquals(0.0, sum, 0.01);
+        Assert.assertNull(molecule.getAtom(0).getCharge());
+    }
+
+    @Test
+    public void testGetHeavyAtomMolecule() throws Exception {
+        DescriptorContext context = new DescriptorContext(molecule);
+        IAtomContainer heavyAtoms = context.getHeavyAtomMolecule();
+        Assert.assertSame(heavyAtoms, context.getHeavyAtomMolecule());
+        Assert.assertEquals(10, heavyAtoms.getAtomCount());
+        Assert.assertEquals(3, heavyAtoms.getAtom(0).getImplicitHydrogenCount().intValue());
+        Assert.assertEquals("C.sp3", heavyAtoms.getAtom(0).getAtomTypeName());
+    }
+
+    @Test
+    public void testGetDistanceMatrix() throws Exception {
+        DescriptorContext context = new DescriptorContext(molecule);
+        int[][] distances = context.getDistanceMatrix();
+        Assert.assertSame(distances, context.getDistanceMatrix());
+        Assert.assertEquals(22, distances.length);
+        Assert.assertEquals(4, distances[0][4]);
+        Assert.assertEquals(1, distances[0][10]);
+    }
+
+    @Test
+    public void testGetHeavyAtomDistanceMatrix() {
+        DescriptorContext context = new DescriptorContext(molecule);
+        int[][] distances = context.getHeavyAtomDistanceMatrix();
+        Assert.assertSame(distances, context.getHeavyAtomDistanceMatrix());
+        Assert.assertEquals(10, distances.length);
+        Assert.assertEquals(6, distances[0][9]);
+    }
+
+    @Test
+    public void testGetAllRings() throws Exception {
+        DescriptorContext context = new DescriptorContext(molecule);
+        IAtomContainer clone = (IAtomContainer)molecule.clone();
+        IRingSet rings = context.getAllRings(clone);
+        Assert.assertEquals(2, rings.getAtomContainerCount());
+        for (IAtomContainer ring : rings.atomContainers()) {
+            for (IAtom atom : ring.atoms()) Assert.assertTrue(clone.contains(atom));
+            Assert.assertEquals(ring.getAtomCount(), ring.getBondCount());
+            for (int i = 0; i < ring.getBondCount(); i++)
+                Assert.assertTrue(clone.contains(ring.getBond(i)));
+        }
+        Assert.assertEquals(3, rings.getRings(clone.getAtom(8)).getAtomContainer(0).getAtomCount());
+
+        IRingSet saturatedRings = context.getAllRings(context.getHydrogenSaturatedMolecule());
+        Assert.assertEquals(2, saturatedRings.getAtomContainerCount());
+        Assert.assertTrue(saturatedRings.contains(context.getHydrogenSaturatedMolecule().getAtom(1)));
+    }
+
+    @Test
+    public void testGetSSSR() throws Exception {
+        DescriptorContext context = new DescriptorContext(molecule);
+        IAtomContainer clone = (IAtomContainer)context.getHydrogenSaturatedMolecule().clone();
+        IRingSet rings = context.getSSSR(clone);
+        Assert.assertEquals(2, rings.getAtomContainerCount());
+        Assert.assertTrue(rings.contains(clone.getAtom(1)));
+        Assert.assertTrue(clone.getAtom(1).getFlag(CDKConstants.ISINRING));
+        Assert.assertFalse(clone.getAtom(0).getFlag(CDKConstants.ISINRING));
+    }
+
+    /**
+     * Descriptors give the same values with and without a context.
+     */
+    @Test
+    public void testCalculate() throws Exception {
+        XLogPDescriptor descriptor = new XLogPDescriptor();
+        descriptor.setParameters(new Object[]{true, false});
+        double expected = ((DoubleResult)descriptor.calculate(molecule).getValue()).doubleValue();
+        DescriptorContext.attach(molecule);
+        Assert.assertEquals(expected,
+            ((DoubleResult)descriptor.calculate(molecule).getValue()).doubleValue(), 0.0);
+        Assert.assertEquals(expected,
+            ((DoubleResult)descriptor.calculate(molecule).getValue()).doubleValue(), 0.0);
+        DescriptorContext.detach(molecule);
+    }
+
+}
@@ -0,0 +1,137 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+
+/**
+ * @cdk.module test-qsarmolecular
+ */
+public class DescriptorMatrixTest extends CDKTestCase {
+
+    private DescriptorMatrix matrix;
+
+    @Before
+    public void setUp() {
+        matrix = new DescriptorMatrix(
+            new String[]{"A", "B"},
+            new String[][]{{"a"}, {"b1", "b2"}}
+        );
+        // more rows than the initial capacity
+        for (int i = 0; i < 100; i++) {
+            matrix.addRow(
+                new double[]{i, 2 * i, i % 2 == 0 ? Double.NaN : 3 * i},
+                new long[]{10, 20},
+                new boolean[]{false, i % 2 == 0}
+            );
+        }
+    }
+
+    @Test
+    public void testAddRow() {
+        DescriptorMatrix matrix = new DescriptorMatrix(
+            new String[]{"A"}, new String[][]{{"a1", "a2"}}
+        );
+        Assert.assertEquals(0, matrix.getRowCount());
+        matrix.addRow(new double[]{1.0, Double.NaN}, new long[]{5}, new boolean[]{true});
+        matrix.addRow(new double[]{2.0, 3.0}, new long[]{7}, new boolean[]{false});
+        Assert.assertEquals(2, matrix.getRowCount());
+        Assert.assertEquals(1.0, matrix.getValue(0, 0), 0.0);
+        Assert.assertEquals(2.0, matrix.getValue(1, 0), 0.0);
+        Assert.assertTrue(Double.isNaN(matrix.getValue(0, 1)));
+        Assert.assertEquals(3.0, matrix.getValue(1, 1), 0.0);
+        Assert.assertEquals(12, matrix.getTime(0));
+        Assert.assertEquals(1, matrix.getFailureCount(0));
+        // the rows of the setUp matrix exceed the initial capacity
+        Assert.assertEquals(99.0, this.matrix.getValue(99, 0), 0.0);
+    }
+
+    @Test
+    public void testGetRowCount() {
+        Assert.assertEquals(100, matrix.getRowCount());
+    }
+
+    @Test
+    public void testGetColumnNames() {
+        Assert.assertEquals(3, matrix.getColumnCount());
+        Assert.assertArrayEquals(new String[]{"a", "b1", "b2"}, matrix.getColumnNames());
+    }
+
+    @Test
+    public void testGetColumn_int() {
+        double[] column = matrix.getColumn(1);
+        Assert.assertEquals(100, column.length);
+        Assert.assertEquals(198.0, column[99], 0.0);
+        double[][] columns = matrix.getColumns();
+        Assert.assertEquals(3, columns.length);
+        Assert.assertEquals(100, columns[2].length);
+        Assert.assertTrue(Double.isNaN(columns[2][0]));
+    }
+
+    @Test
+    public void testGetColumn_String() {
+        Assert.assertEquals(2, matrix.getColumnIndex("b2"));
+        Assert.assertEquals(-1, matrix.getColumnIndex("c"));
+        Assert.assertEquals(3.0, matrix.getColumn("b2")[1], 0.0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testGetColumn_String_Missing() {
+        matrix.getColumn("c");
+    }
+
+    @Test
+    public void testGetValue() {
+        Assert.assertEquals(42.0, matrix.getValue(42, 0), 0.0);
+        Assert.assertTrue(Double.isNaN(matrix.getValue(42, 2)));
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetValue_NoSuchRow() {
+        matrix.getValue(100, 0);
+    }
+
+    @Test
+    public void testGetDescriptorName() {
+        Assert.assertEquals(2, matrix.getDescriptorCount());
+        Assert.assertEquals("B", matrix.getDescriptorName(1));
+        Assert.assertEquals(0, matrix.getFirstColumn(0));
+        Assert.assertEquals(1, matrix.getFirstColumn(1));
+    }
+
+    @Test
+    public void testGetTime() {
+        Assert.assertEquals(1000, matrix.getTime(0));
+        Assert.assertEquals(2000, matrix.getTime(1));
+    }
+
+    @Test
+    public void testGetFailureCount() {
+        Assert.assertEquals(0, matrix.getFailureCount(0));
+        Assert.assertEquals(50, matrix.getFailureCount(1));
+    }
+
+}
@@ -22,12 +22,17 @@
 package org.openscience.cdk.renderer;
 
 import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.vecmath.Point2d;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
@@ -111,5 +116,76 @@ public class AtomContainerRendererTest {
 			);
 		}
 	}
+	
+	@Test
+	public void testGenerateDiagram_Incremental() {
+		IChemObjectBuilder notifying = DefaultChemObjectBuilder.getInstance();
+		IMolecule chain = notifying.newInstance(IMolecule.class);
+		for (int i = 0; i < 4; i++) {
+			chain.addAtom(notifying.newInstance(
+				IAtom.class, "C", new Point2d(i, i % 2 * 0.5)));
+		}
+		chain.addBond(0, 1, IBond.Order.SINGLE);
+		chain.addBond(1, 2, IBond.Order.SINGLE);
+		chain.addBond(2, 3, IBond.Order.SINGLE);
+		
+		List<IGenerator<IAtomContainer>> generators =
+			new ArrayList<IGenerator<IAtomContainer>>();
+		generators.add(new BasicSceneGenerator());
+		generators.add(new BasicBondGenerator());
+		AtomContainerRenderer renderer = new AtomContainerRenderer(generators, new AWTFontManager());
+		renderer.setup(chain, new Rectangle(0, 0, 100, 100));
+		
+		ElementUtility visitor = new ElementUtility();
+		List<IRenderingElement> first =
+			visitor.getAllSimpleElements(renderer.generateDiagram(chain));
+		List<IRenderingElement> second =
+			visitor.getAllSimpleElements(renderer.generateDiagram(chain));
+		Assert.assertEquals(3, first.size());
+		for (int i = 0; i < first.size(); i++) {
+			Assert.assertSame(first.get(i), second.get(i));
+		}
+		
+		// only the bond of the moved atom is generated again
+		chain.getAtom(0).setPoint2d(new Point2d(-0.5, 0));
+		List<IRenderingElement> third =
+			visitor.getAllSimpleElements(renderer.generateDiagram(chain));
+		Assert.assertNotSame(first.get(0), third.get(0));
+		Assert.assertSame(first.get(1), third.get(1));
+		Assert.assertSame(first.get(2), third.get(2));
+	}
+	
+	/**
+	 * Drawing must leave no listeners on the molecule, which would keep it
+	 * from being serialized.
+	 */
+	@Test
+	public void testGenerateDiagram_Serializable() throws Exception {
+		IChemObjectBuilder notifying = DefaultChemObjectBuilder.getInstance();
+		IMolecule chain = notifying.newInstance(IMolecule.class);
+		for (int i = 0; i < 3; i++) {
+			chain.addAtom(notifying.newInstance(
+				IAtom.class, "C", new Point2d(i, i % 2 * 0.5)));
+		}
+		chain.addBond(0, 1, IBond.Order.SINGLE);
+		chain.addBond(1, 2, IBond.Order.SINGLE);
+		
+		List<IGenerator<IAtomContainer>> generators =
+			new ArrayList<IGenerator<IAtomContainer>>();
+		generators.add(new BasicSceneGenerator());
+		generators.add(new BasicBondGenerator());
+		generators.add(new BasicAtomGenerator());
+		AtomContainerRenderer renderer = new AtomContainerRenderer(generators, new AWTFontManager());
+		renderer.setup(chain, new Rectangle(0, 0, 100, 100));
+		renderer.generateDiagram(chain);
+		chain.getAtom(0).setPoint2d(new Point2d(-0.5, 0));
+		renderer.generateDiagram(chain);
+		
+		Assert.assertEquals(0, chain.getListenerCount());
+		for (IBond bond : chain.bonds()) Assert.assertEquals(0, bond.getListenerCount());
+		ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream());
+		out.writeObject(chain);
+		out.close();
+	}
 
 }
@@ -0,0 +1,253 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.vecmath.Point2d;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.nonotify.NoNotificationChemObjectBuilder;
+import org.openscience.cdk.renderer.BatchRenderer.Depiction;
+import org.openscience.cdk.renderer.BatchRenderer.DepictionHandler;
+
+/**
+ * @cdk.module test-renderawt
+ */
+public class BatchRendererTest {
+
+    private IChemObjectBuilder builder = NoNotificationChemObjectBuilder.getInstance();
+
+    /**
+     * Makes a zigzag chain of the given elements, with 2D coordinates.
+     */
+    private IAtomContainer makeChain(String... symbols) {
+        IAtomContainer chain = builder.newInstance(IAtomContainer.class);
+        for (int i = 0; i < symbols.length; i++) {
+            chain.addAtom(builder.newInstance(IAtom.class, symbols[i],
+                new Point2d(1.3 * i, i % 2 * 0.75)));
+            if (i > 0) chain.addBond(i - 1, i, IBond.Order.SINGLE);
+        }
+        return chain;
+    }
+
+    private List<IAtomContainer> makeChains(int count) {
+        List<IAtomContainer> chains = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < count; i++) {
+            String[] symbols = new String[2 + i % 5];
+            Arrays.fill(symbols, "C");
+            symbols[symbols.length - 1] = i % 2 == 0 ? "O" : "N";
+            chains.add(makeChain(symbols));
+        }
+        return chains;
+    }
+
+    /**
+     * Counts the pixels that are not white.
+     */
+    private int countInk(BufferedImage image) {
+        int count = 0;
+        for (int x = 0; x < image.getWidth(); x++)
+            for (int y = 0; y < image.getHeight(); y++)
+                if ((image.getRGB(x, y) & 0xFFFFFF) != 0xFFFFFF) count++;
+        return count;
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBatchRenderer_NoThreads() {
+        new BatchRenderer(100, 100, 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBatchRenderer_NoSize() {
+        new BatchRenderer(0, 100, 1);
+    }
+
+    @Test
+    public void testRenderSVG() throws Exception {
+        List<Object> molecules = new ArrayList<Object>();
+        molecules.add(makeChain("C", "C", "O"));
+        molecules.add("CCO");
+        molecules.add(builder.newInstance(IAtomContainer.class));
+        IAtomContainer noCoordinates = makeChain("C", "N");
+        noCoordinates.getAtom(0).setPoint2d(null);
+        noCoordinates.getAtom(1).setPoint2d(null);
+        molecules.add(noCoordinates);
+
+        List<Depiction> depictions = new BatchRenderer(200, 150, 2).renderSVG(molecules.iterator());
+        Assert.assertEquals(4, depictions.size());
+        Depiction depiction = depictions.get(0);
+        Assert.assertTrue(depiction.isDrawn());
+        Assert.assertNull(depiction.getImage());
+        Assert.assertSame(molecules.get(0), depiction.getMolecule());
+        String svg = depiction.getSVG();
+        Assert.assertTrue(svg.contains("width=\"200\" height=\"150\""));
+        Assert.assertTrue(svg.contains("<line "));
+        Assert.assertTrue(svg.contains(">O</text>"));
+        Assert.assertTrue(svg.trim().endsWith("</svg>"));
+        for (int i = 1; i < depictions.size(); i++) {
+            Assert.assertEquals(i, depictions.get(i).getIndex());
+            Assert.assertFalse(depictions.get(i).isDrawn());
+            Assert.assertNull(depictions.get(i).getSVG());
+            Assert.assertTrue(depictions.get(i).getException() instanceof CDKException);
+        }
+    }
+
+    /**
+     * The depictions are the same and in the same order on several threads.
+     */
+    @Test
+    public void testRenderSVG_DepictionHandler() throws Exception {
+        List<IAtomContainer> molecules = makeChains(25);
+        final List<String> single = new ArrayList<String>();
+        new BatchRenderer(100, 100, 1).renderSVG(molecules.iterator(), new DepictionHandler() {
+            public void handle(Depiction depiction) {
+                single.add(depiction.getSVG());
+            }
+        });
+        final List<String> parallel = new ArrayList<String>();
+        new BatchRenderer(100, 100, 3, 2).renderSVG(molecules.iterator(), new DepictionHandler() {
+            public void handle(Depiction depiction) {
+                Assert.assertEquals(parallel.size(), depiction.getIndex());
+                parallel.add(depiction.getSVG());
+            }
+        });
+        Assert.assertEquals(molecules.size(), parallel.size());
+        Assert.assertEquals(single, parallel);
+
+        final List<Integer> indices = new ArrayList<Integer>();
+        try {
+            new BatchRenderer(100, 100, 2).renderSVG(molecules.iterator(), new DepictionHandler() {
+                public void handle(Depiction depiction) throws CDKException {
+                    indices.add(depiction.getIndex());
+                    if (depiction.getIndex() == 1) throw new CDKException("Stop");
+                }
+            });
+            Assert.fail("The handler stops the batch");
+        } catch (CDKException exception) {
+            Assert.assertEquals("Stop", exception.getMessage());
+        }
+        Assert.assertEquals(Arrays.asList(0, 1), indices);
+    }
+
+    /**
+     * The images are reused, and are drawn on from scratch for each molecule.
+     */
+    @Test
+    public void testRenderImages() throws Exception {
+        List<IAtomContainer> molecules = makeChains(20);
+        final List<Integer> ink = new ArrayList<Integer>();
+        new BatchRenderer(80, 60, 1).renderImages(molecules.iterator(), new DepictionHandler() {
+            public void handle(Depiction depiction) {
+                ink.add(countInk(depiction.getImage()));
+            }
+        });
+        final Set<BufferedImage> images = new HashSet<BufferedImage>();
+        BatchRenderer batch = new BatchRenderer(80, 60, 2, 3);
+        for (int run = 0; run < 2; run++) {
+            batch.renderImages(molecules.iterator(), new DepictionHandler() {
+                public void handle(Depiction depiction) {
+                    Assert.assertTrue(depiction.isDrawn());
+                    Assert.assertNull(depiction.getSVG());
+                    BufferedImage image = depiction.getImage();
+                    Assert.assertEquals(80, image.getWidth());
+                    Assert.assertEquals(60, image.getHeight());
+                    Assert.assertTrue(ink.get(depiction.getIndex()) > 0);
+                    Assert.assertEquals(ink.get(depiction.getIndex()).intValue(), countInk(image));
+                    images.add(image);
+                }
+            });
+        }
+        Assert.assertTrue(images.size() <= 3);
+    }
+
+    /**
+     * A molecule drawn several times at once is left without listeners, and
+     * can still be serialized.
+     */
+    @Test
+    public void testRenderSVG_Serializable() throws Exception {
+        IChemObjectBuilder notifying = DefaultChemObjectBuilder.getInstance();
+        IAtomContainer chain = notifying.newInstance(IAtomContainer.class);
+        for (int i = 0; i < 4; i++) {
+            chain.addAtom(notifying.newInstance(IAtom.class, "C",
+                new Point2d(1.3 * i, i % 2 * 0.75)));
+            if (i > 0) chain.addBond(i - 1, i, IBond.Order.SINGLE);
+        }
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 8; i++) molecules.add(chain);
+        List<Depiction> depictions = new BatchRenderer(100, 100, 4).renderSVG(molecules.iterator());
+        for (Depiction depiction : depictions) Assert.assertTrue(depiction.isDrawn());
+
+        Assert.assertEquals(0, chain.getListenerCount());
+        for (IBond bond : chain.bonds()) Assert.assertEquals(0, bond.getListenerCount());
+        ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream());
+        out.writeObject(chain);
+        out.close();
+    }
+
+    /**
+     * Each thread draws with a renderer of its own, made by createRenderer,
+     * which subclasses can override to draw with other generators.
+     */
+    @Test
+    public void testCreateRenderer() throws Exception {
+        final Set<AtomContainerRenderer> renderers = new HashSet<AtomContainerRenderer>();
+        final Set<Thread> threads = new HashSet<Thread>();
+        BatchRenderer batch = new BatchRenderer(100, 100, 3) {
+            protected AtomContainerRenderer createRenderer() {
+                AtomContainerRenderer renderer = super.createRenderer();
+                synchronized (renderers) {
+                    renderers.add(renderer);
+                    threads.add(Thread.currentThread());
+                }
+                return renderer;
+            }
+        };
+        AtomContainerRenderer renderer = batch.createRenderer();
+        Assert.assertEquals(3, renderer.getGenerators().size());
+        renderers.clear();
+        threads.clear();
+
+        List<Depiction> depictions = batch.renderSVG(makeChains(12).iterator());
+        for (Depiction depiction : depictions) Assert.assertTrue(depiction.isDrawn());
+        Assert.assertFalse(renderers.isEmpty());
+        Assert.assertTrue(renderers.size() <= 3);
+        Assert.assertEquals(threads.size(), renderers.size());
+    }
+
+}
@@ -0,0 +1,239 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.renderer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.vecmath.Point2d;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.nonotify.NoNotificationChemObjectBuilder;
+import org.openscience.cdk.renderer.elements.ElementGroup;
+import org.openscience.cdk.renderer.elements.IRenderingElement;
+import org.openscience.cdk.renderer.generators.BasicAtomGenerator;
+import org.openscience.cdk.renderer.generators.BasicBondGenerator.BondWidth;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator.ZoomFactor;
+import org.openscience.cdk.renderer.generators.IGenerator;
+import org.openscience.cdk.renderer.generators.RingGenerator;
+
+/**
+ * @cdk.module test-renderbasic
+ */
+public class DiagramCacheTest {
+
+    private List<IGenerator<IAtomContainer>> generators;
+
+    private RendererModel model;
+
+    @Before
+    public void setUp() {
+        generators = new ArrayList<IGenerator<IAtomContainer>>();
+        generators.add(new BasicSceneGenerator());
+        generators.add(new RingGenerator());
+        generators.add(new BasicAtomGenerator());
+        model = new RendererModel();
+        for (IGenerator<IAtomContainer> generator : generators) {
+            model.registerParameters(generator);
+        }
+    }
+
+    /**
+     * Makes an aromatic six-ring with a hydroxy group, with 2D coordinates.
+     */
+    private IAtomContainer makePhenol(IChemObjectBuilder builder) {
+        IAtomContainer phenol = builder.newInstance(IAtomContainer.class);
+        for (int i = 0; i < 6; i++) {
+            double angle = Math.PI / 3 * i;
+            IAtom atom = builder.newInstance(IAtom.class, "C",
+                new Point2d(Math.cos(angle), Math.sin(angle)));
+            atom.setFlag(CDKConstants.ISAROMATIC, true);
+            phenol.addAtom(atom);
+        }
+        phenol.addAtom(builder.newInstance(IAtom.class, "O", new Point2d(2, 0)));
+        for (int i = 0; i < 6; i++) {
+            phenol.addBond(i, (i + 1) % 6, IBond.Order.SINGLE);
+            phenol.getBond(i).setFlag(CDKConstants.ISAROMATIC, true);
+        }
+        phenol.addBond(0, 6, IBond.Order.SINGLE);
+        return phenol;
+    }
+
+    /**
+     * Describes a diagram by the classes and public fields of its elements.
+     */
+    private String dump(IRenderingElement element) throws Exception {
+        StringBuffer dump = new StringBuffer();
+        dump(element, dump);
+        return dump.toString();
+    }
+
+    private void dump(IRenderingElement element, StringBuffer dump) throws Exception {
+        dump.append(element.getClass().getSimpleName());
+        if (element instanceof ElementGroup) {
+            dump.append('[');
+            for (IRenderingElement child : (ElementGroup) element) dump(child, dump);
+            dump.append(']');
+        } else {
+            dump.append('(');
+            for (Field field : element.getClass().getFields()) {
+                if (Modifier.isStatic(field.getModifiers())) continue;
+                dump.append(field.getName()).append('=').append(field.get(element)).append(' ');
+            }
+            dump.append(')');
+        }
+    }
+
+    private IRenderingElement getChild(IRenderingElement diagram, int index) {
+        Iterator<IRenderingElement> children = ((ElementGroup) diagram).iterator();
+        for (int i = 0; i < index; i++) children.next();
+        return children.next();
+    }
+
+    private void assertSameAsNew(IAtomContainer container, IRenderingElement diagram)
+            throws Exception {
+        // a copy, as the generators keep state for the last container drawn
+        IAtomContainer copy = (IAtomContainer) container.clone();
+        IRenderingElement expected =
+            new DiagramCache().generateDiagram(copy, generators, model);
+        Assert.assertEquals(dump(expected), dump(diagram));
+    }
+
+    @Test
+    public void testGenerateDiagram() throws Exception {
+        IAtomContainer phenol = makePhenol(DefaultChemObjectBuilder.getInstance());
+        DiagramCache cache = new DiagramCache();
+        IRenderingElement first = cache.generateDiagram(phenol, generators, model);
+        assertSameAsNew(phenol, first);
+
+        // nothing changed, so the elements are kept
+        IRenderingElement second = cache.generateDiagram(phenol, generators, model);
+        Assert.assertEquals(dump(first), dump(second));
+        Assert.assertSame(getChild(first, 1), getChild(second, 1));
+        Assert.assertSame(getChild(first, 2), getChild(second, 2));
+
+        // the zoom is applied when drawing
+        model.getParameter(ZoomFactor.class).setValue(2.0);
+        IRenderingElement zoomed = cache.generateDiagram(phenol, generators, model);
+        Assert.assertSame(getChild(first, 1), getChild(zoomed, 1));
+
+        // other parameters change the elements
+        model.getParameter(BondWidth.class).setValue(3.0);
+        IRenderingElement wider = cache.generateDiagram(phenol, generators, model);
+        Assert.assertNotSame(getChild(first, 1), getChild(wider, 1));
+        assertSameAsNew(phenol, wider);
+
+        // another container is drawn from scratch
+        IAtomContainer other = makePhenol(DefaultChemObjectBuilder.getInstance());
+        other.getAtom(6).setSymbol("N");
+        IRenderingElement diagram = cache.generateDiagram(other, generators, model);
+        assertSameAsNew(other, diagram);
+    }
+
+    @Test
+    public void testGenerateDiagram_Changed() throws Exception {
+        IAtomContainer phenol = makePhenol(DefaultChemObjectBuilder.getInstance());
+        DiagramCache cache = new DiagramCache();
+        IRenderingElement first = cache.generateDiagram(phenol, generators, model);
+
+        phenol.getAtom(6).setPoint2d(new Point2d(2, 1));
+        IRenderingElement moved = cache.generateDiagram(phenol, generators, model);
+        Assert.assertFalse(dump(first).equals(dump(moved)));
+        assertSameAsNew(phenol, moved);
+
+        phenol.getAtom(3).setPoint2d(new Point2d(-1.5, 0));
+        assertSameAsNew(phenol, cache.generateDiagram(phenol, generators, model));
+
+        phenol.getBond(6).setOrder(IBond.Order.DOUBLE);
+        assertSameAsNew(phenol, cache.generateDiagram(phenol, generators, model));
+
+        phenol.getAtom(6).setSymbol("S");
+        assertSameAsNew(phenol, cache.generateDiagram(phenol, generators, model));
+
+        // a ring bond that is no longer aromatic changes the whole ring
+        phenol.getBond(2).setFlag(CDKConstants.ISAROMATIC, false);
+        assertSameAsNew(phenol, cache.generateDiagram(phenol, generators, model));
+
+        IBond bond = phenol.getBond(6);
+        bond.setAtoms(new IAtom[] { phenol.getAtom(1), phenol.getAtom(6) });
+        assertSameAsNew(phenol, cache.generateDiagram(phenol, generators, model));
+
+        phenol.addAtom(DefaultChemObjectBuilder.getInstance().newInstance(
+            IAtom.class, "C", new Point2d(3, 0)));
+        phenol.addBond(6, 7, IBond.Order.SINGLE);
+        assertSameAsNew(phenol, cache.generateDiagram(phenol, generators, model));
+
+        phenol.removeAtomAndConnectedElectronContainers(phenol.getAtom(7));
+        assertSameAsNew(phenol, cache.generateDiagram(phenol, generators, model));
+    }
+
+    /**
+     * Containers that do not send change events are drawn incrementally too.
+     */
+    @Test
+    public void testGenerateDiagram_NoNotification() throws Exception {
+        IAtomContainer phenol = makePhenol(NoNotificationChemObjectBuilder.getInstance());
+        DiagramCache cache = new DiagramCache();
+        IRenderingElement first = cache.generateDiagram(phenol, generators, model);
+        IRenderingElement second = cache.generateDiagram(phenol, generators, model);
+        Assert.assertSame(getChild(first, 2), getChild(second, 2));
+        phenol.getAtom(6).setPoint2d(new Point2d(2, 1));
+        IRenderingElement third = cache.generateDiagram(phenol, generators, model);
+        Assert.assertNotSame(getChild(first, 2), getChild(third, 2));
+        assertSameAsNew(phenol, third);
+    }
+
+    /**
+     * Changes to atoms are found by their values, also when the new value
+     * is set on the same object, and the cache leaves no listeners behind.
+     */
+    @Test
+    public void testGenerateDiagram_ChangedInPlace() throws Exception {
+        IAtomContainer phenol = makePhenol(DefaultChemObjectBuilder.getInstance());
+        DiagramCache cache = new DiagramCache();
+        IRenderingElement first = cache.generateDiagram(phenol, generators, model);
+        phenol.getAtom(6).getPoint2d().y = 1;
+        IRenderingElement moved = cache.generateDiagram(phenol, generators, model);
+        Assert.assertNotSame(getChild(first, 2), getChild(moved, 2));
+        assertSameAsNew(phenol, moved);
+
+        phenol.getAtom(6).setFormalCharge(-1);
+        assertSameAsNew(phenol, cache.generateDiagram(phenol, generators, model));
+
+        Assert.assertEquals(0, phenol.getListenerCount());
+        for (IBond bond : phenol.bonds()) Assert.assertEquals(0, bond.getListenerCount());
+    }
+
+}
@@ -41,4 +41,19 @@ public class AWTFontManagerTest extends AbstractFontManagerTest {
 		Assert.assertNotNull(fontManager);
 	}
 
+	/**
+	 * The current font follows a change of style, without a change of zoom.
+	 */
+	@Test
+	public void testMakeFonts() {
+		AWTFontManager fontManager = new AWTFontManager();
+		fontManager.setFontStyle(IFontManager.FontStyle.BOLD);
+		fontManager.setFontForZoom(1.0);
+		Assert.assertTrue(fontManager.getFont().isBold());
+		int size = fontManager.getFont().getSize();
+		fontManager.setFontStyle(IFontManager.FontStyle.NORMAL);
+		Assert.assertFalse(fontManager.getFont().isBold());
+		Assert.assertEquals(size, fontManager.getFont().getSize());
+	}
+
 }
\ No newline at end of file
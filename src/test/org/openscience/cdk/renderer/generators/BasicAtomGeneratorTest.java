@@ -24,8 +24,10 @@ package org.openscience.cdk.renderer.generators;
 import java.awt.Color;
 import java.awt.Rectangle;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.vecmath.Point2d;
 
@@ -35,6 +37,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObject;
 import org.openscience.cdk.renderer.color.IAtomColorer;
 import org.openscience.cdk.renderer.elements.AtomSymbolElement;
 import org.openscience.cdk.renderer.elements.IRenderingElement;
@@ -382,4 +385,38 @@ public class BasicAtomGeneratorTest extends AbstractGeneratorTest {
         containsParameterType(parameters, ShowEndCarbons.class);
         containsParameterType(parameters, ShowExplicitHydrogens.class);
     }
+
+    @Test
+    public void testGenerateElements() {
+        IAtomContainer snop = makeSNOPSquare();
+        Map<IChemObject, IRenderingElement> elements =
+            generator.generateElements(snop, model);
+        Assert.assertEquals(4, elements.size());
+        for (IAtom atom : snop.atoms()) {
+            Assert.assertTrue(elements.get(atom) instanceof AtomSymbolElement);
+        }
+    }
+
+    @Test
+    public void testUpdateElements() {
+        IAtomContainer snop = makeSNOPSquare();
+        generator.generateElements(snop, model);
+        snop.getAtom(0).setPoint2d(new Point2d(-2, -2));
+        Set<IChemObject> changed = new HashSet<IChemObject>();
+        changed.add(snop.getAtom(0));
+        Map<IChemObject, IRenderingElement> elements =
+            generator.updateElements(snop, changed, model);
+        // the atom and its neighbours
+        Assert.assertEquals(3, elements.size());
+        Assert.assertFalse(elements.containsKey(snop.getAtom(2)));
+        AtomSymbolElement symbol = (AtomSymbolElement) elements.get(snop.getAtom(0));
+        Assert.assertEquals(-2.0, symbol.xCoord, 0.01);
+
+        changed.clear();
+        changed.add(snop.getBond(3));
+        elements = generator.updateElements(snop, changed, model);
+        Assert.assertEquals(2, elements.size());
+        Assert.assertTrue(elements.containsKey(snop.getBond(3).getAtom(0)));
+        Assert.assertTrue(elements.containsKey(snop.getBond(3).getAtom(1)));
+    }
 }
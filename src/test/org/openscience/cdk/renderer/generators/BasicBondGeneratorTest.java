@@ -1,7 +1,10 @@
 package org.openscience.cdk.renderer.generators;
 
 import java.awt.Rectangle;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.vecmath.Point2d;
 
@@ -10,6 +13,8 @@ import junit.framework.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
 import org.openscience.cdk.renderer.elements.IRenderingElement;
 import org.openscience.cdk.renderer.elements.LineElement;
 import org.openscience.cdk.renderer.generators.BasicBondGenerator;
@@ -72,5 +77,36 @@ public class BasicBondGeneratorTest extends AbstractGeneratorTest {
 		// test that the center is at the origin
 		Assert.assertEquals(new Point2d(0,0), center(elements));
 	}
+	
+	@Test
+	public void testGenerateElements() {
+		IAtomContainer square = makeSquare();
+		Map<IChemObject, IRenderingElement> elements =
+			generator.generateElements(square, model);
+		Assert.assertEquals(4, elements.size());
+		for (IBond bond : square.bonds()) {
+			Assert.assertNotNull(elements.get(bond));
+		}
+	}
+	
+	@Test
+	public void testUpdateElements() {
+		IAtomContainer container = makeCCC();
+		generator.generateElements(container, model);
+		Set<IChemObject> changed = new HashSet<IChemObject>();
+		changed.add(container.getAtom(0));
+		Map<IChemObject, IRenderingElement> elements =
+			generator.updateElements(container, changed, model);
+		Assert.assertEquals(1, elements.size());
+		Assert.assertTrue(elements.containsKey(container.getBond(0)));
+		
+		// all bonds of a ring are drawn again
+		IAtomContainer square = makeSquare();
+		generator.generateElements(square, model);
+		changed.clear();
+		changed.add(square.getBond(0));
+		elements = generator.updateElements(square, changed, model);
+		Assert.assertEquals(4, elements.size());
+	}
 
 }
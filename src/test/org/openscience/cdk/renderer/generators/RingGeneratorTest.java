@@ -0,0 +1,164 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version. All we ask is that proper credit is given for our work,
+ * which includes - but is not limited to - adding the above copyright notice to
+ * the beginning of your source code files, and to any copyright notice that you
+ * may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.renderer.generators;
+
+import java.awt.Rectangle;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.IRing;
+import org.openscience.cdk.renderer.elements.IRenderingElement;
+import org.openscience.cdk.renderer.elements.OvalElement;
+import org.openscience.cdk.renderer.generators.RingGenerator.CDKStyleAromaticity;
+import org.openscience.cdk.renderer.generators.RingGenerator.RingProportion;
+import org.openscience.cdk.renderer.generators.RingGenerator.ShowAromaticity;
+
+/**
+ * Test the {@link RingGenerator}.
+ *
+ * @cdk.module test-renderbasic
+ */
+public class RingGeneratorTest extends AbstractGeneratorTest {
+
+	private RingGenerator generator;
+
+	@Override
+	public Rectangle getCustomCanvas() {
+		return null;
+	}
+
+	@Before
+	public void setup() {
+		super.setup();
+		this.generator = new RingGenerator();
+		model.registerParameters(generator);
+	}
+
+	/**
+	 * Makes a square with aromatic atoms and bonds.
+	 */
+	private IAtomContainer makeAromaticSquare() {
+		IAtomContainer square = makeSquare();
+		for (IAtom atom : square.atoms()) atom.setFlag(CDKConstants.ISAROMATIC, true);
+		for (IBond bond : square.bonds()) bond.setFlag(CDKConstants.ISAROMATIC, true);
+		return square;
+	}
+
+	private int countOvals(Collection<IRenderingElement> roots) {
+		int count = 0;
+		for (IRenderingElement root : roots) {
+			for (IRenderingElement element : elementUtil.getAllSimpleElements(root)) {
+				if (element instanceof OvalElement) count++;
+			}
+		}
+		return count;
+	}
+
+	private int countOvals(IRenderingElement root) {
+		return countOvals(Collections.singleton(root));
+	}
+
+	/**
+	 * Each diagram of an aromatic ring has its ring circle, also when the
+	 * same container is drawn again.
+	 */
+	@Test
+	public void testGenerate() {
+		IAtomContainer square = makeAromaticSquare();
+		Assert.assertEquals(1, countOvals(generator.generate(square, model)));
+		Assert.assertEquals(1, countOvals(generator.generate(square, model)));
+		Assert.assertEquals(0, countOvals(generator.generate(makeSquare(), model)));
+	}
+
+	@Test
+	public void testGenerateElements() {
+		IAtomContainer square = makeAromaticSquare();
+		Map<IChemObject, IRenderingElement> elements =
+			generator.generateElements(square, model);
+		Assert.assertEquals(4, elements.size());
+		Assert.assertEquals(1, countOvals(elements.values()));
+		elements = generator.generateElements(square, model);
+		Assert.assertEquals(1, countOvals(elements.values()));
+	}
+
+	/**
+	 * The ring circle is drawn again with the updated bonds of its ring.
+	 */
+	@Test
+	public void testUpdateElements() {
+		IAtomContainer square = makeAromaticSquare();
+		generator.generateElements(square, model);
+		Set<IChemObject> changed = new HashSet<IChemObject>();
+		changed.add(square.getBond(0));
+		Map<IChemObject, IRenderingElement> elements =
+			generator.updateElements(square, changed, model);
+		Assert.assertEquals(4, elements.size());
+		Assert.assertEquals(1, countOvals(elements.values()));
+		elements = generator.updateElements(square, changed, model);
+		Assert.assertEquals(1, countOvals(elements.values()));
+	}
+
+	/**
+	 * The circle of an aromatic ring is only drawn with its first bond, and
+	 * inner bonds are drawn instead in the CDK style.
+	 */
+	@Test
+	public void testGenerateRingElements() {
+		IAtomContainer square = makeAromaticSquare();
+		IRing ring = builder.newInstance(IRing.class, square);
+		Assert.assertEquals(1, countOvals(
+			generator.generateRingElements(square.getBond(0), ring, model)));
+		Assert.assertEquals(0, countOvals(
+			generator.generateRingElements(square.getBond(1), ring, model)));
+
+		model.set(CDKStyleAromaticity.class, true);
+		ring = builder.newInstance(IRing.class, square);
+		IRenderingElement element =
+			generator.generateRingElements(square.getBond(0), ring, model);
+		Assert.assertEquals(0, countOvals(element));
+		Assert.assertEquals(2, elementUtil.getAllSimpleElements(element).size());
+	}
+
+	@Test
+	public void testGetParameters() {
+		List<IGeneratorParameter<?>> parameters = generator.getParameters();
+		Assert.assertTrue(containsParameterType(parameters, ShowAromaticity.class));
+		Assert.assertTrue(containsParameterType(parameters, CDKStyleAromaticity.class));
+		Assert.assertTrue(containsParameterType(parameters, RingProportion.class));
+		// and those of the bond generator
+		Assert.assertEquals(new BasicBondGenerator().getParameters().size() + 3, parameters.size());
+	}
+
+}
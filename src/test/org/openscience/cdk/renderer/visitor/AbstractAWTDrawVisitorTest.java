@@ -24,6 +24,9 @@ import java.awt.Point;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import junit.framework.Assert;
 
@@ -91,4 +94,61 @@ public class AbstractAWTDrawVisitorTest {
 		Point point = visitor.getTextBasePoint("Foo", 3, 5, g2d);
 		Assert.assertNotNull(point);
 	}
+
+	@Test
+	public void testGetStringBounds() {
+		AbstractAWTDrawVisitor visitor = new NestedAWTDrawVisitor();
+		Image image = new BufferedImage(
+			100, 100, BufferedImage.TYPE_INT_RGB
+		);
+		Graphics2D g2d = (Graphics2D)image.getGraphics();
+		Rectangle2D bounds = visitor.getStringBounds("Foo", g2d);
+		Assert.assertEquals(
+			g2d.getFontMetrics().getStringBounds("Foo", g2d), bounds
+		);
+		// the bounds are kept, but may not be changed through the result
+		bounds.setRect(0, 0, 0, 0);
+		Assert.assertEquals(
+			g2d.getFontMetrics().getStringBounds("Foo", g2d),
+			visitor.getStringBounds("Foo", g2d)
+		);
+		g2d.setFont(g2d.getFont().deriveFont(40f));
+		Assert.assertEquals(
+			g2d.getFontMetrics().getStringBounds("Foo", g2d),
+			visitor.getStringBounds("Foo", g2d)
+		);
+	}
+
+	/**
+	 * Visitors on several threads each keep their own bounds.
+	 */
+	@Test
+	public void testGetStringBounds_Threads() throws Exception {
+		final float[] sizes = {12f, 20f, 30f};
+		final List<String> failures =
+			Collections.synchronizedList(new ArrayList<String>());
+		Thread[] threads = new Thread[sizes.length];
+		for (int t = 0; t < threads.length; t++) {
+			final float size = sizes[t];
+			threads[t] = new Thread() {
+				public void run() {
+					AbstractAWTDrawVisitor visitor = new NestedAWTDrawVisitor();
+					Graphics2D g2d = new BufferedImage(
+						100, 100, BufferedImage.TYPE_INT_RGB
+					).createGraphics();
+					g2d.setFont(g2d.getFont().deriveFont(size));
+					for (int i = 0; i < 200; i++) {
+						String text = "C" + (i % 20);
+						Rectangle2D expected =
+							g2d.getFontMetrics().getStringBounds(text, g2d);
+						if (!expected.equals(visitor.getStringBounds(text, g2d)))
+							failures.add(size + " " + text);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) thread.join();
+		Assert.assertTrue(failures.toString(), failures.isEmpty());
+	}
 }
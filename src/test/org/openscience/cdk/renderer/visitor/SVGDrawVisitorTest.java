@@ -0,0 +1,166 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.renderer.visitor;
+
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.renderer.RendererModel;
+import org.openscience.cdk.renderer.elements.AtomSymbolElement;
+import org.openscience.cdk.renderer.elements.ElementGroup;
+import org.openscience.cdk.renderer.elements.LineElement;
+import org.openscience.cdk.renderer.elements.OvalElement;
+import org.openscience.cdk.renderer.elements.TextElement;
+import org.openscience.cdk.renderer.elements.WedgeLineElement;
+import org.openscience.cdk.renderer.font.AWTFontManager;
+import org.openscience.cdk.renderer.generators.BasicBondGenerator;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * @cdk.module  test-renderawt
+ * @cdk.githash
+ */
+public class SVGDrawVisitorTest {
+
+    private SVGDrawVisitor makeVisitor(Writer writer) {
+        SVGDrawVisitor visitor = new SVGDrawVisitor(writer);
+        RendererModel model = new RendererModel();
+        model.registerParameters(new BasicSceneGenerator());
+        model.registerParameters(new BasicBondGenerator());
+        visitor.setRendererModel(model);
+        visitor.setFontManager(new AWTFontManager());
+        visitor.setTransform(new AffineTransform());
+        return visitor;
+    }
+
+    private Document parse(String svg) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+            new ByteArrayInputStream(svg.getBytes("UTF-8"))
+        );
+    }
+
+    @Test
+    public void testConstructor() {
+        SVGDrawVisitor visitor = new SVGDrawVisitor(new StringWriter());
+        Assert.assertNotNull(visitor);
+    }
+
+    @Test
+    public void testSetFontManager() {
+        SVGDrawVisitor visitor = new SVGDrawVisitor(new StringWriter());
+        visitor.setFontManager(new AWTFontManager());
+        Assert.assertNotNull(visitor);
+    }
+
+    @Test
+    public void testSetRendererModel() {
+        SVGDrawVisitor visitor = new SVGDrawVisitor(new StringWriter());
+        visitor.setRendererModel(new RendererModel());
+        Assert.assertNotNull(visitor);
+    }
+
+    @Test
+    public void testStartDocument() throws Exception {
+        StringWriter writer = new StringWriter();
+        SVGDrawVisitor visitor = new SVGDrawVisitor(writer);
+        visitor.startDocument(120, 80);
+        visitor.endDocument();
+        Element svg = parse(writer.toString()).getDocumentElement();
+        Assert.assertEquals("svg", svg.getNodeName());
+        Assert.assertEquals("120", svg.getAttribute("width"));
+        Assert.assertEquals("80", svg.getAttribute("height"));
+        // the background
+        Element background = (Element) svg.getElementsByTagName("rect").item(0);
+        Assert.assertEquals("#ffffff", background.getAttribute("fill"));
+    }
+
+    @Test
+    public void testEndDocument() throws Exception {
+        Writer failing = new Writer() {
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("Disk full");
+            }
+            public void flush() {}
+            public void close() {}
+        };
+        SVGDrawVisitor visitor = makeVisitor(failing);
+        visitor.startDocument(100, 100);
+        visitor.visit(new LineElement(0, 0, 10, 10, 1, Color.BLACK));
+        try {
+            visitor.endDocument();
+            Assert.fail("The writer failed");
+        } catch (IOException exception) {
+            Assert.assertEquals("Disk full", exception.getMessage());
+        }
+    }
+
+    @Test
+    public void testVisit() throws Exception {
+        StringWriter writer = new StringWriter();
+        SVGDrawVisitor visitor = makeVisitor(writer);
+        visitor.startDocument(100, 100);
+        ElementGroup group = new ElementGroup();
+        group.add(new LineElement(1, 2, 30.5, 40.25, 1, Color.RED));
+        group.add(new OvalElement(50, 50, 5, true, Color.BLUE));
+        group.add(new WedgeLineElement(10, 10, 40, 10, 1, false,
+            WedgeLineElement.Direction.toSecond, Color.BLACK));
+        group.add(new WedgeLineElement(10, 10, 40, 10, 1, true,
+            WedgeLineElement.Direction.toSecond, Color.BLACK));
+        group.add(new AtomSymbolElement(20, 20, "N", 1, 0, 1, Color.BLUE));
+        group.add(new TextElement(60, 60, "R<1>&", Color.BLACK));
+        visitor.visit(group);
+        visitor.endDocument();
+
+        Element svg = parse(writer.toString()).getDocumentElement();
+        Element line = (Element) svg.getElementsByTagName("line").item(0);
+        Assert.assertEquals("1", line.getAttribute("x1"));
+        Assert.assertEquals("2", line.getAttribute("y1"));
+        Assert.assertEquals("30.5", line.getAttribute("x2"));
+        Assert.assertEquals("40.25", line.getAttribute("y2"));
+        Assert.assertEquals("#ff0000", line.getAttribute("stroke"));
+        Element circle = (Element) svg.getElementsByTagName("circle").item(0);
+        Assert.assertEquals("5", circle.getAttribute("r"));
+        Assert.assertEquals("#0000ff", circle.getAttribute("fill"));
+        Assert.assertEquals(1, svg.getElementsByTagName("polygon").getLength());
+        // the dashes of the hashed wedge
+        Assert.assertTrue(svg.getElementsByTagName("line").getLength() > 5);
+        // the symbol, its charge, and the text
+        Assert.assertEquals(3, svg.getElementsByTagName("text").getLength());
+        Assert.assertEquals("N", svg.getElementsByTagName("text").item(0).getTextContent());
+        Assert.assertEquals("+", svg.getElementsByTagName("text").item(1).getTextContent());
+        Assert.assertEquals("R<1>&", svg.getElementsByTagName("text").item(2).getTextContent());
+        // the backgrounds of the labels
+        Assert.assertEquals(3, svg.getElementsByTagName("rect").getLength());
+    }
+
+}
@@ -0,0 +1,168 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.search;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.fingerprint.ExtendedFingerprinter;
+import org.openscience.cdk.fingerprint.Fingerprinter;
+import org.openscience.cdk.fingerprint.FingerprinterTool;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class SubstructureIndexTest extends CDKTestCase {
+
+    private static final String[] QUERIES = {
+        "c1ccccc1", "C(=O)O", "N", "c1ccncc1", "C1CCCCC1", "CC(C)C", "S(=O)(=O)N", "Cl"
+    };
+
+    private List<IAtomContainer> getDrugs() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            getClass().getClassLoader().getResourceAsStream("data/smiles/drugs.smi")
+        ));
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            molecules.add(sp.parseSmiles(line.split("\\s")[0]));
+        }
+        reader.close();
+        return molecules;
+    }
+
+    private IAtomContainer parse(String smiles) throws Exception {
+        return new SmilesParser(DefaultChemObjectBuilder.getInstance()).parseSmiles(smiles);
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        SubstructureIndex index = new SubstructureIndex();
+        Assert.assertEquals(0, index.size());
+        IAtomContainer indole = MoleculeFactory.makeIndole();
+        Assert.assertEquals(0, index.add(indole));
+        Assert.assertEquals(1, index.add(MoleculeFactory.makePyrrole()));
+        Assert.assertEquals(2, index.size());
+        Assert.assertSame(indole, index.getMolecule(0));
+    }
+
+    @Test
+    public void testAdd_Fingerprint() throws Exception {
+        Fingerprinter fingerprinter = new Fingerprinter();
+        SubstructureIndex index = new SubstructureIndex(fingerprinter, 1);
+        IAtomContainer indole = MoleculeFactory.makeIndole();
+        index.add(indole, fingerprinter.getFingerprint(indole));
+        Assert.assertEquals(1, index.search(MoleculeFactory.makePyrrole()).cardinality());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdd_FingerprintTooLong() throws Exception {
+        BitSet fingerprint = new BitSet();
+        fingerprint.set(Fingerprinter.DEFAULT_SIZE);
+        new SubstructureIndex().add(MoleculeFactory.makeIndole(), fingerprint);
+    }
+
+    /**
+     * The screen keeps the molecules whose fingerprint is a superset of the
+     * fingerprint of the query, as {@link FingerprinterTool#isSubset(BitSet, BitSet)}.
+     */
+    @Test
+    public void testScreen() throws Exception {
+        Fingerprinter fingerprinter = new Fingerprinter();
+        SubstructureIndex index = new SubstructureIndex(fingerprinter, 1);
+        List<BitSet> fingerprints = new ArrayList<BitSet>();
+        for (IAtomContainer molecule : getDrugs()) {
+            index.add(molecule);
+            fingerprints.add(fingerprinter.getFingerprint(molecule));
+        }
+        for (String smiles : QUERIES) {
+            BitSet query = fingerprinter.getFingerprint(parse(smiles));
+            BitSet expected = new BitSet();
+            for (int i = 0; i < fingerprints.size(); i++) {
+                if (FingerprinterTool.isSubset(fingerprints.get(i), query)) expected.set(i);
+            }
+            Assert.assertEquals(smiles, expected, index.screen(query));
+        }
+        Assert.assertEquals(index.size(), index.screen(new BitSet()).cardinality());
+    }
+
+    @Test
+    public void testScreen_Empty() throws Exception {
+        SubstructureIndex index = new SubstructureIndex();
+        Assert.assertTrue(index.screen(MoleculeFactory.makeIndole()).isEmpty());
+        Assert.assertTrue(index.search(MoleculeFactory.makeIndole()).isEmpty());
+    }
+
+    /**
+     * The hits are those of a linear scan over all molecules.
+     */
+    @Test
+    public void testSearch() throws Exception {
+        SubstructureIndex index = new SubstructureIndex();
+        List<IAtomContainer> molecules = getDrugs();
+        for (IAtomContainer molecule : molecules) index.add(molecule);
+        for (String smiles : QUERIES) {
+            IAtomContainer query = parse(smiles);
+            BitSet hits = index.search(query);
+            BitSet expected = new BitSet();
+            for (int i = 0; i < molecules.size(); i++) {
+                if (UniversalIsomorphismTester.isSubgraph(molecules.get(i), query)) expected.set(i);
+            }
+            Assert.assertEquals(smiles, expected, hits);
+            Assert.assertTrue(smiles, index.screen(query).cardinality() >= hits.cardinality());
+        }
+    }
+
+    @Test
+    public void testSearch_ThreadCount() throws Exception {
+        List<IAtomContainer> molecules = getDrugs();
+        SubstructureIndex single = new SubstructureIndex(new ExtendedFingerprinter(), 1);
+        SubstructureIndex parallel = new SubstructureIndex(new ExtendedFingerprinter(), 4);
+        for (IAtomContainer molecule : molecules) {
+            single.add(molecule);
+            parallel.add(molecule);
+        }
+        for (String smiles : QUERIES) {
+            IAtomContainer query = parse(smiles);
+            Assert.assertEquals(smiles, single.search(query), parallel.search(query));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubstructureIndex_ThreadCount() {
+        new SubstructureIndex(new Fingerprinter(), 0);
+    }
+
+}
@@ -0,0 +1,146 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import javax.vecmath.Point2d;
+import javax.vecmath.Point3d;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.AbstractAtomTest;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.ITestObjectBuilder;
+
+/**
+ * Checks the functionality of the {@link CompactAtom}.
+ *
+ * @cdk.module test-silent
+ */
+public class CompactAtomTest extends AbstractAtomTest {
+
+    @BeforeClass public static void setUp() {
+        setTestObjectBuilder(new ITestObjectBuilder() {
+            public IChemObject newTestObject() {
+                return new CompactAtom();
+            }
+        });
+    }
+
+    @Test public void testCompactAtom() {
+        IAtom a = new CompactAtom();
+        Assert.assertNotNull(a);
+    }
+
+    @Test public void testCompactAtom_IElement() {
+        IAtom carbon = new Atom("C");
+        carbon.setImplicitHydrogenCount(2);
+        carbon.setID("a1");
+        IAtom a = new CompactAtom(carbon);
+        Assert.assertEquals("C", a.getSymbol());
+        Assert.assertEquals(2, a.getImplicitHydrogenCount().intValue());
+        Assert.assertEquals("a1", a.getID());
+    }
+
+    @Test public void testCompactAtom_String() {
+        IAtom a = new CompactAtom("C");
+        Assert.assertEquals("C", a.getSymbol());
+        Assert.assertEquals(6, a.getAtomicNumber().intValue());
+        Assert.assertNull(a.getPoint2d());
+    }
+
+    @Test public void testCompactAtom_String_Point2d() {
+        Point2d point2d = new Point2d(1.0, 2.0);
+        IAtom a = new CompactAtom("C", point2d);
+        Assert.assertEquals(point2d, a.getPoint2d());
+    }
+
+    @Test public void testCompactAtom_String_Point3d() {
+        Point3d point3d = new Point3d(1.0, 2.0, 3.0);
+        IAtom a = new CompactAtom("C", point3d);
+        Assert.assertEquals(point3d, a.getPoint3d());
+    }
+
+    @Test public void testSetSymbol_Attached() {
+        CompactMolecule m = new CompactMolecule();
+        IAtom a = new CompactAtom("C");
+        m.addAtom(a);
+        a.setSymbol("N");
+        Assert.assertEquals("N", a.getSymbol());
+        Assert.assertEquals(6, m.getAtomicNumber(0));
+        a.setAtomicNumber(7);
+        Assert.assertEquals(7, m.getAtomicNumber(0));
+        // symbols that are not in the periodic table are kept too
+        a.setSymbol("R");
+        Assert.assertEquals("R", a.getSymbol());
+        a.setSymbol(null);
+        Assert.assertNull(a.getSymbol());
+    }
+
+    @Test public void testClone_Attached() throws Exception {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(8, -1, 0);
+        IAtom a = m.getAtom(0);
+        IAtom clone = (IAtom)a.clone();
+        Assert.assertTrue(((CompactAtom)clone).compare(a));
+        clone.setFormalCharge(0);
+        Assert.assertEquals(-1, a.getFormalCharge().intValue());
+        Assert.assertEquals(-1, m.getFormalCharge(0));
+    }
+
+    // Overwrite default methods: no notifications are expected!
+
+    @Test public void testNotifyChanged() {
+        ChemObjectTestHelper.testNotifyChanged(newChemObject());
+    }
+    @Test public void testNotifyChanged_SetFlag() {
+        ChemObjectTestHelper.testNotifyChanged_SetFlag(newChemObject());
+    }
+    @Test public void testNotifyChanged_SetFlags() {
+        ChemObjectTestHelper.testNotifyChanged_SetFlags(newChemObject());
+    }
+    @Test public void testNotifyChanged_IChemObjectChangeEvent() {
+        ChemObjectTestHelper.testNotifyChanged_IChemObjectChangeEvent(newChemObject());
+    }
+    @Test public void testStateChanged_IChemObjectChangeEvent() {
+        ChemObjectTestHelper.testStateChanged_IChemObjectChangeEvent(newChemObject());
+    }
+    @Test public void testClone_ChemObjectListeners() throws Exception {
+        ChemObjectTestHelper.testClone_ChemObjectListeners(newChemObject());
+    }
+    @Test public void testAddListener_IChemObjectListener() {
+        ChemObjectTestHelper.testAddListener_IChemObjectListener(newChemObject());
+    }
+    @Test public void testGetListenerCount() {
+        ChemObjectTestHelper.testGetListenerCount(newChemObject());
+    }
+    @Test public void testRemoveListener_IChemObjectListener() {
+        ChemObjectTestHelper.testRemoveListener_IChemObjectListener(newChemObject());
+    }
+    @Test public void testSetNotification_true() {
+        ChemObjectTestHelper.testSetNotification_true(newChemObject());
+    }
+    @Test public void testNotifyChanged_SetProperty() {
+        ChemObjectTestHelper.testNotifyChanged_SetProperty(newChemObject());
+    }
+    @Test public void testNotifyChanged_RemoveProperty() {
+        ChemObjectTestHelper.testNotifyChanged_RemoveProperty(newChemObject());
+    }
+}
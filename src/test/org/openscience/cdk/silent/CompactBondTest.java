@@ -0,0 +1,141 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.AbstractBondTest;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.ITestObjectBuilder;
+
+/**
+ * Checks the functionality of the {@link CompactBond}.
+ *
+ * @cdk.module test-silent
+ */
+public class CompactBondTest extends AbstractBondTest {
+
+    @BeforeClass public static void setUp() {
+        setTestObjectBuilder(new ITestObjectBuilder() {
+            public IChemObject newTestObject() {
+                return new CompactBond();
+            }
+        });
+    }
+
+    @Test public void testCompactBond() {
+        IBond bond = new CompactBond();
+        Assert.assertEquals(0, bond.getAtomCount());
+        Assert.assertNull(bond.getOrder());
+        Assert.assertEquals(IBond.Stereo.NONE, bond.getStereo());
+    }
+
+    @Test public void testCompactBond_IAtom_IAtom() {
+        IAtom c = new CompactAtom("C");
+        IAtom o = new CompactAtom("O");
+        IBond bond = new CompactBond(c, o);
+        Assert.assertEquals(2, bond.getAtomCount());
+        Assert.assertEquals(IBond.Order.SINGLE, bond.getOrder());
+    }
+
+    @Test public void testCompactBond_IAtom_IAtom_IBond_Order() {
+        IAtom c = new CompactAtom("C");
+        IAtom o = new CompactAtom("O");
+        IBond bond = new CompactBond(c, o, IBond.Order.DOUBLE);
+        Assert.assertEquals(IBond.Order.DOUBLE, bond.getOrder());
+        Assert.assertEquals(IBond.Stereo.NONE, bond.getStereo());
+    }
+
+    @Test public void testCompactBond_IAtom_IAtom_IBond_Order_IBond_Stereo() {
+        IAtom c = new CompactAtom("C");
+        IAtom o = new CompactAtom("O");
+        IBond bond = new CompactBond(c, o, IBond.Order.SINGLE, IBond.Stereo.UP);
+        Assert.assertEquals(IBond.Stereo.UP, bond.getStereo());
+    }
+
+    @Test public void testSetAtom_IAtom_int_Attached() {
+        CompactMolecule m = new CompactMolecule();
+        IAtom c1 = new CompactAtom("C");
+        IAtom c2 = new CompactAtom("C");
+        IAtom o = new CompactAtom("O");
+        m.addAtom(c1);
+        m.addAtom(c2);
+        m.addAtom(o);
+        IBond bond = new CompactBond(c1, c2);
+        m.addBond(bond);
+        bond.setAtom(o, 1);
+        Assert.assertEquals(2, m.getBondAtomNumber(0, 1));
+        Assert.assertSame(bond, m.getBond(c1, o));
+        Assert.assertNull(m.getBond(c1, c2));
+        Assert.assertEquals(0, m.getConnectedBondsCount(c2));
+    }
+
+    @Test public void testClone_Attached() throws Exception {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 3);
+        m.addAtom(8, 0, 1);
+        m.addBond(0, 1, IBond.Order.DOUBLE);
+        IBond clone = (IBond)m.getBond(0).clone();
+        clone.setOrder(IBond.Order.SINGLE);
+        Assert.assertEquals(IBond.Order.DOUBLE, m.getBondOrder(0));
+        Assert.assertFalse(m.contains(clone.getAtom(0)));
+    }
+
+    // Overwrite default methods: no notifications are expected!
+
+    @Test public void testNotifyChanged() {
+        ChemObjectTestHelper.testNotifyChanged(newChemObject());
+    }
+    @Test public void testNotifyChanged_SetFlag() {
+        ChemObjectTestHelper.testNotifyChanged_SetFlag(newChemObject());
+    }
+    @Test public void testNotifyChanged_SetFlags() {
+        ChemObjectTestHelper.testNotifyChanged_SetFlags(newChemObject());
+    }
+    @Test public void testNotifyChanged_IChemObjectChangeEvent() {
+        ChemObjectTestHelper.testNotifyChanged_IChemObjectChangeEvent(newChemObject());
+    }
+    @Test public void testStateChanged_IChemObjectChangeEvent() {
+        ChemObjectTestHelper.testStateChanged_IChemObjectChangeEvent(newChemObject());
+    }
+    @Test public void testClone_ChemObjectListeners() throws Exception {
+        ChemObjectTestHelper.testClone_ChemObjectListeners(newChemObject());
+    }
+    @Test public void testAddListener_IChemObjectListener() {
+        ChemObjectTestHelper.testAddListener_IChemObjectListener(newChemObject());
+    }
+    @Test public void testGetListenerCount() {
+        ChemObjectTestHelper.testGetListenerCount(newChemObject());
+    }
+    @Test public void testRemoveListener_IChemObjectListener() {
+        ChemObjectTestHelper.testRemoveListener_IChemObjectListener(newChemObject());
+    }
+    @Test public void testSetNotification_true() {
+        ChemObjectTestHelper.testSetNotification_true(newChemObject());
+    }
+    @Test public void testNotifyChanged_SetProperty() {
+        ChemObjectTestHelper.testNotifyChanged_SetProperty(newChemObject());
+    }
+    @Test public void testNotifyChanged_RemoveProperty() {
+        ChemObjectTestHelper.testNotifyChanged_RemoveProperty(newChemObject());
+    }
+}
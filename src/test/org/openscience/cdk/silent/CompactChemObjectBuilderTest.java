@@ -0,0 +1,64 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.AbstractChemObjectBuilderTest;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.interfaces.IRing;
+
+/**
+ * Checks the functionality of the {@link IChemObjectBuilder}
+ * {@link CompactChemObjectBuilder} implementation.
+ *
+ * @cdk.module test-silent
+ */
+public class CompactChemObjectBuilderTest extends AbstractChemObjectBuilderTest {
+
+    @BeforeClass public static void setUp() {
+        setRootObject(new CompactMolecule());
+    }
+
+    @Test public void testGetInstance() {
+        Object builder = CompactChemObjectBuilder.getInstance();
+        Assert.assertNotNull(builder);
+        Assert.assertTrue(builder instanceof IChemObjectBuilder);
+        Assert.assertTrue(builder instanceof CompactChemObjectBuilder);
+    }
+
+    @Test public void testNewInstance_CompactClasses() {
+        IChemObjectBuilder builder = CompactChemObjectBuilder.getInstance();
+        Assert.assertTrue(builder.newInstance(IAtomContainer.class) instanceof CompactMolecule);
+        Assert.assertTrue(builder.newInstance(IMolecule.class) instanceof CompactMolecule);
+        IAtom atom = builder.newInstance(IAtom.class, "C");
+        Assert.assertTrue(atom instanceof CompactAtom);
+        Assert.assertTrue(builder.newInstance(IBond.class, atom, atom) instanceof CompactBond);
+        // other classes are the silent ones
+        Assert.assertTrue(builder.newInstance(IPseudoAtom.class) instanceof PseudoAtom);
+        Assert.assertTrue(builder.newInstance(IRing.class) instanceof Ring);
+    }
+
+}
@@ -0,0 +1,363 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import javax.vecmath.Point2d;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.AbstractMoleculeTest;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.IMolecule;
+import org.openscience.cdk.interfaces.ITestObjectBuilder;
+
+/**
+ * Checks the functionality of the {@link CompactMolecule}.
+ *
+ * @cdk.module test-silent
+ */
+public class CompactMoleculeTest extends AbstractMoleculeTest {
+
+    @BeforeClass public static void setUp() {
+        setTestObjectBuilder(new ITestObjectBuilder() {
+            public IChemObject newTestObject() {
+                return new CompactMolecule();
+            }
+        });
+    }
+
+    @Test public void testCompactMolecule() {
+        IMolecule m = new CompactMolecule();
+        Assert.assertNotNull(m);
+    }
+
+    @Test public void testCompactMolecule_int_int_int_int() {
+        IMolecule m = new CompactMolecule(5,5,1,1);
+        Assert.assertEquals(0, m.getAtomCount());
+        Assert.assertEquals(0, m.getBondCount());
+        Assert.assertEquals(0, m.getLonePairCount());
+        Assert.assertEquals(0, m.getSingleElectronCount());
+    }
+
+    @Test public void testCompactMolecule_IAtomContainer() {
+        IAtomContainer acetone = new AtomContainer();
+        IAtom c1 = acetone.getBuilder().newInstance(IAtom.class,"C");
+        IAtom c2 = acetone.getBuilder().newInstance(IAtom.class,"C");
+        IAtom o = acetone.getBuilder().newInstance(IAtom.class,"O");
+        acetone.addAtom(c1);
+        acetone.addAtom(c2);
+        acetone.addAtom(o);
+        IBond b1 = acetone.getBuilder().newInstance(IBond.class,c1, c2, IBond.Order.SINGLE);
+        IBond b2 = acetone.getBuilder().newInstance(IBond.class,c1, o, IBond.Order.DOUBLE);
+        acetone.addBond(b1);
+        acetone.addBond(b2);
+
+        CompactMolecule m = new CompactMolecule(acetone);
+        Assert.assertEquals(3, m.getAtomCount());
+        Assert.assertEquals(2, m.getBondCount());
+        // atoms of other implementations are kept by reference
+        Assert.assertSame(o, m.getAtom(2));
+        Assert.assertSame(b2, m.getBond(c1, o));
+        Assert.assertEquals(8, m.getAtomicNumber(2));
+        Assert.assertEquals(2, m.getConnectedBondsCount(c1));
+    }
+
+    @Test public void testAddAtom_int_int_int() {
+        CompactMolecule m = new CompactMolecule();
+        Assert.assertEquals(0, m.addAtom(6, 0, 3));
+        Assert.assertEquals(1, m.addAtom(8, -1, CompactMolecule.UNSET));
+        Assert.assertEquals(8, m.getAtomicNumber(1));
+        Assert.assertEquals(-1, m.getFormalCharge(1));
+        Assert.assertEquals(CompactMolecule.UNSET, m.getImplicitHydrogenCount(1));
+
+        IAtom oxygen = m.getAtom(1);
+        Assert.assertTrue(oxygen instanceof CompactAtom);
+        Assert.assertSame(oxygen, m.getAtom(1));
+        Assert.assertEquals("O", oxygen.getSymbol());
+        Assert.assertEquals(-1, oxygen.getFormalCharge().intValue());
+        Assert.assertNull(oxygen.getImplicitHydrogenCount());
+        oxygen.setImplicitHydrogenCount(1);
+        Assert.assertEquals(1, m.getImplicitHydrogenCount(1));
+    }
+
+    @Test public void testAddBond_int_int_IBond_Order() {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 2);
+        m.addAtom(6, 0, 2);
+        m.addAtom(8, 0, 0);
+        m.addBond(0, 1, IBond.Order.SINGLE);
+        m.addBond(0, 2, IBond.Order.DOUBLE);
+        Assert.assertEquals(2, m.getConnectedBondsCount(0));
+        Assert.assertEquals(1, m.getConnectedBondNumber(0, 1));
+        Assert.assertEquals(2, m.getConnectedAtomNumber(0, 1));
+        Assert.assertEquals(0, m.getConnectedAtomNumber(2, 0));
+        Assert.assertEquals(IBond.Order.DOUBLE, m.getBondOrder(1));
+        Assert.assertEquals(2, m.getBondAtomNumber(1, 1));
+
+        IBond bond = m.getBond(m.getAtom(0), m.getAtom(2));
+        Assert.assertSame(m.getBond(1), bond);
+        Assert.assertTrue(bond.contains(m.getAtom(2)));
+        bond.setOrder(IBond.Order.TRIPLE);
+        Assert.assertEquals(IBond.Order.TRIPLE, m.getBondOrder(1));
+        Assert.assertEquals(4.0, m.getBondOrderSum(m.getAtom(0)), 0.0001);
+    }
+
+    @Test public void testGetAtomicNumber_int() {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 4);
+        m.addAtom(CompactMolecule.UNSET, 0, 0);
+        m.addAtom(new Atom("N"));
+        Assert.assertEquals(6, m.getAtomicNumber(0));
+        Assert.assertEquals(CompactMolecule.UNSET, m.getAtomicNumber(1));
+        Assert.assertEquals(7, m.getAtomicNumber(2));
+        m.getAtom(0).setAtomicNumber(14);
+        Assert.assertEquals(14, m.getAtomicNumber(0));
+    }
+
+    @Test public void testGetFormalCharge_int() {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(7, 1, 4);
+        m.addAtom(8, CompactMolecule.UNSET, 0);
+        IAtom chloride = new Atom("Cl");
+        chloride.setFormalCharge(-1);
+        m.addAtom(chloride);
+        Assert.assertEquals(1, m.getFormalCharge(0));
+        Assert.assertEquals(CompactMolecule.UNSET, m.getFormalCharge(1));
+        Assert.assertEquals(-1, m.getFormalCharge(2));
+    }
+
+    @Test public void testGetImplicitHydrogenCount_int() {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 4);
+        IAtom oxygen = new Atom("O");
+        m.addAtom(oxygen);
+        Assert.assertEquals(4, m.getImplicitHydrogenCount(0));
+        Assert.assertEquals(CompactMolecule.UNSET, m.getImplicitHydrogenCount(1));
+        oxygen.setImplicitHydrogenCount(2);
+        Assert.assertEquals(2, m.getImplicitHydrogenCount(1));
+    }
+
+    @Test public void testGetBondAtomNumber_int_int() {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 3);
+        m.addAtom(8, 0, 1);
+        m.addAtom(6, 0, 3);
+        m.addBond(1, 0, IBond.Order.SINGLE);
+        m.addBond(new Bond(m.getAtom(1), m.getAtom(2)));
+        Assert.assertEquals(1, m.getBondAtomNumber(0, 0));
+        Assert.assertEquals(0, m.getBondAtomNumber(0, 1));
+        Assert.assertEquals(-1, m.getBondAtomNumber(0, 2));
+        Assert.assertEquals(1, m.getBondAtomNumber(1, 0));
+        Assert.assertEquals(2, m.getBondAtomNumber(1, 1));
+    }
+
+    @Test public void testGetBondOrder_int() {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 2);
+        m.addAtom(8, 0, 0);
+        m.addAtom(6, 0, 3);
+        m.addBond(0, 1, IBond.Order.DOUBLE);
+        m.addBond(0, 2, null);
+        m.addBond(new Bond(m.getAtom(1), m.getAtom(2), IBond.Order.TRIPLE));
+        Assert.assertEquals(IBond.Order.DOUBLE, m.getBondOrder(0));
+        Assert.assertNull(m.getBondOrder(1));
+        Assert.assertEquals(IBond.Order.TRIPLE, m.getBondOrder(2));
+        m.getBond(1).setOrder(IBond.Order.SINGLE);
+        Assert.assertEquals(IBond.Order.SINGLE, m.getBondOrder(1));
+    }
+
+    @Test public void testGetConnectedBondNumber_int_int() {
+        CompactMolecule m = new CompactMolecule();
+        for (int f = 0; f < 4; f++) m.addAtom(6, 0, 2);
+        m.addBond(0, 1, IBond.Order.SINGLE);
+        m.addBond(1, 2, IBond.Order.SINGLE);
+        m.addBond(2, 0, IBond.Order.SINGLE);
+        Assert.assertEquals(0, m.getConnectedBondNumber(1, 0));
+        Assert.assertEquals(1, m.getConnectedBondNumber(1, 1));
+        Assert.assertEquals(0, m.getConnectedBondNumber(0, 0));
+        Assert.assertEquals(2, m.getConnectedBondNumber(0, 1));
+        // changing the atoms of a view updates the adjacency
+        m.getBond(1).setAtom(m.getAtom(3), 1);
+        Assert.assertEquals(1, m.getConnectedBondsCount(2));
+        Assert.assertEquals(1, m.getConnectedBondNumber(3, 0));
+    }
+
+    @Test public void testGetConnectedAtomNumber_int_int() {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 3);
+        m.addAtom(6, 0, 2);
+        m.addAtom(8, 0, 1);
+        m.addBond(0, 1, IBond.Order.SINGLE);
+        m.addBond(new Bond(m.getAtom(2), m.getAtom(1)));
+        Assert.assertEquals(1, m.getConnectedAtomNumber(0, 0));
+        Assert.assertEquals(0, m.getConnectedAtomNumber(1, 0));
+        Assert.assertEquals(2, m.getConnectedAtomNumber(1, 1));
+        Assert.assertEquals(1, m.getConnectedAtomNumber(2, 0));
+        // a bond to an atom outside the container has no neighbour position
+        IBond bond = m.getBond(0);
+        bond.setAtom(new Atom("Cl"), 1);
+        Assert.assertEquals(-1, m.getConnectedAtomNumber(0, 0));
+    }
+
+    @Test public void testAddAtom_IAtom_MovesValues() {
+        CompactAtom atom = new CompactAtom("C", new Point2d(1, 2));
+        atom.setProperty("key", "value");
+        atom.setFlag(CDKConstants.ISAROMATIC, true);
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 3);
+        m.addAtom(atom);
+        // the atom is a view of the columns of the molecule now
+        Assert.assertSame(atom, m.getAtom(1));
+        Assert.assertEquals(6, m.getAtomicNumber(1));
+        Assert.assertEquals(new Point2d(1, 2), atom.getPoint2d());
+        Assert.assertEquals("value", atom.getProperty("key"));
+        Assert.assertTrue(atom.getFlag(CDKConstants.ISAROMATIC));
+        atom.setImplicitHydrogenCount(2);
+        Assert.assertEquals(2, m.getImplicitHydrogenCount(1));
+        // and it takes its values along when removed
+        m.removeAtom(0);
+        Assert.assertSame(atom, m.getAtom(0));
+        m.removeAtom(atom);
+        Assert.assertEquals(0, m.getAtomCount());
+        Assert.assertEquals(2, atom.getImplicitHydrogenCount().intValue());
+        Assert.assertEquals(new Point2d(1, 2), atom.getPoint2d());
+        Assert.assertEquals("value", atom.getProperty("key"));
+        Assert.assertTrue(atom.getFlag(CDKConstants.ISAROMATIC));
+    }
+
+    @Test public void testAddBond_IBond_MovesValues() {
+        CompactMolecule m = new CompactMolecule();
+        IAtom carbon = m.getBuilder().newInstance(IAtom.class, "C");
+        IAtom oxygen = m.getBuilder().newInstance(IAtom.class, "O");
+        CompactBond bond = new CompactBond(carbon, oxygen, IBond.Order.DOUBLE);
+        bond.setID("b1");
+        // a bond to atoms outside the molecule keeps its atom objects
+        m.addBond(bond);
+        Assert.assertEquals(-1, m.getBondAtomNumber(0, 0));
+        m.removeBond(0);
+        m.addAtom(carbon);
+        m.addAtom(oxygen);
+        m.addBond(bond);
+        Assert.assertEquals(0, m.getBondAtomNumber(0, 0));
+        Assert.assertEquals(1, m.getBondAtomNumber(0, 1));
+        Assert.assertSame(bond, m.getBond(carbon, oxygen));
+        Assert.assertEquals("b1", bond.getID());
+        IBond removed = m.removeBond(0);
+        Assert.assertSame(bond, removed);
+        Assert.assertEquals(IBond.Order.DOUBLE, bond.getOrder());
+        Assert.assertSame(carbon, bond.getAtom(0));
+        Assert.assertSame(oxygen, bond.getAtom(1));
+    }
+
+    @Test public void testRemoveAtom_int_KeepsBondAtoms() {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 3);
+        m.addAtom(8, 0, 1);
+        m.addBond(0, 1, IBond.Order.SINGLE);
+        IAtom carbon = m.getAtom(0);
+        IAtom oxygen = m.getAtom(1);
+        m.removeAtom(0);
+        Assert.assertEquals(1, m.getAtomCount());
+        Assert.assertSame(oxygen, m.getAtom(0));
+        Assert.assertEquals(8, m.getAtomicNumber(0));
+        // the removed atom keeps its values, and the bond its atoms
+        Assert.assertEquals("C", carbon.getSymbol());
+        Assert.assertEquals(3, carbon.getImplicitHydrogenCount().intValue());
+        IBond bond = m.getBond(0);
+        Assert.assertSame(carbon, bond.getConnectedAtom(oxygen));
+        Assert.assertEquals(1, m.getConnectedBondsCount(oxygen));
+        Assert.assertEquals(1, m.getConnectedBondsCount(carbon));
+    }
+
+    @Test public void testRemoveBond_int_DetachesView() {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 3);
+        m.addAtom(8, 0, 1);
+        m.addBond(0, 1, IBond.Order.DOUBLE);
+        IBond bond = m.removeBond(0);
+        Assert.assertEquals(0, m.getBondCount());
+        Assert.assertEquals(IBond.Order.DOUBLE, bond.getOrder());
+        Assert.assertEquals(0, m.getConnectedBondsCount(0));
+        bond.setOrder(IBond.Order.SINGLE);
+        m.addBond(bond);
+        Assert.assertSame(bond, m.getBond(0));
+        Assert.assertEquals(IBond.Order.SINGLE, m.getBondOrder(0));
+    }
+
+    @Test public void testClone_CompactArrays() throws Exception {
+        CompactMolecule m = new CompactMolecule();
+        m.addAtom(6, 0, 3);
+        m.addAtom(8, 0, 1);
+        m.addBond(0, 1, IBond.Order.SINGLE);
+        IAtom carbon = m.getAtom(0);
+        CompactMolecule clone = (CompactMolecule)m.clone();
+        Assert.assertNotSame(carbon, clone.getAtom(0));
+        clone.getAtom(0).setFormalCharge(1);
+        Assert.assertEquals(0, m.getFormalCharge(0));
+        Assert.assertEquals(1, clone.getFormalCharge(0));
+        Assert.assertSame(clone.getAtom(1), clone.getBond(0).getConnectedAtom(clone.getAtom(0)));
+    }
+
+    // Overwrite default methods: no notifications are expected!
+
+    @Test public void testNotifyChanged() {
+        ChemObjectTestHelper.testNotifyChanged(newChemObject());
+    }
+    @Test public void testNotifyChanged_SetFlag() {
+        ChemObjectTestHelper.testNotifyChanged_SetFlag(newChemObject());
+    }
+    @Test public void testNotifyChanged_SetFlags() {
+        ChemObjectTestHelper.testNotifyChanged_SetFlags(newChemObject());
+    }
+    @Test public void testNotifyChanged_IChemObjectChangeEvent() {
+        ChemObjectTestHelper.testNotifyChanged_IChemObjectChangeEvent(newChemObject());
+    }
+    @Test public void testStateChanged_IChemObjectChangeEvent() {
+        ChemObjectTestHelper.testStateChanged_IChemObjectChangeEvent(newChemObject());
+    }
+    @Test public void testClone_ChemObjectListeners() throws Exception {
+        ChemObjectTestHelper.testClone_ChemObjectListeners(newChemObject());
+    }
+    @Test public void testAddListener_IChemObjectListener() {
+        ChemObjectTestHelper.testAddListener_IChemObjectListener(newChemObject());
+    }
+    @Test public void testGetListenerCount() {
+        ChemObjectTestHelper.testGetListenerCount(newChemObject());
+    }
+    @Test public void testRemoveListener_IChemObjectListener() {
+        ChemObjectTestHelper.testRemoveListener_IChemObjectListener(newChemObject());
+    }
+    @Test public void testSetNotification_true() {
+        ChemObjectTestHelper.testSetNotification_true(newChemObject());
+    }
+    @Test public void testNotifyChanged_SetProperty() {
+        ChemObjectTestHelper.testNotifyChanged_SetProperty(newChemObject());
+    }
+    @Test public void testNotifyChanged_RemoveProperty() {
+        ChemObjectTestHelper.testNotifyChanged_RemoveProperty(newChemObject());
+    }
+    @Test public void testSetAtoms_removeListener() {
+        ChemObjectTestHelper.testSetAtoms_removeListener(newChemObject());
+    }
+}
@@ -0,0 +1,190 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.similarity;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.Fingerprinter;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class TanimotoIndexTest extends CDKTestCase {
+
+    private static final int SIZE = 256;
+
+    /**
+     * Returns random fingerprints with varying bit densities, including
+     * duplicates and an empty fingerprint.
+     */
+    private List<BitSet> getFingerprints(int count) {
+        Random random = new Random(42);
+        List<BitSet> fingerprints = new ArrayList<BitSet>();
+        fingerprints.add(new BitSet(SIZE));
+        for (int i = 1; i < count; i++) {
+            if (i % 50 == 0) {
+                fingerprints.add((BitSet)fingerprints.get(random.nextInt(i)).clone());
+                continue;
+            }
+            BitSet fingerprint = new BitSet(SIZE);
+            double density = 0.05 + 0.4 * random.nextDouble();
+            for (int bit = 0; bit < SIZE; bit++) {
+                if (random.nextDouble() < density) fingerprint.set(bit);
+            }
+            fingerprints.add(fingerprint);
+        }
+        return fingerprints;
+    }
+
+    private TanimotoIndex getIndex(List<BitSet> fingerprints, int threadCount) throws Exception {
+        TanimotoIndex index = new TanimotoIndex(SIZE, threadCount);
+        for (BitSet fingerprint : fingerprints) index.add(fingerprint);
+        return index;
+    }
+
+    private float[] getSimilarities(List<BitSet> fingerprints, BitSet query) throws Exception {
+        float[] similarities = new float[fingerprints.size()];
+        for (int i = 0; i < similarities.length; i++) {
+            BitSet fingerprint = fingerprints.get(i);
+            similarities[i] = fingerprint.isEmpty() && query.isEmpty()
+                ? 0 : Tanimoto.calculate(fingerprint, query);
+        }
+        return similarities;
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        TanimotoIndex index = new TanimotoIndex(SIZE);
+        Assert.assertEquals(0, index.size());
+        List<BitSet> fingerprints = getFingerprints(100);
+        for (int i = 0; i < fingerprints.size(); i++)
+            Assert.assertEquals(i, index.add(fingerprints.get(i)));
+        Assert.assertEquals(100, index.size());
+    }
+
+    @Test(expected = CDKException.class)
+    public void testAdd_TooLong() throws Exception {
+        BitSet fingerprint = new BitSet();
+        fingerprint.set(SIZE);
+        new TanimotoIndex(SIZE).add(fingerprint);
+    }
+
+    /**
+     * The hits are all fingerprints at or above the threshold, with the
+     * coefficients of {@link Tanimoto#calculate(BitSet, BitSet)}.
+     */
+    @Test
+    public void testFindSimilar() throws Exception {
+        List<BitSet> fingerprints = getFingerprints(2000);
+        TanimotoIndex index = getIndex(fingerprints, 1);
+        for (int q = 0; q < 20; q++) {
+            BitSet query = fingerprints.get(q * 97);
+            float[] similarities = getSimilarities(fingerprints, query);
+            for (float threshold : new float[]{0.3f, 0.6f, 1.0f}) {
+                List<TanimotoIndex.Hit> hits = index.findSimilar(query, threshold);
+                int expected = 0;
+                for (float similarity : similarities) if (similarity >= threshold) expected++;
+                Assert.assertEquals(expected, hits.size());
+                for (int i = 0; i < hits.size(); i++) {
+                    TanimotoIndex.Hit hit = hits.get(i);
+                    Assert.assertEquals(similarities[hit.getIndex()], hit.getSimilarity(), 0);
+                    if (i > 0) Assert.assertTrue(hits.get(i - 1).getSimilarity() >= hit.getSimilarity());
+                }
+            }
+        }
+    }
+
+    /**
+     * The hits are the k most similar fingerprints, of equally similar
+     * fingerprints those added first.
+     */
+    @Test
+    public void testFindNearest() throws Exception {
+        List<BitSet> fingerprints = getFingerprints(2000);
+        TanimotoIndex index = getIndex(fingerprints, 1);
+        for (int q = 0; q < 20; q++) {
+            BitSet query = fingerprints.get(q * 97);
+            float[] similarities = getSimilarities(fingerprints, query);
+            for (int k : new int[]{1, 5, 50}) {
+                assertNearest(similarities, k, index.findNearest(query, k));
+            }
+        }
+    }
+
+    private void assertNearest(float[] similarities, int k, List<TanimotoIndex.Hit> hits) {
+        Assert.assertEquals(k, hits.size());
+        boolean[] taken = new boolean[similarities.length];
+        for (TanimotoIndex.Hit hit : hits) {
+            // the best fingerprint not taken yet, the first of equals
+            int best = -1;
+            for (int i = 0; i < similarities.length; i++) {
+                if (!taken[i] && (best == -1 || similarities[i] > similarities[best])) best = i;
+            }
+            Assert.assertEquals(best, hit.getIndex());
+            Assert.assertEquals(similarities[best], hit.getSimilarity(), 0);
+            taken[best] = true;
+        }
+    }
+
+    @Test
+    public void testFindNearest_ThreadCount() throws Exception {
+        List<BitSet> fingerprints = getFingerprints(40000);
+        TanimotoIndex single = getIndex(fingerprints, 1);
+        TanimotoIndex parallel = getIndex(fingerprints, 4);
+        for (int q = 0; q < 5; q++) {
+            BitSet query = fingerprints.get(q * 7919);
+            Assert.assertEquals(
+                single.findNearest(query, 25).toString(), parallel.findNearest(query, 25).toString()
+            );
+            Assert.assertEquals(
+                single.findSimilar(query, 0.5f).toString(), parallel.findSimilar(query, 0.5f).toString()
+            );
+        }
+        assertNearest(getSimilarities(fingerprints, fingerprints.get(3)), 10,
+                      parallel.findNearest(fingerprints.get(3), 10));
+    }
+
+    @Test
+    public void testFindNearest_Small() throws Exception {
+        TanimotoIndex index = new TanimotoIndex(Fingerprinter.DEFAULT_SIZE);
+        Fingerprinter fingerprinter = new Fingerprinter();
+        index.add(fingerprinter.getFingerprint(MoleculeFactory.makeIndole()));
+        index.add(fingerprinter.getFingerprint(MoleculeFactory.makePyrrole()));
+        List<TanimotoIndex.Hit> hits = index.findNearest(
+            fingerprinter.getFingerprint(MoleculeFactory.makeIndole()), 5
+        );
+        Assert.assertEquals(2, hits.size());
+        Assert.assertEquals(0, hits.get(0).getIndex());
+        Assert.assertEquals(1.0, hits.get(0).getSimilarity(), 0.001);
+        Assert.assertEquals(0.3939, hits.get(1).getSimilarity(), 0.01);
+    }
+
+}
@@ -971,5 +971,20 @@ public class SmilesGeneratorTest extends CDKTestCase {
         String smileswitharomaticity = sg.createSMILESWithoutCheckForMultipleMolecules(benzene, false, new boolean[benzene.getBondCount()]);
         Assert.assertEquals("c1ccccc1", smileswitharomaticity);
     }
-}
 
+    @Test public void testPartitionRefinement() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IMolecule mol1 = sp.parseSmiles("OC(=O)C1=CC=CC=C1NC2=CC=CC=C2");
+        IMolecule mol2 = sp.parseSmiles("C1=CC=C(C=C1)NC2=CC=CC=C2C(O)=O");
+        SmilesGenerator sg = new SmilesGenerator();
+        sg.setUsePartitionRefinement(true);
+        String smiles = sg.createSMILES(mol1);
+        Assert.assertEquals(smiles, sg.createSMILES(mol2));
+        Assert.assertTrue(UniversalIsomorphismTester.isIsomorph(mol1, sp.parseSmiles(smiles)));
+        for (IAtom atom : mol1.atoms()) {
+            Assert.assertNull(atom.getProperty(InvPair.CANONICAL_LABEL));
+        }
+        sg.setUsePartitionRefinement(false);
+        Assert.assertEquals(new SmilesGenerator().createSMILES(mol1), sg.createSMILES(mol1));
+    }
+}
@@ -0,0 +1,172 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class SMARTSQueryCacheTest extends CDKTestCase {
+
+    @Test
+    public void testGetInstance() {
+        Assert.assertNotNull(SMARTSQueryCache.getInstance());
+        Assert.assertSame(SMARTSQueryCache.getInstance(), SMARTSQueryCache.getInstance());
+    }
+
+    @Test
+    public void testGet_String() {
+        SMARTSQueryCache cache = new SMARTSQueryCache(10);
+        SMARTSQuery query = cache.get("O=CO");
+        Assert.assertEquals("O=CO", query.getSmarts());
+        Assert.assertSame(query, cache.get("O=CO"));
+        Assert.assertEquals(1, cache.getSize());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testSetMaxSize_int() {
+        SMARTSQueryCache cache = new SMARTSQueryCache(3);
+        SMARTSQuery oxygen = cache.get("O");
+        cache.get("N");
+        cache.get("C");
+        cache.get("O"); // N is now the least recently used
+        cache.get("S");
+        Assert.assertEquals(3, cache.getSize());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertSame(oxygen, cache.get("O"));
+
+        cache.setMaxSize(1);
+        Assert.assertEquals(1, cache.getMaxSize());
+        Assert.assertEquals(1, cache.getSize());
+        Assert.assertEquals(3, cache.getEvictionCount());
+        Assert.assertSame(oxygen, cache.get("O"));
+    }
+
+    @Test
+    public void testSMARTSQueryCache_int() {
+        SMARTSQueryCache cache = new SMARTSQueryCache(2);
+        Assert.assertNotSame(SMARTSQueryCache.getInstance(), cache);
+        Assert.assertEquals(2, cache.getMaxSize());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testGetMaxSize() {
+        SMARTSQueryCache cache = new SMARTSQueryCache(5);
+        Assert.assertEquals(5, cache.getMaxSize());
+        cache.setMaxSize(7);
+        Assert.assertEquals(7, cache.getMaxSize());
+    }
+
+    @Test
+    public void testGetSize() {
+        SMARTSQueryCache cache = new SMARTSQueryCache(2);
+        Assert.assertEquals(0, cache.getSize());
+        cache.get("O");
+        cache.get("O");
+        Assert.assertEquals(1, cache.getSize());
+        cache.get("N");
+        cache.get("C");
+        Assert.assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testGetHitCount() {
+        SMARTSQueryCache cache = new SMARTSQueryCache(10);
+        cache.get("O");
+        Assert.assertEquals(0, cache.getHitCount());
+        cache.get("O");
+        cache.get("O");
+        Assert.assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testGetMissCount() {
+        SMARTSQueryCache cache = new SMARTSQueryCache(10);
+        cache.get("O");
+        cache.get("O");
+        cache.get("N");
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testGetEvictionCount() {
+        SMARTSQueryCache cache = new SMARTSQueryCache(1);
+        cache.get("O");
+        Assert.assertEquals(0, cache.getEvictionCount());
+        cache.get("N");
+        cache.get("O");
+        Assert.assertEquals(2, cache.getEvictionCount());
+        Assert.assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testClear() {
+        SMARTSQueryCache cache = new SMARTSQueryCache(3);
+        SMARTSQuery query = cache.get("O");
+        cache.clear();
+        Assert.assertEquals(0, cache.getSize());
+        Assert.assertNotSame(query, cache.get("O"));
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSMARTSQueryCache_Zero() {
+        new SMARTSQueryCache(0);
+    }
+
+    @Test(timeout = 60000)
+    public void testGet_Concurrent() throws Exception {
+        final SMARTSQueryCache cache = new SMARTSQueryCache(100);
+        final String[] patterns = {"O=CO", "c1ccccc1", "[#6;R]", "[$(*O);$(*CC)]", "[CH3]"};
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<SMARTSQuery>>> results = new ArrayList<Future<List<SMARTSQuery>>>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(new Callable<List<SMARTSQuery>>() {
+                public List<SMARTSQuery> call() {
+                    List<SMARTSQuery> queries = new ArrayList<SMARTSQuery>();
+                    for (String pattern : patterns) queries.add(cache.get(pattern));
+                    return queries;
+                }
+            }));
+        }
+        List<SMARTSQuery> first = results.get(0).get();
+        for (Future<List<SMARTSQuery>> result : results) {
+            List<SMARTSQuery> queries = result.get();
+            for (int i = 0; i < patterns.length; i++)
+                Assert.assertSame(first.get(i), queries.get(i));
+        }
+        executor.shutdown();
+        Assert.assertEquals(patterns.length, cache.getSize());
+        Assert.assertEquals(8 * patterns.length, cache.getHitCount() + cache.getMissCount());
+    }
+
+}
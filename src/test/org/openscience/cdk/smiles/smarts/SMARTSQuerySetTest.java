@@ -0,0 +1,117 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class SMARTSQuerySetTest extends CDKTestCase {
+
+    private static final String[] PATTERNS = {
+        "O=CO", "c1ccccc1", "[#6;R]", "[$(*O);$(*CC)]", "[CH3]", "[OX2H]",
+        "[!#6;!#1]~*", "[#7]", "C=O", "[Cl,Br,I]", "c1ccccc1-c"
+    };
+
+    private static final String[] SMILES = {
+        "CC(=O)OC(=O)C", "c1ccccc1O", "CCCC(=O)O", "C1CCCCC1N", "OCC(O)CO", "Clc1ccccc1"
+    };
+
+    private IAtomContainer parse(String smiles) throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer molecule = sp.parseSmiles(smiles);
+        SMARTSQuery.prepare(molecule);
+        return molecule;
+    }
+
+    @Test
+    public void testSMARTSQuerySet_arrayString() {
+        SMARTSQuerySet set = new SMARTSQuerySet(PATTERNS);
+        Assert.assertEquals(PATTERNS.length, set.size());
+        Assert.assertSame(SMARTSQueryCache.getInstance().get("c1ccccc1"), set.getQuery(1));
+    }
+
+    @Test
+    public void testSize() {
+        Assert.assertEquals(0, new SMARTSQuerySet(new String[0]).size());
+        Assert.assertEquals(2, new SMARTSQuerySet(new String[]{"C", "O"}).size());
+    }
+
+    @Test
+    public void testGetQuery_int() {
+        SMARTSQuerySet set = new SMARTSQuerySet(PATTERNS);
+        for (int i = 0; i < PATTERNS.length; i++)
+            Assert.assertEquals(PATTERNS[i], set.getQuery(i).getSmarts());
+    }
+
+    @Test
+    public void testSMARTSQuerySet_List() {
+        SMARTSQuerySet set = new SMARTSQuerySet(Arrays.asList(PATTERNS));
+        Assert.assertEquals(PATTERNS.length, set.size());
+        Assert.assertSame(SMARTSQueryCache.getInstance().get("O=CO"), set.getQuery(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSMARTSQuerySet_Invalid() {
+        new SMARTSQuerySet(new String[]{"C", "C("});
+    }
+
+    /**
+     * The patterns found in one pass are those found by the
+     * {@link SMARTSQueryTool} one pattern at a time.
+     */
+    @Test
+    public void testMatches_IAtomContainer() throws Exception {
+        SMARTSQuerySet set = new SMARTSQuerySet(PATTERNS);
+        for (String smiles : SMILES) {
+            IAtomContainer molecule = parse(smiles);
+            BitSet expected = new BitSet();
+            for (int i = 0; i < PATTERNS.length; i++) {
+                if (new SMARTSQueryTool(PATTERNS[i]).matches(molecule)) expected.set(i);
+            }
+            Assert.assertEquals(smiles, expected, set.matches(molecule));
+        }
+    }
+
+    @Test
+    public void testCountUniqueMatches_IAtomContainer() throws Exception {
+        SMARTSQuerySet set = new SMARTSQuerySet(PATTERNS);
+        for (String smiles : SMILES) {
+            IAtomContainer molecule = parse(smiles);
+            int[] counts = set.countUniqueMatches(molecule);
+            for (int i = 0; i < PATTERNS.length; i++) {
+                SMARTSQueryTool tool = new SMARTSQueryTool(PATTERNS[i]);
+                tool.matches(molecule);
+                Assert.assertEquals(
+                    PATTERNS[i] + " in " + smiles, tool.getUniqueMatchingAtoms().size(), counts[i]
+                );
+            }
+        }
+    }
+
+}
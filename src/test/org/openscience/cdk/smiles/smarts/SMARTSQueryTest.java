@@ -0,0 +1,259 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class SMARTSQueryTest extends CDKTestCase {
+
+    private static final String[] PATTERNS = {
+        "O=CO", "c1ccccc1", "[#6;R]", "[$(*O);$(*CC)]", "[CH3]", "[OX2H]", "[!#6;!#1]~*"
+    };
+
+    private static final String[] SMILES = {
+        "CC(=O)OC(=O)C", "c1ccccc1O", "CCCC(=O)O", "C1CCCCC1N", "OCC(O)CO"
+    };
+
+    /**
+     * The number of matches and the unique matching atoms of each pattern,
+     * for each molecule.
+     */
+    private static final String[][] MATCHES = {
+        // CC(=O)OC(=O)C
+        {"2 [[1, 2, 3], [3, 4, 5]]", "0 []", "0 []", "0 []", "2 [[0], [6]]", "0 []",
+         "4 [[1, 2], [1, 3], [3, 4], [4, 5]]"},
+        // c1ccccc1O
+        {"0 []", "12 [[0, 1, 2, 3, 4, 5]]", "6 [[0], [1], [2], [3], [4], [5]]", "0 []", "0 []",
+         "1 [[6]]", "1 [[5, 6]]"},
+        // CCCC(=O)O
+        {"1 [[3, 4, 5]]", "0 []", "0 []", "1 [[3]]", "1 [[0]]", "1 [[5]]", "2 [[3, 4], [3, 5]]"},
+        // C1CCCCC1N
+        {"0 []", "0 []", "6 [[0], [1], [2], [3], [4], [5]]", "0 []", "0 []", "0 []", "1 [[5, 6]]"},
+        // OCC(O)CO
+        {"0 []", "0 []", "0 []", "2 [[1], [4]]", "0 []", "3 [[0], [3], [5]]",
+         "3 [[0, 1], [2, 3], [4, 5]]"}
+    };
+
+    private static String describeMatches(SMARTSQuery query, IAtomContainer molecule)
+            throws Exception {
+        return query.getMatchingAtoms(molecule).size() + " " + query.getUniqueMatchingAtoms(molecule);
+    }
+
+    private IAtomContainer parse(String smiles) throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer molecule = sp.parseSmiles(smiles);
+        SMARTSQuery.prepare(molecule);
+        return molecule;
+    }
+
+    @Test
+    public void testSMARTSQuery_String() {
+        SMARTSQuery query = new SMARTSQuery("O=CO");
+        Assert.assertEquals("O=CO", query.getSmarts());
+    }
+
+    @Test
+    public void testGetSmarts() {
+        Assert.assertEquals("[#6;R]", new SMARTSQuery("[#6;R]").getSmarts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSMARTSQuery_Invalid() {
+        new SMARTSQuery("C(");
+    }
+
+    @Test
+    public void testMatches_IAtomContainer() throws Exception {
+        IAtomContainer molecule = parse("CC(=O)OC(=O)C");
+        Assert.assertTrue(new SMARTSQuery("O=CO").matches(molecule));
+        Assert.assertFalse(new SMARTSQuery("N").matches(molecule));
+    }
+
+    /**
+     * A molecule that has not changed is not prepared again, but one that has
+     * changed is.
+     */
+    @Test
+    public void testPrepare_IAtomContainer() throws Exception {
+        IAtomContainer molecule = parse("CCCCCCO");
+        SMARTSQuery ring = new SMARTSQuery("[C;R]");
+        Assert.assertFalse(ring.matches(molecule));
+        SMARTSQuery.prepare(molecule);
+        Assert.assertFalse(ring.matches(molecule));
+
+        molecule.addBond(0, 5, IBond.Order.SINGLE);
+        molecule.getAtom(0).setImplicitHydrogenCount(2);
+        molecule.getAtom(5).setImplicitHydrogenCount(1);
+        SMARTSQuery.prepare(molecule);
+        Assert.assertTrue(ring.matches(molecule));
+        Assert.assertEquals(6, ring.getUniqueMatchingAtoms(molecule).size());
+    }
+
+    @Test
+    public void testPrepare_Cached() throws Exception {
+        IAtomContainer molecule = parse("c1ccccc1O");
+        SMARTSQuery.prepare(molecule);
+        molecule.getAtom(0).removeProperty(CDKConstants.TOTAL_CONNECTIONS);
+        // the molecule prepared last is not prepared again
+        SMARTSQuery.prepare(molecule);
+        Assert.assertNull(molecule.getAtom(0).getProperty(CDKConstants.TOTAL_CONNECTIONS));
+        // but it is after another one was prepared
+        SMARTSQuery.prepare(parse("CCO"));
+        SMARTSQuery.prepare(molecule);
+        Assert.assertNotNull(molecule.getAtom(0).getProperty(CDKConstants.TOTAL_CONNECTIONS));
+    }
+
+    /**
+     * Targets with too few atoms of the required elements, aromatic atoms or
+     * bonds are rejected before the search.
+     */
+    @Test
+    public void testMayMatch_SMARTSQuery_TargetCounts() throws Exception {
+        IAtomContainer phenol = parse("c1ccccc1O");
+        SMARTSQuery.TargetCounts counts = new SMARTSQuery.TargetCounts(phenol);
+        Assert.assertTrue(new SMARTSQuery("c[OX2H]").mayMatch(counts));
+        Assert.assertFalse(new SMARTSQuery("OCO").mayMatch(counts));
+        Assert.assertFalse(new SMARTSQuery("[#7]").mayMatch(counts));
+        Assert.assertFalse(new SMARTSQuery("[N;R]").mayMatch(counts));
+        Assert.assertFalse(new SMARTSQuery("c1ccccc1-c").mayMatch(counts));
+        Assert.assertFalse(new SMARTSQuery("a1aaaaa1a").mayMatch(counts));
+        Assert.assertTrue(new SMARTSQuery("[N,O]").mayMatch(counts));
+        Assert.assertTrue(new SMARTSQuery("[!N]").mayMatch(counts));
+    }
+
+    /**
+     * The prefilter does not change the results.
+     */
+    @Test
+    public void testMatches_IAtomContainer_SMARTSQuery_TargetCounts() throws Exception {
+        String[] patterns = {"OCO", "[#7]", "[N;R]", "cO", "[c;!R]", "[N,O]", "[!N]", "C=O", "[$(*O)]~*"};
+        for (String smiles : SMILES) {
+            IAtomContainer molecule = parse(smiles);
+            SMARTSQuery.TargetCounts counts = new SMARTSQuery.TargetCounts(molecule);
+            for (String pattern : patterns) {
+                SMARTSQuery query = new SMARTSQuery(pattern);
+                Assert.assertEquals(
+                    pattern + " in " + smiles,
+                    !query.getMatchingAtoms(molecule).isEmpty(), query.matches(molecule, counts)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testGetMatchingAtoms_IAtomContainer_SMARTSQuery_TargetCounts() throws Exception {
+        IAtomContainer molecule = parse("CC(=O)OC(=O)C");
+        SMARTSQuery.TargetCounts counts = new SMARTSQuery.TargetCounts(molecule);
+        SMARTSQuery query = new SMARTSQuery("O~C~O");
+        Assert.assertEquals(query.getMatchingAtoms(molecule), query.getMatchingAtoms(molecule, counts));
+        Assert.assertTrue(new SMARTSQuery("[#7]").getMatchingAtoms(molecule, counts).isEmpty());
+    }
+
+    @Test
+    public void testGetUniqueMappings_List() {
+        List<List<Integer>> mappings = new ArrayList<List<Integer>>();
+        mappings.add(new ArrayList<Integer>(Arrays.asList(2, 1, 3)));
+        mappings.add(new ArrayList<Integer>(Arrays.asList(3, 1, 2)));
+        mappings.add(new ArrayList<Integer>(Arrays.asList(4, 3, 5)));
+        mappings.add(new ArrayList<Integer>(Arrays.asList(4, 3)));
+        List<List<Integer>> unique = SMARTSQuery.getUniqueMappings(mappings);
+        Assert.assertEquals(3, unique.size());
+        Assert.assertEquals(Arrays.asList(1, 2, 3), unique.get(0));
+        Assert.assertEquals(Arrays.asList(3, 4, 5), unique.get(1));
+        Assert.assertEquals(Arrays.asList(3, 4), unique.get(2));
+    }
+
+    @Test
+    public void testGetUniqueMatchingAtoms_IAtomContainer() throws Exception {
+        IAtomContainer molecule = parse("CC(=O)OC(=O)C");
+        SMARTSQuery query = new SMARTSQuery("O~C~O");
+        Assert.assertEquals(4, query.getMatchingAtoms(molecule).size());
+        List<List<Integer>> unique = query.getUniqueMatchingAtoms(molecule);
+        Assert.assertEquals(2, unique.size());
+        for (List<Integer> mapping : unique) Assert.assertEquals(3, mapping.size());
+    }
+
+    @Test
+    public void testGetMatchingAtoms_IAtomContainer() throws Exception {
+        for (int i = 0; i < SMILES.length; i++) {
+            IAtomContainer molecule = parse(SMILES[i]);
+            for (int j = 0; j < PATTERNS.length; j++) {
+                Assert.assertEquals(
+                    PATTERNS[j] + " in " + SMILES[i],
+                    MATCHES[i][j], describeMatches(new SMARTSQuery(PATTERNS[j]), molecule)
+                );
+            }
+        }
+        SMARTSQuery query = new SMARTSQuery("O=CO");
+        List<List<Integer>> expected = new ArrayList<List<Integer>>();
+        expected.add(Arrays.asList(2, 1, 3));
+        expected.add(Arrays.asList(4, 3, 5));
+        Assert.assertEquals(expected, query.getMatchingAtoms(parse("CC(=O)OC(=O)C")));
+    }
+
+    /**
+     * One query for each pattern is matched by several threads at once, each
+     * against its own molecules.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentMatching() throws Exception {
+        final List<SMARTSQuery> queries = new ArrayList<SMARTSQuery>();
+        for (String pattern : PATTERNS) queries.add(new SMARTSQuery(pattern));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 16; i++) {
+            results.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    for (int repeat = 0; repeat < 5; repeat++) {
+                        for (int i = 0; i < SMILES.length; i++) {
+                            IAtomContainer molecule = parse(SMILES[i]);
+                            for (int j = 0; j < queries.size(); j++) {
+                                if (!MATCHES[i][j].equals(describeMatches(queries.get(j), molecule)))
+                                    return false;
+                            }
+                        }
+                    }
+                    return true;
+                }
+            }));
+        }
+        for (Future<Boolean> result : results) Assert.assertTrue(result.get());
+        executor.shutdown();
+    }
+
+}
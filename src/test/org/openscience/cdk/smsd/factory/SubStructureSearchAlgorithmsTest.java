@@ -21,6 +21,12 @@
  */
 package org.openscience.cdk.smsd.factory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Assert;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -32,6 +38,7 @@ import org.openscience.cdk.interfaces.IMolecule;
 import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.smsd.Isomorphism;
 import org.openscience.cdk.smsd.interfaces.Algorithm;
+import org.openscience.cdk.smsd.tools.SearchContext;
 
 /**
  * Unit testing for the {@link SubStructureSearchAlgorithms} class.
@@ -382,4 +389,71 @@ public class SubStructureSearchAlgorithmsTest {
 
         assertEquals(score, smsd2.getEuclideanDistance(), 0.005);
     }
+
+    /**
+     * Test of setSearchContext method, of class Isomorphism.
+     * @throws Exception
+     */
+    @Test
+    public void testSetSearchContext() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer target = sp.parseSmiles("C\\C=C/Nc1cccc(c1)N(O)\\C=C\\C\\C=C\\C=C/C");
+        IAtomContainer queryac = sp.parseSmiles("Nc1ccccc1");
+
+        Isomorphism smsd1 = new Isomorphism(Algorithm.DEFAULT, true);
+        Assert.assertNull(smsd1.getSearchContext());
+        SearchContext context = new SearchContext();
+        smsd1.setSearchContext(context);
+        smsd1.init(queryac, target, true, true);
+        Assert.assertSame(context, smsd1.getSearchContext());
+        Assert.assertFalse(smsd1.isTimeOut());
+        Assert.assertEquals(7, smsd1.getFirstMapping().size());
+        Assert.assertTrue(context.getNodeCount() > 0);
+        Assert.assertTrue(context.getTimeToFirstMapping() >= 0);
+
+        // the next search gets its own context again
+        smsd1.init(queryac, target, true, true);
+        Assert.assertNotSame(context, smsd1.getSearchContext());
+        Assert.assertEquals(0.15, smsd1.getSearchContext().getTimeOut(), 0.0001);
+
+        SearchContext cancelled = new SearchContext();
+        cancelled.cancel();
+        smsd1.setSearchContext(cancelled);
+        smsd1.init(queryac, target, true, true);
+        Assert.assertTrue(smsd1.isTimeOut());
+    }
+
+    /**
+     * Tests that a cancelled search does not stop the searches running
+     * concurrently.
+     * @throws Exception
+     */
+    @Test(timeout=60000)
+    public void testConcurrentSearches() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        final IAtomContainer target = sp.parseSmiles("C\\C=C/Nc1cccc(c1)N(O)\\C=C\\C\\C=C\\C=C/C");
+        final IAtomContainer queryac = sp.parseSmiles("Nc1ccccc1");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 40; i++) {
+            final boolean cancel = i % 4 == 0;
+            results.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    Isomorphism smsd = new Isomorphism(Algorithm.DEFAULT, true);
+                    SearchContext context = new SearchContext();
+                    if (cancel) {
+                        context.cancel();
+                    }
+                    smsd.setSearchContext(context);
+                    smsd.init((IAtomContainer) queryac.clone(), (IAtomContainer) target.clone(), true, true);
+                    return cancel ? smsd.isTimeOut() : !smsd.isTimeOut() && smsd.getFirstMapping().size() == 7;
+                }
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            Assert.assertTrue(result.get());
+        }
+        executor.shutdown();
+    }
 }
@@ -0,0 +1,121 @@
+/* Copyright (C) 2011  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smsd.tools;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit testing for the {@link SearchContext} class.
+ *
+ * @cdk.module test-smsd
+ */
+public class SearchContextTest {
+
+    @Test
+    public void testSearchContext() {
+        SearchContext context = new SearchContext();
+        Assert.assertEquals(-1, context.getTimeOut(), 0.0001);
+        Assert.assertEquals(-1, context.getNodeLimit());
+        Assert.assertFalse(context.checkTimeOut());
+        Assert.assertFalse(context.isTimeOut());
+    }
+
+    @Test
+    public void testSearchContext_double() {
+        Assert.assertEquals(0.5, new SearchContext(0.5).getTimeOut(), 0.0001);
+    }
+
+    @Test
+    public void testCheckTimeOut() throws Exception {
+        SearchContext context = new SearchContext(0.0001); // 6 ms
+        Assert.assertFalse(context.isTimeOut());
+        Thread.sleep(50);
+        Assert.assertFalse(context.isTimeOut());
+        Assert.assertTrue(context.checkTimeOut());
+        Assert.assertTrue(context.isTimeOut());
+    }
+
+    @Test
+    public void testCheckTimeOut_Interrupted() {
+        SearchContext context = new SearchContext();
+        Thread.currentThread().interrupt();
+        try {
+            Assert.assertTrue(context.checkTimeOut());
+        } finally {
+            Assert.assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void testSetNodeLimit() {
+        SearchContext context = new SearchContext();
+        context.setNodeLimit(2);
+        Assert.assertEquals(2, context.getNodeLimit());
+        context.visitNode();
+        Assert.assertFalse(context.checkTimeOut());
+        context.visitNode();
+        Assert.assertTrue(context.checkTimeOut());
+        Assert.assertEquals(2, context.getNodeCount());
+    }
+
+    @Test
+    public void testCancel() {
+        SearchContext context = new SearchContext();
+        Assert.assertFalse(context.isCancelled());
+        context.cancel();
+        Assert.assertTrue(context.isCancelled());
+        Assert.assertTrue(context.checkTimeOut());
+    }
+
+    @Test
+    public void testRestart() {
+        SearchContext context = new SearchContext();
+        context.setNodeLimit(1);
+        context.visitNode();
+        Assert.assertTrue(context.checkTimeOut());
+        context.restart();
+        Assert.assertFalse(context.isTimeOut());
+        Assert.assertFalse(context.checkTimeOut());
+        Assert.assertEquals(1, context.getNodeCount());
+
+        context.cancel();
+        context.restart();
+        Assert.assertTrue(context.checkTimeOut());
+    }
+
+    @Test
+    public void testMappingFound() throws Exception {
+        SearchContext context = new SearchContext();
+        Assert.assertEquals(-1, context.getTimeToFirstMapping(), 0.0001);
+        Thread.sleep(10);
+        context.mappingFound();
+        double first = context.getTimeToFirstMapping();
+        Assert.assertTrue(first >= 10);
+        Thread.sleep(10);
+        context.mappingFound();
+        Assert.assertEquals(first, context.getTimeToFirstMapping(), 0.0001);
+        Assert.assertTrue(context.getElapsedTime() >= first + 10);
+    }
+
+}
@@ -39,7 +39,8 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({org.openscience.cdk.smsd.tools.BondEnergiesTest.class,
 org.openscience.cdk.smsd.tools.MoleculeSanityCheckTest.class,
         org.openscience.cdk.smsd.tools.ExtAtomContainerManipulatorTest.class,
-        org.openscience.cdk.smsd.tools.TimeManagerTest.class})
+        org.openscience.cdk.smsd.tools.TimeManagerTest.class,
+        org.openscience.cdk.smsd.tools.SearchContextTest.class})
 public class ToolsSuite {
 
     @BeforeClass
@@ -1545,6 +1545,97 @@ public class StructureResonanceGeneratorTest  extends CDKTestCase{
 		
 	}
 	
+	/**
+	 * A unit test suite for JUnit 
+	 * @return    The test suite
+	 */
+	@Test public void testGetThreadCount() throws Exception {
+		StructureResonanceGenerator gRI = new StructureResonanceGenerator();
+		Assert.assertEquals(1,gRI.getThreadCount());
+	}
+
+	/**
+	 * A unit test suite for JUnit 
+	 * @return    The test suite
+	 */
+	@Test public void testSetThreadCount_int() throws Exception {
+		StructureResonanceGenerator gRI = new StructureResonanceGenerator();
+		gRI.setThreadCount(3);
+		Assert.assertEquals(3,gRI.getThreadCount());
+		try {
+			gRI.setThreadCount(0);
+			Assert.fail("At least one thread is needed");
+		} catch (IllegalArgumentException exception) {
+			Assert.assertEquals(3,gRI.getThreadCount());
+		}
+	}
+
+	/**
+	 * Fluorostyrene: C=CC1=CC=C(F)C=C1
+	 */
+	private IMolecule makeFluorostyrene() throws Exception {
+		IMolecule molecule = builder.newInstance(IMolecule.class);
+		molecule.addAtom(builder.newInstance(IAtom.class,"F"));
+		molecule.addAtom(builder.newInstance(IAtom.class,"C"));
+		molecule.addBond(0, 1, IBond.Order.SINGLE);
+		molecule.addAtom(builder.newInstance(IAtom.class,"C"));
+		molecule.addBond(1, 2, IBond.Order.DOUBLE);
+		molecule.addAtom(builder.newInstance(IAtom.class,"C"));
+		molecule.addBond(2, 3, IBond.Order.SINGLE);
+		molecule.addAtom(builder.newInstance(IAtom.class,"C"));
+		molecule.addBond(3, 4, IBond.Order.DOUBLE);
+		molecule.addAtom(builder.newInstance(IAtom.class,"C"));
+		molecule.addBond(4, 5, IBond.Order.SINGLE);
+		molecule.addAtom(builder.newInstance(IAtom.class,"C"));
+		molecule.addBond(5, 6, IBond.Order.DOUBLE);
+		molecule.addBond(6, 1, IBond.Order.SINGLE);
+		molecule.addAtom(builder.newInstance(IAtom.class,"C"));
+		molecule.addBond(4, 7, IBond.Order.SINGLE);
+		molecule.addAtom(builder.newInstance(IAtom.class,"C"));
+		molecule.addBond(7, 8, IBond.Order.DOUBLE);
+		
+		addExplicitHydrogens(molecule);
+		AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(molecule);
+		lpcheck.saturate(molecule);
+		return molecule;
+	}
+
+	/**
+	 * Describes the charges, radicals and bond orders of each structure, by position.
+	 */
+	private List<String> describe(IMoleculeSet setOfMolecules) {
+		List<String> structures = new ArrayList<String>();
+		for (IAtomContainer container : setOfMolecules.molecules()) {
+			StringBuffer structure = new StringBuffer();
+			for (IAtom atom : container.atoms())
+				structure.append(atom.getSymbol()).append(atom.getFormalCharge())
+					.append(container.getConnectedSingleElectronsCount(atom)).append(' ');
+			for (IBond bond : container.bonds())
+				structure.append(bond.getOrder()).append(' ');
+			structures.add(structure.toString());
+		}
+		return structures;
+	}
+
+	/**
+	 * The same structures are found, in the same order, on several threads.
+	 * 
+	 * @return    The test suite
+	 */
+	@Test public void testGetStructures_ThreadCount() throws Exception {
+		for (boolean lookingSymmetry : new boolean[]{false, true}) {
+			StructureResonanceGenerator gRI = new StructureResonanceGenerator(lookingSymmetry);
+			List<String> expected = describe(gRI.getStructures(makeFluorostyrene()));
+			Assert.assertTrue(expected.size() > 3);
+			
+			gRI.setThreadCount(3);
+			Assert.assertEquals(expected, describe(gRI.getStructures(makeFluorostyrene())));
+			
+			gRI.setMaximalStructures(1);
+			Assert.assertEquals(expected.subList(0, 3), describe(gRI.getStructures(makeFluorostyrene())));
+		}
+	}
+
 	/**
 	 * A unit test suite for JUnit: c1ccccc1CN
 	 *  